@@ -222,6 +222,18 @@ public class DefaultConfigurationProvider implements ConfigurationProvider {
         return _propagateXAResourceTransactionTimeout;
     }
 
+    protected int _parallelTwoPhaseCommitThreads = AccessController.doPrivileged(new PrivilegedAction<Integer>() {
+        @Override
+        public Integer run() {
+            return Integer.getInteger("com.ibm.websphere.tx.parallelTwoPhaseCommitThreads", 0);
+        }
+    });
+
+    @Override
+    public int getParallelTwoPhaseCommitThreads() {
+        return _parallelTwoPhaseCommitThreads;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -0,0 +1,194 @@
+package com.ibm.tx.jta.impl;
+
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+
+import com.ibm.tx.TranConstants;
+import com.ibm.tx.config.ConfigurationProviderManager;
+import com.ibm.tx.jta.util.alarm.JTMThreadFactory;
+import com.ibm.tx.util.logging.Tr;
+import com.ibm.tx.util.logging.TraceComponent;
+import com.ibm.ws.Transaction.JTA.JTAResource;
+
+/**
+ * Flows prepare or commit to several resources of a transaction at the same time.
+ *
+ * Only the flows to the resources are made concurrently. Each flow returns a Result
+ * that holds the vote or the exception of the resource, and RegisteredResources then
+ * processes the results one at a time, in its usual order and on the thread of the
+ * transaction, exactly as if it had made the flow itself. So the resource states,
+ * heuristic outcome and recovery log are updated in the same way as for sequential
+ * completion, and RegisteredResources needs no extra synchronization.
+ *
+ * The flows are run by a bounded pool of daemon threads that is shared by all
+ * transactions. The thread of the transaction makes one of the flows itself, and
+ * it also makes any flow for which the pool has no idle thread. The size of the
+ * pool follows the configured number of threads, and idle threads end after a
+ * minute, so the pool holds no threads once the transaction service stops using it.
+ */
+class ConcurrentResourceFlows {
+    private static final TraceComponent tc = Tr.register(ConcurrentResourceFlows.class, TranConstants.TRACE_GROUP, TranConstants.NLS_FILE);
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static ThreadPoolExecutor _executor;
+
+    /**
+     * The result of a flow to a resource.
+     */
+    static final class Result {
+        private final int _vote;
+        private final Throwable _failure;
+
+        Result(int vote, Throwable failure) {
+            _vote = vote;
+            _failure = failure;
+        }
+
+        /**
+         * Returns the vote of the resource, or raises the exception that the resource raised.
+         */
+        int get() throws XAException {
+            if (_failure == null)
+                return _vote;
+            if (_failure instanceof XAException)
+                throw (XAException) _failure;
+            if (_failure instanceof RuntimeException)
+                throw (RuntimeException) _failure;
+            if (_failure instanceof Error)
+                throw (Error) _failure;
+            throw new RuntimeException(_failure);
+        }
+    }
+
+    /**
+     * @return true if resources should be prepared and committed concurrently.
+     */
+    static boolean isEnabled() {
+        return ConfigurationProviderManager.getConfigurationProvider().getParallelTwoPhaseCommitThreads() > 0;
+    }
+
+    /**
+     * Flows prepare or commit to each of the resources and waits for all of the flows to complete.
+     *
+     * @param resources the resources.
+     * @param prepare true to flow prepare, false to flow commit.
+     * @return the result of each resource.
+     */
+    static Map<JTAResource, Result> flow(List<JTAResource> resources, final boolean prepare) {
+        if (tc.isEntryEnabled())
+            Tr.entry(tc, "flow", new Object[] { resources, prepare });
+
+        final ThreadPoolExecutor executor = getExecutor();
+        final int last = resources.size() - 1;
+        final List<Future<Result>> futures = new ArrayList<Future<Result>>(last);
+
+        for (int i = 0; i < last; i++) {
+            final JTAResource resource = resources.get(i);
+            futures.add(executor.submit(new Callable<Result>() {
+                @Override
+                public Result call() {
+                    return flow(resource, prepare);
+                }
+            }));
+        }
+
+        final Map<JTAResource, Result> results = new IdentityHashMap<JTAResource, Result>();
+        results.put(resources.get(last), flow(resources.get(last), prepare));
+
+        boolean interrupted = false;
+        for (int i = 0; i < last; i++) {
+            Result result;
+            while (true) {
+                try {
+                    result = futures.get(i).get();
+                    break;
+                } catch (InterruptedException e) {
+                    // No FFDC Code Needed.
+                    // The flow is already in progress, so it must be allowed to complete.
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // No FFDC Code Needed.
+                    // flow catches everything, so this does not happen
+                    result = new Result(0, e.getCause());
+                    break;
+                }
+            }
+            results.put(resources.get(i), result);
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        if (tc.isEntryEnabled())
+            Tr.exit(tc, "flow", results.size());
+        return results;
+    }
+
+    /**
+     * Flows prepare or commit to a resource.
+     *
+     * @return the vote or exception of the resource.
+     */
+    private static Result flow(JTAResource resource, boolean prepare) {
+        try {
+            if (prepare)
+                return new Result(resource.prepare(), null);
+            resource.commit();
+            return new Result(XAResource.XA_OK, null);
+        } catch (Throwable t) {
+            // No FFDC Code Needed.
+            // RegisteredResources processes the exception as if it made the flow itself
+            return new Result(0, t);
+        }
+    }
+
+    /**
+     * Returns the thread pool, creating it on first use. The number of threads is read from
+     * the configuration provider on each use, so that the pool follows a change to it.
+     */
+    static synchronized ThreadPoolExecutor getExecutor() {
+        final int threads = Math.max(1, ConfigurationProviderManager.getConfigurationProvider().getParallelTwoPhaseCommitThreads());
+        if (_executor == null) {
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, "Creating pool for concurrent resource flows", threads);
+            _executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                            new SynchronousQueue<Runnable>(), new JTMThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+            _executor.allowCoreThreadTimeOut(true);
+        } else if (_executor.getMaximumPoolSize() != threads) {
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, "Resizing pool for concurrent resource flows", new Object[] { _executor.getMaximumPoolSize(), threads });
+            // the core size must never be more than the maximum size
+            if (threads > _executor.getMaximumPoolSize()) {
+                _executor.setMaximumPoolSize(threads);
+                _executor.setCorePoolSize(threads);
+            } else {
+                _executor.setCorePoolSize(threads);
+                _executor.setMaximumPoolSize(threads);
+            }
+        }
+        return _executor;
+    }
+}
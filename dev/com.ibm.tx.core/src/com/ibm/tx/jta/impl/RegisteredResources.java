@@ -16,6 +16,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.transaction.HeuristicCommitException;
 import javax.transaction.HeuristicMixedException;
@@ -214,6 +216,12 @@ public class RegisteredResources implements Comparator<JTAResource> {
     // A count of how many Resources have voted as XA_OK and not read-only or rollback.
     protected int _okVoteCount;
 
+    /**
+     * The results of prepare or commit flows that were made concurrently and have not
+     * been processed yet, or null if the current flows are made one at a time.
+     */
+    private Map<JTAResource, ConcurrentResourceFlows.Result> _flowResults;
+
     /**
      * Initialises the list of RegisteredResources to be empty.
      * <p>
@@ -991,7 +999,7 @@ public class RegisteredResources implements Comparator<JTAResource> {
             }
 
             if (informResource) {
-                currResult = currResource.prepare();
+                currResult = flowPrepare(currResource);
             }
 
             if (xaFlowCallbackEnabled) {
@@ -1191,6 +1199,12 @@ public class RegisteredResources implements Comparator<JTAResource> {
                     _resourceObjects.add(0, _onePhaseResourceEnlisted);
             }
 
+            // If configured to do so, prepare the XA resources concurrently.  Their votes are
+            // processed by the loop below as if it had prepared them itself.
+            if (ConcurrentResourceFlows.isEnabled()) {
+                prepareConcurrently();
+            }
+
             // Browse through the participants, preparing them, and obtain a consolidated
             // result.  We should stop after the first rollback vote.  If there is only a
             // single resource that remains we issue a commit_one_phase.  If only one resource
@@ -1299,6 +1313,10 @@ public class RegisteredResources implements Comparator<JTAResource> {
                     _resourceObjects.add(0, _onePhaseResourceEnlisted);
             }
         } finally {
+            if (_flowResults != null) {
+                processRemainingPrepareResults();
+            }
+
             if (_diagnosticsRequired) {
                 logDiagnostics(JTAResourceBase.PREPARE_DIAGNOSTICS);
             }
@@ -1309,6 +1327,113 @@ public class RegisteredResources implements Comparator<JTAResource> {
         return _prepareResult;
     }
 
+    /**
+     * Prepares the XA resources of the transaction concurrently. The results are kept
+     * for prepareResource, which processes them in the usual order.
+     * 
+     * Resources are prepared one at a time if the prepare order matters, that is, if
+     * resources have a priority, if there are asynchronous resources, or if XA flow
+     * callbacks are enabled for test.
+     * 
+     * The last resource to be processed, at index 0, is not prepared here. It is either
+     * the one phase resource, which is completed later by commitLastAgent, or it is
+     * prepared or committed with the one phase commit optimization by distributePrepare
+     * once the votes of all the other resources are known.
+     */
+    private void prepareConcurrently() {
+        if (gotAsyncResources() || _gotPriorityResourcesEnlisted || xaFlowCallbackEnabled) {
+            return;
+        }
+
+        final List<JTAResource> resources = new ArrayList<JTAResource>(_resourceObjects.size());
+        for (int i = _resourceObjects.size(); --i > 0;) {
+            final JTAResource resource = _resourceObjects.get(i);
+
+            if (resource instanceof JTAXAResourceImpl) {
+                resources.add(resource);
+            }
+        }
+
+        if (resources.size() > 1) {
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, "Preparing resources concurrently", resources.size());
+            _flowResults = ConcurrentResourceFlows.flow(resources, true);
+        }
+    }
+
+    /**
+     * Processes the prepare results of resources that were prepared concurrently but
+     * not processed because distributePrepare stopped early, for example after a
+     * rollback vote. This updates the state of each resource as prepareResource would,
+     * so that rollback is flowed to the resources that are prepared.
+     */
+    private void processRemainingPrepareResults() {
+        final Map<JTAResource, ConcurrentResourceFlows.Result> results = _flowResults;
+
+        for (JTAResource resource : results.keySet().toArray(new JTAResource[results.size()])) {
+            try {
+                final int result = prepareResource(resource);
+                resource.setResourceStatus(result == XAResource.XA_OK ? StatefulResource.PREPARED : StatefulResource.COMPLETED);
+            } catch (Exception e) {
+                // No FFDC Code Needed.
+                // prepareResource has already processed the failure and the transaction is rolling back.
+            }
+        }
+
+        _flowResults = null;
+    }
+
+    /**
+     * Flows prepare to a resource, or, if the resource was prepared concurrently,
+     * returns its vote or raises its exception.
+     */
+    private int flowPrepare(JTAResource resource) throws XAException {
+        final ConcurrentResourceFlows.Result result = _flowResults == null ? null : _flowResults.remove(resource);
+        return result == null ? resource.prepare() : result.get();
+    }
+
+    /**
+     * Flows commit to a resource, or, if the resource was committed concurrently,
+     * raises its exception if there was one.
+     */
+    private void flowCommit(JTAResource resource) throws XAException {
+        final ConcurrentResourceFlows.Result result = _flowResults == null ? null : _flowResults.remove(resource);
+        if (result == null) {
+            resource.commit();
+        } else {
+            result.get();
+        }
+    }
+
+    /**
+     * Commits the prepared XA resources of the transaction concurrently. The results
+     * are kept for deliverOutcome, which processes them in the usual order.
+     * 
+     * Resources are committed one at a time on retry and during recovery, if resources
+     * have a priority, if there are asynchronous resources, or if XA flow callbacks are
+     * enabled for test.
+     */
+    private void commitConcurrently() {
+        if (_retryCompletion || _transaction._inRecovery || gotAsyncResources() || _gotPriorityResourcesEnlisted || xaFlowCallbackEnabled) {
+            return;
+        }
+
+        final List<JTAResource> resources = new ArrayList<JTAResource>(_resourceObjects.size());
+        for (int i = 0; i < _resourceObjects.size(); i++) {
+            final JTAResource resource = _resourceObjects.get(i);
+
+            if (resource instanceof JTAXAResourceImpl && resource.getResourceStatus() == StatefulResource.PREPARED) {
+                resources.add(resource);
+            }
+        }
+
+        if (resources.size() > 1) {
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, "Committing resources concurrently", resources.size());
+            _flowResults = ConcurrentResourceFlows.flow(resources, false);
+        }
+    }
+
     protected boolean gotAsyncResources() {
         return false;
     }
@@ -1384,7 +1509,7 @@ public class RegisteredResources implements Comparator<JTAResource> {
                         }
 
                         if (informResource) {
-                            currResource.commit();
+                            flowCommit(currResource);
                         }
 
                         currResource.setResourceStatus(StatefulResource.COMMITTED);
@@ -1676,6 +1801,12 @@ public class RegisteredResources implements Comparator<JTAResource> {
                 retryRequired = completeAsyncResources();
             }
 
+            // If configured to do so, commit the XA resources concurrently.  Their results are
+            // processed by the loop below as if it had committed them itself.
+            if (_outcome && ConcurrentResourceFlows.isEnabled()) {
+                commitConcurrently();
+            }
+
             boolean priorityResourceHasFailed = false;
             int failedPriority = 0;
             final int resourceCount = _resourceObjects.size();
@@ -1716,6 +1847,9 @@ public class RegisteredResources implements Comparator<JTAResource> {
                 retryRequired = getAsyncCompletionResults(startTime, retryRequired);
             }
         } finally {
+            // Every resource that was committed concurrently is processed by the loop
+            _flowResults = null;
+
             updateHeuristicOutcome(calculateHeuristicOutcome());
 
             _retryCompletion = true; // Any further calls are retries
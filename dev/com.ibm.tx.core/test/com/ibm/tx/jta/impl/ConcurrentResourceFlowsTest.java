@@ -0,0 +1,427 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.tx.jta.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.transaction.HeuristicMixedException;
+import javax.transaction.RollbackException;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.tx.config.ConfigurationProvider;
+import com.ibm.tx.config.ConfigurationProviderManager;
+import com.ibm.ws.Transaction.JTA.JTAResource;
+import com.ibm.ws.Transaction.JTA.StatefulResource;
+
+/**
+ * Unit tests for the concurrent prepare and commit of the XA resources of a transaction,
+ * with stub XA resources that can only complete when the expected number of them are
+ * flowed at the same time.
+ */
+public class ConcurrentResourceFlowsTest {
+
+    private final Mockery mock = new Mockery() {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    private final ConfigurationProvider provider = mock.mock(ConfigurationProvider.class);
+    private final XARecoveryData recoveryData = mock.mock(XARecoveryData.class);
+
+    /**
+     * Created once the configuration provider is set, which TransactionImpl needs to initialize.
+     */
+    private TransactionImpl tran;
+    private ConfigurationProvider previousProvider;
+
+    /**
+     * Counts the prepare flows of all the resources of a test, to check their order.
+     */
+    private final AtomicInteger prepareSequence = new AtomicInteger();
+
+    /**
+     * XA resource that votes or fails as configured, and optionally waits at a barrier
+     * in prepare and commit so that it only completes if it runs concurrently with others.
+     */
+    private class StubXAResource implements XAResource {
+        int vote = XAResource.XA_OK;
+        XAException prepareError;
+        XAException commitError;
+        CyclicBarrier barrier;
+        final AtomicInteger prepares = new AtomicInteger();
+        final AtomicInteger commits = new AtomicInteger();
+        final AtomicInteger onePhaseCommits = new AtomicInteger();
+        final AtomicInteger rollbacks = new AtomicInteger();
+        volatile int prepareOrder;
+
+        StubXAResource(int vote, CyclicBarrier barrier) {
+            this.vote = vote;
+            this.barrier = barrier;
+        }
+
+        private void await() throws XAException {
+            if (barrier != null)
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw (XAException) new XAException("the resources were not flowed concurrently").initCause(e);
+                }
+        }
+
+        @Override
+        public int prepare(Xid xid) throws XAException {
+            prepares.incrementAndGet();
+            prepareOrder = prepareSequence.incrementAndGet();
+            await();
+            if (prepareError != null)
+                throw prepareError;
+            return vote;
+        }
+
+        @Override
+        public void commit(Xid xid, boolean onePhase) throws XAException {
+            if (onePhase) {
+                onePhaseCommits.incrementAndGet();
+                return;
+            }
+            commits.incrementAndGet();
+            await();
+            if (commitError != null)
+                throw commitError;
+        }
+
+        @Override
+        public void rollback(Xid xid) throws XAException {
+            rollbacks.incrementAndGet();
+        }
+
+        @Override
+        public void end(Xid xid, int flags) {}
+
+        @Override
+        public void forget(Xid xid) {}
+
+        @Override
+        public int getTransactionTimeout() {
+            return 0;
+        }
+
+        @Override
+        public boolean isSameRM(XAResource xares) {
+            return xares == this;
+        }
+
+        @Override
+        public Xid[] recover(int flag) {
+            return new Xid[0];
+        }
+
+        @Override
+        public boolean setTransactionTimeout(int seconds) {
+            return false;
+        }
+
+        @Override
+        public void start(Xid xid, int flags) {}
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mock.checking(new Expectations() {
+            {
+                allowing(provider).getParallelTwoPhaseCommitThreads();
+                will(returnValue(4));
+                ignoring(provider);
+                ignoring(recoveryData);
+            }
+        });
+        previousProvider = ConfigurationProviderManager.getConfigurationProvider();
+        ConfigurationProviderManager.setConfigurationProvider(provider);
+
+        tran = mock.mock(TransactionImpl.class);
+        mock.checking(new Expectations() {
+            {
+                ignoring(tran);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        ConfigurationProviderManager.setConfigurationProvider(previousProvider);
+    }
+
+    private JTAXAResourceImpl resource(StubXAResource xaResource) {
+        return new JTAXAResourceImpl(null, xaResource, recoveryData);
+    }
+
+    /**
+     * Registered resources that do not write to a recovery log.
+     */
+    private RegisteredResources registeredResources(StubXAResource... xaResources) {
+        RegisteredResources rr = new RegisteredResources(tran, false) {
+            @Override
+            protected void logResources() {}
+        };
+        // the resource at index 0 is prepared last
+        for (StubXAResource xaResource : xaResources) {
+            JTAXAResourceImpl resource = resource(xaResource);
+            resource.setResourceStatus(StatefulResource.REGISTERED);
+            rr.getResourceObjects().add(resource);
+        }
+        return rr;
+    }
+
+    @Test
+    public void testResultGet() throws Exception {
+        assertEquals(XAResource.XA_RDONLY, new ConcurrentResourceFlows.Result(XAResource.XA_RDONLY, null).get());
+
+        XAException xae = new XAException(XAException.XA_HEURMIX);
+        try {
+            new ConcurrentResourceFlows.Result(0, xae).get();
+            fail("no XAException");
+        } catch (XAException e) {
+            assertSame(xae, e);
+            assertEquals(XAException.XA_HEURMIX, e.errorCode);
+        }
+
+        IllegalStateException ise = new IllegalStateException();
+        try {
+            new ConcurrentResourceFlows.Result(0, ise).get();
+            fail("no RuntimeException");
+        } catch (IllegalStateException e) {
+            assertSame(ise, e);
+        }
+
+        OutOfMemoryError oome = new OutOfMemoryError();
+        try {
+            new ConcurrentResourceFlows.Result(0, oome).get();
+            fail("no Error");
+        } catch (OutOfMemoryError e) {
+            assertSame(oome, e);
+        }
+
+        Exception checked = new Exception();
+        try {
+            new ConcurrentResourceFlows.Result(0, checked).get();
+            fail("no RuntimeException");
+        } catch (RuntimeException e) {
+            assertSame(checked, e.getCause());
+        }
+    }
+
+    @Test
+    public void testFlowConcurrently() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(3);
+        StubXAResource[] xaResources = new StubXAResource[3];
+        List<JTAResource> resources = new ArrayList<JTAResource>();
+        for (int i = 0; i < xaResources.length; i++)
+            resources.add(resource(xaResources[i] = new StubXAResource(XAResource.XA_OK, barrier)));
+
+        Map<JTAResource, ConcurrentResourceFlows.Result> results = ConcurrentResourceFlows.flow(resources, true);
+        assertEquals(3, results.size());
+        for (JTAResource resource : resources)
+            assertEquals(XAResource.XA_OK, results.get(resource).get());
+
+        results = ConcurrentResourceFlows.flow(resources, false);
+        for (JTAResource resource : resources)
+            assertEquals(XAResource.XA_OK, results.get(resource).get());
+        for (StubXAResource xaResource : xaResources) {
+            assertEquals(1, xaResource.prepares.get());
+            assertEquals(1, xaResource.commits.get());
+        }
+    }
+
+    @Test
+    public void testPoolFollowsConfiguration() throws Exception {
+        assertEquals(4, ConcurrentResourceFlows.getExecutor().getMaximumPoolSize());
+
+        final ConfigurationProvider smaller = mock.mock(ConfigurationProvider.class, "smaller");
+        mock.checking(new Expectations() {
+            {
+                allowing(smaller).getParallelTwoPhaseCommitThreads();
+                will(returnValue(2));
+            }
+        });
+        ConfigurationProviderManager.setConfigurationProvider(smaller);
+        assertEquals(2, ConcurrentResourceFlows.getExecutor().getMaximumPoolSize());
+        assertEquals(2, ConcurrentResourceFlows.getExecutor().getCorePoolSize());
+
+        ConfigurationProviderManager.setConfigurationProvider(provider);
+        assertEquals(4, ConcurrentResourceFlows.getExecutor().getMaximumPoolSize());
+        assertEquals(4, ConcurrentResourceFlows.getExecutor().getCorePoolSize());
+    }
+
+    /**
+     * All but the last resource are prepared concurrently, and the last one is prepared after them.
+     */
+    @Test
+    public void testPrepareConcurrently() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(3);
+        StubXAResource last = new StubXAResource(XAResource.XA_OK, null);
+        StubXAResource[] others = { new StubXAResource(XAResource.XA_OK, barrier), new StubXAResource(XAResource.XA_OK, barrier),
+                                    new StubXAResource(XAResource.XA_RDONLY, barrier) };
+        RegisteredResources rr = registeredResources(last, others[0], others[1], others[2]);
+
+        assertEquals(XAResource.XA_OK, rr.distributePrepare(false, true));
+
+        assertEquals(3, rr._okVoteCount);
+        assertEquals(4, last.prepareOrder);
+        List<JTAResource> resources = rr.getResourceObjects();
+        assertEquals(StatefulResource.PREPARED, resources.get(0).getResourceStatus());
+        assertEquals(StatefulResource.PREPARED, resources.get(1).getResourceStatus());
+        assertEquals(StatefulResource.PREPARED, resources.get(2).getResourceStatus());
+        assertEquals(StatefulResource.COMPLETED, resources.get(3).getResourceStatus());
+    }
+
+    /**
+     * The last resource is committed in one phase when all the others vote read only.
+     */
+    @Test
+    public void testOnePhaseOptimization() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        StubXAResource last = new StubXAResource(XAResource.XA_OK, null);
+        StubXAResource first = new StubXAResource(XAResource.XA_RDONLY, barrier);
+        StubXAResource second = new StubXAResource(XAResource.XA_RDONLY, barrier);
+        RegisteredResources rr = registeredResources(last, first, second);
+
+        assertEquals(RegisteredResources.ONE_PHASE_OPT, rr.distributePrepare(false, true));
+
+        assertEquals(0, last.prepares.get());
+        assertEquals(1, last.onePhaseCommits.get());
+        assertEquals(1, first.prepares.get());
+        assertEquals(1, second.prepares.get());
+    }
+
+    /**
+     * When the first resource to be processed votes rollback, the resources that were
+     * prepared concurrently with it are recorded as prepared, so that rollback reaches them.
+     */
+    @Test
+    public void testRollbackVote() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(3);
+        StubXAResource last = new StubXAResource(XAResource.XA_OK, null);
+        StubXAResource prepared = new StubXAResource(XAResource.XA_OK, barrier);
+        StubXAResource readOnly = new StubXAResource(XAResource.XA_RDONLY, barrier);
+        StubXAResource rollback = new StubXAResource(XAResource.XA_OK, barrier);
+        rollback.prepareError = new XAException(XAException.XA_RBROLLBACK);
+        RegisteredResources rr = registeredResources(last, prepared, readOnly, rollback);
+
+        try {
+            rr.distributePrepare(false, true);
+            fail("the transaction was not rolled back");
+        } catch (RollbackException e) {
+            assertSame(rollback.prepareError, e.getCause());
+        }
+
+        assertEquals(0, last.prepares.get());
+        List<JTAResource> resources = rr.getResourceObjects();
+        assertEquals(StatefulResource.REGISTERED, resources.get(0).getResourceStatus());
+        assertEquals(StatefulResource.PREPARED, resources.get(1).getResourceStatus());
+        assertEquals(StatefulResource.COMPLETED, resources.get(2).getResourceStatus());
+        assertEquals(StatefulResource.ROLLEDBACK, resources.get(3).getResourceStatus());
+
+        // as distributeRollback does, without the transaction state
+        rr._outcome = false;
+        rr.distributeOutcome();
+        assertEquals(1, prepared.rollbacks.get());
+        assertEquals(0, readOnly.rollbacks.get());
+        assertEquals(0, rollback.rollbacks.get());
+    }
+
+    /**
+     * A heuristic outcome that a resource reports from a concurrent prepare is handled as
+     * if the resource had been prepared on the thread of the transaction.
+     */
+    @Test
+    public void testHeuristicOnPrepare() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        StubXAResource last = new StubXAResource(XAResource.XA_OK, null);
+        StubXAResource prepared = new StubXAResource(XAResource.XA_OK, barrier);
+        StubXAResource mixed = new StubXAResource(XAResource.XA_OK, barrier);
+        mixed.prepareError = new XAException(XAException.XA_HEURMIX);
+        RegisteredResources rr = registeredResources(last, prepared, mixed);
+
+        try {
+            rr.distributePrepare(false, true);
+            fail("no heuristic");
+        } catch (HeuristicMixedException e) {
+            assertSame(mixed.prepareError, e.getCause());
+        }
+
+        assertEquals(StatefulResource.HEURISTIC_MIXED, rr.getHeuristicOutcome());
+        List<JTAResource> resources = rr.getResourceObjects();
+        assertEquals(StatefulResource.PREPARED, resources.get(1).getResourceStatus());
+        assertEquals(StatefulResource.HEURISTIC_MIXED, resources.get(2).getResourceStatus());
+    }
+
+    @Test
+    public void testCommitConcurrently() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(3);
+        StubXAResource[] xaResources = { new StubXAResource(XAResource.XA_OK, barrier), new StubXAResource(XAResource.XA_OK, barrier),
+                                         new StubXAResource(XAResource.XA_OK, barrier) };
+        RegisteredResources rr = registeredResources(xaResources);
+        for (JTAResource resource : rr.getResourceObjects())
+            resource.setResourceStatus(StatefulResource.PREPARED);
+        rr._outcome = true;
+
+        assertEquals(false, rr.distributeOutcome());
+
+        for (StubXAResource xaResource : xaResources)
+            assertEquals(1, xaResource.commits.get());
+        for (JTAResource resource : rr.getResourceObjects())
+            assertEquals(StatefulResource.COMMITTED, resource.getResourceStatus());
+    }
+
+    /**
+     * A heuristic outcome that a resource reports from a concurrent commit is recorded
+     * against that resource only.
+     */
+    @Test
+    public void testHeuristicOnCommit() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        StubXAResource committed = new StubXAResource(XAResource.XA_OK, barrier);
+        StubXAResource rolledBack = new StubXAResource(XAResource.XA_OK, barrier);
+        rolledBack.commitError = new XAException(XAException.XA_HEURRB);
+        RegisteredResources rr = registeredResources(committed, rolledBack);
+        for (JTAResource resource : rr.getResourceObjects())
+            resource.setResourceStatus(StatefulResource.PREPARED);
+        rr._outcome = true;
+
+        rr.distributeOutcome();
+
+        List<JTAResource> resources = rr.getResourceObjects();
+        assertEquals(StatefulResource.COMMITTED, resources.get(0).getResourceStatus());
+        assertEquals(StatefulResource.HEURISTIC_ROLLBACK, resources.get(1).getResourceStatus());
+        assertTrue(Arrays.asList(StatefulResource.HEURISTIC_MIXED, StatefulResource.HEURISTIC_ROLLBACK).contains(rr.getHeuristicOutcome()));
+    }
+}
@@ -210,6 +210,13 @@ public interface ConfigurationProvider
      */
     public boolean getPropagateXAResourceTransactionTimeout();
 
+    /**
+     * Returns the maximum number of threads used to prepare and commit the XA resources
+     * of a transaction concurrently, or 0 if resources are prepared and committed one
+     * at a time.
+     */
+    public int getParallelTwoPhaseCommitThreads();
+
     /**
      * @return
      */
@@ -1,7 +1,8 @@
 -include= ~../cnf/resources/bnd/feature.props
 symbolicName=com.ibm.websphere.appserver.concurrent-1.0
 visibility=public
-IBM-API-Package: javax.enterprise.concurrent; type="spec"
+IBM-API-Package: javax.enterprise.concurrent; type="spec", \
+ com.ibm.websphere.concurrent; type="ibm-api"
 IBM-ShortName: concurrent-1.0
 IBM-API-Service: javax.enterprise.concurrent.ContextService; id="DefaultContextService", \
  javax.enterprise.concurrent.ManagedExecutorService; id="DefaultManagedExecutorService", \
@@ -13,6 +14,7 @@ Subsystem-Name: Concurrency Utilities for Java EE 1.0
 -bundles=com.ibm.ws.javaee.platform.defaultresource, \
  com.ibm.websphere.javaee.concurrent.1.0; location:="dev/api/spec/,lib/", \
  com.ibm.ws.resource, \
- com.ibm.ws.concurrent
+ com.ibm.ws.concurrent, \
+ com.ibm.ws.concurrent.jdk8
 kind=ga
 edition=core
@@ -12,6 +12,7 @@ package com.ibm.ws.channel.ssl.internal;
 
 import java.io.IOException;
 import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
 
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
@@ -65,6 +66,18 @@ public class SSLWriteServiceContext extends SSLBaseServiceContext implements TCP
         this.handshakeCallback = new MyHandshakeCompletedCallback(this);
     }
 
+    /*
+     * @see com.ibm.wsspi.tcpchannel.TCPWriteRequestContext#transferFrom(java.nio.channels.FileChannel, long, long, int)
+     */
+    @Override
+    public long transferFrom(FileChannel source, long position, long count, int timeout) throws IOException {
+        // file data has to be encrypted, so it can never go straight to the socket
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "transferFrom is not supported over SSL, vc=" + getVCHash());
+        }
+        throw new IOException("FileChannel transfer is not supported on an SSL connection");
+    }
+
     /*
      * @see com.ibm.wsspi.tcpchannel.TCPWriteRequestContext#write(long, int)
      */
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package com.ibm.ws.bytebuffer.internal;
 
+import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
@@ -26,13 +27,14 @@ import com.ibm.websphere.ras.TraceComponent;
 import com.ibm.ws.ffdc.FFDCFilter;
 import com.ibm.wsspi.bytebuffer.WsByteBufferPoolManager;
 import com.ibm.wsspi.bytebuffer.WsByteBufferPoolManager.DirectByteBufferHelper;
+import com.ibm.wsspi.logging.Introspector;
 
 /**
  *
  */
-@Component(service = ByteBufferConfiguration.class, name = "com.ibm.ws.bytebuffer", configurationPid = "com.ibm.ws.bytebuffer", configurationPolicy = ConfigurationPolicy.OPTIONAL,
+@Component(service = { ByteBufferConfiguration.class, Introspector.class }, name = "com.ibm.ws.bytebuffer", configurationPid = "com.ibm.ws.bytebuffer", configurationPolicy = ConfigurationPolicy.OPTIONAL,
            property = { "service.vendor=IBM" })
-public class ByteBufferConfiguration {
+public class ByteBufferConfiguration implements Introspector {
     /** Trace service */
     private static final TraceComponent tc =
                     Tr.register(ByteBufferConfiguration.class,
@@ -68,6 +70,50 @@ public class ByteBufferConfiguration {
         return wsbbmgr;
     }
 
+    /**
+     * Query the per size class hit, miss, and refill statistics of the
+     * buffer pools. A custom pool manager class provides no statistics.
+     * 
+     * @return String[]
+     */
+    public String[] getPoolStatistics() {
+        WsByteBufferPoolManager mgr = this.wsbbmgr;
+        if (mgr instanceof WsByteBufferPoolManagerImpl) {
+            return ((WsByteBufferPoolManagerImpl) mgr).getPoolStatistics();
+        }
+        return new String[0];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getIntrospectorName() {
+        return "ByteBufferPoolIntrospector";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getIntrospectorDescription() {
+        return "The hit, miss, and refill statistics of the byte buffer pools";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void introspect(PrintWriter out) {
+        WsByteBufferPoolManager mgr = this.wsbbmgr;
+        if (null == mgr) {
+            out.println("No buffer pool manager");
+            return;
+        }
+        out.println("Buffer pool manager: " + mgr.getClass().getName());
+        String[] stats = getPoolStatistics();
+        if (0 == stats.length) {
+            out.println("No pool statistics");
+        }
+        for (String line : stats) {
+            out.println(line);
+        }
+    }
+
     public synchronized void modified(Map<String, Object> newConfig) {
         if (null == newConfig) {
             return;
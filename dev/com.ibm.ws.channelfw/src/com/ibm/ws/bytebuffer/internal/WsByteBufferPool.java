@@ -10,24 +10,57 @@
  *******************************************************************************/
 package com.ibm.ws.bytebuffer.internal;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.websphere.channelfw.osgi.CHFWBundle;
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
 import com.ibm.wsspi.channelfw.objectpool.ObjectDestroyer;
 import com.ibm.wsspi.channelfw.objectpool.ObjectFactory;
-import com.ibm.wsspi.channelfw.objectpool.TwoTierObjectPool;
 
 /**
  * A Pool of WsByteBuffers. The size of the entries and the pool depth are
  * configurable.
+ * <p>
+ * Each thread keeps a bounded stack (magazine) of free buffers, so the common
+ * allocate/release pair touches no shared state. When a magazine runs empty it
+ * is refilled with a batch from the shared depot, and when it fills up half of
+ * it is drained back to the depot as a batch. The depot is a lock-free queue,
+ * so there is no monitor on any allocation or release path.
  */
 public class WsByteBufferPool {
-    private int intEntrySize;
-    private int globalPoolSize;
-    private int localThreadPoolSize;
-    private TwoTierObjectPool pool = null;
-    private WsByteBufferFactory wsbbFactory = null;
+    /** Time a batch may sit unused in the depot before it may be discarded */
+    private static final long IDLE_DISCARD_TIME = 60000L;
+
+    private final int intEntrySize;
+    private final int globalPoolSize;
+    private final int localThreadPoolSize;
+    private final int batchSize;
+    private final int maxBatches;
+    private final boolean cleanUpOld;
+    private final WsByteBufferFactory wsbbFactory;
+    private final ObjectDestroyer destroyer;
+
+    /** Per-thread magazines */
+    private final ThreadLocal<Magazine> magazines = new ThreadLocal<Magazine>();
+    /** Shared tier of full batches, oldest first */
+    private final ConcurrentLinkedQueue<Batch> depot = new ConcurrentLinkedQueue<Batch>();
+    private final AtomicInteger depotBatches = new AtomicInteger(0);
+    /** Buffers handed out, only used when leak detection is on */
+    private final Map<Object, Object> inUseTable;
 
-    int intUniqueCounter = 0;
+    final AtomicInteger intUniqueCounter = new AtomicInteger(0);
+
+    // statistics for this size class
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong misses = new AtomicLong(0L);
+    private final AtomicLong refills = new AtomicLong(0L);
+    private final AtomicLong drains = new AtomicLong(0L);
+    private final AtomicLong discards = new AtomicLong(0L);
 
     private static final TraceComponent tc = Tr.register(WsByteBufferPool.class,
                                                          MessageConstants.WSBB_TRACE_NAME,
@@ -36,7 +69,7 @@ public class WsByteBufferPool {
     /**
      * Create the pool and obtain the values for the size of the pool
      * entries and the pool depth.
-     * 
+     *
      * @param entrySizeIn
      * @param _localPoolSize
      * @param _globalPoolSize
@@ -48,24 +81,50 @@ public class WsByteBufferPool {
 
         this.intEntrySize = entrySizeIn;
         this.globalPoolSize = _globalPoolSize;
-        this.localThreadPoolSize = _localPoolSize;
+        // a magazine needs at least one slot to be of any use
+        this.localThreadPoolSize = Math.max(1, _localPoolSize);
+        this.batchSize = Math.max(1, this.localThreadPoolSize / 2);
+        this.maxBatches = Math.max(1, this.globalPoolSize / this.batchSize);
+        this.cleanUpOld = cleanUpOld;
         if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
             Tr.event(tc, "Creating : " +
                          this.toString() +
                          " direct=" + isDirectPool +
                          " backing pool size: " + this.globalPoolSize +
-                         " local thread pool size: " + this.localThreadPoolSize);
+                         " local thread pool size: " + this.localThreadPoolSize +
+                         " batch size: " + this.batchSize);
         }
         this.wsbbFactory = new WsByteBufferFactory();
+        // direct buffers might come from a native allocator and need to be
+        // handed back when they are dropped from the pool
+        this.destroyer = isDirectPool ? this.wsbbFactory : null;
+        this.inUseTable = tracking ? new ConcurrentHashMap<Object, Object>() : null;
+    }
 
-        if (isDirectPool) {
-            this.pool = new TwoTierObjectPool(localThreadPoolSize, globalPoolSize, wsbbFactory, wsbbFactory, tracking);
-        } else {
-            this.pool = new TwoTierObjectPool(localThreadPoolSize, globalPoolSize, wsbbFactory, null, tracking);
+    /**
+     * Thread specific stack of free buffers.
+     */
+    private static final class Magazine {
+        final PooledWsByteBufferImpl[] entries;
+        int count = 0;
+        /** hits not yet added to the shared counter */
+        long pendingHits = 0L;
+
+        Magazine(int capacity) {
+            this.entries = new PooledWsByteBufferImpl[capacity];
         }
+    }
 
-        if (!cleanUpOld) {
-            this.pool.doNotCleanUpOld();
+    /**
+     * A group of free buffers moved between a magazine and the depot.
+     */
+    private static final class Batch {
+        final PooledWsByteBufferImpl[] entries;
+        final long timeFreed;
+
+        Batch(PooledWsByteBufferImpl[] entries, long timeFreed) {
+            this.entries = entries;
+            this.timeFreed = timeFreed;
         }
     }
 
@@ -75,27 +134,23 @@ public class WsByteBufferPool {
     public class WsByteBufferFactory implements ObjectFactory, ObjectDestroyer {
         private WsByteBufferPoolManagerImpl wsbbPoolManager = null;
 
+        @Override
         public Object create() {
-            int intUniqueId;
-
-            PooledWsByteBufferImpl pooledWSBB = new PooledWsByteBufferImpl();
-
             // The factory has the responsibility of supplying the unique identifier,
             // so set it into the WsByteBuffer at this time.
-            synchronized (this) {
-                intUniqueId = intUniqueCounter++;
-                if (intUniqueCounter == -1) {
-                    // if counter has rolled over to -1, then increment it because
-                    // -1 is the ID of all WsByteBuffers which have been created
-                    // with the wrap method
-                    intUniqueCounter++;
-                }
-
+            int intUniqueId = intUniqueCounter.getAndIncrement();
+            if (intUniqueId == -1) {
+                // -1 is the ID of all WsByteBuffers which have been created
+                // with the wrap method
+                intUniqueId = intUniqueCounter.getAndIncrement();
             }
+
+            PooledWsByteBufferImpl pooledWSBB = new PooledWsByteBufferImpl();
             pooledWSBB.setID(Integer.valueOf(intUniqueId));
             return pooledWSBB;
         }
 
+        @Override
         public void destroy(Object obj) {
 
             // If we try to set this on the initialization of the class,
@@ -113,46 +168,208 @@ public class WsByteBufferPool {
     /**
      * Return a buffer from the pool, or allocate a new buffer is the pool
      * is full.
-     * 
+     *
      * @return PooledWsByteBufferImpl
      */
     public PooledWsByteBufferImpl getEntry() {
-        return (PooledWsByteBufferImpl) this.pool.get();
+        Magazine magazine = getMagazine();
+        PooledWsByteBufferImpl ret = null;
+
+        if (magazine.count > 0) {
+            ret = popFrom(magazine);
+            magazine.pendingHits++;
+        } else {
+            // magazine is empty, move a batch over from the depot
+            Batch batch = this.depot.poll();
+            if (null != batch) {
+                this.depotBatches.decrementAndGet();
+                this.refills.incrementAndGet();
+                flushHits(magazine);
+                PooledWsByteBufferImpl[] entries = batch.entries;
+                for (int i = 0; i < entries.length; i++) {
+                    magazine.entries[magazine.count++] = entries[i];
+                }
+                ret = popFrom(magazine);
+            }
+        }
+
+        if (null == ret) {
+            this.misses.incrementAndGet();
+            ret = (PooledWsByteBufferImpl) this.wsbbFactory.create();
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Pool " + this + " couldn't obtain buffer from either local or global pool, new buffer created");
+            }
+        }
+
+        if (null != this.inUseTable) {
+            this.inUseTable.put(ret, ret);
+        }
+        return ret;
     }
 
     /**
      * Return a buffer to the pool or free the buffer to be garbage
      * collected if the pool is full.
-     * 
+     *
      * @param buffer to be released.
      * @param entryID
      */
     public void release(Object buffer, Object entryID) {
-        this.pool.put(buffer);
+        if (null == buffer) {
+            throw new NullPointerException();
+        }
+        if (null != this.inUseTable) {
+            this.inUseTable.remove(buffer);
+        }
+        Magazine magazine = getMagazine();
+        if (magazine.count == magazine.entries.length) {
+            drain(magazine);
+        }
+        magazine.entries[magazine.count++] = (PooledWsByteBufferImpl) buffer;
+    }
+
+    /**
+     * Access the calling thread's magazine, creating it if required.
+     *
+     * @return Magazine
+     */
+    private Magazine getMagazine() {
+        Magazine magazine = this.magazines.get();
+        if (null == magazine) {
+            magazine = new Magazine(this.localThreadPoolSize);
+            this.magazines.set(magazine);
+        }
+        return magazine;
+    }
+
+    private PooledWsByteBufferImpl popFrom(Magazine magazine) {
+        int index = --magazine.count;
+        PooledWsByteBufferImpl ret = magazine.entries[index];
+        magazine.entries[index] = null;
+        return ret;
+    }
+
+    private void flushHits(Magazine magazine) {
+        if (0L != magazine.pendingHits) {
+            this.hits.addAndGet(magazine.pendingHits);
+            magazine.pendingHits = 0L;
+        }
+    }
+
+    /**
+     * Move the oldest batch of buffers out of a full magazine into the depot,
+     * keeping the most recently used (cache warm) buffers local.
+     *
+     * @param magazine
+     */
+    private void drain(Magazine magazine) {
+        PooledWsByteBufferImpl[] entries = new PooledWsByteBufferImpl[this.batchSize];
+        System.arraycopy(magazine.entries, 0, entries, 0, this.batchSize);
+        int remaining = magazine.count - this.batchSize;
+        System.arraycopy(magazine.entries, this.batchSize, magazine.entries, 0, remaining);
+        for (int i = remaining; i < magazine.count; i++) {
+            magazine.entries[i] = null;
+        }
+        magazine.count = remaining;
+        flushHits(magazine);
+        this.drains.incrementAndGet();
+        pushBatch(entries);
+    }
+
+    /**
+     * Put a batch into the depot, or discard it if the depot is at its
+     * configured depth.
+     *
+     * @param entries
+     */
+    private void pushBatch(PooledWsByteBufferImpl[] entries) {
+        long now = CHFWBundle.getApproxTime();
+        if (this.depotBatches.incrementAndGet() > this.maxBatches) {
+            this.depotBatches.decrementAndGet();
+            discard(entries);
+        } else {
+            this.depot.offer(new Batch(entries, now));
+        }
+
+        if (this.cleanUpOld) {
+            // drop batches that have gone unused for a while, oldest first
+            Batch oldest = this.depot.peek();
+            while (null != oldest && now > (oldest.timeFreed + IDLE_DISCARD_TIME)) {
+                if (this.depot.remove(oldest)) {
+                    this.depotBatches.decrementAndGet();
+                    discard(oldest.entries);
+                }
+                oldest = this.depot.peek();
+            }
+        }
+    }
+
+    private void discard(PooledWsByteBufferImpl[] entries) {
+        this.discards.addAndGet(entries.length);
+        if (null != this.destroyer) {
+            for (int i = 0; i < entries.length; i++) {
+                if (null != entries[i]) {
+                    this.destroyer.destroy(entries[i]);
+                }
+            }
+        }
     }
 
     /**
      * Return the inUse table.
-     * 
+     *
      * @return Object[] an array of Objects representing the inUse table
      */
     public Object[] getInUse() {
-        return (this.pool.getInUseTable());
+        return (null == this.inUseTable) ? new Object[0] : this.inUseTable.keySet().toArray();
     }
 
     /**
      * Remove a buffer from the InUse pool. To be used when the buffer
      * should be removed without waiting for the release logic to remove it.
-     * 
+     *
      * @param buffer to be released.
      */
     public void removeFromInUse(Object buffer) {
-        this.pool.removeFromInUse(buffer);
+        if (null == buffer) {
+            throw new NullPointerException();
+        }
+        if (null != this.inUseTable) {
+            this.inUseTable.remove(buffer);
+        }
+    }
+
+    /**
+     * Query the buffer size served by this pool.
+     *
+     * @return int
+     */
+    public int getEntrySize() {
+        return this.intEntrySize;
+    }
+
+    /**
+     * Provide the current statistics of this pool. Magazine hits are added
+     * to the shared count whenever a magazine refills or drains, so the hit
+     * count may trail the true value by up to one magazine per thread.
+     *
+     * @return String
+     */
+    public String getStatistics() {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("size=").append(this.intEntrySize);
+        sb.append(" hits=").append(this.hits.get());
+        sb.append(" misses=").append(this.misses.get());
+        sb.append(" refills=").append(this.refills.get());
+        sb.append(" drains=").append(this.drains.get());
+        sb.append(" discards=").append(this.discards.get());
+        sb.append(" depotBatches=").append(this.depotBatches.get());
+        return sb.toString();
     }
 
     /**
      * Return a customized toString.
-     * 
+     *
      * @return String
      */
     @Override
@@ -170,9 +387,23 @@ public class WsByteBufferPool {
     /**
      * Caller is requesting that this pool purge it's thread local
      * information back to the main group pool.
-     * 
+     *
      */
     public void purgeThreadLocal() {
-        this.pool.purgeThreadLocal();
+        Magazine magazine = this.magazines.get();
+        if (null == magazine) {
+            return;
+        }
+        this.magazines.remove();
+        flushHits(magazine);
+        int index = 0;
+        while (index < magazine.count) {
+            int len = Math.min(this.batchSize, magazine.count - index);
+            PooledWsByteBufferImpl[] entries = new PooledWsByteBufferImpl[len];
+            System.arraycopy(magazine.entries, index, entries, 0, len);
+            pushBatch(entries);
+            index += len;
+        }
+        magazine.count = 0;
     }
 }
@@ -76,6 +76,12 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
     private WsByteBufferPool[] poolsDirect = null;
     private int[] poolSizes = null;
 
+    // Size class lookup table. Each entry covers a 1K step of request sizes and
+    // holds the index of the first pool large enough for the smallest size in
+    // that step, so finding a pool never walks more than the pools in one step.
+    private static final int SIZE_CLASS_SHIFT = 10;
+    private int[] sizeClassIndex = null;
+
     // these are the local pool size, global pools will be 10 times larger in depth
     private static int[] defaultPoolSizes = { 32, 1024, 8192, 16384, 24576, 32768, 49152, 65536 };
     private static int[] defaultPoolDepths = { 30, 30, 30, 20, 20, 20, 10, 10 };
@@ -315,6 +321,8 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
             this.poolSizes[i] = bSizes[i];
         }
 
+        this.sizeClassIndex = buildSizeClassIndex(this.poolSizes);
+
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
             Tr.debug(tc, "Number of pools created: " + this.poolSizes.length);
         }
@@ -324,6 +332,54 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
         }
     }
 
+    /**
+     * Build the lookup table used to map a request size to its pool.
+     * 
+     * @param sizes pool entry sizes, ordered from smallest to largest
+     * @return int[]
+     */
+    private static int[] buildSizeClassIndex(int[] sizes) {
+        if (0 == sizes.length || 0 >= sizes[sizes.length - 1]) {
+            return new int[0];
+        }
+        int[] index = new int[((sizes[sizes.length - 1] - 1) >>> SIZE_CLASS_SHIFT) + 1];
+        int pool = 0;
+        for (int step = 0; step < index.length; step++) {
+            // smallest request size that lands in this step
+            int smallest = (step << SIZE_CLASS_SHIFT) + 1;
+            while (sizes[pool] < smallest) {
+                pool++;
+            }
+            index[step] = pool;
+        }
+        return index;
+    }
+
+    /**
+     * Find the pool whose entries are closest to, but not less than, the
+     * requested size.
+     * 
+     * @param entrySize
+     * @return int index of the pool, -1 if the size is larger than any pool
+     */
+    private int findPoolIndex(int entrySize) {
+        if (0 == this.sizeClassIndex.length) {
+            return -1;
+        }
+        if (entrySize <= 0) {
+            return 0;
+        }
+        int step = (entrySize - 1) >>> SIZE_CLASS_SHIFT;
+        if (step >= this.sizeClassIndex.length) {
+            return -1;
+        }
+        int i = this.sizeClassIndex[step];
+        while (entrySize > this.poolSizes[i]) {
+            i++;
+        }
+        return i;
+    }
+
     /**
      * Set the memory leak detection parameters. If the interval is 0 or
      * greater, then the detection code will enabled.
@@ -428,102 +484,101 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
             lookForLeaks(false);
         }
 
-        for (int i = 0; i < this.poolSizes.length; i++) {
+        // find the correct pool from which to get the buffer
+        int i = findPoolIndex(entrySize);
+        if (i >= 0) {
             ByteBuffer bytebufferFromPool = null;
             int intPoolSize = this.poolSizes[i];
 
-            // find the correct pool from which to get the buffer
-            if (entrySize <= intPoolSize) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "found a pool of size: " + intPoolSize);
+            }
+
+            WsByteBufferPool oWsByteBufferPool = null;
+            // get the pool that should be used
+            if (direct) {
+                oWsByteBufferPool = this.poolsDirect[i];
+            } else {
+                oWsByteBufferPool = this.pools[i];
+            }
+
+            // allocate an entry from the pool
+            PooledWsByteBufferImpl pooledWSBB = oWsByteBufferPool.getEntry();
+            // reset released flag so this buffer can be used again
+            pooledWSBB.resetReleaseCalled();
+
+            bytebufferFromPool = pooledWSBB.getWrappedByteBufferNonSafe();
+            if (bytebufferFromPool == null) {
                 if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                    Tr.debug(tc, "found a pool of size: " + intPoolSize);
+                    Tr.debug(tc, "no ByteBuffer so alloc a new one");
                 }
-
-                WsByteBufferPool oWsByteBufferPool = null;
-                // get the pool that should be used
+                // allocate the ByteBuffer and store it in the PoolEntry
                 if (direct) {
-                    oWsByteBufferPool = this.poolsDirect[i];
+                    allocateBufferDirect(pooledWSBB, intPoolSize, false);
+                    pooledWSBB.setIsDirectPool(true);
                 } else {
-                    oWsByteBufferPool = this.pools[i];
+                    bytebufferFromPool = ByteBuffer.allocate(intPoolSize);
+                    pooledWSBB.setIsDirectPool(false);
+                    pooledWSBB.setByteBufferNonSafe(bytebufferFromPool);
                 }
+                // keep the pool index for this entry,to quickly access on the release
+                pooledWSBB.pool = oWsByteBufferPool;
 
-                // allocate an entry from the pool
-                PooledWsByteBufferImpl pooledWSBB = oWsByteBufferPool.getEntry();
-                // reset released flag so this buffer can be used again
-                pooledWSBB.resetReleaseCalled();
-
-                bytebufferFromPool = pooledWSBB.getWrappedByteBufferNonSafe();
-                if (bytebufferFromPool == null) {
-                    if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                        Tr.debug(tc, "no ByteBuffer so alloc a new one");
-                    }
-                    // allocate the ByteBuffer and store it in the PoolEntry
-                    if (direct) {
-                        allocateBufferDirect(pooledWSBB, intPoolSize, false);
-                        pooledWSBB.setIsDirectPool(true);
-                    } else {
-                        bytebufferFromPool = ByteBuffer.allocate(intPoolSize);
-                        pooledWSBB.setIsDirectPool(false);
-                        pooledWSBB.setByteBufferNonSafe(bytebufferFromPool);
-                    }
-                    // keep the pool index for this entry,to quickly access on the release
-                    pooledWSBB.pool = oWsByteBufferPool;
-
-                    // WsByteBuffer needs to call back to us for duplicates/release/slice
-                    pooledWSBB.setPoolManagerRef(this);
-                } else {
+                // WsByteBuffer needs to call back to us for duplicates/release/slice
+                pooledWSBB.setPoolManagerRef(this);
+            } else {
 
-                    // reset the limit, position and mark to the "beginning"
-                    bytebufferFromPool.clear();
+                // reset the limit, position and mark to the "beginning"
+                bytebufferFromPool.clear();
 
-                    // reset the byte order back to the default
-                    bytebufferFromPool.order(java.nio.ByteOrder.BIG_ENDIAN);
+                // reset the byte order back to the default
+                bytebufferFromPool.order(java.nio.ByteOrder.BIG_ENDIAN);
 
-                    // reset the refCount
-                    pooledWSBB.intReferenceCount = 1;
+                // reset the refCount
+                pooledWSBB.intReferenceCount = 1;
 
-                    // reset buffer optomization algorithmic variables.
-                    pooledWSBB.getMin = -1;
-                    pooledWSBB.getMax = -1;
-                    pooledWSBB.putMin = -1;
-                    pooledWSBB.putMax = -1;
-                    pooledWSBB.readMin = -1;
-                    pooledWSBB.readMax = -1;
-                    pooledWSBB.actionState = PooledWsByteBufferImpl.COPY_ALL_INIT;
-                    pooledWSBB.quickBufferAction = WsByteBufferImpl.NOT_ACTIVATED;
-                }
+                // reset buffer optomization algorithmic variables.
+                pooledWSBB.getMin = -1;
+                pooledWSBB.getMax = -1;
+                pooledWSBB.putMin = -1;
+                pooledWSBB.putMax = -1;
+                pooledWSBB.readMin = -1;
+                pooledWSBB.readMax = -1;
+                pooledWSBB.actionState = PooledWsByteBufferImpl.COPY_ALL_INIT;
+                pooledWSBB.quickBufferAction = WsByteBufferImpl.NOT_ACTIVATED;
+            }
 
-                // set the limit to the size, the user can set limit to
-                // capacity if they want to use any possible extra space
-                pooledWSBB.limit(entrySize);
+            // set the limit to the size, the user can set limit to
+            // capacity if they want to use any possible extra space
+            pooledWSBB.limit(entrySize);
 
-                if ((TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
-                        || trackingBuffers()) {
+            if ((TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+                    || trackingBuffers()) {
 
-                    Throwable t = new Throwable();
-                    StackTraceElement[] ste = t.getStackTrace();
-                    if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                        if (ste.length >= 3) {
-                            Tr.debug(tc,
-                                     "BUFFER OBTAINED: Allocate: Calling Element: " + ste[2] + " Main ID: " + pooledWSBB.getID());
-                        }
-                        Tr.debug(tc, "Buffer allocated: " + pooledWSBB);
+                Throwable t = new Throwable();
+                StackTraceElement[] ste = t.getStackTrace();
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    if (ste.length >= 3) {
+                        Tr.debug(tc,
+                                 "BUFFER OBTAINED: Allocate: Calling Element: " + ste[2] + " Main ID: " + pooledWSBB.getID());
                     }
+                    Tr.debug(tc, "Buffer allocated: " + pooledWSBB);
+                }
 
-                    if (trackingBuffers()) {
-                        String sEntry = fillOutStackTrace(" (Allocate) ", ste);
-                        pooledWSBB.setOwnerID(sEntry);
+                if (trackingBuffers()) {
+                    String sEntry = fillOutStackTrace(" (Allocate) ", ste);
+                    pooledWSBB.setOwnerID(sEntry);
 
-                        pooledWSBB.addWsByteBuffer(pooledWSBB);
-                        pooledWSBB.addOwner(pooledWSBB.getOwnerID());
-                    }
+                    pooledWSBB.addWsByteBuffer(pooledWSBB);
+                    pooledWSBB.addOwner(pooledWSBB.getOwnerID());
                 }
+            }
 
-                if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
-                    Tr.exit(tc, "allocateCommon");
-                }
-                return pooledWSBB;
+            if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
+                Tr.exit(tc, "allocateCommon");
             }
-        } // end-pool loop
+            return pooledWSBB;
+        }
 
         // Either we have no pools or the allocate size is bigger
         // than our biggest pool, so allocate "as is"
@@ -999,6 +1054,21 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
         return (oWsByteBuffer);
     }
 
+    /**
+     * Provide the hit, miss, and refill counts for each size class, heap
+     * pools first and then direct pools.
+     * 
+     * @return String[]
+     */
+    public String[] getPoolStatistics() {
+        String[] stats = new String[this.poolSizes.length * 2];
+        for (int i = 0; i < this.poolSizes.length; i++) {
+            stats[i] = "heap " + this.pools[i].getStatistics();
+            stats[this.poolSizes.length + i] = "direct " + this.poolsDirect[i].getStatistics();
+        }
+        return stats;
+    }
+
     /**
      * When a thread is being destroyed, this api will trigger each of the
      * buffer pools to purge their respective threadlocal levels.
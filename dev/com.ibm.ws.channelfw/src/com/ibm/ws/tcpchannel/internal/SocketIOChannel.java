@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SocketChannel;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
@@ -247,6 +248,32 @@ public abstract class SocketIOChannel implements FFDCSelfIntrospectable {
         throw new IOException("attemptWriteToSocketUsingNIO not overridden");
     }
 
+    /**
+     * Attempt to move a region of the given file straight to the socket with
+     * FileChannel.transferTo, without copying it through any user buffers.
+     * 
+     * @param fc
+     * @param position
+     *            - file position of the first byte to write
+     * @param count
+     *            - maximum number of bytes to write
+     * @return long - number of bytes written, 0 if the socket is not currently writable
+     * @throws IOException
+     */
+    protected long attemptTransferToSocket(FileChannel fc, long position, long count) throws IOException {
+        try {
+            return fc.transferTo(position, count, this.channel);
+        } catch (IOException ioe) {
+            // http://bugs.sun.com/view_bug.do?bug_id=5103988
+            // Linux throws this exception for EAGAIN by mistake (fixed in JDK7)
+            String msg = ioe.getMessage();
+            if (null != msg && msg.contains("Resource temporarily unavailable")) {
+                return 0;
+            }
+            throw ioe;
+        }
+    }
+
     /**
      * Close the underlying IO transport
      */
@@ -89,6 +89,8 @@ public class SocketRWChannelSelector extends ChannelSelector implements Runnable
         boolean completeOperation = true;
         TCPBaseRequestContext req = null;
         SelectionKey selectedKey = null;
+        // number of ready reads this pass may still complete on this thread
+        int inlineBudget = wqm.inlineReadBudget;
 
         // If we were woken up because we have work to do, do it.
         Set<SelectionKey> keySet = selector.selectedKeys();
@@ -127,10 +129,29 @@ public class SocketRWChannelSelector extends ChannelSelector implements Runnable
             }
 
             if (completeOperation) {
+                if (inlineBudget > 0 && wqm.canCompleteInline(req)) {
+                    // complete the read on this thread, saving the handoff to a
+                    // worker. Clear the interest set first, as the callback may
+                    // queue its next read before returning.
+                    inlineBudget--;
+                    try {
+                        selectedKey.interestOps(0);
+                    } catch (CancelledKeyException cke) {
+                        // ignore, since we already got the key and the data
+                    }
+                    if (req.getConfig().getDumpStatsInterval() > 0) {
+                        req.getTCPConnLink().getTCPChannel().totalInlineReads.incrementAndGet();
+                    }
+                    wqm.inlineRun(req);
+                    continue;
+                }
                 // try to dispatch request. if it fails, just leave key alone,
                 // and it should get selected and tried again the next time through
                 // the selector.
                 if (wqm.dispatch(req, null)) {
+                    if (req.isRequestTypeRead() && !req.blockedThread && req.getConfig().getDumpStatsInterval() > 0) {
+                        req.getTCPConnLink().getTCPChannel().totalDispatchedReads.incrementAndGet();
+                    }
                     // Dispatch worked, so set key's interest set to empty, so it isn't
                     // re-selected
                     // until the user asks us to do more work.
@@ -90,6 +90,9 @@ public abstract class TCPChannel implements InboundChannel, OutboundChannel, FFD
     protected final AtomicLong totalAsyncWriteRetries = new AtomicLong(0);
     protected final AtomicLong totalPartialAsyncWrites = new AtomicLong(0);
     protected final AtomicLong totalPartialSyncWrites = new AtomicLong(0);
+    protected final AtomicLong totalInlineReads = new AtomicLong(0);
+    protected final AtomicLong totalDispatchedReads = new AtomicLong(0);
+    protected final AtomicLong totalInlineHandoffs = new AtomicLong(0);
     protected final AtomicLong totalConnections = new AtomicLong(0);
     protected final AtomicLong maxConcurrentConnections = new AtomicLong(0);
 
@@ -665,6 +668,9 @@ public abstract class TCPChannel implements InboundChannel, OutboundChannel, FFD
         System.out.println("   Total Async write partial writes: " + this.totalPartialAsyncWrites.get());
         System.out.println("   Total Sync write requests: " + this.totalSyncWrites.get());
         System.out.println("   Total Sync write partial writes: " + this.totalPartialSyncWrites.get());
+        System.out.println("   Total selector reads completed inline: " + this.totalInlineReads.get());
+        System.out.println("   Total selector reads dispatched to workers: " + this.totalDispatchedReads.get());
+        System.out.println("   Total inline reads handed off to workers: " + this.totalInlineHandoffs.get());
     }
 
     class StatisticsLogger implements Runnable {
@@ -37,6 +37,7 @@ public class TCPFactoryConfiguration implements FFDCSelfIntrospectable {
     protected static final String SELECTOR_WAKEUP = "selectorWakeup";
     protected static final String CANCEL_KEY_ON_CLOSE = "cancelKeyOnClose";
     protected static final String COMBINE_SELECTORS = "combineSelectors";
+    protected static final String INLINE_READ_BUDGET = "inlineReadBudget";
     protected static final String COMM_CLASS = "commClass";
     protected static final String EARLY_BINDS = "earlyBinds";
 
@@ -50,6 +51,7 @@ public class TCPFactoryConfiguration implements FFDCSelfIntrospectable {
     private static boolean selectorYield = false;
     private static boolean cancelKeyOnClose = false;
     private static boolean combineSelectors = false;
+    private static int inlineReadBudget = 0;
 
     private final static String commClassAio = "com.ibm.ws.tcpchannel.internal.AioTCPChannel";
     private final static String commClassNio = "com.ibm.ws.tcpchannel.internal.NioTCPChannel";
@@ -195,6 +197,16 @@ public class TCPFactoryConfiguration implements FFDCSelfIntrospectable {
                             continue;
                         }
 
+                        if (key.equalsIgnoreCase(INLINE_READ_BUDGET)) {
+                            // convert and check
+                            keyType = ValidateUtils.KEY_TYPE_INT;
+                            minValue = ValidateUtils.INLINE_READ_BUDGET_MIN;
+                            maxValue = ValidateUtils.INLINE_READ_BUDGET_MAX;
+                            inlineReadBudget = Integer.parseInt(value);
+                            result = ValidateUtils.testInlineReadBudget(inlineReadBudget);
+                            continue;
+                        }
+
                         if (key.equalsIgnoreCase(COMM_CLASS)) {
                             // convert and check
                             keyType = ValidateUtils.KEY_TYPE_STRING;
@@ -285,6 +297,13 @@ public class TCPFactoryConfiguration implements FFDCSelfIntrospectable {
         return combineSelectors;
     }
 
+    // The number of ready reads per selection pass that a selector may
+    // complete on its own thread, rather than on an executor thread, when
+    // the read callback allows it. Zero disables inline completion.
+    protected static int getInlineReadBudget() {
+        return inlineReadBudget;
+    }
+
     /**
      * Access the TCP communication class to use (NIO, AIO, etc)
      * 
@@ -313,12 +332,13 @@ public class TCPFactoryConfiguration implements FFDCSelfIntrospectable {
         Tr.debug(tc, SELECTOR_YIELD + ": " + selectorYield);
         Tr.debug(tc, CANCEL_KEY_ON_CLOSE + ": " + cancelKeyOnClose);
         Tr.debug(tc, COMBINE_SELECTORS + ": " + combineSelectors);
+        Tr.debug(tc, INLINE_READ_BUDGET + ": " + inlineReadBudget);
         Tr.debug(tc, COMM_CLASS + ": " + commClass);
     }
 
     @Override
     public String[] introspectSelf() {
-        String[] rc = new String[7];
+        String[] rc = new String[8];
         rc[0] = KEYS_PER_SELECTOR + maxKeysPerSelector;
         rc[1] = SELECTOR_IDLE_TIMEOUT + channelSelectorIdleTimeout;
         rc[2] = SELECTOR_TERM_TIMEOUT + channelSelectorWaitToTerminate;
@@ -326,6 +346,7 @@ public class TCPFactoryConfiguration implements FFDCSelfIntrospectable {
         rc[4] = CANCEL_KEY_ON_CLOSE + cancelKeyOnClose;
         rc[5] = COMBINE_SELECTORS + combineSelectors;
         rc[6] = COMM_CLASS + commClass;
+        rc[7] = INLINE_READ_BUDGET + inlineReadBudget;
         return rc;
     }
 
@@ -17,7 +17,6 @@ import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.SocketChannel;
 import java.util.List;
 
 import com.ibm.websphere.channelfw.osgi.CHFWBundle;
@@ -130,59 +129,149 @@ public abstract class TCPWriteRequestContextImpl extends TCPBaseRequestContext i
         return false;
     }
 
+    /*
+     * @see com.ibm.wsspi.tcpchannel.TCPWriteRequestContext#transferFrom(java.nio.channels.FileChannel, long, long, int)
+     */
+    @Override
+    public long transferFrom(FileChannel source, long position, long count, int time) throws IOException {
+        int timeout = time;
+        if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
+            Tr.entry(tc, "transferFrom(" + source + "," + position + "," + count + "," + timeout + ")");
+        }
+        getTCPConnLink().incrementNumWrites();
+        if (getConfig().getDumpStatsInterval() > 0) {
+            getTCPConnLink().getTCPChannel().totalSyncWrites.incrementAndGet();
+        }
+        if (null == source || position < 0 || count < 0) {
+            String errorMsg = "Invalid FileChannel region requested, position: " + position + " count: " + count;
+            IllegalArgumentException iae = new IllegalArgumentException(errorMsg);
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, errorMsg);
+            }
+            FFDCFilter.processException(iae, getClass().getName() + ".transferFrom", "138", this);
+            throw iae;
+        }
+
+        if (isAborted()) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                Tr.event(tc, "Previously aborted, unable to perform transfer");
+            }
+            throw new IOException("Connection aborted by program");
+        }
+
+        long numUserBytesWritten = 0L;
+        if (timeout == IMMED_TIMEOUT) {
+            immediateTimeout();
+        } else if (timeout == ABORT_TIMEOUT) {
+            abort();
+            immediateTimeout();
+        } else {
+            if (!getTCPConnLink().getVirtualConnection().isFileChannelCapable()) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
+                    Tr.exit(tc, "transferFrom: connection is not FileChannel capable");
+                }
+                throw new IOException("Connection is not FileChannel capable");
+            }
+            // if using channel timeout, reset to that value
+            if (timeout == TCPRequestContext.USE_CHANNEL_TIMEOUT) {
+                timeout = getConfig().getInactivityTimeout();
+            }
+            numUserBytesWritten = transferToSocket(source, position, count, count, timeout);
+        }
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
+            Tr.exit(tc, "transferFrom: " + numUserBytesWritten);
+        }
+        return numUserBytesWritten;
+    }
+
     private long fileChannelWrite(long minBytesToWrite, long timeout) throws IOException {
 
-        long maxToWrite = 0;
         long totalWritten = 0;
-        long numWritten = 0;
         long size = 0;
         long startPosition = 0;
         long minAllWrites = 0;
-        long startTime = 0;
-        boolean possibleTimeout = false;
 
         if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
             Tr.entry(tc, "fileChannelWrite(" + minBytesToWrite + ", " + timeout + ")");
         }
 
-        SocketChannel sc = getTCPConnLink().getSocketIOChannel().getChannel();
         FCWsByteBufferImpl fcb = (FCWsByteBufferImpl) getBuffer();
         FileChannel fc = fcb.getFileChannel();
 
-        startTime = CHFWBundle.getApproxTime();
-
         try {
             size = fc.size();
             startPosition = fc.position();
-
-            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                Tr.debug(tc, "size:" + size + " pos:" + startPosition);
+        } catch (IOException e) {
+            FFDCFilter.processException(e, getClass().getName() + ".fileChannelWrite", "190", this);
+            if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
+                Tr.exit(tc, "fileChannelWrite: IOException Thrown");
             }
+            throw e;
+        }
 
-            if (minBytesToWrite == TCPWriteRequestContext.WRITE_ALL_DATA) {
-                minAllWrites = size - startPosition;
-            } else {
-                minAllWrites = minBytesToWrite;
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "size:" + size + " pos:" + startPosition);
+        }
+
+        if (minBytesToWrite == TCPWriteRequestContext.WRITE_ALL_DATA) {
+            minAllWrites = size - startPosition;
+        } else {
+            minAllWrites = minBytesToWrite;
+        }
+
+        try {
+            totalWritten = transferToSocket(fc, startPosition, size - startPosition, minAllWrites, timeout);
+        } catch (IOException e) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
+                Tr.exit(tc, "fileChannelWrite: " + e.getClass().getSimpleName() + " Thrown");
             }
+            throw e;
+        }
+
+        // adjust the position to reflect how much was written
+        fc.position(startPosition + totalWritten);
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
+            Tr.exit(tc, "fileChannelWrite: " + totalWritten);
+        }
+        return totalWritten;
+    }
+
+    /**
+     * Move bytes from the FileChannel to the socket with transferTo until at
+     * least the minimum requested amount has been written, or the timeout
+     * expires.
+     * 
+     * @param fc
+     * @param startPosition
+     *            - file position of the first byte to write
+     * @param maxBytes
+     *            - the most bytes that may be written from the start position
+     * @param minBytes
+     *            - the amount that must be written for the request to complete
+     * @param timeout
+     * @return long - number of bytes written
+     * @throws IOException
+     */
+    private long transferToSocket(FileChannel fc, long startPosition, long maxBytes, long minBytes, long timeout) throws IOException {
+        long maxToWrite = 0;
+        long totalWritten = 0;
+        long numWritten = 0;
+        boolean possibleTimeout = false;
+
+        SocketIOChannel ioChannel = getTCPConnLink().getSocketIOChannel();
+        long startTime = CHFWBundle.getApproxTime();
 
+        try {
             // keep going until done since each transferTo can write random
             // amounts
-            while (totalWritten < minAllWrites) {
-                maxToWrite = size - totalWritten - startPosition;
+            while (totalWritten < minBytes) {
+                maxToWrite = maxBytes - totalWritten;
                 if (maxToWrite > FILE_CHANNEL_SEGMENT_SIZE) {
                     maxToWrite = FILE_CHANNEL_SEGMENT_SIZE;
                 }
-                try {
-                    numWritten = fc.transferTo(startPosition + totalWritten, maxToWrite, sc);
-                } catch (IOException ioe) {
-                    // http://bugs.sun.com/view_bug.do?bug_id=5103988
-                    // Linux throws this exception for EAGAIN by mistake (fixed in JDK7)
-                    if (ioe.getMessage().contains("Resource temporarily unavailable")) {
-                        numWritten = 0;
-                    } else {
-                        throw ioe;
-                    }
-                }
+                numWritten = ioChannel.attemptTransferToSocket(fc, startPosition + totalWritten, maxToWrite);
                 if (numWritten == 0) {
                     // TCP network buffers are probably full
                     Thread.yield();
@@ -207,29 +296,15 @@ public abstract class TCPWriteRequestContextImpl extends TCPBaseRequestContext i
             // If we have written some successfully, then update the user with that
             // info
             // and don't give the user back an error (exception)
-            if (totalWritten < minAllWrites) {
-                FFDCFilter.processException(e, getClass().getName() + ".fileChannelWrite", "190", this);
-                if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
-                    Tr.exit(tc, "fileChannelWrite: IOException Thrown");
-                }
+            if (totalWritten < minBytes) {
+                FFDCFilter.processException(e, getClass().getName() + ".transferToSocket", "290", this);
                 throw e;
             }
         }
 
-        // adjust the position to reflect how much was written
-        fc.position(startPosition + totalWritten);
-
         // check if this should give a timeout error
-        if (possibleTimeout && totalWritten < minAllWrites) {
-            IOException e = new SocketTimeoutException("Socket operation, used by a File Channel, timed out before it could be completed");
-            if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
-                Tr.exit(tc, "fileChannelWrite: SocketTimeoutException Thrown");
-            }
-            throw e;
-        }
-
-        if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
-            Tr.exit(tc, "fileChannelWrite: " + totalWritten);
+        if (possibleTimeout && totalWritten < minBytes) {
+            throw new SocketTimeoutException("Socket operation, used by a File Channel, timed out before it could be completed");
         }
         return totalWritten;
     }
@@ -47,6 +47,8 @@ public class ValidateUtils implements TCPConfigConstants {
     protected static final int SELECTOR_WAKEUP_WHEN_NEEDED = 1;
     protected static final int SELECTOR_WAKEUP_NEVER = 2;
     protected static final int SELECTOR_WAKEUP_IF_NO_FORCE_QUEUE = 3;
+    protected static final int INLINE_READ_BUDGET_MIN = 0;
+    protected static final int INLINE_READ_BUDGET_MAX = 1024;
     protected static final int MIN_SELECTOR_THREADS = 1;
     protected static final int MAX_SELECTOR_THREADS = 1000;
     protected static final int MIN_CONNECTION_THRESHOLD = 1;
@@ -366,6 +368,17 @@ public class ValidateUtils implements TCPConfigConstants {
         return testStringAsInt(value, SELECTOR_WAKEUP_OPTION_MIN, SELECTOR_WAKEUP_OPTION_MAX);
     }
 
+    /**
+     * Test the selector configuration for the number of read completions
+     * that may run inline per selection pass.
+     * 
+     * @param value
+     * @return int
+     */
+    public static int testInlineReadBudget(int value) {
+        return testInt(value, INLINE_READ_BUDGET_MIN, INLINE_READ_BUDGET_MAX);
+    }
+
     /**
      * Test the configuration for the number of selector threads to create
      * for the sync manager.
@@ -27,6 +27,7 @@ import com.ibm.ws.tcpchannel.internal.SocketIOChannel.IOResult;
 import com.ibm.wsspi.channelfw.VirtualConnection;
 import com.ibm.wsspi.channelfw.exception.ChannelException;
 import com.ibm.wsspi.kernel.service.utils.FrameworkState;
+import com.ibm.wsspi.tcpchannel.TCPInlineReadCompletedCallback;
 import com.ibm.wsspi.tcpchannel.TCPReadCompletedCallback;
 import com.ibm.wsspi.tcpchannel.TCPReadRequestContext;
 import com.ibm.wsspi.tcpchannel.TCPWriteCompletedCallback;
@@ -78,8 +79,12 @@ public class WorkQueueManager implements ChannelTermination, FFDCSelfIntrospecta
     protected boolean checkCancel;
     private final boolean combineSelectors;
     protected int wakeupOption;
+    protected int inlineReadBudget;
     private final ThreadGroup tGroup;
 
+    /** Read request being completed inline by the current selector thread */
+    private static final ThreadLocal<TCPBaseRequestContext> inlineRequest = new ThreadLocal<TCPBaseRequestContext>();
+
     /**
      * Constructor.
      */
@@ -92,6 +97,7 @@ public class WorkQueueManager implements ChannelTermination, FFDCSelfIntrospecta
         this.checkCancel = TCPFactoryConfiguration.getCancelKeyOnClose();
         this.wakeupOption = TCPFactoryConfiguration.getSelectorWakeup();
         this.combineSelectors = TCPFactoryConfiguration.getCombineSelectors();
+        this.inlineReadBudget = TCPFactoryConfiguration.getInlineReadBudget();
         this.tGroup = new PrivGroupCreation("TCP WQM").run();
 
         if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
@@ -727,6 +733,67 @@ public class WorkQueueManager implements ChannelTermination, FFDCSelfIntrospecta
         return dispatchWorker(new Worker(req, ioe));
     }
 
+    /**
+     * Check whether a ready request may be completed on the selector thread
+     * that found it, rather than being dispatched to a worker thread. Only
+     * async reads whose callback allows it are eligible.
+     * 
+     * @param req
+     * @return boolean
+     */
+    protected boolean canCompleteInline(TCPBaseRequestContext req) {
+        return (!req.blockedThread && req.isRequestTypeRead()
+                && ((TCPReadRequestContextImpl) req).getReadCompletedCallback() instanceof TCPInlineReadCompletedCallback);
+    }
+
+    /**
+     * Complete a ready read on the calling selector thread. The callback chain
+     * may hand any further work off with offloadInlineCompletion.
+     * 
+     * @param req
+     */
+    protected void inlineRun(TCPBaseRequestContext req) {
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "Selector thread completing read inline: " + req);
+        }
+        inlineRequest.set(req);
+        try {
+            workerRun(req, null);
+        } finally {
+            inlineRequest.remove();
+        }
+    }
+
+    /**
+     * Query whether the current thread is a selector running a read
+     * completion inline.
+     * 
+     * @return boolean
+     */
+    public static boolean isInlineCompletion() {
+        return null != inlineRequest.get();
+    }
+
+    /**
+     * Dispatch the remainder of an inline read completion to a worker thread.
+     * 
+     * @param work
+     * @return boolean, true if dispatched
+     */
+    public static boolean offloadInlineCompletion(Runnable work) {
+        ExecutorService executorService = CHFWBundle.getExecutorService();
+        if (null == executorService) {
+            // framework is stopping, caller keeps the work
+            return false;
+        }
+        TCPBaseRequestContext req = inlineRequest.get();
+        if (null != req && req.getConfig().getDumpStatsInterval() > 0) {
+            req.getTCPConnLink().getTCPChannel().totalInlineHandoffs.incrementAndGet();
+        }
+        executorService.execute(work);
+        return true;
+    }
+
     /**
      * Dispatch a work item.
      * 
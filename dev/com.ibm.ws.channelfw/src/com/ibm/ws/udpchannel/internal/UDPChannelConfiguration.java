@@ -36,6 +36,7 @@ public class UDPChannelConfiguration {
     private int sendBufferSize = 0;
     private int receiveBufferSize = 0;
     private int channelReceiveBufferSize = UDPConfigConstants.MAX_UDP_PACKET_SIZE;
+    private int readBatchSize = 1;
     private String addressExcludeList[] = null;
     private String addressIncludeList[] = null;
 
@@ -96,6 +97,10 @@ public class UDPChannelConfiguration {
                     setChannelReceiveBufferSize(Integer.parseInt((String) value));
                     continue;
                 }
+                if (key.equalsIgnoreCase(UDPConfigConstants.READ_BATCH_SIZE)) {
+                    setReadBatchSize(Integer.parseInt((String) value));
+                    continue;
+                }
                 if (key.equalsIgnoreCase(UDPConfigConstants.ADDR_EXC_LIST)) {
                     if (value instanceof String) {
                         this.addressExcludeList = convertToArray((String) value);
@@ -198,6 +203,7 @@ public class UDPChannelConfiguration {
         Tr.debug(tc, UDPConfigConstants.RCV_BUFF_SIZE + ": " + getReceiveBufferSize());
         Tr.debug(tc, UDPConfigConstants.CHANNEL_RCV_BUFF_SIZE + ": " + getChannelReceiveBufferSize());
         Tr.debug(tc, UDPConfigConstants.SEND_BUFF_SIZE + ": " + getSendBufferSize());
+        Tr.debug(tc, UDPConfigConstants.READ_BATCH_SIZE + ": " + getReadBatchSize());
     }
 
     /**
@@ -340,6 +346,32 @@ public class UDPChannelConfiguration {
         }
     }
 
+    /**
+     * Query the maximum number of datagrams read and delivered to a read
+     * always callback per read event. A value of 1 reads one datagram per
+     * event.
+     * 
+     * @return int
+     */
+    public int getReadBatchSize() {
+        return this.readBatchSize;
+    }
+
+    /**
+     * Set the maximum number of datagrams to read per read event.
+     * 
+     * @param size
+     */
+    public void setReadBatchSize(int size) {
+        this.readBatchSize = size;
+        if (size < 1 || size > UDPConfigConstants.READ_BATCH_SIZE_MAX) {
+            if (tc.isDebugEnabled()) {
+                Tr.debug(tc, "Read batch size not within Limits: " + size + " setting to default: 1");
+            }
+            this.readBatchSize = 1;
+        }
+    }
+
     /**
      * Query the address exclude list.
      * 
@@ -22,7 +22,9 @@ import java.security.PrivilegedAction;
 
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.ws.ffdc.FFDCFilter;
 import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.bytebuffer.WsByteBufferPoolManager;
 import com.ibm.wsspi.channelfw.VirtualConnection;
 import com.ibm.wsspi.udpchannel.UDPConfigConstants;
 
@@ -203,9 +205,50 @@ public class UDPNetworkLayer {
         return numWritten;
     }
 
+    /**
+     * Send the datagrams of a batch, starting at the given index, while the
+     * socket accepts them. A datagram that fails to send, or whose address
+     * cannot be resolved, is dropped and the batch carries on with the next.
+     * 
+     * @param buffers
+     * @param addresses
+     * @param start index of the first datagram to send
+     * @return index of the first datagram not sent, buffers.length if all were sent
+     */
+    public synchronized int send(WsByteBuffer[] buffers, SocketAddress[] addresses, int start) {
+        int i = start;
+        for (; i < buffers.length; i++) {
+            InetSocketAddress remoteAddress = (InetSocketAddress) addresses[i];
+            if (remoteAddress.getAddress() == null) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "Adddress is unresolvable [" + remoteAddress + "]");
+                }
+                CumulativeLogger.logLookupFailure(remoteAddress.getHostName());
+                continue;
+            }
+            try {
+                if (datagramChannel.send(buffers[i].getWrappedByteBuffer(), remoteAddress) == 0) {
+                    // socket buffer is full, the rest waits for OP_WRITE
+                    break;
+                }
+            } catch (IOException e) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                    Tr.event(tc, "Caught exception " + e.toString() + " while sending data.  Packet is lost.");
+                }
+                FFDCFilter.processException(e, getClass().getName(), "1", this);
+            }
+        }
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "Sent datagrams " + start + " to " + i + " of " + buffers.length);
+        }
+        return i;
+    }
+
     private static class Result {
         public IOException ex = null;
         public SocketAddress ret = null;
+        public int count = 0;
 
         protected Result() {
             // nothing to do
@@ -234,6 +277,90 @@ public class UDPNetworkLayer {
         }
     }
 
+    private class PrivReceiveBatch implements PrivilegedAction<Result> {
+        private final WsByteBufferPoolManager pool;
+        private final int bufferSize;
+        private final WsByteBuffer[] buffers;
+        private final SocketAddress[] addresses;
+
+        public PrivReceiveBatch(WsByteBufferPoolManager pool, int bufferSize, WsByteBuffer[] buffers, SocketAddress[] addresses) {
+            this.pool = pool;
+            this.bufferSize = bufferSize;
+            this.buffers = buffers;
+            this.addresses = addresses;
+        }
+
+        public Result run() {
+            Result result = new Result();
+            WsByteBuffer spare = null;
+            try {
+                while (result.count < buffers.length) {
+                    if (spare == null) {
+                        spare = pool.allocateDirect(bufferSize);
+                    }
+                    SocketAddress address = datagramChannel.receive(spare.getWrappedByteBuffer());
+                    if (address == null) {
+                        break;
+                    }
+                    if (!getUDPChannel().verifySender(((InetSocketAddress) address).getAddress())) {
+                        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                            Tr.debug(tc, "Received buffer from sender not in include list or is in exclude list. " + ((InetSocketAddress) address).getAddress());
+                        }
+                        // reuse the buffer for the next datagram
+                        spare.clear();
+                        continue;
+                    }
+                    buffers[result.count] = spare;
+                    addresses[result.count] = address;
+                    result.count++;
+                    spare = null;
+                }
+            } catch (IOException x) {
+                result.ex = x;
+            } finally {
+                if (spare != null) {
+                    spare.release();
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Drain up to buffers.length pending datagrams from the socket, allocating
+     * a buffer from the pool for each. Datagrams from rejected senders are
+     * discarded and do not count towards the batch. The first n entries of
+     * buffers and addresses are filled in, where n is the return value.
+     * 
+     * @param pool
+     * @param bufferSize
+     * @param buffers
+     * @param addresses
+     * @return number of datagrams read
+     * @throws IOException if the socket failed before any datagram was read
+     */
+    public synchronized int receive(WsByteBufferPoolManager pool, int bufferSize, WsByteBuffer[] buffers, SocketAddress[] addresses) throws IOException {
+        if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
+            Tr.entry(tc, "receive(batch)");
+        }
+
+        Result res = AccessController.doPrivileged(new PrivReceiveBatch(pool, bufferSize, buffers, addresses));
+        if (res.ex != null) {
+            if (res.count == 0) {
+                throw res.ex;
+            }
+            // hand up what was read, the error will show up again on the next read
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Error after " + res.count + " datagrams; " + res.ex);
+            }
+        }
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
+            Tr.exit(tc, "receive(batch): " + res.count);
+        }
+        return res.count;
+    }
+
     public synchronized SocketAddress receive(WsByteBuffer buffer) throws IOException {
         if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
             Tr.entry(tc, "receive");
@@ -18,6 +18,7 @@ import com.ibm.wsspi.bytebuffer.WsByteBuffer;
 import com.ibm.wsspi.channelfw.VirtualConnection;
 import com.ibm.wsspi.udpchannel.UDPBuffer;
 import com.ibm.wsspi.udpchannel.UDPReadCompletedCallback;
+import com.ibm.wsspi.udpchannel.UDPReadCompletedCallbackBatch;
 import com.ibm.wsspi.udpchannel.UDPReadCompletedCallbackThreaded;
 import com.ibm.wsspi.udpchannel.UDPReadRequestContext;
 
@@ -129,6 +130,40 @@ public class UDPReadRequestContextImpl extends UDPRequestContextImpl implements
         }
     }
 
+    /**
+     * Deliver a batch of datagrams read on one read event to the read always
+     * callback, in a single call if it accepts batches.
+     * 
+     * @param buffers
+     * @param count number of valid entries in buffers
+     */
+    protected void complete(UDPBuffer[] buffers, int count) {
+        UDPReadCompletedCallbackThreaded callback = this.readAlwaysCallback;
+        if (callback instanceof UDPReadCompletedCallbackBatch) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Calling batch read callback with " + count + " buffers.");
+            }
+            ((UDPReadCompletedCallbackBatch) callback).complete(getConnLink().getVirtualConnection(), buffers, count);
+        } else if (callback != null) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Calling multi-threaded read callback for " + count + " buffers.");
+            }
+            VirtualConnection vc = getConnLink().getVirtualConnection();
+            for (int i = 0; i < count; i++) {
+                callback.complete(vc, buffers[i]);
+            }
+        } else {
+            // read always was turned off while these were being read
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "No read always callback set, dropping " + count + " buffers.");
+            }
+            for (int i = 0; i < count; i++) {
+                buffers[i].getBuffer().release();
+                buffers[i].release();
+            }
+        }
+    }
+
     protected void complete() {
         if (isReadAlwaysCalled()) {
             UDPBufferImpl buffer = UDPBufferFactory.getUDPBuffer();
@@ -33,6 +33,9 @@ public class UDPWriteRequestContextImpl extends UDPRequestContextImpl implements
     private WsByteBuffer writeBuffer = null;
     private SocketAddress targetAddress = null;
     private boolean bIsForceQueue = false;
+    private WsByteBuffer[] batchBuffers = null;
+    private SocketAddress[] batchAddresses = null;
+    private int batchIndex = 0;
 
     /**
      * Constructor.
@@ -83,6 +86,8 @@ public class UDPWriteRequestContextImpl extends UDPRequestContextImpl implements
         setWriteCallback(callback);
         this.targetAddress = address;
         this.bIsForceQueue = forceQueue;
+        this.batchBuffers = null;
+        this.batchAddresses = null;
 
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
             Tr.debug(tc, "write called for buffer " + getBuffer() + " to address " + address);
@@ -96,6 +101,68 @@ public class UDPWriteRequestContextImpl extends UDPRequestContextImpl implements
         return conn;
     }
 
+    /*
+     * @see com.ibm.wsspi.udpchannel.UDPWriteRequestContext#write(com.ibm.wsspi.
+     * bytebuffer.WsByteBuffer[], java.net.SocketAddress[],
+     * com.ibm.wsspi.udpchannel.UDPWriteCompletedCallback, boolean)
+     */
+    public VirtualConnection write(WsByteBuffer[] buffers, SocketAddress[] addresses, UDPWriteCompletedCallback callback, boolean forceQueue) {
+        if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
+            Tr.entry(tc, "write(batch)");
+        }
+        if (buffers.length != addresses.length) {
+            throw new IllegalArgumentException("Buffer count " + buffers.length + " does not match address count " + addresses.length);
+        }
+
+        setWriteCallback(callback);
+        this.targetAddress = null;
+        this.bIsForceQueue = forceQueue;
+        this.batchBuffers = buffers;
+        this.batchAddresses = addresses;
+        this.batchIndex = 0;
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "write called for " + buffers.length + " buffers");
+        }
+
+        VirtualConnection conn = getWorkQueueManager().processWork(this);
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
+            Tr.exit(tc, "write(batch): " + conn);
+        }
+        return conn;
+    }
+
+    /**
+     * Query whether the current write request is a batch of datagrams.
+     * 
+     * @return boolean
+     */
+    protected boolean isBatch() {
+        return null != this.batchBuffers;
+    }
+
+    protected WsByteBuffer[] getBatchBuffers() {
+        return this.batchBuffers;
+    }
+
+    protected SocketAddress[] getBatchAddresses() {
+        return this.batchAddresses;
+    }
+
+    /**
+     * Query the index of the next datagram of the batch to send.
+     * 
+     * @return int
+     */
+    protected int getBatchIndex() {
+        return this.batchIndex;
+    }
+
+    protected void setBatchIndex(int index) {
+        this.batchIndex = index;
+    }
+
     protected SocketAddress getAddress() {
         return this.targetAddress;
     }
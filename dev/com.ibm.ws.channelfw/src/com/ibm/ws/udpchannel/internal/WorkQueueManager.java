@@ -41,6 +41,7 @@ import com.ibm.wsspi.channelfw.exception.ChannelException;
 import com.ibm.wsspi.channelfw.exception.DiscriminationProcessException;
 import com.ibm.wsspi.channelfw.objectpool.CircularObjectPool;
 import com.ibm.wsspi.channelfw.objectpool.ObjectPool;
+import com.ibm.wsspi.udpchannel.UDPBuffer;
 import com.ibm.wsspi.udpchannel.UDPConfigConstants;
 import com.ibm.wsspi.udpchannel.UDPWriteCompletedCallback;
 
@@ -354,6 +355,10 @@ public class WorkQueueManager implements UDPSelectorMonitor {
 
         UDPNetworkLayer udpPort = connLink.getUDPNetworkLayer();
 
+        if (writeRequest.isBatch()) {
+            return doPhysicalBatchWrite(writeRequest, udpPort);
+        }
+
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled() && isBufferDumpEnabled) {
             Tr.debug(this, tc, "BUFFER TO ADDRESS " + writeRequest.getAddress());
             String dumpedBuffer = BufferDump.getHexDump(writeRequest.getBuffer().getWrappedByteBuffer(), true);
@@ -398,6 +403,36 @@ public class WorkQueueManager implements UDPSelectorMonitor {
         return vc;
     }
 
+    /**
+     * Send as much of a batch write request as the socket will take, picking
+     * up where any earlier attempt left off.
+     */
+    private VirtualConnection doPhysicalBatchWrite(UDPWriteRequestContextImpl writeRequest, UDPNetworkLayer udpPort) throws IOException {
+        WsByteBuffer[] buffers = writeRequest.getBatchBuffers();
+        SocketAddress[] addresses = writeRequest.getBatchAddresses();
+        int start = writeRequest.getBatchIndex();
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled() && isBufferDumpEnabled) {
+            for (int i = start; i < buffers.length; i++) {
+                Tr.debug(this, tc, "BUFFER TO ADDRESS " + addresses[i]);
+                Tr.debug(this, tc, BufferDump.getHexDump(buffers[i].getWrappedByteBuffer(), true));
+            }
+        }
+
+        int next = udpPort.send(buffers, addresses, start);
+        writeRequest.setBatchIndex(next);
+        if (next == buffers.length) {
+            outstandingWriteRequest = null;
+            return writeRequest.getConnLink().getVirtualConnection();
+        }
+
+        setChannelInSelector(udpPort.getDatagramChannel(), udpPort, SelectionKey.OP_WRITE, NIOChannelModRequest.OR_OPERATOR);
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(this, tc, "Turning on WRITE from doPhysicalBatchWrite after " + next + " of " + buffers.length);
+        }
+        return null;
+    }
+
     private void setupReadOp(UDPReadRequestContextImpl readRequest) {
         try {
             setChannelInSelector(readRequest.getConnLink().getUDPNetworkLayer().getDatagramChannel(), readRequest.getConnLink().getUDPNetworkLayer(), SelectionKey.OP_READ,
@@ -741,7 +776,12 @@ public class WorkQueueManager implements UDPSelectorMonitor {
         boolean returnValue = true;
 
         try {
-            WsByteBuffer buffer = byteBufferManager.allocateDirect(networkLayer.getUDPChannel().getConfig().getChannelReceiveBufferSize());
+            UDPChannelConfiguration config = networkLayer.getUDPChannel().getConfig();
+            if (readAlways && config.getReadBatchSize() > 1 && networkLayer.getConnLink() != null) {
+                return handleReadBatch(networkLayer, config);
+            }
+
+            WsByteBuffer buffer = byteBufferManager.allocateDirect(config.getChannelReceiveBufferSize());
             SocketAddress address = networkLayer.receive(buffer);
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled() && isBufferDumpEnabled && address != null) {
                 Tr.debug(this, tc, "BUFFER FROM ADDRESS " + address);
@@ -828,6 +868,42 @@ public class WorkQueueManager implements UDPSelectorMonitor {
         return returnValue;
     }
 
+    /**
+     * Read always path for a channel configured with a read batch size above
+     * one: drain the datagrams pending on the socket, up to the batch size,
+     * and deliver them to the callback together.
+     * 
+     * @return boolean - whether anything was read
+     */
+    private boolean handleReadBatch(UDPNetworkLayer networkLayer, UDPChannelConfiguration config) throws IOException {
+        int batchSize = config.getReadBatchSize();
+        WsByteBuffer[] buffers = new WsByteBuffer[batchSize];
+        SocketAddress[] addresses = new SocketAddress[batchSize];
+        int count = networkLayer.receive(byteBufferManager, config.getChannelReceiveBufferSize(), buffers, addresses);
+        if (count == 0) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(this, tc, "Read event but there was nothing to read");
+            }
+            return false;
+        }
+
+        UDPBuffer[] batch = new UDPBuffer[count];
+        for (int i = 0; i < count; i++) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled() && isBufferDumpEnabled) {
+                Tr.debug(this, tc, "BUFFER FROM ADDRESS " + addresses[i]);
+                Tr.debug(this, tc, BufferDump.getHexDump(buffers[i].getWrappedByteBuffer(), false));
+            }
+            batch[i] = UDPBufferFactory.getUDPBuffer(buffers[i], addresses[i]);
+        }
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(this, tc, "Read " + count + " datagrams of batch size " + batchSize);
+        }
+
+        UDPReadRequestContextImpl readRequest = (UDPReadRequestContextImpl) networkLayer.getConnLink().getReadInterface();
+        readRequest.complete(batch, count);
+        return true;
+    }
+
     protected static class SelectionKeyAttachment {
         private final AtomicInteger numThreadsProcessing = new AtomicInteger(0);
         protected UDPNetworkLayer udpNetworkLayer = null;
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wsspi.tcpchannel;
+
+import com.ibm.ws.tcpchannel.internal.WorkQueueManager;
+
+/**
+ * Utility methods for channels whose read callbacks implement
+ * {@link TCPInlineReadCompletedCallback}.
+ * 
+ * @ibm-spi
+ */
+public final class TCPInlineCompletion {
+
+    /**
+     * Private constructor, only static methods are available.
+     */
+    private TCPInlineCompletion() {
+        // nothing to do
+    }
+
+    /**
+     * Query whether the current thread is a TCP channel selector thread that is
+     * running a read completion inline.
+     * 
+     * @return boolean
+     */
+    public static boolean isInline() {
+        return WorkQueueManager.isInlineCompletion();
+    }
+
+    /**
+     * Hand the remainder of an inline read completion off to the channel
+     * framework executor. If this returns false, the work was not dispatched
+     * and the caller must run it itself.
+     * 
+     * @param work
+     * @return boolean, true if the work was dispatched
+     */
+    public static boolean offload(Runnable work) {
+        return WorkQueueManager.offloadInlineCompletion(work);
+    }
+}
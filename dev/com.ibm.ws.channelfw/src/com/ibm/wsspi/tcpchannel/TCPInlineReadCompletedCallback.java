@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wsspi.tcpchannel;
+
+/**
+ * A read callback that may be completed directly on the TCP channel selector
+ * thread, instead of on an executor thread, when the inlineReadBudget factory
+ * property is enabled.
+ * <p>
+ * Implementations must not block while running on the selector thread. In
+ * particular they must not issue synchronous reads or writes, and must hand
+ * any longer running work (such as invoking an application) off with
+ * {@link TCPInlineCompletion#offload(Runnable)}.
+ * 
+ * @ibm-spi
+ */
+public interface TCPInlineReadCompletedCallback extends TCPReadCompletedCallback {
+    // marker interface
+}
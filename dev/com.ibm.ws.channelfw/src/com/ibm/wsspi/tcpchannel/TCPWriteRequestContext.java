@@ -11,6 +11,7 @@
 package com.ibm.wsspi.tcpchannel;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 
 import com.ibm.wsspi.channelfw.VirtualConnection;
 
@@ -91,6 +92,33 @@ public interface TCPWriteRequestContext extends TCPRequestContext {
      */
     VirtualConnection write(long numBytes, TCPWriteCompletedCallback callback, boolean forceQueue, int timeout);
 
+    /**
+     * Writes a region of the given FileChannel directly to the connection,
+     * letting the operating system move the bytes from the file to the socket
+     * (FileChannel.transferTo) without copying them through WsByteBuffers.
+     * This call is always synchronous. The position of the FileChannel is not
+     * used or changed, and the FileChannel is not closed. Any buffers previously
+     * set on this context are ignored by this call.
+     * <p>
+     * This is only usable when the bytes do not need to be transformed by a
+     * channel above TCP, for example by encryption, and the virtual connection
+     * reports that it is file channel capable. Implementations that can not
+     * hand the file to the socket directly throw an IOException, so callers
+     * should check VirtualConnection.isFileChannelCapable() first.
+     * 
+     * @param source
+     *            - the FileChannel to read from
+     * @param position
+     *            - the file position of the first byte to write
+     * @param count
+     *            - the number of bytes to write, must be >= 0
+     * @param timeout
+     *            - timeout value to associate with this request (milliseconds)
+     * @return long - number of bytes written
+     * @throws IOException
+     */
+    long transferFrom(FileChannel source, long position, long count, int timeout) throws IOException;
+
     /**
      * A special value for the numBytes parm used on the write method calls.
      * Specifying this value will cause the TCPChannel to write
@@ -47,6 +47,12 @@ public interface UDPConfigConstants {
      */
     String CHANNEL_RCV_BUFF_SIZE = "receiveBufferSizeChannel";
 
+    /**
+     * The maximum number of datagrams drained from the socket and delivered
+     * to a read always callback for each read event.
+     */
+    String READ_BATCH_SIZE = "readBatchSize";
+
     /**
      * Value used to determine if every conn link gets its own worker thread instance.
      */
@@ -92,6 +98,11 @@ public interface UDPConfigConstants {
      */
     int SEND_BUFFER_SIZE_MAX = 16777216; // 16 Meg
 
+    /**
+     * Maximum number of datagrams read per read event
+     */
+    int READ_BATCH_SIZE_MAX = 1024;
+
     /**
      * The configured host interface. This is used in the connection ready callback to
      * identify which configured UDP channel chain this is. This is retrieved from the vc statemap.
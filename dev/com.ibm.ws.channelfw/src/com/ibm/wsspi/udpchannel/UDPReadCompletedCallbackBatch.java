@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wsspi.udpchannel;
+
+import com.ibm.wsspi.channelfw.VirtualConnection;
+
+/**
+ * A read always callback that is given every datagram read on a read event
+ * in a single call. When the channel is configured with a readBatchSize
+ * greater than one, the UDPChannel drains up to that many pending datagrams
+ * from the socket and passes them to this method rather than calling
+ * complete once for each.
+ */
+public interface UDPReadCompletedCallbackBatch extends UDPReadCompletedCallbackThreaded {
+
+    /**
+     * Called when one or more datagrams have been read. The first count
+     * entries of the array are valid, each of which must be released by the
+     * callback just as a buffer passed to complete would be. The array itself
+     * is only valid for the duration of this call.
+     * 
+     * @param vc associated with this request.
+     * @param buffers read on this event.
+     * @param count number of valid buffers in the array.
+     */
+    void complete(VirtualConnection vc, UDPBuffer[] buffers, int count);
+
+}
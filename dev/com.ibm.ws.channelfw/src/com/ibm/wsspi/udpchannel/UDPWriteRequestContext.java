@@ -48,4 +48,22 @@ public interface UDPWriteRequestContext {
      */
     VirtualConnection write(SocketAddress address, UDPWriteCompletedCallback callback, boolean forceQueue);
 
+    /**
+     * Performs a write of several datagrams on the connection, buffers[i] being
+     * sent to addresses[i]. The datagrams are sent in order in a single pass
+     * while the socket accepts them; if the socket fills part way through then
+     * the remainder is queued and sent as the socket drains, and the provided
+     * callback is called once every datagram has been written. The return value
+     * and callback usage are the same as for the single datagram write. Any
+     * buffer set with setBuffer is not used by this call.
+     *
+     * @param buffers - the datagrams to send
+     * @param addresses - address to send each datagram to
+     * @param callback - an implementation of the UDPWriteCompletedCallback class
+     * @param forceQueue - force request to be queued and callback called from another thread
+     * @return VirtualConnection - if all datagrams were written immediately, null if the write
+     *         has gone asynchronous and the provided callback will be used later
+     */
+    VirtualConnection write(WsByteBuffer[] buffers, SocketAddress[] addresses, UDPWriteCompletedCallback callback, boolean forceQueue);
+
 }
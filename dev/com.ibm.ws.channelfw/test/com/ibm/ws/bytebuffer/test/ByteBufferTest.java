@@ -28,6 +28,7 @@ import java.nio.ReadOnlyBufferException;
 import java.nio.channels.FileChannel;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -39,6 +40,7 @@ import test.common.SharedOutputManager;
 import com.ibm.ws.bytebuffer.internal.WsByteBufferPoolManagerImpl;
 import com.ibm.wsspi.bytebuffer.WsByteBuffer;
 import com.ibm.wsspi.bytebuffer.WsByteBufferPoolManager;
+import com.ibm.wsspi.bytebuffer.WsByteBufferPoolManager.DirectByteBufferHelper;
 import com.ibm.wsspi.channelfw.ChannelFrameworkFactory;
 
 /**
@@ -99,6 +101,44 @@ public class ByteBufferTest {
         }
     }
 
+    /**
+     * Test that requests land in the smallest pool that fits them and that
+     * released buffers are reused through the pool statistics.
+     */
+    @Test
+    public void testPoolSizeClasses() {
+        try {
+            WsByteBufferPoolManagerImpl mgr = new WsByteBufferPoolManagerImpl(new AtomicReference<DirectByteBufferHelper>());
+            mgr.initialize(new int[] { 32, 1024, 8192, 65536 }, new int[] { 4, 4, 4, 4 });
+
+            int[][] expected = { { 1, 32 }, { 32, 32 }, { 33, 1024 }, { 1024, 1024 },
+                                { 1025, 8192 }, { 8192, 8192 }, { 8193, 65536 }, { 65536, 65536 } };
+            for (int[] pair : expected) {
+                WsByteBuffer buffer = mgr.allocate(pair[0]);
+                assertEquals("capacity for " + pair[0], pair[1], buffer.capacity());
+                assertEquals(pair[0], buffer.limit());
+                buffer.release();
+            }
+
+            // too large for any pool, allocated as is
+            WsByteBuffer big = mgr.allocate(65537);
+            assertEquals(65537, big.capacity());
+            big.release();
+
+            // repeat allocations on this thread are served from its magazine
+            for (int i = 0; i < 20; i++) {
+                mgr.allocate(100).release();
+            }
+            // a purge moves the magazine to the shared tier and flushes the hit count
+            mgr.purgeThreadLocals();
+            String[] stats = mgr.getPoolStatistics();
+            assertEquals(8, stats.length);
+            assertTrue(stats[1], stats[1].startsWith("heap size=1024 hits=21 misses=1 "));
+        } catch (Throwable t) {
+            outputMgr.failWithThrowable("testPoolSizeClasses", t);
+        }
+    }
+
     /**
      * Test a non-pooled buffer.
      */
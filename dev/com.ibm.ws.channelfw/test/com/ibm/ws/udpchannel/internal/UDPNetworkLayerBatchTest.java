@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.udpchannel.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import test.common.SharedOutputManager;
+
+import com.ibm.ws.bytebuffer.internal.WsByteBufferPoolManagerImpl;
+import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.bytebuffer.WsByteBufferPoolManager.DirectByteBufferHelper;
+
+/**
+ * Test the batched datagram send and receive of the UDP network layer, over
+ * loopback sockets.
+ */
+public class UDPNetworkLayerBatchTest {
+    private static SharedOutputManager outputMgr;
+
+    private final Mockery mock = new Mockery() {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    private final UDPChannel channel = mock.mock(UDPChannel.class);
+
+    private WsByteBufferPoolManagerImpl pool;
+    private UDPNetworkLayer networkLayer;
+    private DatagramChannel peer;
+    private InetSocketAddress layerAddress;
+    private InetSocketAddress peerAddress;
+
+    /**
+     * Capture stdout/stderr output to the manager.
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        outputMgr = SharedOutputManager.getInstance();
+        outputMgr.captureStreams();
+    }
+
+    /**
+     * Final teardown work when class is exiting.
+     *
+     * @throws Exception
+     */
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        // Make stdout and stderr "normal"
+        outputMgr.restoreStreams();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new WsByteBufferPoolManagerImpl(new AtomicReference<DirectByteBufferHelper>());
+        pool.initialize(new int[] { 1024 }, new int[] { 4 });
+
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        networkLayer = new UDPNetworkLayer(channel, null, "127.0.0.1", 0);
+        networkLayer.datagramChannel = DatagramChannel.open();
+        networkLayer.datagramChannel.configureBlocking(false);
+        networkLayer.datagramChannel.socket().bind(new InetSocketAddress(loopback, 0));
+        layerAddress = new InetSocketAddress(loopback, networkLayer.datagramChannel.socket().getLocalPort());
+
+        peer = DatagramChannel.open();
+        peer.socket().bind(new InetSocketAddress(loopback, 0));
+        peerAddress = new InetSocketAddress(loopback, peer.socket().getLocalPort());
+    }
+
+    /**
+     * Individual teardown after each test.
+     *
+     * @throws Exception
+     */
+    @After
+    public void tearDown() throws Exception {
+        networkLayer.datagramChannel.close();
+        peer.close();
+        mock.assertIsSatisfied();
+        // Clear the output generated after each method invocation
+        outputMgr.resetStreams();
+    }
+
+    private void allowSenders(final boolean... verified) {
+        mock.checking(new Expectations() {
+            {
+                if (verified.length == 0) {
+                    allowing(channel).verifySender(with(any(InetAddress.class)));
+                    will(returnValue(true));
+                } else {
+                    for (boolean b : verified) {
+                        oneOf(channel).verifySender(with(any(InetAddress.class)));
+                        will(returnValue(b));
+                    }
+                }
+            }
+        });
+    }
+
+    private void sendFromPeer(String... messages) throws Exception {
+        for (String message : messages) {
+            peer.send(ByteBuffer.wrap(message.getBytes("UTF-8")), layerAddress);
+        }
+    }
+
+    private static String contents(WsByteBuffer buffer) throws Exception {
+        buffer.flip();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return new String(data, "UTF-8");
+    }
+
+    private String receiveOnPeer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        peer.receive(buffer);
+        buffer.flip();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return new String(data, "UTF-8");
+    }
+
+    /**
+     * Receive a batch, retrying for a short time until the datagrams that were
+     * sent on loopback are pending on the socket.
+     */
+    private int receive(WsByteBuffer[] buffers, SocketAddress[] addresses, int expected) throws Exception {
+        int count = 0;
+        long end = System.currentTimeMillis() + 5000;
+        while (count < expected && System.currentTimeMillis() < end) {
+            WsByteBuffer[] more = new WsByteBuffer[buffers.length - count];
+            SocketAddress[] moreAddresses = new SocketAddress[more.length];
+            int n = networkLayer.receive(pool, 1024, more, moreAddresses);
+            System.arraycopy(more, 0, buffers, count, n);
+            System.arraycopy(moreAddresses, 0, addresses, count, n);
+            count += n;
+            if (count < expected) {
+                Thread.sleep(10);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Test that pending datagrams are read into pooled buffers, up to the size
+     * of the batch.
+     */
+    @Test
+    public void testReceiveBatch() throws Exception {
+        allowSenders();
+        sendFromPeer("one", "two", "three", "four", "five");
+
+        WsByteBuffer[] buffers = new WsByteBuffer[3];
+        SocketAddress[] addresses = new SocketAddress[3];
+        assertEquals(3, receive(buffers, addresses, 3));
+        assertEquals("one", contents(buffers[0]));
+        assertEquals("two", contents(buffers[1]));
+        assertEquals("three", contents(buffers[2]));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(peerAddress, addresses[i]);
+            buffers[i].release();
+        }
+
+        // the rest is read on the next event
+        buffers = new WsByteBuffer[3];
+        addresses = new SocketAddress[3];
+        assertEquals(2, receive(buffers, addresses, 2));
+        assertEquals("four", contents(buffers[0]));
+        assertEquals("five", contents(buffers[1]));
+        assertNull(buffers[2]);
+        buffers[0].release();
+        buffers[1].release();
+    }
+
+    /**
+     * Test that nothing is read when no datagram is pending.
+     */
+    @Test
+    public void testReceiveNothingPending() throws Exception {
+        WsByteBuffer[] buffers = new WsByteBuffer[4];
+        SocketAddress[] addresses = new SocketAddress[4];
+        assertEquals(0, networkLayer.receive(pool, 1024, buffers, addresses));
+        assertNull(buffers[0]);
+        assertNull(addresses[0]);
+    }
+
+    /**
+     * Test that datagrams from rejected senders are discarded and do not count
+     * towards the batch.
+     */
+    @Test
+    public void testReceiveRejectedSender() throws Exception {
+        allowSenders(false, true, false, true);
+        sendFromPeer("denied1", "allowed1", "denied2", "allowed2");
+
+        WsByteBuffer[] buffers = new WsByteBuffer[2];
+        SocketAddress[] addresses = new SocketAddress[2];
+        assertEquals(2, receive(buffers, addresses, 2));
+        assertEquals("allowed1", contents(buffers[0]));
+        assertEquals("allowed2", contents(buffers[1]));
+        buffers[0].release();
+        buffers[1].release();
+    }
+
+    /**
+     * Test that a batch is sent in one call, and that a datagram to an address
+     * that cannot be resolved is dropped without stopping the batch.
+     */
+    @Test
+    public void testSendBatch() throws Exception {
+        WsByteBuffer[] buffers = new WsByteBuffer[] { pool.wrap("first".getBytes("UTF-8")),
+                                                     pool.wrap("lost".getBytes("UTF-8")),
+                                                     pool.wrap("second".getBytes("UTF-8")) };
+        SocketAddress[] addresses = new SocketAddress[] { peerAddress,
+                                                         InetSocketAddress.createUnresolved("unresolved.invalid", 9),
+                                                         peerAddress };
+        assertEquals(3, networkLayer.send(buffers, addresses, 0));
+
+        peer.configureBlocking(true);
+        assertEquals("first", receiveOnPeer());
+        assertEquals("second", receiveOnPeer());
+    }
+
+    /**
+     * Test that a batch send resumes at the given index.
+     */
+    @Test
+    public void testSendBatchFromIndex() throws Exception {
+        WsByteBuffer[] buffers = new WsByteBuffer[] { pool.wrap("sent".getBytes("UTF-8")),
+                                                     pool.wrap("resumed".getBytes("UTF-8")) };
+        SocketAddress[] addresses = new SocketAddress[] { peerAddress, peerAddress };
+        assertEquals(2, networkLayer.send(buffers, addresses, 1));
+
+        peer.configureBlocking(true);
+        assertEquals("resumed", receiveOnPeer());
+        assertEquals(2, networkLayer.send(buffers, addresses, 2));
+    }
+}
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.udpchannel.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.Sequence;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import test.common.SharedOutputManager;
+
+import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.channelfw.VirtualConnection;
+import com.ibm.wsspi.udpchannel.UDPBuffer;
+import com.ibm.wsspi.udpchannel.UDPConfigConstants;
+import com.ibm.wsspi.udpchannel.UDPReadCompletedCallbackBatch;
+import com.ibm.wsspi.udpchannel.UDPReadCompletedCallbackThreaded;
+import com.ibm.wsspi.udpchannel.UDPWriteCompletedCallback;
+
+/**
+ * Test how the UDP read and write request contexts hand batches of datagrams
+ * to the channel users and to the work queue.
+ */
+public class UDPRequestContextBatchTest {
+    private static SharedOutputManager outputMgr;
+
+    private final Mockery mock = new Mockery() {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    private final UDPConnLink connLink = mock.mock(UDPConnLink.class);
+    private final WorkQueueManager wqm = mock.mock(WorkQueueManager.class);
+    private final VirtualConnection vc = mock.mock(VirtualConnection.class);
+
+    private final SocketAddress address = new InetSocketAddress("127.0.0.1", 9);
+
+    /**
+     * Capture stdout/stderr output to the manager.
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        outputMgr = SharedOutputManager.getInstance();
+        outputMgr.captureStreams();
+    }
+
+    /**
+     * Final teardown work when class is exiting.
+     *
+     * @throws Exception
+     */
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        // Make stdout and stderr "normal"
+        outputMgr.restoreStreams();
+    }
+
+    @Before
+    public void setUp() {
+        mock.checking(new Expectations() {
+            {
+                allowing(connLink).getVirtualConnection();
+                will(returnValue(vc));
+                allowing(wqm).processWork(with(any(UDPRequestContextImpl.class)));
+                will(returnValue(null));
+            }
+        });
+    }
+
+    /**
+     * Individual teardown after each test.
+     *
+     * @throws Exception
+     */
+    @After
+    public void tearDown() throws Exception {
+        mock.assertIsSatisfied();
+        // Clear the output generated after each method invocation
+        outputMgr.resetStreams();
+    }
+
+    private UDPBuffer[] buffers(String name, int count) {
+        UDPBuffer[] buffers = new UDPBuffer[count + 1];
+        for (int i = 0; i < count; i++) {
+            buffers[i] = UDPBufferFactory.getUDPBuffer(mock.mock(WsByteBuffer.class, name + i), address);
+        }
+        return buffers;
+    }
+
+    /**
+     * Test that a batch callback gets every datagram of the event in one call.
+     */
+    @Test
+    public void testCompleteBatchCallback() {
+        final UDPReadCompletedCallbackBatch callback = mock.mock(UDPReadCompletedCallbackBatch.class);
+        final UDPBuffer[] buffers = buffers("batch", 3);
+        mock.checking(new Expectations() {
+            {
+                oneOf(callback).complete(vc, buffers, 3);
+                never(callback).complete(with(any(VirtualConnection.class)), with(any(UDPBuffer.class)));
+            }
+        });
+
+        UDPReadRequestContextImpl context = new UDPReadRequestContextImpl(connLink, wqm);
+        context.readAlways(callback, true);
+        context.complete(buffers, 3);
+    }
+
+    /**
+     * Test that a callback that does not take batches is called once for each
+     * datagram, in order.
+     */
+    @Test
+    public void testCompleteThreadedCallback() {
+        final UDPReadCompletedCallbackThreaded callback = mock.mock(UDPReadCompletedCallbackThreaded.class);
+        final UDPBuffer[] buffers = buffers("threaded", 3);
+        final Sequence order = mock.sequence("order");
+        mock.checking(new Expectations() {
+            {
+                for (int i = 0; i < 3; i++) {
+                    oneOf(callback).complete(vc, buffers[i]);
+                    inSequence(order);
+                }
+            }
+        });
+
+        UDPReadRequestContextImpl context = new UDPReadRequestContextImpl(connLink, wqm);
+        context.readAlways(callback, true);
+        context.complete(buffers, 3);
+    }
+
+    /**
+     * Test that the datagrams are released when read always was turned off
+     * while they were read.
+     */
+    @Test
+    public void testCompleteWithoutCallback() {
+        final UDPBuffer[] buffers = buffers("dropped", 2);
+        final WsByteBuffer first = buffers[0].getBuffer();
+        final WsByteBuffer second = buffers[1].getBuffer();
+        mock.checking(new Expectations() {
+            {
+                oneOf(first).release();
+                oneOf(second).release();
+            }
+        });
+
+        UDPReadRequestContextImpl context = new UDPReadRequestContextImpl(connLink, wqm);
+        context.readAlways(mock.mock(UDPReadCompletedCallbackBatch.class), true);
+        context.readAlways(null, false);
+        context.complete(buffers, 2);
+        // the UDP buffers went back to the pool
+        assertNull(buffers[0].getBuffer());
+        assertNull(buffers[1].getBuffer());
+    }
+
+    /**
+     * Test that a batch write keeps the buffers and addresses for the work
+     * queue and starts at the first datagram.
+     */
+    @Test
+    public void testWriteBatch() {
+        UDPWriteRequestContextImpl context = new UDPWriteRequestContextImpl(connLink, wqm);
+        WsByteBuffer[] buffers = new WsByteBuffer[] { mock.mock(WsByteBuffer.class, "w0"), mock.mock(WsByteBuffer.class, "w1") };
+        SocketAddress[] addresses = new SocketAddress[] { address, address };
+        UDPWriteCompletedCallback callback = mock.mock(UDPWriteCompletedCallback.class);
+
+        context.setBatchIndex(5);
+        context.write(buffers, addresses, callback, true);
+        assertTrue(context.isBatch());
+        assertSame(buffers, context.getBatchBuffers());
+        assertSame(addresses, context.getBatchAddresses());
+        assertEquals(0, context.getBatchIndex());
+        assertNull(context.getAddress());
+        assertSame(callback, context.getWriteCallback());
+        assertTrue(context.isForceQueue());
+
+        // a single write afterwards is not a batch
+        context.write(address, callback, false);
+        assertFalse(context.isBatch());
+        assertNull(context.getBatchBuffers());
+        assertSame(address, context.getAddress());
+    }
+
+    /**
+     * Test that a batch write needs an address for every buffer.
+     */
+    @Test
+    public void testWriteBatchMismatch() {
+        UDPWriteRequestContextImpl context = new UDPWriteRequestContextImpl(connLink, wqm);
+        try {
+            context.write(new WsByteBuffer[2], new SocketAddress[1], null, false);
+            fail("Write should fail when the buffer and address counts differ");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertFalse(context.isBatch());
+    }
+
+    /**
+     * Test the limits of the read batch size.
+     */
+    @Test
+    public void testReadBatchSize() {
+        UDPChannelConfiguration config = new UDPChannelConfiguration();
+        assertEquals(1, config.getReadBatchSize());
+        config.setReadBatchSize(32);
+        assertEquals(32, config.getReadBatchSize());
+        config.setReadBatchSize(UDPConfigConstants.READ_BATCH_SIZE_MAX);
+        assertEquals(UDPConfigConstants.READ_BATCH_SIZE_MAX, config.getReadBatchSize());
+        config.setReadBatchSize(UDPConfigConstants.READ_BATCH_SIZE_MAX + 1);
+        assertEquals(1, config.getReadBatchSize());
+        config.setReadBatchSize(0);
+        assertEquals(1, config.getReadBatchSize());
+    }
+}
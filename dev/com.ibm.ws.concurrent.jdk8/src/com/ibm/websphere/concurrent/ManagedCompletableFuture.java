@@ -0,0 +1,509 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.websphere.concurrent;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.enterprise.concurrent.ManagedExecutorService;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.websphere.ras.annotation.Trivial;
+import com.ibm.ws.concurrent.internal.ManagedExecutorAccess;
+import com.ibm.ws.concurrent.internal.ManagedExecutorServiceImpl;
+import com.ibm.wsspi.threadcontext.ThreadContext;
+import com.ibm.wsspi.threadcontext.ThreadContextDescriptor;
+
+/**
+ * A CompletableFuture that is backed by a managed executor.
+ * <p>
+ * The thread context of the thread that creates the future is captured once,
+ * according to the context service of the managed executor, and is applied
+ * around every action of the future and of its dependent stages, whether the
+ * stage runs on the thread that completes the previous stage or asynchronously.
+ * Asynchronous stages that do not specify an executor run on the thread pool
+ * of the managed executor. Stages are not submitted as managed tasks, so no
+ * thread is held while waiting for a previous stage, and composing stages does
+ * not require a thread per stage.
+ * <p>
+ * Every dependent stage is also a ManagedCompletableFuture. Completing or canceling
+ * a dependent stage before its action starts prevents the action from running.
+ *
+ * @param <T> type of result.
+ * @ibm-api
+ */
+public class ManagedCompletableFuture<T> extends CompletableFuture<T> {
+    private static final TraceComponent tc = Tr.register(ManagedCompletableFuture.class);
+
+    /**
+     * Thread context that is applied around actions of this future and its dependent stages.
+     */
+    private final ThreadContextDescriptor threadContextDescriptor;
+
+    /**
+     * Managed executor that backs this future.
+     */
+    private final ManagedExecutorServiceImpl managedExecutor;
+
+    /**
+     * Runs asynchronous stages on the thread pool of the managed executor.
+     */
+    private final Executor defaultExecutor;
+
+    /**
+     * Stage that runs the action of this dependent stage, or null if this future runs the action itself.
+     * On Java 8, CompletableFuture creates its dependent stages directly rather than with
+     * newIncompleteFuture, so this future is completed when that stage completes, and completing or
+     * canceling this future is forwarded to that stage.
+     */
+    private final CompletableFuture<T> actionStage;
+
+    /**
+     * Construct a future that is not completed.
+     *
+     * @param managedExecutor managed executor that backs the future.
+     * @param threadContextDescriptor thread context to apply around actions of the future.
+     * @param actionStage stage that runs the action of this future, or null if this future runs the action.
+     */
+    private ManagedCompletableFuture(ManagedExecutorServiceImpl managedExecutor, ThreadContextDescriptor threadContextDescriptor, CompletableFuture<T> actionStage) {
+        this.managedExecutor = managedExecutor;
+        this.threadContextDescriptor = threadContextDescriptor;
+        this.actionStage = actionStage;
+        this.defaultExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                ManagedExecutorAccess.getExecSvc(managedExecutor).execute(command);
+            }
+        };
+    }
+
+    /**
+     * Returns a new future that is already completed with the specified value.
+     *
+     * @param value result of the future.
+     * @param executor managed executor that backs the future and its dependent stages.
+     * @return the future.
+     */
+    public static <U> ManagedCompletableFuture<U> completedFuture(U value, ManagedExecutorService executor) {
+        ManagedCompletableFuture<U> future = newIncompleteFuture(executor);
+        future.complete(value);
+        return future;
+    }
+
+    /**
+     * Returns a new future that is not completed.
+     *
+     * @param executor managed executor that backs the future and its dependent stages.
+     * @return the future.
+     */
+    public static <U> ManagedCompletableFuture<U> newIncompleteFuture(ManagedExecutorService executor) {
+        if (!(executor instanceof ManagedExecutorServiceImpl))
+            throw new IllegalArgumentException(String.valueOf(executor));
+        ManagedExecutorServiceImpl managedExecutor = (ManagedExecutorServiceImpl) executor;
+        return new ManagedCompletableFuture<U>(managedExecutor, ManagedExecutorAccess.captureThreadContext(managedExecutor), null);
+    }
+
+    /**
+     * Returns a new future that is completed by running the action on the managed executor.
+     *
+     * @param action the action.
+     * @param executor managed executor that backs the future and its dependent stages.
+     * @return the future.
+     */
+    public static ManagedCompletableFuture<Void> runAsync(Runnable action, ManagedExecutorService executor) {
+        ManagedCompletableFuture<Void> future = newIncompleteFuture(executor);
+        Runnable contextualAction = future.contextualize(action);
+        future.defaultExecutor.execute(() -> {
+            if (!future.isDone())
+                try {
+                    contextualAction.run();
+                    future.complete(null);
+                } catch (Throwable x) {
+                    future.completeExceptionally(x);
+                }
+        });
+        return future;
+    }
+
+    /**
+     * Returns a new future that is completed by running the supplier on the managed executor.
+     *
+     * @param supplier supplies the result of the future.
+     * @param executor managed executor that backs the future and its dependent stages.
+     * @return the future.
+     */
+    public static <U> ManagedCompletableFuture<U> supplyAsync(Supplier<U> supplier, ManagedExecutorService executor) {
+        ManagedCompletableFuture<U> future = newIncompleteFuture(executor);
+        Supplier<U> contextualSupplier = future.contextualize(supplier);
+        future.defaultExecutor.execute(() -> {
+            if (!future.isDone())
+                try {
+                    future.complete(contextualSupplier.get());
+                } catch (Throwable x) {
+                    future.completeExceptionally(x);
+                }
+        });
+        return future;
+    }
+
+    /**
+     * Creates the dependent stages of this future on Java 9 and above, where CompletableFuture
+     * uses this method, so that the stage that runs an action is a ManagedCompletableFuture
+     * that shares the thread context and managed executor of this future.
+     *
+     * @return a new future that is not completed.
+     */
+    @Trivial
+    public <U> CompletableFuture<U> newIncompleteFuture() {
+        return new ManagedCompletableFuture<U>(managedExecutor, threadContextDescriptor, null);
+    }
+
+    /**
+     * Returns the executor for asynchronous stages that do not specify an executor.
+     * CompletableFuture uses this method on Java 9 and above.
+     *
+     * @return executor that runs tasks on the thread pool of the managed executor.
+     */
+    @Trivial
+    public Executor defaultExecutor() {
+        return defaultExecutor;
+    }
+
+    /**
+     * Returns a ManagedCompletableFuture for the specified stage, sharing the thread context and
+     * managed executor of this future. On Java 9 and above, the stage is already a
+     * ManagedCompletableFuture and is returned as is. On Java 8, the returned future completes
+     * the same way as the stage, and forwards completion and cancellation to it.
+     *
+     * @param stage stage created by the CompletableFuture super class.
+     * @return the dependent stage.
+     */
+    @Trivial
+    private <U> ManagedCompletableFuture<U> dependent(CompletableFuture<U> stage) {
+        if (stage instanceof ManagedCompletableFuture)
+            return (ManagedCompletableFuture<U>) stage;
+        ManagedCompletableFuture<U> dependent = new ManagedCompletableFuture<U>(managedExecutor, threadContextDescriptor, stage);
+        stage.whenComplete((result, failure) -> {
+            if (failure == null)
+                dependent.complete(result);
+            else
+                dependent.completeExceptionally(failure);
+        });
+        return dependent;
+    }
+
+    /**
+     * Apply the captured thread context to the current thread.
+     *
+     * @return context to remove from the thread when the action ends.
+     */
+    @Trivial
+    private ArrayList<ThreadContext> applyContext() {
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+            Tr.debug(this, tc, "apply context", threadContextDescriptor);
+        return threadContextDescriptor.taskStarting();
+    }
+
+    @Trivial
+    private <U, R> Function<U, R> contextualize(Function<U, R> action) {
+        return t -> {
+            ArrayList<ThreadContext> contextApplied = applyContext();
+            try {
+                return action.apply(t);
+            } finally {
+                threadContextDescriptor.taskStopping(contextApplied);
+            }
+        };
+    }
+
+    @Trivial
+    private <U, V, R> BiFunction<U, V, R> contextualize(BiFunction<U, V, R> action) {
+        return (t, u) -> {
+            ArrayList<ThreadContext> contextApplied = applyContext();
+            try {
+                return action.apply(t, u);
+            } finally {
+                threadContextDescriptor.taskStopping(contextApplied);
+            }
+        };
+    }
+
+    @Trivial
+    private <U> Consumer<U> contextualize(Consumer<U> action) {
+        return t -> {
+            ArrayList<ThreadContext> contextApplied = applyContext();
+            try {
+                action.accept(t);
+            } finally {
+                threadContextDescriptor.taskStopping(contextApplied);
+            }
+        };
+    }
+
+    @Trivial
+    private <U, V> BiConsumer<U, V> contextualize(BiConsumer<U, V> action) {
+        return (t, u) -> {
+            ArrayList<ThreadContext> contextApplied = applyContext();
+            try {
+                action.accept(t, u);
+            } finally {
+                threadContextDescriptor.taskStopping(contextApplied);
+            }
+        };
+    }
+
+    @Trivial
+    private Runnable contextualize(Runnable action) {
+        return () -> {
+            ArrayList<ThreadContext> contextApplied = applyContext();
+            try {
+                action.run();
+            } finally {
+                threadContextDescriptor.taskStopping(contextApplied);
+            }
+        };
+    }
+
+    @Trivial
+    private <U> Supplier<U> contextualize(Supplier<U> action) {
+        return () -> {
+            ArrayList<ThreadContext> contextApplied = applyContext();
+            try {
+                return action.get();
+            } finally {
+                threadContextDescriptor.taskStopping(contextApplied);
+            }
+        };
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean canceled = super.cancel(mayInterruptIfRunning);
+        if (canceled && actionStage != null)
+            actionStage.cancel(mayInterruptIfRunning);
+        return canceled;
+    }
+
+    @Override
+    public boolean complete(T value) {
+        boolean completed = super.complete(value);
+        if (completed && actionStage != null)
+            actionStage.complete(value);
+        return completed;
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable x) {
+        boolean completed = super.completeExceptionally(x);
+        if (completed && actionStage != null)
+            actionStage.completeExceptionally(x);
+        return completed;
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> acceptEither(CompletionStage<? extends T> other, Consumer<? super T> action) {
+        return dependent(super.acceptEither(other, contextualize(action)));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> acceptEitherAsync(CompletionStage<? extends T> other, Consumer<? super T> action) {
+        return dependent(super.acceptEitherAsync(other, contextualize(action), defaultExecutor));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> acceptEitherAsync(CompletionStage<? extends T> other, Consumer<? super T> action, Executor executor) {
+        return dependent(super.acceptEitherAsync(other, contextualize(action), executor));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<U> applyToEither(CompletionStage<? extends T> other, Function<? super T, U> action) {
+        return dependent(super.applyToEither(other, contextualize(action)));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<U> applyToEitherAsync(CompletionStage<? extends T> other, Function<? super T, U> action) {
+        return dependent(super.applyToEitherAsync(other, contextualize(action), defaultExecutor));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<U> applyToEitherAsync(CompletionStage<? extends T> other, Function<? super T, U> action, Executor executor) {
+        return dependent(super.applyToEitherAsync(other, contextualize(action), executor));
+    }
+
+    @Override
+    public ManagedCompletableFuture<T> exceptionally(Function<Throwable, ? extends T> action) {
+        return dependent(super.exceptionally(contextualize(action)));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<U> handle(BiFunction<? super T, Throwable, ? extends U> action) {
+        return dependent(super.handle(contextualize(action)));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<U> handleAsync(BiFunction<? super T, Throwable, ? extends U> action) {
+        return dependent(super.handleAsync(contextualize(action), defaultExecutor));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<U> handleAsync(BiFunction<? super T, Throwable, ? extends U> action, Executor executor) {
+        return dependent(super.handleAsync(contextualize(action), executor));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> runAfterBoth(CompletionStage<?> other, Runnable action) {
+        return dependent(super.runAfterBoth(other, contextualize(action)));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action) {
+        return dependent(super.runAfterBothAsync(other, contextualize(action), defaultExecutor));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action, Executor executor) {
+        return dependent(super.runAfterBothAsync(other, contextualize(action), executor));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> runAfterEither(CompletionStage<?> other, Runnable action) {
+        return dependent(super.runAfterEither(other, contextualize(action)));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action) {
+        return dependent(super.runAfterEitherAsync(other, contextualize(action), defaultExecutor));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action, Executor executor) {
+        return dependent(super.runAfterEitherAsync(other, contextualize(action), executor));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> thenAccept(Consumer<? super T> action) {
+        return dependent(super.thenAccept(contextualize(action)));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> thenAcceptAsync(Consumer<? super T> action) {
+        return dependent(super.thenAcceptAsync(contextualize(action), defaultExecutor));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> thenAcceptAsync(Consumer<? super T> action, Executor executor) {
+        return dependent(super.thenAcceptAsync(contextualize(action), executor));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<Void> thenAcceptBoth(CompletionStage<? extends U> other, BiConsumer<? super T, ? super U> action) {
+        return dependent(super.thenAcceptBoth(other, contextualize(action)));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<Void> thenAcceptBothAsync(CompletionStage<? extends U> other, BiConsumer<? super T, ? super U> action) {
+        return dependent(super.thenAcceptBothAsync(other, contextualize(action), defaultExecutor));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<Void> thenAcceptBothAsync(CompletionStage<? extends U> other, BiConsumer<? super T, ? super U> action, Executor executor) {
+        return dependent(super.thenAcceptBothAsync(other, contextualize(action), executor));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<U> thenApply(Function<? super T, ? extends U> action) {
+        return dependent(super.thenApply(contextualize(action)));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<U> thenApplyAsync(Function<? super T, ? extends U> action) {
+        return dependent(super.thenApplyAsync(contextualize(action), defaultExecutor));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<U> thenApplyAsync(Function<? super T, ? extends U> action, Executor executor) {
+        return dependent(super.thenApplyAsync(contextualize(action), executor));
+    }
+
+    @Override
+    public <U, R> ManagedCompletableFuture<R> thenCombine(CompletionStage<? extends U> other, BiFunction<? super T, ? super U, ? extends R> action) {
+        return dependent(super.thenCombine(other, contextualize(action)));
+    }
+
+    @Override
+    public <U, R> ManagedCompletableFuture<R> thenCombineAsync(CompletionStage<? extends U> other, BiFunction<? super T, ? super U, ? extends R> action) {
+        return dependent(super.thenCombineAsync(other, contextualize(action), defaultExecutor));
+    }
+
+    @Override
+    public <U, R> ManagedCompletableFuture<R> thenCombineAsync(CompletionStage<? extends U> other, BiFunction<? super T, ? super U, ? extends R> action, Executor executor) {
+        return dependent(super.thenCombineAsync(other, contextualize(action), executor));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<U> thenCompose(Function<? super T, ? extends CompletionStage<U>> action) {
+        return dependent(super.thenCompose(contextualize(action)));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<U> thenComposeAsync(Function<? super T, ? extends CompletionStage<U>> action) {
+        return dependent(super.thenComposeAsync(contextualize(action), defaultExecutor));
+    }
+
+    @Override
+    public <U> ManagedCompletableFuture<U> thenComposeAsync(Function<? super T, ? extends CompletionStage<U>> action, Executor executor) {
+        return dependent(super.thenComposeAsync(contextualize(action), executor));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> thenRun(Runnable action) {
+        return dependent(super.thenRun(contextualize(action)));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> thenRunAsync(Runnable action) {
+        return dependent(super.thenRunAsync(contextualize(action), defaultExecutor));
+    }
+
+    @Override
+    public ManagedCompletableFuture<Void> thenRunAsync(Runnable action, Executor executor) {
+        return dependent(super.thenRunAsync(contextualize(action), executor));
+    }
+
+    @Override
+    public ManagedCompletableFuture<T> whenComplete(BiConsumer<? super T, ? super Throwable> action) {
+        return dependent(super.whenComplete(contextualize(action)));
+    }
+
+    @Override
+    public ManagedCompletableFuture<T> whenCompleteAsync(BiConsumer<? super T, ? super Throwable> action) {
+        return dependent(super.whenCompleteAsync(contextualize(action), defaultExecutor));
+    }
+
+    @Override
+    public ManagedCompletableFuture<T> whenCompleteAsync(BiConsumer<? super T, ? super Throwable> action, Executor executor) {
+        return dependent(super.whenCompleteAsync(contextualize(action), executor));
+    }
+
+    @Override
+    @Trivial
+    public String toString() {
+        return super.toString() + " on " + managedExecutor;
+    }
+}
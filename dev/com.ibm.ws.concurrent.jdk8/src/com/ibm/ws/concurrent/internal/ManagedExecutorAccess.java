@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.concurrent.internal;
+
+import java.util.concurrent.ExecutorService;
+
+import com.ibm.wsspi.threadcontext.ThreadContextDescriptor;
+
+/**
+ * Gives ManagedCompletableFuture access to the package private methods of the
+ * managed executor that it needs. This fragment is loaded by the class loader of
+ * the host bundle, so this class is in the same runtime package as
+ * ManagedExecutorServiceImpl. The package is not exported.
+ */
+public class ManagedExecutorAccess {
+    private ManagedExecutorAccess() {}
+
+    /**
+     * Captures the thread context of the current thread, according to the default
+     * execution properties of the managed executor.
+     *
+     * @param executor the managed executor.
+     * @return the captured thread context.
+     */
+    public static ThreadContextDescriptor captureThreadContext(ManagedExecutorServiceImpl executor) {
+        return executor.captureThreadContext();
+    }
+
+    /**
+     * Returns the executor on which the managed executor runs tasks.
+     *
+     * @param executor the managed executor.
+     * @return the executor on which to run tasks.
+     */
+    public static ExecutorService getExecSvc(ManagedExecutorServiceImpl executor) {
+        return executor.getExecSvc();
+    }
+}
@@ -67,6 +67,7 @@ import com.ibm.wsspi.resource.ResourceInfo;
 import com.ibm.wsspi.threadcontext.ThreadContextDescriptor;
 import com.ibm.wsspi.threadcontext.ThreadContextProvider;
 import com.ibm.wsspi.threadcontext.WSContextService;
+import com.ibm.wsspi.threading.WSExecutorService;
 
 interface BaseManagedExecutorServiceConfig {
 
@@ -292,6 +293,20 @@ public class ManagedExecutorServiceImpl implements ExecutorService, ManagedExecu
         throw new IllegalStateException(new UnsupportedOperationException("awaitTermination"));
     }
 
+    /**
+     * Captures the thread context of the current thread, according to the default execution
+     * properties of this managed executor. This is used by ManagedCompletableFuture, through
+     * ManagedExecutorAccess, which applies the captured context around each dependent stage
+     * instead of submitting each stage as a managed task.
+     *
+     * @return the captured thread context.
+     * @throws RejectedExecutionException if the context service is unavailable.
+     */
+    ThreadContextDescriptor captureThreadContext() {
+        WSContextService contextSvc = AccessController.doPrivileged(contextSvcAccessor);
+        return contextSvc.captureThreadContext(defaultExecutionProperties.get());
+    }
+
     /**
      * Capture context for a list of tasks.
      *
@@ -573,10 +588,21 @@ public class ManagedExecutorServiceImpl implements ExecutorService, ManagedExecu
         return taskToSubmit.future;
     }
 
-    private ExecutorService getExecSvc() {
+    /**
+     * Returns the executor on which to run tasks. If the underlying executor runs work on
+     * virtual threads, the virtual thread executor is used. Thread context continues to be
+     * applied by the SubmittedTask, regardless of which kind of thread runs it.
+     * ManagedCompletableFuture runs its stages directly on this executor, through
+     * ManagedExecutorAccess, and applies thread context itself.
+     *
+     * @return the executor on which to run tasks.
+     */
+    ExecutorService getExecSvc() {
         ExecutorService execSvc = this.executorService;
         if (execSvc == null)
             throw new RejectedExecutionException();
+        if (execSvc instanceof WSExecutorService)
+            execSvc = ((WSExecutorService) execSvc).getVirtualThreadExecutor();
         return execSvc;
     }
 
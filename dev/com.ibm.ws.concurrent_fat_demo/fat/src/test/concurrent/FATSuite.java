@@ -15,5 +15,5 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ ShippingEstimateDemoTest.class })
+@SuiteClasses({ ManagedCompletableFutureTest.class, ShippingEstimateDemoTest.class })
 public class FATSuite {}
\ No newline at end of file
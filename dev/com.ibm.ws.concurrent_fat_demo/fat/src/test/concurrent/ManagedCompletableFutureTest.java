@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package test.concurrent;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.runner.RunWith;
+
+import com.ibm.websphere.simplicity.ShrinkHelper;
+
+import componenttest.annotation.Server;
+import componenttest.annotation.TestServlet;
+import componenttest.custom.junit.runner.FATRunner;
+import componenttest.topology.impl.LibertyServer;
+import componenttest.topology.utils.FATServletClient;
+import web.ManagedCompletableFutureTestServlet;
+
+@RunWith(FATRunner.class)
+public class ManagedCompletableFutureTest extends FATServletClient {
+
+    public static final String APP_NAME = "completablefuture";
+
+    @Server("com.ibm.ws.concurrent.fat.demo")
+    @TestServlet(servlet = ManagedCompletableFutureTestServlet.class, path = APP_NAME + "/ManagedCompletableFutureTestServlet")
+    public static LibertyServer server;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        WebArchive app = ShrinkWrap.create(WebArchive.class, APP_NAME + ".war")
+                        .addPackage("web");
+        ShrinkHelper.exportToServer(server, "dropins", app);
+        server.addInstalledAppForValidation(APP_NAME);
+        server.startServer();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        server.stopServer();
+    }
+}
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.naming.InitialContext;
+import javax.servlet.annotation.WebServlet;
+
+import org.junit.Test;
+
+import com.ibm.websphere.concurrent.ManagedCompletableFuture;
+
+import componenttest.app.FATServlet;
+
+@SuppressWarnings("serial")
+@WebServlet(urlPatterns = "/ManagedCompletableFutureTestServlet")
+public class ManagedCompletableFutureTestServlet extends FATServlet {
+
+    private static final long TIMEOUT_NS = TimeUnit.MINUTES.toNanos(2);
+
+    @Resource(name = "java:comp/env/concurrent/executorRef")
+    private ManagedExecutorService executor;
+
+    /**
+     * Returns the thread name and the result of a java:comp lookup, which needs the
+     * application component context of the servlet.
+     */
+    private static String lookupOnCurrentThread() {
+        try {
+            Object found = new InitialContext().lookup("java:comp/env/concurrent/executorRef");
+            return Thread.currentThread().getName() + ":" + (found instanceof ManagedExecutorService);
+        } catch (Exception x) {
+            throw new CompletionException(x);
+        }
+    }
+
+    /**
+     * A dependent stage that runs on the thread that completes the previous stage has the
+     * thread context of the servlet, even when that thread is not managed.
+     */
+    @Test
+    public void testContextOfDependentStage() throws Exception {
+        ClassLoader servletClassLoader = Thread.currentThread().getContextClassLoader();
+        ManagedCompletableFuture<String> root = ManagedCompletableFuture.newIncompleteFuture(executor);
+        CompletableFuture<String> lookup = root.thenApply(s -> s + lookupOnCurrentThread());
+        CompletableFuture<ClassLoader> classLoader = root.thenApply(s -> Thread.currentThread().getContextClassLoader());
+
+        assertTrue(lookup instanceof ManagedCompletableFuture);
+        assertFalse(lookup.isDone());
+
+        // complete from a thread that has no context of the application
+        ForkJoinPool.commonPool().submit(() -> root.complete("commonPool:")).get();
+
+        String result = lookup.get(TIMEOUT_NS, TimeUnit.NANOSECONDS);
+        assertTrue(result, result.startsWith("commonPool:"));
+        assertTrue(result, result.endsWith(":true"));
+        assertSame(servletClassLoader, classLoader.get(TIMEOUT_NS, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Asynchronous stages that do not specify an executor run on the thread pool of the
+     * managed executor, with the thread context of the servlet.
+     */
+    @Test
+    public void testDefaultAsyncExecutor() throws Exception {
+        String servletThreadName = Thread.currentThread().getName();
+        CompletableFuture<String> future = ManagedCompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor)
+                        .thenApplyAsync(supplierThreadName -> supplierThreadName + "," + lookupOnCurrentThread());
+
+        assertTrue(future instanceof ManagedCompletableFuture);
+        String[] result = future.get(TIMEOUT_NS, TimeUnit.NANOSECONDS).split(",");
+        assertTrue(result[0], result[0].startsWith("Default Executor-thread-"));
+        assertTrue(result[1], result[1].startsWith("Default Executor-thread-"));
+        assertTrue(result[1], result[1].endsWith(":true"));
+        assertFalse(result[0], servletThreadName.equals(result[0]));
+    }
+
+    /**
+     * A failure skips the dependent stages until one that handles it, which runs with the
+     * thread context of the servlet.
+     */
+    @Test
+    public void testExceptionalCompletion() throws Exception {
+        AtomicInteger skipped = new AtomicInteger();
+        ManagedCompletableFuture<String> failed = ManagedCompletableFuture.supplyAsync(() -> {
+            throw new IllegalStateException("intentional failure");
+        }, executor);
+        CompletableFuture<String> dependent = failed.thenApply(s -> {
+            skipped.incrementAndGet();
+            return s;
+        });
+        CompletableFuture<String> handled = dependent.exceptionally(x -> x.getCause().getMessage() + "," + lookupOnCurrentThread());
+
+        String result = handled.get(TIMEOUT_NS, TimeUnit.NANOSECONDS);
+        assertTrue(result, result.startsWith("intentional failure,"));
+        assertTrue(result, result.endsWith(":true"));
+        assertEquals(0, skipped.get());
+
+        try {
+            fail("unexpected result " + dependent.get(TIMEOUT_NS, TimeUnit.NANOSECONDS));
+        } catch (ExecutionException x) {
+            if (!(x.getCause() instanceof IllegalStateException))
+                throw x;
+        }
+        assertTrue(dependent.isCompletedExceptionally());
+    }
+
+    /**
+     * Canceling a dependent stage before the previous stage completes prevents its action
+     * from running, and the stages that depend on it complete with CancellationException.
+     */
+    @Test
+    public void testCancelDependentStage() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        ManagedCompletableFuture<String> root = ManagedCompletableFuture.newIncompleteFuture(executor);
+        CompletableFuture<String> dependent = root.thenApply(s -> {
+            runs.incrementAndGet();
+            return s;
+        });
+        CompletableFuture<String> next = dependent.thenApplyAsync(s -> s);
+
+        assertTrue(dependent.cancel(true));
+        assertTrue(dependent.isCancelled());
+        root.complete("done");
+
+        try {
+            fail("unexpected result " + next.get(TIMEOUT_NS, TimeUnit.NANOSECONDS));
+        } catch (ExecutionException x) {
+            if (!(x.getCause() instanceof CancellationException))
+                throw x;
+        }
+        assertEquals(0, runs.get());
+        assertEquals("done", root.get());
+    }
+
+    /**
+     * Completing a dependent stage before the previous stage completes prevents its action
+     * from running.
+     */
+    @Test
+    public void testCompleteDependentStage() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        ManagedCompletableFuture<String> root = ManagedCompletableFuture.newIncompleteFuture(executor);
+        CompletableFuture<String> dependent = root.thenApplyAsync(s -> {
+            runs.incrementAndGet();
+            return s;
+        });
+        CompletableFuture<String> next = dependent.thenApply(s -> s + "!");
+
+        assertTrue(dependent.complete("early"));
+        root.complete("late");
+
+        assertEquals("early!", next.get(TIMEOUT_NS, TimeUnit.NANOSECONDS));
+        assertEquals(0, runs.get());
+    }
+}
@@ -98,9 +98,10 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
 
     /**
      * This is an index to the entries for random access given a cache id. The key is the cache id that is unique within
-     * the server. The value is the entry.
+     * the server. The value is the entry. Updates are made while holding the lock on the cache, but cache hits read it
+     * without locking.
      */
-    private NonSyncHashtable entryHashtable = null;
+    private ConcurrentHashMap<Object, CacheEntry> entryHashtable = null;
 
     /**
      * This is the default value for the priority.
@@ -131,6 +132,14 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
     private int lruTop = 0;
     // -------------------------------------------------
 
+    // -------------------------------------------------
+    // TinyLFU admission - null when the admission policy is LRU
+    // -------------------------------------------------
+    private CacheEntry.LRUHead admissionWindow = null;
+    private int admissionWindowCapacity = 0;
+    private FrequencySketch frequencySketch = null;
+    // -------------------------------------------------
+
     private int cacheSizeLimit = 0; // memory cache size + overflow buffer size if disk offload enabled
 
     private boolean displayedLRUMessage = false;
@@ -205,10 +214,33 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
         }
         // --------------------------------------------------------
 
+        // --------------------------------------------------------
+        // Prepare the admission window and frequency sketch
+        // --------------------------------------------------------
+        if (CacheConfig.ADMISSION_POLICY_TINYLFU.equalsIgnoreCase(cacheConfig.admissionPolicy)) {
+            int windowPercent = cacheConfig.admissionWindowPercent;
+            if (windowPercent < CacheConfig.MIN_ADMISSION_WINDOW_PERCENT || windowPercent > CacheConfig.MAX_ADMISSION_WINDOW_PERCENT) {
+                Tr.warning(tc, "DYNA0069W", new Object[] { new Integer(windowPercent), "admissionWindowPercent", cacheName,
+                                                          new Integer(CacheConfig.MIN_ADMISSION_WINDOW_PERCENT),
+                                                          new Integer(CacheConfig.MAX_ADMISSION_WINDOW_PERCENT),
+                                                          new Integer(CacheConfig.DEFAULT_ADMISSION_WINDOW_PERCENT) });
+                windowPercent = CacheConfig.DEFAULT_ADMISSION_WINDOW_PERCENT;
+            }
+            admissionWindow = new CacheEntry.LRUHead();
+            admissionWindow.priority = -1;
+            admissionWindowCapacity = Math.max(1, cacheConfig.cacheSize * windowPercent / 100);
+            frequencySketch = new FrequencySketch(cacheConfig.cacheSize);
+        } else if (!CacheConfig.ADMISSION_POLICY_LRU.equalsIgnoreCase(cacheConfig.admissionPolicy)) {
+            Tr.warning(tc, "DYNA0069W", new Object[] { cacheConfig.admissionPolicy, "admissionPolicy", cacheName,
+                                                      CacheConfig.ADMISSION_POLICY_LRU, CacheConfig.ADMISSION_POLICY_TINYLFU,
+                                                      CacheConfig.ADMISSION_POLICY_LRU });
+        }
+        // --------------------------------------------------------
+
         // --------------------------------------------------------
         // Setup tables for cache entries, templates and dependencies
         // --------------------------------------------------------
-        entryHashtable = new NonSyncHashtable(cacheConfig.cacheSize);
+        entryHashtable = new ConcurrentHashMap<Object, CacheEntry>(cacheConfig.cacheSize);
         increaseCacheSizeInBytes(ObjectSizer.FASTHASHTABLE_INITIAL_OVERHEAD + ObjectSizer.FASTHASHTABLE_INITIAL_PER_ENTRY_OVERHEAD
                                  * cacheConfig.cacheSize, "EHT");
 
@@ -280,7 +312,8 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
         if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
             Tr.exit(tc, "Cache() CTOR cacheName=" + cacheName + " cache=" + this + " useServerClassLoader:" + cacheConfig.useServerClassLoader
                         + " filterTimeOutInvalidation:" + cacheConfig.filterTimeOutInvalidation + " filterLRUInvalidation:"
-                        + cacheConfig.filterLRUInvalidation + " lruToDiskTriggerPercent=" + cacheConfig.lruToDiskTriggerPercent + " cacheSizeLimit="
+                        + cacheConfig.filterLRUInvalidation + " lruToDiskTriggerPercent=" + cacheConfig.lruToDiskTriggerPercent
+                        + " admissionWindowCapacity=" + this.admissionWindowCapacity + " cacheSizeLimit="
                         + this.cacheSizeLimit + " cacheSizeInMB=" + cacheConfig.memoryCacheSizeInMB + " cascadeCachespecProperties="
                         + cacheConfig.cascadeCachespecProperties);
         }
@@ -306,6 +339,7 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
 
         TreeMap<String, Number> extendedStats = new TreeMap<String, Number>();
         extendedStats.put("OverflowEntriesFromMemory", cacheStatisticsListener.getOverflowEntriesFromMemoryCount());
+        extendedStats.put("AdmissionRejectionsFromMemory", cacheStatisticsListener.getAdmissionRejectionsCount());
         extendedStats.put("ExplicitInvalidationsFromDisk", cacheStatisticsListener.getExplicitInvalidationsFromDiskCount());
         extendedStats.put("ExplicitInvalidationsLocal", cacheStatisticsListener.getExplicitInvalidationsLocalCount());
         extendedStats.put("ExplicitInvalidationsRemote", cacheStatisticsListener.getExplicitInvalidationsRemoteCount());
@@ -638,10 +672,25 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
 
     private CacheEntry getCacheEntry(Object id, boolean incRefCount) {
         CacheEntry cacheEntry = (CacheEntry) entryHashtable.get(id);
-        if (null != cacheEntry && incRefCount)
+        if (null != cacheEntry && incRefCount) {
             cacheEntry.incRefCount();
+            // The entry is not pinned until its count is incremented, so it may have been removed and reused for
+            // another id after the lookup. Removal takes an entry out of the index before it checks the count, so
+            // an entry that is still in the index once it is pinned stays valid until it is unpinned.
+            while (cacheEntry != null && entryHashtable.get(id) != cacheEntry) {
+                cacheEntry.finish();
+                cacheEntry = (CacheEntry) entryHashtable.get(id);
+                if (cacheEntry != null)
+                    cacheEntry.incRefCount();
+            }
+        }
         if (cacheEntry != null && !cacheEntry.pendingRemoval && !cacheEntry.removeWhenUnpinned) {
-            updateLruLocation(cacheEntry);
+            // Rather than moving the entry within the LRU under the cache lock, mark it as referenced.
+            // freeLruEntry moves referenced entries per their priority before it chooses a victim.
+            cacheEntry.lruReferenced = true;
+            if (frequencySketch != null) {
+                frequencySketch.increment(cacheEntry.id);
+            }
             if (cacheEntry.inactivity > 0) {
                 timeLimitDaemon.valueWasAccessed(this, cacheEntry.id, cacheEntry.expirationTime, cacheEntry.inactivity);
             }
@@ -787,6 +836,9 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
         updateInvalidationHashtable(cacheEntry);
 
         newEntry.copy(cacheEntry);
+        if (frequencySketch != null) {
+            frequencySketch.increment(newEntry.id);
+        }
         updateLruLocation(newEntry);
         increaseCacheSizeInBytes(newEntry);
 
@@ -966,7 +1018,19 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
      * used to update an entry's location in the LRU
      */
     private synchronized final void updateLruLocation(CacheEntry cacheEntry) {
-        if (cacheEntry.lruHead == null) {
+        cacheEntry.lruReferenced = false;
+        if (admissionWindow != null && (cacheEntry.lruHead == null || cacheEntry.lruHead == admissionWindow)) {
+            // new entries start in the admission window; freeLruEntry decides whether they enter the LRU
+            if (cacheEntry.lruHead == admissionWindow) {
+                admissionWindow.remove(cacheEntry);
+            }
+            cacheEntry.lruHead = admissionWindow;
+            admissionWindow.addLast(cacheEntry);
+            // while the cache has room, entries that leave the window are admitted without a contest
+            while (admissionWindow.size() > admissionWindowCapacity) {
+                admitToLru(admissionWindow.peekFirst());
+            }
+        } else if (cacheEntry.lruHead == null) {
             int lruBucket = (lruTop + cacheEntry.priority) % lruBuckets.length;
             cacheEntry.lruHead = lruBuckets[lruBucket];
             cacheEntry.lruHead.addLast(cacheEntry);
@@ -1208,6 +1272,9 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
             cacheEntry.setValue(value);
             increaseCacheSizeInBytes(cacheEntry);
         }
+        if (frequencySketch != null) {
+            frequencySketch.increment(cacheEntry.id);
+        }
         if (updateLru) {
             updateLruLocation(cacheEntry);
         }
@@ -1779,6 +1846,9 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
         Object value = null;
         if (cacheEntry.serializedValue != null) {
             value = cacheEntry.serializedValue;
+        } else if (cacheEntry.value instanceof OffHeapValue) {
+            // An off-heap value is copied to the heap only for an invalidation listener
+            value = cacheEntry.value;
         } else {
             value = cacheEntry.getValue();
         }
@@ -1830,6 +1900,8 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
             // Value is valid if ignoreValueInInvalidationEvent is false. Otherwise, leave the value to NULL.
             if (this.ignoreValueInInvalidationEvent == true) {
                 value = null;
+            } else if (value instanceof OffHeapValue) {
+                value = ((OffHeapValue) value).getValue();
             }
             InvalidationEvent ie = new InvalidationEvent(cacheEntry.id, value, causeOfInvalidation, src, this.cacheName);
             eventSource.fireEvent(ie);
@@ -2407,62 +2479,55 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
     }
 
     /**
-     * Remove the LRU entry from memory. If disk caching is enabled write the LRUed entry to disk
+     * Remove the LRU entry from memory. If disk caching is enabled write the LRUed entry to disk.
+     * Entries that were referenced by a cache hit since they were placed in the LRU are given a second chance:
+     * they are moved per their priority, as a cache hit used to do, rather than being chosen as the victim.
+     * With the TinyLFU admission policy, a full admission window first gives up its oldest entry, which
+     * either enters the LRU, if it is used more often than the LRU victim, or is itself removed.
      */
     @Override
     public synchronized FreeLruEntryResult freeLruEntry() {
         FreeLruEntryResult result = new FreeLruEntryResult();
         CacheEntry cacheEntry = null;
+        int secondChances = entryHashtable.size(); // bound the moves in case hits keep re-referencing entries
+
+        if (admissionWindow != null && admissionWindow.size() >= admissionWindowCapacity) {
+            CacheEntry candidate = findAdmissionCandidate();
+            if (candidate != null) {
+                CacheEntry victim = findLruVictim();
+                if (victim != null && frequencySketch.frequency(candidate.id) <= frequencySketch.frequency(victim.id)) {
+                    if (evictLruEntry(candidate, result)) {
+                        cacheStatisticsListener.admissionRejection();
+                        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                            Tr.debug(tc, "freeLruEntry() cacheName=" + cacheName + " rejected id=" + candidate.id + " in favor of id=" + victim.id);
+                        }
+                        return result;
+                    }
+                }
+                admitToLru(candidate);
+            }
+        }
+
         int endTop = (lruTop + lruBuckets.length - 1) % lruBuckets.length;
         while (cacheEntry == null && lruTop != endTop) {
             if (!lruBuckets[lruTop].isEmpty()) {
                 Iterator it = lruBuckets[lruTop].iterator();
                 while (it.hasNext()) {
-                    cacheEntry = (CacheEntry) it.next();
-                    if (cacheEntry.getRefCount() == 0) {
-                        Object id = cacheEntry.id;
-                        if (id != null) {
-                            result.success = false;
-                            if (isCacheSizeInMBEnabled()) {
-                                result.bytesRemoved = cacheEntry.getObjectSize();
-                            }
-
-                            if (swapToDisk && cacheEntry.persistToDisk) {
-                                LruToDiskResult toDiskResult = lruToDisk(cacheEntry);
-                                if (tc.isDebugEnabled())
-                                    Tr.debug(tc, toDiskResult.toString());
-                                if (toDiskResult.result != HTODDynacache.DISK_EXCEPTION && toDiskResult.result != HTODDynacache.OTHER_EXCEPTION
-                                    && toDiskResult.result != HTODDynacache.SERIALIZATION_EXCEPTION)
-                                    result.success = true;
-                            } else {
-                                // Display this message only once if the disk offload feature is disabled
-                                // DYNA1070I=DYNA1070I: Cache instance \"{0}\" is full and has reached the maximum
-                                // configured size of {1} entries.
-                                // Space on the JVM heap for new entries will now be made by evicting existing cache
-                                // entries using the LRU algorithm.
-                                // Please consider enabling the disk offload feature for the cache instance to prevent
-                                // the discard of cache entries
-                                // from memory.
-                                if (swapToDisk == false && displayedLRUMessage == false) {
-                                    Tr.audit(tc, "DYNA1070I", new Object[] { cacheName, new Integer(cacheConfig.cacheSize) });
-                                    displayedLRUMessage = true;
-                                }
-
-                                if (shouldInvalidate(id)) {
-                                    result.success = internalInvalidateById(id, CachePerf.LRU, CachePerf.LOCAL, FIRE_INVALIDATION_LISTENER);
-                                }
-
-                                if (false == cacheConfig.filterLRUInvalidation && true == result.success) {
-                                    invalidateById(id, CachePerf.LRU, CachePerf.LOCAL, false, !InvalidateByIdEvent.INVOKE_INTERNAL_INVALIDATE_BY_ID);
-                                }
-                            }
-                            if (true == result.success) {
-                                if (tc.isDebugEnabled()) {
-                                    Tr.exit(tc, "return freeLruEntry() true");
-                                }
-                                return result;
-                            }
+                    CacheEntry candidate = (CacheEntry) it.next();
+                    if (candidate.lruReferenced && secondChances-- > 0) {
+                        // the iterator has already moved past the candidate, so it is safe to move
+                        candidate.lruReferenced = false;
+                        candidate.lruHead.remove(candidate);
+                        candidate.lruHead = lruBuckets[(lruTop + candidate.priority) % lruBuckets.length];
+                        candidate.lruHead.addLast(candidate);
+                        continue;
+                    }
+                    cacheEntry = candidate;
+                    if (evictLruEntry(cacheEntry, result)) {
+                        if (tc.isDebugEnabled()) {
+                            Tr.exit(tc, "return freeLruEntry() true");
                         }
+                        return result;
                     }
                 }
             }
@@ -2487,6 +2552,100 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
         return result;
     }
 
+    /**
+     * Remove an unpinned entry from memory as an LRU victim, writing it to disk if disk caching is enabled.
+     *
+     * @return true if the entry was removed.
+     */
+    private boolean evictLruEntry(CacheEntry cacheEntry, FreeLruEntryResult result) {
+        if (cacheEntry.getRefCount() == 0) {
+            Object id = cacheEntry.id;
+            if (id != null) {
+                result.success = false;
+                if (isCacheSizeInMBEnabled()) {
+                    result.bytesRemoved = cacheEntry.getObjectSize();
+                }
+
+                if (swapToDisk && cacheEntry.persistToDisk) {
+                    LruToDiskResult toDiskResult = lruToDisk(cacheEntry);
+                    if (tc.isDebugEnabled())
+                        Tr.debug(tc, toDiskResult.toString());
+                    if (toDiskResult.result != HTODDynacache.DISK_EXCEPTION && toDiskResult.result != HTODDynacache.OTHER_EXCEPTION
+                        && toDiskResult.result != HTODDynacache.SERIALIZATION_EXCEPTION)
+                        result.success = true;
+                } else {
+                    // Display this message only once if the disk offload feature is disabled
+                    // DYNA1070I=DYNA1070I: Cache instance \"{0}\" is full and has reached the maximum
+                    // configured size of {1} entries.
+                    // Space on the JVM heap for new entries will now be made by evicting existing cache
+                    // entries using the LRU algorithm.
+                    // Please consider enabling the disk offload feature for the cache instance to prevent
+                    // the discard of cache entries
+                    // from memory.
+                    if (swapToDisk == false && displayedLRUMessage == false) {
+                        Tr.audit(tc, "DYNA1070I", new Object[] { cacheName, new Integer(cacheConfig.cacheSize) });
+                        displayedLRUMessage = true;
+                    }
+
+                    if (shouldInvalidate(id)) {
+                        result.success = internalInvalidateById(id, CachePerf.LRU, CachePerf.LOCAL, FIRE_INVALIDATION_LISTENER);
+                    }
+
+                    if (false == cacheConfig.filterLRUInvalidation && true == result.success) {
+                        invalidateById(id, CachePerf.LRU, CachePerf.LOCAL, false, !InvalidateByIdEvent.INVOKE_INTERNAL_INVALIDATE_BY_ID);
+                    }
+                }
+                return result.success;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the oldest entry in the admission window that is not pinned. Entries that were referenced
+     * by a cache hit since they were placed in the window are moved to the end of the window instead.
+     */
+    private CacheEntry findAdmissionCandidate() {
+        int secondChances = admissionWindow.size();
+        Iterator it = admissionWindow.iterator();
+        while (it.hasNext()) {
+            CacheEntry candidate = (CacheEntry) it.next();
+            if (candidate.lruReferenced && secondChances-- > 0) {
+                candidate.lruReferenced = false;
+                admissionWindow.remove(candidate);
+                candidate.lruHead = admissionWindow;
+                admissionWindow.addLast(candidate);
+            } else if (candidate.getRefCount() == 0 && candidate.id != null) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the entry that the LRU would remove next, without removing it, or null if the
+     * lowest priority bucket has no such entry.
+     */
+    private CacheEntry findLruVictim() {
+        Iterator it = lruBuckets[lruTop].iterator();
+        while (it.hasNext()) {
+            CacheEntry candidate = (CacheEntry) it.next();
+            if (!candidate.lruReferenced && candidate.getRefCount() == 0 && candidate.id != null) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Move an entry from the admission window into the LRU per its priority.
+     */
+    private void admitToLru(CacheEntry cacheEntry) {
+        admissionWindow.remove(cacheEntry);
+        cacheEntry.lruHead = lruBuckets[(lruTop + cacheEntry.priority) % lruBuckets.length];
+        cacheEntry.lruHead.addLast(cacheEntry);
+    }
+
     private boolean shouldInvalidate(Object id) {
 
         boolean shouldInvalidate = true;
@@ -2664,7 +2823,8 @@ public class Cache extends DCacheBase implements com.ibm.websphere.cache.CacheLo
             // handle the error found from step 2
             if (toDiskResult.result != HTODDynacache.NO_EXCEPTION) { // 311376
                 int cause = CachePerf.LRU;
-                if (toDiskResult.result == HTODDynacache.DISK_SIZE_OVER_LIMIT_EXCEPTION) {
+                if (toDiskResult.result == HTODDynacache.DISK_SIZE_OVER_LIMIT_EXCEPTION
+                    || toDiskResult.result == HTODDynacache.DISK_SIZE_IN_ENTRIES_OVER_LIMIT_EXCEPTION) {
                     cause = CachePerf.DISK_OVERFLOW;
                 }
                 if (cacheEntry.skipMemoryAndWriteToDisk) {
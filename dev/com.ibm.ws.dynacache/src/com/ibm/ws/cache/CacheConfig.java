@@ -55,6 +55,7 @@ public class CacheConfig implements DCacheConfig, Cloneable {
     public static final String IGNORE_VALUE_IN_INVALIDATION_EVENT = "com.ibm.ws.cache.CacheConfig.ignoreValueInInvalidationEvent";
     public static final String DISKCACHE_PERFORMANCE_LEVEL = "com.ibm.ws.cache.CacheConfig.diskCachePerformanceLevel";
     public static final String DISKCACHE_EVICTION_POLICY = "com.ibm.ws.cache.CacheConfig.diskCacheEvictionPolicy";
+    public static final String DISKCACHE_OBJECT_STORE = "com.ibm.ws.cache.CacheConfig.diskCacheObjectStore";
     public static final String DISKCACHE_HIGH_THRESHOLD = "com.ibm.ws.cache.CacheConfig.diskCacheHighThreshold";
     public static final String DISKCACHE_LOW_THRESHOLD = "com.ibm.ws.cache.CacheConfig.diskCacheLowThreshold";
     public static final String DISKCACHE_SIZE = "com.ibm.ws.cache.CacheConfig.diskCacheSize";
@@ -68,6 +69,9 @@ public class CacheConfig implements DCacheConfig, Cloneable {
     public static final String FILTER_INACTIVITY_INVALIDATION = "com.ibm.ws.cache.CacheConfig.filterInactivityInvalidation";
     public static final String LRU_TO_DISK_TRIGGER_TIME = "com.ibm.ws.cache.CacheConfig.lruToDiskTriggerTime";
     public static final String LRU_TO_DISK_TRIGGER_PERCENT = "com.ibm.ws.cache.CacheConfig.lruToDiskTriggerPercent";
+    public static final String ADMISSION_POLICY = "com.ibm.ws.cache.CacheConfig.admissionPolicy";
+    public static final String ADMISSION_WINDOW_PERCENT = "com.ibm.ws.cache.CacheConfig.admissionWindowPercent";
+    public static final String OFF_HEAP_SIZE_IN_MB = "com.ibm.ws.cache.CacheConfig.offHeapSizeInMB";
     public static final String CACHE_ENTRY_WINDOW = "com.ibm.ws.cache.CacheConfig.cacheEntryWindow";
     public static final String CACHE_PERCENTAGE_WINDOW = "com.ibm.ws.cache.CacheConfig.cachePercentageWindow";
     public static final String CACHE_INVALIDATE_ENTRY_WINDOW = "com.ibm.ws.cache.CacheConfig.cacheInvalidateEntryWindow";
@@ -114,6 +118,12 @@ public class CacheConfig implements DCacheConfig, Cloneable {
     public static final int EVICTION_NONE = 0;
     public static final int EVICTION_RANDOM = 1;
     public static final int EVICTION_SIZE_BASED = 2;
+
+    public static final String ADMISSION_POLICY_LRU = "LRU";
+    public static final String ADMISSION_POLICY_TINYLFU = "TinyLFU";
+
+    public static final String DISKCACHE_OBJECT_STORE_HTOD = "htod";
+    public static final String DISKCACHE_OBJECT_STORE_SEGMENTED = "segmented";
     // -------------------------------------------------
     // Config settings - Behaviour Change from v5
     // -------------------------------------------------
@@ -142,6 +152,8 @@ public class CacheConfig implements DCacheConfig, Cloneable {
     public static final int DEFAULT_TLD_TIME_GRANULARITY = 5; // unit in sec
     public static final int DEFAULT_LRU_TO_DISK_TRIGGER_TIME = DEFAULT_TLD_TIME_GRANULARITY * 1000; // unit in msec
     public static final int DEFAULT_LRU_TO_DISK_TRIGGER_PERCENT = 0; // unit in percent
+    public static final int DEFAULT_ADMISSION_WINDOW_PERCENT = 1; // unit in percent
+    public static final int DEFAULT_OFF_HEAP_SIZE_IN_MB = 0; // 0 means values stay on the heap
     public static final int DEFAULT_LRU_TO_DISK_TRIGGER_TIME_FOR_TRIMCACHE = 1000; // unit in msec
     public static final int DEFAULT_REPLICATION_PAYLOAD_SIZE_IN_MB = 10; // 10 MB
 
@@ -172,6 +184,10 @@ public class CacheConfig implements DCacheConfig, Cloneable {
     public static final int MIN_LRU_TO_DISK_TRIGGER_TIME = 1; // unit in msec
     public static final int MAX_LRU_TO_DISK_TRIGGER_PERCENT = 100; // unit in percent
     public static final int MIN_LRU_TO_DISK_TRIGGER_PERCENT = 0; // unit in percent
+    public static final int MAX_ADMISSION_WINDOW_PERCENT = 100; // unit in percent
+    public static final int MIN_ADMISSION_WINDOW_PERCENT = 1; // unit in percent
+    public static final int MAX_OFF_HEAP_SIZE_IN_MB = 128 * 1024; // 128 GB
+    public static final int MIN_OFF_HEAP_SIZE_IN_MB = 0;
 
     /**
      * This determines how many cycles in the clock algorithm must pass before an unused entry is chosen as a victim.
@@ -248,6 +264,14 @@ public class CacheConfig implements DCacheConfig, Cloneable {
     int diskCacheHighThreshold = DEFAULT_HIGH_THRESHOLD;
     int diskCacheLowThreshold = DEFAULT_LOW_THRESHOLD;
 
+    // Store used for cache entries offloaded to disk.
+    // htod - a single hashtable file. Disk reads and writes are serialized.
+    // segmented - append-only segment files with a memory-mapped, lock striped index.
+    //             Disk reads run in parallel. Dependency ids and templates are kept in htod files either way.
+    // Default: htod
+    // Scope: configurable per cache instance
+    String diskCacheObjectStore = DISKCACHE_OBJECT_STORE_HTOD;
+
     // -------------------------------------------------
     // Config settings - External Cache Groups
     // -------------------------------------------------
@@ -288,6 +312,24 @@ public class CacheConfig implements DCacheConfig, Cloneable {
     // Scope: configurable per cache instance
     int lruToDiskTriggerPercent = DEFAULT_LRU_TO_DISK_TRIGGER_PERCENT;
 
+    // Policy that decides which entries are kept in the memory cache when it is full.
+    // LRU - every new entry is admitted and the least recently used entry is evicted.
+    // TinyLFU - new entries are held in an admission window of admissionWindowPercent of the
+    // memory cache size. When the window is full, its oldest entry is admitted to the main
+    // cache only if it has been used more often than the entry that LRU would evict in its place.
+    // Default: LRU
+    // Scope: configurable per cache instance
+    String admissionPolicy = ADMISSION_POLICY_LRU;
+    int admissionWindowPercent = DEFAULT_ADMISSION_WINDOW_PERCENT;
+
+    // Size in MB of the direct buffer region that holds the serialized values of a DistributedNioMap.
+    // Only the keys and metadata of the entries remain on the heap. When the region is full, least
+    // recently used entries are removed to make room. The memoryCacheSizeInMB limit counts the
+    // off-heap bytes that each value uses.
+    // Default: 0 - values are held on the heap
+    // Scope: configurable per cache instance
+    int offHeapSizeInMB = DEFAULT_OFF_HEAP_SIZE_IN_MB;
+
     int timeHoldingInvalidations = 200000; // used by InvalidationAuditDaemon
     int htodCleanupHour = 0; // 0 means do it at midnight
     long htodInvalInterval = 24 * 60 * 60 * 1000; // ms
@@ -419,6 +461,9 @@ public class CacheConfig implements DCacheConfig, Cloneable {
         // -------------------------------------------------
         cacheSize = config.cacheSize;
         cacheProviderName = config.cacheProviderName;
+        admissionPolicy = config.admissionPolicy;
+        admissionWindowPercent = config.admissionWindowPercent;
+        offHeapSizeInMB = config.offHeapSizeInMB;
 
         // -------------------------------------------------
         // DynamicCache settings - Replication Defaults
@@ -444,6 +489,7 @@ public class CacheConfig implements DCacheConfig, Cloneable {
         diskCachePerformanceLevel = config.diskCachePerformanceLevel;
         htodCleanupFrequency = config.htodCleanupFrequency;
         diskCacheEvictionPolicy = config.diskCacheEvictionPolicy;
+        diskCacheObjectStore = config.diskCacheObjectStore;
         diskCacheHighThreshold = config.diskCacheHighThreshold;
         diskCacheLowThreshold = config.diskCacheLowThreshold;
         htodDelayOffloadEntriesLimit = config.htodDelayOffloadEntriesLimit;
@@ -651,6 +697,23 @@ public class CacheConfig implements DCacheConfig, Cloneable {
         return lruToDiskTriggerPercent;
     }
 
+    public String getDiskCacheObjectStore() {
+        return diskCacheObjectStore;
+    }
+
+    public String getAdmissionPolicy() {
+        return admissionPolicy;
+    }
+
+    public int getAdmissionWindowPercent() {
+        return admissionWindowPercent;
+    }
+
+    @Override
+    public int getOffHeapSizeInMB() {
+        return offHeapSizeInMB;
+    }
+
     @Override
     public int getLruToDiskTriggerTime() {
         return lruToDiskTriggerTime;
@@ -997,7 +1060,8 @@ public class CacheConfig implements DCacheConfig, Cloneable {
                + ", commandCachePriority=" + commandCachePriority + ", configReloadInterval=" + configReloadInterval + ", disableDependencyId="
                + disableDependencyId + ", disableStoreCookies=" + disableStoreCookies + ", disableTemplateInvalidation="
                + disableTemplateInvalidation + ", disableTemplatesSupport=" + disableTemplatesSupport + ", diskCacheEntrySizeInMB="
-               + diskCacheEntrySizeInMB + ", diskCacheEvictionPolicy=" + diskCacheEvictionPolicy + ", diskCacheHighThreshold="
+               + diskCacheEntrySizeInMB + ", diskCacheEvictionPolicy=" + diskCacheEvictionPolicy + ", diskCacheObjectStore=" + diskCacheObjectStore
+               + ", diskCacheHighThreshold="
                + diskCacheHighThreshold + ", diskCacheLowThreshold=" + diskCacheLowThreshold + ", diskCachePerformanceLevel="
                + diskCachePerformanceLevel + ", diskCacheSize=" + diskCacheSize + ", diskCacheSizeInGB=" + diskCacheSizeInGB + ", diskHashBuckets="
                + diskHashBuckets + ", diskOffloadLocation=" + diskOffloadLocation + ", htodCleanupFrequency=" + htodCleanupFrequency
@@ -1008,7 +1072,8 @@ public class CacheConfig implements DCacheConfig, Cloneable {
                + htodInvalInterval + ", htodInvalidationBufferLife=" + htodInvalidationBufferLife + ", htodInvalidationBufferSize="
                + htodInvalidationBufferSize + ", htodNumberOfPools=" + htodNumberOfPools + ", htodPoolEntryLife=" + htodPoolEntryLife
                + ", htodPoolSize=" + htodPoolSize + ", htodTemplateHashtableSize=" + htodTemplateHashtableSize + ", lruToDiskTriggerPercent="
-               + lruToDiskTriggerPercent + ", lruToDiskTriggerTime=" + lruToDiskTriggerTime + ", explicitBufferLimitOnStop="
+               + lruToDiskTriggerPercent + ", lruToDiskTriggerTime=" + lruToDiskTriggerTime + ", admissionPolicy=" + admissionPolicy
+               + ", admissionWindowPercent=" + admissionWindowPercent + ", offHeapSizeInMB=" + offHeapSizeInMB + ", explicitBufferLimitOnStop="
                + explicitBufferLimitOnStop + ", drsBootstrapEnabled=" + drsBootstrapEnabled + ", drsDisabled=" + drsDisabled + ", dtdDir=" + dtdDir
                + ", filterInactivityInvalidation=" + filterInactivityInvalidation + ", filterLRUInvalidation=" + filterLRUInvalidation
                + ", filterTimeOutInvalidation=" + filterTimeOutInvalidation + ", filteredStatusCodes=" + filteredStatusCodes
@@ -252,6 +252,12 @@ public class CacheEntry implements com.ibm.websphere.cache.CacheEntry, Invalidat
 
     //LRU processing variables
     transient protected LRUHead lruHead;
+
+    /**
+     * Set when the entry is used, without locking the cache, and cleared when the entry is
+     * moved within the LRU. Entries that are marked are moved instead of being LRU victims.
+     */
+    transient protected volatile boolean lruReferenced = false;
     transient protected CacheEntry _previous = null;
     transient protected CacheEntry _next = null;
 
@@ -711,6 +717,8 @@ public class CacheEntry implements com.ibm.websphere.cache.CacheEntry, Invalidat
                 }
             }
         }
+        if (value instanceof OffHeapValue)
+            return ((OffHeapValue) value).getValue();
         return value;
     }
 
@@ -761,13 +769,13 @@ public class CacheEntry implements com.ibm.websphere.cache.CacheEntry, Invalidat
 
     /**
      * Mimics a cache Hit, refreshing an entries spot in the LRU algorithm.
-     * TODO: this function seems does not work
      * 
      * @return The creation timestamp.
      */
     @Override
     public void refreshEntry() {
         clock = priority;
+        lruReferenced = true;
     }
 
     /**
@@ -823,6 +831,7 @@ public class CacheEntry implements com.ibm.websphere.cache.CacheEntry, Invalidat
         isOverflowEntry = false;
         lruEvicted = false;
         lruHead = null;
+        lruReferenced = false;
         useByteBuffer = false;
         aliasList = EMPTY_OBJECT_ARRAY;
         serializedAliasList = null;
@@ -1098,7 +1107,9 @@ public class CacheEntry implements com.ibm.websphere.cache.CacheEntry, Invalidat
         }
 
         Object dValue = value;
-        if (value instanceof byte[]) {
+        if (value instanceof OffHeapValue) {
+            dValue = ((OffHeapValue) value).getValue();
+        } else if (value instanceof byte[]) {
             try {
                 dValue = SerializationUtility.deserialize((byte[]) value, cacheName);
             } catch (Exception ex) {
@@ -1264,6 +1275,7 @@ public class CacheEntry implements com.ibm.websphere.cache.CacheEntry, Invalidat
         public int priority = 0;
         private CacheEntry head;
         private CacheEntry tail;
+        private int size = 0;
 
         private CacheEntry _iterator = null;
 
@@ -1275,6 +1287,7 @@ public class CacheEntry implements com.ibm.websphere.cache.CacheEntry, Invalidat
             head = cacheEntry;
             if (tail == null)
                 tail = cacheEntry;
+            size++;
         }
 
         public void addLast(CacheEntry cacheEntry) {
@@ -1286,13 +1299,21 @@ public class CacheEntry implements com.ibm.websphere.cache.CacheEntry, Invalidat
                 tail._next = cacheEntry;
             }
             tail = cacheEntry;
-
+            size++;
         }
 
         public boolean isEmpty() {
             return head == null;
         }
 
+        public CacheEntry peekFirst() {
+            return head;
+        }
+
+        public int size() {
+            return size;
+        }
+
         public boolean isLast(CacheEntry cacheEntry) {
             return tail == cacheEntry;
         }
@@ -1343,6 +1364,7 @@ public class CacheEntry implements com.ibm.websphere.cache.CacheEntry, Invalidat
             }
             cacheEntry._next = cacheEntry._previous = null;
             cacheEntry.lruHead = null;
+            size--;
         }
 
         public CacheEntry removeFirst() {
@@ -1353,6 +1375,7 @@ public class CacheEntry implements com.ibm.websphere.cache.CacheEntry, Invalidat
                     head._previous = null;
                 else
                     tail = null;
+                size--;
             }
             return ret;
         }
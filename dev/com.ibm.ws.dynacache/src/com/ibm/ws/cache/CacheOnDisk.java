@@ -27,6 +27,7 @@ import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
 import com.ibm.websphere.ras.annotation.Trivial;
 import com.ibm.ws.cache.intf.DCache;
+import com.ibm.ws.cache.persistent.htod.SegmentedHashtableOnDisk;
 import com.ibm.ws.cache.util.ExceptionUtility;
 
 public class CacheOnDisk implements DynacacheOnDisk {
@@ -170,6 +171,7 @@ public class CacheOnDisk implements DynacacheOnDisk {
     protected GarbageCollectorThread garbageCollectionThread = null;
     protected DiskCleanupThread diskCleanupThread = null;
     protected int evictionPolicy = CacheConfig.DEFAULT_DISKCACHE_EVICTION_POLICY;
+    protected String diskCacheObjectStore = CacheConfig.DISKCACHE_OBJECT_STORE_HTOD;
     protected DiskCacheSizeInfo diskCacheSizeInfo = null;
 
     protected boolean doNotify = false;
@@ -214,6 +216,7 @@ public class CacheOnDisk implements DynacacheOnDisk {
         this.ignoreValueInInvalidationEvent = cacheConfig.ignoreValueInInvalidationEvent;
         this.diskCachePerformanceLevel = cacheConfig.diskCachePerformanceLevel;
         this.evictionPolicy = cacheConfig.diskCacheEvictionPolicy;
+        this.diskCacheObjectStore = cacheConfig.diskCacheObjectStore;
         this.explicitBufferLimitOnStop = cacheConfig.explicitBufferLimitOnStop;
 
         int diskCacheSizeLimit = cacheConfig.diskCacheSize; // 3821 NK begin
@@ -231,6 +234,14 @@ public class CacheOnDisk implements DynacacheOnDisk {
             this.diskCachePerformanceLevel = CacheConfig.DEFAULT_DISKCACHE_PERFORMANCE_LEVEL;
         }
 
+        if (!CacheConfig.DISKCACHE_OBJECT_STORE_HTOD.equalsIgnoreCase(this.diskCacheObjectStore)
+                && !CacheConfig.DISKCACHE_OBJECT_STORE_SEGMENTED.equalsIgnoreCase(this.diskCacheObjectStore)) {
+            Tr.warning(tc, "DYNA0069W", new Object[] { this.diskCacheObjectStore, "diskCacheObjectStore", this.cacheName,
+                                                      CacheConfig.DISKCACHE_OBJECT_STORE_HTOD, CacheConfig.DISKCACHE_OBJECT_STORE_SEGMENTED,
+                                                      CacheConfig.DISKCACHE_OBJECT_STORE_HTOD });
+            this.diskCacheObjectStore = CacheConfig.DISKCACHE_OBJECT_STORE_HTOD;
+        }
+
         if (this.diskCachePerformanceLevel == CacheConfig.HIGH || this.diskCachePerformanceLevel == CacheConfig.CUSTOM
                 || diskCachePerformanceLevel == CacheConfig.BALANCED) {
             delayOffload = true;
@@ -351,6 +362,11 @@ public class CacheOnDisk implements DynacacheOnDisk {
             // Disk cache files have been removed because of unexpected JVM termination.
             Tr.warning(tc, "DYNA0056W");
             deleteDiskCacheFiles();
+        } else if (isObjectStoreChanged()) {
+            // The cache entries on disk were written by the other kind of object store and cannot be read.
+            traceDebug(methodName, "cacheName=" + this.cacheName + " diskCacheObjectStore changed to " + this.diskCacheObjectStore
+                                   + ", deleting disk cache files");
+            deleteDiskCacheFiles();
         }
         createInProgressFile();
 
@@ -931,6 +947,18 @@ public class CacheOnDisk implements DynacacheOnDisk {
         });
     }
 
+    /**
+     * Return true if the swap directory has cache entry files of the object store
+     * that is not configured.
+     */
+    private boolean isObjectStoreChanged() {
+        String objectFileName = swapDirPath + sep + HTOD_PREF + HTODDynacache.object_suffix;
+        if (CacheConfig.DISKCACHE_OBJECT_STORE_SEGMENTED.equalsIgnoreCase(this.diskCacheObjectStore)) {
+            return new File(objectFileName + ".htod").exists();
+        }
+        return new File(objectFileName + SegmentedHashtableOnDisk.INDEX_SUFFIX).exists();
+    }
+
     /**
      * Call this method to delete all disk cache files per cache instance.
      */
@@ -16,6 +16,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Dictionary;
+import java.util.EnumSet;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -27,6 +28,8 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterRegistration;
 import javax.servlet.ServletContainerInitializer;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
@@ -53,6 +56,8 @@ import com.ibm.ws.cache.CacheConfig.ExternalCacheGroupMember;
 import com.ibm.ws.cache.intf.DCache;
 import com.ibm.ws.cache.intf.ObjectCacheUnit;
 import com.ibm.ws.cache.intf.ServletCacheUnit;
+import com.ibm.ws.cache.servlet.ResponseCacheConfig;
+import com.ibm.ws.cache.servlet.ResponseCacheFilter;
 import com.ibm.ws.ffdc.FFDCFilter;
 import com.ibm.wsspi.cache.CacheProvider;
 import com.ibm.wsspi.cache.DistributedObjectCacheFactory;
@@ -904,11 +909,46 @@ public class CacheServiceImpl implements CacheService, ResourceFactory, ServletC
             Tr.debug(tc, "created listener to add to servletContext.  listener is: " + this);
 
         ctx.addListener(this);
+        addResponseCacheFilter(ctx);
 
         if (tc.isEntryEnabled())
             Tr.exit(tc, "onStartup");
     }
 
+    // --------------------------------------------------------------
+    // Adds the response cache filter to a web module that has
+    // a WEB-INF/responsecache.properties file. The filter is mapped
+    // after the filters of the web module, so that they still run
+    // when a cached response is returned.
+    // --------------------------------------------------------------
+    private void addResponseCacheFilter(ServletContext ctx) {
+        final String methodName = "addResponseCacheFilter()";
+        try {
+            URL u = ctx.getResource("/" + ResponseCacheConfig.RESPONSE_CACHE_PROPERTIES);
+            if (u == null)
+                return;
+            Properties props = new Properties();
+            InputStream is = u.openStream();
+            try {
+                props.load(is);
+            } finally {
+                is.close();
+            }
+            ResponseCacheConfig responseCacheConfig = ResponseCacheConfig.fromProperties(props, u.toString());
+            if (responseCacheConfig == null)
+                return;
+            FilterRegistration.Dynamic registration = ctx.addFilter(ResponseCacheFilter.FILTER_NAME, new ResponseCacheFilter(responseCacheConfig));
+            if (registration != null) {
+                registration.setAsyncSupported(true);
+                registration.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/*");
+            }
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, methodName + " contextPath=" + ctx.getContextPath() + " registration=" + registration + " " + responseCacheConfig);
+        } catch (Exception ex) {
+            com.ibm.ws.ffdc.FFDCFilter.processException(ex, "com.ibm.ws.cache.CacheServiceImpl.addResponseCacheFilter", "946", this);
+        }
+    }
+
     @Override
     public void contextInitialized(ServletContextEvent sce) {
         final String methodName = "contextInitialized";
@@ -30,6 +30,8 @@ public class CacheStatisticsListenerImpl implements CacheStatisticsListener {
 
     private long overflowEntriesFromMemory = 0; //PK33017
 
+    private long admissionRejections = 0;
+
     private long explicitInvalidationsFromMemory = 0;
     private long explicitInvalidationsFromDisk = 0;
     private long explicitInvalidationsLocal = 0;
@@ -337,6 +339,14 @@ public class CacheStatisticsListenerImpl implements CacheStatisticsListener {
         }
     }
 
+    @Override
+    public final void admissionRejection() {
+        this.admissionRejections++;
+        if (tc.isDebugEnabled()) {
+            Tr.debug(tc, this.cacheName + ": admissionRejections=" + this.admissionRejections);
+        }
+    }
+
     @Override
     public final void reset() {
         cacheHits = 0;
@@ -344,6 +354,7 @@ public class CacheStatisticsListenerImpl implements CacheStatisticsListener {
         cacheRemoves = 0;
         cacheLruRemoves = 0;
         overflowEntriesFromMemory = 0;
+        admissionRejections = 0;
         memoryCacheHits = 0;
         diskCacheHits = 0;
 
@@ -400,6 +411,7 @@ public class CacheStatisticsListenerImpl implements CacheStatisticsListener {
         cacheRemoves = 0;
         cacheLruRemoves = 0;
         overflowEntriesFromMemory = 0;
+        admissionRejections = 0;
 
         memoryCacheHits = 0;
 
@@ -762,6 +774,14 @@ public class CacheStatisticsListenerImpl implements CacheStatisticsListener {
         return overflowEntriesFromMemory;
     }
 
+    /**
+     * @return number of new entries that the TinyLFU admission policy removed instead of an LRU victim.
+     */
+    @Override
+    public long getAdmissionRejectionsCount() {
+        return admissionRejections;
+    }
+
     /*
      * (non-Javadoc)
      * 
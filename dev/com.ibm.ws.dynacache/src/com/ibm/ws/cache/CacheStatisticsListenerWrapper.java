@@ -81,6 +81,11 @@ public class CacheStatisticsListenerWrapper implements CacheStatisticsListener {
 		return 0;
 	}
 
+	public long getAdmissionRejectionsCount() {
+		// TODO implement this counter if this counter is defined in CacheStatistics interface
+		return 0;
+	}
+
 	public long getTimeoutInvalidationsFromMemoryCount() {
 		if (this.cacheStatistics != null) {
 			return this.cacheStatistics.getTimeoutInvalidationsFromMemoryCount();
@@ -320,6 +325,9 @@ public class CacheStatisticsListenerWrapper implements CacheStatisticsListener {
 	public void overflowEntriesFromMemory() {
 	}
 
+	public void admissionRejection() {
+	}
+
 	public void readEntryFromDisk(Object id, int valueSize) {
 	}
 
@@ -10,27 +10,88 @@
  *******************************************************************************/
 package com.ibm.ws.cache;
 
+import java.io.Serializable;
+
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
 import com.ibm.websphere.cache.ChangeListener;
 import com.ibm.websphere.cache.DistributedNioMap;
+import com.ibm.websphere.cache.DistributedNioMapObject;
 import com.ibm.websphere.cache.InvalidationListener;
 import com.ibm.websphere.cache.PreInvalidationListener;
 import com.ibm.websphere.cache.exception.DynamicCacheException;
 import com.ibm.ws.cache.intf.DCache;
+import com.ibm.ws.cache.util.SerializationUtility;
 
 public class DistributedNioMapImpl extends DistributedObjectCacheAdapter implements DistributedNioMap {
 
     private   static TraceComponent     tc                  = Tr.register(DistributedNioMapImpl.class, "WebSphere Dynamic Cache", "com.ibm.ws.cache.resources.dynacache");
-	
+
+    // Number of LRU entries released each time the off-heap region has no room for a value
+    private   static final int          OFF_HEAP_EVICTION_BATCH_SIZE = 16;
+    private   static final int          OFF_HEAP_MAX_EVICTION_ATTEMPTS = 8;
+
+    // Holds serialized values off the heap when offHeapSizeInMB is configured; null otherwise.
+    // Not initialized here because it is set by createMapSpecificObjects() during super().
+    private   SlabAllocator             offHeapAllocator;
 
     protected void createMapSpecificObjects(){
         super.entryInfoPool  = EntryInfo.createEntryInfoPool(super.cache.getCacheName(),50);
         super.cacheEntryPool = CacheEntry.createCacheEntryPool(super.cache, 50);
+
+        int offHeapSizeInMB = super.cache.getCacheConfig().getOffHeapSizeInMB();
+        if (offHeapSizeInMB < CacheConfig.MIN_OFF_HEAP_SIZE_IN_MB || offHeapSizeInMB > CacheConfig.MAX_OFF_HEAP_SIZE_IN_MB) {
+            Tr.warning(tc, "DYNA0069W", new Object[] { new Integer(offHeapSizeInMB), "offHeapSizeInMB", super.cache.getCacheName(),
+                                                      new Integer(CacheConfig.MIN_OFF_HEAP_SIZE_IN_MB),
+                                                      new Integer(CacheConfig.MAX_OFF_HEAP_SIZE_IN_MB),
+                                                      new Integer(CacheConfig.DEFAULT_OFF_HEAP_SIZE_IN_MB) });
+            offHeapSizeInMB = CacheConfig.DEFAULT_OFF_HEAP_SIZE_IN_MB;
+        }
+        if (offHeapSizeInMB > 0) {
+            offHeapAllocator = new SlabAllocator(offHeapSizeInMB, super.cache.getCacheName());
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, "createMapSpecificObjects() cacheName=" + super.cache.getCacheName() + " offHeapSizeInMB=" + offHeapSizeInMB);
+        }
     }
     protected void destroyMapSpecificObjects(){
         // what to do???
     }
+
+    /**
+     * Moves a value to the off-heap region if the region is configured. The value is
+     * serialized and copied into slab chunks, and an OffHeapValue that refers to them
+     * is stored in the cache entry instead. If the region is full, least recently
+     * used entries are released until the value fits. Values that are not serializable,
+     * values that manage their own buffers and values that do not fit stay on the heap.
+     */
+    private Object toOffHeap(Object value) {
+        final String methodName = "toOffHeap()";
+        SlabAllocator allocator = offHeapAllocator;
+        if (allocator == null || !(value instanceof Serializable) || value instanceof DistributedNioMapObject)
+            return value;
+        byte[] serializedValue;
+        try {
+            serializedValue = SerializationUtility.serialize((Serializable) value);
+        } catch (Exception ex) {
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, methodName + " cacheName=" + cacheName + " value is kept on the heap because it could not be serialized: " + ex);
+            return value;
+        }
+        if (serializedValue.length <= allocator.getCapacity()) {
+            for (int attempt = 0;; attempt++) {
+                OffHeapValue offHeapValue = OffHeapValue.store(allocator, cacheName, serializedValue);
+                if (offHeapValue != null)
+                    return offHeapValue;
+                if (attempt == OFF_HEAP_MAX_EVICTION_ATTEMPTS || super.cache.getNumberCacheEntriesUnsynchronized() == 0)
+                    break;
+                super.common_releaseLruEntries(OFF_HEAP_EVICTION_BATCH_SIZE);
+            }
+        }
+        if (tc.isDebugEnabled())
+            Tr.debug(tc, methodName + " cacheName=" + cacheName + " value of " + serializedValue.length + " bytes is kept on the heap because the off-heap region of "
+                         + allocator.getCapacity() + " bytes has no room for it. bytesInUse=" + allocator.getBytesInUse());
+        return value;
+    }
 	
     public DistributedNioMapImpl(DCache cache) {
         super(cache, TYPE_DISTRIBUTED_NIO_MAP);
@@ -52,7 +113,7 @@ public class DistributedNioMapImpl extends DistributedObjectCacheAdapter impleme
     // JDoc is in the super class.
     //-----------------------------------------------------
 	public void put(Object key, Object value, Object userMetaData, int priority, int timeToLive, int sharingPolicy, Object dependencyIds[], Object alias[]) {
-        super.common_put(key, value, userMetaData, priority, timeToLive, sharingPolicy, dependencyIds, alias );
+        super.common_put(key, toOffHeap(value), userMetaData, priority, timeToLive, sharingPolicy, dependencyIds, alias );
 	}
 
     //-----------------------------------------------------
@@ -60,7 +121,7 @@ public class DistributedNioMapImpl extends DistributedObjectCacheAdapter impleme
     // JDoc is in the super class.
     //-----------------------------------------------------
 	public void put(Object key, Object value, Object userMetaData, int priority, int timeToLive, int inactivityTime, int sharingPolicy, Object dependencyIds[], Object alias[]) {
-        super.common_put(key, value, userMetaData, priority, timeToLive, inactivityTime, sharingPolicy, dependencyIds, alias );
+        super.common_put(key, toOffHeap(value), userMetaData, priority, timeToLive, inactivityTime, sharingPolicy, dependencyIds, alias );
 	}
 
     //-----------------------------------------------------
@@ -68,7 +129,7 @@ public class DistributedNioMapImpl extends DistributedObjectCacheAdapter impleme
     // JDoc is in the super class.
     //-----------------------------------------------------
     public void put(Object key, Object value, Object userMetaData, int priority, int timeToLive, int inactivityTime, int sharingPolicy, Object dependencyIds[], Object alias[], boolean skipMemoryAndWriteToDisk) throws DynamicCacheException {
-        super.common_put(key, value, userMetaData, priority, timeToLive, inactivityTime, sharingPolicy, dependencyIds, alias, skipMemoryAndWriteToDisk );
+        super.common_put(key, skipMemoryAndWriteToDisk ? value : toOffHeap(value), userMetaData, priority, timeToLive, inactivityTime, sharingPolicy, dependencyIds, alias, skipMemoryAndWriteToDisk );
     }
 
     //-----------------------------------------------------
@@ -76,14 +137,14 @@ public class DistributedNioMapImpl extends DistributedObjectCacheAdapter impleme
     // JDoc is in the super class.
     //-----------------------------------------------------
 	public com.ibm.websphere.cache.CacheEntry putAndGet(Object key, Object value, Object userMetaData, int priority, int timeToLive, int sharingPolicy, Object dependencyIds[], Object alias[]) {
-        return super.common_putAndGet(key, value, userMetaData, priority, timeToLive, sharingPolicy, dependencyIds, alias );
+        return super.common_putAndGet(key, toOffHeap(value), userMetaData, priority, timeToLive, sharingPolicy, dependencyIds, alias );
 	}
 
      // Overrides super class method to activate function.
     // JDoc is in the super class.
     //-----------------------------------------------------
 	public com.ibm.websphere.cache.CacheEntry putAndGet(Object key, Object value, Object userMetaData, int priority, int timeToLive, int inactivityTime, int sharingPolicy, Object dependencyIds[], Object alias[]) {
-        return super.common_putAndGet(key, value, userMetaData, priority, timeToLive, inactivityTime, sharingPolicy, dependencyIds, alias );
+        return super.common_putAndGet(key, toOffHeap(value), userMetaData, priority, timeToLive, inactivityTime, sharingPolicy, dependencyIds, alias );
 	}
 	
     //-----------------------------------------------------
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate access frequency of cache ids, used by the TinyLFU admission policy.
+ * This is a count-min sketch with four rows of 4-bit counters, packed sixteen to
+ * a long. The estimate for an id is the smallest of its four counters. Once the
+ * number of increments reaches ten times the cache size, all counters are halved
+ * so that the history ages and entries that used to be popular lose their weight.
+ * <p>
+ * Cache hits record an access without holding the cache lock, so the counters are
+ * updated with compare and set. An increment that races with the halving is either
+ * halved with the rest of its slot or applied in full to the halved slot, and only
+ * one thread halves the counters at a time.
+ */
+class FrequencySketch {
+    /**
+     * Odd multipliers that give each row an independent index for the same hash code.
+     */
+    private static final long[] SEEDS = { 0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+
+    /**
+     * Clears the high bit of every counter after a right shift by one.
+     */
+    private static final long HALVE_MASK = 0x7777777777777777L;
+
+    /**
+     * Selects the low bit of every counter.
+     */
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private static final int MAX_COUNT = 15;
+
+    private final AtomicLongArray table;
+
+    private final int tableMask;
+
+    /**
+     * Number of increments after which the counters are halved.
+     */
+    private final int sampleSize;
+
+    private final AtomicInteger additions = new AtomicInteger();
+
+    /**
+     * Set while a thread is halving the counters.
+     */
+    private final AtomicBoolean halving = new AtomicBoolean();
+
+    /**
+     * @param maximumSize maximum number of entries in the cache.
+     */
+    FrequencySketch(int maximumSize) {
+        int max = Math.min(Math.max(maximumSize, 16), 1 << 30);
+        int size = Integer.highestOneBit(max);
+        if (size < max)
+            size <<= 1;
+        table = new AtomicLongArray(size);
+        tableMask = size - 1;
+        sampleSize = max > Integer.MAX_VALUE / 10 ? Integer.MAX_VALUE : 10 * max;
+    }
+
+    /**
+     * Returns the estimated number of times that the id has been recorded, up to 15.
+     *
+     * @param id cache id.
+     * @return estimated frequency.
+     */
+    int frequency(Object id) {
+        int hash = spread(id.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            int shift = (start + i) << 2;
+            int count = (int) ((table.get(indexOf(hash, i)) >>> shift) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access to the id.
+     *
+     * @param id cache id.
+     */
+    void increment(Object id) {
+        int hash = spread(id.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++)
+            added |= incrementAt(indexOf(hash, i), (start + i) << 2);
+        if (added && additions.incrementAndGet() >= sampleSize) {
+            // A thread that finds another one halving leaves its increment to that thread, which checks the
+            // count again after it is done. Otherwise the counters could all reach the maximum while the count
+            // is over the sample size, and the sketch would stop aging because no increment is counted.
+            while (additions.get() >= sampleSize && halving.compareAndSet(false, true)) {
+                try {
+                    if (additions.get() >= sampleSize)
+                        halve();
+                } finally {
+                    halving.set(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Increments the counter at the specified bit offset of a table slot unless it is already at the maximum.
+     *
+     * @return true if the counter was incremented.
+     */
+    private boolean incrementAt(int index, int shift) {
+        long mask = 0xFL << shift;
+        for (;;) {
+            long value = table.get(index);
+            if ((value & mask) == mask)
+                return false;
+            if (table.compareAndSet(index, value, value + (1L << shift)))
+                return true;
+        }
+    }
+
+    /**
+     * Halves every counter. Counters that were odd lose their remainder, which is
+     * subtracted from the addition count so that the next halving is not premature.
+     * Increments that are made while the counters are halved stay in the addition count.
+     */
+    private void halve() {
+        int odd = 0;
+        for (int i = 0; i < table.length(); i++) {
+            long value;
+            do {
+                value = table.get(i);
+            } while (!table.compareAndSet(i, value, (value >>> 1) & HALVE_MASK));
+            odd += Long.bitCount(value & ONE_MASK);
+        }
+        additions.addAndGet((sampleSize >>> 1) - (odd >>> 2) - sampleSize);
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    /**
+     * Mixes the bits of a hash code so that ids with similar hash codes use different counters.
+     */
+    private static int spread(int h) {
+        h = ((h >>> 16) ^ h) * 0x45D9F3B;
+        h = ((h >>> 16) ^ h) * 0x45D9F3B;
+        return (h >>> 16) ^ h;
+    }
+}
@@ -36,6 +36,8 @@ import com.ibm.ws.cache.persistent.htod.HashtableAction;
 import com.ibm.ws.cache.persistent.htod.HashtableEntry;
 import com.ibm.ws.cache.persistent.htod.HashtableOnDisk;
 import com.ibm.ws.cache.persistent.htod.HashtableOnDiskException;
+import com.ibm.ws.cache.persistent.htod.ObjectStore;
+import com.ibm.ws.cache.persistent.htod.SegmentedHashtableOnDisk;
 import com.ibm.ws.cache.stat.CachePerf;
 import com.ibm.ws.cache.util.ExceptionUtility;
 import com.ibm.ws.cache.util.SerializationUtility;
@@ -71,6 +73,7 @@ public class HTODDynacache {
     public final static int TEMPLATE_ID_DATA = 3;
 
     public final static String DISK_CACHE_IN_GB_OVER_LIMIT_MSG = "The disk cache size in GB is over the limit.";
+    public final static String DISK_CACHE_INDEX_FULL_MSG = "The disk cache index is full.";
 
     public final static ValueSet EMPTY_VS = new ValueSet(1);
 
@@ -89,7 +92,7 @@ public class HTODDynacache {
     //
     protected String filename; // base name of HTOD file
     protected String dirname;
-    protected FileManager object_filemgr; // File manager instance for objects
+    protected FileManager object_filemgr; // File manager instance for objects, null for the segmented object store
     protected FileManager dependency_filemgr; // File manager instance for dependencies
     protected FileManager template_filemgr; // File manager instance for templates
 
@@ -97,7 +100,7 @@ public class HTODDynacache {
     public static String dependency_suffix = "-dependencies";
     public static String template_suffix = "-templates";
 
-    protected HashtableOnDisk object_cache = null;
+    protected ObjectStore object_cache = null;
     protected HashtableOnDisk dependency_cache = null;
     protected HashtableOnDisk template_cache = null;
 
@@ -263,7 +266,12 @@ public class HTODDynacache {
     protected void init_files() throws IOException, ClassNotFoundException, FileManagerException {
         initFileManager();
 
-        if ((object_cache = HashtableOnDisk.getInstance(object_filemgr, auto_rehash, 0, HashtableOnDisk.HAS_CACHE_VALUE, this)) == null) {
+        if (isSegmentedObjectStore()) {
+            object_cache = new SegmentedHashtableOnDisk(filename + object_suffix, cod.dataHashtableSize, this);
+            if (this.cod.dataFiles == 0) {
+                this.cod.dataFiles = this.cod.dataGB = 1;
+            }
+        } else if ((object_cache = HashtableOnDisk.getInstance(object_filemgr, auto_rehash, 0, HashtableOnDisk.HAS_CACHE_VALUE, this)) == null) {
             HashtableOnDisk.createInstance(object_filemgr,
                                            cod.dataHashtableSize,
                                            hashtable_threshold);
@@ -305,11 +313,13 @@ public class HTODDynacache {
 
     {
         final String methodName = "initFileManager()";
-        object_filemgr = new FileManagerImpl(filename + object_suffix + ".htod", // filename
-        false, // automatic coalesce, not reccomended
-        "rw", // "r" or "rw"
-        physical_disk_manager, // physical file layer
-        this);
+        if (!isSegmentedObjectStore()) {
+            object_filemgr = new FileManagerImpl(filename + object_suffix + ".htod", // filename
+            false, // automatic coalesce, not reccomended
+            "rw", // "r" or "rw"
+            physical_disk_manager, // physical file layer
+            this);
+        }
 
         if (!this.disableDependencyId) {
             dependency_filemgr = new FileManagerImpl(filename + dependency_suffix + ".htod", // filename
@@ -328,6 +338,16 @@ public class HTODDynacache {
         }
     }
 
+    /*************************************************************************
+     * isSegmentedObjectStore()
+     * Return true if cache entries are kept in a SegmentedHashtableOnDisk
+     * instead of a HashtableOnDisk. Dependency ids and templates are always
+     * kept in HashtableOnDisk instances.
+     *************************************************************************/
+    boolean isSegmentedObjectStore() {
+        return CacheConfig.DISKCACHE_OBJECT_STORE_SEGMENTED.equalsIgnoreCase(this.cod.diskCacheObjectStore);
+    }
+
     /*************************************************************************
      * initializeEvictionTable()
      *************************************************************************/
@@ -385,7 +405,9 @@ public class HTODDynacache {
                 Tr.debug(tc, methodName, "cacheName=" + this.cacheName + "\n Exception: " + ExceptionUtility.getStackTrace(ex));
         }
         try {
-            object_filemgr.close();
+            if (object_filemgr != null) {
+                object_filemgr.close();
+            }
         } catch (Exception ex) {
             com.ibm.ws.ffdc.FFDCFilter.processException(ex, "com.ibm.ws.cache.HTODDynacache.closeNoRWLock", "327", this);
             if (tc.isDebugEnabled())
@@ -515,7 +537,7 @@ public class HTODDynacache {
             OutputStreamWriter out = new OutputStreamWriter(System.out);
             out.write("========================================================================");
             out.write("------------------ Object File Manager Statistics ---------------\n");
-            object_filemgr.dump_stats(out, true);
+            object_cache.dump_filemgr_stats(out, true);
             out.write("------------------ Object HTOD Statistics ---------------\n");
             object_cache.dump_htod_stats(out, true);
             out.write("========================================================================");
@@ -1599,6 +1621,8 @@ public class HTODDynacache {
             diskException = ex;
             if (ex.getMessage().equals(DISK_CACHE_IN_GB_OVER_LIMIT_MSG)) {
                 returnCode = DISK_SIZE_OVER_LIMIT_EXCEPTION;
+            } else if (ex.getMessage().equals(DISK_CACHE_INDEX_FULL_MSG)) {
+                returnCode = DISK_SIZE_IN_ENTRIES_OVER_LIMIT_EXCEPTION;
             } else {
                 this.diskCacheException = ex;
                 returnCode = DISK_EXCEPTION;
@@ -1646,6 +1670,8 @@ public class HTODDynacache {
             diskException = ex;
             if (ex.getMessage().equals(DISK_CACHE_IN_GB_OVER_LIMIT_MSG)) {
                 returnCode = DISK_SIZE_OVER_LIMIT_EXCEPTION;
+            } else if (ex.getMessage().equals(DISK_CACHE_INDEX_FULL_MSG)) {
+                returnCode = DISK_SIZE_IN_ENTRIES_OVER_LIMIT_EXCEPTION;
             } else {
                 this.diskCacheException = ex;
                 returnCode = DISK_EXCEPTION;
@@ -2037,7 +2063,7 @@ public class HTODDynacache {
         ValueSet answer = null;
         ValueSet expiredIds = null;
         boolean all = false;
-        HashtableOnDisk cache_instance = null;
+        ObjectStore cache_instance = null;
         try {
             rwLock.readLock().lock();
             if (type == CACHE_ID_DATA) {
@@ -2135,7 +2161,7 @@ public class HTODDynacache {
     protected Result readExpiredByRange(ValueSet expiredIds, int index, int length) {
         final String methodName = "readExpiredByRange()";
         Result result = getFromResultPool();
-        HashtableOnDisk cache_instance = null;
+        ObjectStore cache_instance = null;
         this.scanExpiredTime = 0;
         try {
             rwLock.readLock().lock();
@@ -2145,18 +2171,18 @@ public class HTODDynacache {
                 return result;
             }
             if (index == 0) {
-                cache_instance.rangeExpiredIndex = 0;
+                cache_instance.setRangeExpiredIndex(0);
             }
             long t = System.nanoTime();
             DynaAction da = new DynaAction(expiredIds, this);
-            int rangeIndex = cache_instance.iterateKeys(da, cache_instance.rangeExpiredIndex, length);
+            int rangeIndex = cache_instance.iterateKeys(da, cache_instance.getRangeExpiredIndex(), length);
             this.scanExpiredTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t);
 
             if ((expiredIds.size() + da.notExpiredCount) < length) {
-                cache_instance.rangeExpiredIndex = 0;
+                cache_instance.setRangeExpiredIndex(0);
                 result.bComplete = true;
             } else {
-                cache_instance.rangeExpiredIndex = rangeIndex;
+                cache_instance.setRangeExpiredIndex(rangeIndex);
             }
         } catch (FileManagerException ex) {
             this.diskCacheException = ex;
@@ -2196,7 +2222,7 @@ public class HTODDynacache {
         final String methodName = "readHashcodeByRange()";
         Result result = getFromResultPool();
         result.data = null;
-        HashtableOnDisk cache_instance = object_cache;;
+        ObjectStore cache_instance = object_cache;;
         try {
             rwLock.readLock().lock();
             if (cache_instance != null) {
@@ -2353,6 +2379,8 @@ public class HTODDynacache {
             diskException = ex;
             if (ex.getMessage().equals(DISK_CACHE_IN_GB_OVER_LIMIT_MSG)) {
                 returnCode = DISK_SIZE_OVER_LIMIT_EXCEPTION;
+            } else if (ex.getMessage().equals(DISK_CACHE_INDEX_FULL_MSG)) {
+                returnCode = DISK_SIZE_IN_ENTRIES_OVER_LIMIT_EXCEPTION;
             } else {
                 this.diskCacheException = ex;
                 returnCode = DISK_EXCEPTION;
@@ -2626,6 +2654,8 @@ public class HTODDynacache {
             result.diskException = ex;
             if (ex.getMessage().equals(DISK_CACHE_IN_GB_OVER_LIMIT_MSG)) {
                 result.returnCode = DISK_SIZE_OVER_LIMIT_EXCEPTION;
+            } else if (ex.getMessage().equals(DISK_CACHE_INDEX_FULL_MSG)) {
+                result.returnCode = DISK_SIZE_IN_ENTRIES_OVER_LIMIT_EXCEPTION;
             } else {
                 this.diskCacheException = ex;
                 result.returnCode = DISK_EXCEPTION;
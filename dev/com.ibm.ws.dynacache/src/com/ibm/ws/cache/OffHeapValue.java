@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+import com.ibm.websphere.cache.DistributedNioMapObject;
+import com.ibm.ws.cache.util.SerializationUtility;
+
+/**
+ * The heap part of a DistributedNioMap value that is held in the off-heap region of the
+ * cache. It holds only the handles of the chunks that contain the serialized value.
+ * CacheEntry.getValue() returns a new copy of the value that is deserialized from the
+ * chunks on each call.
+ * <p>
+ * The chunks are freed when the cache entry releases the value. Because the object is a
+ * DistributedNioMapObject, ObjectSizer uses the off-heap size of the chunks, so the
+ * memoryCacheSizeInMB limit of the cache applies to the off-heap region as well.
+ * <p>
+ * When the entry is serialized for disk offload or replication, the deserialized
+ * value is written in place of this object.
+ */
+class OffHeapValue implements DistributedNioMapObject, Serializable {
+
+    private static final long serialVersionUID = -3382468254418861503L;
+
+    private final transient SlabAllocator allocator;
+
+    private final transient String cacheName;
+
+    /**
+     * The chunks that hold the value, or null after the value has been released.
+     */
+    private transient int[] handles;
+
+    private final int length;
+
+    private final long size;
+
+    private OffHeapValue(SlabAllocator allocator, String cacheName, int[] handles, int length) {
+        this.allocator = allocator;
+        this.cacheName = cacheName;
+        this.handles = handles;
+        this.length = length;
+        this.size = SlabAllocator.allocationSize(length);
+    }
+
+    /**
+     * Copies a serialized value into the off-heap region.
+     *
+     * @return the off-heap value, or null if the region does not have room for it.
+     */
+    static OffHeapValue store(SlabAllocator allocator, String cacheName, byte[] serializedValue) {
+        int[] handles = allocator.allocate(serializedValue.length);
+        if (handles == null)
+            return null;
+        allocator.write(handles, serializedValue);
+        return new OffHeapValue(allocator, cacheName, handles, serializedValue.length);
+    }
+
+    /**
+     * @return a copy of the value, or null if the value has been released or cannot be deserialized.
+     */
+    Object getValue() {
+        byte[] serializedValue;
+        synchronized (this) {
+            if (handles == null)
+                return null;
+            serializedValue = allocator.read(handles, length);
+        }
+        try {
+            return SerializationUtility.deserialize(serializedValue, cacheName);
+        } catch (Exception ex) {
+            com.ibm.ws.ffdc.FFDCFilter.processException(ex, "com.ibm.ws.cache.OffHeapValue.getValue", "84", this);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void release() {
+        if (handles != null) {
+            allocator.free(handles);
+            handles = null;
+        }
+    }
+
+    /**
+     * @return size in bytes of the off-heap chunks that hold the value.
+     */
+    @Override
+    public long getCacheValueSize() {
+        return size;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        Object value = getValue();
+        if (value == null)
+            throw new InvalidObjectException("The off-heap value of cache " + cacheName + " has been released");
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapValue[length=" + length + " size=" + size + (handles == null ? " released" : "") + "]";
+    }
+}
@@ -0,0 +1,336 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache;
+
+import java.nio.ByteBuffer;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+
+/**
+ * Allocates chunks of off-heap memory for the serialized values of a DistributedNioMap.
+ * <p>
+ * The region is made of 1 MB slabs of direct memory that are allocated on first use,
+ * up to the configured region size. Each slab is divided into chunks of one size class,
+ * a power of two from 64 bytes to 64 KB. A value that is larger than the largest class
+ * is stored in several chunks. The free chunks of a slab are linked through their
+ * first four bytes, so the heap holds only a few ints per slab. A slab whose chunks
+ * are all free goes back to the pool of free slabs and can be used for another class.
+ * <p>
+ * A chunk is identified by a handle that holds its slab number and its index in the
+ * slab. Allocation and free are synchronized; copying data in and out of a chunk is
+ * not, because only the owner of the handle uses the chunk.
+ * <p>
+ * If the JVM cannot allocate the direct memory for a new slab, the region is limited
+ * to the slabs that are already allocated, so that later values are stored after
+ * entries are evicted, or stay on the heap, as they do when the region is full.
+ */
+class SlabAllocator {
+
+    private static final TraceComponent tc = Tr.register(SlabAllocator.class, "WebSphere Dynamic Cache", "com.ibm.ws.cache.resources.dynacache");
+
+    static final int SLAB_SHIFT = 20;
+
+    static final int SLAB_SIZE = 1 << SLAB_SHIFT;
+
+    static final int MIN_CHUNK_SHIFT = 6;
+
+    static final int MAX_CHUNK_SHIFT = 16;
+
+    static final int MAX_CHUNK_SIZE = 1 << MAX_CHUNK_SHIFT;
+
+    private static final int NUM_CLASSES = MAX_CHUNK_SHIFT - MIN_CHUNK_SHIFT + 1;
+
+    /**
+     * Number of handle bits that hold the chunk index. The remaining bits hold the slab
+     * number, so a region of up to CacheConfig.MAX_OFF_HEAP_SIZE_IN_MB has handles that
+     * are never negative.
+     */
+    private static final int INDEX_BITS = SLAB_SHIFT - MIN_CHUNK_SHIFT;
+
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+
+    private static final int NONE = -1;
+
+    private final ByteBuffer[] slabs;
+
+    /**
+     * Size class of each slab, or NONE if the slab is free.
+     */
+    private final int[] slabClass;
+
+    /**
+     * Number of chunks of each slab that are in use.
+     */
+    private final int[] slabUsed;
+
+    /**
+     * Number of chunks of each slab that have been handed out at least once.
+     * Chunks above this index have never been used and are not on the free list.
+     */
+    private final int[] slabCarved;
+
+    /**
+     * First free chunk of each slab, or NONE.
+     */
+    private final int[] slabFreeHead;
+
+    /**
+     * Doubly linked lists of the slabs of each class that have a free chunk.
+     */
+    private final int[] partialHead = new int[NUM_CLASSES];
+    private final int[] partialNext;
+    private final int[] partialPrev;
+
+    /**
+     * Stack of slabs that are allocated but not assigned to a class.
+     */
+    private final int[] freeSlabs;
+    private int freeSlabCount;
+
+    /**
+     * Number of slabs whose direct memory has been allocated.
+     */
+    private int slabsCreated;
+
+    /**
+     * Number of slabs that may be created. This is lowered to slabsCreated if the
+     * direct memory for a slab cannot be allocated.
+     */
+    private int slabLimit;
+
+    private long bytesInUse;
+
+    private final String cacheName;
+
+    SlabAllocator(int sizeInMB, String cacheName) {
+        this.cacheName = cacheName;
+        int numSlabs = Math.max(1, (int) (((long) sizeInMB << 20) >>> SLAB_SHIFT));
+        slabLimit = numSlabs;
+        slabs = new ByteBuffer[numSlabs];
+        slabClass = new int[numSlabs];
+        slabUsed = new int[numSlabs];
+        slabCarved = new int[numSlabs];
+        slabFreeHead = new int[numSlabs];
+        partialNext = new int[numSlabs];
+        partialPrev = new int[numSlabs];
+        freeSlabs = new int[numSlabs];
+        for (int i = 0; i < NUM_CLASSES; i++)
+            partialHead[i] = NONE;
+    }
+
+    /**
+     * @return the total size in bytes of the chunks that hold a value of the given length.
+     */
+    static long allocationSize(int length) {
+        long size = (long) (length >>> MAX_CHUNK_SHIFT) << MAX_CHUNK_SHIFT;
+        int tail = length & (MAX_CHUNK_SIZE - 1);
+        if (tail > 0)
+            size += 1 << (classOf(tail) + MIN_CHUNK_SHIFT);
+        return size;
+    }
+
+    /**
+     * Allocates the chunks for a value of the given length. Every chunk but the last
+     * is of the largest size class.
+     *
+     * @return the chunk handles, or null if the region does not have enough free memory.
+     */
+    synchronized int[] allocate(int length) {
+        int full = length >>> MAX_CHUNK_SHIFT;
+        int tail = length & (MAX_CHUNK_SIZE - 1);
+        int[] handles = new int[tail > 0 ? full + 1 : Math.max(full, 1)];
+        for (int i = 0; i < handles.length; i++) {
+            int sizeClass = i < full ? NUM_CLASSES - 1 : classOf(tail);
+            int handle = allocateChunk(sizeClass);
+            if (handle == NONE) {
+                for (int j = 0; j < i; j++)
+                    freeChunk(handles[j]);
+                return null;
+            }
+            handles[i] = handle;
+        }
+        return handles;
+    }
+
+    /**
+     * Frees the chunks of a value.
+     */
+    synchronized void free(int[] handles) {
+        for (int handle : handles)
+            freeChunk(handle);
+    }
+
+    /**
+     * Copies a value into its chunks.
+     */
+    void write(int[] handles, byte[] data) {
+        int offset = 0;
+        for (int handle : handles) {
+            int len = Math.min(chunkSize(handle), data.length - offset);
+            ByteBuffer bb = slabs[handle >>> INDEX_BITS].duplicate();
+            bb.position(chunkOffset(handle));
+            bb.put(data, offset, len);
+            offset += len;
+        }
+    }
+
+    /**
+     * Copies a value of the given length out of its chunks.
+     */
+    byte[] read(int[] handles, int length) {
+        byte[] data = new byte[length];
+        int offset = 0;
+        for (int handle : handles) {
+            int len = Math.min(chunkSize(handle), length - offset);
+            ByteBuffer bb = slabs[handle >>> INDEX_BITS].duplicate();
+            bb.position(chunkOffset(handle));
+            bb.get(data, offset, len);
+            offset += len;
+        }
+        return data;
+    }
+
+    /**
+     * @return size in bytes of the region.
+     */
+    synchronized long getCapacity() {
+        return (long) slabLimit << SLAB_SHIFT;
+    }
+
+    /**
+     * @return size in bytes of the chunks in use.
+     */
+    synchronized long getBytesInUse() {
+        return bytesInUse;
+    }
+
+    /**
+     * @return size in bytes of the direct memory that has been allocated for slabs.
+     */
+    synchronized long getBytesAllocated() {
+        return (long) slabsCreated << SLAB_SHIFT;
+    }
+
+    private int allocateChunk(int sizeClass) {
+        int slab = partialHead[sizeClass];
+        if (slab == NONE) {
+            slab = assignSlab(sizeClass);
+            if (slab == NONE)
+                return NONE;
+        }
+        int shift = sizeClass + MIN_CHUNK_SHIFT;
+        int index = slabFreeHead[slab];
+        if (index != NONE) {
+            slabFreeHead[slab] = slabs[slab].getInt(index << shift);
+        } else {
+            index = slabCarved[slab]++;
+        }
+        if (++slabUsed[slab] == SLAB_SIZE >>> shift)
+            unlinkPartial(slab, sizeClass);
+        bytesInUse += 1 << shift;
+        return slab << INDEX_BITS | index;
+    }
+
+    private void freeChunk(int handle) {
+        int slab = handle >>> INDEX_BITS;
+        int index = handle & INDEX_MASK;
+        int sizeClass = slabClass[slab];
+        int shift = sizeClass + MIN_CHUNK_SHIFT;
+        bytesInUse -= 1 << shift;
+        if (slabUsed[slab]-- == SLAB_SIZE >>> shift)
+            linkPartial(slab, sizeClass);
+        if (slabUsed[slab] == 0) {
+            // all chunks are free, so the slab can be used for any class
+            unlinkPartial(slab, sizeClass);
+            slabClass[slab] = NONE;
+            freeSlabs[freeSlabCount++] = slab;
+        } else {
+            slabs[slab].putInt(index << shift, slabFreeHead[slab]);
+            slabFreeHead[slab] = index;
+        }
+    }
+
+    /**
+     * Assigns a free slab to a size class, allocating the direct memory of a new slab if
+     * there are no free slabs and the region is not fully allocated.
+     */
+    private int assignSlab(int sizeClass) {
+        int slab;
+        if (freeSlabCount > 0) {
+            slab = freeSlabs[--freeSlabCount];
+        } else if (slabsCreated < slabLimit) {
+            slab = slabsCreated;
+            try {
+                slabs[slab] = allocateSlab();
+            } catch (OutOfMemoryError e) {
+                // the JVM is out of direct memory, so the region is full at its current size
+                slabLimit = slabsCreated;
+                Tr.warning(tc, "DYNA1096W", new Object[] { cacheName, (long) slabs.length << SLAB_SHIFT >>> 20, (long) slabsCreated << SLAB_SHIFT >>> 20 });
+                if (tc.isDebugEnabled())
+                    Tr.debug(tc, "assignSlab() cacheName=" + cacheName + " direct memory allocation failed: " + e);
+                return NONE;
+            }
+            slabsCreated++;
+        } else {
+            return NONE;
+        }
+        slabClass[slab] = sizeClass;
+        slabUsed[slab] = 0;
+        slabCarved[slab] = 0;
+        slabFreeHead[slab] = NONE;
+        linkPartial(slab, sizeClass);
+        return slab;
+    }
+
+    /**
+     * @return the direct memory of a new slab.
+     */
+    ByteBuffer allocateSlab() {
+        return ByteBuffer.allocateDirect(SLAB_SIZE);
+    }
+
+    private void linkPartial(int slab, int sizeClass) {
+        int head = partialHead[sizeClass];
+        partialNext[slab] = head;
+        partialPrev[slab] = NONE;
+        if (head != NONE)
+            partialPrev[head] = slab;
+        partialHead[sizeClass] = slab;
+    }
+
+    private void unlinkPartial(int slab, int sizeClass) {
+        int next = partialNext[slab];
+        int prev = partialPrev[slab];
+        if (prev != NONE)
+            partialNext[prev] = next;
+        else
+            partialHead[sizeClass] = next;
+        if (next != NONE)
+            partialPrev[next] = prev;
+    }
+
+    private int chunkSize(int handle) {
+        return 1 << (slabClass[handle >>> INDEX_BITS] + MIN_CHUNK_SHIFT);
+    }
+
+    private int chunkOffset(int handle) {
+        return (handle & INDEX_MASK) << (slabClass[handle >>> INDEX_BITS] + MIN_CHUNK_SHIFT);
+    }
+
+    /**
+     * @return the smallest size class whose chunks hold the given number of bytes.
+     */
+    private static int classOf(int length) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1);
+        return Math.max(shift, MIN_CHUNK_SHIFT) - MIN_CHUNK_SHIFT;
+    }
+}
@@ -86,6 +86,8 @@ public interface CacheStatisticsListener {
 
 	public long getOverflowEntriesFromMemoryCount();
 
+	public long getAdmissionRejectionsCount();
+
 	public long getOverflowInvalidationsFromDiskCount();
 
 	public long getRemoteInvalidationNotificationsCount();
@@ -130,6 +132,8 @@ public interface CacheStatisticsListener {
 
     public void overflowEntriesFromMemory();  //PK33017  
 
+    public void admissionRejection();
+
     public void readEntryFromDisk(Object id, int valueSize);
 
     public void remoteInvalidationNotifications(Object id);
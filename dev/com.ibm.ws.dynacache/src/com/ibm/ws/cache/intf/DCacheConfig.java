@@ -62,6 +62,8 @@ public interface DCacheConfig extends com.ibm.wsspi.cache.CacheConfig {
 
     public int getLruToDiskTriggerTime();
 
+    public int getOffHeapSizeInMB();
+
     public int getPercentageWindow();
 
     public String getServerNodeName();
@@ -37,7 +37,7 @@ import com.ibm.ws.cache.persistent.util.ProfTimer;
 import com.ibm.ws.cache.util.SerializationUtility;
 import com.ibm.ws.ffdc.FFDCFilter;
 
-public class HashtableOnDisk {
+public class HashtableOnDisk implements ObjectStore {
     private static final boolean IS_UNIT_TEST = false;
     private static final int RETRIEVE_KEY = 1;
     private static final int RETRIEVE_KEY_VALUE = 2;
@@ -556,6 +556,20 @@ public class HashtableOnDisk {
         rangeIndexList.add(new Integer(0));
     }
 
+    /**************************************************************************
+     * getRangeExpiredIndex The range index for the expired entry scan.
+     *************************************************************************/
+    public int getRangeExpiredIndex() {
+        return rangeExpiredIndex;
+    }
+
+    /**************************************************************************
+     * setRangeExpiredIndex The range index for the expired entry scan.
+     *************************************************************************/
+    public void setRangeExpiredIndex(int index) {
+        rangeExpiredIndex = index;
+    }
+
     /**************************************************************************
      * getFilename Name of my file.
      *************************************************************************/
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache.persistent.htod;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.ibm.ws.cache.HTODDynacache.EvictionTableEntry;
+
+/**
+ * The operations that HTODDynacache uses on the disk table that holds cache entries.
+ * HashtableOnDisk provides the original implementation. SegmentedHashtableOnDisk
+ * provides an implementation that allows reads to run in parallel.
+ * <p>
+ * Entries returned by the get methods come from the HTODDynacache hashtable entry
+ * pool and are returned to the pool by the caller.
+ */
+public interface ObjectStore {
+
+    /**
+     * Writes any state that is needed to reopen the store and releases its resources.
+     */
+    void close() throws IOException;
+
+    /**
+     * @return number of entries in the store, including alias entries.
+     */
+    int size();
+
+    /**
+     * @return true if the key is in the store, regardless of its expiration time.
+     */
+    boolean containsKey(Object key) throws IOException, ClassNotFoundException;
+
+    /**
+     * Reads the key, value and cache value of an entry. If checkExpired is true and the
+     * entry is expired, only the key and metadata are read.
+     *
+     * @return the entry, or null if the key is not in the store.
+     */
+    HashtableEntry getHashTableEntry(Object key, boolean checkExpired) throws IOException, ClassNotFoundException;
+
+    /**
+     * @return the key of the entry that has the hash code, expiration time and size of
+     *         the eviction table entry, or null if there is no such entry.
+     */
+    Object getCacheKey(EvictionTableEntry evt) throws IOException, ClassNotFoundException;
+
+    /**
+     * Removes an entry and returns it.
+     *
+     * @param key the key of the entry, or an EvictionTableEntry that identifies it.
+     * @param bRetrieveCacheValue true to read the serialized cache value of the entry as well as its value.
+     * @return the removed entry, or null if it was not found.
+     */
+    HashtableEntry getAndRemove(Object key, boolean bRetrieveCacheValue) throws IOException, ClassNotFoundException;
+
+    /**
+     * @return true if the key was found and removed.
+     */
+    boolean remove(Object key) throws IOException, ClassNotFoundException;
+
+    /**
+     * Stores an entry, replacing any entry with the same key. If the key already exists
+     * and the value is null, the store is not changed.
+     *
+     * @return an entry holding the key, size and expiration time of the replaced entry,
+     *         or null if no entry was replaced.
+     */
+    HashtableEntry put(Object key, Object value, int len, long expirationTime, long validatorExpirationTime,
+                       byte[] serializedKey, byte[] serializedCacheValue, int valueHashcode, boolean isAliasId) throws IOException, ClassNotFoundException;
+
+    /**
+     * Updates the validator expiration time of an entry. The expiration time is not changed.
+     *
+     * @return true if the key was found.
+     */
+    boolean updateExpirationInHeader(Object key, long expirationTime, long validatorExpirationTime) throws IOException, ClassNotFoundException;
+
+    /**
+     * Invokes the action with the key and metadata of each entry, starting at the index,
+     * until the action returns false or the action has been invoked length times.
+     *
+     * @return the index at which to continue the iteration.
+     */
+    int iterateKeys(HashtableAction action, int index, int length) throws IOException, ClassNotFoundException;
+
+    /**
+     * The range index methods record the positions of a paged iteration with iterateKeys.
+     */
+    int getNextRangeIndex();
+
+    int getPreviousRangeIndex();
+
+    void addRangeIndex(int index);
+
+    void initRangeIndex();
+
+    /**
+     * The range expired index is the position of the expired entry scan with iterateKeys.
+     */
+    int getRangeExpiredIndex();
+
+    void setRangeExpiredIndex(int index);
+
+    void reset_stats();
+
+    void dump_stats_header(Writer out) throws IOException;
+
+    void dump_htod_stats(Writer out, boolean labels) throws IOException, ClassNotFoundException;
+
+    void dump_filemgr_header(Writer out) throws IOException;
+
+    void dump_filemgr_stats(Writer out, boolean labels) throws IOException;
+}
@@ -0,0 +1,1333 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache.persistent.htod;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.ws.cache.HTODDynacache;
+import com.ibm.ws.cache.HTODDynacache.EvictionTableEntry;
+import com.ibm.ws.cache.Scheduler;
+import com.ibm.ws.cache.util.SerializationUtility;
+
+/**
+ * Disk table for cache entries that lets reads run in parallel.
+ * <p>
+ * Entries are written as records to the end of append-only segment files and are
+ * read with positional reads, so readers do not share a file pointer. The location
+ * of each record is kept in an open addressing hash index in a memory-mapped file.
+ * The index is split into stripes, each with its own read/write lock, so that reads
+ * only wait for a writer that is changing the same stripe.
+ * <p>
+ * Replacing or removing an entry leaves its old record in place as garbage. When
+ * at least half of a segment is garbage, a background task copies the live records
+ * of the segment to the end of the active segment and deletes the segment file.
+ * <p>
+ * The index is written with a clean flag when the store is closed. If the store is
+ * opened without a clean index, the segment files are removed and the store starts
+ * empty. The record metadata and sizes are the same as for HashtableOnDisk, so that
+ * the eviction table and the disk cache size in bytes work with either store.
+ */
+public class SegmentedHashtableOnDisk implements ObjectStore {
+
+    private static TraceComponent tc = Tr.register(SegmentedHashtableOnDisk.class, "WebSphere Dynamic Cache", "com.ibm.ws.cache.resources.dynacache");
+
+    public static final String INDEX_SUFFIX = ".idx";
+    public static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final int RETRIEVE_KEY = 1;
+    private static final int RETRIEVE_KEY_VALUE = 2;
+    private static final int RETRIEVE_ALL = 3;
+
+    private static final long MAGIC = 0x48544F4453454731L;
+    private static final int VERSION = 1;
+
+    //
+    // Index file header
+    //
+    private static final int HEADER_SIZE = 64;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 8;
+    private static final int H_CLEAN = 12;
+    private static final int H_STRIPE_CAPACITY = 16;
+    private static final int H_COUNT = 20;
+    private static final int H_NEXT_SEGMENT = 24;
+
+    //
+    // Index slot. The segment id is 0 for a slot that has never been used and -1 for
+    // a slot whose entry was removed. Segment ids start at 1.
+    //
+    private static final int SLOT_SIZE = 40;
+    private static final int S_HASH = 0;
+    private static final int S_SEGMENT = 4;
+    private static final int S_OFFSET = 8;
+    private static final int S_LENGTH = 16;
+    private static final int S_DATA_SIZE = 20;
+    private static final int S_EXPIRATION = 24;
+    private static final int S_FIRST_CREATED = 32;
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+
+    private static final int STRIPES = 32;
+    private static final int STRIPE_SHIFT = 27; // 32 - log2(STRIPES)
+    private static final int MIN_STRIPE_CAPACITY = 64;
+    private static final int MAX_STRIPE_CAPACITY = 1 << 20; // keeps the index below 2 GB
+    private static final int LOAD_PERCENT = 75;
+
+    //
+    // Segment record
+    //
+    private static final int R_LENGTH = 0;
+    private static final int R_HASH = 4;
+    private static final int R_FIRST_CREATED = 8;
+    private static final int R_EXPIRATION = 16;
+    private static final int R_VALIDATOR_EXPIRATION = 24;
+    private static final int R_VALUE_HASHCODE = 32;
+    private static final int R_DATA_SIZE = 36;
+    private static final int R_FLAGS = 40;
+    private static final int R_KEY_LENGTH = 41;
+    private static final int RECORD_HEADER_SIZE = 45;
+    private static final byte FLAG_ALIAS_ID = 1;
+    private static final byte FLAG_BYTE_VALUE = 2;
+
+    /**
+     * Number of bytes read when only the key of a record is needed. Most keys fit.
+     */
+    private static final int KEY_READ_SIZE = 512;
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final int COMPACTION_GARBAGE_PERCENT = 50;
+
+    private final HTODDynacache htoddc;
+    private final String filename;
+
+    /**
+     * Largest number of slots in a stripe. The index is full when a stripe of this size is at the load limit.
+     */
+    private final int maxStripeCapacity;
+
+    /**
+     * Size at which the active segment is closed and a new one started.
+     */
+    private final long segmentSize;
+
+    /**
+     * Set when the index first becomes full, so that the warning is logged once.
+     */
+    private final AtomicBoolean indexFullReported = new AtomicBoolean();
+
+    private RandomAccessFile indexFile;
+    private FileChannel indexChannel;
+
+    /**
+     * The index. Replaced only while all of the stripe write locks are held.
+     */
+    private volatile MappedByteBuffer index;
+
+    /**
+     * Number of slots in each stripe, a power of 2. Changed only while all of the stripe write locks are held.
+     */
+    private volatile int stripeCapacity;
+
+    private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[STRIPES];
+
+    /**
+     * Number of slots per stripe that hold an entry or a removed entry. Guarded by the stripe write lock.
+     */
+    private final int[] used = new int[STRIPES];
+
+    /**
+     * Number of slots per stripe that hold an entry. Guarded by the stripe write lock.
+     */
+    private final int[] occupied = new int[STRIPES];
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    private final ConcurrentHashMap<Integer, Segment> segments = new ConcurrentHashMap<Integer, Segment>();
+
+    private final Object appendLock = new Object() {};
+
+    private volatile Segment activeSegment; // changed while holding appendLock
+    private int nextSegmentId = 1; // guarded by appendLock
+
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final Runnable compactor = new Runnable() {
+        @Override
+        public void run() {
+            compactSegments();
+        }
+    };
+
+    private volatile boolean closed;
+
+    private final ArrayList<Integer> rangeIndexList = new ArrayList<Integer>();
+    private int rangeExpiredIndex = 0;
+
+    //
+    // Statistics
+    //
+    private final AtomicLong read_requests = new AtomicLong();
+    private final AtomicLong read_hits = new AtomicLong();
+    private final AtomicLong write_requests = new AtomicLong();
+    private final AtomicLong write_replacements = new AtomicLong();
+    private final AtomicLong removes = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong bytes_compacted = new AtomicLong();
+
+    /**
+     * Open the store, or create it if there is no cleanly closed store with the name.
+     *
+     * @param filename path and name prefix of the index and segment files.
+     * @param initialSize expected number of entries, used to size a new index.
+     * @param htoddc the disk cache that owns the store.
+     */
+    public SegmentedHashtableOnDisk(String filename, int initialSize, HTODDynacache htoddc) throws IOException {
+        this(filename, initialSize, htoddc, MAX_STRIPE_CAPACITY, SEGMENT_SIZE);
+    }
+
+    /**
+     * @param maxStripeCapacity largest number of slots in a stripe, a power of 2. Tests use a small value to fill the index.
+     * @param segmentSize size at which a new segment is started. Tests use a small value to compact segments.
+     */
+    SegmentedHashtableOnDisk(String filename, int initialSize, HTODDynacache htoddc, int maxStripeCapacity, long segmentSize) throws IOException {
+        this.filename = filename;
+        this.htoddc = htoddc;
+        this.maxStripeCapacity = maxStripeCapacity;
+        this.segmentSize = segmentSize;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+
+        if (!openIndex()) {
+            deleteSegmentFiles();
+            createIndex(initialSize);
+        }
+        synchronized (appendLock) {
+            rollSegment();
+        }
+        index.putInt(H_CLEAN, 0);
+        index.force();
+
+        if (tc.isDebugEnabled())
+            Tr.debug(tc, "SegmentedHashtableOnDisk", "cacheName=" + htoddc.cacheName + " filename=" + filename + " entries=" + count.get()
+                                                     + " segments=" + segments.size() + " stripeCapacity=" + stripeCapacity);
+        scheduleCompaction();
+    }
+
+    /**
+     * Reopen the index and segment files of a store that was closed cleanly.
+     *
+     * @return false if there is no usable index.
+     */
+    private boolean openIndex() throws IOException {
+        File f = new File(filename + INDEX_SUFFIX);
+        if (!f.exists()) {
+            return false;
+        }
+        indexFile = new RandomAccessFile(f, "rw");
+        indexChannel = indexFile.getChannel();
+        long length = indexFile.length();
+        if (length >= HEADER_SIZE) {
+            MappedByteBuffer buf = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            int capacity = buf.getInt(H_STRIPE_CAPACITY);
+            if (buf.getLong(H_MAGIC) == MAGIC && buf.getInt(H_VERSION) == VERSION && buf.getInt(H_CLEAN) == 1
+                && capacity >= MIN_STRIPE_CAPACITY && capacity <= maxStripeCapacity && Integer.bitCount(capacity) == 1
+                && length == HEADER_SIZE + (long) STRIPES * capacity * SLOT_SIZE) {
+                index = buf;
+                stripeCapacity = capacity;
+                nextSegmentId = buf.getInt(H_NEXT_SEGMENT);
+                if (openSegments()) {
+                    return true;
+                }
+            }
+        }
+        if (tc.isDebugEnabled())
+            Tr.debug(tc, "openIndex", "cacheName=" + htoddc.cacheName + " index was not closed cleanly, the disk cache starts empty");
+        closeSegments();
+        index = null;
+        indexChannel.close();
+        indexFile.close();
+        return false;
+    }
+
+    /**
+     * Open the segment files, count the live bytes in each of them from the index and
+     * delete the segments that have no live records.
+     *
+     * @return false if the index refers to a segment that does not exist.
+     */
+    private boolean openSegments() throws IOException {
+        File file = new File(filename);
+        String prefix = file.getName() + ".";
+        String[] names = file.getAbsoluteFile().getParentFile().list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(prefix) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        int id = Integer.parseInt(name.substring(prefix.length(), name.length() - SEGMENT_SUFFIX.length()));
+                        File f = new File(file.getAbsoluteFile().getParentFile(), name);
+                        if (id > 0 && id < nextSegmentId) {
+                            segments.put(id, new Segment(id, f));
+                        } else {
+                            f.delete(); // created after the index was last written
+                        }
+                    } catch (NumberFormatException nfe) {
+                        // not a segment file
+                    }
+                }
+            }
+        }
+
+        int total = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            for (int pos = 0; pos < stripeCapacity; pos++) {
+                int slot = slotAddress(stripe, pos);
+                int segmentId = index.getInt(slot + S_SEGMENT);
+                if (segmentId != EMPTY) {
+                    used[stripe]++;
+                    if (segmentId != REMOVED) {
+                        Segment segment = segments.get(segmentId);
+                        if (segment == null) {
+                            return false;
+                        }
+                        segment.live.addAndGet(index.getInt(slot + S_LENGTH));
+                        occupied[stripe]++;
+                        total++;
+                    }
+                }
+            }
+        }
+        count.set(total);
+
+        for (Segment segment : segments.values()) {
+            if (segment.live.get() == 0) {
+                segments.remove(segment.id);
+                segment.close();
+                segment.file.delete();
+            }
+        }
+        return true;
+    }
+
+    private void createIndex(int initialSize) throws IOException {
+        File f = new File(filename + INDEX_SUFFIX);
+        f.delete();
+        int capacity = MIN_STRIPE_CAPACITY;
+        long slots = (long) initialSize * 100 / LOAD_PERCENT / STRIPES;
+        while (capacity < slots && capacity < maxStripeCapacity) {
+            capacity <<= 1;
+        }
+        indexFile = new RandomAccessFile(f, "rw");
+        indexChannel = indexFile.getChannel();
+        long length = HEADER_SIZE + (long) STRIPES * capacity * SLOT_SIZE;
+        indexFile.setLength(length);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        stripeCapacity = capacity;
+        nextSegmentId = 1;
+        index.putLong(H_MAGIC, MAGIC);
+        index.putInt(H_VERSION, VERSION);
+        index.putInt(H_STRIPE_CAPACITY, capacity);
+    }
+
+    private void deleteSegmentFiles() {
+        File file = new File(filename);
+        String prefix = file.getName() + ".";
+        File dir = file.getAbsoluteFile().getParentFile();
+        String[] names = dir.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(prefix) && name.endsWith(SEGMENT_SUFFIX)) {
+                    new File(dir, name).delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Start a new active segment. The caller holds appendLock.
+     */
+    private Segment rollSegment() throws IOException {
+        Segment previous = activeSegment;
+        int id = nextSegmentId++;
+        Segment segment = new Segment(id, new File(filename + "." + id + SEGMENT_SUFFIX));
+        segments.put(id, segment);
+        activeSegment = segment;
+        if (previous != null && isCompactionCandidate(previous)) {
+            scheduleCompaction();
+        }
+        return segment;
+    }
+
+    /**
+     * Writes the index header with the clean flag set, and closes the index and segment files.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        compactionLock.lock();
+        try {
+            lockAll();
+            try {
+                synchronized (appendLock) {
+                    index.putInt(H_STRIPE_CAPACITY, stripeCapacity);
+                    index.putInt(H_COUNT, count.get());
+                    index.putInt(H_NEXT_SEGMENT, nextSegmentId);
+                    index.putInt(H_CLEAN, 1);
+                    index.force();
+                    closeSegments();
+                    indexChannel.close();
+                    indexFile.close();
+                    index = null;
+                }
+            } finally {
+                unlockAll();
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private void closeSegments() {
+        for (Segment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException ex) {
+                com.ibm.ws.ffdc.FFDCFilter.processException(ex, "com.ibm.ws.cache.persistent.htod.SegmentedHashtableOnDisk.closeSegments", "309", this);
+            }
+        }
+        segments.clear();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new HashtableOnDiskException("Object store is closed");
+        }
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    public boolean containsKey(Object key) throws IOException, ClassNotFoundException {
+        checkOpen();
+        if (key == null) {
+            return false;
+        }
+        int hash = key.hashCode();
+        ReentrantReadWriteLock.ReadLock lock = locks[stripeOf(hash)].readLock();
+        lock.lock();
+        try {
+            return findKey(hash, key) >= 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public HashtableEntry getHashTableEntry(Object key, boolean checkExpired) throws IOException, ClassNotFoundException {
+        checkOpen();
+        read_requests.incrementAndGet();
+        if (key == null) {
+            return null;
+        }
+        HashtableEntry e = null;
+        int hash = key.hashCode();
+        ReentrantReadWriteLock.ReadLock lock = locks[stripeOf(hash)].readLock();
+        lock.lock();
+        try {
+            int slot = findKey(hash, key);
+            if (slot >= 0) {
+                e = readEntry(slot, RETRIEVE_ALL, checkExpired);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (e != null) {
+            read_hits.incrementAndGet();
+        }
+        return e;
+    }
+
+    public Object getCacheKey(EvictionTableEntry evt) throws IOException, ClassNotFoundException {
+        checkOpen();
+        ReentrantReadWriteLock.ReadLock lock = locks[stripeOf(evt.hashcode)].readLock();
+        lock.lock();
+        try {
+            int slot = findEvictionTableEntry(evt);
+            return slot < 0 ? null : readKey(slot);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public HashtableEntry getAndRemove(Object key, boolean bRetrieveCacheValue) throws IOException, ClassNotFoundException {
+        checkOpen();
+        if (key == null) {
+            return null;
+        }
+        int hash = key instanceof EvictionTableEntry ? ((EvictionTableEntry) key).hashcode : key.hashCode();
+        int stripe = stripeOf(hash);
+        ReentrantReadWriteLock.WriteLock lock = locks[stripe].writeLock();
+        lock.lock();
+        try {
+            int slot = key instanceof EvictionTableEntry ? findEvictionTableEntry((EvictionTableEntry) key) : findKey(hash, key);
+            if (slot < 0) {
+                return null;
+            }
+            HashtableEntry e = readEntry(slot, bRetrieveCacheValue ? RETRIEVE_ALL : RETRIEVE_KEY_VALUE, false);
+            removeSlot(stripe, slot);
+            return e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean remove(Object key) throws IOException, ClassNotFoundException {
+        checkOpen();
+        if (key == null) {
+            return false;
+        }
+        int hash = key.hashCode();
+        int stripe = stripeOf(hash);
+        ReentrantReadWriteLock.WriteLock lock = locks[stripe].writeLock();
+        lock.lock();
+        try {
+            int slot = findKey(hash, key);
+            if (slot < 0) {
+                return false;
+            }
+            removeSlot(stripe, slot);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public HashtableEntry put(Object key, Object value, int len, long expirationTime, long validatorExpirationTime,
+                              byte[] serializedKey, byte[] serializedCacheValue, int valueHashcode, boolean isAliasId) throws IOException, ClassNotFoundException {
+        checkOpen();
+        write_requests.incrementAndGet();
+        if (key == null) {
+            return null;
+        }
+
+        //
+        // Serialize outside of the lock. A byte[] value is written as is.
+        //
+        byte[] keyBytes = serializedKey != null ? serializedKey : serialize(key);
+        byte[] valueBytes = null;
+        int valueSize = -1;
+        byte flags = isAliasId ? FLAG_ALIAS_ID : 0;
+        if (value != null) {
+            if (value instanceof byte[]) {
+                valueBytes = (byte[]) value;
+                valueSize = len != -1 ? len : valueBytes.length;
+                flags |= FLAG_BYTE_VALUE;
+            } else {
+                valueBytes = serialize(value);
+                valueSize = valueBytes.length;
+            }
+        }
+        byte[] cacheValueBytes = isAliasId ? null : serializedCacheValue;
+
+        int dataSize = HashtableOnDisk.HTENTRY_OVERHEAD_SIZE + keyBytes.length;
+        if (valueSize != -1) {
+            dataSize += valueSize;
+        }
+        if (cacheValueBytes != null) {
+            dataSize += cacheValueBytes.length;
+        }
+        if (dataSize % 512 != 0) { // size adjustment for 512 blocks, same as HashtableOnDisk
+            dataSize = (dataSize / 512 + 1) * 512;
+        }
+
+        int hash = key.hashCode();
+        int stripe = stripeOf(hash);
+        for (;;) {
+            ReentrantReadWriteLock.WriteLock lock = locks[stripe].writeLock();
+            lock.lock();
+            try {
+                int slot = findKey(hash, key);
+                if (slot >= 0 && value == null) {
+                    return null; // the key already exists and there is no new value
+                }
+                if (slot < 0 && (used[stripe] + 1) * 100 > stripeCapacity * LOAD_PERCENT) {
+                    if (stripeCapacity >= maxStripeCapacity && (occupied[stripe] + 1) * 100 > stripeCapacity * LOAD_PERCENT) {
+                        if (indexFullReported.compareAndSet(false, true)) {
+                            Tr.warning(tc, "DYNA1097W", new Object[] { htoddc.cacheName, count.get() });
+                        }
+                        throw new IOException(HTODDynacache.DISK_CACHE_INDEX_FULL_MSG);
+                    }
+                    // fall through to resize the index, then try again
+                } else {
+                    MappedByteBuffer ix = index;
+                    long firstCreated = slot >= 0 ? ix.getLong(slot + S_FIRST_CREATED) : System.currentTimeMillis();
+                    byte[] record = buildRecord(hash, firstCreated, expirationTime, validatorExpirationTime, valueHashcode, dataSize, flags,
+                                                keyBytes, valueBytes, valueSize, cacheValueBytes);
+                    long location = append(record);
+
+                    HashtableEntry oldEntry = null;
+                    if (slot >= 0) {
+                        // Only the key, size and expiration time of the old entry are returned.
+                        // HTODDynacache uses them to remove the old entry from the eviction table.
+                        oldEntry = htoddc.getFromHashtableEntryPool();
+                        oldEntry.key = key;
+                        oldEntry.size = ix.getInt(slot + S_DATA_SIZE);
+                        oldEntry.expiration = ix.getLong(slot + S_EXPIRATION);
+                        releaseRecord(ix.getInt(slot + S_SEGMENT), ix.getInt(slot + S_LENGTH));
+                        write_replacements.incrementAndGet();
+                    } else {
+                        slot = freeSlot(stripe, hash);
+                        if (ix.getInt(slot + S_SEGMENT) == EMPTY) {
+                            used[stripe]++;
+                        }
+                        occupied[stripe]++;
+                        count.incrementAndGet();
+                    }
+                    ix.putInt(slot + S_HASH, hash);
+                    ix.putLong(slot + S_OFFSET, offsetOf(location));
+                    ix.putInt(slot + S_LENGTH, record.length);
+                    ix.putInt(slot + S_DATA_SIZE, dataSize);
+                    ix.putLong(slot + S_EXPIRATION, expirationTime);
+                    ix.putLong(slot + S_FIRST_CREATED, firstCreated);
+                    ix.putInt(slot + S_SEGMENT, segmentOf(location));
+                    return oldEntry;
+                }
+            } finally {
+                lock.unlock();
+            }
+            resize(stripe);
+        }
+    }
+
+    public boolean updateExpirationInHeader(Object key, long expirationTime, long validatorExpirationTime) throws IOException, ClassNotFoundException {
+        checkOpen();
+        if (key == null) {
+            return false;
+        }
+        int hash = key.hashCode();
+        ReentrantReadWriteLock.WriteLock lock = locks[stripeOf(hash)].writeLock();
+        lock.lock();
+        try {
+            int slot = findKey(hash, key);
+            if (slot < 0) {
+                return false;
+            }
+            // only the validator expiration time is updated, the expiration time does not change
+            ByteBuffer buf = ByteBuffer.allocate(8);
+            buf.putLong(0, validatorExpirationTime);
+            transfer(segments.get(index.getInt(slot + S_SEGMENT)), buf, index.getLong(slot + S_OFFSET) + R_VALIDATOR_EXPIRATION, true);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The index of an iteration is the position of a slot in the index. Each slot
+     * is read with only its stripe locked, so writers are not held up by a scan.
+     */
+    public int iterateKeys(HashtableAction action, int index, int length) throws IOException, ClassNotFoundException {
+        checkOpen();
+        int tableSize = STRIPES * stripeCapacity;
+        for (int i = index, j = 0; i < tableSize; i++) {
+            HashtableEntry e = readSlot(i);
+            if (e != null) {
+                j++;
+                boolean result;
+                try {
+                    result = action.execute(e);
+                } catch (Exception xcp) {
+                    throw new HashtableOnDiskException("HashtableAction: " + xcp.toString());
+                }
+                if (result == false) {
+                    if (tc.isDebugEnabled())
+                        Tr.debug(tc, "iterateKeys", "cacheName=" + htoddc.cacheName + " id=" + e.getKey() + " action.execute() returns false.");
+                    break;
+                }
+            }
+            if (j >= length) {
+                return i + 1;
+            }
+        }
+        return tableSize;
+    }
+
+    /**
+     * Read the key and metadata of the entry in a slot.
+     *
+     * @param position position of the slot in the index.
+     * @return the entry, or null if the slot has no entry.
+     */
+    private HashtableEntry readSlot(int position) throws IOException, ClassNotFoundException {
+        for (;;) {
+            int capacity = stripeCapacity;
+            if (position >= STRIPES * capacity) {
+                return null;
+            }
+            ReentrantReadWriteLock.ReadLock lock = locks[position / capacity].readLock();
+            lock.lock();
+            try {
+                if (capacity == stripeCapacity) { // otherwise the index was resized before the lock was obtained
+                    int slot = HEADER_SIZE + position * SLOT_SIZE;
+                    int segmentId = index.getInt(slot + S_SEGMENT);
+                    return segmentId == EMPTY || segmentId == REMOVED ? null : readEntry(slot, RETRIEVE_KEY, false);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    //
+    // Index operations. The caller holds the lock for the stripe of the hash code.
+    //
+
+    private static int spread(int h) {
+        h = ((h >>> 16) ^ h) * 0x45D9F3B;
+        h = ((h >>> 16) ^ h) * 0x45D9F3B;
+        return (h >>> 16) ^ h;
+    }
+
+    private static int stripeOf(int hash) {
+        return spread(hash) >>> STRIPE_SHIFT;
+    }
+
+    private int slotAddress(int stripe, int position) {
+        return HEADER_SIZE + (stripe * stripeCapacity + position) * SLOT_SIZE;
+    }
+
+    /**
+     * @return address of the slot of the key, or -1 if it is not in the index.
+     */
+    private int findKey(int hash, Object key) throws IOException, ClassNotFoundException {
+        MappedByteBuffer ix = index;
+        int stripe = stripeOf(hash);
+        int mask = stripeCapacity - 1;
+        for (int i = 0, pos = spread(hash) & mask; i <= mask; i++, pos = (pos + 1) & mask) {
+            int slot = slotAddress(stripe, pos);
+            int segmentId = ix.getInt(slot + S_SEGMENT);
+            if (segmentId == EMPTY) {
+                break;
+            }
+            if (segmentId != REMOVED && ix.getInt(slot + S_HASH) == hash && key.equals(readKey(slot))) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return address of the first slot with the hash code, expiration time and size of
+     *         the eviction table entry, or -1 if there is none.
+     */
+    private int findEvictionTableEntry(EvictionTableEntry evt) {
+        MappedByteBuffer ix = index;
+        int stripe = stripeOf(evt.hashcode);
+        int mask = stripeCapacity - 1;
+        for (int i = 0, pos = spread(evt.hashcode) & mask; i <= mask; i++, pos = (pos + 1) & mask) {
+            int slot = slotAddress(stripe, pos);
+            int segmentId = ix.getInt(slot + S_SEGMENT);
+            if (segmentId == EMPTY) {
+                break;
+            }
+            if (segmentId != REMOVED && ix.getInt(slot + S_HASH) == evt.hashcode) {
+                long expTime = ix.getLong(slot + S_EXPIRATION);
+                if (expTime <= 0)
+                    expTime = Long.MAX_VALUE;
+                if (expTime == evt.expirationTime && ix.getInt(slot + S_DATA_SIZE) == evt.size) {
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return address of the slot where a new entry with the hash code goes.
+     */
+    private int freeSlot(int stripe, int hash) {
+        MappedByteBuffer ix = index;
+        int mask = stripeCapacity - 1;
+        for (int pos = spread(hash) & mask;; pos = (pos + 1) & mask) {
+            int slot = slotAddress(stripe, pos);
+            int segmentId = ix.getInt(slot + S_SEGMENT);
+            if (segmentId == EMPTY || segmentId == REMOVED) {
+                return slot;
+            }
+        }
+    }
+
+    private void removeSlot(int stripe, int slot) {
+        MappedByteBuffer ix = index;
+        releaseRecord(ix.getInt(slot + S_SEGMENT), ix.getInt(slot + S_LENGTH));
+        ix.putInt(slot + S_SEGMENT, REMOVED);
+        occupied[stripe]--;
+        count.decrementAndGet();
+        removes.incrementAndGet();
+    }
+
+    /**
+     * Called when the slots of a stripe that hold an entry or a removed entry reach the
+     * load limit. Double the size of the index if the entries alone take more than half
+     * of the load limit of the stripe, that is more than 3/8 of its slots, otherwise
+     * rebuild it at the same size to discard the removed slots. Unless the index is at
+     * its largest size, the stripe is left at most half way to the load limit.
+     */
+    private void resize(int stripe) throws IOException {
+        lockAll();
+        try {
+            checkOpen();
+            int capacity = stripeCapacity;
+            if ((used[stripe] + 1) * 100 <= capacity * LOAD_PERCENT) {
+                return; // another thread resized the index
+            }
+            int newCapacity = capacity;
+            if ((occupied[stripe] + 1) * 200 > capacity * LOAD_PERCENT && capacity < maxStripeCapacity) {
+                newCapacity = capacity << 1;
+            }
+
+            MappedByteBuffer ix = index;
+            byte[] live = new byte[count.get() * SLOT_SIZE];
+            ByteBuffer from = ix.duplicate();
+            for (int s = 0, n = 0; s < STRIPES; s++) {
+                for (int pos = 0; pos < capacity; pos++) {
+                    int slot = slotAddress(s, pos);
+                    int segmentId = ix.getInt(slot + S_SEGMENT);
+                    if (segmentId != EMPTY && segmentId != REMOVED) {
+                        from.position(slot);
+                        from.get(live, n, SLOT_SIZE);
+                        n += SLOT_SIZE;
+                    }
+                }
+            }
+
+            long length = HEADER_SIZE + (long) STRIPES * newCapacity * SLOT_SIZE;
+            indexFile.setLength(length);
+            ix = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            for (int p = HEADER_SIZE; p < length; p += 8) {
+                ix.putLong(p, 0);
+            }
+            ix.putInt(H_STRIPE_CAPACITY, newCapacity);
+            index = ix;
+            stripeCapacity = newCapacity;
+            Arrays.fill(used, 0);
+            Arrays.fill(occupied, 0);
+
+            ByteBuffer liveSlots = ByteBuffer.wrap(live);
+            ByteBuffer to = ix.duplicate();
+            for (int n = 0; n < live.length; n += SLOT_SIZE) {
+                int hash = liveSlots.getInt(n + S_HASH);
+                int s = stripeOf(hash);
+                int slot = freeSlot(s, hash);
+                to.position(slot);
+                to.put(live, n, SLOT_SIZE);
+                used[s]++;
+                occupied[s]++;
+            }
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, "resize", "cacheName=" + htoddc.cacheName + " stripeCapacity=" + capacity + " newStripeCapacity=" + newCapacity
+                                       + " entries=" + count.get());
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private void lockAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i].writeLock().lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    //
+    // Segment operations
+    //
+
+    private static long location(int segmentId, long offset) {
+        return ((long) segmentId << 40) | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 40);
+    }
+
+    private static long offsetOf(long location) {
+        return location & 0xFFFFFFFFFFL;
+    }
+
+    private static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(500);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(o);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] buildRecord(int hash, long firstCreated, long expirationTime, long validatorExpirationTime, int valueHashcode, int dataSize,
+                                      byte flags, byte[] key, byte[] value, int valueSize, byte[] cacheValue) {
+        int length = RECORD_HEADER_SIZE + key.length + 4 + Math.max(valueSize, 0) + 4 + (cacheValue == null ? 0 : cacheValue.length);
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        buf.putInt(length);
+        buf.putInt(hash);
+        buf.putLong(firstCreated);
+        buf.putLong(expirationTime);
+        buf.putLong(validatorExpirationTime);
+        buf.putInt(valueHashcode);
+        buf.putInt(dataSize);
+        buf.put(flags);
+        buf.putInt(key.length);
+        buf.put(key);
+        buf.putInt(valueSize);
+        if (valueSize > 0) {
+            buf.put(value, 0, valueSize);
+        }
+        if (cacheValue == null) {
+            buf.putInt(-1);
+        } else {
+            buf.putInt(cacheValue.length);
+            buf.put(cacheValue);
+        }
+        return buf.array();
+    }
+
+    /**
+     * Write a record at the end of the active segment.
+     *
+     * @return the location of the record.
+     */
+    private long append(byte[] record) throws IOException {
+        synchronized (appendLock) {
+            Segment segment = activeSegment;
+            if (segment.size > 0 && segment.size + record.length > segmentSize) {
+                segment = rollSegment();
+            }
+            long offset = segment.size;
+            transfer(segment, ByteBuffer.wrap(record), offset, true);
+            segment.size = offset + record.length;
+            segment.live.addAndGet(record.length);
+            return location(segment.id, offset);
+        }
+    }
+
+    /**
+     * Account for a record that is no longer referenced by the index.
+     */
+    private void releaseRecord(int segmentId, int length) {
+        Segment segment = segments.get(segmentId);
+        if (segment != null) {
+            segment.live.addAndGet(-length);
+            if (isCompactionCandidate(segment)) {
+                scheduleCompaction();
+            }
+        }
+    }
+
+    private byte[] read(int slot, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        transfer(segments.get(index.getInt(slot + S_SEGMENT)), ByteBuffer.wrap(bytes), index.getLong(slot + S_OFFSET), false);
+        return bytes;
+    }
+
+    /**
+     * Read or write at a position in a segment file. A thread that is interrupted while
+     * it uses a FileChannel closes the channel for all threads, so a closed channel is
+     * reopened and the operation is tried once more.
+     */
+    private void transfer(Segment segment, ByteBuffer buf, long position, boolean write) throws IOException {
+        FileChannel channel = segment.channel;
+        for (int attempt = 0;; attempt++) {
+            boolean interrupted = false;
+            try {
+                if (attempt > 0) {
+                    interrupted = Thread.interrupted();
+                    channel = segment.reopen(channel);
+                }
+                long pos = position + buf.position();
+                while (buf.hasRemaining()) {
+                    int n = write ? channel.write(buf, pos) : channel.read(buf, pos);
+                    if (n < 0) {
+                        throw new EOFException(segment.file.getName() + " position " + pos);
+                    }
+                    pos += n;
+                }
+                return;
+            } catch (ClosedChannelException ex) {
+                if (closed || attempt > 0) {
+                    throw ex;
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private Object readKey(int slot) throws IOException, ClassNotFoundException {
+        byte[] record = read(slot, Math.min(index.getInt(slot + S_LENGTH), KEY_READ_SIZE));
+        int keySize = ByteBuffer.wrap(record).getInt(R_KEY_LENGTH);
+        if (RECORD_HEADER_SIZE + keySize > record.length) {
+            record = read(slot, RECORD_HEADER_SIZE + keySize);
+        }
+        return SerializationUtility.deserialize(Arrays.copyOfRange(record, RECORD_HEADER_SIZE, RECORD_HEADER_SIZE + keySize), htoddc.cacheName);
+    }
+
+    /**
+     * Read the entry in a slot with the same fields that HashtableOnDisk returns for the retrieve mode.
+     */
+    private HashtableEntry readEntry(int slot, int retrieveMode, boolean checkExpired) throws IOException, ClassNotFoundException {
+        MappedByteBuffer ix = index;
+        int length = ix.getInt(slot + S_LENGTH);
+        long expiration = ix.getLong(slot + S_EXPIRATION);
+        if (checkExpired && expiration > 0 && System.currentTimeMillis() - expiration >= 0) {
+            retrieveMode = RETRIEVE_KEY;
+        }
+
+        byte[] record;
+        if (retrieveMode == RETRIEVE_KEY) {
+            record = read(slot, Math.min(length, KEY_READ_SIZE));
+            int keySize = ByteBuffer.wrap(record).getInt(R_KEY_LENGTH);
+            if (RECORD_HEADER_SIZE + keySize > record.length) {
+                record = read(slot, RECORD_HEADER_SIZE + keySize);
+            }
+        } else {
+            record = read(slot, length);
+        }
+
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        long firstCreated = buf.getLong(R_FIRST_CREATED);
+        long validatorExpiration = buf.getLong(R_VALIDATOR_EXPIRATION);
+        int cacheValueHashcode = buf.getInt(R_VALUE_HASHCODE);
+        int dataSize = buf.getInt(R_DATA_SIZE);
+        byte flags = buf.get(R_FLAGS);
+        boolean isAliasId = (flags & FLAG_ALIAS_ID) != 0;
+        int keySize = buf.getInt(R_KEY_LENGTH);
+        Object key = SerializationUtility.deserialize(Arrays.copyOfRange(record, RECORD_HEADER_SIZE, RECORD_HEADER_SIZE + keySize), htoddc.cacheName);
+
+        Object value = null;
+        int valueSize = -1;
+        int cacheValueSize = 0;
+        byte[] serializedCacheValue = null;
+        if (retrieveMode == RETRIEVE_ALL || retrieveMode == RETRIEVE_KEY_VALUE) {
+            int pos = RECORD_HEADER_SIZE + keySize;
+            valueSize = buf.getInt(pos);
+            pos += 4;
+            if (valueSize != -1) {
+                byte[] valueBytes = Arrays.copyOfRange(record, pos, pos + valueSize);
+                value = (flags & FLAG_BYTE_VALUE) != 0 ? valueBytes : SerializationUtility.deserialize(valueBytes, htoddc.cacheName);
+                pos += valueSize;
+            }
+            cacheValueSize = dataSize - keySize - valueSize;
+            if (!isAliasId && retrieveMode == RETRIEVE_ALL) {
+                cacheValueSize = buf.getInt(pos);
+                pos += 4;
+                if (cacheValueSize != -1) {
+                    serializedCacheValue = Arrays.copyOfRange(record, pos, pos + cacheValueSize);
+                }
+            }
+        }
+
+        HashtableEntry htEntry = htoddc.getFromHashtableEntryPool();
+        htEntry.copy(ix.getLong(slot + S_OFFSET), firstCreated, key, value, 0, 0,
+                     STRIPES * stripeCapacity, 0, valueSize,
+                     expiration, validatorExpiration, dataSize,
+                     serializedCacheValue, cacheValueSize, cacheValueHashcode,
+                     isAliasId, true);
+        return htEntry;
+    }
+
+    //
+    // Compaction
+    //
+
+    private boolean isCompactionCandidate(Segment segment) {
+        return segment != activeSegment && segment.size > 0
+               && (segment.size - segment.live.get()) * 100 >= segment.size * COMPACTION_GARBAGE_PERCENT;
+    }
+
+    private void scheduleCompaction() {
+        if (!closed && compactionScheduled.compareAndSet(false, true)) {
+            if (Scheduler.submit(compactor) == null) {
+                compactionScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Compact segments until none of them is a candidate or the store is closed.
+     */
+    void compactSegments() {
+        final String methodName = "compactSegments()";
+        compactionLock.lock();
+        try {
+            while (!closed) {
+                Segment candidate = null;
+                for (Segment segment : segments.values()) {
+                    if (isCompactionCandidate(segment)) {
+                        candidate = segment;
+                        break;
+                    }
+                }
+                if (candidate == null) {
+                    break;
+                }
+                compact(candidate);
+            }
+        } catch (Throwable t) {
+            com.ibm.ws.ffdc.FFDCFilter.processException(t, "com.ibm.ws.cache.persistent.htod.SegmentedHashtableOnDisk.compactSegments", "770", this);
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, methodName, "cacheName=" + htoddc.cacheName + " Exception: " + t);
+        } finally {
+            compactionLock.unlock();
+            compactionScheduled.set(false);
+        }
+    }
+
+    /**
+     * Copy the live records of a segment to the active segment and delete the segment.
+     * Each record is copied while the lock for its stripe is held, so a reader either
+     * finds the old location before the copy or the new location after it.
+     */
+    private void compact(Segment segment) throws IOException {
+        final String methodName = "compact()";
+        long liveBefore = segment.live.get();
+        long offset = 0;
+        ByteBuffer head = ByteBuffer.allocate(8);
+        while (offset < segment.size) {
+            if (closed) {
+                return;
+            }
+            head.clear();
+            transfer(segment, head, offset, false);
+            int length = head.getInt(R_LENGTH);
+            int hash = head.getInt(R_HASH);
+            int stripe = stripeOf(hash);
+            ReentrantReadWriteLock.WriteLock lock = locks[stripe].writeLock();
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                MappedByteBuffer ix = index;
+                int mask = stripeCapacity - 1;
+                for (int i = 0, pos = spread(hash) & mask; i <= mask; i++, pos = (pos + 1) & mask) {
+                    int slot = slotAddress(stripe, pos);
+                    int segmentId = ix.getInt(slot + S_SEGMENT);
+                    if (segmentId == EMPTY) {
+                        break;
+                    }
+                    if (segmentId == segment.id && ix.getLong(slot + S_OFFSET) == offset) {
+                        byte[] record = read(slot, length);
+                        long location = append(record);
+                        ix.putLong(slot + S_OFFSET, offsetOf(location));
+                        ix.putInt(slot + S_SEGMENT, segmentOf(location));
+                        segment.live.addAndGet(-length);
+                        bytes_compacted.addAndGet(length);
+                        break;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            offset += length;
+        }
+
+        segments.remove(segment.id);
+        segment.close();
+        segment.file.delete();
+        compactions.incrementAndGet();
+        if (tc.isDebugEnabled())
+            Tr.debug(tc, methodName, "cacheName=" + htoddc.cacheName + " segment=" + segment.file.getName() + " size=" + segment.size
+                                     + " liveBytes=" + liveBefore);
+    }
+
+    //
+    // Range index for paged iteration
+    //
+
+    public int getNextRangeIndex() {
+        int length = rangeIndexList.size();
+        if (length > 0) {
+            Integer rindex = rangeIndexList.get(length - 1);
+            return rindex.intValue();
+        }
+        return 0;
+    }
+
+    public int getPreviousRangeIndex() {
+        int length = rangeIndexList.size();
+        if (length == 2) {
+            rangeIndexList.remove(1);
+            return 0;
+        } else if (length == 1) {
+            return 0;
+        }
+        rangeIndexList.remove(length - 1);
+        rangeIndexList.remove(length - 2);
+        Integer rindex = rangeIndexList.get(length - 3);
+        return rindex.intValue();
+    }
+
+    public void addRangeIndex(int index) {
+        rangeIndexList.add(Integer.valueOf(index));
+    }
+
+    public void initRangeIndex() {
+        rangeIndexList.clear();
+        rangeIndexList.add(Integer.valueOf(0));
+    }
+
+    public int getRangeExpiredIndex() {
+        return rangeExpiredIndex;
+    }
+
+    public void setRangeExpiredIndex(int index) {
+        rangeExpiredIndex = index;
+    }
+
+    //
+    // Statistics
+    //
+
+    public void reset_stats() {
+        read_requests.set(0);
+        read_hits.set(0);
+        write_requests.set(0);
+        write_replacements.set(0);
+        removes.set(0);
+        compactions.set(0);
+        bytes_compacted.set(0);
+    }
+
+    public void dump_stats_header(Writer out) throws IOException {
+        out.write("Num-Objects\t");
+        out.write("Stripes\t");
+        out.write("Stripe-Capacity\t");
+        out.write("Read-Requests\t");
+        out.write("Read-Hits\t");
+        out.write("Write-Replacements\t");
+        out.write("Write-Requests\t");
+        out.write("Removes\t");
+        out.write("Compactions\t");
+        out.write("Bytes-Compacted\t");
+    }
+
+    public void dump_htod_stats(Writer out, boolean labels) throws IOException {
+        if (labels) {
+            out.write("\n\n");
+            out.write("--------------------------------------------------\n");
+            out.write("Segmented HTOD:\n");
+            out.write("--------------------------------------------------\n");
+            out.write("num_objects = " + count.get() + "\n");
+            out.write("stripes = " + STRIPES + "\n");
+            out.write("stripeCapacity = " + stripeCapacity + "\n");
+            out.write("read_requests " + read_requests.get() + "\n");
+            out.write("read_hits " + read_hits.get() + "\n");
+            out.write("write_replacements: " + write_replacements.get() + "\n");
+            out.write("write_requests: " + write_requests.get() + "\n");
+            out.write("removes: " + removes.get() + "\n");
+            out.write("compactions: " + compactions.get() + "\n");
+            out.write("bytes compacted: " + bytes_compacted.get() + "\n");
+            out.write("--------------------------------------------------" + "\n");
+        } else {
+            out.write(count.get() + "\t");
+            out.write(STRIPES + "\t");
+            out.write(stripeCapacity + "\t");
+            out.write(read_requests.get() + "\t");
+            out.write(read_hits.get() + "\t");
+            out.write(write_replacements.get() + "\t");
+            out.write(write_requests.get() + "\t");
+            out.write(removes.get() + "\t");
+            out.write(compactions.get() + "\t");
+            out.write(bytes_compacted.get() + "\t");
+        }
+    }
+
+    public void dump_filemgr_header(Writer out) throws IOException {
+        out.write("Segments\t");
+        out.write("Segment-Bytes\t");
+        out.write("Live-Bytes\t");
+    }
+
+    public void dump_filemgr_stats(Writer out, boolean labels) throws IOException {
+        long bytes = 0;
+        long live = 0;
+        for (Segment segment : segments.values()) {
+            bytes += segment.size;
+            live += segment.live.get();
+        }
+        if (labels) {
+            out.write("segments = " + segments.size() + "\n");
+            out.write("segment bytes = " + bytes + "\n");
+            out.write("live bytes = " + live + "\n");
+        } else {
+            out.write(segments.size() + "\t");
+            out.write(bytes + "\t");
+            out.write(live + "\t");
+        }
+    }
+
+    /**
+     * An append-only file of records.
+     */
+    private static class Segment {
+        final int id;
+        final File file;
+        volatile FileChannel channel;
+        volatile long size; // changed while holding appendLock
+        final AtomicLong live = new AtomicLong(); // bytes of records that the index refers to
+
+        Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+            this.size = channel.size();
+        }
+
+        synchronized FileChannel reopen(FileChannel failed) throws IOException {
+            if (channel == failed) {
+                channel = new RandomAccessFile(file, "rw").getChannel();
+            }
+            return channel;
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
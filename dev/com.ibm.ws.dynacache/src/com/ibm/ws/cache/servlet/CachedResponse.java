@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache.servlet;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The status, headers and body of a response that is held in the response cache.
+ * Instances are serializable so that the entry can be offloaded to disk.
+ */
+public class CachedResponse implements Serializable {
+
+    private static final long serialVersionUID = 6195183247104722395L;
+
+    private final int status;
+
+    private final String contentType;
+
+    /**
+     * Header names and values, in pairs. A header with several values has one pair for each value.
+     */
+    private final String[] headers;
+
+    private final byte[] body;
+
+    CachedResponse(int status, String contentType, String[] headers, byte[] body) {
+        this.status = status;
+        this.contentType = contentType;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public int getContentLength() {
+        return body.length;
+    }
+
+    /**
+     * Writes the status, headers and body to a response that has not been committed.
+     */
+    void writeTo(HttpServletResponse response) throws IOException {
+        response.setStatus(status);
+        for (int i = 0; i < headers.length; i += 2)
+            response.addHeader(headers[i], headers[i + 1]);
+        if (contentType != null)
+            response.setContentType(contentType);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    @Override
+    public String toString() {
+        return "CachedResponse[status=" + status + " contentType=" + contentType + " headers=" + (headers.length / 2) + " length=" + body.length + "]";
+    }
+}
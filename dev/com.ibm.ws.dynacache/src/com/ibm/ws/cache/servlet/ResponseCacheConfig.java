@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache.servlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.ws.cache.DCacheBase;
+
+/**
+ * Response cache configuration of a web module, read from WEB-INF/responsecache.properties.
+ * The properties file has the following format:
+ * <xmp>
+ *    cacheInstance=services/cache/catalog
+ *    maxEntrySize=1048576
+ *    rule.0.paths=/api/catalog/*
+ *    rule.0.timeToLive=300
+ *    rule.0.priority=1
+ *    rule.0.queryParameters=page,size
+ *    rule.0.headers=Accept,Accept-Language
+ *    rule.0.cookies=region
+ *    rule.0.dependencyIds=catalog,product-{id}
+ *    rule.0.invalidateOn=POST,PUT,DELETE
+ *    rule.0.cacheAuthenticated=false
+ * </xmp>
+ *
+ * cacheInstance is the name of the DistributedMap that holds the responses. It
+ * defaults to the default DistributedMap. maxEntrySize is the largest response
+ * body in bytes that is cached. Rules are numbered from 0 without gaps and the
+ * first rule with a matching path applies to a request. A rule must have paths;
+ * all of its other properties are optional. queryParameters defaults to "*", which
+ * puts the whole query string in the cache key. A list of names puts only the values
+ * of those parameters in the key, and an empty value leaves the query string out of
+ * the key. timeToLive is in seconds and defaults to -1,
+ * which means that entries do not time out. invalidateOn lists the HTTP methods
+ * that invalidate the dependency ids of the rule when the request succeeds.
+ */
+public class ResponseCacheConfig {
+
+    private static TraceComponent tc = Tr.register(ResponseCacheConfig.class, "WebSphere Dynamic Cache", "com.ibm.ws.cache.resources.dynacache");
+
+    public static final String RESPONSE_CACHE_PROPERTIES = "WEB-INF/responsecache.properties";
+
+    static final String CACHE_INSTANCE = "cacheInstance";
+    static final String MAX_ENTRY_SIZE = "maxEntrySize";
+    static final String RULE = "rule.";
+    static final String PATHS = ".paths";
+    static final String TIME_TO_LIVE = ".timeToLive";
+    static final String PRIORITY = ".priority";
+    static final String QUERY_PARAMETERS = ".queryParameters";
+    static final String HEADERS = ".headers";
+    static final String COOKIES = ".cookies";
+    static final String DEPENDENCY_IDS = ".dependencyIds";
+    static final String INVALIDATE_ON = ".invalidateOn";
+    static final String CACHE_AUTHENTICATED = ".cacheAuthenticated";
+
+    static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+    static final int DEFAULT_TIME_TO_LIVE = -1;
+    static final int DEFAULT_PRIORITY = 1;
+
+    private final String cacheInstanceName;
+
+    private final int maxEntrySize;
+
+    private final List<ResponseCacheRule> rules;
+
+    private ResponseCacheConfig(String cacheInstanceName, int maxEntrySize, List<ResponseCacheRule> rules) {
+        this.cacheInstanceName = cacheInstanceName;
+        this.maxEntrySize = maxEntrySize;
+        this.rules = Collections.unmodifiableList(rules);
+    }
+
+    /**
+     * @param props contents of the properties file.
+     * @param source name of the properties file, for trace.
+     * @return the configuration, or null if the properties do not define any rules.
+     */
+    public static ResponseCacheConfig fromProperties(Properties props, String source) {
+        final String methodName = "fromProperties()";
+
+        String cacheInstanceName = props.getProperty(CACHE_INSTANCE, DCacheBase.DEFAULT_DMAP_JNDI_NAME).trim();
+        if (cacheInstanceName.length() > 0 && cacheInstanceName.charAt(0) == '/')
+            cacheInstanceName = cacheInstanceName.substring(1);
+        if (cacheInstanceName.length() == 0)
+            cacheInstanceName = DCacheBase.DEFAULT_DMAP_JNDI_NAME;
+        int maxEntrySize = getInt(props, MAX_ENTRY_SIZE, DEFAULT_MAX_ENTRY_SIZE, source);
+
+        List<ResponseCacheRule> rules = new ArrayList<ResponseCacheRule>();
+        for (int i = 0;; i++) {
+            String prefix = RULE + i;
+            String[] paths = getList(props, prefix + PATHS);
+            if (paths.length == 0)
+                break;
+            ResponseCacheRule rule = new ResponseCacheRule(i, paths,
+                            getInt(props, prefix + TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE, source),
+                            getInt(props, prefix + PRIORITY, DEFAULT_PRIORITY, source),
+                            getQueryParameters(props, prefix + QUERY_PARAMETERS),
+                            getList(props, prefix + HEADERS),
+                            getList(props, prefix + COOKIES),
+                            getList(props, prefix + DEPENDENCY_IDS),
+                            getList(props, prefix + INVALIDATE_ON),
+                            Boolean.parseBoolean(props.getProperty(prefix + CACHE_AUTHENTICATED, "false").trim()));
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, methodName + " source=" + source + " " + rule);
+            rules.add(rule);
+        }
+        if (rules.isEmpty()) {
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, methodName + " source=" + source + " does not define any rules");
+            return null;
+        }
+        return new ResponseCacheConfig(cacheInstanceName, maxEntrySize, rules);
+    }
+
+    public String getCacheInstanceName() {
+        return cacheInstanceName;
+    }
+
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public List<ResponseCacheRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @param path path of the request within the web module.
+     * @return the first rule that matches the path, or null if there is none.
+     */
+    public ResponseCacheRule getRule(String path) {
+        for (ResponseCacheRule rule : rules)
+            if (rule.matches(path))
+                return rule;
+        return null;
+    }
+
+    private static int getInt(Properties props, String name, int defaultValue, String source) {
+        String value = props.getProperty(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, "getInt() source=" + source + " " + name + "=" + value + " is not valid, using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Query parameters of a rule. The whole query string is in the cache key unless
+     * the rule lists the parameters, so that requests for different query strings do
+     * not share a response by default.
+     */
+    private static String[] getQueryParameters(Properties props, String name) {
+        if (props.getProperty(name) == null)
+            return new String[] { ResponseCacheRule.ALL };
+        return getList(props, name);
+    }
+
+    private static String[] getList(Properties props, String name) {
+        String value = props.getProperty(name);
+        if (value == null)
+            return new String[0];
+        List<String> list = new ArrayList<String>();
+        for (String s : value.split(",")) {
+            s = s.trim();
+            if (s.length() > 0)
+                list.add(s);
+        }
+        return list.toArray(new String[list.size()]);
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseCacheConfig[cacheInstance=" + cacheInstanceName + " maxEntrySize=" + maxEntrySize + " rules=" + rules + "]";
+    }
+}
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache.servlet;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import com.ibm.websphere.cache.DistributedMap;
+import com.ibm.websphere.cache.EntryInfo;
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.wsspi.cache.DistributedObjectCacheFactory;
+
+/**
+ * Caches complete responses (status, headers and body) in a DistributedMap so that
+ * a later request with the same cache key is answered without invoking the
+ * application. CacheServiceImpl adds the filter to every web module that has a
+ * WEB-INF/responsecache.properties file. JAX-RS resources are served by a servlet
+ * in the web module, so their responses are cached in the same way.
+ * <p>
+ * Only successful GET responses are cached. A response is not cached if it sets a
+ * cookie, if the request created a session, if its Cache-Control header contains
+ * no-store or private, if it has a Vary header that names a request header which
+ * is not in the cache key of the rule, or if the request is handled asynchronously.
+ * The cache key includes the host of the request, so virtual hosts that share the
+ * web module do not share responses. Requests from
+ * authenticated users are passed through unless the rule allows them to share
+ * cached responses.
+ * <p>
+ * The filter is mapped after the filters that the web module declares, so those
+ * filters, including any that check authorization, run before a cached response is
+ * returned. Filters that are added later by other ServletContainerInitializers or
+ * listeners can run after it and are skipped on a cache hit. Only the requests that
+ * match a rule of the configuration are cached.
+ * <p>
+ * Entries are put with the time to live and dependency ids of the rule. Invalidating
+ * a dependency id in the DistributedMap removes all responses that were cached with
+ * it and fires the usual InvalidationEvents. A request whose method is listed in the
+ * invalidateOn property of its rule invalidates the dependency ids itself when it
+ * succeeds.
+ */
+public class ResponseCacheFilter implements Filter {
+
+    private static TraceComponent tc = Tr.register(ResponseCacheFilter.class, "WebSphere Dynamic Cache", "com.ibm.ws.cache.resources.dynacache");
+
+    public static final String FILTER_NAME = "com.ibm.ws.cache.servlet.ResponseCacheFilter";
+
+    private final ResponseCacheConfig config;
+
+    /**
+     * The DistributedMap is looked up on first use because the object cache service
+     * might not be started when the web module is.
+     */
+    private volatile DistributedMap map;
+
+    public ResponseCacheFilter(ResponseCacheConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Constructor for unit tests, which supply the DistributedMap.
+     */
+    ResponseCacheFilter(ResponseCacheConfig config, DistributedMap map) {
+        this.config = config;
+        this.map = map;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        if (tc.isDebugEnabled())
+            Tr.debug(tc, "init() " + filterConfig.getServletContext().getContextPath() + " " + config);
+    }
+
+    @Override
+    public void destroy() {
+        map = null;
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+        if (!(req instanceof HttpServletRequest) || !(res instanceof HttpServletResponse)) {
+            chain.doFilter(req, res);
+            return;
+        }
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+
+        String pathInfo = request.getPathInfo();
+        String path = pathInfo == null ? request.getServletPath() : request.getServletPath() + pathInfo;
+        ResponseCacheRule rule = config.getRule(path);
+        if (rule == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String method = request.getMethod();
+        if ("GET".equals(method))
+            doCachedGet(request, response, chain, rule);
+        else if (rule.isInvalidatedBy(method) && rule.hasDependencyIds())
+            doInvalidatingUpdate(request, response, chain, rule);
+        else
+            chain.doFilter(request, response);
+    }
+
+    private void doCachedGet(HttpServletRequest request, HttpServletResponse response, FilterChain chain, ResponseCacheRule rule) throws IOException, ServletException {
+        final String methodName = "doCachedGet()";
+        DistributedMap map = getMap();
+        if (map == null || (!rule.isCacheAuthenticated() && isAuthenticated(request))) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Map<String, List<String>> query = ResponseCacheRule.parseQueryString(request.getQueryString());
+        String key = rule.getCacheKey(request, query);
+        Object value = map.get(key);
+        if (value instanceof CachedResponse && !response.isCommitted()) {
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, methodName + " cacheName=" + config.getCacheInstanceName() + " hit key=" + key + " " + value);
+            ((CachedResponse) value).writeTo(response);
+            return;
+        }
+
+        ResponseCaptureWrapper wrapper = new ResponseCaptureWrapper(response, config.getMaxEntrySize());
+        chain.doFilter(request, wrapper);
+        if (request.isAsyncStarted())
+            return; // the response is completed later on another thread
+
+        CachedResponse cachedResponse = wrapper.getCachedResponse();
+        if (cachedResponse != null && isCacheable(request, wrapper, rule)) {
+            try {
+                map.put(key, cachedResponse, rule.getPriority(), rule.getTimeToLive(), EntryInfo.NOT_SHARED, rule.getDependencyIds(query));
+                if (tc.isDebugEnabled())
+                    Tr.debug(tc, methodName + " cacheName=" + config.getCacheInstanceName() + " put key=" + key + " " + cachedResponse);
+            } catch (RuntimeException e) {
+                // the response has already been sent, so the request is not affected
+                com.ibm.ws.ffdc.FFDCFilter.processException(e, "com.ibm.ws.cache.servlet.ResponseCacheFilter.doCachedGet", "136", this);
+            }
+        } else if (tc.isDebugEnabled()) {
+            Tr.debug(tc, methodName + " cacheName=" + config.getCacheInstanceName() + " not cacheable key=" + key + " status=" + response.getStatus()
+                         + " captured=" + (cachedResponse != null) + " setsCookie=" + wrapper.setsCookie());
+        }
+    }
+
+    private void doInvalidatingUpdate(HttpServletRequest request, HttpServletResponse response, FilterChain chain, ResponseCacheRule rule) throws IOException, ServletException {
+        final String methodName = "doInvalidatingUpdate()";
+        chain.doFilter(request, response);
+        if (response.getStatus() >= HttpServletResponse.SC_BAD_REQUEST)
+            return;
+        DistributedMap map = getMap();
+        if (map == null)
+            return;
+        Object[] ids = rule.getDependencyIds(ResponseCacheRule.parseQueryString(request.getQueryString()));
+        for (Object id : ids) {
+            if (tc.isDebugEnabled())
+                Tr.debug(tc, methodName + " cacheName=" + config.getCacheInstanceName() + " method=" + request.getMethod() + " invalidate id=" + id);
+            try {
+                map.invalidate(id, false);
+            } catch (RuntimeException e) {
+                com.ibm.ws.ffdc.FFDCFilter.processException(e, "com.ibm.ws.cache.servlet.ResponseCacheFilter.doInvalidatingUpdate", "159", this);
+            }
+        }
+    }
+
+    private DistributedMap getMap() {
+        DistributedMap m = map;
+        if (m == null) {
+            m = DistributedObjectCacheFactory.getMap(config.getCacheInstanceName());
+            map = m;
+        }
+        return m;
+    }
+
+    private static boolean isAuthenticated(HttpServletRequest request) {
+        return request.getHeader("Authorization") != null || request.getUserPrincipal() != null;
+    }
+
+    private static boolean isCacheable(HttpServletRequest request, ResponseCaptureWrapper response, ResponseCacheRule rule) {
+        if (response.getStatus() != HttpServletResponse.SC_OK || response.setsCookie() || response.containsHeader("Set-Cookie"))
+            return false;
+        // the session cookie of a new session is added when the response is committed, not through the wrapper
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            try {
+                if (session.isNew())
+                    return false;
+            } catch (IllegalStateException e) {
+                return false; // invalidated by the request
+            }
+        }
+        for (String cacheControl : response.getHeaders("Cache-Control")) {
+            String value = cacheControl.toLowerCase();
+            if (value.contains("no-store") || value.contains("private"))
+                return false;
+        }
+        // a response that varies by a request header not in the key would be returned for other values of that header
+        for (String vary : response.getHeaders("Vary"))
+            if (!rule.isKeyedBy(vary))
+                return false;
+        return true;
+    }
+}
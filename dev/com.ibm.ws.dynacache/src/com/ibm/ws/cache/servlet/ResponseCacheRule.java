@@ -0,0 +1,328 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache.servlet;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * A rule of the response cache. A rule selects requests by the path within the
+ * web module, and determines the cache key, time to live and dependency ids of
+ * the responses that it caches.
+ * <p>
+ * A path pattern is an exact path, a prefix that ends with "/*", or an extension
+ * that starts with "*.", as in a servlet mapping.
+ * <p>
+ * The cache key is made of the scheme, host and port of the request, the request
+ * URI, the query string or the values of the selected query parameters, and the
+ * values of the selected headers and cookies. Each part of the key is prefixed with
+ * its type and length, so that no name or value can be read as another part. A
+ * response with a Vary header is only cached if the key contains all of the request
+ * headers that it names. A dependency id can contain a query parameter name in
+ * braces, for example "product-{id}", which is replaced with the value of the
+ * parameter. A dependency id whose parameter is not in the request is not used.
+ * <p>
+ * Query parameters are read from the query string only. The request body is never
+ * read, so that the application still receives the complete body of an update.
+ */
+public class ResponseCacheRule {
+
+    /**
+     * Selects all query parameters in the key.
+     */
+    static final String ALL = "*";
+
+    private final int index;
+
+    private final String[] paths;
+
+    private final int timeToLive;
+
+    private final int priority;
+
+    /**
+     * Query parameters in the key, null for none or an empty array for the whole query string.
+     */
+    private final String[] queryParameters;
+
+    private final String[] headers;
+
+    /**
+     * Names of the headers in the key, in lower case.
+     */
+    private final Set<String> headerNames;
+
+    private final String[] cookies;
+
+    private final String[] dependencyIds;
+
+    private final Set<String> invalidateOn;
+
+    private final boolean cacheAuthenticated;
+
+    ResponseCacheRule(int index, String[] paths, int timeToLive, int priority, String[] queryParameters, String[] headers,
+                      String[] cookies, String[] dependencyIds, String[] invalidateOn, boolean cacheAuthenticated) {
+        this.index = index;
+        this.paths = paths;
+        this.timeToLive = timeToLive;
+        this.priority = priority;
+        if (queryParameters.length == 1 && ALL.equals(queryParameters[0]))
+            this.queryParameters = new String[0];
+        else
+            this.queryParameters = queryParameters.length == 0 ? null : queryParameters;
+        this.headers = headers;
+        Set<String> names = new HashSet<String>();
+        for (String name : headers)
+            names.add(name.toLowerCase());
+        this.headerNames = Collections.unmodifiableSet(names);
+        this.cookies = cookies;
+        this.dependencyIds = dependencyIds;
+        Set<String> methods = new HashSet<String>();
+        for (String method : invalidateOn)
+            methods.add(method.toUpperCase());
+        this.invalidateOn = Collections.unmodifiableSet(methods);
+        this.cacheAuthenticated = cacheAuthenticated;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return time in seconds that a response remains in the cache, or -1 if it does not time out.
+     */
+    public int getTimeToLive() {
+        return timeToLive;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public boolean isCacheAuthenticated() {
+        return cacheAuthenticated;
+    }
+
+    /**
+     * @return true if a request with the HTTP method invalidates the dependency ids of this rule.
+     */
+    public boolean isInvalidatedBy(String method) {
+        return invalidateOn.contains(method);
+    }
+
+    public boolean hasDependencyIds() {
+        return dependencyIds.length > 0;
+    }
+
+    /**
+     * @param vary value of a Vary header of a response.
+     * @return true if the cache key contains all of the request headers that the Vary header names.
+     */
+    public boolean isKeyedBy(String vary) {
+        for (String name : vary.split(",")) {
+            name = name.trim();
+            if (name.length() > 0 && !headerNames.contains(name.toLowerCase()))
+                return false; // including *
+        }
+        return true;
+    }
+
+    /**
+     * @param path path of the request within the web module.
+     * @return true if one of the path patterns matches.
+     */
+    public boolean matches(String path) {
+        for (String pattern : paths) {
+            if (pattern.endsWith("/*")) {
+                int length = pattern.length() - 2;
+                if (path.startsWith(pattern.substring(0, length)) && (path.length() == length || path.charAt(length) == '/'))
+                    return true;
+            } else if (pattern.startsWith("*.")) {
+                if (path.endsWith(pattern.substring(1)))
+                    return true;
+            } else if (pattern.equals(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param query parameters of the query string, as returned by {@link #parseQueryString}.
+     * @return the cache key of the request.
+     */
+    public String getCacheKey(HttpServletRequest request, Map<String, List<String>> query) {
+        StringBuilder key = new StringBuilder(128);
+        appendPart(key, 'H', request.getScheme() + "://" + request.getServerName() + ':' + request.getServerPort());
+        appendPart(key, 'U', request.getRequestURI());
+        if (queryParameters != null) {
+            if (queryParameters.length == 0) {
+                String queryString = request.getQueryString();
+                if (queryString != null)
+                    appendPart(key, 'Q', queryString);
+            } else {
+                for (String name : queryParameters) {
+                    List<String> values = query.get(name);
+                    if (values != null) {
+                        for (String value : values) {
+                            appendPart(key, 'q', name);
+                            appendPart(key, '=', value);
+                        }
+                    }
+                }
+            }
+        }
+        for (String name : headers) {
+            Enumeration<String> values = request.getHeaders(name);
+            if (values != null)
+                while (values.hasMoreElements()) {
+                    appendPart(key, 'h', name);
+                    appendPart(key, '=', values.nextElement());
+                }
+        }
+        if (cookies.length > 0) {
+            Cookie[] requestCookies = request.getCookies();
+            if (requestCookies != null)
+                for (String name : cookies)
+                    for (Cookie cookie : requestCookies)
+                        if (name.equals(cookie.getName())) {
+                            appendPart(key, 'c', name);
+                            appendPart(key, '=', cookie.getValue());
+                        }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Appends a part of the cache key as its type, its length, a colon and its text.
+     */
+    private static void appendPart(StringBuilder key, char type, String text) {
+        if (text == null)
+            text = "";
+        key.append(type).append(text.length()).append(':').append(text);
+    }
+
+    /**
+     * @param query parameters of the query string, as returned by {@link #parseQueryString}.
+     * @return the dependency ids of the request, with query parameter names replaced by their values.
+     */
+    public Object[] getDependencyIds(Map<String, List<String>> query) {
+        List<Object> ids = new ArrayList<Object>(dependencyIds.length);
+        for (String id : dependencyIds) {
+            int start = id.indexOf('{');
+            if (start < 0) {
+                ids.add(id);
+                continue;
+            }
+            StringBuilder sb = new StringBuilder(id.length() + 16);
+            int from = 0;
+            boolean resolved = true;
+            while (start >= 0) {
+                int end = id.indexOf('}', start);
+                if (end < 0)
+                    break;
+                List<String> values = query.get(id.substring(start + 1, end));
+                if (values == null) {
+                    resolved = false;
+                    break;
+                }
+                sb.append(id, from, start).append(values.get(0));
+                from = end + 1;
+                start = id.indexOf('{', from);
+            }
+            if (resolved)
+                ids.add(sb.append(id, from, id.length()).toString());
+        }
+        return ids.toArray();
+    }
+
+    /**
+     * Parses the query string of a request. Names and values are decoded as UTF-8.
+     *
+     * @return the values of each parameter, in the order of the query string.
+     */
+    public static Map<String, List<String>> parseQueryString(String queryString) {
+        if (queryString == null || queryString.length() == 0)
+            return Collections.emptyMap();
+        Map<String, List<String>> query = new LinkedHashMap<String, List<String>>();
+        int from = 0;
+        while (from <= queryString.length()) {
+            int amp = queryString.indexOf('&', from);
+            if (amp < 0)
+                amp = queryString.length();
+            if (amp > from) {
+                int eq = queryString.indexOf('=', from);
+                String name, value;
+                if (eq < 0 || eq > amp) {
+                    name = decode(queryString.substring(from, amp));
+                    value = "";
+                } else {
+                    name = decode(queryString.substring(from, eq));
+                    value = decode(queryString.substring(eq + 1, amp));
+                }
+                List<String> values = query.get(name);
+                if (values == null)
+                    query.put(name, values = new ArrayList<String>(1));
+                values.add(value);
+            }
+            from = amp + 1;
+        }
+        return query;
+    }
+
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return s; // UTF-8 is always supported
+        } catch (IllegalArgumentException e) {
+            return s; // not a valid encoding, use the text as it is
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ResponseCacheRule[").append(index).append(" paths=");
+        append(sb, paths);
+        sb.append(" timeToLive=").append(timeToLive).append(" priority=").append(priority).append(" queryParameters=");
+        if (queryParameters == null)
+            sb.append("[]");
+        else if (queryParameters.length == 0)
+            sb.append(ALL);
+        else
+            append(sb, queryParameters);
+        sb.append(" headers=");
+        append(sb, headers);
+        sb.append(" cookies=");
+        append(sb, cookies);
+        sb.append(" dependencyIds=");
+        append(sb, dependencyIds);
+        return sb.append(" invalidateOn=").append(invalidateOn).append(" cacheAuthenticated=").append(cacheAuthenticated).append(']').toString();
+    }
+
+    private static void append(StringBuilder sb, String[] values) {
+        sb.append('[');
+        for (int i = 0; i < values.length; i++)
+            sb.append(i == 0 ? "" : ",").append(values[i]);
+        sb.append(']');
+    }
+}
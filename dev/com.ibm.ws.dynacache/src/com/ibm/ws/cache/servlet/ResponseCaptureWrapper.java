@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Passes a response through to the client while keeping a copy of the body, so
+ * that the response can be put in the response cache when the request completes.
+ * The body is not delayed; the copy is dropped if it exceeds the maximum entry size.
+ * <p>
+ * Cookies are recorded as they are added. The container keeps cookies that are
+ * added with addCookie apart from the other headers until the response is committed,
+ * so containsHeader("Set-Cookie") does not see them.
+ */
+class ResponseCaptureWrapper extends HttpServletResponseWrapper {
+
+    /**
+     * Headers that are not stored with a cached response. The content type and
+     * length are stored separately and the container writes the others itself.
+     */
+    private static final String[] SKIPPED_HEADERS = { "Content-Type", "Content-Length", "Date", "Transfer-Encoding", "Connection" };
+
+    private final Capture capture;
+
+    private ServletOutputStream stream;
+
+    private PrintWriter writer;
+
+    private Writer captureWriter;
+
+    /**
+     * True if the application added a cookie to the response.
+     */
+    private boolean setsCookie;
+
+    ResponseCaptureWrapper(HttpServletResponse response, int maxEntrySize) {
+        super(response);
+        capture = new Capture(maxEntrySize);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (stream == null)
+            stream = new CaptureOutputStream(super.getOutputStream(), capture);
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            PrintWriter out = super.getWriter();
+            // the container has fixed the character encoding when it returned the writer
+            captureWriter = new OutputStreamWriter(capture, getCharacterEncoding());
+            writer = new PrintWriter(new CaptureWriter(out, captureWriter));
+        }
+        return writer;
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        setsCookie = true;
+        super.addCookie(cookie);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (isCookieHeader(name))
+            setsCookie = true;
+        super.addHeader(name, value);
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (isCookieHeader(name))
+            setsCookie = true;
+        super.setHeader(name, value);
+    }
+
+    /**
+     * @return true if the application added a cookie to the response, either with
+     *         addCookie or as a Set-Cookie header.
+     */
+    boolean setsCookie() {
+        return setsCookie;
+    }
+
+    private static boolean isCookieHeader(String name) {
+        return "Set-Cookie".equalsIgnoreCase(name) || "Set-Cookie2".equalsIgnoreCase(name);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null)
+            writer.flush();
+        super.flushBuffer();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        discardCapture();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        discardCapture();
+    }
+
+    private void discardCapture() {
+        if (captureWriter != null) {
+            try {
+                captureWriter.flush(); // characters held by the encoder belong to the discarded body
+            } catch (IOException e) {
+                // writes to the capture buffer do not fail
+            }
+        }
+        capture.reset();
+    }
+
+    /**
+     * Builds the cached form of the response after the request has completed.
+     *
+     * @return the response, or null if its body exceeded the maximum entry size.
+     */
+    CachedResponse getCachedResponse() throws IOException {
+        if (captureWriter != null)
+            captureWriter.flush();
+        if (capture.overflow)
+            return null;
+
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        List<String> headers = new ArrayList<String>();
+        for (String name : response.getHeaderNames()) {
+            if (isSkipped(name))
+                continue;
+            Collection<String> values = response.getHeaders(name);
+            for (String value : values) {
+                headers.add(name);
+                headers.add(value);
+            }
+        }
+        return new CachedResponse(response.getStatus(), response.getContentType(), headers.toArray(new String[headers.size()]), capture.toByteArray());
+    }
+
+    private static boolean isSkipped(String name) {
+        for (String skipped : SKIPPED_HEADERS)
+            if (skipped.equalsIgnoreCase(name))
+                return true;
+        return false;
+    }
+
+    /**
+     * Copy of the body, up to the maximum entry size.
+     */
+    private static class Capture extends ByteArrayOutputStream {
+        private final int maxSize;
+
+        boolean overflow;
+
+        Capture(int maxSize) {
+            super(Math.min(maxSize, 8192));
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (!overflow && checkSize(1))
+                super.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (!overflow && checkSize(len))
+                super.write(b, off, len);
+        }
+
+        private boolean checkSize(int len) {
+            if (count + len > maxSize) {
+                overflow = true;
+                buf = new byte[0];
+                count = 0;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized void reset() {
+            if (!overflow)
+                super.reset();
+        }
+    }
+
+    private static class CaptureOutputStream extends ServletOutputStream {
+        private final ServletOutputStream out;
+
+        private final Capture capture;
+
+        CaptureOutputStream(ServletOutputStream out, Capture capture) {
+            this.out = out;
+            this.capture = capture;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            capture.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            capture.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static class CaptureWriter extends Writer {
+        private final Writer out;
+
+        private final Writer capture;
+
+        CaptureWriter(Writer out, Writer capture) {
+            this.out = out;
+            this.capture = capture;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            capture.write(c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            capture.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            capture.write(str, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            capture.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            capture.flush();
+        }
+    }
+}
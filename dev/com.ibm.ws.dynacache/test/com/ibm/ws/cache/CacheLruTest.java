@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.Test;
+
+import com.ibm.ws.cache.intf.DCache;
+import com.ibm.ws.cache.stat.CachePerf;
+
+/**
+ * Unit tests for the memory cache LRU, which check the entries that are evicted when the
+ * cache is full after cache hits, with different priorities, while entries are pinned,
+ * and with the TinyLFU admission policy.
+ */
+public class CacheLruTest {
+
+    private static final int CACHE_SIZE = 10;
+
+    private final Mockery mock = new Mockery() {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    private final BatchUpdateDaemon batchUpdateDaemon = mock.mock(BatchUpdateDaemon.class);
+
+    private Cache cache;
+
+    /**
+     * Creates a memory cache of CACHE_SIZE entries with the given admission policy.
+     */
+    private Cache createCache(String admissionPolicy) {
+        CacheConfig config = new CacheConfig();
+        config.cacheName = "testCache";
+        config.cacheSize = CACHE_SIZE;
+        config.admissionPolicy = admissionPolicy;
+        // an admission window of two entries
+        config.admissionWindowPercent = 20;
+        mock.checking(new Expectations() {
+            {
+                // the invalidation of an LRU victim is also sent to the other servers
+                allowing(batchUpdateDaemon).invalidateById(with(any(Object.class)), with(any(Integer.class)), with(any(Integer.class)),
+                                                           with(any(Boolean.class)), with(any(Boolean.class)), with(any(Boolean.class)),
+                                                           with(any(DCache.class)), with(any(Boolean.class)));
+            }
+        });
+        cache = new Cache(config.cacheName, config);
+        cache.setBatchUpdateDaemon(batchUpdateDaemon);
+        return cache;
+    }
+
+    @After
+    public void tearDown() {
+        mock.assertIsSatisfied();
+    }
+
+    private void put(String id) {
+        put(id, 1);
+    }
+
+    private void put(String id, int priority) {
+        EntryInfo entryInfo = new EntryInfo();
+        entryInfo.setId(id);
+        entryInfo.setPriority(priority);
+        cache.setValue(entryInfo, "value of " + id, false, DynaCacheConstants.VBC_CACHE_NEW_CONTENT);
+    }
+
+    private boolean hit(String id) {
+        return cache.getValue(id, null, false, false) != null;
+    }
+
+    private boolean contains(String id) {
+        return cache.getEntryFromMemory(id) != null;
+    }
+
+    /**
+     * @return ids that are no longer in the cache.
+     */
+    private List<String> evicted(int count) {
+        List<String> evicted = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            if (!contains("key" + i)) {
+                evicted.add("key" + i);
+            }
+        }
+        return evicted;
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        createCache(CacheConfig.ADMISSION_POLICY_LRU);
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            put("key" + i);
+        }
+        assertEquals(CACHE_SIZE, cache.getNumberCacheEntries());
+
+        put("key" + CACHE_SIZE);
+        assertEquals(CACHE_SIZE, cache.getNumberCacheEntries());
+        assertEquals("[key0]", evicted(CACHE_SIZE + 1).toString());
+
+        put("key" + (CACHE_SIZE + 1));
+        assertEquals("[key0, key1]", evicted(CACHE_SIZE + 2).toString());
+    }
+
+    @Test
+    public void testHitGivesSecondChance() {
+        createCache(CacheConfig.ADMISSION_POLICY_LRU);
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            put("key" + i);
+        }
+        // the oldest entries were used, so the next oldest entry is evicted
+        assertTrue(hit("key0"));
+        assertTrue(hit("key1"));
+        put("key" + CACHE_SIZE);
+        assertEquals("[key2]", evicted(CACHE_SIZE + 1).toString());
+
+        // the second chance is used up, so an entry that is not used again is evicted in turn
+        for (int i = CACHE_SIZE + 1; i < 2 * CACHE_SIZE; i++) {
+            put("key" + i);
+        }
+        assertFalse(contains("key0"));
+        assertFalse(contains("key1"));
+        assertTrue(contains("key" + CACHE_SIZE));
+    }
+
+    @Test
+    public void testHitOnEveryEntry() {
+        createCache(CacheConfig.ADMISSION_POLICY_LRU);
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            put("key" + i);
+        }
+        // when every entry was used, the moves are bounded and the oldest entry is still evicted
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            assertTrue(hit("key" + i));
+        }
+        put("key" + CACHE_SIZE);
+        assertEquals(CACHE_SIZE, cache.getNumberCacheEntries());
+        assertEquals("[key0]", evicted(CACHE_SIZE + 1).toString());
+    }
+
+    @Test
+    public void testHitIsNotCountedAsMiss() {
+        createCache(CacheConfig.ADMISSION_POLICY_LRU);
+        put("key");
+        assertTrue(hit("key"));
+        assertFalse(hit("missing"));
+        assertEquals(1, cache.getCacheStatisticsListener().getCacheHitsCount());
+        assertEquals(1, cache.getCacheStatisticsListener().getCacheMissesCount());
+    }
+
+    @Test
+    public void testHigherPriorityKeptLonger() {
+        createCache(CacheConfig.ADMISSION_POLICY_LRU);
+        put("key0", 3);
+        for (int i = 1; i < CACHE_SIZE; i++) {
+            put("key" + i);
+        }
+        put("key" + CACHE_SIZE);
+        assertEquals("[key1]", evicted(CACHE_SIZE + 1).toString());
+        assertTrue(contains("key0"));
+    }
+
+    @Test
+    public void testPinnedEntryNotEvicted() {
+        createCache(CacheConfig.ADMISSION_POLICY_LRU);
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            put("key" + i);
+        }
+        com.ibm.websphere.cache.CacheEntry pinned = cache.getEntry("key0", CachePerf.LOCAL, false, true);
+        assertNotNull(pinned);
+        put("key" + CACHE_SIZE);
+        assertTrue(contains("key0"));
+        assertEquals("[key1]", evicted(CACHE_SIZE + 1).toString());
+        pinned.finish();
+    }
+
+    @Test
+    public void testRefreshEntry() {
+        createCache(CacheConfig.ADMISSION_POLICY_LRU);
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            put("key" + i);
+        }
+        // a refreshed entry is treated as a cache hit
+        cache.getEntryFromMemory("key0").refreshEntry();
+        put("key" + CACHE_SIZE);
+        assertTrue(contains("key0"));
+        assertEquals("[key1]", evicted(CACHE_SIZE + 1).toString());
+    }
+
+    @Test
+    public void testConcurrentHitsAndPuts() throws Exception {
+        createCache(CacheConfig.ADMISSION_POLICY_LRU);
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            put("key" + i);
+        }
+        final CountDownLatch done = new CountDownLatch(4);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 5000; i++) {
+                            if (thread == 0) {
+                                put("put" + i);
+                            } else {
+                                Object value = cache.getValue("key" + (i % CACHE_SIZE), null, false, false);
+                                if (value != null) {
+                                    assertEquals("value of key" + (i % CACHE_SIZE), value);
+                                }
+                            }
+                        }
+                    } catch (Throwable x) {
+                        failure.compareAndSet(null, x);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertNull(failure.get());
+        // a put while every entry was pinned by a hit adds an overflow entry
+        assertTrue(cache.getNumberCacheEntries() >= CACHE_SIZE);
+        // the LRU holds every entry that is in the index
+        while (cache.getNumberCacheEntries() > 0) {
+            assertTrue(cache.freeLruEntry().success);
+        }
+        assertFalse(cache.freeLruEntry().success);
+    }
+
+    /**
+     * Fills a TinyLFU cache with key0 to key9 at priority 0. key0 to key7 are in the LRU,
+     * each set four times, and key8 and key9 are in the admission window.
+     */
+    private void fillTinyLfuCache() {
+        createCache(CacheConfig.ADMISSION_POLICY_TINYLFU);
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            put("key" + i, 0);
+        }
+        // setting a value again counts as a use and does not give the entry a second chance
+        for (int n = 0; n < 3; n++) {
+            for (int i = 0; i < CACHE_SIZE - 2; i++) {
+                put("key" + i, 0);
+            }
+        }
+    }
+
+    @Test
+    public void testTinyLfuRejectsLessFrequentEntry() {
+        fillTinyLfuCache();
+        // key8, the oldest entry in the window, was used less often than key0, the LRU victim
+        put("new", 0);
+        assertEquals(CACHE_SIZE, cache.getNumberCacheEntries());
+        assertEquals("[key8]", evicted(CACHE_SIZE).toString());
+        assertTrue(contains("new"));
+        assertEquals(1, cache.getCacheStatisticsListener().getAdmissionRejectionsCount());
+
+        // key9 is next
+        put("new2", 0);
+        assertEquals("[key8, key9]", evicted(CACHE_SIZE).toString());
+        assertEquals(2, cache.getCacheStatisticsListener().getAdmissionRejectionsCount());
+    }
+
+    @Test
+    public void testTinyLfuAdmitsMoreFrequentEntry() {
+        fillTinyLfuCache();
+        for (int n = 0; n < 5; n++) {
+            put("key8", 0);
+            put("key9", 0);
+        }
+        // key8 was used more often than key0, so it enters the LRU and key0 is evicted
+        put("new", 0);
+        assertEquals(CACHE_SIZE, cache.getNumberCacheEntries());
+        assertEquals("[key0]", evicted(CACHE_SIZE).toString());
+        assertTrue(contains("new"));
+        assertEquals(0, cache.getCacheStatisticsListener().getAdmissionRejectionsCount());
+
+        // key9 enters as well, in place of key1
+        put("new2", 0);
+        assertEquals("[key0, key1]", evicted(CACHE_SIZE).toString());
+        assertEquals(0, cache.getCacheStatisticsListener().getAdmissionRejectionsCount());
+    }
+
+    @Test
+    public void testTinyLfuTieRejectsCandidate() {
+        createCache(CacheConfig.ADMISSION_POLICY_TINYLFU);
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            put("key" + i, 0);
+        }
+        // every entry was used once, so the window entry does not replace the LRU victim
+        put("new", 0);
+        assertEquals("[key8]", evicted(CACHE_SIZE).toString());
+        assertEquals(1, cache.getCacheStatisticsListener().getAdmissionRejectionsCount());
+    }
+
+    @Test
+    public void testTinyLfuHitInWindow() {
+        fillTinyLfuCache();
+        // a hit gives key8 a second chance in the window, so key9 is the candidate instead
+        assertTrue(hit("key8"));
+        put("new", 0);
+        assertEquals("[key9]", evicted(CACHE_SIZE).toString());
+        assertTrue(contains("key8"));
+    }
+}
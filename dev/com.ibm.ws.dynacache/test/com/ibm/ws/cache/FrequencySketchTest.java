@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for FrequencySketch, which check the estimated frequencies, the aging of
+ * the counters, and increments from several threads.
+ */
+public class FrequencySketchTest {
+
+    /**
+     * Number of increments after which a sketch for 16 entries halves its counters.
+     */
+    private static final int SAMPLE_SIZE = 160;
+
+    private static void increment(FrequencySketch sketch, Object id, int times) {
+        for (int i = 0; i < times; i++) {
+            sketch.increment(id);
+        }
+    }
+
+    @Test
+    public void testFrequency() {
+        FrequencySketch sketch = new FrequencySketch(1000);
+        assertEquals(0, sketch.frequency("a"));
+        increment(sketch, "a", 1);
+        increment(sketch, "b", 5);
+        increment(sketch, "c", 12);
+        assertEquals(1, sketch.frequency("a"));
+        assertEquals(5, sketch.frequency("b"));
+        assertEquals(12, sketch.frequency("c"));
+        assertEquals(0, sketch.frequency("d"));
+
+        // the counters stop at 15
+        increment(sketch, "c", 10);
+        assertEquals(15, sketch.frequency("c"));
+    }
+
+    @Test
+    public void testNeverUnderestimates() {
+        // a small sketch for many ids, so counters are shared
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 100; i++) {
+            increment(sketch, Integer.valueOf(i), i % 3);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue("id " + i, sketch.frequency(Integer.valueOf(i)) >= i % 3);
+        }
+    }
+
+    @Test
+    public void testHalve() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        increment(sketch, "hot", 15);
+        increment(sketch, "warm", 6);
+        increment(sketch, "cold", 1);
+
+        // fewer increments than the sample size do not age the counters
+        int calls = 22;
+        for (; calls < SAMPLE_SIZE - 1; calls++) {
+            sketch.increment("other" + calls / 10);
+        }
+        assertEquals(15, sketch.frequency("hot"));
+        assertEquals(6, sketch.frequency("warm"));
+        assertEquals(1, sketch.frequency("cold"));
+
+        // increments of ids whose counters are at the maximum are not counted
+        for (int i = 0; sketch.frequency("hot") == 15; i++) {
+            assertTrue(i < SAMPLE_SIZE);
+            sketch.increment("more" + i / 10);
+        }
+        assertEquals(7, sketch.frequency("hot"));
+        assertEquals(3, sketch.frequency("warm"));
+        assertEquals(0, sketch.frequency("cold"));
+    }
+
+    @Test
+    public void testHalveAgain() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        increment(sketch, "hot", 15);
+        int i = 0;
+        for (; sketch.frequency("hot") == 15; i++) {
+            sketch.increment("other" + i / 10);
+        }
+        assertEquals(7, sketch.frequency("hot"));
+
+        // the addition count is halved with the counters, and the remainders that were dropped
+        // are subtracted, so the next halving takes at least half the sample size of increments
+        int start = i;
+        for (; sketch.frequency("hot") == 7; i++) {
+            sketch.increment("other" + i / 10);
+        }
+        assertEquals(3, sketch.frequency("hot"));
+        assertTrue(i - start >= SAMPLE_SIZE / 2);
+        assertTrue(i - start < SAMPLE_SIZE);
+    }
+
+    @Test
+    public void testConcurrentIncrements() throws Exception {
+        // the sample size is larger than the number of increments, so nothing is halved
+        final FrequencySketch sketch = new FrequencySketch(1000);
+        final int threads = 4;
+        final int ids = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int round = 0; round < 3; round++) {
+                            for (int i = 0; i < ids; i++) {
+                                sketch.increment("id" + i);
+                            }
+                        }
+                    } catch (Throwable x) {
+                        failure.compareAndSet(null, x);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertNull(failure.get());
+        // no increment is lost
+        for (int i = 0; i < ids; i++) {
+            assertTrue("id" + i, sketch.frequency("id" + i) >= 3 * threads);
+        }
+    }
+
+    @Test
+    public void testConcurrentIncrementsWhileHalving() throws Exception {
+        final FrequencySketch sketch = new FrequencySketch(16);
+        final int threads = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 20000; i++) {
+                            sketch.increment("t" + thread + "-" + (i % 1000));
+                            if (i % 10 == 0) {
+                                sketch.increment("hot");
+                            }
+                        }
+                    } catch (Throwable x) {
+                        failure.compareAndSet(null, x);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertNull(failure.get());
+
+        // the counters kept aging, so they did not all reach the maximum and new increments are counted
+        int before = sketch.frequency("new");
+        assertTrue(before < 15);
+        sketch.increment("new");
+        assertEquals(before + 1, sketch.frequency("new"));
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ibm.ws.cache.util.SerializationUtility;
+
+/**
+ * Unit tests for OffHeapValue, which check the value that is read back from the
+ * off-heap region, the release of its chunks, and its serialization.
+ */
+public class OffHeapValueTest {
+
+    private final SlabAllocator allocator = new SlabAllocator(1, "testCache");
+
+    private static ArrayList<String> value(int size) {
+        ArrayList<String> value = new ArrayList<String>();
+        for (int i = 0; i < size; i++) {
+            value.add("item " + i);
+        }
+        return value;
+    }
+
+    private OffHeapValue store(ArrayList<String> value) throws Exception {
+        return OffHeapValue.store(allocator, "testCache", SerializationUtility.serialize(value));
+    }
+
+    @Test
+    public void testGetValue() throws Exception {
+        ArrayList<String> value = value(5000);
+        byte[] serialized = SerializationUtility.serialize(value);
+        OffHeapValue offHeap = OffHeapValue.store(allocator, "testCache", serialized);
+        assertNotNull(offHeap);
+        assertEquals(SlabAllocator.allocationSize(serialized.length), offHeap.getCacheValueSize());
+        assertEquals(offHeap.getCacheValueSize(), allocator.getBytesInUse());
+
+        // each call returns a new copy of the value
+        Object copy = offHeap.getValue();
+        assertEquals(value, copy);
+        assertNotSame(copy, offHeap.getValue());
+        assertEquals(value, offHeap.getValue());
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        OffHeapValue offHeap = store(value(10));
+        OffHeapValue other = store(value(20));
+        offHeap.release();
+        assertNull(offHeap.getValue());
+        assertEquals(other.getCacheValueSize(), allocator.getBytesInUse());
+        // a second release does not free the chunks again
+        offHeap.release();
+        assertEquals(other.getCacheValueSize(), allocator.getBytesInUse());
+        // the value that was not released is not changed when the chunks are used again
+        OffHeapValue reused = store(value(10));
+        assertEquals(value(10), reused.getValue());
+        assertEquals(value(20), other.getValue());
+    }
+
+    @Test
+    public void testRegionFull() throws Exception {
+        List<OffHeapValue> values = new ArrayList<OffHeapValue>();
+        for (OffHeapValue offHeap = store(value(1000)); offHeap != null; offHeap = store(value(1000))) {
+            values.add(offHeap);
+        }
+        assertEquals(values.size() * values.get(0).getCacheValueSize(), allocator.getBytesInUse());
+        assertNull(store(value(1000)));
+
+        values.remove(0).release();
+        OffHeapValue offHeap = store(value(1000));
+        assertNotNull(offHeap);
+        assertEquals(value(1000), offHeap.getValue());
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+        OffHeapValue offHeap = store(value(10));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(offHeap);
+        out.close();
+
+        // the value is written in place of the handles
+        Object read = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(value(10), read);
+
+        offHeap.release();
+        try {
+            new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(offHeap);
+            fail("a released value was serialized");
+        } catch (InvalidObjectException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testToString() throws Exception {
+        byte[] serialized = SerializationUtility.serialize(value(1));
+        OffHeapValue offHeap = OffHeapValue.store(allocator, "testCache", serialized);
+        assertEquals("OffHeapValue[length=" + serialized.length + " size=128]", offHeap.toString());
+        offHeap.release();
+        assertEquals("OffHeapValue[length=" + serialized.length + " size=128 released]", offHeap.toString());
+    }
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for SlabAllocator, which check the chunks that are handed out for values
+ * of different sizes, how freed chunks and slabs are used again, and what happens when
+ * the region is full or the JVM is out of direct memory.
+ */
+public class SlabAllocatorTest {
+
+    private static final int CHUNKS_PER_SLAB = SlabAllocator.SLAB_SIZE / SlabAllocator.MAX_CHUNK_SIZE;
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + length);
+        }
+        return data;
+    }
+
+    /**
+     * Allocator whose direct memory runs out after the given number of slabs.
+     */
+    private static class LimitedAllocator extends SlabAllocator {
+        private final int available;
+        int attempts;
+
+        LimitedAllocator(int sizeInMB, int available) {
+            super(sizeInMB, "testCache");
+            this.available = available;
+        }
+
+        @Override
+        ByteBuffer allocateSlab() {
+            if (++attempts > available) {
+                throw new OutOfMemoryError("Direct buffer memory");
+            }
+            return super.allocateSlab();
+        }
+    }
+
+    @Test
+    public void testAllocationSize() {
+        assertEquals(64, SlabAllocator.allocationSize(1));
+        assertEquals(64, SlabAllocator.allocationSize(64));
+        assertEquals(128, SlabAllocator.allocationSize(65));
+        assertEquals(4096, SlabAllocator.allocationSize(3000));
+        assertEquals(SlabAllocator.MAX_CHUNK_SIZE, SlabAllocator.allocationSize(SlabAllocator.MAX_CHUNK_SIZE));
+        assertEquals(SlabAllocator.MAX_CHUNK_SIZE + 64, SlabAllocator.allocationSize(SlabAllocator.MAX_CHUNK_SIZE + 1));
+        assertEquals(3L * SlabAllocator.MAX_CHUNK_SIZE + 1024, SlabAllocator.allocationSize(3 * SlabAllocator.MAX_CHUNK_SIZE + 1000));
+    }
+
+    @Test
+    public void testWriteAndRead() {
+        SlabAllocator allocator = new SlabAllocator(8, "testCache");
+        int[] lengths = { 1, 63, 64, 65, 1000, SlabAllocator.MAX_CHUNK_SIZE, SlabAllocator.MAX_CHUNK_SIZE + 1, 200000 };
+        List<int[]> values = new ArrayList<int[]>();
+        long inUse = 0;
+        for (int length : lengths) {
+            int[] handles = allocator.allocate(length);
+            assertNotNull("length " + length, handles);
+            allocator.write(handles, data(length));
+            values.add(handles);
+            inUse += SlabAllocator.allocationSize(length);
+        }
+        assertEquals(inUse, allocator.getBytesInUse());
+        // every value is read back after all of them have been written
+        for (int i = 0; i < lengths.length; i++) {
+            assertArrayEquals("length " + lengths[i], data(lengths[i]), allocator.read(values.get(i), lengths[i]));
+        }
+        // a value larger than the largest class is stored in several chunks
+        assertEquals(4, values.get(lengths.length - 1).length);
+    }
+
+    @Test
+    public void testSlabsAllocatedOnFirstUse() {
+        SlabAllocator allocator = new SlabAllocator(4, "testCache");
+        assertEquals(4L * SlabAllocator.SLAB_SIZE, allocator.getCapacity());
+        assertEquals(0, allocator.getBytesAllocated());
+
+        allocator.allocate(100);
+        assertEquals(SlabAllocator.SLAB_SIZE, allocator.getBytesAllocated());
+        // a chunk of another class needs a slab of its own
+        allocator.allocate(1000);
+        assertEquals(2L * SlabAllocator.SLAB_SIZE, allocator.getBytesAllocated());
+        // a chunk of the same class shares the slab
+        allocator.allocate(100);
+        assertEquals(2L * SlabAllocator.SLAB_SIZE, allocator.getBytesAllocated());
+    }
+
+    @Test
+    public void testFreeAndReuse() {
+        SlabAllocator allocator = new SlabAllocator(1, "testCache");
+        int[] a = allocator.allocate(100);
+        int[] b = allocator.allocate(100);
+        int[] c = allocator.allocate(100);
+        assertEquals(3 * 128, allocator.getBytesInUse());
+
+        allocator.free(b);
+        assertEquals(2 * 128, allocator.getBytesInUse());
+        // the chunk that was freed last is used first
+        int[] d = allocator.allocate(120);
+        assertArrayEquals(b, d);
+
+        // the values in the other chunks are not changed by a free or a reuse
+        allocator.write(a, data(100));
+        allocator.write(c, data(90));
+        allocator.free(d);
+        allocator.write(allocator.allocate(128), data(128));
+        assertArrayEquals(data(100), allocator.read(a, 100));
+        assertArrayEquals(data(90), allocator.read(c, 90));
+    }
+
+    @Test
+    public void testFreeSlabUsedForAnotherClass() {
+        SlabAllocator allocator = new SlabAllocator(1, "testCache");
+        List<int[]> small = new ArrayList<int[]>();
+        for (int i = 0; i < SlabAllocator.SLAB_SIZE / 64; i++) {
+            small.add(allocator.allocate(64));
+        }
+        assertEquals(SlabAllocator.SLAB_SIZE, allocator.getBytesInUse());
+        assertNull(allocator.allocate(64));
+        assertNull(allocator.allocate(SlabAllocator.MAX_CHUNK_SIZE));
+
+        // freeing one chunk makes room in the slab for its own class only
+        allocator.free(small.remove(0));
+        assertNull(allocator.allocate(SlabAllocator.MAX_CHUNK_SIZE));
+        small.add(allocator.allocate(64));
+
+        for (int[] handles : small) {
+            allocator.free(handles);
+        }
+        assertEquals(0, allocator.getBytesInUse());
+        for (int i = 0; i < CHUNKS_PER_SLAB; i++) {
+            assertNotNull(allocator.allocate(SlabAllocator.MAX_CHUNK_SIZE));
+        }
+        assertEquals(SlabAllocator.SLAB_SIZE, allocator.getBytesAllocated());
+    }
+
+    @Test
+    public void testOutOfCapacity() {
+        SlabAllocator allocator = new SlabAllocator(1, "testCache");
+        for (int i = 0; i < CHUNKS_PER_SLAB - 1; i++) {
+            assertNotNull(allocator.allocate(SlabAllocator.MAX_CHUNK_SIZE));
+        }
+        // only one chunk is free, so a value of two chunks does not fit and keeps nothing
+        assertNull(allocator.allocate(2 * SlabAllocator.MAX_CHUNK_SIZE));
+        assertEquals(SlabAllocator.SLAB_SIZE - SlabAllocator.MAX_CHUNK_SIZE, allocator.getBytesInUse());
+
+        int[] last = allocator.allocate(SlabAllocator.MAX_CHUNK_SIZE);
+        assertNotNull(last);
+        assertNull(allocator.allocate(1));
+        assertEquals(SlabAllocator.SLAB_SIZE, allocator.getBytesInUse());
+
+        allocator.free(last);
+        assertNotNull(allocator.allocate(SlabAllocator.MAX_CHUNK_SIZE));
+    }
+
+    @Test
+    public void testOutOfDirectMemory() {
+        LimitedAllocator allocator = new LimitedAllocator(4, 1);
+        List<int[]> values = new ArrayList<int[]>();
+        for (int i = 0; i < CHUNKS_PER_SLAB; i++) {
+            values.add(allocator.allocate(SlabAllocator.MAX_CHUNK_SIZE));
+        }
+        assertEquals(1, allocator.attempts);
+
+        // the second slab cannot be allocated, so the region is full at one slab
+        assertNull(allocator.allocate(100));
+        assertEquals(2, allocator.attempts);
+        assertEquals(SlabAllocator.SLAB_SIZE, allocator.getCapacity());
+        assertEquals(SlabAllocator.SLAB_SIZE, allocator.getBytesAllocated());
+        assertEquals(SlabAllocator.SLAB_SIZE, allocator.getBytesInUse());
+
+        // the allocation is not tried again
+        assertNull(allocator.allocate(100));
+        assertEquals(2, allocator.attempts);
+
+        // the slab that was allocated is used again once its chunks are freed
+        for (int[] handles : values) {
+            allocator.free(handles);
+        }
+        int[] handles = allocator.allocate(100);
+        assertNotNull(handles);
+        allocator.write(handles, data(100));
+        assertArrayEquals(data(100), allocator.read(handles, 100));
+        assertEquals(2, allocator.attempts);
+    }
+
+    @Test
+    public void testOutOfDirectMemoryOnFirstSlab() {
+        LimitedAllocator allocator = new LimitedAllocator(2, 0);
+        assertNull(allocator.allocate(100));
+        assertEquals(0, allocator.getCapacity());
+        assertEquals(0, allocator.getBytesAllocated());
+        assertNull(allocator.allocate(100));
+        assertEquals(1, allocator.attempts);
+    }
+}
@@ -0,0 +1,522 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache.persistent.htod;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.api.Invokable;
+import org.jmock.lib.action.CustomAction;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.ws.cache.HTODDynacache;
+import com.ibm.ws.cache.Scheduler;
+
+/**
+ * Unit tests for SegmentedHashtableOnDisk, which check the entries that are
+ * read back after writes, removes, reopening the store, filling the index,
+ * compacting segments, and writes and reads from several threads.
+ */
+public class SegmentedHashtableOnDiskTest {
+
+    /**
+     * Segment size for the tests that compact segments, which holds about 40 entries.
+     */
+    private static final long SMALL_SEGMENT_SIZE = 4096;
+
+    private final Mockery mock = new Mockery() {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    private final HTODDynacache htoddc = mock.mock(HTODDynacache.class);
+
+    private File dir;
+    private String filename;
+    private SegmentedHashtableOnDisk store;
+
+    @Before
+    public void setUp() throws Exception {
+        mock.checking(new Expectations() {
+            {
+                allowing(htoddc).getFromHashtableEntryPool();
+                will(new CustomAction("new HashtableEntry") {
+                    @Override
+                    public Object invoke(Invocation invocation) {
+                        return new HashtableEntry();
+                    }
+                });
+            }
+        });
+        dir = File.createTempFile("SegmentedHashtableOnDiskTest", "");
+        dir.delete();
+        assertTrue(dir.mkdir());
+        filename = new File(dir, "object").getPath();
+        store = new SegmentedHashtableOnDisk(filename, 100, htoddc);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private static byte[] cacheValue(String s) {
+        return ("value of " + s).getBytes();
+    }
+
+    private HashtableEntry put(String key, long expiration) throws Exception {
+        return store.put(key, "entry " + key, 0, expiration, -1, null, cacheValue(key), key.hashCode(), false);
+    }
+
+    private HashtableEntry put(String key) throws Exception {
+        return put(key, -1);
+    }
+
+    private HashtableEntry put(String key, String value) throws Exception {
+        return store.put(key, value, 0, -1, -1, null, cacheValue(key), key.hashCode(), false);
+    }
+
+    /**
+     * @return the number of segment files of the store.
+     */
+    private int segmentFiles(String name) {
+        int n = 0;
+        for (File f : dir.listFiles()) {
+            if (f.getPath().startsWith(name + ".") && f.getName().endsWith(SegmentedHashtableOnDisk.SEGMENT_SUFFIX)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private File segmentFile(String name, int id) {
+        return new File(name + "." + id + SegmentedHashtableOnDisk.SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Puts 300 entries in a store with small segments, and removes two of every three
+     * so that each full segment is mostly garbage.
+     */
+    private void fillAndRemove(String name) throws Exception {
+        store.close();
+        store = new SegmentedHashtableOnDisk(name, 100, htoddc, 1 << 20, SMALL_SEGMENT_SIZE);
+        for (int i = 0; i < 300; i++) {
+            put("key" + i);
+        }
+        assertTrue(segmentFiles(name) > 5);
+        for (int i = 0; i < 300; i++) {
+            if (i % 3 != 0) {
+                assertTrue(store.remove("key" + i));
+            }
+        }
+        assertEquals(100, store.size());
+    }
+
+    private void assertRemainingEntries() throws Exception {
+        for (int i = 0; i < 300; i++) {
+            if (i % 3 == 0) {
+                assertEntry("key" + i);
+            } else {
+                assertFalse(store.containsKey("key" + i));
+            }
+        }
+    }
+
+    /**
+     * Runs background tasks of the stores on an executor while the test runs.
+     */
+    private static class TestScheduler extends Scheduler {
+        private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        TestScheduler() {
+            setExecutorService(executor);
+            activate();
+        }
+
+        void shutdown() throws InterruptedException {
+            deactivate();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        }
+    }
+
+    private void assertEntry(String key) throws Exception {
+        HashtableEntry e = store.getHashTableEntry(key, false);
+        assertNotNull(key, e);
+        assertEquals(key, e.getKey());
+        assertEquals("entry " + key, e.getValue());
+        assertArrayEquals(cacheValue(key), e.serializedCacheValue);
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            assertNull(put("key" + i));
+        }
+        assertEquals(1000, store.size());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(store.containsKey("key" + i));
+            assertEntry("key" + i);
+        }
+        assertFalse(store.containsKey("missing"));
+        assertNull(store.getHashTableEntry("missing", false));
+        assertFalse(store.containsKey(null));
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+        assertNull(put("key", 1000));
+        HashtableEntry old = store.getHashTableEntry("key", false);
+
+        // the old entry is returned so that it can be removed from the eviction table
+        HashtableEntry replaced = store.put("key", "new entry", 0, 2000, -1, null, cacheValue("new"), 1, false);
+        assertNotNull(replaced);
+        assertEquals("key", replaced.getKey());
+        assertEquals(old.size, replaced.size);
+        assertEquals(1000, replaced.expirationTime());
+        assertEquals(1, store.size());
+
+        HashtableEntry e = store.getHashTableEntry("key", false);
+        assertEquals("new entry", e.getValue());
+        assertEquals(2000, e.expirationTime());
+        assertArrayEquals(cacheValue("new"), e.serializedCacheValue);
+        // the time the entry was first created is kept
+        assertEquals(old.firstCreated(), e.firstCreated());
+
+        // there is no new value, so the entry is not changed
+        assertNull(store.put("key", null, 0, 3000, -1, null, null, 0, false));
+        assertEquals("new entry", store.getHashTableEntry("key", false).getValue());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            put("key" + i);
+        }
+        assertTrue(store.remove("key7"));
+        assertFalse(store.remove("key7"));
+        assertFalse(store.containsKey("key7"));
+
+        HashtableEntry e = store.getAndRemove("key8", true);
+        assertEquals("entry key8", e.getValue());
+        assertArrayEquals(cacheValue("key8"), e.serializedCacheValue);
+        assertNull(store.getAndRemove("key8", true));
+        assertEquals(98, store.size());
+
+        // removed slots are used again
+        assertNull(put("key7"));
+        assertEntry("key7");
+        assertEquals(99, store.size());
+    }
+
+    @Test
+    public void testExpiredEntry() throws Exception {
+        put("expired", System.currentTimeMillis() - 1000);
+        HashtableEntry e = store.getHashTableEntry("expired", true);
+        assertEquals("expired", e.getKey());
+        assertNull(e.getValue());
+        assertEquals("entry expired", store.getHashTableEntry("expired", false).getValue());
+    }
+
+    @Test
+    public void testUpdateExpiration() throws Exception {
+        put("key", 5000);
+        assertTrue(store.updateExpirationInHeader("key", 5000, 4000));
+        assertFalse(store.updateExpirationInHeader("missing", 5000, 4000));
+        // only the validator expiration time is updated
+        HashtableEntry e = store.getHashTableEntry("key", false);
+        assertEquals(5000, e.expirationTime());
+        assertEquals(4000, e.validatorExpirationTime());
+    }
+
+    @Test
+    public void testIterateKeys() throws Exception {
+        Set<Object> expected = new HashSet<Object>();
+        for (int i = 0; i < 500; i++) {
+            put("key" + i);
+            expected.add("key" + i);
+        }
+        final Set<Object> keys = new HashSet<Object>();
+        HashtableAction action = new HashtableAction() {
+            @Override
+            public boolean execute(HashtableEntry entry) {
+                assertTrue(keys.add(entry.getKey()));
+                return true;
+            }
+        };
+        // in ranges of 50 entries
+        int index = 0;
+        int ranges = 0;
+        do {
+            index = store.iterateKeys(action, index, 50);
+            ranges++;
+        } while (keys.size() < expected.size());
+        assertEquals(expected, keys);
+        assertEquals(10, ranges);
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            put("key" + i);
+        }
+        store.remove("key3");
+        store.close();
+
+        store = new SegmentedHashtableOnDisk(filename, 100, htoddc);
+        assertEquals(999, store.size());
+        assertFalse(store.containsKey("key3"));
+        for (int i = 4; i < 1000; i++) {
+            assertEntry("key" + i);
+        }
+    }
+
+    @Test
+    public void testReopenNotClosedCleanly() throws Exception {
+        put("key");
+        store.close();
+
+        // clear the clean flag, as if the server had stopped without closing the store
+        RandomAccessFile index = new RandomAccessFile(filename + SegmentedHashtableOnDisk.INDEX_SUFFIX, "rw");
+        try {
+            index.seek(12);
+            assertEquals(1, index.readInt());
+            index.seek(12);
+            index.writeInt(0);
+        } finally {
+            index.close();
+        }
+
+        store = new SegmentedHashtableOnDisk(filename, 100, htoddc);
+        assertEquals(0, store.size());
+        assertFalse(store.containsKey("key"));
+        assertNull(put("key"));
+        assertEntry("key");
+    }
+
+    @Test
+    public void testIndexFull() throws Exception {
+        store.close();
+        // 32 stripes of at most 64 slots, each of which holds 48 entries
+        store = new SegmentedHashtableOnDisk(filename + "full", 100, htoddc, 64, SMALL_SEGMENT_SIZE);
+        int i = 0;
+        try {
+            for (; i < 32 * 64; i++) {
+                put("key" + i);
+            }
+            fail("the index is not full after " + i + " entries");
+        } catch (IOException ex) {
+            assertEquals(HTODDynacache.DISK_CACHE_INDEX_FULL_MSG, ex.getMessage());
+        }
+        assertEquals(i, store.size());
+        assertTrue(i <= 32 * 48);
+        assertFalse(store.containsKey("key" + i));
+
+        // entries that are in the index can be replaced and read
+        assertNotNull(put("key0"));
+        for (int j = 0; j < i; j++) {
+            assertEntry("key" + j);
+        }
+
+        // removing an entry makes room for a new one
+        assertTrue(store.remove("key0"));
+        String key = "key" + i;
+        for (int j = i + 1; key != null; j++) {
+            try {
+                put(key);
+                assertEntry(key);
+                key = null;
+            } catch (IOException ex) {
+                // in a different stripe than key0
+                key = "key" + j;
+            }
+        }
+        assertEquals(i, store.size());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        String name = filename + "compact";
+        fillAndRemove(name);
+        int before = segmentFiles(name);
+
+        // without a scheduler nothing runs in the background
+        assertTrue(segmentFile(name, 1).exists());
+        store.compactSegments();
+        assertFalse(segmentFile(name, 1).exists());
+        assertTrue(segmentFiles(name) < before);
+        assertEquals(100, store.size());
+        assertRemainingEntries();
+
+        // the records that were copied are found after the store is reopened
+        store.close();
+        store = new SegmentedHashtableOnDisk(name, 100, htoddc, 1 << 20, SMALL_SEGMENT_SIZE);
+        assertEquals(100, store.size());
+        assertRemainingEntries();
+        assertNull(put("key1"));
+        assertEntry("key1");
+    }
+
+    @Test
+    public void testBackgroundCompaction() throws Exception {
+        String name = filename + "background";
+        TestScheduler scheduler = new TestScheduler();
+        try {
+            fillAndRemove(name);
+            // the removes schedule a compaction once a segment is half garbage
+            for (int i = 0; segmentFile(name, 1).exists(); i++) {
+                assertTrue("segment 1 was not compacted", i < 600);
+                Thread.sleep(100);
+            }
+            assertRemainingEntries();
+        } finally {
+            scheduler.shutdown();
+        }
+        assertEquals(100, store.size());
+        assertRemainingEntries();
+        // a replaced entry is read from its new record
+        assertNotNull(put("key0", "new entry"));
+        assertEquals("new entry", store.getHashTableEntry("key0", false).getValue());
+    }
+
+    @Test
+    public void testConcurrentPutAndGet() throws Exception {
+        // the mockery is not safe to use from several threads, so the imposter is invoked directly
+        HTODDynacache dynacache = ClassImposteriser.INSTANCE.imposterise(new Invokable() {
+            @Override
+            public Object invoke(Invocation invocation) {
+                return "getFromHashtableEntryPool".equals(invocation.getInvokedMethod().getName()) ? new HashtableEntry() : null;
+            }
+        }, HTODDynacache.class);
+        store.close();
+        store = new SegmentedHashtableOnDisk(filename + "concurrent", 100, dynacache, 1 << 20, SMALL_SEGMENT_SIZE);
+        for (int i = 0; i < 50; i++) {
+            put("shared" + i);
+        }
+
+        final int writers = 4;
+        final int keys = 500;
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        TestScheduler scheduler = new TestScheduler();
+        try {
+            for (int t = 0; t < writers; t++) {
+                final String prefix = "t" + t + "-";
+                threads.add(new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int i = 0; i < keys; i++) {
+                                String key = prefix + i;
+                                assertNull(put(key));
+                                assertEntry(key);
+                                if (i % 3 == 0) {
+                                    assertNotNull(put(key, "replaced " + key));
+                                }
+                                if (i % 2 == 0) {
+                                    assertTrue(store.remove(key));
+                                }
+                                // the segments become more than half garbage and are compacted while the threads run;
+                                // an earlier key, whose stripe may have been resized or whose segment compacted since
+                                String earlier = prefix + (i / 2);
+                                assertEquals((i / 2) % 2 != 0, store.containsKey(earlier));
+                            }
+                        } catch (Throwable x) {
+                            failure.compareAndSet(null, x);
+                        }
+                    }
+                });
+            }
+            for (int r = 0; r < 2; r++) {
+                threads.add(new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int i = 0; writing.get(); i++) {
+                                assertEntry("shared" + (i % 50));
+                            }
+                        } catch (Throwable x) {
+                            failure.compareAndSet(null, x);
+                        }
+                    }
+                });
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            start.countDown();
+            for (int t = 0; t < writers; t++) {
+                threads.get(t).join(60000);
+                assertFalse(threads.get(t).isAlive());
+            }
+            writing.set(false);
+            for (Thread thread : threads) {
+                thread.join(60000);
+            }
+        } finally {
+            writing.set(false);
+            scheduler.shutdown();
+        }
+        assertNull(failure.get());
+
+        assertEquals(50 + writers * (keys - keys / 2), store.size());
+        for (int t = 0; t < writers; t++) {
+            for (int i = 0; i < keys; i++) {
+                String key = "t" + t + "-" + i;
+                HashtableEntry e = store.getHashTableEntry(key, false);
+                if (i % 2 == 0) {
+                    assertNull(key, e);
+                } else {
+                    assertNotNull(key, e);
+                    assertEquals(i % 3 == 0 ? "replaced " + key : "entry " + key, e.getValue());
+                    assertArrayEquals(cacheValue(key), e.serializedCacheValue);
+                }
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            assertEntry("shared" + i);
+        }
+    }
+}
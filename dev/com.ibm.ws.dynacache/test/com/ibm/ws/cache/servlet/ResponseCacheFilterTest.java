@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Test;
+
+import com.ibm.websphere.cache.DistributedMap;
+import com.ibm.websphere.cache.EntryInfo;
+
+/**
+ * Unit tests for the response cache filter, with a mock DistributedMap.
+ */
+public class ResponseCacheFilterTest {
+
+    private static final String KEY = "H21:http://localhost:9080U14:/app/api/itemsQ6:page=2";
+
+    private final Mockery mock = new JUnit4Mockery();
+
+    private final DistributedMap map = mock.mock(DistributedMap.class);
+
+    private final ResponseCacheFilter filter;
+
+    /**
+     * Body written to the client.
+     */
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    /**
+     * Value that the filter put in the map.
+     */
+    private CachedResponse cached;
+
+    private boolean chainInvoked;
+
+    public ResponseCacheFilterTest() {
+        Properties props = new Properties();
+        props.setProperty("rule.0.paths", "/api/*");
+        filter = new ResponseCacheFilter(ResponseCacheConfig.fromProperties(props, "test"), map);
+    }
+
+    private HttpServletRequest request(final HttpSession session) {
+        final HttpServletRequest request = mock.mock(HttpServletRequest.class);
+        mock.checking(new Expectations() {
+            {
+                allowing(request).getMethod();
+                will(returnValue("GET"));
+                allowing(request).getServletPath();
+                will(returnValue("/api"));
+                allowing(request).getPathInfo();
+                will(returnValue("/items"));
+                allowing(request).getScheme();
+                will(returnValue("http"));
+                allowing(request).getServerName();
+                will(returnValue("localhost"));
+                allowing(request).getServerPort();
+                will(returnValue(9080));
+                allowing(request).getRequestURI();
+                will(returnValue("/app/api/items"));
+                allowing(request).getQueryString();
+                will(returnValue("page=2"));
+                allowing(request).getHeader("Authorization");
+                will(returnValue(null));
+                allowing(request).getUserPrincipal();
+                will(returnValue(null));
+                allowing(request).isAsyncStarted();
+                will(returnValue(false));
+                allowing(request).getSession(false);
+                will(returnValue(session));
+            }
+        });
+        return request;
+    }
+
+    private HttpServletResponse response() throws IOException {
+        HttpServletResponse response = mock.mock(HttpServletResponse.class);
+        allowResponse(response);
+        return response;
+    }
+
+    /**
+     * Allows the calls that the filter and the application make on a response. The
+     * calls that a cache hit makes must be expected before this is called.
+     */
+    private void allowResponse(final HttpServletResponse response) throws IOException {
+        final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+        };
+        mock.checking(new Expectations() {
+            {
+                allowing(response).isCommitted();
+                will(returnValue(false));
+                allowing(response).getOutputStream();
+                will(returnValue(out));
+                allowing(response).getStatus();
+                will(returnValue(HttpServletResponse.SC_OK));
+                allowing(response).getContentType();
+                will(returnValue("text/plain"));
+                allowing(response).containsHeader(with(any(String.class)));
+                will(returnValue(false));
+                allowing(response).getHeaderNames();
+                will(returnValue(Arrays.asList("X-Test")));
+                allowing(response).getHeaders("X-Test");
+                will(returnValue(Arrays.asList("1")));
+                allowing(response).getHeaders(with(any(String.class)));
+                will(returnValue(Collections.emptyList()));
+                allowing(response).addHeader("X-Test", "1");
+                allowing(response).addCookie(with(any(Cookie.class)));
+                allowing(response).setHeader(with(any(String.class)), with(any(String.class)));
+            }
+        });
+    }
+
+    private void expectMiss() {
+        mock.checking(new Expectations() {
+            {
+                oneOf(map).get(KEY);
+                will(returnValue(null));
+            }
+        });
+    }
+
+    private void expectPut() {
+        mock.checking(new Expectations() {
+            {
+                oneOf(map).put(with(equal(KEY)), with(any(CachedResponse.class)), with(equal(ResponseCacheConfig.DEFAULT_PRIORITY)),
+                               with(equal(ResponseCacheConfig.DEFAULT_TIME_TO_LIVE)), with(equal(EntryInfo.NOT_SHARED)), with(any(Object[].class)));
+                will(new CustomAction("save the cached response") {
+                    @Override
+                    public Object invoke(Invocation invocation) {
+                        cached = (CachedResponse) invocation.getParameter(1);
+                        return null;
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Application that writes a header and a body, and optionally a cookie.
+     */
+    private FilterChain application(final String cookieHeader, final Cookie cookie) {
+        return new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse res) throws IOException, ServletException {
+                chainInvoked = true;
+                HttpServletResponse response = (HttpServletResponse) res;
+                response.addHeader("X-Test", "1");
+                if (cookieHeader != null)
+                    response.setHeader(cookieHeader, "a=b");
+                if (cookie != null)
+                    response.addCookie(cookie);
+                response.getOutputStream().write("hello".getBytes("UTF-8"));
+            }
+        };
+    }
+
+    @Test
+    public void testMissIsCached() throws Exception {
+        expectMiss();
+        expectPut();
+        filter.doFilter(request(null), response(), application(null, null));
+
+        assertTrue(chainInvoked);
+        assertEquals("hello", body.toString("UTF-8"));
+        assertNotNull(cached);
+        assertEquals(HttpServletResponse.SC_OK, cached.getStatus());
+        assertEquals("text/plain", cached.getContentType());
+        assertEquals(5, cached.getContentLength());
+    }
+
+    @Test
+    public void testHitIsReplayed() throws Exception {
+        final CachedResponse value = new CachedResponse(HttpServletResponse.SC_OK, "text/plain", new String[] { "X-Test", "1" }, "hello".getBytes("UTF-8"));
+        final HttpServletResponse response = mock.mock(HttpServletResponse.class);
+        mock.checking(new Expectations() {
+            {
+                oneOf(map).get(KEY);
+                will(returnValue(value));
+                oneOf(response).setStatus(HttpServletResponse.SC_OK);
+                oneOf(response).addHeader("X-Test", "1");
+                oneOf(response).setContentType("text/plain");
+                oneOf(response).setContentLength(5);
+            }
+        });
+        allowResponse(response);
+        filter.doFilter(request(null), response, application(null, null));
+
+        assertFalse(chainInvoked);
+        assertEquals("hello", body.toString("UTF-8"));
+    }
+
+    @Test
+    public void testAddCookieIsNotCached() throws Exception {
+        expectMiss(); // no put is expected
+        filter.doFilter(request(null), response(), application(null, new Cookie("region", "eu")));
+
+        assertTrue(chainInvoked);
+        assertEquals("hello", body.toString("UTF-8"));
+    }
+
+    @Test
+    public void testSetCookieHeaderIsNotCached() throws Exception {
+        expectMiss(); // no put is expected
+        filter.doFilter(request(null), response(), application("set-cookie", null));
+
+        assertTrue(chainInvoked);
+    }
+
+    @Test
+    public void testNewSessionIsNotCached() throws Exception {
+        final HttpSession session = mock.mock(HttpSession.class);
+        mock.checking(new Expectations() {
+            {
+                allowing(session).isNew();
+                will(returnValue(true));
+            }
+        });
+        expectMiss(); // no put is expected
+        filter.doFilter(request(session), response(), application(null, null));
+
+        assertTrue(chainInvoked);
+    }
+
+    @Test
+    public void testExistingSessionIsCached() throws Exception {
+        final HttpSession session = mock.mock(HttpSession.class);
+        mock.checking(new Expectations() {
+            {
+                allowing(session).isNew();
+                will(returnValue(false));
+            }
+        });
+        expectMiss();
+        expectPut();
+        filter.doFilter(request(session), response(), application(null, null));
+
+        assertNotNull(cached);
+    }
+
+    @Test
+    public void testVaryNotInKeyIsNotCached() throws Exception {
+        final HttpServletResponse response = mock.mock(HttpServletResponse.class);
+        mock.checking(new Expectations() {
+            {
+                allowing(response).getHeaders("Vary");
+                will(returnValue(Arrays.asList("Accept-Language")));
+            }
+        });
+        allowResponse(response);
+        expectMiss(); // no put is expected
+        filter.doFilter(request(null), response, application(null, null));
+
+        assertTrue(chainInvoked);
+        assertEquals("hello", body.toString("UTF-8"));
+    }
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.cache.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+
+/**
+ * Unit tests for the path matching, cache keys and dependency ids of response cache rules.
+ */
+public class ResponseCacheRuleTest {
+
+    private final Mockery mock = new JUnit4Mockery();
+
+    /**
+     * Key parts for the scheme, host and port, and the request URI.
+     */
+    private static final String PREFIX = "H21:http://localhost:9080U14:/app/api/items";
+
+    private int requests;
+
+    private static ResponseCacheRule rule(String... properties) {
+        Properties props = new Properties();
+        props.setProperty("rule.0.paths", "/api/*");
+        for (int i = 0; i < properties.length; i += 2)
+            props.setProperty("rule.0." + properties[i], properties[i + 1]);
+        return ResponseCacheConfig.fromProperties(props, "test").getRules().get(0);
+    }
+
+    private HttpServletRequest request(final String queryString) {
+        return request("localhost", queryString);
+    }
+
+    private HttpServletRequest request(final String host, final String queryString) {
+        final HttpServletRequest request = mock.mock(HttpServletRequest.class, "request" + requests++);
+        mock.checking(new Expectations() {
+            {
+                allowing(request).getScheme();
+                will(returnValue("http"));
+                allowing(request).getServerName();
+                will(returnValue(host));
+                allowing(request).getServerPort();
+                will(returnValue(9080));
+                allowing(request).getRequestURI();
+                will(returnValue("/app/api/items"));
+                allowing(request).getQueryString();
+                will(returnValue(queryString));
+            }
+        });
+        return request;
+    }
+
+    private static String key(ResponseCacheRule rule, HttpServletRequest request) {
+        return rule.getCacheKey(request, ResponseCacheRule.parseQueryString(request.getQueryString()));
+    }
+
+    @Test
+    public void testMatches() {
+        Properties props = new Properties();
+        props.setProperty("rule.0.paths", "/api/*, *.json");
+        props.setProperty("rule.1.paths", "/index.html");
+        ResponseCacheConfig config = ResponseCacheConfig.fromProperties(props, "test");
+
+        assertEquals(0, config.getRule("/api").getIndex());
+        assertEquals(0, config.getRule("/api/items").getIndex());
+        assertEquals(0, config.getRule("/data/items.json").getIndex());
+        assertEquals(1, config.getRule("/index.html").getIndex());
+        assertNull(config.getRule("/apiary"));
+        assertNull(config.getRule("/index.htm"));
+    }
+
+    @Test
+    public void testNoRules() {
+        Properties props = new Properties();
+        props.setProperty("rule.1.paths", "/api/*"); // rules start at 0
+        assertNull(ResponseCacheConfig.fromProperties(props, "test"));
+    }
+
+    @Test
+    public void testKeyIncludesQueryStringByDefault() {
+        ResponseCacheRule rule = rule();
+        assertEquals(PREFIX + "Q14:page=2&size=10", key(rule, request("page=2&size=10")));
+        assertEquals(PREFIX, key(rule, request(null)));
+    }
+
+    @Test
+    public void testKeyWithSelectedQueryParameters() {
+        ResponseCacheRule rule = rule("queryParameters", "size, page");
+        assertEquals(PREFIX + "q4:size=2:10q4:page=1:2", key(rule, request("page=2&tracking=abc&size=10")));
+        assertEquals(PREFIX + "q4:page=3:a bq4:page=1:c", key(rule, request("page=a+b&page=c")));
+        assertEquals(PREFIX, key(rule, request("tracking=abc")));
+    }
+
+    @Test
+    public void testKeyWithoutQueryString() {
+        ResponseCacheRule rule = rule("queryParameters", "");
+        assertEquals(PREFIX, key(rule, request("page=2")));
+    }
+
+    @Test
+    public void testKeyWithHeadersAndCookies() {
+        ResponseCacheRule rule = rule("queryParameters", "", "headers", "Accept", "cookies", "region");
+        final HttpServletRequest request = request(null);
+        mock.checking(new Expectations() {
+            {
+                allowing(request).getHeaders("Accept");
+                will(returnValue(Collections.enumeration(Arrays.asList("text/html", "application/json"))));
+                allowing(request).getCookies();
+                will(returnValue(new Cookie[] { new Cookie("JSESSIONID", "0001"), new Cookie("region", "eu") }));
+            }
+        });
+        assertEquals(PREFIX + "h6:Accept=9:text/htmlh6:Accept=16:application/jsonc6:region=2:eu", key(rule, request));
+    }
+
+    @Test
+    public void testKeyIsUnambiguous() {
+        ResponseCacheRule rule = rule("queryParameters", "a, b");
+        // a value that contains the encoded text of another parameter
+        assertFalse(key(rule, request("a=1%26b%3D2")).equals(key(rule, request("a=1&b=2"))));
+        assertEquals(PREFIX + "q1:a=5:1&b=2", key(rule, request("a=1%26b%3D2")));
+        assertEquals(PREFIX + "q1:a=1:1q1:b=1:2", key(rule, request("a=1&b=2")));
+    }
+
+    @Test
+    public void testKeyIncludesHost() {
+        ResponseCacheRule rule = rule();
+        assertEquals("H23:http://example.com:9080U14:/app/api/itemsQ6:page=2", key(rule, request("example.com", "page=2")));
+        assertFalse(key(rule, request("example.com", "page=2")).equals(key(rule, request("example.org", "page=2"))));
+    }
+
+    @Test
+    public void testIsKeyedBy() {
+        ResponseCacheRule rule = rule("headers", "Accept, Accept-Language");
+        assertTrue(rule.isKeyedBy("Accept"));
+        assertTrue(rule.isKeyedBy("accept-language, ACCEPT"));
+        assertFalse(rule.isKeyedBy("Accept, Accept-Encoding"));
+        assertFalse(rule.isKeyedBy("*"));
+        assertFalse(rule().isKeyedBy("Accept"));
+        assertTrue(rule().isKeyedBy(""));
+    }
+
+    @Test
+    public void testDependencyIds() {
+        ResponseCacheRule rule = rule("dependencyIds", "catalog, product-{id}, {a}-{b}, order-{order}");
+        Map<String, List<String>> query = ResponseCacheRule.parseQueryString("id=42&a=x&b=y");
+        assertTrue(rule.hasDependencyIds());
+        // order-{order} is not used because the request has no order parameter
+        assertArrayEquals(new Object[] { "catalog", "product-42", "x-y" }, rule.getDependencyIds(query));
+    }
+
+    @Test
+    public void testInvalidatedBy() {
+        ResponseCacheRule rule = rule("invalidateOn", "post,PUT");
+        assertTrue(rule.isInvalidatedBy("POST"));
+        assertTrue(rule.isInvalidatedBy("PUT"));
+        assertFalse(rule.isInvalidatedBy("GET"));
+        assertFalse(rule.hasDependencyIds());
+    }
+
+    @Test
+    public void testParseQueryString() {
+        Map<String, List<String>> query = ResponseCacheRule.parseQueryString("a=1&&b&a=2&c=%41%20");
+        assertEquals(Arrays.asList("1", "2"), query.get("a"));
+        assertEquals(Arrays.asList(""), query.get("b"));
+        assertEquals(Arrays.asList("A "), query.get("c"));
+        assertTrue(ResponseCacheRule.parseQueryString(null).isEmpty());
+    }
+}
@@ -527,6 +527,8 @@ public class ConnectionManagerServiceImpl extends ConnectionManagerService {
                                                             null, 0, Integer.MAX_VALUE, connectorSvc);
         int reapTime = validateProperty(map, J2CConstants.POOL_ReapTime, ConnectionPoolProperties.DEFAULT_REAP_TIME, TimeUnit.SECONDS, -1, Integer.MAX_VALUE, null,
                                         0, connectorSvc);
+        int backgroundValidationInterval = validateProperty(map, J2CConstants.POOL_BackgroundValidationInterval, -1, TimeUnit.SECONDS, -1, Integer.MAX_VALUE,
+                                                            connectorSvc);
         boolean throwExceptionOnMCThreadCheck = false;
 
         /*
@@ -571,6 +573,9 @@ public class ConnectionManagerServiceImpl extends ConnectionManagerService {
             if (pm.gConfigProps.getReapTime() != reapTime)
                 pm.gConfigProps.setReapTime(reapTime);
 
+            if (pm.gConfigProps.getBackgroundValidationInterval() != backgroundValidationInterval)
+                pm.gConfigProps.setBackgroundValidationInterval(backgroundValidationInterval);
+
             if (pm.gConfigProps.getnumConnectionsPerThreadLocal() != numConnectionsPerThreadLocal)
                 pm.gConfigProps.setnumConnectionsPerThreadLocal(numConnectionsPerThreadLocal);
 
@@ -580,13 +585,14 @@ public class ConnectionManagerServiceImpl extends ConnectionManagerService {
             return null;
         } else {
             // Connection pool does not exist, create j2c global configuration properties for creating pool.
-            return new J2CGlobalConfigProperties(name, svc, false, // logMissingTranContext
+            J2CGlobalConfigProperties gConfigProps = new J2CGlobalConfigProperties(name, svc, false, // logMissingTranContext
                             200, // maxSharedBuckets,
                             100, // maxFreePoolHashSize,
                             false, // diagnoseConnectionUsage,
                             connectionTimeout, maxPoolSize, minPoolSize, purgePolicy, reapTime, maxIdleTime, agedTimeout, ConnectionPoolProperties.DEFAULT_HOLD_TIME_LIMIT, 0, // commit priority not supported
                             numConnectionsPerThreadLocal, maxNumberOfMCsAllowableInThread, throwExceptionOnMCThreadCheck);
-
+            gConfigProps.setBackgroundValidationInterval(backgroundValidationInterval);
+            return gConfigProps;
         }
     }
 
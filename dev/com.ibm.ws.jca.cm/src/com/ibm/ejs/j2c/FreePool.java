@@ -333,30 +333,88 @@ public final class FreePool implements JCAPMIHelper {
 
         }
 
-        /*
-         * Return mcWrapper to free pool
-         */
-        synchronized (pm.waiterFreePoolLock) {
-            // waiter code
-            if ((pm.waiterCount > 0) && (pm.waiterCount > pm.mcWrapperWaiterList.size())) {
-                // there are requests waiting, so notify one of them
-                pm.mcWrapperWaiterList.add(mcWrapper);
-                mcWrapper.setPoolState(4);
-                pm.waiterFreePoolLock.notify();
-            } else {
-                synchronized (freeConnectionLockObject) {
-                    mcWrapperList.add(mcWrapper); // Add to end of list
-                    mcWrapper.setPoolState(1);
-                }
-            }
-            ((com.ibm.ejs.j2c.MCWrapper) mcWrapper).setAlreadyBeingReleased(false);
-        } // end synchronized (freeLockObject)
+        addToFreePool(mcWrapper);
 
         if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
             Tr.exit(this, tc, "returnToFreePoolDelegated");
         }
     }
 
+    /**
+     * Add a connection that is ready for reuse to this free pool, or hand it to
+     * a waiting request.
+     *
+     * @pre mcWrapper != null
+     */
+    protected void addToFreePool(MCWrapper mcWrapper) {
+        if (pm.waiterCount == 0) {
+            /*
+             * No requests are waiting, so only the lock of this free pool is needed. A request
+             * that starts to wait after the check above looks in the free pools again, under the
+             * lock of each one, after it increments the waiter count. We check the waiter count again
+             * after the connection is in the free pool, so either the waiter finds the connection or
+             * we notify it. See removeFromAnyFreePool.
+             */
+            synchronized (freeConnectionLockObject) {
+                mcWrapperList.add(mcWrapper); // Add to end of list
+                mcWrapper.setPoolState(1);
+            }
+            ((com.ibm.ejs.j2c.MCWrapper) mcWrapper).setAlreadyBeingReleased(false);
+            if (pm.waiterCount > 0) {
+                synchronized (pm.waiterFreePoolLock) {
+                    pm.waiterFreePoolLock.notify();
+                }
+            }
+        } else {
+            synchronized (pm.waiterFreePoolLock) {
+                // waiter code
+                if ((pm.waiterCount > 0) && (pm.waiterCount > pm.mcWrapperWaiterList.size())) {
+                    // there are requests waiting, so notify one of them
+                    pm.mcWrapperWaiterList.add(mcWrapper);
+                    mcWrapper.setPoolState(4);
+                    pm.waiterFreePoolLock.notify();
+                } else {
+                    synchronized (freeConnectionLockObject) {
+                        mcWrapperList.add(mcWrapper); // Add to end of list
+                        mcWrapper.setPoolState(1);
+                    }
+                    if (pm.waiterCount > 0) {
+                        // a waiter that was notified for a connection in a free pool will find this one
+                        pm.waiterFreePoolLock.notify();
+                    }
+                }
+                ((com.ibm.ejs.j2c.MCWrapper) mcWrapper).setAlreadyBeingReleased(false);
+            } // end synchronized (freeLockObject)
+        }
+    }
+
+    /**
+     * Return a connection that pool maintenance took out of this free pool to validate.
+     * The connection was already cleaned up when it was first returned to the free pool,
+     * so it is added back without calling cleanup again, unless it needs to be destroyed
+     * or the pool was quiesced in the meantime.
+     *
+     * @pre mcWrapper != null
+     */
+    protected void returnValidatedConnection(MCWrapper mcWrapper) {
+        if (pm.isQuiesced()) {
+            // The pool was quiesced or shut down while the connection was out for validation,
+            // so it was not found by the purge and must not be added back.
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(this, tc, "Pool is quiesced, removing validated connection " + mcWrapper);
+            }
+            cleanupAndDestroyMCWrapper(mcWrapper);
+            removeMCWrapperFromList(mcWrapper, _mcWrapperDoesNotExistInFreePool, _synchronizeInMethod, _notifyWaiter, _decrementTotalCounter);
+        } else if (mcWrapper.shouldBeDestroyed() || mcWrapper.hasFatalErrorNotificationOccurred(fatalErrorNotificationTime)
+            || ((pm.agedTimeout != 0)
+                && (mcWrapper.hasAgedTimedOut(pm.agedTimeoutMillis)))) {
+            returnToFreePool(mcWrapper);
+        } else {
+            mcWrapper.setPoolState(0);
+            addToFreePool(mcWrapper);
+        }
+    }
+
     /**
      * This method will try to cleanup and destroy the connection and remove the
      * mcWrapper from the free pool.
@@ -714,6 +772,128 @@ public final class FreePool implements JCAPMIHelper {
 
     }
 
+    /**
+     * Removes the first connection of the first free pool that has one. This is used by requests
+     * that are going to wait or have waited, since the free pool of their own hash bucket is empty.
+     * Called with pm.waiterFreePoolLock held.
+     *
+     * Each free pool is checked under its freeConnectionLockObject, without a dirty read of the
+     * size first. A connection that is returned while there are no waiters is added under only that
+     * lock, and the returning thread then reads the waiter count. Since the waiter count is set before
+     * this is called, either we see the connection here or the returning thread sees the waiter and
+     * notifies it. A dirty read of the size gives no such guarantee and could miss the connection.
+     *
+     * @return the connection, or null if all of the free pools are empty.
+     */
+    private MCWrapper removeFromAnyFreePool(int maxFreePoolHashSize) {
+        for (int j = 0; j < maxFreePoolHashSize; ++j) {
+            synchronized (pm.freePool[j].freeConnectionLockObject) {
+                if (pm.freePool[j].mcWrapperList.size() > 0) {
+                    // A connection was returned to the a free pool
+                    MCWrapper mcWrapperTemp = (MCWrapper) pm.freePool[j].mcWrapperList.remove(0);
+                    mcWrapperTemp.setPoolState(0);
+                    return mcWrapperTemp;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Matches a connection that was removed from a free pool by removeFromAnyFreePool. If the
+     * connection does not match the request, it is passed on as a claimed victim when the resource
+     * adapter supports it, otherwise it is destroyed so that the request can create a new connection.
+     * Called with pm.waiterFreePoolLock held.
+     *
+     * @return the connection to use, or null if the connection was destroyed.
+     */
+    private MCWrapper matchOrClaimVictim(MCWrapper mcWrapperTemp,
+                                         ManagedConnectionFactory managedConnectionFactory,
+                                         Subject subject,
+                                         ConnectionRequestInfo cri) throws ResourceAllocationException {
+        FreePool mcWrapperFreePool = pm.freePool[mcWrapperTemp.getHashMapBucket()];
+        MCWrapper mcWrapper = mcWrapperFreePool.getMCWrapperFromMatch(subject, cri, managedConnectionFactory, mcWrapperTemp);
+        if (((com.ibm.ejs.j2c.MCWrapper) mcWrapperTemp).do_not_reuse_mcw) {
+            /*
+             * Connection error event did occur, the mcw was removed.
+             */
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(this, tc, "Connection error occurred for this mcw " + mcWrapperTemp + ", mcw will not be reuse");
+            }
+
+        }
+        if (mcWrapper == null) {
+            ManagedConnection mc = mcWrapperTemp.getManagedConnection();
+            if (gConfigProps.sendClaimedVictomToGetConnection && mc instanceof WSManagedConnection) {
+                ((WSManagedConnection) mc).setClaimedVictim();
+                mcWrapper = mcWrapperTemp;
+            } else {
+                /*
+                 * We are going to claim this connection as a victim. Log a debug
+                 * message, cleanup and destroy the mcWrappers connection.
+                 */
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(this, tc, "Claiming victim " + mcWrapperTemp);
+                }
+
+                if (tc.isDebugEnabled()) {
+                    ++numberOfClaimedVictims;
+                    boolean subjectMismatch = false;
+                    boolean criMismatch = false;
+                    if (cri.equals(mcWrapperTemp.getCRI()) == false)
+                        criMismatch = true;
+                    Equals equalsHelper = new Equals();
+                    equalsHelper.setSubjects(subject, mcWrapperTemp.getSubject());
+                    if (!AccessController.doPrivileged(equalsHelper)) {
+                        subjectMismatch = true;
+                    }
+
+                    if (criMismatch && subjectMismatch) {
+                        ++numberOfClaimedVictims_CRI_Subject_Mismatch;
+                    } else if (criMismatch) {
+                        ++numberOfClaimedVictims_CRI_Only_Mismatch;
+                    } else if (subjectMismatch) {
+                        ++numberOfClaimedVictims_Subject_Only_Mismatch;
+                    } else {
+                        // matchManagedConnection only failed.
+                        ++numberOfClaimedVictims_MM_Only_Mismatch;
+                    }
+                    if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                        Tr.debug(this, tc, "A Victim has been claimed for connection pool: " + gConfigProps.cfName);
+                        Tr.debug(this, tc,
+                                 "  Total Victim count                                    =  " + Integer.toString(numberOfClaimedVictims));
+                        Tr.debug(this,
+                                 tc,
+                                 "    Victims due to both CRI and Subject Mismatch        =  "
+                                     + Integer.toString(numberOfClaimedVictims_CRI_Subject_Mismatch));
+                        Tr.debug(this,
+                                 tc,
+                                 "    Victims due to CRI mismatch only                    =  "
+                                     + Integer.toString(numberOfClaimedVictims_CRI_Only_Mismatch));
+                        Tr.debug(this,
+                                 tc,
+                                 "    Victims due to Subject mismatch only                =  "
+                                     + Integer.toString(numberOfClaimedVictims_Subject_Only_Mismatch));
+                        Tr.debug(this,
+                                 tc,
+                                 "    Victims due to failed matchManagedConnection() only =  "
+                                     + Integer.toString(numberOfClaimedVictims_MM_Only_Mismatch));
+                    }
+                }
+
+                mcWrapperFreePool.cleanupAndDestroyMCWrapper(mcWrapperTemp);
+                // cleanup, remove and then release mcw
+                /*
+                 * Remove the mcWrapper from the mcWrapperList.
+                 */
+                synchronized (mcWrapperFreePool.freeConnectionLockObject) {
+                    --mcWrapperFreePool.numberOfConnectionsAssignedToThisFreePool;
+                }
+            }
+        } // end if (mcWrapper == null)
+        return mcWrapper;
+    }
+
     protected MCWrapper createOrWaitForConnection(
                                                   ManagedConnectionFactory managedConnectionFactory,
                                                   Subject subject,
@@ -779,108 +959,14 @@ public final class FreePool implements JCAPMIHelper {
                          * been returned to the free pool.
                          *
                          * We need to check for this connection before we queue this thread. While we have
-                         * the pm.waiterFreePoolLock, no connection will be return to any free pool. So,
-                         * all we need to do is quickly look at the number of connection in each free pool
+                         * the pm.waiterFreePoolLock and the waiter count is not zero, no connection will be
+                         * returned to any free pool. So, all we need to do is quickly look at the number of
+                         * connection in each free pool
                          */
-                        MCWrapper mcWrapperTemp = null;
-                        for (int j = 0; j < maxFreePoolHashSize; ++j) {
-                            /*
-                             * *
-                             * This is not double-checked locking. The following code diry reads the size of
-                             * the mcWrapperList that may be change at any time by another thread. If it is greater than zero,
-                             * we need to synchronize and check the value again. If it is still greater than
-                             * zero, we have one or more mcWrappers to work with. In order to work with the
-                             * mcWrapperList, we need to be synchronized.
-                             */
-                            if (pm.freePool[j].mcWrapperList.size() > 0) { //  Dirty read to avoid synchronize call
-                                synchronized (pm.freePool[j].freeConnectionLockObject) {
-                                    if (pm.freePool[j].mcWrapperList.size() > 0) {
-                                        // A connection was returned to the a free pool
-                                        mcWrapperTemp = (MCWrapper) pm.freePool[j].mcWrapperList.remove(0);
-                                        mcWrapperTemp.setPoolState(0);
-                                        mcWrapper = pm.freePool[j].getMCWrapperFromMatch(subject, cri, managedConnectionFactory, mcWrapperTemp);
-                                        if (((com.ibm.ejs.j2c.MCWrapper) mcWrapperTemp).do_not_reuse_mcw) {
-                                            /*
-                                             * Connection error event did occur, the mcw was removed.
-                                             */
-                                            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                                                Tr.debug(this, tc, "Connection error occurred for this mcw " + mcWrapperTemp + ", mcw will not be reuse");
-                                            }
-
-                                        }
-                                        if (mcWrapper == null) {
-                                            ManagedConnection mc = mcWrapperTemp.getManagedConnection();
-                                            if (gConfigProps.sendClaimedVictomToGetConnection && mc instanceof WSManagedConnection) {
-                                                ((WSManagedConnection) mc).setClaimedVictim();
-                                                mcWrapper = mcWrapperTemp;
-                                            } else {
-                                                /*
-                                                 * We are going to claim this connection as a victim. Log a debug
-                                                 * message, cleanup and destroy the mcWrappers connection.
-                                                 */
-                                                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                                                    Tr.debug(this, tc, "Claiming victim " + mcWrapperTemp);
-                                                }
-
-                                                if (tc.isDebugEnabled()) {
-                                                    ++numberOfClaimedVictims;
-                                                    boolean subjectMismatch = false;
-                                                    boolean criMismatch = false;
-                                                    if (cri.equals(mcWrapperTemp.getCRI()) == false)
-                                                        criMismatch = true;
-                                                    Equals equalsHelper = new Equals();
-                                                    equalsHelper.setSubjects(subject, mcWrapperTemp.getSubject());
-                                                    if (!AccessController.doPrivileged(equalsHelper)) {
-                                                        subjectMismatch = true;
-                                                    }
-
-                                                    if (criMismatch && subjectMismatch) {
-                                                        ++numberOfClaimedVictims_CRI_Subject_Mismatch;
-                                                    } else if (criMismatch) {
-                                                        ++numberOfClaimedVictims_CRI_Only_Mismatch;
-                                                    } else if (subjectMismatch) {
-                                                        ++numberOfClaimedVictims_Subject_Only_Mismatch;
-                                                    } else {
-                                                        // matchManagedConnection only failed.
-                                                        ++numberOfClaimedVictims_MM_Only_Mismatch;
-                                                    }
-                                                    if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                                                        Tr.debug(this, tc, "A Victim has been claimed for connection pool: " + gConfigProps.cfName);
-                                                        Tr.debug(this, tc,
-                                                                 "  Total Victim count                                    =  " + Integer.toString(numberOfClaimedVictims));
-                                                        Tr.debug(this,
-                                                                 tc,
-                                                                 "    Victims due to both CRI and Subject Mismatch        =  "
-                                                                     + Integer.toString(numberOfClaimedVictims_CRI_Subject_Mismatch));
-                                                        Tr.debug(this,
-                                                                 tc,
-                                                                 "    Victims due to CRI mismatch only                    =  "
-                                                                     + Integer.toString(numberOfClaimedVictims_CRI_Only_Mismatch));
-                                                        Tr.debug(this,
-                                                                 tc,
-                                                                 "    Victims due to Subject mismatch only                =  "
-                                                                     + Integer.toString(numberOfClaimedVictims_Subject_Only_Mismatch));
-                                                        Tr.debug(this,
-                                                                 tc,
-                                                                 "    Victims due to failed matchManagedConnection() only =  "
-                                                                     + Integer.toString(numberOfClaimedVictims_MM_Only_Mismatch));
-                                                    }
-                                                }
-
-                                                pm.freePool[j].cleanupAndDestroyMCWrapper(
-                                                                                          mcWrapperTemp);
-                                                // cleanup, remove and then release mcw
-                                                /*
-                                                 * Remove the mcWrapper from the mcWrapperList.
-                                                 */
-                                                --pm.freePool[j].numberOfConnectionsAssignedToThisFreePool;
-                                            }
-                                        } // end if (mcWrapper == null)
-                                        break;
-                                    } // end if (pm.freePool[j][i].numberOfConnectionsInFreePool > 0)
-                                } // end synchronized
-                            } // end if (pm.freePool[j][i].numberOfConnectionsInFreePool > 0)
-                        } // j loop
+                        MCWrapper mcWrapperTemp = removeFromAnyFreePool(maxFreePoolHashSize);
+                        if (mcWrapperTemp != null) {
+                            mcWrapper = matchOrClaimVictim(mcWrapperTemp, managedConnectionFactory, subject, cri);
+                        }
                         /*
                          * At this point we may or may not have a mcWrapper.
                          *
@@ -915,6 +1001,21 @@ public final class FreePool implements JCAPMIHelper {
                                          tc,
                                          "waitStartTime is zero.  waiterCount incremented to " + pm.waiterCount);
                             }
+                            pm.poolMaintenance.requestQueued();
+
+                            /*
+                             * When there are no waiters, connections are returned to the free pools without
+                             * the pm.waiterFreePoolLock, so one may have been returned after we looked. Now that
+                             * the waiter count is set, a returning thread either puts its connection in the
+                             * mcWrapperWaiterList or checks the waiter count again after adding it to the free
+                             * pool, so one more look is enough to not miss it.
+                             */
+                            mcWrapperTemp = removeFromAnyFreePool(maxFreePoolHashSize);
+                            if (mcWrapperTemp != null) {
+                                mcWrapper = matchOrClaimVictim(mcWrapperTemp, managedConnectionFactory, subject, cri);
+                                pm.waiterCount--;
+                                break;
+                            }
 
                             // get the wait start time
                             waitStartTime = System.currentTimeMillis();
@@ -1043,6 +1144,21 @@ public final class FreePool implements JCAPMIHelper {
                      */
                     //mcWrapper = getFreeConnection(userData,oneUserIDOption,mcWrapperList,true);
                     //}
+                    else {
+                        /*
+                         * We may have been notified for a connection that was returned to a free pool
+                         * without the pm.waiterFreePoolLock, see returnToFreePoolDelegated.
+                         */
+                        MCWrapper mcWrapperTemp = removeFromAnyFreePool(maxFreePoolHashSize);
+                        if (mcWrapperTemp != null) {
+                            mcWrapper = matchOrClaimVictim(mcWrapperTemp, managedConnectionFactory, subject, cri);
+                            if (mcWrapper == null) {
+                                // we claimed a victim, break and allow the code to create a new connection
+                                pm.waiterCount--;
+                                break;
+                            }
+                        }
+                    }
                     if (mcWrapper != null) {
                         // we found a connection
                         // decrement the waiter count, since we're no longer going to wait
@@ -1244,6 +1360,7 @@ public final class FreePool implements JCAPMIHelper {
             mcWrapper.setHashMapBucket(hashMapBucket);
             mcWrapper.setMCWrapperList(mcWrapperList);
             ++numberOfConnectionsAssignedToThisFreePool;
+            pm.poolMaintenance.connectionCreated(managedConnectionFactory, subject, cri, hashCode, hashMapBucket);
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                 Tr.debug(this, tc, "Returning mcWrapper");
             }
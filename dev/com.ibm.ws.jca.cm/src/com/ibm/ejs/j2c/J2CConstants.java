@@ -117,6 +117,7 @@ public interface J2CConstants {
     public final static String POOL_ConnectionTimeout = "connectionTimeout";
 
     public final static String POOL_ReapTime = "reapTime";
+    public final static String POOL_BackgroundValidationInterval = "backgroundValidationInterval";
     public final static String POOL_AgedTimeout = "agedTimeout";
 
     public final static String POOL_PurgePolicy = "purgePolicy";
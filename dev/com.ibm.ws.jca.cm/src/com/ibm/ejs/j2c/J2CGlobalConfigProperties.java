@@ -287,6 +287,15 @@ public final class J2CGlobalConfigProperties implements PropertyChangeListener,
      * 70 seconds and there after 60 seconds.
      */
     private int reapTime = 0;
+    /**
+     * Background Validation Interval (seconds)
+     * <p><p>
+     * Interval at which the pool maintenance task validates the connections in the free
+     * pool that have not been used during the interval, and creates connections to keep
+     * Min Connections plus a spare margin that is based on recent demand. The task is
+     * disabled when the value is 0 or less.
+     */
+    private int backgroundValidationInterval = -1;
     /**
      * Unused Timeout (seconds)
      * <p><p>
@@ -629,6 +638,22 @@ public final class J2CGlobalConfigProperties implements PropertyChangeListener,
         this.reapTime = _reapTime;
     }
 
+    /**
+     * @return Returns the backgroundValidationInterval.
+     */
+    public synchronized final int getBackgroundValidationInterval() {
+        return backgroundValidationInterval;
+    }
+
+    /**
+     * @param backgroundValidationInterval
+     *            The backgroundValidationInterval to set.
+     */
+    public synchronized final void setBackgroundValidationInterval(int _backgroundValidationInterval) {
+        changeSupport.firePropertyChange("backgroundValidationInterval", this.backgroundValidationInterval, _backgroundValidationInterval);
+        this.backgroundValidationInterval = _backgroundValidationInterval;
+    }
+
     /**
      * @return Returns the stopPoolRequests.
      */
@@ -917,6 +942,7 @@ public final class J2CGlobalConfigProperties implements PropertyChangeListener,
         buf.append("  minConnections                  : " + minConnections + nl);
         buf.append("  purgePolicy                     : " + purgePolicy + nl);
         buf.append("  reapTime                        : " + reapTime + nl);
+        buf.append("  backgroundValidationInterval    : " + backgroundValidationInterval + nl);
         buf.append("  unusedTimeout                   : " + unusedTimeout + nl);
         buf.append("  agedTimeout                     : " + agedTimeout + nl);
         buf.append("  agedTimeoutMillis               : " + agedTimeoutMillis + nl);
@@ -0,0 +1,487 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ejs.j2c;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.resource.ResourceException;
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.resource.spi.ManagedConnection;
+import javax.resource.spi.ManagedConnectionFactory;
+import javax.resource.spi.ResourceAllocationException;
+import javax.resource.spi.ValidatingManagedConnectionFactory;
+import javax.security.auth.Subject;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.ws.j2c.MCWrapper;
+
+/**
+ * Background maintenance of the free pool of a PoolManager. This is a utility class used by the PoolManager.
+ * <p>
+ * Every backgroundValidationInterval the maintenance task
+ * <ul>
+ * <li>validates, in batches, the free connections that have not been used for the length of the
+ * interval, with the ValidatingManagedConnectionFactory of the resource adapter, and destroys the
+ * ones that are no longer valid, so that requests after a failover do not have to find them.</li>
+ * <li>creates connections in parallel until the pool holds minConnections, plus a spare margin of
+ * free connections. The margin is the number of requests that did not find a free connection
+ * during the last interval, and is halved for each interval with less demand.</li>
+ * </ul>
+ * A fatal connection error that purges the pool also starts a refill right away.
+ * <p>
+ * Connections are created with the connection request info of the most recent request that created
+ * a connection without a subject, so nothing is created before the first such request. A subject
+ * holds the credentials of the requester that it was created for, so requests that have one are
+ * never used to create connections for others, and pools that only have such requests are not
+ * refilled.
+ */
+final class PoolMaintenance implements Runnable {
+
+    private static final TraceComponent tc = Tr.register(PoolMaintenance.class, J2CConstants.traceSpec, J2CConstants.messageFile);
+
+    /**
+     * Maximum number of connections that are validated with one call to getInvalidConnections.
+     */
+    static final int VALIDATION_BATCH_SIZE = 10;
+
+    /**
+     * Maximum number of threads that create connections at the same time during a refill.
+     */
+    static final int MAX_REFILL_THREADS = 4;
+
+    private final PoolManager pm;
+
+    /**
+     * The scheduled maintenance task, or null if background validation is disabled.
+     */
+    private ScheduledFuture<?> future;
+
+    private volatile long intervalMillis;
+
+    /**
+     * Prevents a run from starting while the previous one has not finished.
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * The identity that is used to create connections.
+     */
+    private volatile ConnectionTemplate template;
+
+    /**
+     * Number of requests that created a connection or waited for one since the last run.
+     */
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Number of free connections to keep above what is in use.
+     */
+    private volatile int spareConnections;
+
+    /**
+     * Number of connections still to be created by the refill in progress.
+     */
+    private final AtomicInteger refillRemaining = new AtomicInteger();
+    private final AtomicInteger refillThreads = new AtomicInteger();
+    private volatile long refillStartTime;
+    private volatile boolean refillFailed;
+
+    // statistics
+    private final AtomicLong validatedCount = new AtomicLong();
+    private final AtomicLong invalidCount = new AtomicLong();
+    private final AtomicLong refilledCount = new AtomicLong();
+    private final AtomicLong refillFailureCount = new AtomicLong();
+    private volatile long lastRefillTime = -1;
+    private volatile int lastRunInvalidCount;
+
+    /**
+     * The arguments of a request without a subject that created a connection.
+     */
+    private static final class ConnectionTemplate {
+        final ManagedConnectionFactory managedConnectionFactory;
+        final ConnectionRequestInfo cri;
+        final int hashCode;
+        final int hashMapBucket;
+
+        ConnectionTemplate(ManagedConnectionFactory managedConnectionFactory, ConnectionRequestInfo cri, int hashCode, int hashMapBucket) {
+            this.managedConnectionFactory = managedConnectionFactory;
+            this.cri = cri;
+            this.hashCode = hashCode;
+            this.hashMapBucket = hashMapBucket;
+        }
+    }
+
+    /**
+     * Creates connections for a refill until the refill is complete or a connection
+     * cannot be created.
+     */
+    private final class RefillTask implements Runnable {
+        @Override
+        public void run() {
+            try {
+                ConnectionTemplate t = template;
+                while (t != null && refillRemaining.getAndDecrement() > 0) {
+                    if (!createConnection(t)) {
+                        refillFailed = true;
+                        refillRemaining.set(0);
+                    }
+                }
+            } finally {
+                if (refillThreads.decrementAndGet() == 0) {
+                    if (refillFailed) {
+                        refillFailureCount.incrementAndGet();
+                    } else {
+                        lastRefillTime = System.currentTimeMillis() - refillStartTime;
+                    }
+                    if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+                        Tr.debug(this, tc, "Refill of pool " + pm.gConfigProps.cfName + (refillFailed ? " failed" : " completed in " + lastRefillTime + " ms"));
+                }
+            }
+        }
+    }
+
+    PoolMaintenance(PoolManager pm) {
+        this.pm = pm;
+    }
+
+    /**
+     * Schedules the maintenance task with the given interval, replacing any previous schedule.
+     *
+     * @param intervalSeconds the interval in seconds. A value of 0 or less disables the task.
+     */
+    synchronized void schedule(int intervalSeconds) {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+        intervalMillis = intervalSeconds * 1000L;
+        if (intervalSeconds > 0) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+                Tr.debug(this, tc, "Scheduling background validation for pool " + pm.gConfigProps.cfName + " every " + intervalSeconds + " seconds");
+            future = pm.connectorSvc.deferrableSchedXSvcRef.getServiceWithException().scheduleWithFixedDelay(this, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops the maintenance task.
+     */
+    void cancel() {
+        schedule(0);
+    }
+
+    boolean isEnabled() {
+        return intervalMillis > 0;
+    }
+
+    /**
+     * Called by a request that created a new connection.
+     */
+    void connectionCreated(ManagedConnectionFactory managedConnectionFactory, Subject subject, ConnectionRequestInfo cri, int hashCode, int hashMapBucket) {
+        if (subject == null) {
+            ConnectionTemplate t = template;
+            if (t == null || t.cri != cri) {
+                template = new ConnectionTemplate(managedConnectionFactory, cri, hashCode, hashMapBucket);
+            }
+        }
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Called by a request that has to wait for a connection.
+     */
+    void requestQueued() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Called after a fatal connection error purged the free pool.
+     */
+    void purged() {
+        if (isEnabled()) {
+            startRefill();
+        }
+    }
+
+    @Override
+    public void run() {
+        final boolean isTracingEnabled = TraceComponent.isAnyTracingEnabled();
+        if (isTracingEnabled && tc.isEntryEnabled())
+            Tr.entry(this, tc, "run", pm.gConfigProps.cfName);
+
+        if (!running.compareAndSet(false, true)) {
+            if (isTracingEnabled && tc.isEntryEnabled())
+                Tr.exit(this, tc, "run", "previous run has not finished");
+            return;
+        }
+        try {
+            if (pm.isQuiesced() || !pm.gConfigProps.isConnectionPoolingEnabled()) {
+                if (isTracingEnabled && tc.isEntryEnabled())
+                    Tr.exit(this, tc, "run", "pool is not active");
+                return;
+            }
+
+            if (pm.gConfigProps.validatingMCFSupported) {
+                validateFreeConnections();
+            }
+
+            int demand = misses.getAndSet(0);
+            spareConnections = Math.max(demand, spareConnections / 2);
+
+            startRefill();
+        } catch (RuntimeException x) {
+            com.ibm.ws.ffdc.FFDCFilter.processException(x, getClass().getName() + ".run", "245", this);
+        } finally {
+            running.set(false);
+        }
+
+        if (isTracingEnabled && tc.isEntryEnabled())
+            Tr.exit(this, tc, "run");
+    }
+
+    /**
+     * Validates the free connections that have not been used for the length of the interval.
+     */
+    private void validateFreeConnections() {
+        long idleMillis = intervalMillis;
+        int invalid = 0;
+        Set<MCWrapper> seen = Collections.newSetFromMap(new IdentityHashMap<MCWrapper, Boolean>());
+        for (int j = 0; j < pm.maxFreePoolHashSize; ++j) {
+            FreePool fp = pm.freePool[j];
+            List<MCWrapper> batch;
+            do {
+                batch = takeIdleConnections(fp, idleMillis, seen);
+                if (!batch.isEmpty()) {
+                    invalid += validate(fp, batch);
+                }
+            } while (batch.size() == VALIDATION_BATCH_SIZE && !pm.isQuiesced());
+        }
+        lastRunInvalidCount = invalid;
+    }
+
+    /**
+     * Removes up to VALIDATION_BATCH_SIZE connections that have not been used for the given time
+     * from a free pool. The connections stay assigned to the free pool.
+     */
+    private List<MCWrapper> takeIdleConnections(FreePool fp, long idleMillis, Set<MCWrapper> seen) {
+        List<MCWrapper> batch = new ArrayList<MCWrapper>(VALIDATION_BATCH_SIZE);
+        if (fp.mcWrapperList.size() == 0) {
+            return batch;
+        }
+        synchronized (fp.freeConnectionLockObject) {
+            for (int k = 0; k < fp.mcWrapperList.size() && batch.size() < VALIDATION_BATCH_SIZE;) {
+                MCWrapper mcw = (MCWrapper) fp.mcWrapperList.get(k);
+                if (mcw.getPoolState() == MCWrapper.ConnectionState_freePool && !mcw.isStale()
+                    && mcw.hasIdleTimedOut(idleMillis) && seen.add(mcw)) {
+                    fp.mcWrapperList.remove(k);
+                    mcw.setPoolState(50); // interacting with the resource adapter
+                    batch.add(mcw);
+                } else {
+                    ++k;
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Validates a batch of connections and returns them to their free pool. The ones that
+     * are not valid are destroyed.
+     *
+     * @return the number of connections that were not valid.
+     */
+    private int validate(FreePool fp, List<MCWrapper> batch) {
+        Set<ManagedConnection> mcSet = new HashSet<ManagedConnection>();
+        for (MCWrapper mcw : batch) {
+            mcSet.add(mcw.getManagedConnectionWithoutStateCheck());
+        }
+
+        ManagedConnectionFactory mcf = ((com.ibm.ejs.j2c.MCWrapper) batch.get(0)).get_managedConnectionFactory();
+        Set<?> invalidSet = Collections.EMPTY_SET;
+        try {
+            Set<?> set = ((ValidatingManagedConnectionFactory) mcf).getInvalidConnections(mcSet);
+            if (set != null) {
+                invalidSet = set;
+            }
+        } catch (ResourceException e) {
+            Object[] parms = new Object[] { "validateFreeConnections", CommonFunction.exceptionList(e), "ResourceException", pm.gConfigProps.cfName };
+            Tr.error(tc, "ATTEMPT_TO_VALIDATE_MC_CONNECTIONS_J2CA0285", parms);
+        }
+
+        int invalid = 0;
+        for (MCWrapper mcw : batch) {
+            if (invalidSet.contains(mcw.getManagedConnectionWithoutStateCheck())) {
+                mcw.markStale();
+                ++invalid;
+            }
+            fp.returnValidatedConnection(mcw);
+        }
+
+        validatedCount.addAndGet(batch.size());
+        invalidCount.addAndGet(invalid);
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+            Tr.debug(this, tc, "Validated " + batch.size() + " free connections of pool " + pm.gConfigProps.cfName + ", " + invalid + " were not valid");
+        return invalid;
+    }
+
+    /**
+     * Starts creating connections in parallel if the pool holds fewer than minConnections
+     * plus the spare margin and no refill is in progress.
+     */
+    private void startRefill() {
+        // the run and a purge can both get here, only one of them starts a refill
+        if (template == null || pm.isQuiesced() || refillThreads.get() > 0) {
+            return;
+        }
+
+        int total = pm.totalConnectionCount.get();
+        int free = 0;
+        for (int j = 0; j < pm.maxFreePoolHashSize; ++j) {
+            free += pm.freePool[j].mcWrapperList.size();
+        }
+        int target = Math.max(pm.minConnections, total - free + spareConnections);
+        if (pm.maxConnections > 0) {
+            target = Math.min(target, pm.maxConnections);
+        }
+        int needed = target - total;
+        if (needed <= 0) {
+            return;
+        }
+
+        int threads = Math.min(needed, MAX_REFILL_THREADS);
+        if (!refillThreads.compareAndSet(0, threads)) {
+            return;
+        }
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+            Tr.debug(this, tc, "Creating " + needed + " connections for pool " + pm.gConfigProps.cfName + " on " + threads + " threads");
+
+        refillFailed = false;
+        refillStartTime = System.currentTimeMillis();
+        refillRemaining.set(needed);
+        for (int i = 0; i < threads; ++i) {
+            try {
+                pm.connectorSvc.execSvcRef.getServiceWithException().submit(new RefillTask());
+            } catch (RuntimeException x) {
+                com.ibm.ws.ffdc.FFDCFilter.processException(x, getClass().getName() + ".startRefill", "355", this);
+                refillFailed = true;
+                refillThreads.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Creates a connection and adds it to the free pool.
+     *
+     * @return false if the connection could not be created.
+     */
+    private boolean createConnection(ConnectionTemplate t) {
+        if (pm.isQuiesced()) {
+            return false;
+        }
+
+        synchronized (pm.pmCounterLock) {
+            if (pm.maxConnections > 0 && pm.totalConnectionCount.get() >= pm.maxConnections) {
+                // requests have taken the room, which is as good as a refill
+                return true;
+            }
+            pm.totalConnectionCount.incrementAndGet();
+        }
+
+        FreePool fp = pm.freePool[t.hashMapBucket];
+        MCWrapper mcWrapper;
+        pm.activeRequest.incrementAndGet();
+        try {
+            mcWrapper = fp.createManagedConnectionWithMCWrapper(t.managedConnectionFactory, null, t.cri, false, t.hashCode);
+        } catch (ResourceAllocationException e) {
+            // createManagedConnectionWithMCWrapper has already decremented the active request count
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+                Tr.debug(this, tc, "Unable to create a connection for pool " + pm.gConfigProps.cfName, e);
+            synchronized (pm.waiterFreePoolLock) {
+                pm.totalConnectionCount.decrementAndGet();
+                if (pm.waiterCount > 0) {
+                    pm.waiterFreePoolLock.notify();
+                }
+            }
+            return false;
+        }
+
+        mcWrapper.setHashMapBucket(t.hashMapBucket);
+        mcWrapper.setMCWrapperList(fp.mcWrapperList);
+        synchronized (fp.freeConnectionLockObject) {
+            ++fp.numberOfConnectionsAssignedToThisFreePool;
+        }
+        // count the new connection as free for PMI, as cleanup does when a connection is returned
+        ((com.ibm.ejs.j2c.MCWrapper) mcWrapper).isNotAlreadyFreeActive();
+        fp.addToFreePool(mcWrapper);
+        pm.activeRequest.decrementAndGet();
+        refilledCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return true if the last validation found no invalid connections and the last refill did not fail.
+     */
+    boolean isHealthy() {
+        return lastRunInvalidCount == 0 && !refillFailed;
+    }
+
+    long getValidatedCount() {
+        return validatedCount.get();
+    }
+
+    long getInvalidCount() {
+        return invalidCount.get();
+    }
+
+    long getRefilledCount() {
+        return refilledCount.get();
+    }
+
+    long getRefillFailureCount() {
+        return refillFailureCount.get();
+    }
+
+    /**
+     * @return the time in milliseconds that the last successful refill took, or -1 if there was none.
+     */
+    long getLastRefillTime() {
+        return lastRefillTime;
+    }
+
+    int getSpareConnections() {
+        return spareConnections;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("backgroundValidationInterval=").append(intervalMillis / 1000).append('s');
+        sb.append(" healthy=").append(isHealthy());
+        sb.append(" validated=").append(validatedCount.get());
+        sb.append(" invalid=").append(invalidCount.get());
+        sb.append(" refilled=").append(refilledCount.get());
+        sb.append(" refillFailures=").append(refillFailureCount.get());
+        sb.append(" lastRefillTime=").append(lastRefillTime).append("ms");
+        sb.append(" spare=").append(spareConnections);
+        return sb.toString();
+    }
+}
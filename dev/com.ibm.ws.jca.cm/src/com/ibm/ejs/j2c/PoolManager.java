@@ -99,7 +99,11 @@ public final class PoolManager implements Runnable, PropertyChangeListener, Veto
     protected final AtomicInteger totalConnectionCount = new AtomicInteger(0);
     protected final Integer poolManagerBalancePoolLock = new Integer(0);
     protected final Integer waiterFreePoolLock = new Integer(0);
-    protected int waiterCount = 0;
+    /**
+     * Number of requests waiting for a connection. Only modified while holding waiterFreePoolLock,
+     * but read without it when a connection is returned to a free pool.
+     */
+    protected volatile int waiterCount = 0;
     protected boolean allowConnectionRequests = true;
     private boolean connectionPoolShutDown = false;
     protected final Integer poolManagerTestConnectionLock = new Integer(0);
@@ -137,6 +141,10 @@ public final class PoolManager implements Runnable, PropertyChangeListener, Veto
     protected ScheduledFuture<?> am = null;
     protected final Integer amLockObject = new Integer(0);
     private boolean pmQuiesced = false;
+    /**
+     * Background validation and refill of the free pool.
+     */
+    protected final PoolMaintenance poolMaintenance = new PoolMaintenance(this);
     protected final AtomicInteger activeRequest = new AtomicInteger(0);
     protected final Integer updateToPoolInProgressLockObject = new Integer(0);
     protected boolean updateToPoolInProgress = false;
@@ -290,7 +298,13 @@ public final class PoolManager implements Runnable, PropertyChangeListener, Veto
             Tr.debug(this, tc, "Aged Timeout                            = " + agedTimeout + " (seconds)");
             Tr.debug(this, tc, "Free Pool Distribution Table Size       = " + maxFreePoolHashSize);
             Tr.debug(this, tc, "Number Of Shared Pool Partitions        = " + maxSharedBuckets);
+            Tr.debug(this, tc, "Background Validation Interval          = " + gConfigProps.getBackgroundValidationInterval() + " (seconds)");
+        }
+
+        if (gConfigProps.connectionPoolingEnabled) {
+            poolMaintenance.schedule(gConfigProps.getBackgroundValidationInterval());
         }
+
         if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
             Tr.exit(this, tc, "<init>");
         }
@@ -379,6 +393,12 @@ public final class PoolManager implements Runnable, PropertyChangeListener, Veto
 
                     }
 
+                    /*
+                     * Create new connections for the purged ones without waiting for
+                     * requests to do it, if background validation is enabled.
+                     */
+                    poolMaintenance.purged();
+
                 } // end "EntirePool" purge policy
                 else {
                     /*
@@ -720,6 +740,8 @@ public final class PoolManager implements Runnable, PropertyChangeListener, Veto
             } // end loop through unsharable, in-use connections
         }
 
+        poolMaintenance.cancel();
+
         // Ensure that the reap thread has terminated for this pool manager
         // If we don't force closure here, dynamic config changes may cause
         // duplicate reaper threads for the same resource
@@ -763,6 +785,7 @@ public final class PoolManager implements Runnable, PropertyChangeListener, Veto
         }
 
         pmQuiesced = true;
+        poolMaintenance.cancel();
 
         if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
             Tr.exit(this, tc, "quiesce", gConfigProps.cfName);
@@ -770,6 +793,13 @@ public final class PoolManager implements Runnable, PropertyChangeListener, Veto
 
     }
 
+    /**
+     * @return true if the pool manager is quiesced or shut down.
+     */
+    boolean isQuiesced() {
+        return pmQuiesced || connectionPoolShutDown;
+    }
+
     /**
      * This method returns the parked connction.
      *
@@ -4092,6 +4122,14 @@ public final class PoolManager implements Runnable, PropertyChangeListener, Veto
             }
             this.reapTime = value;
             checkForStartingReaperThread();
+        } else if (propName.equals("backgroundValidationInterval")) {
+            int value = ((Integer) event.getNewValue()).intValue();
+            if (tc.isInfoEnabled()) {
+                logPropertyChangeMsg("backgroundValidationInterval", ((Integer) event.getOldValue()).intValue(), value);
+            }
+            if (gConfigProps.connectionPoolingEnabled && !isQuiesced()) {
+                poolMaintenance.schedule(value);
+            }
         } else if (propName.equals("unusedTimeoutEnabled")) {
             boolean value = ((Boolean) event.getNewValue()).booleanValue();
             if (tc.isInfoEnabled()) {
@@ -171,6 +171,18 @@ public class PoolManagerMBeanImpl extends StandardMBean implements ConnectionMan
         String returnValue = null;
         if (attribute.equals("size")) {
             returnValue = _pm.getTotalConnectionCount().toString();
+        } else if (attribute.equals("healthy")) {
+            returnValue = Boolean.toString(_pm.poolMaintenance.isHealthy());
+        } else if (attribute.equals("validatedCount")) {
+            returnValue = Long.toString(_pm.poolMaintenance.getValidatedCount());
+        } else if (attribute.equals("invalidCount")) {
+            returnValue = Long.toString(_pm.poolMaintenance.getInvalidCount());
+        } else if (attribute.equals("refilledCount")) {
+            returnValue = Long.toString(_pm.poolMaintenance.getRefilledCount());
+        } else if (attribute.equals("refillFailureCount")) {
+            returnValue = Long.toString(_pm.poolMaintenance.getRefillFailureCount());
+        } else if (attribute.equals("lastRefillTime")) {
+            returnValue = Long.toString(_pm.poolMaintenance.getLastRefillTime());
         } else {
             throw new AttributeNotFoundException(attribute);
         }
@@ -228,6 +240,11 @@ public class PoolManagerMBeanImpl extends StandardMBean implements ConnectionMan
         buf.append("size=");
         buf.append(_pm.totalConnectionCount.get());
         buf.append(nl);
+        if (_pm.poolMaintenance.isEnabled()) {
+            buf.append("maintenance: ");
+            buf.append(_pm.poolMaintenance);
+            buf.append(nl);
+        }
         int numUnsharedConnections = 0, numSharedConnections = 0, numFreeConnections = 0, numWaitingConnections = 0;
         _pm.mcToMCWMapWrite.lock();
         try {
@@ -149,6 +149,21 @@ public class DerbyResourceAdapterTest extends FATServletClient {
         runTest(DerbyRAAnnoServlet);
     }
 
+    @Test
+    public void testBackgroundValidation() throws Exception {
+        runTest(DerbyRAServlet);
+    }
+
+    @Test
+    public void testBackgroundValidationNoRefillWithSubject() throws Exception {
+        runTest(DerbyRAServlet);
+    }
+
+    @Test
+    public void testConcurrentGetAndRelease() throws Exception {
+        runTest(DerbyRAServlet);
+    }
+
     @ExpectedFFDC({ "javax.resource.ResourceException" }) //simulated exception in destroy
     @Test
     public void testConnPoolStatsExceptionInDestroy() throws Exception {
@@ -14,8 +14,10 @@ import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -23,6 +25,7 @@ import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import javax.management.MBeanServer;
@@ -431,6 +434,123 @@ public class DerbyRAServlet extends FATServlet {
         }
     }
 
+    /**
+     * Verify that background validation validates the free connections of a pool that sets
+     * backgroundValidationInterval, refills the pool to minPoolSize after it is purged,
+     * and reports what it did in the attributes and the pool contents of the MBean.
+     */
+    public void testBackgroundValidation() throws Exception {
+        DataSource ds3 = (DataSource) new InitialContext().lookup("eis/ds3");
+        Connection conn = ds3.getConnection();
+        try {
+            ResultSet result = conn.createStatement().executeQuery("VALUES 1");
+            if (!result.next() || result.getInt(1) != 1)
+                throw new Exception("Unexpected result of query");
+        } finally {
+            conn.close();
+        }
+
+        ObjectName objName = getMBeanObjectInstance("eis/ds3").getObjectName();
+        long validatedCount = 0;
+        for (long start = System.currentTimeMillis(); validatedCount == 0 && System.currentTimeMillis() - start < TIMEOUT * 6; Thread.sleep(200))
+            validatedCount = Long.parseLong((String) mbeanServer.getAttribute(objName, "validatedCount"));
+        if (validatedCount == 0)
+            throw new Exception("The free connection was not validated");
+
+        String invalidCount = (String) mbeanServer.getAttribute(objName, "invalidCount");
+        if (!"0".equals(invalidCount))
+            throw new Exception("Expected no invalid connections, but found: " + invalidCount);
+        String healthy = (String) mbeanServer.getAttribute(objName, "healthy");
+        if (!"true".equals(healthy))
+            throw new Exception("Expected a healthy pool, but found: " + healthy);
+        String contents = (String) mbeanServer.invoke(objName, "showPoolContents", null, null);
+        if (!contents.contains("maintenance: backgroundValidationInterval=1s"))
+            throw new Exception("Pool contents do not show the maintenance: " + contents);
+
+        // The pool is refilled to minPoolSize after it is purged
+        long initialRefilledCount = Long.parseLong((String) mbeanServer.getAttribute(objName, "refilledCount"));
+        mbeanServer.invoke(objName, "purgePoolContents", new Object[] { "Normal" }, null);
+        long refilledCount = initialRefilledCount;
+        for (long start = System.currentTimeMillis(); refilledCount == initialRefilledCount && System.currentTimeMillis() - start < TIMEOUT * 6; Thread.sleep(200))
+            refilledCount = Long.parseLong((String) mbeanServer.getAttribute(objName, "refilledCount"));
+        if (refilledCount == initialRefilledCount)
+            throw new Exception("The pool was not refilled after it was purged: " + mbeanServer.invoke(objName, "showPoolContents", null, null));
+
+        // The time of the refill is recorded once all of its connections are created
+        long lastRefillTime = -1;
+        for (long start = System.currentTimeMillis(); lastRefillTime < 0 && System.currentTimeMillis() - start < TIMEOUT; Thread.sleep(200))
+            lastRefillTime = Long.parseLong((String) mbeanServer.getAttribute(objName, "lastRefillTime"));
+        if (lastRefillTime < 0)
+            throw new Exception("The time of the refill was not recorded");
+        String refillFailureCount = (String) mbeanServer.getAttribute(objName, "refillFailureCount");
+        if (!"0".equals(refillFailureCount))
+            throw new Exception("Expected no refill failures, but found: " + refillFailureCount);
+    }
+
+    /**
+     * Verify that requests which wait for a connection of a small pool get one as soon as another
+     * thread closes its connection, rather than waiting out the connection timeout while a
+     * connection is free.
+     */
+    public void testConcurrentGetAndRelease() throws Exception {
+        final DataSource ds4 = (DataSource) new InitialContext().lookup("eis/ds4");
+        ExecutorService executor = (ExecutorService) new InitialContext().lookup("java:comp/DefaultManagedExecutorService");
+        List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        for (int i = 0; i < 8; i++)
+            futures.add(executor.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    long maxWait = 0;
+                    for (int j = 0; j < 100; j++) {
+                        long start = System.nanoTime();
+                        Connection conn = ds4.getConnection();
+                        try {
+                            maxWait = Math.max(maxWait, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                            ResultSet result = conn.createStatement().executeQuery("VALUES 1");
+                            if (!result.next() || result.getInt(1) != 1)
+                                throw new Exception("Unexpected result of query");
+                        } finally {
+                            conn.close();
+                        }
+                    }
+                    return maxWait;
+                }
+            }));
+
+        // the connections are held for a short time, so no request should wait close to the connection timeout
+        for (Future<Long> future : futures) {
+            long maxWait = future.get(TIMEOUT * 12, TimeUnit.MILLISECONDS);
+            if (maxWait >= TIMEOUT)
+                throw new Exception("A request waited " + maxWait + " ms for a connection while connections were free");
+        }
+    }
+
+    /**
+     * Verify that background validation does not refill a pool with connections for a subject,
+     * because the subject holds the credentials of the request that it was created for.
+     */
+    public void testBackgroundValidationNoRefillWithSubject() throws Exception {
+        DataSource ds5 = (DataSource) new InitialContext().lookup("eis/ds5");
+        Connection conn = ds5.getConnection();
+        try {
+            ResultSet result = conn.createStatement().executeQuery("VALUES 1");
+            if (!result.next() || result.getInt(1) != 1)
+                throw new Exception("Unexpected result of query");
+        } finally {
+            conn.close();
+        }
+
+        ObjectName objName = getMBeanObjectInstance("eis/ds5").getObjectName();
+        mbeanServer.invoke(objName, "purgePoolContents", new Object[] { "Normal" }, null);
+
+        // several intervals pass without a refill to minPoolSize
+        Thread.sleep(3000);
+        String refilledCount = (String) mbeanServer.getAttribute(objName, "refilledCount");
+        if (!"0".equals(refilledCount))
+            throw new Exception("Expected no connections to be created for the subject, but found: " + refilledCount + " "
+                                + mbeanServer.invoke(objName, "showPoolContents", null, null));
+    }
+
     private int getMonitorData(ObjectName name, String attribute) throws Exception {
         return Integer.parseInt((mbeanServer.getAttribute(name, attribute)).toString());
     }
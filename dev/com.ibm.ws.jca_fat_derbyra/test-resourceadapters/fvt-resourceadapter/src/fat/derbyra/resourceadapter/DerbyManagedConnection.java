@@ -181,6 +181,23 @@ public class DerbyManagedConnection implements LocalTransaction, ManagedConnecti
         return xares;
     }
 
+    /**
+     * Returns false if the underlying connection is not usable.
+     */
+    boolean isValid() {
+        try {
+            Connection c = con == null ? xacon.getConnection() : con;
+            try {
+                return c.isValid(0);
+            } finally {
+                if (con == null)
+                    c.close();
+            }
+        } catch (SQLException x) {
+            return false;
+        }
+    }
+
     void notify(int eventType, DerbyConnection conHandle, Exception failure) {
         ConnectionEvent event = new ConnectionEvent(this, eventType, failure);
         event.setConnectionHandle(conHandle);
@@ -12,6 +12,7 @@ package fat.derbyra.resourceadapter;
 
 import java.io.PrintWriter;
 import java.sql.SQLException;
+import java.util.HashSet;
 import java.util.Set;
 
 import javax.resource.NotSupportedException;
@@ -23,9 +24,10 @@ import javax.resource.spi.ManagedConnectionFactory;
 import javax.resource.spi.ResourceAdapter;
 import javax.resource.spi.ResourceAdapterAssociation;
 import javax.resource.spi.TransactionSupport;
+import javax.resource.spi.ValidatingManagedConnectionFactory;
 import javax.security.auth.Subject;
 
-public class DerbyManagedConnectionFactory implements ManagedConnectionFactory, ResourceAdapterAssociation, TransactionSupport {
+public class DerbyManagedConnectionFactory implements ManagedConnectionFactory, ResourceAdapterAssociation, TransactionSupport, ValidatingManagedConnectionFactory {
     private static final long serialVersionUID = 7834485368743035738L;
 
     transient DerbyResourceAdapter adapter;
@@ -65,6 +67,16 @@ public class DerbyManagedConnectionFactory implements ManagedConnectionFactory,
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Set<ManagedConnection> getInvalidConnections(@SuppressWarnings("rawtypes") Set set) throws ResourceException {
+        Set<ManagedConnection> invalid = new HashSet<ManagedConnection>();
+        for (Object o : set)
+            if (o instanceof DerbyManagedConnection && !((DerbyManagedConnection) o).isValid())
+                invalid.add((DerbyManagedConnection) o);
+        return invalid;
+    }
+
     String getPassword() {
         return password;
     }
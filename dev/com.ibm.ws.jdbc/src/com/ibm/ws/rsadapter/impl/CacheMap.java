@@ -48,6 +48,9 @@ public class CacheMap {
     /** A counter of entries discarded from the cache to make room for new entries. */
     private int numDiscards;
 
+    /** The key of the entry that was most recently discarded, or null if none. */
+    private Object lastDiscardedKey;
+
     /** The values stored in each bucket of the CacheMap. Bucket index is zero-based. */
     private final Object[][] values;
 
@@ -195,6 +198,7 @@ public class CacheMap {
         numDiscards++;
         bucketSizes[bucketIndex]--;
         numEntries--;
+        lastDiscardedKey = keys[bucketIndex][entryIndex];
         return values[bucketIndex][entryIndex];
     }
 
@@ -237,6 +241,15 @@ public class CacheMap {
         return new String(sb);
     }
 
+    /**
+     * Returns the key of the entry that was most recently discarded by add.
+     * 
+     * @return the key of the most recently discarded entry, or null if none.
+     */
+    public final Object getLastDiscardedKey() {
+        return lastDiscardedKey;
+    }
+
     /**
      * Returns the maximum number of entries that can be kept in the cache.
      * 
@@ -359,6 +372,7 @@ public class CacheMap {
         int indexToRemove = (numDiscards++ & Integer.MAX_VALUE) % (bucketSize + 1);
 
         Object value = bucketValues[indexToRemove];
+        lastDiscardedKey = bucketKeys[indexToRemove];
 
         // If we emptied the bucket then remove its MRU/LRU entry.
 
@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.rsadapter.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.ws.rsadapter.AdapterUtil;
+
+/**
+ * <p>Tracks how the cached statements of a data source are used across all of its
+ * ManagedConnections. There is one tracker per ManagedConnectionFactory.</p>
+ *
+ * <p>Statement cache hits, misses, and discards are counted per statement key. Once per
+ * window, the tracker computes the working set (the number of distinct statements that
+ * were used during the window) and the statements that were used the most. The
+ * ManagedConnections use these to size their statement caches and to prepare the most
+ * used statements in advance when a new connection is created.</p>
+ *
+ * <p>Recording is lock free. Cache hits are by far the most frequent event, and the most
+ * used statements are shared by all of the connections, so only one in HIT_SAMPLE_RATE
+ * hits is recorded, and it counts for HIT_SAMPLE_RATE hits. This keeps the shared counters
+ * and the clock off the statement cache path. Misses and discards are always recorded.
+ * The number of tracked keys is bounded; when the limit is reached, keys that were not
+ * used during the last window are removed to make room.</p>
+ */
+public class StatementUsageTracker {
+    private static final TraceComponent tc = Tr.register(StatementUsageTracker.class, AdapterUtil.TRACE_GROUP, AdapterUtil.NLS_FILE);
+
+    /** Maximum number of statement keys that are tracked. */
+    static final int MAX_TRACKED_STATEMENTS = 1000;
+
+    /** Smallest statement cache size that the tracker recommends. */
+    static final int MIN_CACHE_SIZE = 10;
+
+    /** Maximum number of statements that are prepared in advance on a new connection. */
+    static final int PREPARE_COUNT = 10;
+
+    /** Length of the window over which the working set is computed. */
+    static final long WINDOW_MILLIS = 60000;
+
+    /** One in this many statement cache hits is recorded. Must be a power of 2. */
+    static final int HIT_SAMPLE_RATE = 16;
+
+    /**
+     * Usage counters of a single statement key.
+     */
+    static final class Usage {
+        final StatementCacheKey key;
+
+        /** Estimated number of hits, from the sampled hits. */
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong discards = new AtomicLong();
+
+        /** Estimated number of uses during the current window. */
+        final AtomicInteger windowUses = new AtomicInteger();
+
+        /** Number of uses during the last completed window. */
+        volatile int lastWindowUses;
+
+        Usage(StatementCacheKey key) {
+            this.key = key;
+        }
+    }
+
+    private static final Comparator<Usage> BY_LAST_WINDOW_USES = new Comparator<Usage>() {
+        @Override
+        public int compare(Usage u1, Usage u2) {
+            return u1.lastWindowUses > u2.lastWindowUses ? -1 : u1.lastWindowUses == u2.lastWindowUses ? 0 : 1;
+        }
+    };
+
+    private static final Comparator<Usage> BY_TOTAL_USES = new Comparator<Usage>() {
+        @Override
+        public int compare(Usage u1, Usage u2) {
+            long t1 = u1.hits.get() + u1.misses.get();
+            long t2 = u2.hits.get() + u2.misses.get();
+            return t1 > t2 ? -1 : t1 == t2 ? 0 : 1;
+        }
+    };
+
+    private final ConcurrentHashMap<StatementCacheKey, Usage> usage = new ConcurrentHashMap<StatementCacheKey, Usage>();
+
+    /** Ensures that only one thread at a time completes a window. */
+    private final AtomicBoolean completingWindow = new AtomicBoolean();
+
+    /** The time at which the current window ends. */
+    private volatile long windowEnd = System.currentTimeMillis() + WINDOW_MILLIS;
+
+    /** Number of distinct statements used during the last completed window, or -1 if no window has completed. */
+    private volatile int workingSetSize = -1;
+
+    /** The most used prepared statements of the last completed window, most used first. */
+    private volatile List<PSCacheKey> topStatements = Collections.emptyList();
+
+    /** Number of hits that each recorded hit counts for. */
+    private final int hitSampleRate;
+
+    /** Mask that selects one in hitSampleRate random numbers. */
+    private final int hitSampleMask;
+
+    public StatementUsageTracker() {
+        this(HIT_SAMPLE_RATE);
+    }
+
+    /**
+     * @param hitSampleRate one in this many hits is recorded. Must be a power of 2.
+     */
+    StatementUsageTracker(int hitSampleRate) {
+        this.hitSampleRate = hitSampleRate;
+        this.hitSampleMask = hitSampleRate - 1;
+    }
+
+    /**
+     * Records that a statement was found in the statement cache. Only a sample of the hits
+     * is recorded.
+     *
+     * @param key the statement cache key.
+     */
+    public final void hit(StatementCacheKey key) {
+        if ((ThreadLocalRandom.current().nextInt() & hitSampleMask) != 0)
+            return;
+
+        Usage u = getUsage(key);
+        if (u != null) {
+            u.hits.addAndGet(hitSampleRate);
+            u.windowUses.addAndGet(hitSampleRate);
+        }
+    }
+
+    /**
+     * Records that a statement was not found in the statement cache.
+     *
+     * @param key the statement cache key.
+     */
+    public final void miss(StatementCacheKey key) {
+        Usage u = getUsage(key);
+        if (u != null) {
+            u.misses.incrementAndGet();
+            u.windowUses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records that a statement was discarded from a statement cache to make room for another statement.
+     *
+     * @param key the statement cache key of the discarded statement.
+     */
+    public final void discard(StatementCacheKey key) {
+        Usage u = usage.get(key);
+        if (u != null)
+            u.discards.incrementAndGet();
+    }
+
+    /**
+     * Returns the statement cache size to use for a ManagedConnection. The size covers the
+     * working set of the last window with some room to spare, but is never larger than the
+     * configured size. The configured size is used until the first window completes.
+     *
+     * @param configuredSize the statementCacheSize of the data source.
+     * @return the statement cache size to use.
+     */
+    public final int getCacheSize(int configuredSize) {
+        int workingSet = workingSetSize;
+        if (configuredSize <= MIN_CACHE_SIZE || workingSet < 0)
+            return configuredSize;
+
+        // Round up to a multiple of 10 so that small changes in the working set don't
+        // cause the statement caches to be resized.
+        int size = (workingSet + workingSet / 4 + 9) / 10 * 10;
+        return Math.min(configuredSize, Math.max(MIN_CACHE_SIZE, size));
+    }
+
+    /**
+     * @return the most used prepared statements of the last completed window, most used first.
+     */
+    public final List<PSCacheKey> getTopStatements() {
+        return topStatements;
+    }
+
+    /**
+     * Returns the usage entry for a key, creating it if there is room.
+     * Completes the current window if it has ended.
+     *
+     * @param key the statement cache key.
+     * @return the usage entry, or null if the key is not tracked.
+     */
+    private Usage getUsage(StatementCacheKey key) {
+        if (System.currentTimeMillis() >= windowEnd && completingWindow.compareAndSet(false, true))
+            try {
+                completeWindow();
+            } finally {
+                completingWindow.set(false);
+            }
+
+        Usage u = usage.get(key);
+        if (u == null && usage.size() < MAX_TRACKED_STATEMENTS) {
+            u = new Usage(key);
+            Usage existing = usage.putIfAbsent(key, u);
+            if (existing != null)
+                u = existing;
+        }
+        return u;
+    }
+
+    /**
+     * Computes the working set and the most used statements of the window that has ended,
+     * and starts a new window.
+     */
+    void completeWindow() {
+        boolean full = usage.size() >= MAX_TRACKED_STATEMENTS;
+        List<Usage> used = new ArrayList<Usage>();
+        for (Usage u : usage.values()) {
+            int uses = u.lastWindowUses = u.windowUses.getAndSet(0);
+            if (uses > 0)
+                used.add(u);
+            else if (full)
+                usage.remove(u.key, u);
+        }
+
+        Collections.sort(used, BY_LAST_WINDOW_USES);
+        List<PSCacheKey> top = new ArrayList<PSCacheKey>(PREPARE_COUNT);
+        for (int i = 0; i < used.size() && top.size() < PREPARE_COUNT; i++) {
+            StatementCacheKey key = used.get(i).key;
+            // Only plain prepared statements can be prepared without knowing how the application created them.
+            if (key.getClass() == PSCacheKey.class && key.cacheKeySuffix == null)
+                top.add((PSCacheKey) key);
+        }
+
+        workingSetSize = used.size();
+        topStatements = Collections.unmodifiableList(top);
+        windowEnd = System.currentTimeMillis() + WINDOW_MILLIS;
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+            Tr.debug(this, tc, "statement working set", workingSetSize, "tracked", usage.size(), "top", top);
+    }
+
+    /**
+     * @return the number of statement keys that are tracked.
+     */
+    final int getTrackedCount() {
+        return usage.size();
+    }
+
+    /**
+     * Creates and returns a String listing the usage counts of each tracked statement, most
+     * used first. This method is provided only for tracing and error reporting purposes.
+     *
+     * @return nicely formatted text representing the statement usage.
+     */
+    public String display() {
+        List<Usage> all = new ArrayList<Usage>(usage.values());
+        Collections.sort(all, BY_TOTAL_USES);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(AdapterUtil.EOLN).append("Working set size:    ").append(workingSetSize);
+        sb.append(AdapterUtil.EOLN).append("Tracked statements:  ").append(all.size());
+        sb.append(AdapterUtil.EOLN).append("Hit sample rate:     1/").append(hitSampleRate);
+        sb.append(AdapterUtil.EOLN);
+        sb.append(AdapterUtil.EOLN).append("HITS MISSES DISCARDS STATEMENT");
+        sb.append(AdapterUtil.EOLN);
+        for (Usage u : all)
+            sb.append(u.hits.get()).append(' ').append(u.misses.get()).append(' ').append(u.discards.get())
+                            .append(' ').append(u.key).append(AdapterUtil.EOLN);
+        return sb.toString();
+    }
+}
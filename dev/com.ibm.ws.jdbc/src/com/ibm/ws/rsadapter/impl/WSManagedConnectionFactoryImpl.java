@@ -26,6 +26,7 @@ import java.sql.SQLException;
 import java.sql.SQLNonTransientConnectionException;
 import java.sql.Statement;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong; 
 import java.util.concurrent.atomic.AtomicReference; 
@@ -33,6 +34,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Properties;
 import java.util.Set;
@@ -171,6 +173,12 @@ public class WSManagedConnectionFactoryImpl extends WSManagedConnectionFactory i
      */
     final AtomicLong fatalErrorCount = new AtomicLong();
 
+    /**
+     * Tracks the use of cached statements across the ManagedConnections created by this
+     * ManagedConnectionFactory.
+     */
+    final StatementUsageTracker statementUsage = new StatementUsageTracker();
+
     /**
      * Oracle RAC has an issue when running XA transactions that span multiple Oracle nodes,
      * and one of the nodes fails after a prepare happens. Oracle switches to the working
@@ -274,6 +282,14 @@ public class WSManagedConnectionFactoryImpl extends WSManagedConnectionFactory i
      */
     public final transient Set<Method> vendorMethods = Collections.newSetFromMap(new ConcurrentHashMap<Method, Boolean>());
 
+    /**
+     * A mapping of main wrapper classes to the methods invoked on their dynamic wrappers,
+     * and from those to the equivalent methods on the main wrapper. Looking up the method
+     * on the main wrapper is costly compared to invoking it, so the result of the lookup
+     * is kept for subsequent invocations.
+     */
+    public final transient ConcurrentMap<Class<?>, Map<Method, Method>> wrapperMethods = new ConcurrentHashMap<Class<?>, Map<Method, Method>>();
+
     // Indicates whether the DataSource was used to get a connection.
     private boolean wasUsedToGetAConnection;
 
@@ -1245,6 +1261,7 @@ public class WSManagedConnectionFactoryImpl extends WSManagedConnectionFactory i
         info.append("Log Writer:", logWriter);
         info.append("Counter of fatal connection errors on ManagedConnections created by this MCF:",
                     fatalErrorCount); 
+        info.append("Statement usage:", statementUsage.display());
 
         return info.toStringArray();
     }
@@ -489,7 +489,7 @@ public class WSRdbManagedConnectionImpl extends WSManagedConnection implements
         synchronizePropertiesWithCRI();
 
         //Create the stmt cache if cachesize > 0
-        int statementCacheSize = config.statementCacheSize; 
+        int statementCacheSize = mcf1.statementUsage.getCacheSize(config.statementCacheSize); 
         if (statementCacheSize > 0) 
             statementCache = new CacheMap(statementCacheSize); 
 
@@ -505,6 +505,9 @@ public class WSRdbManagedConnectionImpl extends WSManagedConnection implements
         else if (helper.shouldTraceBeDisabled(this))
             helper.disableJdbcLogging(this);
 
+        if (statementCache != null)
+            prepareTopStatements();
+
         if (isTraceOn && tc.isEntryEnabled()) 
             Tr.exit(this, tc, "<init>");
     }
@@ -870,7 +873,7 @@ public class WSRdbManagedConnectionImpl extends WSManagedConnection implements
      * @return the statement cache. Null if caching is not enabled.
      */
     private CacheMap getStatementCache() {
-        int newSize = dsConfig.get().statementCacheSize; 
+        int newSize = mcf.statementUsage.getCacheSize(dsConfig.get().statementCacheSize); 
 
         // Check if statement cache is dynamically enabled
         if (statementCache == null && newSize > 0) {
@@ -2156,6 +2159,10 @@ public class WSRdbManagedConnectionImpl extends WSManagedConnection implements
     public final Object getStatement(StatementCacheKey key) 
     {
         Object stmt = statementCache.remove(key);
+        if (stmt == null)
+            mcf.statementUsage.miss(key);
+        else
+            mcf.statementUsage.hit(key);
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) { 
             if (stmt == null) {
                 Tr.debug(this, tc, "No Matching Prepared Statement found in cache");
@@ -2185,8 +2192,62 @@ public class WSRdbManagedConnectionImpl extends WSManagedConnection implements
         CacheMap cache = getStatementCache();
         Object discardedStatement = cache == null ? statement : statementCache.add(key, statement);
 
-        if (discardedStatement != null)
+        if (discardedStatement != null) {
+            if (discardedStatement != statement)
+                mcf.statementUsage.discard((StatementCacheKey) cache.getLastDiscardedKey());
             destroyStatement(discardedStatement);
+        }
+    }
+
+    /**
+     * Prepares the statements that were used the most across the data source during the last
+     * usage window and adds them to the statement cache, so that the first requests on a new
+     * connection find them in the cache. Only statements that match the holdability, isolation
+     * level, and schema of this connection are prepared. Errors are logged and otherwise ignored.
+     */
+    private void prepareTopStatements() {
+        final boolean isTraceOn = TraceComponent.isAnyTracingEnabled();
+
+        int holdability = getCurrentHoldability();
+        int isoLevel = helper.doesStatementCacheIsoLevel() ? currentTransactionIsolation : 0;
+        String schema = getCurrentSchema();
+        Integer queryTimeout = dsConfig.get().queryTimeout;
+
+        // Leave room in the cache for statements that are not among the most used.
+        int limit = statementCache.getMaxSize() / 2;
+        int count = 0;
+
+        for (PSCacheKey key : mcf.statementUsage.getTopStatements()) {
+            if (count >= limit)
+                break;
+            if (key.holdability != holdability || key.statementIsoLevel != isoLevel || !AdapterUtil.match(key.schema, schema))
+                continue;
+
+            Statement stmt = null;
+            try {
+                if (key.autoGeneratedKeys != 0)
+                    stmt = sqlConn.prepareStatement(key.sql, key.autoGeneratedKeys);
+                else if (key.holdability == 0) // holdability is not supported by the driver
+                    stmt = sqlConn.prepareStatement(key.sql, key.type, key.concurrency);
+                else
+                    stmt = sqlConn.prepareStatement(key.sql, key.type, key.concurrency, key.holdability);
+                if (queryTimeout != null)
+                    stmt.setQueryTimeout(queryTimeout);
+                Object discarded = statementCache.add(key, stmt);
+                if (discarded != null)
+                    destroyStatement(discarded);
+                count++;
+            } catch (SQLException x) {
+                FFDCFilter.processException(x, getClass().getName() + ".prepareTopStatements", "2250", this);
+                if (isTraceOn && tc.isDebugEnabled())
+                    Tr.debug(this, tc, "unable to prepare " + key, x);
+                if (stmt != null)
+                    destroyStatement(stmt);
+            }
+        }
+
+        if (isTraceOn && tc.isDebugEnabled())
+            Tr.debug(this, tc, "prepared " + count + " statements in advance");
     }
 
     /**
@@ -220,6 +220,9 @@ public abstract class WSJdbcProxyMethod
                                    });
 
             // The method "getClass" is not invoked on invocation handlers. 
+
+            // Row iteration methods of result sets are dispatched directly to the main wrapper.
+            WSJdbcResultSetProxyMethod.addTo(specialCaseMethods);
         } catch (NoSuchMethodException methX) {
             FFDCFilter.processException(methX, WSJdbcProxyMethod.class.getName() + ".<init>", "152");
             throw new ExceptionInInitializerError(methX);
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.rsadapter.jdbc;
+
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.ws.ffdc.FFDCFilter;
+
+/**
+ * <p>Special case methods for dynamic wrappers of vendor result set interfaces. The methods
+ * that applications use to iterate over rows (next, wasNull, and the common getters) are
+ * dispatched with a direct call to the WSJdbcResultSet main wrapper rather than with a
+ * reflective lookup and invocation.</p>
+ *
+ * <p>Failures get the same FFDC and exception mapping as failures of main wrapper methods
+ * that are invoked reflectively. When tracing is enabled, the invocation is handed back to
+ * WSJdbcWrapper so that the dynamic wrapper trace remains the same.</p>
+ */
+final class WSJdbcResultSetProxyMethod extends WSJdbcProxyMethod
+{
+    private static final int NEXT = 0,
+                    WAS_NULL = 1,
+                    GET_BIG_DECIMAL = 2,
+                    GET_BOOLEAN = 3,
+                    GET_BYTE = 4,
+                    GET_BYTES = 5,
+                    GET_DATE = 6,
+                    GET_DOUBLE = 7,
+                    GET_FLOAT = 8,
+                    GET_INT = 9,
+                    GET_LONG = 10,
+                    GET_OBJECT = 11,
+                    GET_SHORT = 12,
+                    GET_STRING = 13,
+                    GET_TIME = 14,
+                    GET_TIMESTAMP = 15;
+
+    /**
+     * Names of the getters, indexed by operation.
+     */
+    private static final String[] GETTERS = { null, null, "getBigDecimal", "getBoolean", "getByte", "getBytes", "getDate",
+                                              "getDouble", "getFloat", "getInt", "getLong", "getObject", "getShort",
+                                              "getString", "getTime", "getTimestamp" };
+
+    /**
+     * The operation that this special case performs.
+     */
+    private final int op;
+
+    private WSJdbcResultSetProxyMethod(int op) {
+        this.op = op;
+    }
+
+    /**
+     * Adds the special case methods for result sets to the specified map.
+     *
+     * @param specialCaseMethods map of special case methods.
+     * @throws NoSuchMethodException if a method is not found on the ResultSet interface.
+     */
+    static void addTo(Map<Method, WSJdbcProxyMethod> specialCaseMethods) throws NoSuchMethodException {
+        specialCaseMethods.put(ResultSet.class.getMethod("next"), new WSJdbcResultSetProxyMethod(NEXT));
+        specialCaseMethods.put(ResultSet.class.getMethod("wasNull"), new WSJdbcResultSetProxyMethod(WAS_NULL));
+
+        for (int op = GET_BIG_DECIMAL; op < GETTERS.length; op++) {
+            WSJdbcProxyMethod getter = new WSJdbcResultSetProxyMethod(op);
+            specialCaseMethods.put(ResultSet.class.getMethod(GETTERS[op], int.class), getter);
+            specialCaseMethods.put(ResultSet.class.getMethod(GETTERS[op], String.class), getter);
+        }
+    }
+
+    @Override
+    public Object invoke(WSJdbcWrapper wrapper, Object proxy, Method method, Object[] args) throws Throwable {
+        if (!(wrapper instanceof WSJdbcResultSet) || TraceComponent.isAnyTracingEnabled())
+            return wrapper.invokeReflectively(proxy, method, args);
+
+        try {
+            WSJdbcResultSet rs = (WSJdbcResultSet) wrapper;
+
+            switch (op) {
+                case NEXT:
+                    return rs.next();
+                case WAS_NULL:
+                    return rs.wasNull();
+            }
+
+            Object col = args[0];
+            boolean byIndex = col instanceof Integer;
+
+            switch (op) {
+                case GET_BIG_DECIMAL:
+                    return byIndex ? rs.getBigDecimal((Integer) col) : rs.getBigDecimal((String) col);
+                case GET_BOOLEAN:
+                    return byIndex ? rs.getBoolean((Integer) col) : rs.getBoolean((String) col);
+                case GET_BYTE:
+                    return byIndex ? rs.getByte((Integer) col) : rs.getByte((String) col);
+                case GET_BYTES:
+                    return byIndex ? rs.getBytes((Integer) col) : rs.getBytes((String) col);
+                case GET_DATE:
+                    return byIndex ? rs.getDate((Integer) col) : rs.getDate((String) col);
+                case GET_DOUBLE:
+                    return byIndex ? rs.getDouble((Integer) col) : rs.getDouble((String) col);
+                case GET_FLOAT:
+                    return byIndex ? rs.getFloat((Integer) col) : rs.getFloat((String) col);
+                case GET_INT:
+                    return byIndex ? rs.getInt((Integer) col) : rs.getInt((String) col);
+                case GET_LONG:
+                    return byIndex ? rs.getLong((Integer) col) : rs.getLong((String) col);
+                case GET_OBJECT:
+                    return byIndex ? rs.getObject((Integer) col) : rs.getObject((String) col);
+                case GET_SHORT:
+                    return byIndex ? rs.getShort((Integer) col) : rs.getShort((String) col);
+                case GET_STRING:
+                    return byIndex ? rs.getString((Integer) col) : rs.getString((String) col);
+                case GET_TIME:
+                    return byIndex ? rs.getTime((Integer) col) : rs.getTime((String) col);
+                default: // GET_TIMESTAMP
+                    return byIndex ? rs.getTimestamp((Integer) col) : rs.getTimestamp((String) col);
+            }
+        } catch (Throwable x) {
+            // Same as a failure of the main wrapper method on the reflective path.
+            FFDCFilter.processException(x, wrapper.getClass().getName() + ".invoke", "134", wrapper);
+            throw x instanceof SQLException ? WSJdbcUtil.mapException(wrapper, (SQLException) x) : x;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.sql.Wrapper;
 import java.util.HashMap;
 import java.util.Set; 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference; 
 
 import javax.sql.CommonDataSource;
@@ -161,6 +162,23 @@ public abstract class WSJdbcWrapper implements InvocationHandler, Wrapper
 
         // end of special cases
 
+        return invokeReflectively(proxy, method, args);
+    }
+
+    /**
+     * Invokes a method on behalf of a dynamic proxy by locating the equivalent method on the
+     * main wrapper, or, if there isn't one, on the underlying implementation object.
+     * Special case methods that only handle some of the invocations can use this method for
+     * the rest.
+     * 
+     * @param proxy the dynamic proxy.
+     * @param method the method being invoked.
+     * @param args the parameters to the method.
+     * 
+     * @return the result of invoking the operation on the underlying object.
+     * @throws Throwable if something goes wrong.
+     */
+    Object invokeReflectively(Object proxy, Method method, Object[] args) throws Throwable {
         TraceComponent tc = getTracer();
         if (tc.isEntryEnabled())
             Tr.entry(this, tc, toString(proxy, method), args);
@@ -177,7 +195,18 @@ public abstract class WSJdbcWrapper implements InvocationHandler, Wrapper
             try 
             {
                 // Locate the equivalent method on the main wrapper and invoke it.
-                Method wrappedMethod = getClass().getMethod(method.getName(), method.getParameterTypes());
+                Map<Method, Method> wrapperMethods = mcf.wrapperMethods.get(getClass());
+                if (wrapperMethods == null) {
+                    wrapperMethods = new ConcurrentHashMap<Method, Method>();
+                    Map<Method, Method> existing = mcf.wrapperMethods.putIfAbsent(getClass(), wrapperMethods);
+                    if (existing != null)
+                        wrapperMethods = existing;
+                }
+                Method wrappedMethod = wrapperMethods.get(method);
+                if (wrappedMethod == null) {
+                    wrappedMethod = getClass().getMethod(method.getName(), method.getParameterTypes());
+                    wrapperMethods.put(method, wrappedMethod);
+                }
                 result = wrappedMethod.invoke(this, args);
                 isOperationComplete = true;
             } catch (NoSuchMethodException methX) {
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.rsadapter.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for StatementUsageTracker and for the discarded keys of CacheMap.
+ */
+public class StatementUsageTrackerTest {
+
+    private static PSCacheKey ps(String sql) {
+        return new PSCacheKey(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, 0, 0, 0, null);
+    }
+
+    /**
+     * @return a tracker that records every hit.
+     */
+    private static StatementUsageTracker tracker() {
+        return new StatementUsageTracker(1);
+    }
+
+    /**
+     * Completes a window in which the given number of distinct statements were used.
+     */
+    private static StatementUsageTracker withWorkingSet(int workingSet) {
+        StatementUsageTracker tracker = tracker();
+        for (int i = 0; i < workingSet; i++)
+            tracker.miss(ps("SELECT " + i));
+        tracker.completeWindow();
+        return tracker;
+    }
+
+    @Test
+    public void testCacheSizeBeforeFirstWindow() {
+        StatementUsageTracker tracker = tracker();
+        tracker.miss(ps("SELECT 1"));
+        assertEquals(50, tracker.getCacheSize(50));
+        assertEquals(0, tracker.getCacheSize(0));
+    }
+
+    @Test
+    public void testCacheSizeRounding() {
+        // 125% of the working set, rounded up to a multiple of 10
+        assertEquals(20, withWorkingSet(10).getCacheSize(100)); // 12.5
+        assertEquals(30, withWorkingSet(17).getCacheSize(100)); // 21.25
+        assertEquals(30, withWorkingSet(24).getCacheSize(100)); // 30
+        assertEquals(40, withWorkingSet(25).getCacheSize(100)); // 31.25
+        assertEquals(50, withWorkingSet(40).getCacheSize(100)); // 50
+    }
+
+    @Test
+    public void testCacheSizeBounds() {
+        // never below the minimum
+        assertEquals(StatementUsageTracker.MIN_CACHE_SIZE, withWorkingSet(0).getCacheSize(100));
+        assertEquals(StatementUsageTracker.MIN_CACHE_SIZE, withWorkingSet(3).getCacheSize(100));
+        // never above the configured size
+        assertEquals(35, withWorkingSet(40).getCacheSize(35));
+        // small configured sizes are used as is
+        assertEquals(StatementUsageTracker.MIN_CACHE_SIZE, withWorkingSet(40).getCacheSize(StatementUsageTracker.MIN_CACHE_SIZE));
+        assertEquals(5, withWorkingSet(40).getCacheSize(5));
+        assertEquals(0, withWorkingSet(40).getCacheSize(0));
+    }
+
+    @Test
+    public void testWindowRollover() {
+        StatementUsageTracker tracker = tracker();
+        PSCacheKey a = ps("SELECT A"), b = ps("SELECT B"), c = ps("SELECT C");
+
+        // window 1: b is used the most
+        tracker.miss(a);
+        tracker.miss(b);
+        tracker.hit(b);
+        tracker.hit(b);
+        tracker.miss(c);
+        tracker.hit(c);
+        tracker.completeWindow();
+        assertEquals(Arrays.asList(b, c, a), tracker.getTopStatements());
+        assertEquals(3, tracker.getTrackedCount());
+
+        // window 2: only a is used, the others are still tracked
+        tracker.hit(a);
+        tracker.completeWindow();
+        assertEquals(Collections.singletonList(a), tracker.getTopStatements());
+        assertEquals(3, tracker.getTrackedCount());
+        assertEquals(StatementUsageTracker.MIN_CACHE_SIZE, tracker.getCacheSize(100));
+
+        // window 3: nothing is used
+        tracker.completeWindow();
+        assertTrue(tracker.getTopStatements().isEmpty());
+        assertEquals(StatementUsageTracker.MIN_CACHE_SIZE, tracker.getCacheSize(100));
+    }
+
+    @Test
+    public void testTopStatements() {
+        StatementUsageTracker tracker = tracker();
+        PSCacheKey withSuffix = ps("SELECT SUFFIX");
+        withSuffix.cacheKeySuffix = "suffix";
+        CSCacheKey callable = new CSCacheKey("CALL PROC", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, 0, 0, null);
+        for (int i = 0; i < 100; i++) {
+            tracker.hit(withSuffix);
+            tracker.hit(callable);
+        }
+        for (int i = 0; i < StatementUsageTracker.PREPARE_COUNT + 5; i++)
+            for (int j = 0; j <= i; j++)
+                tracker.hit(ps("SELECT " + i));
+        tracker.completeWindow();
+
+        // most used first, only plain prepared statements, at most PREPARE_COUNT
+        List<PSCacheKey> top = tracker.getTopStatements();
+        assertEquals(StatementUsageTracker.PREPARE_COUNT, top.size());
+        for (int i = 0; i < top.size(); i++)
+            assertEquals(ps("SELECT " + (StatementUsageTracker.PREPARE_COUNT + 4 - i)), top.get(i));
+        // but all of them are in the working set of 17
+        assertEquals(30, tracker.getCacheSize(100));
+    }
+
+    @Test
+    public void testEvictionAtMaxTrackedStatements() {
+        StatementUsageTracker tracker = tracker();
+        for (int i = 0; i < StatementUsageTracker.MAX_TRACKED_STATEMENTS; i++)
+            tracker.miss(ps("SELECT " + i));
+        assertEquals(StatementUsageTracker.MAX_TRACKED_STATEMENTS, tracker.getTrackedCount());
+
+        // no room for another key
+        PSCacheKey extra = ps("SELECT EXTRA");
+        tracker.miss(extra);
+        tracker.hit(extra);
+        tracker.discard(extra);
+        assertEquals(StatementUsageTracker.MAX_TRACKED_STATEMENTS, tracker.getTrackedCount());
+
+        // keys that are used during a window are kept
+        tracker.completeWindow();
+        assertEquals(StatementUsageTracker.MAX_TRACKED_STATEMENTS, tracker.getTrackedCount());
+
+        // when the tracker is full, keys that were not used during the window are removed
+        tracker.hit(ps("SELECT 7"));
+        tracker.completeWindow();
+        assertEquals(1, tracker.getTrackedCount());
+        assertEquals(Collections.singletonList(ps("SELECT 7")), tracker.getTopStatements());
+
+        tracker.miss(extra);
+        assertEquals(2, tracker.getTrackedCount());
+    }
+
+    @Test
+    public void testHitSampling() {
+        StatementUsageTracker tracker = new StatementUsageTracker();
+        PSCacheKey a = ps("SELECT A");
+        int hits = 100 * StatementUsageTracker.HIT_SAMPLE_RATE;
+        for (int i = 0; i < hits; i++)
+            tracker.hit(a);
+        tracker.completeWindow();
+
+        assertEquals(Collections.singletonList(a), tracker.getTopStatements());
+        String display = tracker.display();
+        assertTrue(display, display.contains("1/" + StatementUsageTracker.HIT_SAMPLE_RATE));
+    }
+
+    /**
+     * Key whose hash code is chosen by the test, so that keys share a bucket.
+     */
+    private static class Key {
+        private final String name;
+        private final int hash;
+
+        Key(String name, int hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @Test
+    public void testLastDiscardedKeyLRU() {
+        CacheMap cache = new CacheMap(3);
+        assertNull(cache.getLastDiscardedKey());
+
+        Key[] keys = new Key[4];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = new Key("key" + i, i);
+        for (int i = 0; i < 3; i++)
+            assertNull(cache.add(keys[i], "value" + i));
+        assertNull(cache.getLastDiscardedKey());
+
+        // the least recently used entry makes room
+        assertEquals("value0", cache.add(keys[3], "value3"));
+        assertSame(keys[0], cache.getLastDiscardedKey());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testLastDiscardedKeyFullBucket() {
+        CacheMap cache = new CacheMap(100);
+
+        // 6 keys in the same bucket, which holds 5
+        Key[] keys = new Key[6];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = new Key("key" + i, 7);
+        for (int i = 0; i < 5; i++)
+            assertNull(cache.add(keys[i], "value" + i));
+
+        Object discarded = cache.add(keys[5], "value5");
+        Object discardedKey = cache.getLastDiscardedKey();
+        assertEquals("value" + discardedKey.toString().substring(3), discarded);
+        assertNull(cache.remove(discardedKey));
+    }
+}
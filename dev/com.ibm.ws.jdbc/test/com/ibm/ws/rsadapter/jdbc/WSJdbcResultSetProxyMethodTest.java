@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.rsadapter.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.objenesis.ObjenesisStd;
+
+import com.ibm.ws.rsadapter.DSConfig;
+import com.ibm.ws.rsadapter.impl.WSManagedConnectionFactoryImpl;
+
+/**
+ * Unit tests for the result set methods that dynamic wrappers dispatch directly to the
+ * main wrapper, and for the methods that are still located and invoked reflectively.
+ */
+public class WSJdbcResultSetProxyMethodTest {
+
+    /**
+     * A vendor result set interface, as an application would unwrap it.
+     */
+    public interface VendorResultSet extends ResultSet {}
+
+    /**
+     * Failure raised by the JDBC driver for the next operation, if any.
+     */
+    private Throwable failure;
+
+    private WSManagedConnectionFactoryImpl mcf;
+    private WSJdbcResultSet rsWrapper;
+    private VendorResultSet proxy;
+
+    /**
+     * Creates a main wrapper for the specified result set, with just enough of a data source
+     * and a statement behind it to invoke operations.
+     */
+    static WSJdbcResultSet createWrapper(ResultSet rsImpl) throws Exception {
+        ObjenesisStd objenesis = new ObjenesisStd();
+        WSManagedConnectionFactoryImpl mcf = (WSManagedConnectionFactoryImpl) objenesis.newInstance(WSManagedConnectionFactoryImpl.class);
+        setField(mcf, "vendorMethods", Collections.newSetFromMap(new ConcurrentHashMap<Method, Boolean>()));
+        setField(mcf, "wrapperMethods", new ConcurrentHashMap<Class<?>, Map<Method, Method>>());
+
+        WSJdbcStatement stmt = new WSJdbcStatement();
+        stmt.mcf = mcf;
+        stmt.dsConfig = new AtomicReference<DSConfig>((DSConfig) objenesis.newInstance(DSConfig.class));
+        return new WSJdbcResultSet(rsImpl, stmt);
+    }
+
+    /**
+     * Creates a dynamic wrapper for the main wrapper, as unwrap does.
+     */
+    static VendorResultSet createProxy(WSJdbcResultSet rsWrapper) {
+        return (VendorResultSet) Proxy.newProxyInstance(VendorResultSet.class.getClassLoader(),
+                                                        new Class<?>[] { VendorResultSet.class },
+                                                        rsWrapper);
+    }
+
+    private static void setField(Object o, String name, Object value) throws Exception {
+        Field field = o.getClass().getField(name);
+        field.setAccessible(true);
+        field.set(o, value);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        ResultSet rsImpl = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                                                              new Class<?>[] { ResultSet.class },
+                                                              new InvocationHandler() {
+                                                                  @Override
+                                                                  public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+                                                                      if (failure != null)
+                                                                          throw failure;
+                                                                      String name = method.getName();
+                                                                      if ("next".equals(name) || "wasNull".equals(name))
+                                                                          return true;
+                                                                      if ("getInt".equals(name))
+                                                                          return args[0] instanceof Integer ? (Integer) args[0] * 10 : 20;
+                                                                      if ("getString".equals(name))
+                                                                          return "value of " + args[0];
+                                                                      if ("getFetchSize".equals(name))
+                                                                          return 50;
+                                                                      if ("getObject".equals(name))
+                                                                          return null;
+                                                                      throw new UnsupportedOperationException(name);
+                                                                  }
+                                                              });
+        rsWrapper = createWrapper(rsImpl);
+        mcf = rsWrapper.mcf;
+        proxy = createProxy(rsWrapper);
+    }
+
+    @Test
+    public void testDirectDispatch() throws Exception {
+        assertTrue(proxy.next());
+        assertEquals(10, proxy.getInt(1));
+        assertEquals(20, proxy.getInt("col"));
+        assertEquals("value of 2", proxy.getString(2));
+        assertEquals("value of col", proxy.getString("col"));
+        assertNull(proxy.getObject(3));
+        assertTrue(proxy.wasNull());
+
+        // none of the above were looked up on the main wrapper
+        assertNull(mcf.wrapperMethods.get(WSJdbcResultSet.class));
+        assertTrue(mcf.vendorMethods.isEmpty());
+    }
+
+    @Test
+    public void testDirectDispatchIsSpecialCase() throws Exception {
+        assertNotNull(WSJdbcProxyMethod.getSpecialCase(ResultSet.class.getMethod("next")));
+        assertNotNull(WSJdbcProxyMethod.getSpecialCase(ResultSet.class.getMethod("getInt", int.class)));
+        assertNotNull(WSJdbcProxyMethod.getSpecialCase(ResultSet.class.getMethod("getInt", String.class)));
+        assertNull(WSJdbcProxyMethod.getSpecialCase(ResultSet.class.getMethod("getFetchSize")));
+    }
+
+    @Test
+    public void testDirectDispatchSQLException() throws Throwable {
+        SQLException x = new SQLException("failed", "42000", 1);
+        failure = x;
+        try {
+            proxy.getInt(1);
+            fail("exception not raised");
+        } catch (SQLException sqlX) {
+            // not mapped to anything else, since there is no helper
+            assertSame(x, sqlX);
+        }
+
+        // the same as on the reflective path
+        Method getInt = ResultSet.class.getMethod("getInt", int.class);
+        try {
+            rsWrapper.invokeReflectively(proxy, getInt, new Object[] { 1 });
+            fail("exception not raised");
+        } catch (SQLException sqlX) {
+            assertSame(x, sqlX);
+        }
+    }
+
+    @Test
+    public void testDirectDispatchRuntimeException() throws Exception {
+        IllegalStateException x = new IllegalStateException("failed");
+        failure = x;
+        try {
+            proxy.next();
+            fail("exception not raised");
+        } catch (IllegalStateException runtimeX) {
+            assertSame(x, runtimeX);
+        }
+    }
+
+    @Test
+    public void testReflectiveDispatchCachedPerWrapperClass() throws Exception {
+        assertEquals(50, proxy.getFetchSize());
+
+        Method getFetchSize = ResultSet.class.getMethod("getFetchSize");
+        Map<Method, Method> methods = mcf.wrapperMethods.get(WSJdbcResultSet.class);
+        assertNotNull(methods);
+        assertEquals(WSJdbcResultSet.class.getMethod("getFetchSize"), methods.get(getFetchSize));
+        assertFalse(mcf.vendorMethods.contains(getFetchSize));
+
+        // found in the cache the next time
+        assertEquals(50, proxy.getFetchSize());
+        assertEquals(1, mcf.wrapperMethods.size());
+        assertEquals(1, methods.size());
+    }
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.rsadapter.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.Arrays;
+
+import org.junit.Ignore;
+
+import com.ibm.ws.rsadapter.jdbc.WSJdbcResultSetProxyMethodTest.VendorResultSet;
+
+/**
+ * Compares the time taken by result set getters on a dynamic wrapper when they are
+ * dispatched directly to the main wrapper with the time taken when they are located
+ * and invoked reflectively. Run the main method to produce the results.
+ */
+@Ignore
+public class WSJdbcResultSetProxyThroughputTest {
+
+    private final WSJdbcResultSet rsWrapper;
+
+    private final VendorResultSet proxy;
+
+    private final Method getInt;
+
+    private final Object[] column = new Object[] { 1 };
+
+    private long sum;
+
+    WSJdbcResultSetProxyThroughputTest() throws Exception {
+        ResultSet rsImpl = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                                                              new Class<?>[] { ResultSet.class },
+                                                              new InvocationHandler() {
+                                                                  @Override
+                                                                  public Object invoke(Object p, Method method, Object[] args) {
+                                                                      return 1;
+                                                                  }
+                                                              });
+        rsWrapper = WSJdbcResultSetProxyMethodTest.createWrapper(rsImpl);
+        proxy = WSJdbcResultSetProxyMethodTest.createProxy(rsWrapper);
+        getInt = ResultSet.class.getMethod("getInt", int.class);
+    }
+
+    /**
+     * Invoke getInt on the dynamic wrapper repeatedly.
+     *
+     * @param direct indicates whether to use direct dispatch or the reflective path.
+     * @param iterations number of invocations.
+     * @return elapsed time in nanoseconds.
+     */
+    public long throughput(boolean direct, long iterations) throws Throwable {
+        long startTime = System.nanoTime();
+        if (direct)
+            for (long i = iterations; i > 0; i--)
+                sum += proxy.getInt(1);
+        else
+            for (long i = iterations; i > 0; i--)
+                sum += (Integer) rsWrapper.invokeReflectively(proxy, getInt, column);
+        return System.nanoTime() - startTime;
+    }
+
+    static void results(String testHeader, long[] times) {
+        long total = 0;
+        for (long time : times)
+            total += time;
+        System.out.println(testHeader);
+        System.out.println("   Times = " + Arrays.toString(times));
+        System.out.println(" average = " + total / times.length + " (" + total / times.length / 1000000 + " ms)");
+
+        Arrays.sort(times);
+        System.out.println("     min = " + times[0]);
+        System.out.println("     max = " + times[times.length - 1]);
+        System.out.println();
+    }
+
+    public static void main(String[] args) throws Throwable {
+        final long iterations = 10000000;
+        final int warmups = 5;
+        final int loopCount = 10;
+
+        WSJdbcResultSetProxyThroughputTest test = new WSJdbcResultSetProxyThroughputTest();
+        long[] times = new long[loopCount];
+
+        for (int w = 0; w < warmups + 1; w++)
+            for (int i = 0; i < loopCount; i++)
+                times[i] = test.throughput(false, iterations);
+        results("Dynamic wrapper getInt, reflective", times);
+
+        for (int w = 0; w < warmups + 1; w++)
+            for (int i = 0; i < loopCount; i++)
+                times[i] = test.throughput(true, iterations);
+        results("Dynamic wrapper getInt, direct", times);
+
+        System.out.println("(checksum " + test.sum + ")");
+    }
+}
@@ -15,4 +15,60 @@ package com.ibm.websphere.monitor.meters;
  */
 public interface ThreadPoolMXBean extends com.ibm.websphere.monitor.jmx.ThreadPoolMXBean {
 
+    /**
+     * Retrieves the value of the read-only attribute Throughput, which is the number of tasks per second
+     * that the pool completed during the most recent interval of the thread pool controller.
+     * 
+     * @return tasks completed per second
+     */
+    public double getThroughput();
+
+    /**
+     * Retrieves the value of the read-only attribute QueueDepth, which is the average number of tasks
+     * waiting for a thread during the most recent interval.
+     * 
+     * @return average queue depth
+     */
+    public double getQueueDepth();
+
+    /**
+     * Retrieves the value of the read-only attribute QueueWaitTime, which is the estimated time in
+     * milliseconds that tasks waited for a thread during the most recent interval.
+     * 
+     * @return queue wait time in milliseconds
+     */
+    public double getQueueWaitTime();
+
+    /**
+     * Retrieves the value of the read-only attribute TaskCpuTime, which is the average CPU time in
+     * milliseconds of the tasks completed during the most recent interval, or -1 if it is not measured.
+     * 
+     * @return task CPU time in milliseconds
+     */
+    public double getTaskCpuTime();
+
+    /**
+     * Retrieves the value of the read-only attribute TaskBlockedTime, which is the average time in
+     * milliseconds that the tasks completed during the most recent interval were not running on a CPU,
+     * or -1 if it is not measured.
+     * 
+     * @return task blocked time in milliseconds
+     */
+    public double getTaskBlockedTime();
+
+    /**
+     * Retrieves the value of the read-only attribute BackendSaturated, which indicates that adding
+     * threads stopped raising throughput while tasks were waiting for a thread.
+     * 
+     * @return true if the pool is not growing because the tasks are waiting on a saturated resource
+     */
+    public boolean isBackendSaturated();
+
+    /**
+     * Retrieves the value of the read-only attribute PoolAdjustment, which is the number of threads
+     * added to (or, if negative, removed from) the pool at the end of the most recent interval.
+     * 
+     * @return change to the pool size
+     */
+    public int getPoolAdjustment();
 }
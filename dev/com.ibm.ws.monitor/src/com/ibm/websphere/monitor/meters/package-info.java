@@ -14,9 +14,9 @@
  * <p>
  */
 /**
- * @version 1.0
+ * @version 1.1
  */
-@org.osgi.annotation.versioning.Version("1.0")
+@org.osgi.annotation.versioning.Version("1.1")
 @Trivial
 package com.ibm.websphere.monitor.meters;
 
@@ -44,4 +44,41 @@ public class ThreadPoolStats extends Meter implements ThreadPoolMXBean {
     public int getActiveThreads() {
         return _tpHelper.getActiveThreads();
     }
+
+    @Override
+    public double getThroughput() {
+        return _tpHelper.getDouble("getThroughput");
+    }
+
+    @Override
+    public double getQueueDepth() {
+        return _tpHelper.getDouble("getQueueDepth");
+    }
+
+    @Override
+    public double getQueueWaitTime() {
+        return _tpHelper.getDouble("getQueueWaitTime");
+    }
+
+    @Override
+    public double getTaskCpuTime() {
+        return _tpHelper.getDouble("getTaskCpuTime");
+    }
+
+    @Override
+    public double getTaskBlockedTime() {
+        return _tpHelper.getDouble("getTaskBlockedTime");
+    }
+
+    @Override
+    public boolean isBackendSaturated() {
+        Object value = _tpHelper.invoke("isBackendSaturated");
+        return value instanceof Boolean && ((Boolean) value).booleanValue();
+    }
+
+    @Override
+    public int getPoolAdjustment() {
+        Object value = _tpHelper.invoke("getPoolAdjustment");
+        return value instanceof Integer ? ((Integer) value).intValue() : 0;
+    }
 }
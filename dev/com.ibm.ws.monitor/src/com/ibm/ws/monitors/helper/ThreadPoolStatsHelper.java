@@ -11,6 +11,8 @@
 package com.ibm.ws.monitors.helper;
 
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
@@ -31,6 +33,11 @@ public class ThreadPoolStatsHelper {
     private Method met_getPoolSize;
     private Method met_getActiveCount;
 
+    /**
+     * Methods that report the inputs to the most recent thread pool controller decision.
+     */
+    private final Map<String, Method> intervalMethods = new HashMap<String, Method>();
+
     private final Object objThreadPoolExecutorImpl;
 
     /**
@@ -44,6 +51,12 @@ public class ThreadPoolStatsHelper {
                 met_getPoolSize = method;
             } else if (method.getName().equals("getActiveCount")) {
                 met_getActiveCount = method;
+            } else if (method.getParameterTypes().length == 0
+                       && (method.getName().equals("getThroughput") || method.getName().equals("getQueueDepth")
+                           || method.getName().equals("getQueueWaitTime") || method.getName().equals("getTaskCpuTime")
+                           || method.getName().equals("getTaskBlockedTime") || method.getName().equals("isBackendSaturated")
+                           || method.getName().equals("getPoolAdjustment"))) {
+                intervalMethods.put(method.getName(), method);
             }
         }
     }
@@ -97,4 +110,34 @@ public class ThreadPoolStatsHelper {
         return t.intValue();
     }
 
+    /**
+     * Invoke one of the methods that report the inputs to the most recent thread pool controller decision.
+     *
+     * @param methodName name of the method
+     * @return the value, or null if the method is not available
+     */
+    Object invoke(String methodName) {
+        Method method = intervalMethods.get(methodName);
+        if (method == null) {
+            return null;
+        }
+        try {
+            return method.invoke(objThreadPoolExecutorImpl);
+        } catch (Exception e) {
+            if (tc.isDebugEnabled()) {
+                Tr.debug(tc, "Failed to Invoke " + methodName + " Method on ThreadPoolExecutorImpl. Error=" + e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @param methodName name of a method that returns a double
+     * @return the value, or -1 if the method is not available
+     */
+    double getDouble(String methodName) {
+        Object value = invoke(methodName);
+        return value instanceof Double ? ((Double) value).doubleValue() : -1;
+    }
+
 }
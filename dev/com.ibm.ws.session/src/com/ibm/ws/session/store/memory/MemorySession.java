@@ -26,6 +26,7 @@ import java.util.logging.Level;
 
 import com.ibm.ws.session.SessionManagerConfig;
 import com.ibm.ws.session.utils.LoggingUtil;
+import com.ibm.ws.session.utils.TimingWheel;
 import com.ibm.wsspi.session.ISession;
 import com.ibm.wsspi.session.IStore;
 import com.ibm.wsspi.session.IStoreCallback;
@@ -77,6 +78,8 @@ public class MemorySession implements ISession {
     private static final int GET_SWAPPABLE_DATA = 7;
 
     private boolean _removeAttrOnInvalidate = false;
+    // the entry of this session in the expiration wheel of the in-memory store
+    final TimingWheel.Timer _invalidationTimer = new TimingWheel.Timer(this);
     private static final String methodNames[] = { "invalidate", "getAttribute", "setAttribute", "removeAttribute", "getListenerAttributeNames",
                                                  "updateLastAccessTime", "internalInvalidate", "getSwappableData" };
 
@@ -436,6 +439,7 @@ public class MemorySession implements ISession {
         } else {
             _maxInactiveInterval = maxInactiveInterval;
         }
+        scheduleInvalidation();
     }
 
     public void setMaxInactiveIntervalForInvalidateAll(int maxInactiveInterval) {
@@ -444,6 +448,16 @@ public class MemorySession implements ISession {
         } else {
             //truly setting it to 0 for InvalidateAll
             _maxInactiveInterval = 0;
+            scheduleInvalidation();
+        }
+    }
+
+    /*
+     * Lets the in-memory store know when this session will time out
+     */
+    private void scheduleInvalidation() {
+        if (_store instanceof MemoryStore) {
+            ((MemoryStore) _store).scheduleInvalidation(this);
         }
     }
 
@@ -14,6 +14,8 @@ package com.ibm.ws.session.store.memory;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.logging.Level;
@@ -25,6 +27,7 @@ import com.ibm.ws.session.SessionManagerConfig;
 import com.ibm.ws.session.SessionManagerRegistry;
 import com.ibm.ws.session.SessionStatistics;
 import com.ibm.ws.session.utils.LoggingUtil;
+import com.ibm.ws.session.utils.TimingWheel;
 import com.ibm.wsspi.session.IGenericSessionManager;
 import com.ibm.wsspi.session.ILoader;
 import com.ibm.wsspi.session.ISession;
@@ -38,7 +41,11 @@ import com.ibm.wsspi.session.ITimer;
  */
 public class MemoryStore implements IStore {
 
-    public HashMap _sessions = null;
+    public Map _sessions = null;
+
+    // expiration times of the in-memory sessions, so that runInvalidation only visits the sessions that are due
+    protected TimingWheel _expirations = null;
+    private static final long EXPIRATION_TICK_MILLIS = 1000;
 
     // anonymous user string
     public static final String ANONYMOUS_USER = "anonymous";
@@ -95,6 +102,7 @@ public class MemoryStore implements IStore {
                 overflowSession.setIsValid(false);
             }
             _sessions = new SessionSimpleHashMap(this, _initialTableSize, _allowOverflow);
+            _expirations = new TimingWheel(EXPIRATION_TICK_MILLIS, System.currentTimeMillis());
         }
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
             appNameForLogging = " AppName=" + _storeId;
@@ -129,6 +137,7 @@ public class MemoryStore implements IStore {
                 overflowSession.setIsValid(false);
             }
             _sessions = new SessionSimpleHashMap(this, _initialTableSize, _allowOverflow);
+            _expirations = new TimingWheel(EXPIRATION_TICK_MILLIS, System.currentTimeMillis());
         }
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
             appNameForLogging = " AppName=" + _storeId;
@@ -397,6 +406,27 @@ public class MemoryStore implements IStore {
         Object removedEntry = _sessions.remove(id);
         if (removedEntry != null) {
             _storeCallback.sessionLiveCountDec(removedEntry);
+            if (_expirations != null) {
+                _expirations.cancel(((MemorySession) removedEntry)._invalidationTimer);
+            }
+        }
+    }
+
+    /*
+     * Called when the max inactive interval of a session changes, so that
+     * runInvalidation checks the session when it is due to time out.
+     * Sessions that are accessed are not rescheduled here; runInvalidation
+     * reschedules them when it finds they have not timed out yet.
+     */
+    void scheduleInvalidation(MemorySession s) {
+        if (_expirations == null || s.isOverflow()) {
+            return;
+        }
+        int maxInactiveInterval = s.getMaxInactiveInterval();
+        if (maxInactiveInterval == -1) {
+            _expirations.cancel(s._invalidationTimer);
+        } else {
+            _expirations.schedule(s._invalidationTimer, s.getCurrentAccessTime() + 1000 * (long) maxInactiveInterval);
         }
     }
 
@@ -416,7 +446,6 @@ public class MemoryStore implements IStore {
          * } else {
          */
         long nowTime = System.currentTimeMillis();
-        Iterator iter = _sessions.keySet().iterator();
         try {
             //setThreadContext threw a NPE because we were trying to get the config from within getModuleMetaData and it was returning null
             //this only happens after the app has been shutdown.  There was a small timing window where this was possible.
@@ -439,62 +468,40 @@ public class MemoryStore implements IStore {
                 }
                 return;
             }
-            while (iter.hasNext()) {
-                String key = (String) iter.next();
-                ISession s = (ISession) _sessions.get(key);
-
-                // sync on the session and check if its active...
-                if (s != null) {
+            if (_expirations != null) {
+                // only the sessions whose expiration time has passed
+                List due = _expirations.expire(nowTime);
+                if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
+                    String message = due.size() + " sessions due, " + _expirations.size() + " scheduled" + appNameForLogging;
+                    LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[RUN_INVALIDATION], message);
+                }
+                for (int i = 0; i < due.size(); i++) {
+                    MemorySession s = (MemorySession) due.get(i);
+                    // skip sessions that were removed after they were scheduled
+                    if (_sessions.get(s.getId()) != s) {
+                        continue;
+                    }
                     synchronized (s) {
-                        if (s.isValid()) {
-                            if (s.getMaxInactiveInterval() != -1) {
-                                long currentAccessTime = s.getCurrentAccessTime(); // currentAccessTime
-                                                                                   // updated on
-                                                                                   // session
-                                                                                   // access
-                                                                                   // lastAccessedTime
-                                                                                   // updated at
-                                                                                   // releaseSession
-                                long maxinact = 1000 * (long) s.getMaxInactiveInterval();
-                                boolean active = s.getRefCount() > 0;
-                                if (_isApplicationSessionStore) {
-                                    // the RefCount is not correct when dealing with an
-                                    // applicationSessionStore
-                                    s.setRefCount(0);
-                                    active = false;
-                                }
-                                boolean timedOut = (currentAccessTime <= nowTime - maxinact);
-                                /*
-                                 * invalidate if:
-                                 * session has timedOut AND (is not active OR (the Invalidation
-                                 * Multiple has not been set to 0
-                                 * and the session is that many times the invalidation interval)
-                                 * 
-                                 * The default value for the invalidation interval is 3.
-                                 * 
-                                 * PK03711 removed check for active and always invalidated
-                                 * timedout sessions for v6.1 and earlier
-                                 * v7 CTS defect 391577 forced us to put this code back, so we
-                                 * introduced the InvalidateIfActive property
-                                 * In the service stream, the ForceSessionInvalidationMultiple was
-                                 * used, so we are using the same property
-                                 */
-                                if ((timedOut)
-                                    && ((!active) || ((_smc.getForceSessionInvalidationMultiple() != 0) && (currentAccessTime <= nowTime
-                                                                                                                                 - (_smc.getForceSessionInvalidationMultiple() * maxinact))))) {
-
-                                    _storeCallback.sessionInvalidatedByTimeout(s);
-                                    if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-                                        String message = "Going to invalidate session with id=" + s.getId();
-                                        LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[RUN_INVALIDATION], message);
-                                    }
-                                    s.invalidate();
-                                }
-                            }
-                        } // isValid
+                        long nextCheckTime = invalidateIfTimedOut(s, nowTime);
+                        if (nextCheckTime != -1) {
+                            _expirations.schedule(s._invalidationTimer, nextCheckTime);
+                        }
                     }
                 }
-            } // end "while"
+            } else {
+                Iterator iter = _sessions.keySet().iterator();
+                while (iter.hasNext()) {
+                    String key = (String) iter.next();
+                    ISession s = (ISession) _sessions.get(key);
+
+                    // sync on the session and check if its active...
+                    if (s != null) {
+                        synchronized (s) {
+                            invalidateIfTimedOut(s, nowTime);
+                        }
+                    }
+                } // end "while"
+            }
         } finally {
             // PK99859: Unset the thread context
             unsetThreadContext();
@@ -504,6 +511,66 @@ public class MemoryStore implements IStore {
         }
     }
 
+    /*
+     * Invalidates the session if it has timed out. The caller must be synchronized on the session.
+     * Returns the time at which the session should be checked again, or -1 if it
+     * was invalidated or does not time out.
+     */
+    private long invalidateIfTimedOut(ISession s, long nowTime) {
+        if (!s.isValid() || s.getMaxInactiveInterval() == -1) {
+            return -1;
+        }
+        long currentAccessTime = s.getCurrentAccessTime(); // currentAccessTime
+                                                           // updated on
+                                                           // session
+                                                           // access
+                                                           // lastAccessedTime
+                                                           // updated at
+                                                           // releaseSession
+        long maxinact = 1000 * (long) s.getMaxInactiveInterval();
+        boolean active = s.getRefCount() > 0;
+        if (_isApplicationSessionStore) {
+            // the RefCount is not correct when dealing with an
+            // applicationSessionStore
+            s.setRefCount(0);
+            active = false;
+        }
+        boolean timedOut = (currentAccessTime <= nowTime - maxinact);
+        /*
+         * invalidate if:
+         * session has timedOut AND (is not active OR (the Invalidation
+         * Multiple has not been set to 0
+         * and the session is that many times the invalidation interval)
+         * 
+         * The default value for the invalidation interval is 3.
+         * 
+         * PK03711 removed check for active and always invalidated
+         * timedout sessions for v6.1 and earlier
+         * v7 CTS defect 391577 forced us to put this code back, so we
+         * introduced the InvalidateIfActive property
+         * In the service stream, the ForceSessionInvalidationMultiple was
+         * used, so we are using the same property
+         */
+        if ((timedOut)
+            && ((!active) || ((_smc.getForceSessionInvalidationMultiple() != 0) && (currentAccessTime <= nowTime
+                                                                                                         - (_smc.getForceSessionInvalidationMultiple() * maxinact))))) {
+
+            _storeCallback.sessionInvalidatedByTimeout(s);
+            if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
+                String message = "Going to invalidate session with id=" + s.getId();
+                LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[RUN_INVALIDATION], message);
+            }
+            s.invalidate();
+            return -1;
+        }
+        if (timedOut) {
+            // still in use, so check it again on the next run
+            return nowTime + 1;
+        }
+        // accessed since it was scheduled
+        return currentAccessTime + maxinact;
+    }
+
     /*
      * @see com.ibm.wsspi.session.IStore#runTimeBasedWrites()
      */
@@ -887,6 +954,10 @@ public class MemoryStore implements IStore {
         }
         removeSession(oldId);
         _sessions.put(newSession.getId(),  newSession);
+        // removeSession canceled the invalidation timer of the session
+        if (newSession instanceof MemorySession) {
+            scheduleInvalidation((MemorySession) newSession);
+        }
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
             LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, "updateSessionId", newSession.getId());
         }
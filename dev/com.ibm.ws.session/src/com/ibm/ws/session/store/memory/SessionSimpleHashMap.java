@@ -11,11 +11,12 @@
 
 package com.ibm.ws.session.store.memory;
 
-import java.io.Serializable;
+import java.util.AbstractMap;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import com.ibm.ws.session.utils.LoggingUtil;
@@ -23,39 +24,34 @@ import com.ibm.ws.session.utils.SessionHashSet;
 import com.ibm.wsspi.session.IStore;
 
 /**
- * This class extends java.util.HashMap. The constuctor expects three arguments.
- * The first argument is the store to which this hashmap will belong, the second is
+ * This class is the session table of the in-memory store. The constuctor expects three arguments.
+ * The first argument is the store to which this map will belong, the second is
  * the maximum number of entries (maxCapacity) for this Map. The
- * Map will never exceed maxCapacity and hence no rehash will ever occur for the
- * SessionSimpleHashMap. The second argument denotes whether overflow is allowed.
+ * Map will never exceed maxCapacity. The third argument denotes whether overflow is allowed.
  * Once the SessionSimpleHashMap is full, if overflow is disabled a TooManySessionsException
- * will be thrown back to the caller. However, if overflow is enabled a new Overflow Hashmap
- * will be created and all new put() requests will be placed in the overflow Hashmap.
+ * will be thrown back to the caller. However, if overflow is enabled a new Overflow map
+ * will be created and all new put() requests will be placed in the overflow map.
  * 
- * Since Hashmap is totally unsynchronized, this class will provide the needed
- * synchronization for a threaded environment. There is no synchronization on get() for
- * the SessionSimpleHashMap though gets will be synchronized when the overflow Hashmap
- * is used (since the HashMap may rehash).
+ * The entries are held in ConcurrentHashMaps, so get(), put() and remove() do not
+ * lock the table and sessions can be created, accessed and removed in parallel.
+ * The number of entries is counted with an atomic counter so that the capacity
+ * is never exceeded even when several threads add sessions at the same time.
  * 
  * The keysSet() method will return a non "Fail-fast" version of the keys that
  * are a snapshot at the time of the method call.
  * 
- * @see java.util.HashMap
+ * @see java.util.concurrent.ConcurrentHashMap
  */
 
-public class SessionSimpleHashMap extends HashMap {
+public class SessionSimpleHashMap extends AbstractMap {
 
-    private static class SerializableObject implements Serializable {
-        private static final long serialVersionUID = -1713215368202372876L;
-    }
-    
     private IStore _iStore;
     private int maxSize;
-    private int currentSize;
-    private HashMap OverflowTabl;
-    private Serializable OverflowTablLock = new SerializableObject();
+    private final AtomicInteger currentSize = new AtomicInteger();
+    private final ConcurrentHashMap _table;
+    private volatile ConcurrentHashMap OverflowTabl;
+    private final Object OverflowTablLock = new Object();
     boolean overflowAllowed;
-    private static final long serialVersionUID = 6091018332887652886L;
     private static final String methodClassName = "SessionSimpleHashMap";
     private String appNameForLogging = "";
 
@@ -70,8 +66,7 @@ public class SessionSimpleHashMap extends HashMap {
      */
     public SessionSimpleHashMap(IStore iStore, int maxCapacity, boolean overflow) {
         // Need to play with load factor and initial capacity so that no rehash ever occurs
-        super(maxCapacity + 20, 1);
-        currentSize = 0;
+        _table = new ConcurrentHashMap(maxCapacity + 20, 1);
         maxSize = maxCapacity;
         overflowAllowed = overflow;
         _iStore = iStore;
@@ -83,7 +78,7 @@ public class SessionSimpleHashMap extends HashMap {
     }
 
     /*
-     * This method puts an entry into the HashMap. It does follow HashMap semantics by checking for
+     * This method puts an entry into the map. It does follow HashMap semantics by checking for
      * an existing entry and returning that entry when we replace it. However, the session component
      * ensures there is not an existing entry prior to calling put, so we don't expect to ever get
      * a non-null value back.
@@ -91,77 +86,83 @@ public class SessionSimpleHashMap extends HashMap {
      * @see java.util.Map#put(java.lang.Object, java.lang.Object)
      */
     @Override
-    public synchronized Object put(Object key, Object value) {
+    public Object put(Object key, Object value) {
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINER)) {
             //PM16861
             StringBuffer sb = new StringBuffer("{").append(key).append("} ").append(appNameForLogging);
             LoggingUtil.SESSION_LOGGER_CORE.entering(methodClassName, methodNames[PUT], sb.toString());
         }
-        Object replacedEntry = null;
 
         // First see if replacing an existing entry 
-        Object currEntry = super.get(key);
-
-        if (currEntry != null) {
+        Object replacedEntry = _table.replace(key, value);
+        if (replacedEntry != null) {
             if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
                 LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[PUT], "replacing existing entry");
             }
-            replacedEntry = super.put(key, value);
-        } else {
-            if ((overflowAllowed) && (OverflowTabl != null)) {
-                synchronized (OverflowTablLock) {
-                    currEntry = OverflowTabl.get(key);
-                    if (currEntry != null) {
-                        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-                            LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[PUT], "replacing existing entry in overflow Hashmap");
-                        }
-                        replacedEntry = OverflowTabl.put(key, value);
-                    }
+            return replacedEntry;
+        }
+        ConcurrentHashMap overflowTabl = OverflowTabl;
+        if ((overflowAllowed) && (overflowTabl != null)) {
+            replacedEntry = overflowTabl.replace(key, value);
+            if (replacedEntry != null) {
+                if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
+                    LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[PUT], "replacing existing entry in overflow map");
                 }
+                return replacedEntry;
             }
         }
 
         // Handle new entries
-        if (currEntry == null) {
-            currentSize++;
-            // increment pmi counter
-            if (_iStore.getStoreCallback() != null) {
-                _iStore.getStoreCallback().sessionLiveCountInc(value);
-            }
+        // increment pmi counter
+        if (_iStore.getStoreCallback() != null) {
+            _iStore.getStoreCallback().sessionLiveCountInc(value);
+        }
 
-            if (currentSize <= maxSize) {
-                replacedEntry = super.put(key, value);
+        // reserve a slot before adding the entry so that concurrent puts can't exceed maxSize
+        if (currentSize.incrementAndGet() <= maxSize) {
+            replacedEntry = _table.put(key, value);
+            if (replacedEntry != null) {
+                // another thread added the same key after our replace() ... the slot is already counted
+                currentSize.decrementAndGet();
+            }
+            if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
+                LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[PUT], "add new entry to map");
+            }
+        } else { // overflow
+            currentSize.decrementAndGet();
+            if (overflowAllowed) {
+                replacedEntry = getOverflowTable().put(key, value);
                 if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-                    LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[PUT], "add new entry to Hashmap");
+                    LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[PUT], "add new entry to overflow map");
                 }
-            } else { // overflow
-                currentSize--;
-                if (overflowAllowed) {
-                    synchronized (OverflowTablLock) {
-                        if (OverflowTabl == null) {
-                            OverflowTabl = new HashMap(currentSize, 1);
-                            if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-                                LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[PUT], "Creating Overflow Table");
-                            }
-                        }
-
-                        replacedEntry = OverflowTabl.put(key, value);
-                        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-                            LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[PUT], "add new entry to overflow Hashmap");
-                        }
-                    }
-                } else
-                    throw new TooManySessionsException(); // no overflow allowed
-            }
+            } else
+                throw new TooManySessionsException(); // no overflow allowed
         }
 
         return replacedEntry;
     }
 
+    private ConcurrentHashMap getOverflowTable() {
+        ConcurrentHashMap overflowTabl = OverflowTabl;
+        if (overflowTabl == null) {
+            synchronized (OverflowTablLock) {
+                overflowTabl = OverflowTabl;
+                if (overflowTabl == null) {
+                    overflowTabl = new ConcurrentHashMap(maxSize, 1);
+                    OverflowTabl = overflowTabl;
+                    if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
+                        LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[PUT], "Creating Overflow Table");
+                    }
+                }
+            }
+        }
+        return overflowTabl;
+    }
+
     /*
-     * This method returns the entry from the hashmap associated with the given key.
-     * If the object is not found in the original hashmap we will search the overflow
-     * hashmap if applicable.
+     * This method returns the entry from the map associated with the given key.
+     * If the object is not found in the original map we will search the overflow
+     * map if applicable.
      * 
      * @see java.util.Map#get(java.lang.Object)
      */
@@ -172,20 +173,21 @@ public class SessionSimpleHashMap extends HashMap {
             String s = key + appNameForLogging;
             LoggingUtil.SESSION_LOGGER_CORE.entering(methodClassName, methodNames[GET], s);
         }
-        Object currEntry = super.get(key);
+        Object currEntry = _table.get(key);
 
         if (isTraceOn && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
             if (currEntry != null) {
-                LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[GET], "key found in HashMap");
+                LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[GET], "key found in map");
             }
         }
 
-        if ((currEntry == null) && (overflowAllowed) && (OverflowTabl != null)) {
-            synchronized (OverflowTablLock) {
-                currEntry = OverflowTabl.get(key);
+        if ((currEntry == null) && (overflowAllowed)) {
+            ConcurrentHashMap overflowTabl = OverflowTabl;
+            if (overflowTabl != null) {
+                currEntry = overflowTabl.get(key);
                 if (isTraceOn && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
                     if (currEntry != null) {
-                        LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[GET], "key found in overflow HashMap");
+                        LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[GET], "key found in overflow map");
                     }
                 }
             }
@@ -200,28 +202,27 @@ public class SessionSimpleHashMap extends HashMap {
     }
 
     @Override
-    public synchronized Object remove(Object key) {
+    public Object remove(Object key) {
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINER)) {
             String s = key + appNameForLogging;
             LoggingUtil.SESSION_LOGGER_CORE.entering(methodClassName, methodNames[REMOVE], s);
         }
 
-        Object removedEntry = super.remove(key);
+        Object removedEntry = _table.remove(key);
 
         if ((removedEntry != null)) {
-            currentSize--;
+            currentSize.decrementAndGet();
             if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-                LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[REMOVE], "key removed from HashMap");
+                LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[REMOVE], "key removed from map");
             }
         } else {
             // Must have returned null
-            if ((overflowAllowed) && (OverflowTabl != null)) {
-                synchronized (OverflowTablLock) {
-                    removedEntry = OverflowTabl.remove(key);
-                }
+            ConcurrentHashMap overflowTabl = OverflowTabl;
+            if ((overflowAllowed) && (overflowTabl != null)) {
+                removedEntry = overflowTabl.remove(key);
             }
             if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-                String message = (removedEntry != null ? "key removed from overflow HashMap" : "key not found");
+                String message = (removedEntry != null ? "key removed from overflow map" : "key not found");
                 LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[REMOVE], message);
             }
         }
@@ -229,17 +230,36 @@ public class SessionSimpleHashMap extends HashMap {
     }
 
     @Override
-    public synchronized void clear() {
-        super.clear();
-        currentSize = 0;
+    public void clear() {
+        _table.clear();
+        currentSize.set(0);
         if (OverflowTabl != null) {
             synchronized (OverflowTablLock) {
                 OverflowTabl.clear();
+                OverflowTabl = null;
             }
-            OverflowTabl = null;
         }
     }
 
+    /*
+     * Only the entries of the original map are counted, use getOverflowSize() for the rest.
+     * 
+     * @see java.util.Map#size()
+     */
+    @Override
+    public int size() {
+        return _table.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (_table.containsKey(key)) {
+            return true;
+        }
+        ConcurrentHashMap overflowTabl = OverflowTabl;
+        return overflowAllowed && overflowTabl != null && overflowTabl.containsKey(key);
+    }
+
     @Override
     public boolean containsValue(Object value) {
         throw new UnsupportedOperationException();
@@ -266,27 +286,20 @@ public class SessionSimpleHashMap extends HashMap {
             LoggingUtil.SESSION_LOGGER_CORE.entering(methodClassName, methodNames[KEYSET], appNameForLogging);
         }
 
-        Set myKeySet;
         Object[] keys;
         int keysLen = 0;
         Object[] allKeys = null;
 
-        Set overflowKeySet;
         Object[] overflowKeys = null;
         int overflowKeysLen = 0;
 
-        // Get the "fail-fast keyset from the HashMaps and convert it to an array 
-        myKeySet = super.keySet();
-        synchronized (this) {
-            keys = myKeySet.toArray(); // base Map
-            keysLen = keys.length;
-            if (OverflowTabl != null) {
-                overflowKeySet = OverflowTabl.keySet();
-                synchronized (OverflowTablLock) {
-                    overflowKeys = overflowKeySet.toArray(); // overflow Map
-                    overflowKeysLen = overflowKeys.length;
-                }
-            }
+        // The iterators of the ConcurrentHashMaps don't fail, but the key set must be a snapshot
+        keys = _table.keySet().toArray(); // base Map
+        keysLen = keys.length;
+        ConcurrentHashMap overflowTabl = OverflowTabl;
+        if (overflowTabl != null) {
+            overflowKeys = overflowTabl.keySet().toArray(); // overflow Map
+            overflowKeysLen = overflowKeys.length;
         }
 
         int allKeysLen = keysLen + overflowKeysLen;
@@ -325,8 +338,9 @@ public class SessionSimpleHashMap extends HashMap {
 
     public int getOverflowSize() {
         int overflowSize = 0;
-        if (OverflowTabl != null) {
-            overflowSize = OverflowTabl.size();
+        ConcurrentHashMap overflowTabl = OverflowTabl;
+        if (overflowTabl != null) {
+            overflowSize = overflowTabl.size();
         }
         return overflowSize;
     }
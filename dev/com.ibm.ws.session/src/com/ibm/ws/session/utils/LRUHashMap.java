@@ -10,41 +10,43 @@
  *******************************************************************************/
 package com.ibm.ws.session.utils;
 
+import java.util.AbstractMap;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import com.ibm.wsspi.session.IStoreCallback;
 
 /**
- * This class extends java.util.HashMap though it's maximum size is input
- * to the constructor and will not grow. This class also keeps track of the
- * Most-Recently-Used (MRU) and Least-Recently-Used (LRU) entries and all in
- * between.
- * Entries are considered to be MRU when it is created via put() and also
- * whenever
- * it is accessed via get().
- * In the event of a table full condition during put(), the oldest entry is
- * removed
- * and replaced with the new entry. The replaced entry is returned to the
- * caller.
- * Since Hashmap is totally unsynchronized, this class will provide the needed
- * synchronization for a threaded environment.
+ * This class is a map whose maximum size is input
+ * to the constructor and will not grow. When the map is full, the entry that
+ * has been used least recently is approximated with the CLOCK algorithm:
+ * each entry has a referenced flag that is set when it is created via put()
+ * and whenever it is accessed via accessObject(), and a clock hand walks the
+ * entries, clearing the flags it passes, until it finds an entry whose flag
+ * is already clear.
+ * In the event of a table full condition during put(), that entry is
+ * removed. The removed entry is returned to the caller.
+ * The entries are held in a ConcurrentHashMap, so get(), accessObject() and
+ * remove() do not lock the map. Only the clock hand is synchronized, and it is
+ * only used when the map is full.
  * The keysSet() method will return a non "Fail-fast" version of the keys that
  * are a snapshot at the time of the method call.
  * 
- * @see java.util.HashMap
+ * @see java.util.concurrent.ConcurrentHashMap
  */
-public class LRUHashMap extends HashMap {
+public class LRUHashMap extends AbstractMap {
 
     private IStoreCallback _iStoreCallback;
-    CacheEntryWrapper mru;
-    CacheEntryWrapper lru;
+    private final ConcurrentHashMap table;
+    private final Object clockLock = new Object();
+    private Iterator clockHand; // guarded by clockLock
     int maxSize;
-    int currentSize;
-    private static final long serialVersionUID = -1137988339144221054L;
+    final AtomicInteger currentSize = new AtomicInteger();
 
     private static final String methodClassName = "LRUHashMap";
 
@@ -55,9 +57,9 @@ public class LRUHashMap extends HashMap {
     private static final int REMOVE_GUTS = 4;
     private static final int ENTRY_SET = 5;
     private static final int KEY_SET = 6;
-    private static final int UPDATE_CACHE_LIST = 7;
+    private static final int FIND_VICTIM = 7;
 
-    private static final String methodNames[] = { "put", "accessObject", "get", "remove", "removeGuts", "entrySet", "keySet", "updateCacheList" };
+    private static final String methodNames[] = { "put", "accessObject", "get", "remove", "removeGuts", "entrySet", "keySet", "findVictim" };
 
     public LRUHashMap() {
         this(128);
@@ -74,10 +76,7 @@ public class LRUHashMap extends HashMap {
         // Need to play with load factor and initial capacity so that no rehash ever
         // occurs
 
-        super(maxCapacity + 20, 1);
-        currentSize = 0;
-        lru = null;
-        mru = null;
+        table = new ConcurrentHashMap(maxCapacity + 20, 1);
 
         maxSize = maxCapacity;
 
@@ -98,7 +97,8 @@ public class LRUHashMap extends HashMap {
     // If the hashmap is full then the oldest entry is removed and this
     // is returned to the caller.
 
-    public synchronized Object put(Object key, Object value) {
+    @Override
+    public Object put(Object key, Object value) {
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINER)) {
             //PM16861 Modified trace statement by removing toString of session object to avoid deadlock
             StringBuffer sb = new StringBuffer("key=").append(key);
@@ -108,62 +108,45 @@ public class LRUHashMap extends HashMap {
         if (maxSize == 0)
             return null;
 
-        CacheEntryWrapper currEntry;
-        CacheEntryWrapper oldestEntry = null;
+        CacheEntryWrapper newEntry = new CacheEntryWrapper(key, value);
+        CacheEntryWrapper currEntry = (CacheEntryWrapper) table.putIfAbsent(key, newEntry);
 
-        // See if entry exists
-        currEntry = (CacheEntryWrapper) super.get(key);
+        if (currEntry != null) { // found entry
 
-        if (currEntry == null) { // need new entry
             if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-                LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[PUT], "Doesn't exist in HashMap");
-            }
-
-            currentSize++;
-            if (_iStoreCallback != null) {
-                _iStoreCallback.sessionLiveCountInc(value);
-            }
-
-            if (currentSize > maxSize) {
-                // too many entries, remove the oldest
-                if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-                    LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[PUT], "Too Many Entries.. Remove the oldest entry: " + lru.key);
-                }
-                oldestEntry = (CacheEntryWrapper) removeGuts(lru.key);
-                if (_iStoreCallback != null) {
-                    _iStoreCallback.sessionCacheDiscard(oldestEntry.value);
-                }
+                LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[PUT], "Key already in use .. Reuse the entry");
             }
 
-            currEntry = new CacheEntryWrapper();
-            currEntry.key = key;
             currEntry.value = value;
-
-            currEntry.next = mru;
-            if (mru != null)
-                mru.prev = currEntry;
-            else
-                lru = currEntry;
-            mru = currEntry;
-
+            currEntry.referenced = true;
             if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-                LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[PUT], "Adding new entry to the map");
+                LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[PUT], null);
             }
+            return null;
+        }
 
+        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
+            LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[PUT], "Added new entry to the map");
         }
 
-        else { // found entry
+        if (_iStoreCallback != null) {
+            _iStoreCallback.sessionLiveCountInc(value);
+        }
 
-            if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-                LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[PUT], "Key already in use .. Reuse the entry");
+        CacheEntryWrapper oldestEntry = null;
+        if (currentSize.incrementAndGet() > maxSize) {
+            // too many entries, remove the oldest
+            oldestEntry = findVictim();
+            if (oldestEntry != null) {
+                if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
+                    LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[PUT], "Too Many Entries.. Removed the oldest entry: " + oldestEntry.key);
+                }
+                if (_iStoreCallback != null) {
+                    _iStoreCallback.sessionCacheDiscard(oldestEntry.value);
+                }
             }
-
-            updateCacheList(key);
-            currEntry.value = value;
         }
 
-        Object replacedEntry = super.put(key, currEntry);
-
         if (oldestEntry != null) {
             if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
                 //PM16861
@@ -182,8 +165,7 @@ public class LRUHashMap extends HashMap {
             LoggingUtil.SESSION_LOGGER_CORE.entering(methodClassName, methodNames[ACCESS_OBJECT], "key=" + key);
         }
 
-        CacheEntryWrapper currEntry = updateCacheList(key);// (CacheEntryWrapper)
-                                                           // super.get(key);
+        CacheEntryWrapper currEntry = (CacheEntryWrapper) table.get(key);
 
         if (currEntry == null) {
             if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
@@ -191,18 +173,23 @@ public class LRUHashMap extends HashMap {
             }
             return null;
         }
+        // only write the flag when it changes so that hot entries don't keep dirtying the cache line
+        if (!currEntry.referenced) {
+            currEntry.referenced = true;
+        }
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINER)) {
             LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[ACCESS_OBJECT], "Object=" + currEntry.value);
         }
         return currEntry.value;
     }
 
+    @Override
     public Object get(Object key) {
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINER)) {
             LoggingUtil.SESSION_LOGGER_CORE.entering(methodClassName, methodNames[GET], "key=" + key);
         }
 
-        CacheEntryWrapper currEntry = (CacheEntryWrapper) super.get(key);
+        CacheEntryWrapper currEntry = (CacheEntryWrapper) table.get(key);
 
         if (currEntry == null) {
             if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
@@ -221,12 +208,13 @@ public class LRUHashMap extends HashMap {
 
     }
 
-    public synchronized Object remove(Object key) {
+    @Override
+    public Object remove(Object key) {
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINER)) {
             LoggingUtil.SESSION_LOGGER_CORE.entering(methodClassName, methodNames[REMOVE], "Removing the object associated with this key=" + key);
         }
 
-        CacheEntryWrapper entry = (CacheEntryWrapper) removeGuts(key);
+        CacheEntryWrapper entry = removeGuts(key, null);
 
         if (entry == null) {
             if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
@@ -241,11 +229,19 @@ public class LRUHashMap extends HashMap {
         return entry.value;
     }
 
-    private Object removeGuts(Object key) {
+    /*
+     * Removes the entry of the key, or only the given entry if it is not null.
+     */
+    private CacheEntryWrapper removeGuts(Object key, CacheEntryWrapper expected) {
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINER)) {
             LoggingUtil.SESSION_LOGGER_CORE.entering(methodClassName, methodNames[REMOVE_GUTS], "key=" + key);
         }
-        CacheEntryWrapper currEntry = (CacheEntryWrapper) super.remove(key);
+        CacheEntryWrapper currEntry;
+        if (expected == null) {
+            currEntry = (CacheEntryWrapper) table.remove(key);
+        } else {
+            currEntry = table.remove(key, expected) ? expected : null;
+        }
 
         if (currEntry == null) {
             if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
@@ -257,76 +253,98 @@ public class LRUHashMap extends HashMap {
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
             LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[REMOVE_GUTS], "key found in hashmap");
         }
-        currentSize--;
+        currentSize.decrementAndGet();
         if (_iStoreCallback != null) {
             _iStoreCallback.sessionLiveCountDec(currEntry.value);
         }
-        CacheEntryWrapper prev = currEntry.prev;
-        CacheEntryWrapper next = currEntry.next;
 
-        if (prev == null) {
-            mru = next;
-        } else {
-            prev.next = next;
+        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINER)) {
+            LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[REMOVE_GUTS], "returning with value: " + currEntry);
         }
+        return currEntry;
+    }
 
-        if (next == null) {
-            lru = prev;
-        } else {
-            next.prev = prev;
+    /*
+     * Advances the clock hand to an entry that has not been referenced since the
+     * hand last passed it, and removes that entry. Entries the hand passes get their
+     * referenced flag cleared. If other threads keep referencing entries, the hand
+     * gives up looking after two full turns and removes the next entry.
+     */
+    private CacheEntryWrapper findVictim() {
+        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINER)) {
+            LoggingUtil.SESSION_LOGGER_CORE.entering(methodClassName, methodNames[FIND_VICTIM]);
+        }
+        CacheEntryWrapper victim = null;
+        synchronized (clockLock) {
+            int remaining = 2 * (table.size() + 1);
+            while (victim == null) {
+                if (clockHand == null || !clockHand.hasNext()) {
+                    clockHand = table.values().iterator();
+                    if (!clockHand.hasNext()) {
+                        break;
+                    }
+                }
+                CacheEntryWrapper entry = (CacheEntryWrapper) clockHand.next();
+                if (entry.referenced && --remaining > 0) {
+                    entry.referenced = false;
+                } else {
+                    victim = removeGuts(entry.key, entry);
+                }
+            }
         }
-
-        currEntry.prev = null;
-        currEntry.next = null;
-
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINER)) {
-            LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[REMOVE_GUTS], "returning with value: " + currEntry);
+            LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[FIND_VICTIM], victim);
         }
-        return currEntry;
+        return victim;
     }
 
-    public synchronized void clear() {
+    @Override
+    public void clear() {
 
-        super.clear();
-        if (_iStoreCallback != null) {
-            for (int i = 0; i < currentSize; i++) {
-                _iStoreCallback.sessionLiveCountDec(null);
+        synchronized (clockLock) {
+            table.clear();
+            clockHand = null;
+            int size = currentSize.getAndSet(0);
+            if (_iStoreCallback != null) {
+                for (int i = 0; i < size; i++) {
+                    _iStoreCallback.sessionLiveCountDec(null);
+                }
             }
         }
-        currentSize = 0;
-        mru = null;
-        lru = null;
     }
 
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return table.containsKey(key);
+    }
+
+    @Override
     public boolean containsValue(Object value) {
         throw new UnsupportedOperationException();
     }
 
+    @Override
     public void putAll(Map t) {
         throw new UnsupportedOperationException();
     }
 
+    @Override
     public Set entrySet() {
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
             LoggingUtil.SESSION_LOGGER_CORE.entering(methodClassName, methodNames[ENTRY_SET]);
         }
 
-        Set myEntrySet;
-        Object[] entries = null;
-
-        // Get the "fail-fast keyset from the HashMap and convert it to an array
-        myEntrySet = super.entrySet();
-
-        if (myEntrySet != null) {
-            synchronized (this) { // this instantiates and uses the fail-fast iterator
-                entries = myEntrySet.toArray();
-            }
-        }
+        // The iterator of the ConcurrentHashMap doesn't fail, but the set must be a snapshot
+        Object[] entries = table.values().toArray();
 
         // convert to actual values
         for (int i = 0; i < entries.length; i++) {
-            Map.Entry me = (Map.Entry) entries[i];
-            CacheEntryWrapper cew = (CacheEntryWrapper) me.getValue();
+            CacheEntryWrapper cew = (CacheEntryWrapper) entries[i];
             entries[i] = cew.value;
         }
 
@@ -339,26 +357,19 @@ public class LRUHashMap extends HashMap {
         return entrySet;
     }
 
+    @Override
     public Collection values() {
         throw new UnsupportedOperationException();
     }
 
+    @Override
     public Set keySet() {
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
             LoggingUtil.SESSION_LOGGER_CORE.entering(methodClassName, methodNames[KEY_SET]);
         }
 
-        Set myKeySet;
-        Object[] keys = null;
-
-        // Get the "fail-fast keyset from the HashMap and convert it to an array
-        myKeySet = super.keySet();
-
-        if (myKeySet != null) {
-            synchronized (this) { // this instantiates and uses the fail-fast iterator
-                keys = myKeySet.toArray();
-            }
-        }
+        // The iterator of the ConcurrentHashMap doesn't fail, but the set must be a snapshot
+        Object[] keys = table.keySet().toArray();
 
         // get a non-fail-fast Set
         Set keySet = new SessionHashSet(keys);
@@ -368,45 +379,15 @@ public class LRUHashMap extends HashMap {
         return keySet;
     }
 
-    // remove the input entry from it's spot in the list and make it the mru
-    private synchronized CacheEntryWrapper updateCacheList(Object key) {
-        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINER)) {
-            LoggingUtil.SESSION_LOGGER_CORE.entering(methodClassName, methodNames[UPDATE_CACHE_LIST], "key=" + key);
-        }
-        CacheEntryWrapper entry = (CacheEntryWrapper) super.get(key);
-
-        if (entry == null) {
-            return null;
-        }
-
-        CacheEntryWrapper prev = entry.prev;
-        CacheEntryWrapper next = entry.next;
-
-        if (prev != null) {
-            prev.next = next;
-
-            entry.prev = null;
-            entry.next = mru;
-            mru.prev = entry;
-            mru = entry;
+    private static class CacheEntryWrapper {
+        final Object key;
+        volatile Object value;
+        volatile boolean referenced = true;
 
-            if (next != null)
-                next.prev = prev;
-            else
-                lru = prev;
-        }
-        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-            //PM16861
-            LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, methodNames[UPDATE_CACHE_LIST], "Returning object associated with this key=" + key);
+        CacheEntryWrapper(Object key, Object value) {
+            this.key = key;
+            this.value = value;
         }
-        return entry;
-    }
-
-    private static class CacheEntryWrapper {
-        CacheEntryWrapper prev;
-        CacheEntryWrapper next;
-        Object key;
-        Object value;
 
         public String toString() {
             StringBuffer sb = new StringBuffer();
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.session.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel that tracks when objects expire, so that the
+ * invalidator only visits the objects that are due rather than every object
+ * in the store.
+ *
+ * Time is divided into ticks. The wheel has four levels of 64 slots each; a
+ * slot of level 0 covers one tick, a slot of level 1 covers 64 ticks, and so
+ * on. A timer is placed in the lowest level whose range covers its expiration
+ * tick, and timers of a higher level slot are moved down when the wheel reaches
+ * that slot. Scheduling and canceling a timer take constant time; expiring timers
+ * takes time proportional to the number of ticks that have passed and the number
+ * of timers that expire.
+ *
+ * A timer that is further away than the range of the wheel (about 194 days with
+ * a one second tick) expires at the end of the range, so callers should check
+ * the real expiration time of what they get back from expire() and schedule it
+ * again if it is not due yet.
+ *
+ * All methods are synchronized. The caller should not hold the wheel lock while
+ * it locks the objects of the expired timers.
+ */
+public class TimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Timer[][] slots = new Timer[LEVELS][SLOTS];
+
+    // first tick whose timers have not been expired
+    private long nextTick;
+    private int size;
+
+    /**
+     * A schedulable entry of the wheel. A timer is created once for the object
+     * it holds and is rescheduled as the expiration time of the object changes.
+     */
+    public static class Timer {
+        final Object value;
+        long tick;
+        int level = -1;
+        int slot;
+        Timer prev;
+        Timer next;
+
+        public Timer(Object value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * @param tickMillis the length of a tick in milliseconds
+     * @param now the current time in milliseconds
+     */
+    public TimingWheel(long tickMillis, long now) {
+        this.tickMillis = tickMillis;
+        nextTick = now / tickMillis;
+    }
+
+    /**
+     * Schedules the timer to expire at the given time, replacing any previous
+     * expiration time of the timer.
+     */
+    public synchronized void schedule(Timer timer, long expirationTime) {
+        if (timer.level >= 0) {
+            unlink(timer);
+        } else {
+            size++;
+        }
+        timer.tick = (expirationTime + tickMillis - 1) / tickMillis;
+        add(timer);
+    }
+
+    /**
+     * Removes the timer from the wheel if it is scheduled.
+     */
+    public synchronized void cancel(Timer timer) {
+        if (timer.level >= 0) {
+            unlink(timer);
+            size--;
+        }
+    }
+
+    /**
+     * Removes the timers whose expiration time is at or before the given time.
+     *
+     * @return the values of the expired timers
+     */
+    public synchronized List<Object> expire(long now) {
+        List<Object> expired = new ArrayList<Object>();
+        long nowTick = now / tickMillis;
+        if (size == 0) {
+            // nothing to cascade, so skip straight to the current tick
+            if (nextTick <= nowTick) {
+                nextTick = nowTick + 1;
+            }
+            return expired;
+        }
+        while (nextTick <= nowTick) {
+            int index = (int) (nextTick & SLOT_MASK);
+            if (index == 0) {
+                // moved into a new range of level 0, so refill it from the levels above
+                for (int level = 1; level < LEVELS; level++) {
+                    int levelIndex = (int) ((nextTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                    cascade(level, levelIndex);
+                    if (levelIndex != 0) {
+                        break;
+                    }
+                }
+            }
+            Timer timer = slots[0][index];
+            slots[0][index] = null;
+            while (timer != null) {
+                Timer next = timer.next;
+                timer.prev = null;
+                timer.next = null;
+                timer.level = -1;
+                size--;
+                expired.add(timer.value);
+                timer = next;
+            }
+            nextTick++;
+        }
+        return expired;
+    }
+
+    /**
+     * @return the number of scheduled timers
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void add(Timer timer) {
+        long delta = timer.tick - nextTick;
+        if (delta < 0) {
+            // already due, expire it with the next tick
+            timer.tick = nextTick;
+            delta = 0;
+        } else if (delta > MAX_TICKS) {
+            timer.tick = nextTick + MAX_TICKS;
+            delta = MAX_TICKS;
+        }
+        int level = 0;
+        while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((timer.tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Timer head = slots[level][slot];
+        timer.level = level;
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = head;
+        if (head != null) {
+            head.prev = timer;
+        }
+        slots[level][slot] = timer;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            slots[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.level = -1;
+    }
+
+    private void cascade(int level, int index) {
+        Timer timer = slots[level][index];
+        slots[level][index] = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            add(timer);
+            timer = next;
+        }
+    }
+}
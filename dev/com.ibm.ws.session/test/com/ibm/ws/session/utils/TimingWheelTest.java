@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.session.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for TimingWheel, with a one second tick that starts at time 0.
+ */
+public class TimingWheelTest {
+
+    private static final long TICK = 1000;
+
+    // ticks covered by each level
+    private static final long LEVEL_1 = 64;
+    private static final long LEVEL_2 = 64 * 64;
+    private static final long LEVEL_3 = 64 * 64 * 64;
+    private static final long MAX_TICKS = 64L * 64 * 64 * 64 - 1;
+
+    private final TimingWheel wheel = new TimingWheel(TICK, 0);
+
+    private static TimingWheel.Timer timer(String value) {
+        return new TimingWheel.Timer(value);
+    }
+
+    @Test
+    public void testExpire() {
+        wheel.schedule(timer("a"), 1500); // rounded up to tick 2
+        wheel.schedule(timer("b"), 2000);
+        wheel.schedule(timer("c"), 5000);
+        assertEquals(3, wheel.size());
+
+        assertEquals(Collections.emptyList(), wheel.expire(1999));
+        assertEquals(new HashSet<Object>(Arrays.asList("a", "b")), new HashSet<Object>(wheel.expire(2000)));
+        assertEquals(1, wheel.size());
+        assertEquals(Collections.emptyList(), wheel.expire(4999));
+        assertEquals(Arrays.asList("c"), wheel.expire(10000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testScheduleInThePast() {
+        wheel.expire(10000);
+        wheel.schedule(timer("a"), 3000);
+        assertEquals(Arrays.asList("a"), wheel.expire(11000));
+    }
+
+    @Test
+    public void testCascade() {
+        // one timer in each level
+        wheel.schedule(timer("level0"), 10 * TICK);
+        wheel.schedule(timer("level1"), (LEVEL_1 + 5) * TICK);
+        wheel.schedule(timer("level2"), (LEVEL_2 + 7) * TICK);
+        wheel.schedule(timer("level3"), (LEVEL_3 + 11) * TICK);
+
+        assertExpiresAt("level0", 10);
+        assertExpiresAt("level1", LEVEL_1 + 5);
+        assertExpiresAt("level2", LEVEL_2 + 7);
+        assertExpiresAt("level3", LEVEL_3 + 11);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCascadeAfterStartOffset() {
+        // start part way through each level, so that slots wrap around
+        TimingWheel wheel = new TimingWheel(TICK, (LEVEL_2 + LEVEL_1 * 3 + 50) * TICK);
+        long now = (LEVEL_2 + LEVEL_1 * 3 + 50) * TICK;
+        wheel.schedule(timer("a"), now + 20 * TICK); // crosses a level 0 boundary
+        wheel.schedule(timer("b"), now + (LEVEL_2 - 1) * TICK); // crosses a level 1 boundary
+        assertEquals(Collections.emptyList(), wheel.expire(now + 19 * TICK));
+        assertEquals(Arrays.asList("a"), wheel.expire(now + 20 * TICK));
+        assertEquals(Collections.emptyList(), wheel.expire(now + (LEVEL_2 - 2) * TICK));
+        assertEquals(Arrays.asList("b"), wheel.expire(now + (LEVEL_2 - 1) * TICK));
+    }
+
+    @Test
+    public void testMaxTicksClamp() {
+        // beyond the range of the wheel, so it expires at the end of the range
+        wheel.schedule(timer("far"), (MAX_TICKS + 1000) * TICK);
+        assertEquals(Collections.emptyList(), wheel.expire((MAX_TICKS - 1) * TICK));
+        assertEquals(Arrays.asList("far"), wheel.expire(MAX_TICKS * TICK));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCancel() {
+        TimingWheel.Timer a = timer("a");
+        TimingWheel.Timer b = timer("b");
+        TimingWheel.Timer c = timer("c");
+        TimingWheel.Timer d = timer("d");
+        // a, b and c share a slot
+        wheel.schedule(a, 3000);
+        wheel.schedule(b, 3000);
+        wheel.schedule(c, 3000);
+        wheel.schedule(d, (LEVEL_2 + 1) * TICK);
+
+        wheel.cancel(b); // middle of the slot
+        wheel.cancel(c); // head of the slot
+        wheel.cancel(c); // not scheduled, no effect
+        wheel.cancel(d); // higher level
+        assertEquals(1, wheel.size());
+
+        assertEquals(Arrays.asList("a"), wheel.expire((LEVEL_2 + 10) * TICK));
+        assertEquals(0, wheel.size());
+        wheel.cancel(a); // already expired, no effect
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testReschedule() {
+        TimingWheel.Timer a = timer("a");
+        wheel.schedule(a, 3000);
+        wheel.schedule(a, (LEVEL_1 + 3) * TICK);
+        assertEquals(1, wheel.size());
+        assertEquals(Collections.emptyList(), wheel.expire(3000));
+        assertExpiresAt("a", LEVEL_1 + 3);
+
+        // schedule again after it expired
+        wheel.schedule(a, (LEVEL_1 + 10) * TICK);
+        assertExpiresAt("a", LEVEL_1 + 10);
+    }
+
+    @Test
+    public void testRandomSchedule() {
+        Random random = new Random(20171017);
+        int count = 2000;
+        long[] ticks = new long[count];
+        for (int i = 0; i < count; i++) {
+            ticks[i] = 1 + random.nextInt((int) (LEVEL_3 + LEVEL_2));
+            wheel.schedule(new TimingWheel.Timer(i), ticks[i] * TICK - random.nextInt((int) TICK));
+        }
+
+        Set<Object> expired = new HashSet<Object>();
+        long now = 0;
+        while (expired.size() < count) {
+            now += random.nextInt((int) (LEVEL_1 * 3)) * TICK;
+            for (Object value : wheel.expire(now)) {
+                int i = (Integer) value;
+                assertTrue("timer " + i + " for tick " + ticks[i] + " expired at tick " + now / TICK, ticks[i] * TICK <= now);
+                assertTrue("timer " + i + " expired twice", expired.add(value));
+            }
+            for (int i = 0; i < count; i++)
+                if (ticks[i] * TICK <= now)
+                    assertTrue("timer " + i + " for tick " + ticks[i] + " not expired at tick " + now / TICK, expired.contains(i));
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Asserts that the value expires at the tick and not at the tick before it.
+     */
+    private void assertExpiresAt(String value, long tick) {
+        assertEquals(Collections.emptyList(), wheel.expire((tick - 1) * TICK));
+        List<Object> expired = wheel.expire(tick * TICK);
+        assertEquals(Arrays.asList(value), expired);
+    }
+}
@@ -63,4 +63,21 @@ public class PolicyExecutorProvider {
     public PolicyExecutor create(String identifier) {
         return new PolicyExecutorImpl((ExecutorServiceImpl) globalExecutor, identifier, policyExecutors);
     }
+
+    /**
+     * Creates a new policy executor instance that queues tasks in partitions rather than a single queue.
+     * Polling tasks on the global thread pool take tasks from the partition of the thread they run on
+     * and steal from the other partitions when it is empty, and each runs a batch of queued tasks before
+     * giving up its thread. This favors components that submit many small tasks. The same maxConcurrency,
+     * maxQueueSize, and other constraints apply as for policy executors that are created by the create method.
+     *
+     * @param identifier unique identifier for the new instance, to be used for monitoring and problem determination.
+     *            Note: The prefix, PolicyExecutorProvider-, is prepended to the identifier.
+     * @return a new policy executor instance.
+     * @throws IllegalStateException if an instance with the specified unique identifier already exists and has not been shut down.
+     * @throws NullPointerException if the specified identifier is null
+     */
+    public PolicyExecutor createWorkStealing(String identifier) {
+        return new PolicyExecutorImpl((ExecutorServiceImpl) globalExecutor, identifier, policyExecutors, true);
+    }
 }
@@ -21,6 +21,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
@@ -38,6 +39,8 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
 import com.ibm.websphere.ras.annotation.Trivial;
 import com.ibm.ws.ffdc.annotation.FFDCIgnore;
 import com.ibm.wsspi.threading.ExecutorServiceTaskInterceptor;
@@ -51,16 +54,30 @@ import com.ibm.wsspi.threading.WSExecutorService;
            property = "service.vendor=IBM",
            service = { java.util.concurrent.ExecutorService.class, com.ibm.wsspi.threading.WSExecutorService.class })
 public final class ExecutorServiceImpl implements WSExecutorService {
+    private static final TraceComponent tc = Tr.register(ExecutorServiceImpl.class);
+
     /**
      * Indicates whether we are on Java 6, because a workaround is needed for shutting down the thread pool in this case.
      */
     private static final boolean JAVA_6 = System.getProperty("java.version").equals("1.6.0");
 
+    /**
+     * Value of the workQueue attribute that selects the lock free work queue
+     * in place of BoundedBuffer.
+     */
+    static final String WORK_QUEUE_LOCK_FREE = "LOCK_FREE";
+
     /**
      * The target ExecutorService.
      */
     ThreadPoolExecutor threadPool = null;
 
+    /**
+     * Runs tasks on virtual threads when the virtualThreads attribute is enabled
+     * and the JVM supports it, otherwise null.
+     */
+    volatile VirtualThreadExecutor virtualThreadExecutor = null;
+
     /**
      * The controller that (when active) can monitor the throughput of
      * the underlying thread pool and adjust its size in an attempt to
@@ -152,6 +169,12 @@ public final class ExecutorServiceImpl implements WSExecutorService {
         // Shutdown the thread pool and let users finish using it
         softShutdown(threadPool);
 
+        VirtualThreadExecutor oldVirtualExecutor = virtualThreadExecutor;
+        virtualThreadExecutor = null;
+        if (oldVirtualExecutor != null) {
+            oldVirtualExecutor.softShutdown();
+        }
+
         componentConfig = null;
     }
 
@@ -177,6 +200,7 @@ public final class ExecutorServiceImpl implements WSExecutorService {
         threadPoolController.deactivate();
 
         ThreadPoolExecutor oldPool = threadPool;
+        VirtualThreadExecutor oldVirtualExecutor = virtualThreadExecutor;
 
         poolName = (String) componentConfig.get("name");
         String threadGroupName = poolName + " Thread Group";
@@ -200,17 +224,35 @@ public final class ExecutorServiceImpl implements WSExecutorService {
         threadPoolController.setCoreThreads(coreThreads);
         threadPoolController.setMaxThreads(maxThreads);
 
-        BlockingQueue<Runnable> workQueue = new BoundedBuffer<Runnable>(java.lang.Runnable.class, 1000, 1000);
+        BlockingQueue<Runnable> workQueue;
+        if (WORK_QUEUE_LOCK_FREE.equals(componentConfig.get("workQueue"))) {
+            workQueue = new LockFreeBoundedBuffer<Runnable>(1000, 1000);
+        } else {
+            workQueue = new BoundedBuffer<Runnable>(java.lang.Runnable.class, 1000, 1000);
+        }
 
         RejectedExecutionHandler rejectedExecutionHandler = new ExpandPolicy(workQueue, this);
 
-        threadPool = new ThreadPoolExecutor(coreThreads, maxThreads, keepAliveMillis, TimeUnit.MILLISECONDS, workQueue, threadFactory != null ? threadFactory : new ThreadFactoryImpl(poolName, threadGroupName), rejectedExecutionHandler);
+        threadPool = new ThreadPoolExecutorImpl(coreThreads, maxThreads, keepAliveMillis, TimeUnit.MILLISECONDS, workQueue, threadFactory != null ? threadFactory : new ThreadFactoryImpl(poolName, threadGroupName), rejectedExecutionHandler);
 
         threadPoolController.activate(threadPool);
 
+        VirtualThreadExecutor newVirtualExecutor = null;
+        if (Boolean.parseBoolean(String.valueOf(componentConfig.get("virtualThreads")))) {
+            newVirtualExecutor = oldVirtualExecutor != null ? oldVirtualExecutor : VirtualThreadExecutor.create(this, poolName + "-virtual-");
+            if (newVirtualExecutor == null) {
+                Tr.warning(tc, "CWWKE1204.virtual.threads.unavailable", poolName);
+            }
+        }
+        virtualThreadExecutor = newVirtualExecutor;
+
         if (oldPool != null) {
             softShutdown(oldPool);
         }
+
+        if (oldVirtualExecutor != null && oldVirtualExecutor != newVirtualExecutor) {
+            oldVirtualExecutor.softShutdown();
+        }
     }
 
     /** {@inheritDoc} */
@@ -307,6 +349,14 @@ public final class ExecutorServiceImpl implements WSExecutorService {
         threadPool.execute(interceptorsActive ? wrap(command) : command);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    @Trivial
+    public ExecutorService getVirtualThreadExecutor() {
+        VirtualThreadExecutor executor = virtualThreadExecutor;
+        return executor == null ? this : executor;
+    }
+
     /**
      * For internal use only. Invoker is responsible for ensuring that the interceptors are applied
      * to the underlying task that the proxy eventually delegates to. This allows the proxy Runnable
@@ -335,6 +385,45 @@ public final class ExecutorServiceImpl implements WSExecutorService {
         return poolName;
     }
 
+    /**
+     * The following return the inputs to the most recent pool size decision
+     * of the thread pool controller, for monitoring.
+     */
+    @Trivial
+    public double getThroughput() {
+        return threadPoolController.intervalThroughput;
+    }
+
+    @Trivial
+    public double getQueueDepth() {
+        return threadPoolController.intervalQueueDepth;
+    }
+
+    @Trivial
+    public double getQueueWaitTime() {
+        return threadPoolController.intervalQueueWaitMillis;
+    }
+
+    @Trivial
+    public double getTaskCpuTime() {
+        return threadPoolController.intervalTaskCpuMillis;
+    }
+
+    @Trivial
+    public double getTaskBlockedTime() {
+        return threadPoolController.intervalTaskBlockedMillis;
+    }
+
+    @Trivial
+    public boolean isBackendSaturated() {
+        return threadPoolController.backendSaturated;
+    }
+
+    @Trivial
+    public int getPoolAdjustment() {
+        return threadPoolController.intervalPoolAdjustment;
+    }
+
     /**
      * Shutdown a thread pool while still allowing current users to submit new work to it. The standard
      * ThreadPoolExecutor.shutdown() method causes any new work to get rejected while the pool is shutting
@@ -398,14 +487,14 @@ public final class ExecutorServiceImpl implements WSExecutorService {
      */
     public static class ExpandPolicy implements RejectedExecutionHandler {
 
-        public BoundedBuffer<Runnable> workQueue;
+        public ExpandableQueue<Runnable> workQueue;
         public WSExecutorService exService;
 
         /**
          * Creates an {@code ExpandPolicy}.
          */
         public ExpandPolicy(BlockingQueue<Runnable> workQueue2, WSExecutorService exService) {
-            this.workQueue = (BoundedBuffer<Runnable>) workQueue2;
+            this.workQueue = (ExpandableQueue<Runnable>) workQueue2;
             this.exService = exService;
         }
 
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded work queue whose capacity can be raised while it is in use. The
+ * executor's rejected execution handler expands the queue rather than
+ * rejecting work once the pool has reached its maximum size.
+ */
+public interface ExpandableQueue<T> extends BlockingQueue<T> {
+    /**
+     * Increases the capacity for items that are not expedited.
+     *
+     * @param additionalCapacity the amount by which the capacity should be increased.
+     */
+    void expand(int additionalCapacity);
+
+    /**
+     * Increases the capacity for expedited items.
+     *
+     * @param additionalCapacity the amount by which the capacity should be increased.
+     */
+    void expandExpedited(int additionalCapacity);
+}
@@ -0,0 +1,660 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.ibm.ejs.ras.Tr;
+import com.ibm.ejs.ras.TraceComponent;
+
+/**
+ * A lock free alternative to BoundedBuffer with the same contract: a bounded
+ * FIFO of Objects, with a separate expedited FIFO whose objects are removed
+ * before those in the main one, and whose capacities can be expanded while
+ * in use. Null objects are not allowed in the buffer.
+ * <p>
+ * Each FIFO is an array based multi-producer multi-consumer ring in which
+ * every slot carries a sequence number. Producers and consumers claim a slot
+ * with a single compare-and-set on the enqueue or dequeue position and then
+ * use the slot's sequence number to hand the object over, so neither side
+ * takes a monitor. Capacities are rounded up to a power of two.
+ * <p>
+ * A ring cannot grow in place, so expanding a FIFO links a larger ring after
+ * the current one and closes the current one to producers. Consumers drain
+ * the closed ring before moving on to the next.
+ * <p>
+ * Threads that find the buffer empty spin briefly and then park. Producers
+ * unpark one parked consumer per object added.
+ */
+public class LockFreeBoundedBuffer<T> implements ExpandableQueue<T> {
+    private static final TraceComponent tc = Tr.register(LockFreeBoundedBuffer.class);
+
+    /**
+     * Number of times a taking thread polls an empty buffer before parking.
+     */
+    private static final int SPINS_TAKE = Integer.getInteger("com.ibm.ws.threading.LockFreeBoundedBuffer.spins_take",
+                                                             Runtime.getRuntime().availableProcessors() > 1 ? 64 : 0);
+
+    /**
+     * Nanoseconds a putting thread waits between attempts on a full buffer.
+     */
+    private static final long PUT_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Stands in for an object removed by remove(Object) until a consumer
+     * reaches its slot.
+     */
+    private static final Object REMOVED = new Object();
+
+    private final Fifo buffer;
+    private final Fifo expeditedBuffer;
+
+    /**
+     * Threads parked waiting for an object.
+     */
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<Waiter>();
+
+    /**
+     * Create a LockFreeBoundedBuffer with the given capacities.
+     *
+     * @exception IllegalArgumentException if the requested capacity
+     *                is less or equal to zero.
+     */
+    public LockFreeBoundedBuffer(int capacity, int expeditedCapacity) throws IllegalArgumentException {
+        if (capacity <= 0 || expeditedCapacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        buffer = new Fifo(capacity);
+        expeditedBuffer = new Fifo(expeditedCapacity);
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "Created lock free bounded buffer: capacity=" + buffer.capacity() + " expedited capacity=" + expeditedBuffer.capacity());
+        }
+    }
+
+    /**
+     * Return the number of elements in the buffer.
+     * This is only a snapshot value, that may change
+     * immediately after returning.
+     */
+    @Override
+    public int size() {
+        return buffer.size() + expeditedBuffer.size();
+    }
+
+    /**
+     * Returns the capacity of the buffer available to new objects.
+     * Objects still held in rings that were replaced by an expand
+     * are not included.
+     */
+    public int capacity() {
+        return buffer.capacity() + expeditedBuffer.capacity();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return buffer.remainingCapacity() + expeditedBuffer.remainingCapacity();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean offer(T t) {
+        if (t == null) {
+            throw new IllegalArgumentException();
+        }
+
+        Fifo fifo = t instanceof QueueItem && ((QueueItem) t).isExpedited() ? expeditedBuffer : buffer;
+        if (fifo.offer(t)) {
+            signalWaiter();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean add(T t) {
+        if (offer(t))
+            return true;
+        else
+            throw new IllegalStateException("Queue full");
+    }
+
+    /**
+     * Puts an object into the buffer. If the buffer is full,
+     * the call will block until space is freed up.
+     */
+    @Override
+    public void put(T t) throws InterruptedException {
+        while (!offer(t)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(this, PUT_WAIT_NANOS);
+        }
+    }
+
+    @Override
+    public boolean offer(T t, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(t)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(remaining, PUT_WAIT_NANOS));
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        Object o = expeditedBuffer.poll();
+        if (o == null) {
+            o = buffer.poll();
+        }
+        return (T) o;
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        T t = spinPoll();
+        return t != null ? t : await(false, 0L);
+    }
+
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        T t = spinPoll();
+        return t != null ? t : await(true, deadline);
+    }
+
+    @Override
+    public T remove() {
+        T retrievedElement = poll();
+
+        if (retrievedElement == null) {
+            throw new NoSuchElementException();
+        }
+
+        return retrievedElement;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        Object o = expeditedBuffer.peek();
+        if (o == null) {
+            o = buffer.peek();
+        }
+        return (T) o;
+    }
+
+    @Override
+    public T element() {
+        T retrievedElement = peek();
+
+        if (retrievedElement == null) {
+            throw new NoSuchElementException();
+        }
+
+        return retrievedElement;
+    }
+
+    /**
+     * Poll repeatedly for a short time before a taking thread parks.
+     */
+    private T spinPoll() {
+        T t = poll();
+        for (int spins = SPINS_TAKE; t == null && spins > 0; spins--) {
+            t = poll();
+        }
+        return t;
+    }
+
+    /**
+     * Park until an object is available, the deadline passes, or the thread
+     * is interrupted. The waiter is registered before the buffer is polled a
+     * final time so that an object added concurrently always either is seen
+     * by that poll or unparks this thread.
+     */
+    private T await(boolean timed, long deadline) throws InterruptedException {
+        for (;;) {
+            Waiter w = new Waiter();
+            waiters.add(w);
+            T t = poll();
+            if (t == null) {
+                if (!timed) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining > 0) {
+                        LockSupport.parkNanos(this, remaining);
+                    }
+                }
+                t = poll();
+            }
+
+            // if a producer has already taken us off the waiters queue then
+            // its signal was for us; pass it on if we leave without using it
+            boolean signalled = w.signalled || !waiters.remove(w);
+            boolean interrupted = Thread.interrupted();
+            if (t != null || interrupted || (timed && deadline - System.nanoTime() <= 0)) {
+                if (signalled && !isEmpty()) {
+                    signalWaiter();
+                }
+                if (t == null && interrupted) {
+                    throw new InterruptedException();
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return t;
+            }
+        }
+    }
+
+    /**
+     * Unpark one waiting consumer, if there is one.
+     */
+    private void signalWaiter() {
+        Waiter w = waiters.poll();
+        if (w != null) {
+            w.signalled = true;
+            LockSupport.unpark(w.thread);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void expand(int additionalCapacity) {
+        if (additionalCapacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        buffer.expand(additionalCapacity);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void expandExpedited(int additionalCapacity) {
+        if (additionalCapacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        expeditedBuffer.expand(additionalCapacity);
+    }
+
+    /**
+     * Returns a snapshot of the objects in the buffer, expedited objects first.
+     */
+    private List<T> snapshot() {
+        List<T> list = new ArrayList<T>();
+        expeditedBuffer.addTo(list);
+        buffer.addTo(list);
+        return list;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return snapshot().iterator();
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    @Override
+    public <E> E[] toArray(E[] a) {
+        return snapshot().toArray(a);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o != null && snapshot().contains(o);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        return snapshot().containsAll(c);
+    }
+
+    /**
+     * Removes the given object, compared by identity as BoundedBuffer does.
+     * Its slot is marked and skipped when a consumer reaches it.
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        return expeditedBuffer.remove(o) || buffer.remove(o);
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+
+        int n = 0;
+        T t;
+        while (n < maxElements && (t = poll()) != null) {
+            c.add(t);
+            n++;
+        }
+        return n;
+    }
+
+    //----------------------
+    // Unsupported methods
+    //----------------------
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * A thread parked in take or poll.
+     */
+    private static final class Waiter {
+        final Thread thread = Thread.currentThread();
+        volatile boolean signalled;
+    }
+
+    /**
+     * One FIFO of the buffer: a chain of rings where producers add to the
+     * last ring and consumers take from the first ring that is not drained.
+     */
+    private static final class Fifo {
+        private final AtomicReference<Ring> head;
+        private volatile Ring tail;
+
+        Fifo(int capacity) {
+            Ring ring = new Ring(capacity);
+            head = new AtomicReference<Ring>(ring);
+            tail = ring;
+        }
+
+        int capacity() {
+            return tail.capacity();
+        }
+
+        int remainingCapacity() {
+            Ring t = tail;
+            return t.capacity() - t.size();
+        }
+
+        int size() {
+            int size = 0;
+            for (Ring r = head.get(); r != null; r = r.next) {
+                size += r.size();
+            }
+            return size;
+        }
+
+        boolean offer(Object o) {
+            for (;;) {
+                int rc = tail.offer(o);
+                if (rc != Ring.CLOSED) {
+                    return rc == Ring.ADDED;
+                }
+                // an expand closed the ring after linking its replacement as
+                // the new tail, so try again there
+            }
+        }
+
+        Object poll() {
+            Ring r = head.get();
+            for (;;) {
+                Object o = r.poll();
+                if (o != null) {
+                    return o;
+                }
+                Ring next = r.next;
+                if (next == null) {
+                    return null;
+                }
+                if (r.isDrained()) {
+                    head.compareAndSet(r, next);
+                }
+                // a producer may still be completing an add to a closed ring,
+                // keep going so the objects after it are not held up
+                r = next;
+            }
+        }
+
+        Object peek() {
+            for (Ring r = head.get(); r != null; r = r.next) {
+                Object o = r.peek();
+                if (o != null) {
+                    return o;
+                }
+            }
+            return null;
+        }
+
+        boolean remove(Object o) {
+            for (Ring r = head.get(); r != null; r = r.next) {
+                if (r.remove(o)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        <E> void addTo(List<E> list) {
+            for (Ring r = head.get(); r != null; r = r.next) {
+                r.addTo((List<Object>) list);
+            }
+        }
+
+        /**
+         * Replace the tail with a larger ring. Expansion is rare, happening
+         * only once the pool is at its maximum size and the buffer is full,
+         * so concurrent expanders are single threaded here and only the first
+         * of those that saw the same tail does anything.
+         */
+        void expand(int additionalCapacity) {
+            Ring observed = tail;
+            synchronized (this) {
+                if (tail != observed) {
+                    return;
+                }
+                Ring ring = new Ring(observed.capacity() + additionalCapacity);
+                observed.next = ring;
+                tail = ring;
+                observed.close();
+
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "Expanded lock free bounded buffer from " + observed.capacity() + " to " + ring.capacity());
+                }
+            }
+        }
+    }
+
+    /**
+     * A fixed size multi-producer multi-consumer ring. The sequence number of
+     * a slot equals the position it is next free to be added at, or that
+     * position plus one once the add is complete and it is ready to be taken.
+     */
+    private static final class Ring {
+        static final int ADDED = 1;
+        static final int FULL = 0;
+        static final int CLOSED = -1;
+
+        /** set in the enqueue position once no more objects may be added */
+        private static final long CLOSED_BIT = Long.MIN_VALUE;
+
+        private final int mask;
+        private final AtomicReferenceArray<Object> items;
+        private final AtomicLongArray sequences;
+        private final AtomicLong enqueuePosition = new AtomicLong();
+        private final AtomicLong dequeuePosition = new AtomicLong();
+        volatile Ring next;
+
+        Ring(int capacity) {
+            int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+            mask = size - 1;
+            items = new AtomicReferenceArray<Object>(size);
+            sequences = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++) {
+                sequences.lazySet(i, i);
+            }
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        int size() {
+            long size = (enqueuePosition.get() & ~CLOSED_BIT) - dequeuePosition.get();
+            return size <= 0 ? 0 : (int) Math.min(size, capacity());
+        }
+
+        /**
+         * @return ADDED, FULL, or CLOSED
+         */
+        int offer(Object o) {
+            long pos = enqueuePosition.get();
+            for (;;) {
+                if ((pos & CLOSED_BIT) != 0) {
+                    return CLOSED;
+                }
+                int index = (int) pos & mask;
+                long dif = sequences.get(index) - pos;
+                if (dif == 0) {
+                    if (enqueuePosition.compareAndSet(pos, pos + 1)) {
+                        items.lazySet(index, o);
+                        // a volatile write so that the subsequent check for
+                        // parked consumers cannot be reordered before it
+                        sequences.set(index, pos + 1);
+                        return ADDED;
+                    }
+                } else if (dif < 0) {
+                    return FULL;
+                }
+                pos = enqueuePosition.get();
+            }
+        }
+
+        /**
+         * @return the next object, or null if none is ready
+         */
+        Object poll() {
+            long pos = dequeuePosition.get();
+            for (;;) {
+                int index = (int) pos & mask;
+                long dif = sequences.get(index) - (pos + 1);
+                if (dif == 0) {
+                    if (dequeuePosition.compareAndSet(pos, pos + 1)) {
+                        Object o = items.getAndSet(index, null);
+                        sequences.lazySet(index, pos + mask + 1);
+                        if (o != REMOVED) {
+                            return o;
+                        }
+                    }
+                } else if (dif < 0) {
+                    return null;
+                }
+                pos = dequeuePosition.get();
+            }
+        }
+
+        Object peek() {
+            long end = enqueuePosition.get() & ~CLOSED_BIT;
+            for (long pos = dequeuePosition.get(); pos < end; pos++) {
+                Object o = items.get((int) pos & mask);
+                if (o != null && o != REMOVED) {
+                    return o;
+                }
+            }
+            return null;
+        }
+
+        boolean remove(Object o) {
+            long end = enqueuePosition.get() & ~CLOSED_BIT;
+            for (long pos = dequeuePosition.get(); pos < end; pos++) {
+                if (items.compareAndSet((int) pos & mask, o, REMOVED)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void addTo(List<Object> list) {
+            long end = enqueuePosition.get() & ~CLOSED_BIT;
+            for (long pos = dequeuePosition.get(); pos < end; pos++) {
+                Object o = items.get((int) pos & mask);
+                if (o != null && o != REMOVED) {
+                    list.add(o);
+                }
+            }
+        }
+
+        void close() {
+            long pos;
+            do {
+                pos = enqueuePosition.get();
+            } while (!enqueuePosition.compareAndSet(pos, pos | CLOSED_BIT));
+        }
+
+        /**
+         * Query whether this ring is closed and every object added to it has
+         * been taken.
+         */
+        boolean isDrained() {
+            long end = enqueuePosition.get();
+            return (end & CLOSED_BIT) != 0 && dequeuePosition.get() >= (end & ~CLOSED_BIT);
+        }
+    }
+}
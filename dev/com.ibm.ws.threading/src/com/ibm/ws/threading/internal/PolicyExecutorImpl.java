@@ -16,6 +16,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
@@ -46,6 +47,12 @@ import com.ibm.ws.threading.PolicyExecutor;
 public class PolicyExecutorImpl implements PolicyExecutor {
     private static final TraceComponent tc = Tr.register(PolicyExecutorImpl.class);
 
+    /**
+     * Number of queued tasks that a polling task of a work stealing policy executor runs
+     * before resubmitting itself to the global executor.
+     */
+    static final int WORK_STEALING_TASKS_PER_POLL = 32;
+
     /**
      * Use this lock to make a consistent update to both coreConcurrency and coreConcurrencyAvailable,
      * maxConcurrency and maxConcurrencyConstraint, and to maxQueueSize and maxQueueSizeConstraint.
@@ -77,7 +84,11 @@ public class PolicyExecutorImpl implements PolicyExecutor {
      */
     private final ConcurrentHashMap<String, PolicyExecutorImpl> providerCreated;
 
-    private final ConcurrentLinkedQueue<PolicyTaskFuture<?>> queue = new ConcurrentLinkedQueue<PolicyTaskFuture<?>>();
+    /**
+     * Tasks that are queued for execution. This is a single ConcurrentLinkedQueue unless the policy executor
+     * was created to use work stealing, in which case it is a WorkStealingQueue.
+     */
+    private final Queue<PolicyTaskFuture<?>> queue;
 
     private final AtomicReference<QueueFullAction> queueFullAction = new AtomicReference<QueueFullAction>();
 
@@ -104,6 +115,12 @@ public class PolicyExecutorImpl implements PolicyExecutor {
      */
     private final AtomicReference<State> state = new AtomicReference<State>(State.ACTIVE);
 
+    /**
+     * Maximum number of queued tasks that a polling task runs before it gives up the global thread.
+     * This is 1 unless the policy executor was created to use work stealing.
+     */
+    private final int tasksPerPoll;
+
     /**
      * Counter of tasks for which we didn't submit a PollingTask in order to honor maxConcurrency.
      * In deciding whether a PollingTask should be resubmitted, this counter can be decremented (if positive).
@@ -193,19 +210,38 @@ public class PolicyExecutorImpl implements PolicyExecutor {
         public void run() {
             boolean canRun;
             PolicyTaskFuture<?> next;
+            int tasksRun = 0;
             do {
-                // Check the state to reduce the possibility of removing a queued task that we will not be able to run
-                State currentState = state.get();
-                canRun = currentState == State.ACTIVE || currentState == State.ENQUEUE_STOPPING || currentState == State.ENQUEUE_STOPPED;
-                next = canRun ? queue.poll() : null;
+                do {
+                    // Check the state to reduce the possibility of removing a queued task that we will not be able to run
+                    State currentState = state.get();
+                    canRun = currentState == State.ACTIVE || currentState == State.ENQUEUE_STOPPING || currentState == State.ENQUEUE_STOPPED;
+                    next = canRun ? queue.poll() : null;
+                    if (next == null)
+                        break;
+                    else
+                        maxQueueSizeConstraint.release();
+                } while (next.isCancelled());
+
                 if (next == null)
                     break;
-                else
-                    maxQueueSizeConstraint.release();
-            } while (next.isCancelled());
 
-            if (next != null)
+                // Beyond the first, each task that we run might otherwise have needed a polling task of its own
+                if (tasksRun > 0)
+                    decrementWithheldConcurrency();
+
                 runTask(next);
+            } while (++tasksRun < tasksPerPoll);
+
+            // Give up the global thread to other work after running a batch of tasks,
+            // but keep the core/maxConcurrency permits for the resubmitted polling task
+            if (next != null && tasksPerPoll > 1 && !queue.isEmpty()) {
+                if (expedite)
+                    expediteGlobal(PollingTask.this);
+                else
+                    enqueueGlobal(PollingTask.this);
+                return;
+            }
 
             // Release permits against core/maxConcurrency
             if (expedite)
@@ -216,8 +252,10 @@ public class PolicyExecutorImpl implements PolicyExecutor {
                 Tr.debug(PolicyExecutorImpl.this, tc, "core/maxConcurrency available",
                          coreConcurrencyAvailable, maxConcurrencyConstraint.availablePermits(), canRun);
 
-            // Avoid reschedule if we are in a state that disallows starting tasks or if no withheld tasks remain
-            if (canRun && withheldConcurrency.get() > 0 && maxConcurrencyConstraint.tryAcquire()) {
+            // Avoid reschedule if we are in a state that disallows starting tasks or if no withheld tasks remain.
+            // Polling tasks that run batches of tasks can leave withheldConcurrency at 0 while tasks remain queued,
+            // so in that case we also check the queue.
+            if (canRun && (withheldConcurrency.get() > 0 || tasksPerPoll > 1 && !queue.isEmpty()) && maxConcurrencyConstraint.tryAcquire()) {
                 decrementWithheldConcurrency();
                 if (acquireCoreConcurrency() > 0)
                     expediteGlobal(PollingTask.this);
@@ -258,6 +296,8 @@ public class PolicyExecutorImpl implements PolicyExecutor {
      */
     public PolicyExecutorImpl() {
         providerCreated = null;
+        queue = new ConcurrentLinkedQueue<PolicyTaskFuture<?>>();
+        tasksPerPoll = 1;
     }
 
     /**
@@ -272,9 +312,30 @@ public class PolicyExecutorImpl implements PolicyExecutor {
      * @throws NullPointerException if the specified identifier is null
      */
     public PolicyExecutorImpl(ExecutorServiceImpl globalExecutor, String identifier, ConcurrentHashMap<String, PolicyExecutorImpl> providerCreatedInstances) {
+        this(globalExecutor, identifier, providerCreatedInstances, false);
+    }
+
+    /**
+     * This constructor is used by PolicyExecutorProvider.
+     *
+     * @param globalExecutor the Liberty global executor, which was obtained by the PolicyExecutorProvider via declarative services.
+     * @param identifier unique identifier for this instance, to be used for monitoring and problem determination.
+     *            Note: The prefix, PolicyExecutorProvider-, is prepended to the identifier.
+     * @param providerCreatedInstances list of instances created by the PolicyExecutorProvider.
+     *            Each instance is responsible for adding and removing itself from the list per its life cycle.
+     * @param workStealing indicates whether to queue tasks in per-thread partitions from which polling tasks
+     *            steal work, with each polling task running a batch of tasks, rather than in a single queue
+     *            with one task per polling task.
+     * @throws IllegalStateException if an instance with the specified unique identifier already exists and has not been shut down.
+     * @throws NullPointerException if the specified identifier is null
+     */
+    public PolicyExecutorImpl(ExecutorServiceImpl globalExecutor, String identifier, ConcurrentHashMap<String, PolicyExecutorImpl> providerCreatedInstances,
+                              boolean workStealing) {
         this.globalExecutor = globalExecutor;
         this.identifier = "PolicyExecutorProvider-" + identifier;
         this.providerCreated = providerCreatedInstances;
+        this.queue = workStealing ? new WorkStealingQueue<PolicyTaskFuture<?>>() : new ConcurrentLinkedQueue<PolicyTaskFuture<?>>();
+        this.tasksPerPoll = workStealing ? WORK_STEALING_TASKS_PER_POLL : 1;
 
         maxConcurrencyConstraint.release(maxConcurrency = Integer.MAX_VALUE);
         maxQueueSizeConstraint.release(maxQueueSize = Integer.MAX_VALUE);
@@ -90,6 +90,16 @@ import com.ibm.websphere.ras.annotation.Trivial;
  * A thread pool should shrink if there's no work on the queue feeding the pool
  * and the throughput doesn't suffer.
  * </li>
+ * <li>
+ * Throughput alone cannot tell a pool that is too small from a backend that
+ * is saturated. When the pool records task timings, the time that work waits
+ * in the queue and the share of task time spent blocked rather than on CPU
+ * are also sampled. Work that waits longer than it runs, on tasks that are
+ * mostly blocked, grows the pool by several threads at once; a grow that
+ * neither raised throughput nor shortened the queue wait marks the backend
+ * as saturated, which stops further growth until that changes. A pool with
+ * an empty queue and mostly idle threads shrinks by several threads at once.
+ * </li>
  * </ol>
  * 
  * @see {@link http://en.wikipedia.org/wiki/Standard_normal_distribution}
@@ -172,6 +182,32 @@ public final class ThreadPoolController {
      */
     final static int MAX_THREADS_TO_BREAK_HANG = 1000;
 
+    /**
+     * The share of task time spent blocked, rather than on CPU, at or above
+     * which adding threads is expected to raise throughput. Below this,
+     * tasks are mostly CPU bound and the pool only moves one thread at a time.
+     */
+    final static double BLOCKED_RATIO_FOR_FAST_GROW = 0.5;
+
+    /**
+     * The minimum queue wait time in milliseconds that can cause the pool to
+     * grow by more than one thread. This keeps very short tasks that queue
+     * briefly from causing large changes to the pool.
+     */
+    final static double MIN_QUEUE_WAIT_FOR_FAST_GROW = 5.0;
+
+    /**
+     * The largest share of the current pool size that is added in a single
+     * interval when work is waiting in the queue.
+     */
+    final static double MAX_FAST_GROW_FRACTION = 0.5;
+
+    /**
+     * The relative throughput gain below which a grow of the pool is
+     * considered to have not helped.
+     */
+    final static double MIN_GAIN_AFTER_GROW = 0.02;
+
     /**
      * Reference to the configured ExecutorService implementation that
      * delegates to the {@link ThreadPoolExecutorImpl} that is controlled
@@ -302,6 +338,59 @@ public final class ThreadPoolController {
      */
     private int hangIntervalCounter = 0;
 
+    /**
+     * Task count reported by the thread pool at the end of the previous interval.
+     */
+    private long previousTaskCount = 0;
+
+    /**
+     * Total task elapsed time reported by the thread pool at the end of the previous interval.
+     */
+    private long previousTaskNanos = 0;
+
+    /**
+     * Total task CPU time reported by the thread pool at the end of the previous interval.
+     */
+    private long previousTaskCpuNanos = 0;
+
+    /**
+     * Queue depth total reported by the thread pool at the end of the previous interval.
+     */
+    private long previousQueueDepthTotal = 0;
+
+    /**
+     * Queue depth sample count reported by the thread pool at the end of the previous interval.
+     */
+    private long previousQueueDepthSamples = 0;
+
+    /**
+     * The following are the decision inputs of the most recent interval,
+     * which are published through the executor for monitoring.
+     */
+    /** Tasks completed per second. */
+    volatile double intervalThroughput = 0;
+
+    /** Average number of tasks in the work queue. */
+    volatile double intervalQueueDepth = 0;
+
+    /** Estimated time in milliseconds that tasks waited in the work queue. */
+    volatile double intervalQueueWaitMillis = 0;
+
+    /** Average CPU time in milliseconds of each task, or -1 if not measured. */
+    volatile double intervalTaskCpuMillis = -1;
+
+    /** Average time in milliseconds that each task spent off CPU, or -1 if not measured. */
+    volatile double intervalTaskBlockedMillis = -1;
+
+    /** Average number of threads that were running tasks. */
+    volatile double intervalBusyThreads = 0;
+
+    /** Whether growing the pool stopped raising throughput while work was waiting. */
+    volatile boolean backendSaturated = false;
+
+    /** The change made to the pool size. */
+    volatile int intervalPoolAdjustment = 0;
+
     /**
      * Provides the default core thread size for when the controller is in
      * a deactivated state.
@@ -335,6 +424,16 @@ public final class ThreadPoolController {
 
         consecutiveIdleCount = 0;
 
+        if (threadPool instanceof ThreadPoolExecutorImpl) {
+            ThreadPoolExecutorImpl pool = (ThreadPoolExecutorImpl) threadPool;
+            previousTaskCount = pool.taskCount.get();
+            previousTaskNanos = pool.taskNanos.get();
+            previousTaskCpuNanos = pool.taskCpuNanos.get();
+            previousQueueDepthTotal = pool.queueDepthTotal.get();
+            previousQueueDepthSamples = pool.queueDepthSamples.get();
+        }
+        backendSaturated = false;
+
         if (clearHistory) {
             threadStats = new ThroughputDistribution[0];
         }
@@ -679,6 +778,125 @@ public final class ThreadPoolController {
         return newPoolSize;
     }
 
+    /**
+     * Sample the task timings recorded by the thread pool over the current
+     * interval and update the published interval data.
+     * 
+     * @param deltaTime the length of the interval in milliseconds
+     * @param throughput the throughput of the current interval
+     * 
+     * @return true if task timings are available
+     */
+    boolean sampleTaskStatistics(long deltaTime, double throughput) {
+        intervalThroughput = throughput;
+        if (!(threadPool instanceof ThreadPoolExecutorImpl)) {
+            return false;
+        }
+        ThreadPoolExecutorImpl pool = (ThreadPoolExecutorImpl) threadPool;
+
+        long taskCount = pool.taskCount.get();
+        long taskNanos = pool.taskNanos.get();
+        long taskCpuNanos = pool.taskCpuNanos.get();
+        long queueDepthTotal = pool.queueDepthTotal.get();
+        long queueDepthSamples = pool.queueDepthSamples.get();
+
+        long deltaTasks = taskCount - previousTaskCount;
+        long deltaNanos = taskNanos - previousTaskNanos;
+        long deltaCpuNanos = taskCpuNanos - previousTaskCpuNanos;
+        long deltaSamples = queueDepthSamples - previousQueueDepthSamples;
+
+        // With no task starting in the interval, the current depth is the best estimate
+        double queueDepth = deltaSamples > 0 ? (double) (queueDepthTotal - previousQueueDepthTotal) / deltaSamples : pool.getQueue().size();
+
+        // Little's law: the time spent in the queue is the queue depth over the rate tasks leave it
+        double queueWait;
+        if (queueDepth <= 0.0) {
+            queueWait = 0.0;
+        } else if (throughput > 0.0) {
+            queueWait = 1000.0 * queueDepth / throughput;
+        } else {
+            queueWait = deltaTime;
+        }
+
+        intervalQueueDepth = queueDepth;
+        intervalQueueWaitMillis = queueWait;
+        intervalBusyThreads = deltaNanos / (deltaTime * 1000000.0);
+        if (deltaTasks > 0 && pool.isCpuTimeEnabled()) {
+            double cpuMillis = deltaCpuNanos / 1000000.0 / deltaTasks;
+            double elapsedMillis = deltaNanos / 1000000.0 / deltaTasks;
+            intervalTaskCpuMillis = cpuMillis;
+            intervalTaskBlockedMillis = Math.max(0.0, elapsedMillis - cpuMillis);
+        } else {
+            intervalTaskCpuMillis = -1;
+            intervalTaskBlockedMillis = -1;
+        }
+
+        previousTaskCount = taskCount;
+        previousTaskNanos = taskNanos;
+        previousTaskCpuNanos = taskCpuNanos;
+        previousQueueDepthTotal = queueDepthTotal;
+        previousQueueDepthSamples = queueDepthSamples;
+        return true;
+    }
+
+    /**
+     * Calculate an adjustment to the pool size of more than one thread, based on
+     * the queue wait time and the share of task time spent blocked. This lets the
+     * pool follow a change in load within a few intervals, instead of the many
+     * intervals that single thread steps would take. Also determines whether the
+     * most recent grow of the pool failed to help because the resources the tasks
+     * block on are saturated.
+     * 
+     * @param poolSize the current pool size
+     * @param queueEmpty indication of whether or not the thread pool queue is empty
+     * @param throughput the throughput of the current interval
+     * @param previousQueueWait the queue wait time of the previous interval
+     * 
+     * @return the adjustment, or 0 to leave the decision to the throughput scores
+     */
+    int getLatencyAdjustment(int poolSize, boolean queueEmpty, double throughput, double previousQueueWait) {
+        double queueWait = intervalQueueWaitMillis;
+        double cpuMillis = intervalTaskCpuMillis;
+        double blockedMillis = intervalTaskBlockedMillis;
+        if (cpuMillis < 0 || blockedMillis < 0) {
+            return 0;
+        }
+
+        double taskMillis = cpuMillis + blockedMillis;
+        double blockedRatio = taskMillis > 0.0 ? blockedMillis / taskMillis : 0.0;
+
+        // If more threads did not complete more work, and work still waits as long as before,
+        // the tasks are waiting on something other than threads.
+        if (lastAction == LastAction.GROW) {
+            backendSaturated = !queueEmpty
+                               && throughput <= previousThroughput * (1.0 + MIN_GAIN_AFTER_GROW)
+                               && queueWait >= previousQueueWait;
+        } else if (queueEmpty || throughput > previousThroughput * (1.0 + MIN_GAIN_AFTER_GROW)) {
+            backendSaturated = false;
+        }
+
+        if (!queueEmpty && !backendSaturated && poolSize < maxThreads
+            && blockedRatio >= BLOCKED_RATIO_FOR_FAST_GROW
+            && queueWait >= MIN_QUEUE_WAIT_FOR_FAST_GROW && queueWait > taskMillis) {
+            // Grow in proportion to how much of the task time is spent blocked and how
+            // long the work waits relative to how long it runs
+            double pressure = Math.min(1.0, queueWait / Math.max(taskMillis, MIN_QUEUE_WAIT_FOR_FAST_GROW) - 1.0);
+            int grow = (int) Math.ceil(poolSize * MAX_FAST_GROW_FRACTION * blockedRatio * pressure);
+            grow = Math.min(grow, maxThreads - poolSize);
+            return grow > 1 ? grow : 0;
+        }
+
+        if (queueEmpty && queueWait == 0.0 && poolSize > coreThreads) {
+            // Keep a margin above the threads that were busy, and give back half of the rest
+            double busyThreads = Math.max(intervalBusyThreads, threadPool.getActiveCount());
+            int target = Math.max(coreThreads, (int) Math.ceil(busyThreads * 1.5) + 1);
+            int shrink = (poolSize - target) / 2;
+            return shrink > 1 ? -shrink : 0;
+        }
+
+        return 0;
+    }
+
     /**
      * Evaluate the throughput for the current interval and apply heuristics
      * to modify the thread pool size in an attempt to maximize throughput.
@@ -705,6 +923,8 @@ public final class ThreadPoolController {
         long deltaCompleted = completedWork - previousCompleted;
         double throughput = 1000.0 * deltaCompleted / deltaTime;
         boolean queueEmpty = threadPool.getQueue().isEmpty();
+        double previousQueueWait = intervalQueueWaitMillis;
+        boolean timingsAvailable = sampleTaskStatistics(deltaTime, throughput);
 
         // Handle pausing the task if the pool has been idle
         if (manageIdlePool(threadPool, deltaCompleted)) {
@@ -754,8 +974,19 @@ public final class ThreadPoolController {
             poolAdjustment = -1;
         }
 
+        // Queue wait and blocked time can call for a larger step, or show that growing won't help
+        if (timingsAvailable) {
+            int latencyAdjustment = getLatencyAdjustment(poolSize, queueEmpty, throughput, previousQueueWait);
+            if (latencyAdjustment != 0) {
+                poolAdjustment = latencyAdjustment;
+            } else if (backendSaturated && poolAdjustment > 0) {
+                poolAdjustment = 0;
+            }
+        }
+
         // Force some random variation into the pool size algorithm
         poolAdjustment = forceVariation(poolSize, poolAdjustment, deltaCompleted);
+        intervalPoolAdjustment = poolAdjustment;
 
         // Format an event level trace point with the most useful data
         if (tc.isEventEnabled()) {
@@ -789,6 +1020,14 @@ public final class ThreadPoolController {
         sb.append(String.format(" consecutiveQueueEmptyCount = %2d", Integer.valueOf(consecutiveQueueEmptyCount)));
         sb.append(String.format(" consecutiveNoAdjustment = %2d", Integer.valueOf(consecutiveNoAdjustment)));
 
+        sb.append("\nLatency:   ");
+        sb.append(String.format(" queueDepth = %.3f", Double.valueOf(intervalQueueDepth)));
+        sb.append(String.format(" queueWait = %.3fms", Double.valueOf(intervalQueueWaitMillis)));
+        sb.append(String.format(" taskCpu = %.3fms", Double.valueOf(intervalTaskCpuMillis)));
+        sb.append(String.format(" taskBlocked = %.3fms", Double.valueOf(intervalTaskBlockedMillis)));
+        sb.append(String.format(" busyThreads = %.3f", Double.valueOf(intervalBusyThreads)));
+        sb.append(String.format(" backendSaturated = %5s", Boolean.toString(backendSaturated)));
+
         sb.append("\nOutliers:  ");
         sb.append(String.format(" consecutiveOutlierAfterAdjustment = %2d", Integer.valueOf(consecutiveOutlierAfterAdjustment)));
 
@@ -889,6 +1128,14 @@ public final class ThreadPoolController {
         out.println(INDENT + "consecutiveNoAdjustment = " + consecutiveNoAdjustment);
         out.println(INDENT + "consecutiveOutlierAfterAdjustment = " + consecutiveOutlierAfterAdjustment);
         out.println(INDENT + "consecutiveQueueEmptyCount = " + consecutiveQueueEmptyCount);
+        out.println(INDENT + "intervalThroughput = " + intervalThroughput);
+        out.println(INDENT + "intervalQueueDepth = " + intervalQueueDepth);
+        out.println(INDENT + "intervalQueueWaitMillis = " + intervalQueueWaitMillis);
+        out.println(INDENT + "intervalTaskCpuMillis = " + intervalTaskCpuMillis);
+        out.println(INDENT + "intervalTaskBlockedMillis = " + intervalTaskBlockedMillis);
+        out.println(INDENT + "intervalBusyThreads = " + intervalBusyThreads);
+        out.println(INDENT + "backendSaturated = " + backendSaturated);
+        out.println(INDENT + "intervalPoolAdjustment = " + intervalPoolAdjustment);
         out.println(INDENT + "threadPool");
         out.println(INDENT + INDENT + "poolSize = " + threadPool.getPoolSize());
         out.println(INDENT + INDENT + "activeCount = " + threadPool.getActiveCount());
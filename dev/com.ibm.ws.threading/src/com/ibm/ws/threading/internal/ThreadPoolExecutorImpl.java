@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.websphere.ras.annotation.Trivial;
+
+/**
+ * The thread pool behind the default executor. In addition to running tasks,
+ * it keeps running totals that the {@link ThreadPoolController} samples once
+ * per interval: the number of tasks run, the elapsed and CPU time spent in
+ * them, and the depth of the work queue seen by each task as it starts.
+ * The controller derives the queue wait time from the queue depth and
+ * throughput (Little's law), and the time that tasks spent blocked from the
+ * difference between elapsed and CPU time.
+ */
+class ThreadPoolExecutorImpl extends ThreadPoolExecutor {
+    /**
+     * Used to read the CPU time of pool threads.
+     */
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Indicates whether the JVM can report the CPU time of the current thread.
+     */
+    private final boolean cpuTimeEnabled;
+
+    /**
+     * Per thread start time and start CPU time of the task that is running.
+     */
+    private final ThreadLocal<long[]> taskStart = new ThreadLocal<long[]>() {
+        @Override
+        @Trivial
+        protected long[] initialValue() {
+            return new long[2];
+        }
+    };
+
+    /**
+     * Number of tasks that have completed.
+     */
+    final AtomicLong taskCount = new AtomicLong();
+
+    /**
+     * Total elapsed time in nanoseconds of completed tasks.
+     */
+    final AtomicLong taskNanos = new AtomicLong();
+
+    /**
+     * Total CPU time in nanoseconds of completed tasks, or 0 if CPU time is not available.
+     */
+    final AtomicLong taskCpuNanos = new AtomicLong();
+
+    /**
+     * Total of the work queue depth observed at the start of each task.
+     */
+    final AtomicLong queueDepthTotal = new AtomicLong();
+
+    /**
+     * Number of times the work queue depth was observed.
+     */
+    final AtomicLong queueDepthSamples = new AtomicLong();
+
+    ThreadPoolExecutorImpl(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+                           BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
+        boolean cpuTime;
+        try {
+            cpuTime = threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+        } catch (UnsupportedOperationException x) {
+            cpuTime = false;
+        }
+        cpuTimeEnabled = cpuTime;
+    }
+
+    /**
+     * @return true if task CPU time is being measured.
+     */
+    @Trivial
+    boolean isCpuTimeEnabled() {
+        return cpuTimeEnabled;
+    }
+
+    @Override
+    @Trivial
+    protected void beforeExecute(Thread t, Runnable r) {
+        queueDepthTotal.addAndGet(getQueue().size());
+        queueDepthSamples.incrementAndGet();
+
+        long[] start = taskStart.get();
+        start[1] = cpuTimeEnabled ? threadMXBean.getCurrentThreadCpuTime() : 0;
+        start[0] = System.nanoTime();
+    }
+
+    @Override
+    @Trivial
+    protected void afterExecute(Runnable r, Throwable t) {
+        long end = System.nanoTime();
+        long[] start = taskStart.get();
+        taskNanos.addAndGet(end - start[0]);
+        if (cpuTimeEnabled) {
+            long cpu = threadMXBean.getCurrentThreadCpuTime();
+            // CPU time is -1 if it becomes disabled while the task runs
+            if (cpu >= 0 && start[1] >= 0)
+                taskCpuNanos.addAndGet(cpu - start[1]);
+        }
+        taskCount.incrementAndGet();
+    }
+}
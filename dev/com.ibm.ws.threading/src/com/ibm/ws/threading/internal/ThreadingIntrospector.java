@@ -73,6 +73,14 @@ public class ThreadingIntrospector implements Introspector {
         } else {
             ThreadPoolController tpc = impl.threadPoolController;
             tpc.introspect(out);
+
+            VirtualThreadExecutor vte = impl.virtualThreadExecutor;
+            if (vte != null) {
+                final String INDENT = "  ";
+                out.println(VirtualThreadExecutor.class.getName());
+                out.println(INDENT + "taskCount = " + vte.getTaskCount());
+                out.println(INDENT + "pinnedCount = " + vte.getPinnedCount());
+            }
         }
     }
 
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.websphere.ras.annotation.Trivial;
+import com.ibm.ws.ffdc.annotation.FFDCIgnore;
+
+/**
+ * Runs each task on a new virtual thread, for the tasks that the default
+ * executor hands out through WSExecutorService.getVirtualThreadExecutor.
+ * Virtual threads are only available from Java 21, so they are reached by
+ * reflection; create returns null when the JVM does not have them.
+ * <p>
+ * The task interceptors of the default executor are applied to each task.
+ * While the executor is active, a JFR event stream counts the times a virtual
+ * thread pinned its carrier thread by blocking inside a monitor or native
+ * frame for longer than the JFR threshold for that event (20ms by default).
+ */
+class VirtualThreadExecutor extends AbstractExecutorService {
+    private static final TraceComponent tc = Tr.register(VirtualThreadExecutor.class);
+
+    /**
+     * JFR event that is recorded when a virtual thread parks while pinned to its carrier.
+     */
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    /**
+     * The default executor, whose interceptors are applied to tasks.
+     */
+    private final ExecutorServiceImpl owner;
+
+    /**
+     * Thread per task executor from the JDK.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * JFR RecordingStream that counts pinned events, or null if unavailable.
+     */
+    private final AutoCloseable pinnedEventStream;
+
+    /**
+     * Number of times a virtual thread pinned its carrier.
+     */
+    private final AtomicLong pinnedCount = new AtomicLong();
+
+    /**
+     * Number of tasks that have been run on virtual threads.
+     */
+    private final AtomicLong taskCount = new AtomicLong();
+
+    private VirtualThreadExecutor(ExecutorServiceImpl owner, ExecutorService executor) {
+        this.owner = owner;
+        this.executor = executor;
+        this.pinnedEventStream = startPinnedEventStream();
+    }
+
+    /**
+     * Create an executor that runs tasks on virtual threads.
+     *
+     * @param owner the default executor.
+     * @param namePrefix prefix of the virtual thread names.
+     * @return the executor, or null if the JVM does not support virtual threads.
+     */
+    @FFDCIgnore(Exception.class)
+    static VirtualThreadExecutor create(ExecutorServiceImpl owner, String namePrefix) {
+        ExecutorService executor;
+        try {
+            // Thread.ofVirtual().name(namePrefix, 0).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            // Executors.newThreadPerTaskExecutor(factory)
+            executor = (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (Exception x) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+                Tr.debug(tc, "virtual threads are not available", x);
+            return null;
+        }
+        return new VirtualThreadExecutor(owner, executor);
+    }
+
+    /**
+     * Subscribe to pinned events through a JFR RecordingStream, which is
+     * created and driven by reflection because its event callback is a
+     * java.util.function.Consumer.
+     *
+     * @return the stream, or null if JFR streaming is not available.
+     */
+    @FFDCIgnore(Exception.class)
+    private AutoCloseable startPinnedEventStream() {
+        try {
+            Class<?> streamClass = Class.forName("jdk.jfr.consumer.RecordingStream");
+            Class<?> consumerClass = Class.forName("java.util.function.Consumer");
+            AutoCloseable stream = (AutoCloseable) streamClass.getConstructor().newInstance();
+            streamClass.getMethod("enable", String.class).invoke(stream, PINNED_EVENT);
+            Object consumer = Proxy.newProxyInstance(consumerClass.getClassLoader(), new Class<?>[] { consumerClass }, new InvocationHandler() {
+                @Override
+                @Trivial
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("accept".equals(method.getName())) {
+                        pinnedCount.incrementAndGet();
+                        return null;
+                    } else if ("hashCode".equals(method.getName())) {
+                        return System.identityHashCode(proxy);
+                    } else if ("equals".equals(method.getName())) {
+                        return proxy == args[0];
+                    } else {
+                        return "PinnedEventCounter@" + Integer.toHexString(System.identityHashCode(proxy));
+                    }
+                }
+            });
+            streamClass.getMethod("onEvent", String.class, consumerClass).invoke(stream, PINNED_EVENT, consumer);
+            streamClass.getMethod("startAsync").invoke(stream);
+            return stream;
+        } catch (Exception x) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+                Tr.debug(this, tc, "unable to count pinned virtual threads", x);
+            return null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void execute(Runnable command) {
+        owner.threadPoolController.resumeIfPaused();
+        executor.execute(owner.interceptorsActive ? owner.wrap(command) : command);
+        taskCount.incrementAndGet();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    /**
+     * Users of the default executor are not permitted to shut it down.
+     */
+    @Override
+    public void shutdown() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Users of the default executor are not permitted to shut it down.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stop accepting tasks, allowing those already submitted to complete,
+     * and stop counting pinned events.
+     */
+    @FFDCIgnore(Exception.class)
+    void softShutdown() {
+        executor.shutdown();
+        if (pinnedEventStream != null)
+            try {
+                pinnedEventStream.close();
+            } catch (Exception x) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+                    Tr.debug(this, tc, "close pinned event stream", x);
+            }
+    }
+
+    /**
+     * @return the number of times a virtual thread pinned its carrier thread,
+     *         or -1 if pinning is not being counted.
+     */
+    @Trivial
+    long getPinnedCount() {
+        return pinnedEventStream == null ? -1 : pinnedCount.get();
+    }
+
+    /**
+     * @return the number of tasks submitted to run on virtual threads.
+     */
+    @Trivial
+    long getTaskCount() {
+        return taskCount.get();
+    }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ibm.websphere.ras.annotation.Trivial;
+
+/**
+ * An unbounded queue that is split into partitions in order to spread out
+ * contention between threads that add and remove elements concurrently.
+ * Each thread has a home partition, chosen from its thread id. Elements
+ * are added to the home partition of the adding thread. A thread removes
+ * elements from the head of its home partition first and otherwise steals
+ * from the head of the other partitions, so that a thread which submits
+ * work while running on a policy executor tends to be the one to run it.
+ * <p>
+ * Elements are always removed from the head of a partition, so the elements
+ * that one thread adds are removed in the order it added them. There is no
+ * ordering between elements that different threads add.
+ *
+ * @param <T> type of element.
+ */
+class WorkStealingQueue<T> extends AbstractQueue<T> {
+    /**
+     * Upper limit on the number of partitions.
+     */
+    private static final int MAX_PARTITIONS = 64;
+
+    /**
+     * Number of elements in the queue. This can be briefly out of step with
+     * the partitions while an element is being added or removed.
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Number of partitions minus one. The number of partitions is a power of 2.
+     */
+    private final int mask;
+
+    private final ConcurrentLinkedDeque<T>[] partitions;
+
+    /**
+     * Construct a queue with a partition per processor, up to a limit.
+     */
+    WorkStealingQueue() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct a queue with at least the specified number of partitions.
+     *
+     * @param minPartitions minimum number of partitions. The value is rounded up to a power of 2.
+     */
+    @SuppressWarnings("unchecked")
+    WorkStealingQueue(int minPartitions) {
+        int size = 1;
+        while (size < minPartitions && size < MAX_PARTITIONS)
+            size <<= 1;
+        mask = size - 1;
+        partitions = new ConcurrentLinkedDeque[size];
+        for (int i = 0; i < size; i++)
+            partitions[i] = new ConcurrentLinkedDeque<T>();
+    }
+
+    /**
+     * @return index of the home partition of the current thread.
+     */
+    @Trivial
+    private int home() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32));
+        h ^= (h >>> 16);
+        return h & mask;
+    }
+
+    @Override
+    @Trivial
+    public boolean isEmpty() {
+        return count.get() <= 0;
+    }
+
+    @Override
+    @Trivial
+    public Iterator<T> iterator() {
+        ArrayList<T> snapshot = new ArrayList<T>();
+        for (ConcurrentLinkedDeque<T> partition : partitions)
+            snapshot.addAll(partition);
+        return snapshot.iterator();
+    }
+
+    @Override
+    @Trivial
+    public boolean offer(T e) {
+        partitions[home()].offerLast(e);
+        count.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    @Trivial
+    public T peek() {
+        int h = home();
+        T e = partitions[h].peekFirst();
+        for (int i = 1; e == null && i <= mask; i++)
+            e = partitions[(h + i) & mask].peekFirst();
+        return e;
+    }
+
+    @Override
+    @Trivial
+    public T poll() {
+        if (count.get() <= 0)
+            return null;
+        int h = home();
+        T e = partitions[h].pollFirst();
+        for (int i = 1; e == null && i <= mask; i++)
+            e = partitions[(h + i) & mask].pollFirst();
+        if (e != null)
+            count.decrementAndGet();
+        return e;
+    }
+
+    @Override
+    @Trivial
+    public boolean remove(Object o) {
+        int h = home();
+        for (int i = 0; i <= mask; i++)
+            if (partitions[(h + i) & mask].remove(o)) {
+                count.decrementAndGet();
+                return true;
+            }
+        return false;
+    }
+
+    @Override
+    @Trivial
+    public int size() {
+        int size = count.get();
+        return size < 0 ? 0 : size;
+    }
+}
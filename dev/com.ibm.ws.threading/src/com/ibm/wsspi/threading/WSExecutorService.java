@@ -31,4 +31,14 @@ public interface WSExecutorService extends ExecutorService {
      * @throws NullPointerException if command is null
      */
     public void executeGlobal(Runnable command) throws RejectedExecutionException;
+
+    /**
+     * Returns an executor that runs each task on its own virtual thread when
+     * the executor is configured to use virtual threads and the Java runtime
+     * supports them. Otherwise, this executor is returned. Callers must not
+     * shut down the returned executor.
+     * 
+     * @return the executor to use for tasks that may run on virtual threads.
+     */
+    public ExecutorService getVirtualThreadExecutor();
 }
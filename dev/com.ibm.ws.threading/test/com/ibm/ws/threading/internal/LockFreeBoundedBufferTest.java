@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class LockFreeBoundedBufferTest {
+    private static class Item implements QueueItem {
+        private final boolean expedited;
+        private final int id;
+
+        Item(int id, boolean expedited) {
+            this.id = id;
+            this.expedited = expedited;
+        }
+
+        @Override
+        public boolean isExpedited() {
+            return expedited;
+        }
+
+        @Override
+        public String toString() {
+            return "Item" + id + (expedited ? "E" : "");
+        }
+    }
+
+    @Test
+    public void testOrderAndExpedite() throws Exception {
+        LockFreeBoundedBuffer<Item> q = new LockFreeBoundedBuffer<Item>(8, 4);
+        Item a = new Item(1, false), b = new Item(2, false), c = new Item(3, true);
+        assertTrue(q.offer(a));
+        assertTrue(q.offer(b));
+        assertTrue(q.offer(c));
+        assertEquals(3, q.size());
+        assertSame(c, q.peek());
+        assertSame(c, q.poll());
+        assertSame(a, q.poll());
+        assertSame(b, q.poll());
+        assertNull(q.poll());
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void testFullAndExpand() throws Exception {
+        LockFreeBoundedBuffer<Item> q = new LockFreeBoundedBuffer<Item>(4, 2);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(q.offer(new Item(i, false)));
+        }
+        assertFalse(q.offer(new Item(4, false)));
+        assertEquals(2, q.remainingCapacity());
+
+        q.expand(4);
+        for (int i = 4; i < 12; i++) {
+            assertTrue(q.offer(new Item(i, false)));
+        }
+        assertEquals(12, q.size());
+
+        // items of the replaced ring come out first
+        for (int i = 0; i < 12; i++) {
+            assertEquals("Item" + i, q.poll().toString());
+        }
+        assertNull(q.poll());
+        assertEquals(0, q.size());
+    }
+
+    @Test
+    public void testRemoveAndDrain() throws Exception {
+        LockFreeBoundedBuffer<Item> q = new LockFreeBoundedBuffer<Item>(8, 8);
+        Item a = new Item(1, false), b = new Item(2, false), c = new Item(3, true);
+        q.offer(a);
+        q.offer(b);
+        q.offer(c);
+        assertTrue(q.contains(b));
+        assertTrue(q.remove(b));
+        assertFalse(q.remove(b));
+        assertFalse(q.contains(b));
+
+        List<Item> drained = new ArrayList<Item>();
+        assertEquals(2, q.drainTo(drained));
+        assertSame(c, drained.get(0));
+        assertSame(a, drained.get(1));
+        assertNull(q.poll());
+    }
+
+    @Test
+    public void testTimedPoll() throws Exception {
+        LockFreeBoundedBuffer<Item> q = new LockFreeBoundedBuffer<Item>(8, 8);
+        long start = System.nanoTime();
+        assertNull(q.poll(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    /**
+     * Several producers and parked consumers, with the buffer expanded under
+     * load, must hand over every item exactly once.
+     */
+    @Test(timeout = 60000)
+    public void testConcurrentProducersConsumers() throws Exception {
+        final LockFreeBoundedBuffer<Item> q = new LockFreeBoundedBuffer<Item>(16, 16);
+        final int producers = 4, consumers = 4, perProducer = 20000;
+        final AtomicInteger consumed = new AtomicInteger();
+        final AtomicLong idSum = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(producers + consumers);
+
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        Item item = new Item(base + i, i % 10 == 0);
+                        while (!q.offer(item)) {
+                            if (item.isExpedited())
+                                q.expandExpedited(16);
+                            else
+                                q.expand(16);
+                        }
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        for (int c = 0; c < consumers; c++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (consumed.get() < producers * perProducer) {
+                            Item item = q.poll(10, TimeUnit.MILLISECONDS);
+                            if (item != null) {
+                                idSum.addAndGet(item.id);
+                                consumed.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException x) {
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+
+        assertTrue(done.await(50, TimeUnit.SECONDS));
+        int total = producers * perProducer;
+        assertEquals(total, consumed.get());
+        assertEquals((long) total * (total - 1) / 2, idSum.get());
+        assertTrue(q.isEmpty());
+    }
+}
@@ -10,13 +10,25 @@
  *******************************************************************************/
 package com.ibm.ws.threading.internal;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
 import com.ibm.ws.threading.PolicyExecutor;
+import com.ibm.ws.threading.PolicyExecutor.QueueFullAction;
 import com.ibm.ws.threading.PolicyExecutorProvider;
 
 /**
@@ -167,4 +179,79 @@ public class PolicyExecutorTest {
         } catch (IllegalStateException x) {
         } // pass
     }
+
+    /**
+     * Verify that a work stealing policy executor enforces maxConcurrency and maxQueueSize
+     * and runs every task that it accepts.
+     */
+    @Test(timeout = 60000)
+    public void testWorkStealingConstraints() throws Exception {
+        ExecutorServiceImpl globalExecutor = new ExecutorServiceImpl();
+        Map<String, Object> componentConfig = new HashMap<String, Object>();
+        componentConfig.put("name", "testWorkStealingConstraints");
+        componentConfig.put("rejectedWorkPolicy", "CALLER_RUNS");
+        componentConfig.put("stealPolicy", "STRICT");
+        componentConfig.put("keepAlive", 10);
+        componentConfig.put("coreThreads", 8);
+        componentConfig.put("maxThreads", 8);
+        globalExecutor.activate(componentConfig);
+
+        PolicyExecutor executor = new PolicyExecutorImpl(globalExecutor, "testWorkStealingConstraints", new ConcurrentHashMap<String, PolicyExecutorImpl>(), true)
+                        .maxConcurrency(2)
+                        .queueFullAction(QueueFullAction.Abort);
+        try {
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger maxRunning = new AtomicInteger();
+            final AtomicInteger completed = new AtomicInteger();
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    int r = running.incrementAndGet();
+                    for (int m = maxRunning.get(); r > m && !maxRunning.compareAndSet(m, r); m = maxRunning.get());
+                    Thread.yield();
+                    running.decrementAndGet();
+                    completed.incrementAndGet();
+                }
+            };
+
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < 500; i++)
+                futures.add(executor.submit(task));
+            for (Future<?> future : futures)
+                future.get();
+            assertEquals(500, completed.get());
+            assertTrue("max running: " + maxRunning, maxRunning.get() <= 2);
+
+            // occupy both threads so that further tasks stay queued
+            final CountDownLatch blocker = new CountDownLatch(1);
+            final CountDownLatch started = new CountDownLatch(2);
+            Runnable blockingTask = new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        blocker.await();
+                    } catch (InterruptedException x) {
+                    }
+                }
+            };
+            executor.maxQueueSize(3);
+            executor.execute(blockingTask);
+            executor.execute(blockingTask);
+            assertTrue(started.await(30, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++)
+                futures.add(executor.submit(task));
+            try {
+                fail("should not queue more than 3 tasks " + executor.submit(task));
+            } catch (RejectedExecutionException x) {
+            } // pass
+            blocker.countDown();
+            for (Future<?> future : futures)
+                future.get();
+            assertEquals(503, completed.get());
+        } finally {
+            executor.shutdownNow();
+            globalExecutor.deactivate(0);
+        }
+    }
 }
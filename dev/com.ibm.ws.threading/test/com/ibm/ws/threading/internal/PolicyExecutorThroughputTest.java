@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Ignore;
+
+import com.ibm.ws.threading.PolicyExecutor;
+
+/**
+ * Compares the throughput of policy executors that use a single queue with policy executors
+ * that use work stealing, for many small tasks submitted from several threads.
+ * Run the main method to produce the results.
+ */
+@Ignore
+public class PolicyExecutorThroughputTest {
+
+    private static final int TERMINATION_WAIT_TIME = 30;
+
+    static int maxConcurrency = Runtime.getRuntime().availableProcessors();
+
+    static int submitters = 4;
+
+    private final ExecutorServiceImpl globalExecutor;
+
+    private int instance;
+
+    PolicyExecutorThroughputTest() {
+        globalExecutor = new ExecutorServiceImpl();
+        Map<String, Object> componentConfig = new HashMap<String, Object>();
+        componentConfig.put("name", "PolicyExecutorThroughputTest");
+        componentConfig.put("rejectedWorkPolicy", "CALLER_RUNS");
+        componentConfig.put("stealPolicy", "STRICT");
+        componentConfig.put("keepAlive", 60);
+        componentConfig.put("coreThreads", 2 * Runtime.getRuntime().availableProcessors());
+        componentConfig.put("maxThreads", 2 * Runtime.getRuntime().availableProcessors());
+        globalExecutor.activate(componentConfig);
+    }
+
+    /**
+     * Submit tasks from several threads at once and wait for all of them to complete.
+     *
+     * @param workStealing indicates whether to use a work stealing policy executor.
+     * @param iterations total number of tasks.
+     * @return elapsed time in nanoseconds.
+     */
+    public long throughput(boolean workStealing, final long iterations) throws Exception {
+        final PolicyExecutor executor = new PolicyExecutorImpl(globalExecutor, "throughput-" + ++instance, new ConcurrentHashMap<String, PolicyExecutorImpl>(), workStealing)
+                        .maxConcurrency(maxConcurrency);
+        final CountDownLatch completed = new CountDownLatch((int) iterations);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                completed.countDown();
+            }
+        };
+
+        Thread[] threads = new Thread[submitters];
+        long startTime = System.nanoTime();
+        for (int s = 0; s < submitters; s++) {
+            threads[s] = new Thread() {
+                @Override
+                public void run() {
+                    for (long i = iterations / submitters; i > 0; i--)
+                        executor.execute(task);
+                }
+            };
+            threads[s].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        boolean done = completed.await(TERMINATION_WAIT_TIME, TimeUnit.SECONDS);
+        long elapsedTime = System.nanoTime() - startTime;
+
+        executor.shutdown();
+        if (!done)
+            System.out.println(executor + " timed out with " + completed.getCount() + " tasks remaining");
+        assertTrue(done);
+        return elapsedTime;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final long iterations = 1000000;
+        final int warmups = 5;
+        final int loopCount = 10;
+
+        PolicyExecutorThroughputTest test = new PolicyExecutorThroughputTest();
+        long[] times = new long[loopCount];
+
+        for (maxConcurrency = 1; maxConcurrency <= Runtime.getRuntime().availableProcessors(); maxConcurrency *= 2) {
+            for (int w = 0; w < warmups + 1; w++)
+                for (int i = 0; i < loopCount; i++)
+                    times[i] = test.throughput(false, iterations);
+            ThreadPoolThroughputTest.results("Policy executor, single queue, maxConcurrency " + maxConcurrency, times);
+
+            for (int w = 0; w < warmups + 1; w++)
+                for (int i = 0; i < loopCount; i++)
+                    times[i] = test.throughput(true, iterations);
+            ThreadPoolThroughputTest.results("Policy executor, work stealing, maxConcurrency " + maxConcurrency, times);
+        }
+
+        test.globalExecutor.deactivate(0);
+    }
+}
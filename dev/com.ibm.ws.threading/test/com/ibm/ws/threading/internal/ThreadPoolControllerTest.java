@@ -112,4 +112,56 @@ public class ThreadPoolControllerTest {
         assertEquals("Unexpected exit from evaluateInterval()", "", tpc.evaluateInterval());
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Work that waits in the queue longer than it runs, on tasks that are mostly blocked,
+     * grows the pool by several threads; a grow that does not raise throughput or shorten
+     * the queue wait stops further growth; an idle pool with an empty queue shrinks by
+     * several threads.
+     */
+    @Test
+    public void testLatencyAdjustment() throws Exception {
+        ExecutorServiceImpl mockExecutorServiceImpl = new ExecutorServiceImpl();
+        ThreadPoolController tpc = mockExecutorServiceImpl.threadPoolController;
+        tpc.activate(pool);
+        tpc.timer.cancel();
+        tpc.setCoreThreads(4);
+        tpc.setMaxThreads(200);
+
+        // 40ms tasks, 30ms of it blocked, waiting 400ms in the queue
+        tpc.intervalQueueWaitMillis = 400.0;
+        tpc.intervalTaskCpuMillis = 10.0;
+        tpc.intervalTaskBlockedMillis = 30.0;
+        tpc.lastAction = ThreadPoolController.LastAction.NONE;
+        tpc.previousThroughput = 100.0;
+        int adjustment = tpc.getLatencyAdjustment(20, false, 100.0, 0.0);
+        assertTrue("Expected a multi-thread grow, not " + adjustment, adjustment > 1);
+        assertTrue("Grew more than half the pool: " + adjustment, adjustment <= 10);
+
+        // CPU bound tasks leave the decision to the throughput scores
+        tpc.intervalTaskCpuMillis = 35.0;
+        tpc.intervalTaskBlockedMillis = 5.0;
+        assertEquals(0, tpc.getLatencyAdjustment(20, false, 100.0, 0.0));
+
+        // After a grow, no throughput gain and no shorter queue wait means the backend is saturated
+        tpc.intervalTaskCpuMillis = 10.0;
+        tpc.intervalTaskBlockedMillis = 30.0;
+        tpc.lastAction = ThreadPoolController.LastAction.GROW;
+        assertEquals(0, tpc.getLatencyAdjustment(30, false, 100.0, 400.0));
+        assertTrue(tpc.backendSaturated);
+
+        // An empty queue clears saturation, and mostly idle threads are given back
+        tpc.lastAction = ThreadPoolController.LastAction.NONE;
+        tpc.intervalQueueWaitMillis = 0.0;
+        tpc.intervalBusyThreads = 2.0;
+        adjustment = tpc.getLatencyAdjustment(30, true, 50.0, 400.0);
+        assertFalse(tpc.backendSaturated);
+        assertTrue("Expected a multi-thread shrink, not " + adjustment, adjustment < -1);
+        assertTrue("Shrank below core threads: " + adjustment, 30 + adjustment >= 4);
+
+        // No task timings, no latency based adjustment
+        tpc.intervalTaskCpuMillis = -1;
+        tpc.intervalTaskBlockedMillis = -1;
+        assertEquals(0, tpc.getLatencyAdjustment(30, true, 50.0, 0.0));
+    }
+}
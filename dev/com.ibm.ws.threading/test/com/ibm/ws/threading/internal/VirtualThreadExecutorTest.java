@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.ibm.wsspi.threading.ExecutorServiceTaskInterceptor;
+
+/**
+ * Tests for the virtual thread mode of the default executor. The tests that run tasks
+ * on virtual threads are skipped on a JVM that does not have them.
+ */
+public class VirtualThreadExecutorTest {
+    private ExecutorServiceImpl executorService;
+
+    /**
+     * @return whether the JVM running the tests supports virtual threads.
+     */
+    private static boolean virtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException x) {
+            return false;
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) throws Exception {
+        return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    private Map<String, Object> createConfig(boolean virtualThreads) {
+        Map<String, Object> componentConfig = new HashMap<String, Object>(8);
+        componentConfig.put("name", "testExecutor");
+        componentConfig.put("rejectedWorkPolicy", "CALLER_RUNS");
+        componentConfig.put("stealPolicy", "STRICT");
+        componentConfig.put("keepAlive", 10);
+        componentConfig.put("coreThreads", 2);
+        componentConfig.put("maxThreads", 4);
+        componentConfig.put("virtualThreads", virtualThreads);
+        return componentConfig;
+    }
+
+    private ExecutorServiceImpl activate(boolean virtualThreads) {
+        executorService = new ExecutorServiceImpl();
+        executorService.activate(createConfig(virtualThreads));
+        return executorService;
+    }
+
+    @After
+    public void tearDown() {
+        if (executorService != null && executorService.componentConfig != null)
+            executorService.deactivate(0);
+    }
+
+    /**
+     * Without the virtualThreads attribute, the default executor itself is returned.
+     */
+    @Test
+    public void testDisabledReturnsDefaultExecutor() throws Exception {
+        activate(false);
+        assertSame(executorService, executorService.getVirtualThreadExecutor());
+        assertEquals(null, executorService.virtualThreadExecutor);
+
+        // the attribute is absent in configuration that predates it
+        Map<String, Object> componentConfig = createConfig(false);
+        componentConfig.remove("virtualThreads");
+        executorService.modified(componentConfig);
+        assertSame(executorService, executorService.getVirtualThreadExecutor());
+    }
+
+    /**
+     * On a JVM without virtual threads, the attribute has no effect and tasks run on the thread pool.
+     */
+    @Test
+    public void testUnsupportedReturnsDefaultExecutor() throws Exception {
+        assumeTrue(!virtualThreadsSupported());
+        activate(true);
+        assertSame(executorService, executorService.getVirtualThreadExecutor());
+        assertEquals(null, VirtualThreadExecutor.create(executorService, "test-"));
+
+        Future<Thread> future = executorService.getVirtualThreadExecutor().submit(new Callable<Thread>() {
+            @Override
+            public Thread call() {
+                return Thread.currentThread();
+            }
+        });
+        assertNotSame(Thread.currentThread(), future.get(1, TimeUnit.MINUTES));
+    }
+
+    /**
+     * Tasks run on virtual threads that are named after the executor.
+     */
+    @Test
+    public void testTasksRunOnVirtualThreads() throws Exception {
+        assumeTrue(virtualThreadsSupported());
+        activate(true);
+        ExecutorService vte = executorService.getVirtualThreadExecutor();
+        assertTrue(vte instanceof VirtualThreadExecutor);
+
+        List<Future<Thread>> futures = new ArrayList<Future<Thread>>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(vte.submit(new Callable<Thread>() {
+                @Override
+                public Thread call() {
+                    return Thread.currentThread();
+                }
+            }));
+        }
+        for (Future<Thread> future : futures) {
+            Thread thread = future.get(1, TimeUnit.MINUTES);
+            assertTrue(thread.getName(), isVirtual(thread));
+            assertTrue(thread.getName(), thread.getName().startsWith("testExecutor-virtual-"));
+        }
+        assertEquals(10, ((VirtualThreadExecutor) vte).getTaskCount());
+    }
+
+    /**
+     * Blocking tasks do not hold the threads of the pool, so more of them can run at
+     * once than the pool has threads.
+     */
+    @Test
+    public void testBlockingTasksExceedPoolSize() throws Exception {
+        assumeTrue(virtualThreadsSupported());
+        activate(true);
+        ExecutorService vte = executorService.getVirtualThreadExecutor();
+
+        final int tasks = 50;
+        final CountDownLatch running = new CountDownLatch(tasks);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < tasks; i++) {
+            vte.execute(new Runnable() {
+                @Override
+                public void run() {
+                    running.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException x) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        try {
+            assertTrue(running.await(1, TimeUnit.MINUTES));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * The task interceptors of the default executor wrap the tasks that run on virtual threads.
+     */
+    @Test
+    public void testInterceptorsApplied() throws Exception {
+        assumeTrue(virtualThreadsSupported());
+        activate(true);
+        final AtomicInteger wrapped = new AtomicInteger();
+        ExecutorServiceTaskInterceptor interceptor = new ExecutorServiceTaskInterceptor() {
+            @Override
+            public Runnable wrap(final Runnable r) {
+                return new Runnable() {
+                    @Override
+                    public void run() {
+                        wrapped.incrementAndGet();
+                        r.run();
+                    }
+                };
+            }
+
+            @Override
+            public <T> Callable<T> wrap(final Callable<T> c) {
+                return new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        wrapped.incrementAndGet();
+                        return c.call();
+                    }
+                };
+            }
+        };
+        executorService.setInterceptor(interceptor);
+
+        ExecutorService vte = executorService.getVirtualThreadExecutor();
+        assertEquals("done", vte.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return "done";
+            }
+        }).get(1, TimeUnit.MINUTES));
+        vte.invokeAll(Collections.singletonList(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        }));
+        assertEquals(2, wrapped.get());
+
+        executorService.unsetInterceptor(interceptor);
+        vte.submit(new Runnable() {
+            @Override
+            public void run() {}
+        }).get(1, TimeUnit.MINUTES);
+        assertEquals(2, wrapped.get());
+    }
+
+    /**
+     * Users cannot shut down the virtual thread executor.
+     */
+    @Test
+    public void testShutdownNotPermitted() throws Exception {
+        assumeTrue(virtualThreadsSupported());
+        activate(true);
+        ExecutorService vte = executorService.getVirtualThreadExecutor();
+        try {
+            vte.shutdown();
+            fail("shutdown should not be permitted");
+        } catch (UnsupportedOperationException x) {
+            // expected
+        }
+        try {
+            vte.shutdownNow();
+            fail("shutdownNow should not be permitted");
+        } catch (UnsupportedOperationException x) {
+            // expected
+        }
+        assertFalse(vte.isShutdown());
+    }
+
+    /**
+     * A configuration update keeps the virtual thread executor while the attribute stays enabled,
+     * and shuts it down once the attribute is disabled.
+     */
+    @Test
+    public void testModified() throws Exception {
+        assumeTrue(virtualThreadsSupported());
+        activate(true);
+        ExecutorService vte = executorService.getVirtualThreadExecutor();
+
+        Map<String, Object> componentConfig = createConfig(true);
+        componentConfig.put("maxThreads", 8);
+        executorService.modified(componentConfig);
+        assertSame(vte, executorService.getVirtualThreadExecutor());
+
+        executorService.modified(createConfig(false));
+        assertSame(executorService, executorService.getVirtualThreadExecutor());
+        assertTrue(vte.isShutdown());
+        assertTrue(vte.awaitTermination(1, TimeUnit.MINUTES));
+
+        executorService.modified(createConfig(true));
+        assertNotSame(vte, executorService.getVirtualThreadExecutor());
+        assertTrue(executorService.getVirtualThreadExecutor() instanceof VirtualThreadExecutor);
+    }
+
+    /**
+     * Deactivating the default executor lets tasks already submitted complete and stops the
+     * virtual thread executor.
+     */
+    @Test
+    public void testDeactivate() throws Exception {
+        assumeTrue(virtualThreadsSupported());
+        activate(true);
+        ExecutorService vte = executorService.getVirtualThreadExecutor();
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<String> future = vte.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                release.await();
+                return "done";
+            }
+        });
+
+        executorService.deactivate(0);
+        assertTrue(vte.isShutdown());
+        assertSame(executorService, executorService.getVirtualThreadExecutor());
+
+        release.countDown();
+        assertEquals("done", future.get(1, TimeUnit.MINUTES));
+        assertTrue(vte.awaitTermination(1, TimeUnit.MINUTES));
+    }
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class WorkStealingQueueTest {
+    @Test
+    public void testOfferPollRemove() throws Exception {
+        WorkStealingQueue<String> q = new WorkStealingQueue<String>(4);
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        q.offer("a");
+        q.offer("b");
+        q.offer("c");
+        assertEquals(3, q.size());
+        assertEquals("a", q.peek());
+        assertTrue(q.contains("b"));
+
+        // elements added by this thread come back in order
+        assertEquals("a", q.poll());
+        assertTrue(q.remove("c"));
+        assertFalse(q.remove("c"));
+        assertEquals("b", q.poll());
+        assertNull(q.poll());
+        assertTrue(q.isEmpty());
+        assertEquals(0, q.size());
+    }
+
+    @Test
+    public void testSteal() throws Exception {
+        final WorkStealingQueue<String> q = new WorkStealingQueue<String>(8);
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                q.offer("x");
+                q.offer("y");
+            }
+        };
+        other.start();
+        other.join();
+
+        // the current thread steals from the head of whichever partition the other thread used
+        assertEquals("x", q.peek());
+        assertEquals("x", q.poll());
+        assertEquals("y", q.poll());
+        assertNull(q.poll());
+    }
+
+    /**
+     * A consumer that steals from the partitions of several producers must receive the
+     * elements of each producer in the order that producer added them.
+     */
+    @Test(timeout = 60000)
+    public void testFIFOAcrossPartitions() throws Exception {
+        final WorkStealingQueue<int[]> q = new WorkStealingQueue<int[]>(8);
+        final int producers = 8, perProducer = 1000;
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++)
+                        q.offer(new int[] { producer, i });
+                }
+            });
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        final int[] next = new int[producers];
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                for (int[] e; (e = q.poll()) != null;)
+                    if (e[1] != next[e[0]]++)
+                        outOfOrder.incrementAndGet();
+            }
+        };
+        consumer.start();
+        consumer.join();
+
+        assertEquals(0, outOfOrder.get());
+        for (int p = 0; p < producers; p++)
+            assertEquals(perProducer, next[p]);
+        assertTrue(q.isEmpty());
+    }
+
+    /**
+     * Several producers and consumers must hand over every element exactly once.
+     */
+    @Test(timeout = 60000)
+    public void testConcurrentProducersConsumers() throws Exception {
+        final WorkStealingQueue<Integer> q = new WorkStealingQueue<Integer>(4);
+        final int producers = 4, consumers = 4, perProducer = 20000;
+        final AtomicInteger consumed = new AtomicInteger();
+        final AtomicLong sum = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(producers + consumers);
+
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++)
+                        q.offer(base + i);
+                    done.countDown();
+                }
+            }.start();
+        }
+        for (int c = 0; c < consumers; c++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    while (consumed.get() < producers * perProducer) {
+                        Integer i = q.poll();
+                        if (i == null)
+                            Thread.yield();
+                        else {
+                            sum.addAndGet(i);
+                            consumed.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+
+        assertTrue(done.await(50, TimeUnit.SECONDS));
+        int total = producers * perProducer;
+        assertEquals(total, consumed.get());
+        assertEquals((long) total * (total - 1) / 2, sum.get());
+        assertTrue(q.isEmpty());
+    }
+}
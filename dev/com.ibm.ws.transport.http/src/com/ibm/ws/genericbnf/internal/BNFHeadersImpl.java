@@ -190,6 +190,8 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
     private transient int deserializationVersion = SERIALIZATION_V1;
     /** PI13987 - Did we find any trailing whitespace in the header name */
     private boolean foundTrailingWhitespace = false;
+    /** Flag on whether complete header lines are scanned in place */
+    private transient boolean bInPlaceParse = false;
     /** Defined if it is an HTTP/2.0 connection when encoding headers */
     private H2HeaderTable table = null;
     /** Defined if this is an HTTP/2.0 connection servicing a Push Promise response */
@@ -1480,6 +1482,16 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
         // data (break out below)
         while (HeaderStorage.NOTSET == this.eohPosition) {
 
+            // scan whatever complete lines are available in place first, the
+            // state machine below picks up anything that scan leaves behind
+            if (this.bInPlaceParse && PARSING_VALUE != this.stateOfParsing
+                && null == this.parsedToken && 0 == this.parsedTokenLength
+                && !(bTrace && tc.isDebugEnabled())) {
+                if (parseHeadersInPlace(buff)) {
+                    break;
+                }
+            }
+
             // check on the state identifier to figure out what we're parsing
             switch (this.stateOfParsing) {
                 case (PARSING_HEADER):
@@ -2479,7 +2491,7 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
      * @return WsByteBuffer (null if index is invalid)
      */
     protected WsByteBuffer getParseBuffer(int index) {
-        if (0 > index || index >= this.parseIndex) {
+        if (0 > index || index > this.parseIndex) {
             return null;
         }
         return this.parseBuffers[index];
@@ -2584,6 +2596,20 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
         this.bHeaderValidation = flag;
     }
 
+    /**
+     * Set whether incoming header lines are scanned in place, with the values
+     * left in the parse buffers until queried, instead of being run through
+     * the byte at a time state machine.
+     *
+     * @param flag
+     */
+    final protected void setInPlaceHeaderParsing(boolean flag) {
+        this.bInPlaceParse = flag;
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "In place header parsing: " + flag);
+        }
+    }
+
     /**
      * Check the input header value for validity, starting at the offset and
      * continuing for the input length of characters.
@@ -3465,6 +3491,149 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
         return true;
     }
 
+    /**
+     * Scan complete header lines directly out of the bytes that are already
+     * available, either the byte cache or the backing array of the buffer,
+     * without the per-byte cache checks and token copies of the state machine.
+     * Each name is matched against the defined keys straight from those bytes
+     * and each value is only recorded by position, the same as the delayed
+     * extraction mode, so nothing is copied until the value is queried.
+     * <p>
+     * Anything out of the ordinary, such as a line that is not complete in
+     * the available bytes, a multiline value, whitespace before the colon, or
+     * an oversized token, is left untouched for the state machine to handle.
+     * This only ever stops at a boundary between the parsing states.
+     *
+     * @param buff
+     * @return boolean (true if the end of headers was found)
+     * @throws MalformedMessageException
+     */
+    private boolean parseHeadersInPlace(WsByteBuffer buff) throws MalformedMessageException {
+
+        final boolean inCache = (this.bytePosition < this.byteLimit);
+        final byte[] data;
+        // buffer position of data[i] is base + i
+        final int base;
+        final int limit;
+        int pos;
+        if (inCache) {
+            data = this.byteCache;
+            base = buff.position() - this.byteLimit;
+            pos = this.bytePosition;
+            limit = this.byteLimit;
+        } else if (buff.hasArray() && buff.hasRemaining()) {
+            if (HeaderStorage.NOTSET != this.headerChangeLimit && -1 != this.parseIndex
+                && -1 == this.parseBuffersStartPos[this.parseIndex]) {
+                // same tracking as fillByteCache does on first use of a buffer
+                this.parseBuffersStartPos[this.parseIndex] = buff.position();
+            }
+            data = buff.array();
+            base = -buff.arrayOffset();
+            pos = buff.position() - base;
+            limit = buff.limit() - base;
+        } else {
+            return false;
+        }
+
+        while (true) {
+            if (PARSING_CRLF == this.stateOfParsing) {
+                // same rules as parseCRLFs, but only committed once decided
+                int crlfs = this.numCRLFs;
+                int next = pos;
+                boolean eoh = false;
+                for (int i = 0; i < 4; i++) {
+                    if (next >= limit) {
+                        // undecided, let the state machine finish it
+                        return false;
+                    }
+                    byte b = data[next];
+                    if (BNFHeaders.CR == b) {
+                        next++;
+                        continue;
+                    } else if (BNFHeaders.LF == b) {
+                        next++;
+                        crlfs++;
+                    } else if (BNFHeaders.SPACE == b || BNFHeaders.TAB == b) {
+                        // multiline value
+                        return false;
+                    } else {
+                        break;
+                    }
+                    if (2 <= crlfs) {
+                        eoh = true;
+                        break;
+                    }
+                }
+                pos = next;
+                if (inCache) {
+                    this.bytePosition = pos;
+                } else {
+                    buff.position(base + pos);
+                }
+                this.bIsMultiLine = false;
+                this.stateOfParsing = PARSING_HEADER;
+                this.numCRLFs = 0;
+                if (eoh) {
+                    this.eohPosition = base + pos;
+                    buff.position(this.eohPosition);
+                    return true;
+                }
+            }
+
+            // PARSING_HEADER: find the whole "name: value" line first
+            int nameStart = pos;
+            int next = pos;
+            while (next < limit) {
+                byte b = data[next];
+                if (BNFHeaders.COLON == b) {
+                    break;
+                }
+                if (BNFHeaders.SPACE == b || BNFHeaders.TAB == b || BNFHeaders.CR == b || BNFHeaders.LF == b) {
+                    return false;
+                }
+                next++;
+            }
+            int nameLength = next - nameStart;
+            if (next >= limit || 0 == nameLength || nameLength > this.limitTokenSize) {
+                return false;
+            }
+            next++;
+            while (next < limit && (BNFHeaders.SPACE == data[next] || BNFHeaders.TAB == data[next])) {
+                next++;
+            }
+            int valueStart = next;
+            while (next < limit && BNFHeaders.CR != data[next] && BNFHeaders.LF != data[next]) {
+                next++;
+            }
+            int valueLength = next - valueStart;
+            if (next >= limit || valueLength > this.limitTokenSize) {
+                return false;
+            }
+
+            this.currentElem = getElement(findKey(data, nameStart, nameLength));
+            if (HeaderStorage.NOTSET != this.headerChangeLimit) {
+                this.currentElem.updateLastCRLFInfo(this.lastCRLFBufferIndex, this.lastCRLFPosition, this.lastCRLFisCR);
+                this.lastCRLFPosition = base + next;
+                this.lastCRLFBufferIndex = this.parseIndex;
+                this.lastCRLFisCR = (BNFHeaders.CR == data[next]);
+            }
+            if (BNFHeaders.LF == data[next]) {
+                this.numCRLFs = 1;
+            }
+            this.currentElem.setParseInformation(this.parseIndex, base + valueStart);
+            this.currentElem.setValueLength(valueLength);
+            pos = next + 1;
+            if (inCache) {
+                this.bytePosition = pos;
+            } else {
+                buff.position(base + pos);
+            }
+            this.stateOfParsing = PARSING_CRLF;
+            addHeader(this.currentElem, FILTER_YES);
+            this.currentElem = null;
+        }
+    }
+
     /**
      * Parse and extract a CRLF delimited token.
      * <p>
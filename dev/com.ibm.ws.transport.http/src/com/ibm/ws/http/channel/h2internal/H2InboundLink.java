@@ -554,6 +554,9 @@ public class H2InboundLink extends HttpInboundLink {
             }
             e.waitWriteCompleteLatch();
         }
+        if (e.getWriteError() != null) {
+            throw e.getWriteError();
+        }
     }
 
     // return null: it will complete via the callback
@@ -56,6 +56,11 @@ public class H2MuxTCPWriteCallback implements TCPWriteCompletedCallback {
         // need a local copy, since the next async write could be dequeued and executed once we hit either latch
         // H2WriteQEntry qEntry = qEntry;
 
+        // a work queue that writes several entries at once completes them itself
+        if (h2WorkQ != null && h2WorkQ.writeCompleted(ioe)) {
+            return;
+        }
+
         // should not be null, but if so, debug and leave, rather than NPE
         if (qEntry == null) {
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
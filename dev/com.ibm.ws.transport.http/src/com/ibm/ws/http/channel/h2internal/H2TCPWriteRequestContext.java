@@ -12,6 +12,7 @@ package com.ibm.ws.http.channel.h2internal;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
@@ -74,6 +75,15 @@ public class H2TCPWriteRequestContext implements TCPWriteRequestContext {
 
     }
 
+    @Override
+    public long transferFrom(FileChannel source, long position, long count, int timeout) throws IOException {
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "H2TCPWriteRequestContext.transferFrom called, file data must be sent in DATA frames");
+        }
+        throw new IOException("FileChannel transfer is not supported on an HTTP/2 stream");
+    }
+
     @Override
     public void clearBuffers() {
         if (null != this.buffers) {
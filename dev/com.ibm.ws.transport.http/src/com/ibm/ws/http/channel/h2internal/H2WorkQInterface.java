@@ -10,6 +10,8 @@
  *******************************************************************************/
 package com.ibm.ws.http.channel.h2internal;
 
+import java.io.IOException;
+
 import com.ibm.ws.http.channel.h2internal.exceptions.FlowControlException;
 import com.ibm.wsspi.tcpchannel.TCPWriteRequestContext;
 
@@ -44,6 +46,15 @@ public interface H2WorkQInterface {
 
     public void asyncCallbackComplete(H2WriteQEntry e);
 
+    /**
+     * Called by the mux write callback when a write that did not complete right away at the TCP Channel finishes.
+     *
+     * @param ioe the write error, or null if the write completed
+     * @return true if the work queue completed the entries of the write itself, false if the callback is to complete
+     *         the entry given to it with setCurrentQEntry
+     */
+    public boolean writeCompleted(IOException ioe);
+
     public WRITE_ACTION writeOrAddToQ(H2WriteQEntry n) throws FlowControlException;
 
     public void addNewNodeToQ(int streamID, int parentStreamID, int priority, boolean exclusive);
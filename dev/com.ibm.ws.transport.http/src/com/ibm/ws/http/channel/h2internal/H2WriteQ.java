@@ -10,6 +10,7 @@
  *******************************************************************************/
 package com.ibm.ws.http.channel.h2internal;
 
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.concurrent.ExecutorService;
 
@@ -281,6 +282,12 @@ public class H2WriteQ implements H2WorkQInterface {
         // no-op for this implementation
     }
 
+    @Override
+    public boolean writeCompleted(IOException ioe) {
+        // the mux callback completes the current entry
+        return false;
+    }
+
     @Override
     public void addNewNodeToQ(int streamID, int parentStreamID, int priority, boolean exclusive) {
         // no-op for this implementation
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package com.ibm.ws.http.channel.h2internal;
 
+import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
 
 import com.ibm.websphere.ras.Tr;
@@ -53,6 +54,10 @@ public class H2WriteQEntry {
 
     boolean forceQueue = false;
 
+    // set once the write queue has finished with this entry, successfully or not
+    volatile boolean writeDone = false;
+    volatile IOException writeError = null;
+
     public H2WriteQEntry(WsByteBuffer inBuf, WsByteBuffer[] inBufs, long inMin, int inTimeout, WRITE_TYPE inType, FrameTypes fType, int inPayloadLength, int inStreamID) {
 
         //  For a Sync write entry, the following are not use:  callback, forceQueue, connectionContext.
@@ -122,6 +127,19 @@ public class H2WriteQEntry {
         priority = x;
     }
 
+    public boolean isWriteDone() {
+        return writeDone;
+    }
+
+    public IOException getWriteError() {
+        return writeError;
+    }
+
+    public void setWriteDone(IOException ioe) {
+        writeError = ioe;
+        writeDone = true;
+    }
+
     // Only do get methods on parameters that are only set at the time of construction
 
     public WsByteBuffer getBuffer() {
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.channel.h2internal;
+
+import java.io.PrintWriter;
+
+import org.osgi.service.component.annotations.Component;
+
+import com.ibm.wsspi.logging.Introspector;
+
+/**
+ * Writes the frame batching statistics of the HTTP/2 write queues of all
+ * connections to the server dump.
+ */
+@Component(service = Introspector.class, property = { "service.vendor=IBM" })
+public class H2WriteStatisticsIntrospector implements Introspector {
+
+    @Override
+    public String getIntrospectorName() {
+        return "H2WriteStatisticsIntrospector";
+    }
+
+    @Override
+    public String getIntrospectorDescription() {
+        return "The writes issued, frames written per write and queue depth of the HTTP/2 write queues";
+    }
+
+    @Override
+    public void introspect(PrintWriter out) {
+        out.println(H2WriteTree.getTotalStatistics());
+    }
+}
@@ -10,7 +10,16 @@
  *******************************************************************************/
 package com.ibm.ws.http.channel.h2internal;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.ibm.websphere.channelfw.osgi.CHFWBundle;
 import com.ibm.websphere.ras.Tr;
@@ -21,33 +30,76 @@ import com.ibm.ws.http.channel.h2internal.priority.Node.NODE_STATUS;
 import com.ibm.ws.http.channel.h2internal.priority.Node.WRITE_COUNT_ACTION;
 import com.ibm.ws.http.channel.h2internal.priority.Tree;
 import com.ibm.ws.http.channel.internal.HttpMessages;
+import com.ibm.wsspi.bytebuffer.WsByteBuffer;
 import com.ibm.wsspi.channelfw.VirtualConnection;
 import com.ibm.wsspi.tcpchannel.TCPWriteRequestContext;
 
-// WDW - Improvements
-// cut down on find the node in the tree by finding and returning the node, not the entry in findNext
-// and change tree.updateNode to take a Node as input
-
 /**
+ * Write queue for one HTTP/2 connection.
+ *
+ * Writers add their entry to a lock free queue. The first writer to find no write in progress becomes the
+ * queue servicing thread: it moves the queued entries into the priority tree, takes as many as it can from the
+ * tree in priority order, and writes all of their frames with one gathering write at the TCP Channel. Only one
+ * write is ever outstanding at the TCP Channel. Once its own entry is written, the servicing thread hands any
+ * remaining work to an executor thread rather than writing for other streams indefinitely.
  *
+ * A write that does not complete right away is finished by the mux write callback, which completes the entries of
+ * the write and takes over the queue, so the servicing thread does not wait for it.
  */
 public class H2WriteTree implements H2WorkQInterface {
 
     private static final TraceComponent tc = Tr.register(H2WriteTree.class, HttpMessages.HTTP_TRACE_NAME, HttpMessages.HTTP_BUNDLE);
 
+    /** most frames that will be gathered into one write */
+    private static final int MAX_FRAMES_PER_WRITE = 32;
+    /** a write stops gathering frames once it holds this many bytes */
+    private static final long MAX_BYTES_PER_WRITE = 256 * 1024;
+
+    // results of writing a batch
+    private static final int BATCH_NONE = 0; // nothing to write
+    private static final int BATCH_WRITTEN = 1; // written right away
+    private static final int BATCH_PENDING = 2; // the mux callback will complete the write
+    private static final int BATCH_PENDING_OWN = 3; // as BATCH_PENDING, and the batch holds the caller's own entry
+
     TCPWriteRequestContext writeReqContext = null;
     H2MuxTCPWriteCallback muxCallback = null;
     Tree tree = null;
 
-    Object qSync = new Object() {};
-    Q_STATUS qStatus = Q_STATUS.NOT_IN_USE;
+    volatile Q_STATUS qStatus = Q_STATUS.NOT_IN_USE;
 
     // when told to quit, code will drain the queue, or not, depends on this flag
-    boolean drainQ = false;
+    volatile boolean drainQ = false;
+
+    // entries added by the stream threads, waiting to be moved into the tree by the queue servicing thread
+    private final ConcurrentLinkedQueue<H2WriteQEntry> pendingQ = new ConcurrentLinkedQueue<H2WriteQEntry>();
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+
+    // true while a thread owns the queue; only that thread touches the fields below and the TCP write context
+    private final AtomicBoolean writeInProgress = new AtomicBoolean(false);
+
+    // entries whose stream already had an entry in the tree, in arrival order
+    private final LinkedList<H2WriteQEntry> deferred = new LinkedList<H2WriteQEntry>();
+    // entries moved into the tree and not yet written, in the order they were moved
+    private final LinkedHashSet<H2WriteQEntry> inTree = new LinkedHashSet<H2WriteQEntry>();
+
+    // entries of the write that is outstanding at the TCP Channel, completed by the mux callback
+    private volatile ArrayList<H2WriteQEntry> outstanding = null;
 
     // since there is one Tree per Connection, the tree will keep track of the connection window update parameters.
     private final int connectionWindowUpdateWriteInitialSize = 65535;
-    private int connectionWindowUpdateWriteLimit = 65535;
+    private final AtomicInteger connectionWindowUpdateWriteLimit = new AtomicInteger(65535);
+
+    // statistics
+    private final AtomicLong writesIssued = new AtomicLong(0);
+    private final AtomicLong framesWritten = new AtomicLong(0);
+    private final AtomicLong writesPending = new AtomicLong(0);
+    private final AtomicInteger maxQueueDepth = new AtomicInteger(0);
+
+    // statistics of all connections, for the server dump
+    private static final AtomicLong totalWritesIssued = new AtomicLong(0);
+    private static final AtomicLong totalFramesWritten = new AtomicLong(0);
+    private static final AtomicLong totalWritesPending = new AtomicLong(0);
+    private static final AtomicInteger totalMaxQueueDepth = new AtomicInteger(0);
 
     /*
      * (non-Javadoc)
@@ -74,21 +126,7 @@ public class H2WriteTree implements H2WorkQInterface {
      */
     @Override
     public void notifyStandBy() {
-        synchronized (qSync) {
-            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                Tr.debug(tc, "notifyStandBy called with qStatus: " + qStatus);
-            }
-            if (qStatus == Q_STATUS.BYPASSED) {
-                // no other writes waiting, so no queue thread in flight.  Set the state for more caller thread processing
-                qStatus = Q_STATUS.NOT_IN_USE;
-            } else if (qStatus == Q_STATUS.STAND_BY) {
-                // Requests have been put on the Queue while we were writing, The Queue thread waiting to service them can start now
-                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                    Tr.debug(tc, "notifyStandBy doing notify");
-                }
-                qSync.notify();
-            }
-        }
+        // no-op for this implementation, the thread that issued a write waits for it to complete itself
     }
 
     /*
@@ -98,9 +136,16 @@ public class H2WriteTree implements H2WorkQInterface {
      */
     @Override
     public void setToQuit(boolean inDrainQ) {
-        synchronized (qSync) {
-            qStatus = Q_STATUS.QUIT;
-            drainQ = inDrainQ;
+        drainQ = inDrainQ;
+        qStatus = Q_STATUS.QUIT;
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "setToQuit drain: " + inDrainQ + " " + getStatistics());
+        }
+
+        // if nobody owns the queue, then nobody else will release entries still on it
+        if (writeInProgress.compareAndSet(false, true)) {
+            serviceQ(null);
         }
     }
 
@@ -111,65 +156,221 @@ public class H2WriteTree implements H2WorkQInterface {
      */
     @Override
     public WRITE_ACTION writeOrAddToQ(H2WriteQEntry entry) throws FlowControlException {
-        synchronized (qSync) {
 
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "process write entry with qStatus: " + qStatus + " entry: " + entry.hashCode());
+        }
+
+        if ((qStatus == Q_STATUS.QUIT) || (qStatus == Q_STATUS.FINISHED)) {
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                Tr.debug(tc, "process write entry with qStatus: " + qStatus + " entry: " + entry.hashCode());
+                Tr.debug(tc, "do not process write - Q told to quit");
             }
+            return WRITE_ACTION.CONNECTION_QUIT;
+        }
+
+        if (entry.getFrameType() == FrameTypes.DATA) {
+            // take the connection window now, on the caller's thread, since the write itself may happen on another thread
+            reserveConnectionWindow(entry.getPayloadLength());
+        }
+
+        entry.setServicedOnQ(true);
+        pendingQ.add(entry);
+        int depth = pendingCount.incrementAndGet();
+        updateMax(maxQueueDepth, depth);
+        updateMax(totalMaxQueueDepth, depth);
+
+        if (!writeInProgress.compareAndSet(false, true)) {
+            // another thread owns the queue and will write this entry
+            return WRITE_ACTION.QUEUED;
+        }
+
+        // this thread now owns the queue
+        if (entry.isWriteDone()) {
+            // the previous owner already wrote it before giving up the queue
+            handOff();
+            return (entry.getWriteType() == H2WriteQEntry.WRITE_TYPE.SYNC) ? WRITE_ACTION.COMPLETED : WRITE_ACTION.PENDING_CALLBACK;
+        }
 
-            if (qStatus == Q_STATUS.NOT_IN_USE) {
-                // perform the write on this thread, outside the sync block
-                qStatus = Q_STATUS.BYPASSED;
-                entry.setServicedOnQ(false);
-
-            } else if ((qStatus == Q_STATUS.ACTIVE) || (qStatus == Q_STATUS.STAND_BY)) {
-                // queue is in use, so add this write entry to the queue/tree and leave
-                entry.setServicedOnQ(true);
-                addEntryToQ(entry);
-                return WRITE_ACTION.QUEUED;
-
-            } else if (qStatus == Q_STATUS.BYPASSED) {
-                // queue is not in use, but needs to be now, since we are want to write with a write outstanding.
-                entry.setServicedOnQ(true);
-                qStatus = Q_STATUS.STAND_BY;
-                addEntryToQ(entry);
-                // wait for outstanding request to complete before allowing the queue thread to make more write requests
-                try {
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "perform write on caller's thread");
+        }
+        entry.setServicedOnQ(false);
+        return serviceQ(entry);
+    }
+
+    /**
+     * Write queued entries on the current thread, which must own the queue. If an entry is given, return once it
+     * has been written and pass any remaining work to an executor thread; otherwise keep writing until the queue is
+     * empty. Ownership of the queue is released or handed on before returning. If a write does not complete right
+     * away, ownership passes to the mux callback, which completes the write.
+     *
+     * @param own the caller's entry, or null if this is a queue service thread
+     * @return COMPLETED if the caller's entry was written on this thread and its writer is released by returning,
+     *         PENDING_CALLBACK if the callback of the caller's async entry will be called, or QUEUED if the caller's
+     *         entry is still to be completed by another thread
+     */
+    private WRITE_ACTION serviceQ(H2WriteQEntry own) {
+        try {
+            while (true) {
+                if (((qStatus == Q_STATUS.QUIT) && (drainQ == false)) || (qStatus == Q_STATUS.FINISHED)) {
+                    // quit immediately if told to do so
                     if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                        Tr.debug(tc, "waiting to start write Q thread");
+                        Tr.debug(tc, "Write Q told to quit without drain - finished");
                     }
-                    qSync.wait();
-                    qStatus = Q_STATUS.ACTIVE;
-                    if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                        Tr.debug(tc, "start write Q thread");
+                    releaseAll(new IOException("HTTP/2 connection is closing"));
+                    qStatus = Q_STATUS.FINISHED;
+                    // release anything added while the status was changing
+                    writeInProgress.set(false);
+                    if (pendingCount.get() == 0 || !writeInProgress.compareAndSet(false, true)) {
+                        return notWrittenByCaller(own);
                     }
-                    startQThread();
-                    return WRITE_ACTION.QUEUED;
-                } catch (InterruptedException e) {
-                    // TODO: handle this somehow
+                    continue;
                 }
 
-            } else if ((qStatus == Q_STATUS.QUIT) || (qStatus == Q_STATUS.FINISHED)) {
-                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                    Tr.debug(tc, "do not process write - Q told to quit");
+                int result = writeNextBatch(own);
+
+                if (result == BATCH_PENDING_OWN) {
+                    // the mux callback will complete the caller's entry
+                    return (own.getWriteType() == H2WriteQEntry.WRITE_TYPE.ASYNC) ? WRITE_ACTION.PENDING_CALLBACK : WRITE_ACTION.QUEUED;
+                }
+                if (result == BATCH_PENDING) {
+                    return notWrittenByCaller(own);
+                }
+
+                if (own != null && own.isWriteDone()) {
+                    break;
                 }
-                return WRITE_ACTION.CONNECTION_QUIT;
+
+                if (result == BATCH_NONE) {
+                    // nothing left to write, give up the queue, unless more work arrived while giving it up
+                    writeInProgress.set(false);
+                    if (pendingCount.get() == 0 || !writeInProgress.compareAndSet(false, true)) {
+                        if (qStatus == Q_STATUS.QUIT) {
+                            qStatus = Q_STATUS.FINISHED;
+                        }
+                        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                            Tr.debug(tc, "Write Q empty so thread is leaving");
+                        }
+                        return notWrittenByCaller(own);
+                    }
+                }
+            }
+
+            // our own entry is written; leave the rest to another thread so this stream is not held up
+            handOff();
+
+            if (own.getWriteType() == H2WriteQEntry.WRITE_TYPE.ASYNC
+                && (own.getForceQueue() || own.getWriteError() != null)) {
+                // the callback has been handed to another thread
+                return WRITE_ACTION.PENDING_CALLBACK;
             }
-        } // end synchronized
+            return WRITE_ACTION.COMPLETED;
 
-        // Determined from above that we are to handle this write on the callers thread
-        if (!(entry.getServicedOnQ())) {
+        } catch (Throwable t) {
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                Tr.debug(tc, "perform write on caller's thread");
+                Tr.debug(tc, "Write Q caught a Throwable.  Set Q status to Q_STATUS.FINISHED and leave: " + t);
             }
-            return writeEntry(entry);
+            // something went really wrong, release the waiting writers and leave
+            qStatus = Q_STATUS.FINISHED;
+            releaseAll(new IOException(t));
+            return notWrittenByCaller(own);
         }
+    }
 
-        // should never get here
-        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-            Tr.debug(tc, "uh-oh we're confused: WRITE_ACTION.CONFUSED");
+    /**
+     * @return the action for a caller whose entry is completed by another thread, or has been released
+     */
+    private WRITE_ACTION notWrittenByCaller(H2WriteQEntry own) {
+        if (own != null && own.getWriteType() == H2WriteQEntry.WRITE_TYPE.ASYNC && own.isWriteDone()) {
+            // released with an error, the callback has been handed to another thread
+            return WRITE_ACTION.PENDING_CALLBACK;
+        }
+        return WRITE_ACTION.QUEUED;
+    }
+
+    /**
+     * Called by the owner of the queue once its own entry is written, or once an outstanding write completes. Pass
+     * any remaining work to a queue service thread, otherwise give up the queue.
+     */
+    private void handOff() {
+        if (pendingCount.get() > 0 || !deferred.isEmpty() || !inTree.isEmpty() || qStatus == Q_STATUS.QUIT) {
+            startQThread();
+            return;
+        }
+
+        writeInProgress.set(false);
+        if (pendingCount.get() > 0 && writeInProgress.compareAndSet(false, true)) {
+            startQThread();
+        }
+    }
+
+    /**
+     * Gather the next entries in priority order and write them with a single write.
+     *
+     * @param own the caller's entry, or null if this is a queue service thread
+     * @return BATCH_NONE if there was nothing to write, BATCH_WRITTEN if the write completed right away, otherwise
+     *         BATCH_PENDING or BATCH_PENDING_OWN
+     */
+    private int writeNextBatch(H2WriteQEntry own) {
+
+        moveToTree();
+
+        ArrayList<H2WriteQEntry> batch = new ArrayList<H2WriteQEntry>();
+        long bytes = 0;
+        while (batch.size() < MAX_FRAMES_PER_WRITE && bytes < MAX_BYTES_PER_WRITE) {
+            H2WriteQEntry e = tree.takeNextWriteEntry();
+            if (e == null) {
+                break;
+            }
+            if (!inTree.remove(e)) {
+                // the node still held an entry that was already written
+                continue;
+            }
+            batch.add(e);
+            bytes += byteCount(e);
+        }
+
+        if (batch.isEmpty() && !inTree.isEmpty()) {
+            // the stream's node was removed from the tree while its entry waited, write it anyway
+            Iterator<H2WriteQEntry> it = inTree.iterator();
+            batch.add(it.next());
+            it.remove();
+        }
+
+        if (batch.isEmpty()) {
+            return BATCH_NONE;
+        }
+
+        return writeBatch(batch, own);
+    }
+
+    /**
+     * Move newly queued entries, and any deferred ones, into the priority tree. The tree holds one entry per stream,
+     * so an entry whose stream already has one waiting is deferred to a later batch.
+     */
+    private void moveToTree() {
+        if (!deferred.isEmpty()) {
+            Iterator<H2WriteQEntry> it = deferred.iterator();
+            while (it.hasNext()) {
+                H2WriteQEntry e = it.next();
+                if (!tree.isRequestingWrite(e.getStreamID())) {
+                    it.remove();
+                    addEntryToQ(e);
+                }
+            }
+        }
+
+        H2WriteQEntry e = pendingQ.poll();
+        while (e != null) {
+            pendingCount.decrementAndGet();
+            if (!deferred.isEmpty() || tree.isRequestingWrite(e.getStreamID())) {
+                // keep arrival order behind anything already deferred
+                deferred.add(e);
+            } else {
+                addEntryToQ(e);
+            }
+            e = pendingQ.poll();
         }
-        return WRITE_ACTION.CONFUSED;
     }
 
     @Override
@@ -214,157 +415,186 @@ public class H2WriteTree implements H2WorkQInterface {
 
         // update node with current write object and signal that node wants to write
         tree.updateNode(streamID, NODE_STATUS.REQUESTING_WRITE, WRITE_COUNT_ACTION.NO_ACTION, entry);
+        inTree.add(entry);
 
     }
 
-    private WRITE_ACTION writeEntry(H2WriteQEntry e) throws FlowControlException {
-
-        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-            Tr.debug(tc, "H2WriteTree entered with stream-id: " + e.getStreamID() + " entry hc:" + e.hashCode());
+    private long byteCount(H2WriteQEntry e) {
+        if (e.getBuffer() != null) {
+            return e.getBuffer().remaining();
         }
-
-        if (e.getFrameType() == FrameTypes.DATA) {
-            if (connectionWindowUpdateWriteLimit - e.getPayloadLength() < 0) {
-                // would exceed window update limit
-                String s = " connectionWindowUpdateWriteLimit " + connectionWindowUpdateWriteLimit +
-                           " connectionWindowUpdateWriteInitialSize " + connectionWindowUpdateWriteInitialSize;
-                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                    Tr.debug(tc, "Can not write Data would exceed connection window update limit: " + s);
+        long total = 0;
+        WsByteBuffer[] bufs = e.getBuffers();
+        if (bufs != null) {
+            for (WsByteBuffer b : bufs) {
+                if (b != null) {
+                    total += b.remaining();
                 }
-                FlowControlException ex = new FlowControlException("Can not write Data would exceed connection window update limit: " + s);
-                throw ex;
             }
         }
+        return total;
+    }
 
-        // where we actually do the write at the TCP Channel layer
-        VirtualConnection vc = null;
-
-        // Since only one write can be outstanding at one time, we can tell the callback what entry is now being written.  callback will need this later
-        muxCallback.setCurrentQEntry(e);
+    /**
+     * Write the frames of every entry in the batch with one write at the TCP Channel. If the write completes right
+     * away, release each entry's writer; otherwise the mux callback does so once the write completes.
+     *
+     * @param own the caller's entry, or null if this is a queue service thread
+     * @return BATCH_WRITTEN, BATCH_PENDING or BATCH_PENDING_OWN
+     */
+    private int writeBatch(ArrayList<H2WriteQEntry> batch, H2WriteQEntry own) {
+
+        H2WriteQEntry first = batch.get(0);
+        long minToWrite;
+        boolean forceQueue = false;
+        boolean ownInBatch = false;
+        for (H2WriteQEntry e : batch) {
+            forceQueue |= e.getForceQueue();
+            ownInBatch |= (e == own);
+        }
 
         // put the write buffers into the TCP Channel write context, so they can be written on the wire
-        if (e.getBuffer() != null) {
-            writeReqContext.setBuffer(e.getBuffer());
+        if (batch.size() == 1) {
+            if (first.getBuffer() != null) {
+                writeReqContext.setBuffer(first.getBuffer());
+            } else {
+                writeReqContext.setBuffers(first.getBuffers());
+            }
+            minToWrite = first.getMinToWrite();
         } else {
-            writeReqContext.setBuffers(e.getBuffers());
-        }
-
-        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-            Tr.debug(tc, "update node for stream-id: " + e.getStreamID());
+            ArrayList<WsByteBuffer> list = new ArrayList<WsByteBuffer>(batch.size());
+            for (H2WriteQEntry e : batch) {
+                if (e.getBuffer() != null) {
+                    list.add(e.getBuffer());
+                } else if (e.getBuffers() != null) {
+                    for (WsByteBuffer b : e.getBuffers()) {
+                        if (b != null) {
+                            list.add(b);
+                        }
+                    }
+                }
+            }
+            writeReqContext.setBuffers(list.toArray(new WsByteBuffer[list.size()]));
+            // frames may not be split across writes
+            minToWrite = TCPWriteRequestContext.WRITE_ALL_DATA;
         }
 
-        // attempt to write will count as a write action for this entry
-        tree.updateNode(e.getStreamID(), NODE_STATUS.ACTION_NO_CHANGE, WRITE_COUNT_ACTION.INCREMENT, null);
+        writesIssued.incrementAndGet();
+        totalWritesIssued.incrementAndGet();
+        framesWritten.addAndGet(batch.size());
+        totalFramesWritten.addAndGet(batch.size());
 
         // The write is always async at the TCP Channel so we are not hanging threads
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-            Tr.debug(tc, "tell device channel to write the data on stream-id: " + e.getStreamID());
+            Tr.debug(tc, "tell device channel to write " + batch.size() + " frames, first on stream-id: " + first.getStreamID());
         }
 
-        vc = writeReqContext.write(e.getMinToWrite(), muxCallback, e.getForceQueue(), e.getTimeout());
-
-        if (vc != null) {
-            // write worked right away
+        // the callback may run before write returns, so it must find the entries first
+        outstanding = batch;
+        VirtualConnection vc = writeReqContext.write(minToWrite, muxCallback, forceQueue, first.getTimeout());
+        if (vc == null) {
+            // the mux callback completes the entries and takes over the queue, do not touch either from here on
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                Tr.debug(tc, "write worked right away");
-            }
-
-            if (e.getFrameType() == FrameTypes.DATA) {
-                connectionWindowUpdateWriteLimit -= e.getPayloadLength();
-                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                    Tr.debug(tc, "Data payload written - new connectionWindowUpdateWriteLimit: " + connectionWindowUpdateWriteLimit);
-                }
-
-            }
-
-            if (!e.getServicedOnQ() && (e.getForceQueue() == false)) {
-
-                // this is the caller's thread and force queue is not true
-                // so return with the successful write after processing the queue state
-                tree.updateNode(e.getStreamID(), NODE_STATUS.NOT_REQUESTING, WRITE_COUNT_ACTION.NO_ACTION, null);
-
-                notifyStandBy();
-
-                return WRITE_ACTION.COMPLETED;
+                Tr.debug(tc, "write did not work right away, the callback will complete it");
             }
+            return ownInBatch ? BATCH_PENDING_OWN : BATCH_PENDING;
+        }
 
-            // on the queue servicing thread  and/or forcequeue (which is only allowed on for Async) is true
-            // if sync write completed right away, then release the thread that is waiting for this write to complete
-            if (e.getWriteType() == H2WriteQEntry.WRITE_TYPE.SYNC) {
-
-                tree.updateNode(e.getStreamID(), NODE_STATUS.NOT_REQUESTING, WRITE_COUNT_ACTION.NO_ACTION, null);
-                e.hitWriteCompleteLatch();
-
-                return WRITE_ACTION.COMPLETED;
-
-            } else {
-                // an Async write completed right away
-                // we are either on the queue service thread, or forceQueue is true
-
-                // call the callback for this write using a new thread, the complete/error methods on the callback will check if the
-                // queue service thread is in standby/wait (only relevant here for the force queue case)
-
-                // TODO: need to give this thread the right metaData/context?
-
-                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                    Tr.debug(tc, "start a new thread to service the async callback");
-                }
-
-                // callback will update the entry status
-                ExecutorService executorService = CHFWBundle.getExecutorService();
-                AsyncCallback ac = new AsyncCallback(e);
-                executorService.execute(ac);
-
-                // if not on the service queue, notify in case service queue thread is now waiting
-                if (!e.getServicedOnQ()) {
-                    notifyStandBy();
-                }
-
-                // channel write is complete and callback is now asynchronous to that Q service thread, so Q service thread can do another write.
-                return WRITE_ACTION.COMPLETED;
-            }
+        outstanding = null;
+        for (H2WriteQEntry e : batch) {
+            completeEntry(e, null, e == own);
+        }
+        return BATCH_WRITTEN;
+    }
 
-        } else {
-            // not all the data written right away
+    /**
+     * Complete the entries of the outstanding write, then carry on servicing the queue from another thread, or give
+     * it up.
+     */
+    @Override
+    public boolean writeCompleted(IOException ioe) {
+        ArrayList<H2WriteQEntry> batch = outstanding;
+        outstanding = null;
+        if (batch == null) {
+            // should not happen, debug and leave rather than NPE
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                Tr.debug(tc, "write did not work right away");
+                Tr.debug(tc, "no outstanding write for this callback");
             }
-            if (e.getWriteType() == H2WriteQEntry.WRITE_TYPE.SYNC) {
-                // caller or queue service thread needs to wait until this write finishes since it is a sync write
-
-                // wait for the mux write callback to be processed, which will also update that Q status
-                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                    Tr.debug(tc, "writeEntry - WRITE_TYPE.SYNC - call entry.waitWriteCompleteLatch");
-                }
+            return true;
+        }
 
-                e.waitWriteCompleteLatch();
-                tree.updateNode(e.getStreamID(), NODE_STATUS.NOT_REQUESTING, WRITE_COUNT_ACTION.NO_ACTION, null);
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "outstanding write of " + batch.size() + " frames completed, error: " + ioe);
+        }
+        writesPending.incrementAndGet();
+        totalWritesPending.incrementAndGet();
+        for (H2WriteQEntry e : batch) {
+            completeEntry(e, ioe, false);
+        }
+        handOff();
+        return true;
+    }
 
-                // caller or queue service thread moves on to next piece of work
-                return WRITE_ACTION.COMPLETED;
+    /**
+     * Release the writer of an entry once the queue is finished with it.
+     *
+     * @param byCaller true if the entry was written right away on the thread of its own writer
+     */
+    private void completeEntry(H2WriteQEntry e, IOException error, boolean byCaller) {
+        e.setWriteDone(error);
 
-            } else {
-                // Async Write, and it did not write all the data right away
+        if (e.getWriteType() == H2WriteQEntry.WRITE_TYPE.SYNC) {
+            e.hitWriteCompleteLatch();
+            return;
+        }
 
-                if (!e.getServicedOnQ()) {
+        if (byCaller && !e.getForceQueue() && error == null) {
+            // the caller is writing its own entry and will report the completion itself
+            return;
+        }
 
-                    // this is the caller's thread, so return with the write pending.
-                    // mux callback will update the Q status and call caller's callback  when it completes
-                    return WRITE_ACTION.PENDING_CALLBACK;
+        // call the callback for this write using a new thread
+        // TODO: need to give this thread the right metaData/context?
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "start a new thread to service the async callback");
+        }
+        AsyncCallback ac = new AsyncCallback(e);
+        getExecutorService().execute(ac);
+    }
 
-                } else {
+    /**
+     * Release every entry still waiting to be written, and give back the connection window they reserved.
+     */
+    private void releaseAll(IOException error) {
+        H2WriteQEntry e = pendingQ.poll();
+        while (e != null) {
+            pendingCount.decrementAndGet();
+            deferred.add(e);
+            e = pendingQ.poll();
+        }
+        for (H2WriteQEntry x : inTree) {
+            tree.updateNode(x.getStreamID(), NODE_STATUS.NOT_REQUESTING, WRITE_COUNT_ACTION.NO_ACTION, null);
+            releaseConnectionWindow(x);
+            completeEntry(x, error, false);
+        }
+        inTree.clear();
+        for (H2WriteQEntry x : deferred) {
+            releaseConnectionWindow(x);
+            completeEntry(x, error, false);
+        }
+        deferred.clear();
+    }
 
-                    // queue service thread needs to wait for async write to complete before performing next write (can not have two writes
-                    // outstanding on the TCP Channel)
-                    if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                        Tr.debug(tc, "writeEntry - WRITE_TYPE.ASYNC - call entry.waitWriteCompleteLatch");
-                    }
-                    e.waitWriteCompleteLatch();
-                    return WRITE_ACTION.COMPLETED;
-                }
+    /**
+     * Give back the connection window reserved by an entry that will not be written.
+     */
+    private void releaseConnectionWindow(H2WriteQEntry e) {
+        if (e.getFrameType() == FrameTypes.DATA) {
+            int limit = connectionWindowUpdateWriteLimit.addAndGet(e.getPayloadLength());
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Data payload released - new connectionWindowUpdateWriteLimit: " + limit);
             }
         }
-
     }
 
     @Override
@@ -374,131 +604,162 @@ public class H2WriteTree implements H2WorkQInterface {
 
     @Override
     public void asyncCallbackComplete(H2WriteQEntry e) {
+        // no-op for this implementation, the node stops requesting as soon as its entry is taken for a write
+    }
 
-        tree.updateNode(e.getStreamID(), NODE_STATUS.NOT_REQUESTING, WRITE_COUNT_ACTION.NO_ACTION, null);
-
+    private void reserveConnectionWindow(int payloadLength) throws FlowControlException {
+        while (true) {
+            int limit = connectionWindowUpdateWriteLimit.get();
+            if (limit - payloadLength < 0) {
+                // would exceed window update limit
+                String s = " connectionWindowUpdateWriteLimit " + limit +
+                           " connectionWindowUpdateWriteInitialSize " + connectionWindowUpdateWriteInitialSize;
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "Can not write Data would exceed connection window update limit: " + s);
+                }
+                FlowControlException ex = new FlowControlException("Can not write Data would exceed connection window update limit: " + s);
+                throw ex;
+            }
+            if (connectionWindowUpdateWriteLimit.compareAndSet(limit, limit - payloadLength)) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "Data payload queued - new connectionWindowUpdateWriteLimit: " + (limit - payloadLength));
+                }
+                return;
+            }
+        }
     }
 
     @Override
     public void incrementConnectionWindowUpdateLimit(int x) throws FlowControlException {
-        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-            Tr.debug(tc, "incrementConnectionWindowUpdateLimit entry: inc value: " + x
-                         + "current connectionWindowUpdateWriteLimit: " + connectionWindowUpdateWriteLimit);
-        }
-        int temp = connectionWindowUpdateWriteLimit + x;
-        temp = temp & 0x10000000;
-        if (temp != 0) {
-            String s = "processWindowUpdateFrame: out of bounds increment, current connection write limit: " + connectionWindowUpdateWriteLimit
-                       + " total would have been: " + temp;
+        while (true) {
+            int limit = connectionWindowUpdateWriteLimit.get();
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                Tr.debug(tc, s);
+                Tr.debug(tc, "incrementConnectionWindowUpdateLimit entry: inc value: " + x
+                             + "current connectionWindowUpdateWriteLimit: " + limit);
             }
+            int temp = limit + x;
+            temp = temp & 0x10000000;
+            if (temp != 0) {
+                String s = "processWindowUpdateFrame: out of bounds increment, current connection write limit: " + limit
+                           + " total would have been: " + temp;
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, s);
+                }
 
-            FlowControlException e = new FlowControlException(s);
-            throw e;
-        }
+                FlowControlException e = new FlowControlException(s);
+                throw e;
+            }
 
-        connectionWindowUpdateWriteLimit += x;
-        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-            Tr.debug(tc, "connectionWindowUpdateWriteLimit updated to: " + connectionWindowUpdateWriteLimit);
+            if (connectionWindowUpdateWriteLimit.compareAndSet(limit, limit + x)) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "connectionWindowUpdateWriteLimit updated to: " + (limit + x));
+                }
+                return;
+            }
         }
     }
 
     @Override
     public void decreaseConnectionWindowUpdateWriteLimit(int x) {
 
-        connectionWindowUpdateWriteLimit -= x;
+        int limit = connectionWindowUpdateWriteLimit.addAndGet(-x);
 
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
             Tr.debug(tc, "decreaseConnectionWindowUpdateWriteLimit: dec value: " + x
-                         + "connectionWindowUpdateWriteLimit decreased to: " + connectionWindowUpdateWriteLimit);
+                         + "connectionWindowUpdateWriteLimit decreased to: " + limit);
         }
 
     }
 
-    protected void startQThread() {
-        ExecutorService executorService = CHFWBundle.getExecutorService();
-        QOwner qOwner = new QOwner();
-        executorService.execute(qOwner);
+    /**
+     * @return the number of writes issued to the TCP Channel
+     */
+    public long getWritesIssued() {
+        return writesIssued.get();
     }
 
-    protected class QOwner implements Runnable {
+    /**
+     * @return the number of frame entries written
+     */
+    public long getFramesWritten() {
+        return framesWritten.get();
+    }
 
-        @Override
-        public void run() {
+    /**
+     * @return the number of writes that did not complete right away and were completed by the mux callback
+     */
+    public long getWritesPending() {
+        return writesPending.get();
+    }
 
-            try {
-                while (true) {
+    /**
+     * @return the number of entries waiting to be moved into the tree
+     */
+    public int getQueueDepth() {
+        return pendingCount.get();
+    }
 
-                    H2WriteQEntry e = null;
+    /**
+     * @return the most entries seen waiting at one time
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
 
-                    synchronized (qSync) {
-                        if ((qStatus == Q_STATUS.QUIT) && (drainQ == false)) {
-                            // quit immediately if told to do so
-                            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                                Tr.debug(tc, "Write Q thread told to quite without drain - finished");
-                            }
-                            qStatus = Q_STATUS.FINISHED;
-                            return;
-                        }
+    /**
+     * @return a summary of the write statistics, for trace
+     */
+    public String getStatistics() {
+        long writes = writesIssued.get();
+        long frames = framesWritten.get();
+        String perWrite = (writes == 0) ? "0" : String.valueOf((double) frames / writes);
+        return "writes=" + writes + " frames=" + frames + " framesPerWrite=" + perWrite + " writesPending=" + writesPending.get()
+               + " queueDepth=" + pendingCount.get() + " maxQueueDepth=" + maxQueueDepth.get();
+    }
 
-                        // on to the next entry.
-                        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                            Tr.debug(tc, "Write Q getting next entry");
-                        }
-                        e = findNext();
-
-                        // if no more entries are waiting to write then leave
-                        if (e == null) {
-                            if (qStatus == Q_STATUS.QUIT) {
-                                // done for good.
-                                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                                    Tr.debug(tc, "Write Q thread told to quite and queue is empty - finished");
-                                }
-                                qStatus = Q_STATUS.FINISHED;
-                                return;
-                            }
-
-                            // queue servicing thread will leave now, of course another one could start up again later
-                            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                                Tr.debug(tc, "Write Q empty so thread is leaving");
-                            }
-
-                            qStatus = Q_STATUS.NOT_IN_USE;
-                            return;
-                        }
-                    }
+    /**
+     * @return a summary of the write statistics of all connections
+     */
+    public static String getTotalStatistics() {
+        long writes = totalWritesIssued.get();
+        long frames = totalFramesWritten.get();
+        String perWrite = (writes == 0) ? "0" : String.valueOf((double) frames / writes);
+        return "writes=" + writes + " frames=" + frames + " framesPerWrite=" + perWrite + " writesPending=" + totalWritesPending.get()
+               + " maxQueueDepth=" + totalMaxQueueDepth.get();
+    }
 
-                    // we have an entry to write, want to do so outside the synchronized block
-                    if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                        Tr.debug(tc, "Write Q perform write Q thread");
-                    }
+    private static void updateMax(AtomicInteger max, int value) {
+        int current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
 
-                    writeEntry(e);
+    protected ExecutorService getExecutorService() {
+        return CHFWBundle.getExecutorService();
+    }
 
-                }
+    protected void startQThread() {
+        QOwner qOwner = new QOwner();
+        getExecutorService().execute(qOwner);
+    }
 
-            } catch (Throwable t) {
-                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                    Tr.debug(tc, "Write Q caught a Throwable.  Set Q status to Q_STATUS.FINISHED and leave: " + t);
-                }
-                // add debug
-                // something went really wrong, log and leave
-                qStatus = Q_STATUS.FINISHED;
+    protected class QOwner implements Runnable {
+
+        @Override
+        public void run() {
+            // ownership of the queue was passed to this thread
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Write Q thread servicing queue");
             }
+            serviceQ(null);
         }
     }
 
-    private H2WriteQEntry findNext() {
-        // look in the tree for the next one give the priorities and write counts per stream
-        H2WriteQEntry e = tree.findNextWriteEntry();
-        return e;
-    }
-
     protected class AsyncCallback implements Runnable {
 
-        // A seperate thread is needed to call the user's complete callback for this async request the finished either on the queue servicing thread or
-        // had forceQueue set to true.
+        // A seperate thread is needed to call the user's callback for an async request that was written by the queue
+        // servicing thread or had forceQueue set to true.
 
         H2WriteQEntry e;
 
@@ -509,9 +770,6 @@ public class H2WriteTree implements H2WorkQInterface {
         @Override
         public void run() {
 
-            // this is used instead of the H2MuxTCPWriteCallback for when the async was force queue and completed right away and/or we
-            // are on the Q service thread, and the async write complete right away.
-
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                 Tr.debug(tc, "New thread to service callback for entry: " + e.hashCode());
             }
@@ -521,7 +779,11 @@ public class H2WriteTree implements H2WorkQInterface {
                 VirtualConnection eVC = e.getConnectionContext().getVC();
                 TCPWriteRequestContext eTWC = e.getConnectionContext().getWriteInterface();
 
-                e.getCallback().complete(eVC, eTWC);
+                if (e.getWriteError() == null) {
+                    e.getCallback().complete(eVC, eTWC);
+                } else {
+                    e.getCallback().error(eVC, eTWC, e.getWriteError());
+                }
             } catch (Throwable t) {
                 if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                     Tr.debug(tc, "caught a Throwable. log and leave: " + t);
@@ -529,9 +791,6 @@ public class H2WriteTree implements H2WorkQInterface {
                 // debug, not much else to do but stop the exception here
             }
 
-            // update the entry status, write was already incremented
-            asyncCallbackComplete(e);
-
         }
     }
 
@@ -542,7 +801,7 @@ public class H2WriteTree implements H2WorkQInterface {
      */
     @Override
     public int getConnectionWriteLimit() {
-        return connectionWindowUpdateWriteLimit;
+        return connectionWindowUpdateWriteLimit.get();
     }
 
 }
@@ -11,11 +11,46 @@
 package com.ibm.ws.http.channel.h2internal.hpack;
 
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class H2HeaderTable {
 
+    /** Maximum number of encoded header representations cached per table */
+    private static final int ENCODED_CACHE_MAX_ENTRIES = 128;
+    /** Header values longer than this are not cached */
+    private static final int ENCODED_CACHE_MAX_VALUE_LENGTH = 128;
+
     private final DynamicTable dynamicTable;
 
+    /** Changed every time the dynamic table changes */
+    private final AtomicInteger tableVersion = new AtomicInteger(0);
+
+    /**
+     * Encoded bytes of headers written without indexing. Such an encoding only
+     * depends on the table contents, so each cache belongs to one version of
+     * the table and is replaced whenever the dynamic table changes. Streams on
+     * a connection encode their headers concurrently, hence the concurrent maps.
+     */
+    private final AtomicReference<EncodedCache> encodedCache = new AtomicReference<EncodedCache>(new EncodedCache(0));
+
+    /**
+     * Encoded headers for one version of the table, keyed by name then value.
+     */
+    private static class EncodedCache {
+        final int version;
+        final ConcurrentHashMap<String, ConcurrentHashMap<String, byte[]>> headers = new ConcurrentHashMap<String, ConcurrentHashMap<String, byte[]>>();
+        final AtomicInteger size = new AtomicInteger(0);
+
+        EncodedCache(int version) {
+            this.version = version;
+        }
+    }
+
+    /** Scratch space for decoding header strings; decoding with a table is serial */
+    private byte[] decodeBuffer = new byte[128];
+
     public H2HeaderTable() {
         dynamicTable = new DynamicTable();
     }
@@ -95,10 +130,102 @@ public class H2HeaderTable {
 
     public void addHeaderEntry(H2HeaderField entry) {
         this.dynamicTable.addDynamicEntry(entry);
+        tableChanged();
     }
 
     public void updateTableSize(int size) {
         this.dynamicTable.updateDynamicTableSize(size);
+        tableChanged();
+    }
+
+    /**
+     * Move to a new version of the table, dropping the encodings cached for
+     * the old one. The version changes first, so that an encoding made from
+     * the old table can no longer be cached or found.
+     */
+    private void tableChanged() {
+        this.encodedCache.set(new EncodedCache(this.tableVersion.incrementAndGet()));
+    }
+
+    /**
+     * Query the current version of the dynamic table. An encoder reads this
+     * before it looks at the table, and passes it to putEncodedHeader.
+     *
+     * @return int
+     */
+    public int getTableVersion() {
+        return this.tableVersion.get();
+    }
+
+    /**
+     * Find the cached encoding of a header that is written without indexing.
+     *
+     * @param name
+     * @param value
+     * @return the encoded bytes, which must not be modified, or null if not cached
+     */
+    public byte[] getEncodedHeader(String name, String value) {
+        EncodedCache cache = this.encodedCache.get();
+        if (cache.version != this.tableVersion.get()) {
+            // the table is changing, and this cache is about to be dropped
+            return null;
+        }
+        ConcurrentHashMap<String, byte[]> values = cache.headers.get(name);
+        return (null == values) ? null : values.get(value);
+    }
+
+    /**
+     * Cache the encoding of a header that is written without indexing. The
+     * encoding is dropped if the table has changed since the given version
+     * was read. Once the cache is full it is started over, which keeps
+     * constantly changing values such as dates from pinning stale entries.
+     *
+     * @param name
+     * @param value
+     * @param encoded
+     * @param version the table version read before the header was encoded
+     */
+    public void putEncodedHeader(String name, String value, byte[] encoded, int version) {
+        if (value.length() > ENCODED_CACHE_MAX_VALUE_LENGTH) {
+            return;
+        }
+        EncodedCache cache = this.encodedCache.get();
+        if (cache.version != version) {
+            return;
+        }
+        if (cache.size.get() >= ENCODED_CACHE_MAX_ENTRIES) {
+            EncodedCache fresh = new EncodedCache(version);
+            // only replace the full cache, never one for a newer table
+            if (!this.encodedCache.compareAndSet(cache, fresh)) {
+                return;
+            }
+            cache = fresh;
+        }
+        ConcurrentHashMap<String, byte[]> values = cache.headers.get(name);
+        if (null == values) {
+            values = new ConcurrentHashMap<String, byte[]>();
+            ConcurrentHashMap<String, byte[]> existing = cache.headers.putIfAbsent(name, values);
+            if (null != existing) {
+                values = existing;
+            }
+        }
+        if (null == values.putIfAbsent(value, encoded)) {
+            cache.size.incrementAndGet();
+        }
+    }
+
+    /**
+     * Access the scratch array used to decode header strings read with this
+     * table, growing it if needed.
+     *
+     * @param size minimum number of bytes required
+     * @return byte[]
+     */
+    public byte[] getDecodeBuffer(int size) {
+        if (this.decodeBuffer.length < size) {
+            this.decodeBuffer = new byte[Math.max(size, this.decodeBuffer.length * 2)];
+        }
+        return this.decodeBuffer;
     }
 
     public int getDynamicTableUsedAddressSpace() {
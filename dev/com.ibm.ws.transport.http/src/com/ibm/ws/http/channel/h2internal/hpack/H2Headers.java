@@ -13,6 +13,8 @@ package com.ibm.ws.http.channel.h2internal.hpack;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
@@ -31,6 +33,25 @@ public class H2Headers {
                                                          GenericConstants.GENERIC_TRACE_NAME,
                                                          null);
 
+    private static final Charset HPACK_CHARSET = Charset.forName(HpackConstants.HPACK_CHAR_SET);
+
+    /**
+     * Distinct header names of the static table, returned in place of decoding a
+     * new copy, keyed by the String hash code of the name.
+     */
+    private static final Map<Integer, String> STATIC_NAMES = buildStaticNames();
+
+    private static Map<Integer, String> buildStaticNames() {
+        Map<Integer, String> names = new HashMap<Integer, String>();
+        for (H2HeaderField field : StaticTable.STATIC_TABLE) {
+            //on a hash collision the first name is kept, the others are decoded as usual
+            if (!names.containsKey(field.getNameHash())) {
+                names.put(field.getNameHash(), field.getName());
+            }
+        }
+        return names;
+    }
+
     public static H2HeaderField decodeHeader(WsByteBuffer buffer, H2HeaderTable table) throws CompressionException {
 
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
@@ -174,6 +195,7 @@ public class H2Headers {
         String decodedName;
         String decodedValue;
         H2HeaderField header;
+        H2HeaderField nameEntry = null;
 
         //Decode index location.
         integerLength = IntegerRepresentation.decode(buffer, type);
@@ -184,7 +206,11 @@ public class H2Headers {
                 Tr.debug(tc, "Operation byte indicates header name is indexed at location "
                              + integerLength + ". Searching table for header name...");
             }
-            decodedName = table.getHeaderEntry(integerLength).getName();
+            nameEntry = table.getHeaderEntry(integerLength);
+            if (nameEntry == null) {
+                throw new CompressionException("Header name index " + integerLength + " is not in the table");
+            }
+            decodedName = nameEntry.getName();
 
         }
 
@@ -194,7 +220,7 @@ public class H2Headers {
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                 Tr.debug(tc, "Decoding header name.");
             }
-            decodedName = decodeFragment(buffer);
+            decodedName = decodeFragment(buffer, table, null, true);
             if (!HpackUtils.isAllLower(decodedName)) {
                 throw new CompressionException("Header field names must not contain uppercase "
                                                + "characters. Decoded header name: " + decodedName);
@@ -206,7 +232,13 @@ public class H2Headers {
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
             Tr.debug(tc, "Decoding header value.");
         }
-        decodedValue = decodeFragment(buffer);
+        decodedValue = decodeFragment(buffer, table, (nameEntry == null) ? null : nameEntry.getValue(), false);
+
+        //A header that is not indexed and repeats its name entry's value exactly is
+        //the table entry itself, so hand that back rather than building a new one.
+        if (nameEntry != null && decodedValue == nameEntry.getValue() && type != ByteFormatType.INCREMENTAL) {
+            return nameEntry;
+        }
 
         //Create header and Index it if applicable
         header = new H2HeaderField(decodedName, decodedValue);
@@ -231,16 +263,22 @@ public class H2Headers {
      * | Name String (Length octets) |
      * +---+---------------------------+
      *
+     * The string is decoded straight out of the buffer into the table's scratch
+     * array. If it matches the given candidate, or for names one of the static
+     * table names, that existing String is returned instead of a new copy.
+     *
      * @param buffer Contains all bytes that will be decoded into this <HeaderField>
+     * @param table table whose scratch space is used for decoding
+     * @param candidate String to return if the fragment matches it, may be null
+     * @param isName whether this fragment is a header name
      * @return String representation of the fragment. Stored as either the key or value of this <HeaderField>
      * @throws CompressionException
-     * @throws HeaderFieldDecodingException
-     * @throws Exception
      */
-    private static String decodeFragment(WsByteBuffer buffer) throws CompressionException {
-        String decodedResult = null;
+    private static String decodeFragment(WsByteBuffer buffer, H2HeaderTable table, String candidate, boolean isName) throws CompressionException {
 
-        //TODO: throw exception if !buffer.remaining();
+        if (!buffer.hasRemaining()) {
+            throw new CompressionException("Header block ended before the expected string.");
+        }
 
         byte currentByte = buffer.get();
 
@@ -255,24 +293,67 @@ public class H2Headers {
         //integer decoding bits (N=7). Therefore, either enum value
         //is valid for the integer representation decoder.
         int fragmentLength = IntegerRepresentation.decode(buffer, ByteFormatType.HUFFMAN);
+        if (fragmentLength > buffer.remaining()) {
+            throw new CompressionException("String length " + fragmentLength + " exceeds the remaining header block: " + buffer.remaining());
+        }
 
-        byte[] bytes = new byte[fragmentLength];
-        //Transfer bytes from the buffer into byte array.
-        buffer.get(bytes);
-
+        byte[] bytes;
+        int size;
         if (huffman) {
-            HuffmanDecoder decoder = new HuffmanDecoder();
-
-            bytes = decoder.convertHuffmanToAscii(bytes);
+            bytes = table.getDecodeBuffer(HuffmanDecoder.maxDecodedLength(fragmentLength));
+            size = HuffmanDecoder.decode(buffer, fragmentLength, bytes);
+        } else {
+            bytes = table.getDecodeBuffer(fragmentLength);
+            buffer.get(bytes, 0, fragmentLength);
+            size = fragmentLength;
+        }
 
+        if (candidate != null && matches(bytes, size, candidate)) {
+            return candidate;
+        }
+        if (isName) {
+            String name = STATIC_NAMES.get(hash(bytes, size));
+            if (name != null && matches(bytes, size, name)) {
+                return name;
+            }
         }
 
-        decodedResult = new String(bytes, Charset.forName(HpackConstants.HPACK_CHAR_SET));
+        return new String(bytes, 0, size, HPACK_CHARSET);
 
-        return decodedResult;
+    }
 
+    /**
+     * Compute the String hash code of the decoded ASCII bytes.
+     */
+    private static int hash(byte[] bytes, int size) {
+        int h = 0;
+        for (int i = 0; i < size; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h;
+    }
+
+    /**
+     * Check whether the decoded ASCII bytes spell out the given String.
+     */
+    private static boolean matches(byte[] bytes, int size, String s) {
+        if (s.length() != size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            //bytes outside of ASCII decode to a replacement character, never a match
+            if (bytes[i] < 0 || bytes[i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    /**
+     * Encode a header with huffman encoded strings. Headers written without
+     * indexing are cached on the table, so the returned array may be shared
+     * and must not be modified.
+     */
     public static byte[] encodeHeader(H2HeaderTable table, String name, String value, LiteralIndexType type) throws CompressionException, IOException {
         return encodeHeader(table, name, value, type, true);
     }
@@ -288,6 +369,22 @@ public class H2Headers {
             throw new CompressionException("The context for this dynamic table is not valid.");
         }
 
+        //Without indexing the table is left alone, so the encoding of a given header
+        //stays the same until something else changes the table.
+        boolean cacheable = huffman && type == LiteralIndexType.NOINDEXING;
+        //read before the table is searched, so an encoding made while the table
+        //changes is not cached
+        int tableVersion = table.getTableVersion();
+        if (cacheable) {
+            byte[] cached = table.getEncodedHeader(name, value);
+            if (cached != null) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.exit(tc, "encodeHeader", "cached");
+                }
+                return cached;
+            }
+        }
+
         //Build a stream of bytes until we are done encoding
         ByteArrayOutputStream encodedHeader = new ByteArrayOutputStream();
         //H2 header names must be all lower case to be compliant. Ensure this before encoding
@@ -322,10 +419,14 @@ public class H2Headers {
                     Tr.debug(tc, "Header name and value found in table at index location: " + indexLocation +
                                  ". Encoding header as INDEXED.");
                 }
+                byte[] indexed = IntegerRepresentation.encode(indexLocation, ByteFormatType.INDEXED);
+                if (cacheable) {
+                    table.putEncodedHeader(name, value, indexed, tableVersion);
+                }
                 if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                     Tr.exit(tc, "encodeHeader");
                 }
-                return IntegerRepresentation.encode(indexLocation, ByteFormatType.INDEXED);
+                return indexed;
             }
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                 Tr.debug(tc, "Found header name in table at location: " + indexLocation + ".");
@@ -359,11 +460,16 @@ public class H2Headers {
             table.addHeaderEntry(new H2HeaderField(compliantName, value));
         }
 
+        byte[] result = encodedHeader.toByteArray();
+        if (cacheable) {
+            table.putEncodedHeader(name, value, result, tableVersion);
+        }
+
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
             Tr.exit(tc, "encodeHeader");
         }
 
-        return encodedHeader.toByteArray();
+        return result;
 
     }
 
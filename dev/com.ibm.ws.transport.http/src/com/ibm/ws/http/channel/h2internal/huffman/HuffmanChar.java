@@ -1,45 +0,0 @@
-/*******************************************************************************
- * Copyright (c) 1997, 2017 IBM Corporation and others.
- * All rights reserved. This program and the accompanying materials
- * are made available under the terms of the Eclipse Public License v1.0
- * which accompanies this distribution, and is available at
- * http://www.eclipse.org/legal/epl-v10.html
- *
- * Contributors:
- *     IBM Corporation - initial API and implementation
- *******************************************************************************/
-package com.ibm.ws.http.channel.h2internal.huffman;
-
-public class HuffmanChar {
-
-    byte asciiValue = 0;
-
-    public void setAsciiValue(byte x1) {
-        asciiValue = x1;
-    }
-
-    public byte getAsciiValue() {
-        return asciiValue;
-    }
-
-//  int  huffmanValue = 0;
-//  int  huffmanLength = 0;
-//
-//	public void setHuffmanValue(int x1) {
-//		huffmanValue = x1;
-//	}
-//
-//	public void setHuffmanLength(int x1) {
-//		huffmanLength = x1;
-//	}
-//
-//
-//	public int getHuffmanValue() {
-//		return huffmanValue;
-//	}
-//
-//	public int getHuffmanLength() {
-//		return huffmanLength;
-//	}
-
-}
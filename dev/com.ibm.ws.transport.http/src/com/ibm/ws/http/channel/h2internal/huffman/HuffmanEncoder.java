@@ -86,77 +86,55 @@ public class HuffmanEncoder {
     };
 
     public static byte[] convertAsciiToHuffman(byte[] x1) {
+        byte[] huffmanArray = new byte[encodedLength(x1)];
+        encode(x1, huffmanArray, 0);
+        return huffmanArray;
+    }
 
-        int numberOfBits = 0;
-        int huffmanValue = 0;
-
-        int totalNumberOfHuffmanBits = 0;
-        int huffmanArrayLength = 0;
-        int huffmanExtraBits = 0;
-
-        int asciiLength = x1.length;
-        byte[] huffmanArray = null;
-
-        int huffmanCurrentByte = -1;
-        int outputBitMask = 0x00; // if you make this a byte, then >>> still fills the MSB of the byte with a '1' - not sure why.
-        int inputBitMask = 0x00;
-
-        // determine the array length of the output huffmanArray
-        for (int i = 0; i < asciiLength; i++) {
-            totalNumberOfHuffmanBits = totalNumberOfHuffmanBits + AtoHbitNumber[x1[i]];
-            huffmanArrayLength = totalNumberOfHuffmanBits / 8;
-            huffmanExtraBits = 8 - (totalNumberOfHuffmanBits % 8);
-            if (huffmanExtraBits != 8) {
-                huffmanArrayLength++;
-            }
+    /**
+     * Number of bytes the huffman encoding of the input will take, including
+     * the padding of the last byte.
+     *
+     * @param x1
+     * @return int
+     */
+    public static int encodedLength(byte[] x1) {
+        long totalNumberOfHuffmanBits = 0;
+        for (int i = 0; i < x1.length; i++) {
+            totalNumberOfHuffmanBits += AtoHbitNumber[x1[i] & 0xFF];
         }
+        return (int) ((totalNumberOfHuffmanBits + 7) >>> 3);
+    }
 
-        //System.out.println("asciiLength: " + asciiLength + " totalNumberOfHuffmanBits: " + totalNumberOfHuffmanBits + " huffmanExtraBits: " + huffmanExtraBits
-        //		              + " huffmanArrayLength: " + huffmanArrayLength);
-
-        huffmanArray = new byte[huffmanArrayLength];
-
-        for (int i = 0; i < asciiLength; i++) {
-
-            numberOfBits = AtoHbitNumber[x1[i]];
-            huffmanValue = AtoHValue[x1[i]];
-
-            // add new value, with the exact number of bits, to the new huffman sequence of bits
-            // add them one at a time since we have the issue of running over the byte boundary on every bit
-
-            // System.out.println("ascii value: " + x1[i] + " numberOfBits: " + numberOfBits + " huffmanValue: " + String.format("0x%08X", huffmanValue));
-
-            inputBitMask = 1;
-            inputBitMask = inputBitMask << (numberOfBits - 1);
-
-            for (int j = 0; j < numberOfBits; j++) {
-                if (outputBitMask == 0) {
-                    outputBitMask = 0x80;
-                    huffmanCurrentByte++;
-                }
-
-                // if next bit is set in the huffmanValue then set it in the output byte array, else skip over it which leaves it at 0
-                if ((inputBitMask & huffmanValue) != 0) {
-                    huffmanArray[huffmanCurrentByte] = (byte) (huffmanArray[huffmanCurrentByte] | outputBitMask);
-                }
-
-                inputBitMask = inputBitMask >>> 1;
-                outputBitMask = outputBitMask >>> 1;
-
+    /**
+     * Huffman encode the input into the output array starting at offset. The
+     * output must have room for encodedLength(x1) bytes.
+     *
+     * @param x1
+     * @param dst
+     * @param offset
+     * @return the offset after the last byte written
+     */
+    public static int encode(byte[] x1, byte[] dst, int offset) {
+        // codes are at most 30 bits, so a 64 bit register never holds more than 37 pending bits
+        long register = 0;
+        int bits = 0;
+        int index = offset;
+
+        for (int i = 0; i < x1.length; i++) {
+            int ascii = x1[i] & 0xFF;
+            register = (register << AtoHbitNumber[ascii]) | AtoHValue[ascii];
+            bits += AtoHbitNumber[ascii];
+            while (bits >= 8) {
+                bits -= 8;
+                dst[index++] = (byte) (register >>> bits);
             }
         }
 
-        // fill out the last byte with 1's
-        for (int i = 0; i < huffmanExtraBits; i++) {
-            huffmanArray[huffmanCurrentByte] = (byte) (huffmanArray[huffmanCurrentByte] | outputBitMask);
-            outputBitMask = outputBitMask >>> 1;
+        // fill out the last byte with 1's, the most significant bits of EOS
+        if (bits > 0) {
+            dst[index++] = (byte) ((register << (8 - bits)) | (0xFF >>> bits));
         }
-
-        //System.out.println("huffman array: " );
-        //for (int i = 0; i < huffmanArray.length; i++) {
-        //	   System.out.println(String.format("0x%08X", huffmanArray[i]));
-        //}
-
-        return huffmanArray;
+        return index;
     }
 }
@@ -208,6 +208,36 @@ public class Tree {
         return null;
     }
 
+    /**
+     * Find the next entry to write, as findNextWriteEntry does, and count it as written so the following call
+     * returns the next entry in priority order.
+     *
+     * @return the entry to write next, or null if no nodes want to write.
+     */
+    public synchronized H2WriteQEntry takeNextWriteEntry() {
+
+        Node node = root.findNextWrite();
+        if (node == null) {
+            return null;
+        }
+
+        H2WriteQEntry e = node.getEntry();
+        updateNode(node.getStreamID(), NODE_STATUS.NOT_REQUESTING, WRITE_COUNT_ACTION.INCREMENT, null);
+        return e;
+    }
+
+    /**
+     * Check if the node for this stream already has an entry waiting to be written.
+     *
+     * @param streamID
+     * @return true if the stream's node is requesting a write
+     */
+    public synchronized boolean isRequestingWrite(int streamID) {
+
+        Node node = root.findNode(streamID);
+        return ((node != null) && (node.getStatus() == NODE_STATUS.REQUESTING_WRITE));
+    }
+
     /**
      * Change the priority of the desired stream/node.
      * Reset all the sibling weighted priorities and re-sort the siblings, since once on priority changes, all priority ratios need to be updated and changed.
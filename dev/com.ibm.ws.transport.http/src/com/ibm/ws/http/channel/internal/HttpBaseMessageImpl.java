@@ -171,6 +171,7 @@ public abstract class HttpBaseMessageImpl extends GenericMessageImpl implements
         super.init(config.isDirectBufferType(), config.getOutgoingHdrBufferSize(), config.getIncomingHdrBufferSize(), config.getByteCacheSize());
         setLimitOfTokenSize(config.getLimitOfFieldSize());
         setLimitOnNumberOfHeaders(config.getLimitOnNumberOfHeaders());
+        setInPlaceHeaderParsing(config.shouldParseHeadersInPlace());
         if (!config.shouldPreventResponseSplit()) { //PI45266
             setCharacterValidation(false);
         }
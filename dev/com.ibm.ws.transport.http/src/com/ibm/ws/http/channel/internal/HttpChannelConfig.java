@@ -65,6 +65,8 @@ public class HttpChannelConfig {
     private int byteCacheSize = 512;
     /** Flag on whether to extract the header values or not. */
     private boolean bExtractValue = true;
+    /** Flag on whether to scan header lines in place during parsing */
+    private boolean bInPlaceHeaderParse = false;
     /** Flag on whether to use binary HTTP transport encoding/decoding */
     private boolean bBinaryTransport = false;
     /** NCSA access logger reference */
@@ -230,6 +232,10 @@ public class HttpChannelConfig {
                 props.put(HttpConfigConstants.PROPNAME_EXTRACT_VALUE, value);
                 continue;
             }
+            if (key.equalsIgnoreCase(HttpConfigConstants.PROPNAME_INPLACE_HEADER_PARSE)) {
+                props.put(HttpConfigConstants.PROPNAME_INPLACE_HEADER_PARSE, value);
+                continue;
+            }
             if (key.equalsIgnoreCase(HttpConfigConstants.PROPNAME_BINARY_TRANSPORT)) {
                 props.put(HttpConfigConstants.PROPNAME_BINARY_TRANSPORT, value);
                 continue;
@@ -361,6 +367,7 @@ public class HttpChannelConfig {
         parseWriteTimeout(props);
         parseByteCacheSize(props);
         parseDelayedExtract(props);
+        parseInPlaceHeaderParse(props);
         parseBinaryTransport(props);
         parseLimitFieldSize(props);
         parseLimitNumberHeaders(props);
@@ -674,6 +681,22 @@ public class HttpChannelConfig {
         }
     }
 
+    /**
+     * Check the input configuration for the flag on whether to scan header
+     * lines in place during the parsing stage.
+     *
+     * @param props
+     */
+    private void parseInPlaceHeaderParse(Map<Object, Object> props) {
+        Object value = props.get(HttpConfigConstants.PROPNAME_INPLACE_HEADER_PARSE);
+        if (null != value) {
+            this.bInPlaceHeaderParse = convertBoolean(value);
+            if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                Tr.event(tc, "Config: in place header parsing is " + shouldParseHeadersInPlace());
+            }
+        }
+    }
+
     /**
      * Check the input configuration for whether the parsing and marshalling
      * should use the binary transport mode or not.
@@ -1432,7 +1455,17 @@ public class HttpChannelConfig {
      * @return boolean
      */
     public boolean shouldExtractValue() {
-        return this.bExtractValue;
+        return this.bExtractValue && !this.bInPlaceHeaderParse;
+    }
+
+    /**
+     * Query whether the configuration says to scan complete header lines in
+     * place, leaving the values in the buffers until they are requested.
+     *
+     * @return boolean
+     */
+    public boolean shouldParseHeadersInPlace() {
+        return this.bInPlaceHeaderParse;
     }
 
     /**
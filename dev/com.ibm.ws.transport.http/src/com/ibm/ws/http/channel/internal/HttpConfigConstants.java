@@ -113,6 +113,14 @@ public class HttpConfigConstants {
      */
     public static final String PROPNAME_EXTRACT_VALUE = "extractValue";
 
+    /**
+     * Property name for the flag on whether to scan complete incoming header
+     * lines in place, matching the names straight from the buffer bytes and
+     * leaving the values in the buffers until a channel requests them. This
+     * implies the delayed value extraction described above.
+     */
+    public static final String PROPNAME_INPLACE_HEADER_PARSE = "inPlaceHeaderParse";
+
     /**
      * Outgoing and incoming data for this channel can be sent in the
      * regular String encoding, or with the optional binary transport
@@ -13,6 +13,7 @@ package com.ibm.ws.http.channel.internal;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -2371,6 +2372,59 @@ public abstract class HttpServiceContextImpl implements HttpServiceContext, FFDC
         synchWrite();
     }
 
+    /**
+     * Query whether body bytes for the given outgoing message would reach the
+     * socket exactly as the caller provides them. That is only the case when
+     * no compression, chunk encoding, HTTP/2 framing or encryption will be
+     * applied and the TCP channel below can transfer directly from a file.
+     *
+     * @param msg
+     * @return boolean
+     */
+    final protected boolean isOutgoingBodyPassThrough(HttpBaseMessageImpl msg) {
+        if (this.isH2Connection || null != this.compressHandler || msg.isChunkedEncodingSet() || isSecure()) {
+            return false;
+        }
+        return null != getVC() && getVC().isFileChannelCapable();
+    }
+
+    /**
+     * Write any pending buffers, then hand the given region of the file
+     * straight to the TCP channel as body data. The caller must have verified
+     * that isOutgoingBodyPassThrough is true for the message.
+     *
+     * @param fc
+     * @param position
+     * @param count
+     * @return long -- the number of bytes sent, 0 if the remote client was no
+     *         longer reachable
+     * @throws IOException
+     */
+    final protected long sendOutgoingFile(FileChannel fc, long position, long count) throws IOException {
+        // anything queued up, such as headers, must go out ahead of the file
+        synchWrite();
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "Transferring (sync) " + count + " bytes from file position " + position);
+        }
+        try {
+            getTSC().getWriteInterface().transferFrom(fc, position, count, getWriteTimeout());
+        } catch (IOException ioe) {
+            // no FFDC required
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "IOException during file transfer: " + ioe.getMessage());
+            }
+            setPersistent(false);
+            logLegacyMessage();
+            if (isInboundConnection() && !(getHttpConfig().throwIOEForInboundConnections())) {
+                // remote client is no longer reachable, nothing useful can be done
+                return 0L;
+            }
+            throw ioe;
+        }
+        addBytesWritten(count);
+        return count;
+    }
+
     /**
      * Prepares the outgoing buffers and possibly the headers and writes
      * them out on the connection asynchronously, using the given callback. If
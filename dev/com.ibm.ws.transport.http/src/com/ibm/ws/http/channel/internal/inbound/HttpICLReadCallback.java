@@ -22,14 +22,17 @@ import com.ibm.wsspi.channelfw.VirtualConnection;
 import com.ibm.wsspi.genericbnf.exception.MessageSentException;
 import com.ibm.wsspi.http.channel.values.StatusCodes;
 import com.ibm.wsspi.http.logging.DebugLog;
-import com.ibm.wsspi.tcpchannel.TCPReadCompletedCallback;
+import com.ibm.wsspi.tcpchannel.TCPInlineCompletion;
+import com.ibm.wsspi.tcpchannel.TCPInlineReadCompletedCallback;
 import com.ibm.wsspi.tcpchannel.TCPReadRequestContext;
 
 /**
  * Callback class used while parsing the inbound request message and a read
  * is necessary for more data, either the first line or the request headers.
+ * Parsing does not block, so this may run on the TCP selector thread; the
+ * link hands the parsed request and any error page write off to a worker.
  */
-public class HttpICLReadCallback implements TCPReadCompletedCallback {
+public class HttpICLReadCallback implements TCPInlineReadCompletedCallback {
 
     /** RAS tracing variable */
     private static final TraceComponent tc = Tr.register(HttpICLReadCallback.class, HttpMessages.HTTP_TRACE_NAME, HttpMessages.HTTP_BUNDLE);
@@ -78,11 +81,35 @@ public class HttpICLReadCallback implements TCPReadCompletedCallback {
      * @param ioe
      */
     @Override
-    public void error(VirtualConnection vc, TCPReadRequestContext rsc, IOException ioe) {
+    public void error(final VirtualConnection vc, TCPReadRequestContext rsc, final IOException ioe) {
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
             Tr.debug(tc, "error() called: " + vc);
         }
 
+        // the 408 response may block on its write, so an error reported on
+        // the TCP selector thread is handled on a worker thread
+        if (TCPInlineCompletion.isInline()) {
+            boolean offloaded = TCPInlineCompletion.offload(new Runnable() {
+                @Override
+                public void run() {
+                    handleError(vc, ioe);
+                }
+            });
+            if (offloaded) {
+                return;
+            }
+        }
+        handleError(vc, ioe);
+    }
+
+    /**
+     * Handle a read error, either sending back the 408 Request Timeout error
+     * page or closing the connection.
+     * 
+     * @param vc
+     * @param ioe
+     */
+    private void handleError(VirtualConnection vc, IOException ioe) {
         HttpInboundLink myLink = (HttpInboundLink) (vc == null ? null : vc.getStateMap().get(CallbackIDs.CALLBACK_HTTPICL));
         if (myLink == null)
         {
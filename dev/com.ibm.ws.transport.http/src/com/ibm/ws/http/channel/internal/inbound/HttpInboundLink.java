@@ -47,6 +47,7 @@ import com.ibm.wsspi.http.channel.values.StatusCodes;
 import com.ibm.wsspi.http.channel.values.VersionValues;
 import com.ibm.wsspi.http.logging.DebugLog;
 import com.ibm.wsspi.tcpchannel.TCPConnectionContext;
+import com.ibm.wsspi.tcpchannel.TCPInlineCompletion;
 import com.ibm.wsspi.tcpchannel.TCPReadCompletedCallback;
 import com.ibm.wsspi.tcpchannel.TCPReadRequestContext;
 import com.ibm.wsspi.tcpchannel.TCPWriteRequestContext;
@@ -352,20 +353,20 @@ public class HttpInboundLink extends InboundProtocolLink implements InterChannel
         } catch (UnsupportedMethodException meth) {
             // no FFDC required
             sc.setHeadersParsed();
-            sendErrorMessage(StatusCodes.NOT_IMPLEMENTED);
             setPartiallyParsed(false);
+            sendErrorMessage(StatusCodes.NOT_IMPLEMENTED);
             return true;
         } catch (UnsupportedProtocolVersionException ver) {
             // no FFDC required
             sc.setHeadersParsed();
-            sendErrorMessage(StatusCodes.UNSUPPORTED_VERSION);
             setPartiallyParsed(false);
+            sendErrorMessage(StatusCodes.UNSUPPORTED_VERSION);
             return true;
         } catch (MessageTooLargeException mtle) {
             // no FFDC required
             sc.setHeadersParsed();
-            sendErrorMessage(StatusCodes.ENTITY_TOO_LARGE);
             setPartiallyParsed(false);
+            sendErrorMessage(StatusCodes.ENTITY_TOO_LARGE);
             return true;
         } catch (MalformedMessageException mme) {
             //no FFDC required
@@ -401,8 +402,8 @@ public class HttpInboundLink extends InboundProtocolLink implements InterChannel
     //the same thing so now they will just call this one method
     private void handleGenericHNIError(Throwable t, HttpInboundServiceContextImpl hisc) {
         hisc.setHeadersParsed();
-        sendErrorMessage(t);
         setPartiallyParsed(false);
+        sendErrorMessage(t);
     }
 
     /**
@@ -425,8 +426,33 @@ public class HttpInboundLink extends InboundProtocolLink implements InterChannel
             Tr.debug(tc, "Received request number " + this.numRequestsProcessed + " on link " + this);
         }
 
+        // if the request was parsed on the TCP selector thread, move to a
+        // worker thread before writing the 100-continue or calling the
+        // application, neither of which may block the selector
+        if (TCPInlineCompletion.isInline()) {
+            boolean offloaded = TCPInlineCompletion.offload(new Runnable() {
+                @Override
+                public void run() {
+                    handleParsedRequest();
+                }
+            });
+            if (offloaded) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "Request handed off from selector thread: " + this);
+                }
+                return;
+            }
+        }
+        handleParsedRequest();
+    }
+
+    /**
+     * Continue a newly parsed request with the 100-continue check and then
+     * the discrimination path.
+     */
+    private void handleParsedRequest() {
         // check for the 100-continue scenario
-        if (!sc.check100Continue()) {
+        if (!getHTTPContext().check100Continue()) {
             return;
         }
 
@@ -543,10 +569,33 @@ public class HttpInboundLink extends InboundProtocolLink implements InterChannel
      * 
      * @param code
      */
-    private void sendErrorMessage(StatusCodes code) {
+    private void sendErrorMessage(final StatusCodes code) {
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
             Tr.debug(tc, "Sending an error page back [code: " + code + "]");
         }
+        // a parse error found on the TCP selector thread is written from a
+        // worker thread, as the write of the error page may block
+        if (TCPInlineCompletion.isInline()) {
+            boolean offloaded = TCPInlineCompletion.offload(new Runnable() {
+                @Override
+                public void run() {
+                    writeErrorMessage(code);
+                }
+            });
+            if (offloaded) {
+                return;
+            }
+        }
+        writeErrorMessage(code);
+    }
+
+    /**
+     * Write the error message back to the client, closing the connection if
+     * a response has already been sent.
+     * 
+     * @param code
+     */
+    private void writeErrorMessage(StatusCodes code) {
         try {
             getHTTPContext().sendError(code.getHttpError());
         } catch (MessageSentException mse) {
@@ -11,6 +11,7 @@
 package com.ibm.ws.http.channel.internal.inbound;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
@@ -775,6 +776,56 @@ public class HttpInboundServiceContextImpl extends HttpServiceContextImpl implem
         sendOutgoing(body, getResponseImpl());
     }
 
+    /**
+     * Query whether file data for the outgoing response can be handed straight
+     * to the TCP channel with sendResponseBody(FileChannel, long, long). The
+     * response headers must already have been sent, since they decide whether
+     * the body is going to be compressed or chunk encoded.
+     *
+     * @return boolean
+     */
+    public boolean isFileTransferAllowed() {
+        if (!headersSent() || isMessageSent()) {
+            return false;
+        }
+        return isOutgoingBodyPassThrough(getResponseImpl());
+    }
+
+    /**
+     * Send a region of the given file as body data for the outgoing response
+     * synchronously, without copying it through WsByteBuffers. This is only
+     * valid when isFileTransferAllowed() returns true. The FileChannel is not
+     * closed and its position is not changed.
+     *
+     * @param fc
+     * @param position
+     * @param count
+     * @return long -- the number of bytes sent, 0 if the response does not
+     *         allow a body, such as a HEAD or 304 response
+     * @throws IOException
+     *             -- if a socket exception occurs
+     * @throws MessageSentException
+     *             -- if a finishMessage API was already used
+     */
+    public long sendResponseBody(FileChannel fc, long position, long count) throws IOException, MessageSentException {
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "sendResponseBody(file): position=" + position + " count=" + count);
+        }
+        if (isMessageSent()) {
+            throw new MessageSentException("Message already sent");
+        }
+        if (!isFileTransferAllowed()) {
+            throw new IOException("Response body can not be transferred from a file");
+        }
+        if (!isOutgoingBodyValid()) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Ignoring file body, no body allowed on this response");
+            }
+            return 0L;
+        }
+        return sendOutgoingFile(fc, position, count);
+    }
+
     /**
      * Send the given body buffers for the outgoing response asynchronously.
      * If chunked encoding is set or if the partialbody flag is set, then
@@ -20,6 +20,7 @@ import com.ibm.websphere.ras.TraceComponent;
 import com.ibm.ws.ffdc.FFDCFilter;
 import com.ibm.ws.ffdc.annotation.FFDCIgnore;
 import com.ibm.ws.http.channel.internal.HttpMessages;
+import com.ibm.ws.http.channel.internal.inbound.HttpInboundServiceContextImpl;
 import com.ibm.ws.http.channel.outstream.HttpOutputStreamConnectWeb;
 import com.ibm.ws.http.channel.outstream.HttpOutputStreamObserver;
 import com.ibm.ws.http.dispatcher.internal.HttpDispatcher;
@@ -382,6 +383,12 @@ public class HttpOutputStreamImpl extends HttpOutputStreamConnectWeb {
         }
         // make sure the headers are written separately from the file buffer
         flushHeaders();
+        if (this.isc instanceof HttpInboundServiceContextImpl && ((HttpInboundServiceContextImpl) this.isc).isFileTransferAllowed()) {
+            // body goes out untouched, so let the TCP channel send it
+            // straight from the file
+            transferFile(fc, (HttpInboundServiceContextImpl) this.isc);
+            return;
+        }
         WsByteBuffer fb = HttpDispatcher.getBufferManager().allocateFileChannelBuffer(fc);
         try {
             // TODO should adjust write timeout based on file size. Large files
@@ -409,6 +416,46 @@ public class HttpOutputStreamImpl extends HttpOutputStreamConnectWeb {
         }
     }
 
+    /**
+     * Write the remaining contents of the file, from its current position, with
+     * a zero-copy transfer to the socket.
+     *
+     * @param fc
+     * @param context
+     * @throws IOException
+     */
+    @FFDCIgnore({ IOException.class })
+    private void transferFile(FileChannel fc, HttpInboundServiceContextImpl context) throws IOException {
+        long position = fc.position();
+        long count = fc.size() - position;
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "transferFile: position=" + position + " count=" + count);
+        }
+        try {
+            // nothing is sent when the response does not allow a body
+            long sent = context.sendResponseBody(fc, position, count);
+            if (0L < sent) {
+                fc.position(position + sent);
+                this.bytesWritten += sent;
+            }
+        } catch (MessageSentException mse) {
+            FFDCFilter.processException(mse, getClass().getName(),
+                                        "transferFile", new Object[] { this, this.isc });
+            if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                Tr.event(tc, "Invalid state, message-sent-exception received; " + this.isc);
+            }
+            this.error = new IOException("Invalid state");
+            throw this.error;
+        } catch (IOException ioe) {
+            // no FFDC required
+            this.error = ioe;
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Received exception during transfer: " + ioe);
+            }
+            throw ioe;
+        }
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -38,16 +38,30 @@ public class AccessLogCurrentTime extends AccessLogData {
     public boolean set(StringBuilder accessLogEntry,
                        HttpResponseMessage response, HttpRequestMessage request, Object data) {
 
+        append(accessLogEntry, System.currentTimeMillis(), data);
+        return true;
+    }
+
+    @Override
+    public void capture(AccessLogRecord record, int index,
+                        HttpResponseMessage response, HttpRequestMessage request, Object data) {
+        record.setNumber(index, System.currentTimeMillis());
+    }
+
+    @Override
+    public void format(StringBuilder accessLogEntry, AccessLogRecord record, int index, Object data) {
+        append(accessLogEntry, record.getNumber(index), data);
+    }
+
+    private static void append(StringBuilder accessLogEntry, long time, Object data) {
         if (data == null) {
             accessLogEntry.append("[");
-            accessLogEntry.append(HttpDispatcher.getDateFormatter().getNCSATime(new Date(System.currentTimeMillis())));
+            accessLogEntry.append(HttpDispatcher.getDateFormatter().getNCSATime(new Date(time)));
             accessLogEntry.append("]");
         } else {
             // just print out what was there
             accessLogEntry.append("%{").append(data).append("}W");
         }
-
-        return true;
     }
 
 }
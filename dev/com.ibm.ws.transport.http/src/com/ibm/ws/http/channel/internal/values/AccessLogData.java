@@ -127,6 +127,37 @@ public abstract class AccessLogData extends GenericKeys {
      */
     public abstract boolean set(StringBuilder accessLogEntry, HttpResponseMessage response, HttpRequestMessage request, Object initData);
 
+    /**
+     * Copy whatever this element needs out of the messages into the record,
+     * at the given index, so that the entry can be formatted later on another
+     * thread. Elements that are cheap to capture but costly to format, such
+     * as times, override this along with format. By default the text for
+     * this element is built right away and kept.
+     * 
+     * @param record AccessLogRecord to save the values in
+     * @param index index of this element in the log format
+     * @param response HttpResponseMessage to take the values from
+     * @param request HttpRequestMessage to take the values from
+     * @param initData
+     */
+    public void capture(AccessLogRecord record, int index, HttpResponseMessage response, HttpRequestMessage request, Object initData) {
+        StringBuilder text = record.getScratch();
+        set(text, response, request, initData);
+        record.setValue(index, text.toString());
+    }
+
+    /**
+     * Append the values saved by capture to the access log entry.
+     * 
+     * @param accessLogEntry StringBuilder for the line being built
+     * @param record AccessLogRecord holding the captured values
+     * @param index index of this element in the log format
+     * @param initData
+     */
+    public void format(StringBuilder accessLogEntry, AccessLogRecord record, int index, Object initData) {
+        accessLogEntry.append((String) record.getValue(index));
+    }
+
     protected void logSafe(StringBuilder accessLogEntry, String value) {
         if (value == null) {
             accessLogEntry.append('-');
@@ -37,16 +37,28 @@ public class AccessLogElapsedRequestTime extends AccessLogData {
                        HttpResponseMessage response, HttpRequestMessage request,
                        Object data) {
 
-        long elapsedRequestTime = getElapsedRequestTime(response, request, data);
+        append(accessLogEntry, getElapsedRequestTime(response, request, data));
+        return true;
+    }
+
+    @Override
+    public void capture(AccessLogRecord record, int index,
+                        HttpResponseMessage response, HttpRequestMessage request, Object data) {
+        record.setNumber(index, getElapsedRequestTime(response, request, data));
+    }
 
+    @Override
+    public void format(StringBuilder accessLogEntry, AccessLogRecord record, int index, Object data) {
+        append(accessLogEntry, record.getNumber(index));
+    }
+
+    private static void append(StringBuilder accessLogEntry, long elapsedRequestTime) {
         if (elapsedRequestTime > 0) {
             accessLogEntry.append(elapsedRequestTime);
 
         } else {
             accessLogEntry.append("-");
         }
-
-        return true;
     }
 
     public static long getElapsedRequestTime(HttpResponseMessage response, HttpRequestMessage request, Object data) {
@@ -28,6 +28,25 @@ public class AccessLogElapsedTime extends AccessLogData {
     public boolean set(StringBuilder accessLogEntry,
                        HttpResponseMessage response, HttpRequestMessage request,
                        Object data) {
+        append(accessLogEntry, getElapsedTime(request));
+        return true;
+    }
+
+    @Override
+    public void capture(AccessLogRecord record, int index,
+                        HttpResponseMessage response, HttpRequestMessage request, Object data) {
+        record.setNumber(index, getElapsedTime(request));
+    }
+
+    @Override
+    public void format(StringBuilder accessLogEntry, AccessLogRecord record, int index, Object data) {
+        append(accessLogEntry, record.getNumber(index));
+    }
+
+    /**
+     * Elapsed time of the exchange so far in microseconds, -1 if unknown.
+     */
+    private static long getElapsedTime(HttpRequestMessage request) {
         HttpRequestMessageImpl requestMessageImpl = null;
         long startTime = 0;
         if (request != null) {
@@ -40,12 +59,17 @@ public class AccessLogElapsedTime extends AccessLogData {
 
         if (startTime != 0) {
             long elapsedTime = System.nanoTime() - startTime;
-            accessLogEntry.append(TimeUnit.NANOSECONDS.toMicros(elapsedTime));
+            return TimeUnit.NANOSECONDS.toMicros(elapsedTime);
+        }
+        return -1;
+    }
+
+    private static void append(StringBuilder accessLogEntry, long elapsedTime) {
+        if (elapsedTime != -1) {
+            accessLogEntry.append(elapsedTime);
         } else {
             accessLogEntry.append("-");
         }
-
-        return true;
     }
 
 }
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.channel.internal.values;
+
+import java.util.Arrays;
+
+/**
+ * Raw values captured for a single access log line, so that the line can be
+ * formatted on the log writer thread after the request and response messages
+ * have been reused. Each element of the log format keeps what it needs at its
+ * own index. Records are preallocated and reused, so the arrays only grow.
+ */
+public class AccessLogRecord {
+
+    /** Object values by format element index */
+    private Object[] values = new Object[16];
+    /** Numeric values by format element index */
+    private long[] numbers = new long[16];
+    /** Work area for elements that capture formatted text */
+    private final StringBuilder scratch = new StringBuilder(64);
+    /** Whether every element was captured */
+    private boolean complete = false;
+
+    /**
+     * Prepare this record to capture the given number of elements.
+     * 
+     * @param size
+     */
+    public void reset(int size) {
+        if (this.values.length < size) {
+            this.values = new Object[size];
+            this.numbers = new long[size];
+        }
+        this.complete = false;
+    }
+
+    /**
+     * Drop the references held by this record once it has been written.
+     */
+    public void clear() {
+        Arrays.fill(this.values, null);
+        this.complete = false;
+    }
+
+    public void setValue(int index, Object value) {
+        this.values[index] = value;
+    }
+
+    public Object getValue(int index) {
+        return this.values[index];
+    }
+
+    public void setNumber(int index, long value) {
+        this.numbers[index] = value;
+    }
+
+    public long getNumber(int index) {
+        return this.numbers[index];
+    }
+
+    /**
+     * Access the empty work area of this record.
+     * 
+     * @return StringBuilder
+     */
+    public StringBuilder getScratch() {
+        this.scratch.setLength(0);
+        return this.scratch;
+    }
+
+    public void setComplete(boolean flag) {
+        this.complete = flag;
+    }
+
+    /**
+     * Query whether the capture of every element finished.
+     * 
+     * @return boolean
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
+}
@@ -27,6 +27,23 @@ public class AccessLogResponseSize extends AccessLogData {
     public boolean set(StringBuilder accessLogEntry,
                        HttpResponseMessage response, HttpRequestMessage request, Object data) {
 
+        append(accessLogEntry, getResponseSize(response));
+
+        return true;
+    }
+
+    @Override
+    public void capture(AccessLogRecord record, int index,
+                        HttpResponseMessage response, HttpRequestMessage request, Object data) {
+        record.setNumber(index, getResponseSize(response));
+    }
+
+    @Override
+    public void format(StringBuilder accessLogEntry, AccessLogRecord record, int index, Object data) {
+        append(accessLogEntry, record.getNumber(index));
+    }
+
+    private static long getResponseSize(HttpResponseMessage response) {
         long responseSize = -999;
         HttpResponseMessageImpl responseMessageImpl = null;
         if (response != null) {
@@ -38,14 +55,15 @@ public class AccessLogResponseSize extends AccessLogData {
             responseSize = responseMessageImpl.getServiceContext().getNumBytesWritten();
 
         }
+        return responseSize;
+    }
 
+    private static void append(StringBuilder accessLogEntry, long responseSize) {
         if (responseSize > 0) {
             accessLogEntry.append(responseSize);
         } else {
             accessLogEntry.append("-");
         }
-
-        return true;
     }
 
 }
@@ -26,6 +26,23 @@ public class AccessLogResponseSizeB extends AccessLogData {
                        HttpResponseMessage response, HttpRequestMessage request,
                        Object data) {
 
+        append(accessLogEntry, getResponseSize(response));
+
+        return true;
+    }
+
+    @Override
+    public void capture(AccessLogRecord record, int index,
+                        HttpResponseMessage response, HttpRequestMessage request, Object data) {
+        record.setNumber(index, getResponseSize(response));
+    }
+
+    @Override
+    public void format(StringBuilder accessLogEntry, AccessLogRecord record, int index, Object data) {
+        append(accessLogEntry, record.getNumber(index));
+    }
+
+    private static long getResponseSize(HttpResponseMessage response) {
         long responseSize = -999;
         HttpResponseMessageImpl responseMessageImpl = null;
         if (response != null) {
@@ -35,14 +52,15 @@ public class AccessLogResponseSizeB extends AccessLogData {
         if (responseMessageImpl != null) {
             responseSize = responseMessageImpl.getServiceContext().getNumBytesWritten();
         }
+        return responseSize;
+    }
 
+    private static void append(StringBuilder accessLogEntry, long responseSize) {
         if (responseSize != -999) {
             accessLogEntry.append(responseSize);
         } else {
             accessLogEntry.append("0");
         }
-
-        return true;
     }
 
 }
@@ -29,8 +29,22 @@ public class AccessLogStartTime extends AccessLogData {
     public boolean set(StringBuilder accessLogEntry,
                        HttpResponseMessage response, HttpRequestMessage request,
                        Object data) {
-        long startTime = getStartTime(response, request, data);
+        append(accessLogEntry, getStartTime(response, request, data));
+        return true;
+    }
+
+    @Override
+    public void capture(AccessLogRecord record, int index,
+                        HttpResponseMessage response, HttpRequestMessage request, Object data) {
+        record.setNumber(index, getStartTime(response, request, data));
+    }
 
+    @Override
+    public void format(StringBuilder accessLogEntry, AccessLogRecord record, int index, Object data) {
+        append(accessLogEntry, record.getNumber(index));
+    }
+
+    private static void append(StringBuilder accessLogEntry, long startTime) {
         if (startTime != 0) {
             Date startDate = new Date(startTime);
             accessLogEntry.append("[");
@@ -39,8 +53,6 @@ public class AccessLogStartTime extends AccessLogData {
         } else {
             accessLogEntry.append("-");
         }
-
-        return true;
     }
 
     public static long getStartTime(HttpResponseMessage response, HttpRequestMessage request, Object data) {
@@ -24,16 +24,34 @@ public class AccessLogStatus extends AccessLogData {
 	@Override
 	public boolean set(StringBuilder accessLogEntry,
 			HttpResponseMessage response, HttpRequestMessage request, Object data) {
+		append(accessLogEntry, getStatusCode(response));
+		return true;
+	}
+
+	@Override
+	public void capture(AccessLogRecord record, int index,
+			HttpResponseMessage response, HttpRequestMessage request, Object data) {
+		record.setNumber(index, getStatusCode(response));
+	}
+
+	@Override
+	public void format(StringBuilder accessLogEntry, AccessLogRecord record, int index, Object data) {
+		append(accessLogEntry, (int) record.getNumber(index));
+	}
+
+	private static int getStatusCode(HttpResponseMessage response) {
 		int statusCode = 0;
 		if(response != null){
 			statusCode = response.getStatusCodeAsInt();
 		}
+		return statusCode;
+	}
 
+	private static void append(StringBuilder accessLogEntry, int statusCode) {
 		if(statusCode != 0){
 			accessLogEntry.append(statusCode);
 		} else {
 			accessLogEntry.append("-");
 		}
-		return true;
 	}
 }
@@ -59,6 +59,7 @@ import com.ibm.wsspi.http.channel.values.StatusCodes;
 import com.ibm.wsspi.http.ee7.HttpInboundConnectionExtended;
 import com.ibm.wsspi.http.ee8.Http2InboundConnection;
 import com.ibm.wsspi.tcpchannel.TCPConnectionContext;
+import com.ibm.wsspi.threading.WSExecutorService;
 
 /**
  * Connection link object that the HTTP dispatcher provides to CHFW
@@ -356,13 +357,33 @@ public class HttpDispatcherLink extends InboundApplicationLink implements HttpIn
                 taskWrapper.setClassifiedExecutor(classifyExecutor);
                 classifyExecutor.execute(taskWrapper);
             } else {
-                taskWrapper.run();
+                runUnclassified(taskWrapper);
             }
         } else {
-            taskWrapper.run();
+            runUnclassified(taskWrapper);
         }
     }
 
+    /**
+     * Run a request that has no classified executor. When the default executor
+     * runs such work on virtual threads, the request is handed to a virtual thread
+     * so that the channel thread goes back to the pool; otherwise it runs inline
+     * on the current thread.
+     *
+     * @param taskWrapper the wrapped request handler
+     */
+    private void runUnclassified(TaskWrapper taskWrapper) {
+        ExecutorService executorService = HttpDispatcher.getExecutorService();
+        if (executorService instanceof WSExecutorService) {
+            ExecutorService virtualExecutor = ((WSExecutorService) executorService).getVirtualThreadExecutor();
+            if (virtualExecutor != executorService) {
+                virtualExecutor.execute(taskWrapper);
+                return;
+            }
+        }
+        taskWrapper.run();
+    }
+
     @Override
     public TCPConnectionContext getTCPConnectionContext() {
         // give access to the tcp connection to http upgraded connections.
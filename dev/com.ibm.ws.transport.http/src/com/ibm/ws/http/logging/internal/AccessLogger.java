@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2013 IBM Corporation and others.
+ * Copyright (c) 2004, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -35,6 +35,7 @@ import com.ibm.ws.http.channel.internal.values.AccessLogData;
 import com.ibm.ws.http.channel.internal.values.AccessLogElapsedRequestTime;
 import com.ibm.ws.http.channel.internal.values.AccessLogLocalIP;
 import com.ibm.ws.http.channel.internal.values.AccessLogLocalPort;
+import com.ibm.ws.http.channel.internal.values.AccessLogRecord;
 import com.ibm.ws.http.channel.internal.values.AccessLogStartTime;
 import com.ibm.ws.http.dispatcher.internal.HttpDispatcher;
 import com.ibm.wsspi.bytebuffer.WsByteBuffer;
@@ -51,7 +52,9 @@ import com.ibm.wsspi.http.logging.LogForwarderManager;
 
 /**
  * Implementation of an NCSA access log file. This will perform the disk IO on
- * a background thread, not on the caller's thread.
+ * a background thread, not on the caller's thread. When a log format string
+ * is configured, the caller only captures the raw values of each element into
+ * a ring slot and the line itself is formatted by the writer thread.
  * 
  */
 @Component(configurationPid = "com.ibm.ws.http.log.access", configurationPolicy = ConfigurationPolicy.REQUIRE, immediate = true, service = AccessLogger.class,
@@ -73,6 +76,18 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
     /**  */
     private static final String PROP_ENABLED = "enabled";
 
+    /**  */
+    private static final String PROP_RECORDBUFFERSIZE = "recordBufferSize";
+
+    /**  */
+    private static final String PROP_FLUSHINTERVAL = "flushInterval";
+
+    /**  */
+    private static final String PROP_OVERFLOWPOLICY = "overflowPolicy";
+
+    /** Overflow policy value to drop entries when the ring is full */
+    private static final String OVERFLOW_DROP = "drop";
+
     /** RAS tracing variable */
     private static final TraceComponent tc = Tr.register(AccessLogger.class,
                                                          HttpMessages.HTTP_TRACE_NAME,
@@ -99,6 +114,14 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
         public AccessLogData log;
     }
 
+    /**
+     * Ring slot record, remembering the format it was captured against in
+     * case the configuration changes before it is written.
+     */
+    static class FormatRecord extends AccessLogRecord {
+        public FormatSegment[] format;
+    }
+
     private volatile Map<String, Object> config;
 
     /** Configured access log format */
@@ -157,6 +180,8 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
                 setFormatString(logFormat);
             }
 
+            configureRing(config);
+
             String value = config.get(PROP_MAXFILESIZE).toString();
             try {
                 long maximumSize = Long.valueOf(value);
@@ -194,6 +219,50 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
         }
     }
 
+    /**
+     * Apply the ring settings, which only take effect when the writer is
+     * started, so restart a running logger if any of them changed.
+     * 
+     * @param config
+     */
+    private void configureRing(Map<String, Object> config) {
+        int ringSize = getRingSize();
+        long flushInterval = getFlushInterval();
+        boolean drop = isDropOnOverflow();
+
+        Object value = config.get(PROP_RECORDBUFFERSIZE);
+        if (null != value) {
+            try {
+                setRingSize(Integer.valueOf(value.toString()));
+            } catch (NumberFormatException nfe) {
+                FFDCFilter.processException(nfe, getClass().getName() + ".modified", PROP_RECORDBUFFERSIZE);
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                    Tr.event(tc, "Config: invalid access record buffer size: " + value);
+                }
+            }
+        }
+        value = config.get(PROP_FLUSHINTERVAL);
+        if (null != value) {
+            try {
+                setFlushInterval(Long.valueOf(value.toString()));
+            } catch (NumberFormatException nfe) {
+                FFDCFilter.processException(nfe, getClass().getName() + ".modified", PROP_FLUSHINTERVAL);
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                    Tr.event(tc, "Config: invalid access flush interval: " + value);
+                }
+            }
+        }
+        value = config.get(PROP_OVERFLOWPOLICY);
+        if (null != value) {
+            setDropOnOverflow(OVERFLOW_DROP.equalsIgnoreCase(value.toString()));
+        }
+
+        if (isStarted() && (ringSize != getRingSize() || flushInterval != getFlushInterval() || drop != isDropOnOverflow())) {
+            stop();
+            start();
+        }
+    }
+
     /**
      * @see AccessLog#getFormat()
      */
@@ -374,18 +443,11 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
             return;
         }
         try {
-            StringBuilder accessLogLine;
-            if (parsedFormat != null) {
-                accessLogLine = new StringBuilder();
-                for (FormatSegment s : parsedFormat) {
-                    if (s.string != null) {
-                        accessLogLine.append(s.string);
-                    }
-                    if (s.log != null) {
-                        s.log.set(accessLogLine, response, request, s.data);
-                    }
-                }
+            FormatSegment[] format = parsedFormat;
+            if (format != null) {
+                captureRecord(format, request, response);
             } else {
+                StringBuilder accessLogLine;
                 // addr - userid [date] "method uri?query version" status_code content_length
                 accessLogLine = new StringBuilder(128);
                 accessLogLine.append(remoteAddr);
@@ -449,10 +511,10 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
                         accessLogLine.append('\"');
                     }
                 }
+                accessLogLine.append(newLine);
+                logBytes(HttpChannelUtils.getBytes(accessLogLine));
             }
 
-            accessLogLine.append(newLine);
-
             // Forward the log data to AccessLogForwarder's
             if (!LogForwarderManager.getAccessLogForwarders().isEmpty()) {
                 AccessLogRecordData recordData = toAccessLogRecordData(request, response, version, userId, remoteAddr, numBytes);
@@ -467,12 +529,6 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
                     }
                 } // end-for
             }
-
-            WsByteBuffer wsbb =
-                            HttpDispatcher.getBufferManager().allocate(accessLogLine.length());
-            wsbb.put(HttpChannelUtils.getBytes(accessLogLine));
-            wsbb.flip();
-            super.log(wsbb);
         } catch (Throwable t) {
             FFDCFilter.processException(t, getClass().getName() + ".log", "136", this);
             if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
@@ -481,6 +537,68 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
         }
     }
 
+    /**
+     * Capture the raw values of each element of the log format into the next
+     * ring slot. The line is formatted later by the writer thread.
+     * 
+     * @param format
+     * @param request
+     * @param response
+     */
+    private void captureRecord(FormatSegment[] format, HttpRequestMessage request, HttpResponseMessage response) {
+        RingSlot slot = claimSlot();
+        if (null == slot) {
+            return;
+        }
+        // the slot must be published even if the capture fails, the writer
+        // skips any record that is not complete
+        FormatRecord record = (FormatRecord) slot.getRecord();
+        try {
+            record.reset(format.length);
+            record.format = format;
+            for (int i = 0; i < format.length; i++) {
+                FormatSegment s = format[i];
+                if (s.log != null) {
+                    s.log.capture(record, i, response, request, s.data);
+                }
+            }
+            record.setComplete(true);
+        } finally {
+            publishSlot(slot);
+        }
+    }
+
+    /**
+     * @see LoggerOffThread#createRecord()
+     */
+    @Override
+    protected Object createRecord() {
+        return new FormatRecord();
+    }
+
+    /**
+     * @see LoggerOffThread#formatRecord(Object, StringBuilder)
+     */
+    @Override
+    protected void formatRecord(Object data, StringBuilder accessLogLine) {
+        FormatRecord record = (FormatRecord) data;
+        if (record.isComplete()) {
+            FormatSegment[] format = record.format;
+            for (int i = 0; i < format.length; i++) {
+                FormatSegment s = format[i];
+                if (s.string != null) {
+                    accessLogLine.append(s.string);
+                }
+                if (s.log != null) {
+                    s.log.format(accessLogLine, record, i, s.data);
+                }
+            }
+            accessLogLine.append(newLine);
+        }
+        record.format = null;
+        record.clear();
+    }
+
     /**
      * Return a AccessLogRecordData instance
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2013 IBM Corporation and others.
+ * Copyright (c) 2004, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,6 +20,9 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TrConfigurator;
@@ -28,6 +31,7 @@ import com.ibm.ws.ffdc.FFDCFilter;
 import com.ibm.ws.http.channel.internal.HttpMessages;
 import com.ibm.ws.http.dispatcher.internal.HttpDispatcher;
 import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.http.channel.HttpChannelUtils;
 import com.ibm.wsspi.http.logging.LogFile;
 import com.ibm.wsspi.logging.TextFileOutputStreamFactory;
 
@@ -37,6 +41,12 @@ import com.ibm.wsspi.logging.TextFileOutputStreamFactory;
  * another thread, thus freeing up the caller to continue on while the IO occurs
  * in the background.
  * 
+ * Callers claim a slot in a preallocated ring, fill it in, and publish it;
+ * a single writer thread drains the ring in order, formats any records, and
+ * writes the results to the file in large batches. When the ring is full the
+ * caller either waits for the writer or the entry is dropped, depending on the
+ * configured overflow policy.
+ * 
  * This logger can be stopped and started repeatedly; however, it cannot be
  * restarted once the destroy method has been used.
  */
@@ -67,6 +77,12 @@ public class LoggerOffThread implements LogFile {
 
     /** Timeout to use for some lock waits */
     protected static final long TIMEOUT = 10000L;
+    /** Default number of slots in the ring */
+    protected static final int DEFAULT_RING_SIZE = 4096;
+    /** Minimum number of slots in the ring */
+    protected static final int MIN_RING_SIZE = 16;
+    /** Size of the batch buffer used for each write to the file */
+    private static final int BATCH_SIZE = 65536;
 
     /** Log file associated with this particular thread */
     private File myFile = null;
@@ -84,6 +100,14 @@ public class LoggerOffThread implements LogFile {
     private long maxFileSize = LogFile.UNLIMITED;
     /** Maximum number of backup files to keep around */
     private int maxBackupFiles = 1;
+    /** Number of slots in the ring, always a power of 2 */
+    private int ringSize = DEFAULT_RING_SIZE;
+    /** Longest time written data may wait in the batch buffer, 0 to write when the ring drains */
+    private long flushInterval = 0L;
+    /** Whether entries are dropped, rather than the caller waiting, when the ring is full */
+    private boolean dropOnOverflow = false;
+    /** Number of entries dropped because the ring was full */
+    private final AtomicLong droppedRecords = new AtomicLong(0L);
 
     /**
      * Constructor that opens a reference to the input file name. Note that
@@ -193,11 +217,84 @@ public class LoggerOffThread implements LogFile {
         // if we've stopped then there is no worker to hand this to; however, the
         // caller does not expect to have to release buffers handed to the
         // logger so do that here first
-        if (State.RUNNING != this.state) {
+        WorkerThread worker = this.myWorker;
+        if (State.RUNNING != this.state || null == worker) {
+            data.release();
+            return false;
+        }
+        RingSlot slot = worker.claim();
+        if (null == slot) {
             data.release();
             return false;
         }
-        return this.myWorker.enqueue(data);
+        slot.buffer = data;
+        worker.publish(slot);
+        return true;
+    }
+
+    /**
+     * Log the given bytes to the log file as they are. The array must not be
+     * changed by the caller afterwards.
+     * 
+     * @param data
+     * @return boolean (true means it was accepted)
+     */
+    protected boolean logBytes(byte[] data) {
+        RingSlot slot = claimSlot();
+        if (null == slot) {
+            return false;
+        }
+        slot.bytes = data;
+        publishSlot(slot);
+        return true;
+    }
+
+    /**
+     * Claim the next slot in the ring to be filled in by the caller. Every
+     * slot returned from this must be handed back through publishSlot, even
+     * if filling it in failed, as the writer consumes slots in order. This
+     * returns null if the logger is not running or if the ring is full and
+     * the overflow policy is to drop.
+     * 
+     * @return RingSlot
+     */
+    protected RingSlot claimSlot() {
+        WorkerThread worker = this.myWorker;
+        if (State.RUNNING != this.state || null == worker) {
+            return null;
+        }
+        return worker.claim();
+    }
+
+    /**
+     * Hand a claimed slot over to the writer thread.
+     * 
+     * @param slot
+     */
+    protected void publishSlot(RingSlot slot) {
+        slot.owner.publish(slot);
+    }
+
+    /**
+     * Create a reusable record to be held by one ring slot. Subclasses that
+     * log records rather than bytes override this.
+     * 
+     * @return Object
+     */
+    protected Object createRecord() {
+        return null;
+    }
+
+    /**
+     * Format the record captured in a ring slot as a line of output. This
+     * runs on the writer thread. The characters of the line are written to
+     * the file as single bytes.
+     * 
+     * @param record
+     * @param line
+     */
+    protected void formatRecord(Object record, StringBuilder line) {
+        // nothing by default
     }
 
     /**
@@ -210,7 +307,7 @@ public class LoggerOffThread implements LogFile {
         }
         // start the worker thread
         if (null == this.myWorker) {
-            this.myWorker = new WorkerThread();
+            this.myWorker = new WorkerThread(this.ringSize, this.flushInterval, this.dropOnOverflow);
         }
         this.myWorker.start();
         this.state = State.RUNNING;
@@ -333,6 +430,104 @@ public class LoggerOffThread implements LogFile {
         return true;
     }
 
+    /**
+     * Set the number of entries the ring can hold. This is rounded up to a
+     * power of 2 and takes effect the next time the logger is started.
+     * 
+     * @param size
+     * @return boolean
+     */
+    public boolean setRingSize(int size) {
+        if (MIN_RING_SIZE > size) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, this.myName + ": Invalid ring size-> " + size);
+            }
+            return false;
+        }
+        int value = Integer.highestOneBit(size);
+        if (value < size) {
+            value = (Integer.MAX_VALUE / 2 < value) ? value : value << 1;
+        }
+        this.ringSize = value;
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, this.myName + ": Set ring size to " + this.ringSize);
+        }
+        return true;
+    }
+
+    /**
+     * Query the number of entries the ring can hold.
+     * 
+     * @return int
+     */
+    public int getRingSize() {
+        return this.ringSize;
+    }
+
+    /**
+     * Set the longest time, in milliseconds, that formatted data may be held
+     * before being written to the file. A value of 0 writes as soon as the
+     * ring has been drained. This takes effect the next time the logger is
+     * started.
+     * 
+     * @param interval
+     * @return boolean
+     */
+    public boolean setFlushInterval(long interval) {
+        if (0L > interval) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, this.myName + ": Invalid flush interval-> " + interval);
+            }
+            return false;
+        }
+        this.flushInterval = interval;
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, this.myName + ": Set flush interval to " + this.flushInterval);
+        }
+        return true;
+    }
+
+    /**
+     * Query the flush interval in milliseconds.
+     * 
+     * @return long
+     */
+    public long getFlushInterval() {
+        return this.flushInterval;
+    }
+
+    /**
+     * Set whether entries are dropped when the ring is full, rather than the
+     * caller waiting for room. This takes effect the next time the logger is
+     * started.
+     * 
+     * @param flag
+     */
+    public void setDropOnOverflow(boolean flag) {
+        this.dropOnOverflow = flag;
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, this.myName + ": Set drop on overflow to " + flag);
+        }
+    }
+
+    /**
+     * Query whether entries are dropped when the ring is full.
+     * 
+     * @return boolean
+     */
+    public boolean isDropOnOverflow() {
+        return this.dropOnOverflow;
+    }
+
+    /**
+     * Query how many entries have been dropped because the ring was full.
+     * 
+     * @return long
+     */
+    public long getDroppedRecords() {
+        return this.droppedRecords.get();
+    }
+
     /**
      * Print this object as a string.
      * 
@@ -346,29 +541,76 @@ public class LoggerOffThread implements LogFile {
         buffer.append("\n  FileName: " + this.myName);
         buffer.append("\n  MaxFileSize: " + this.maxFileSize);
         buffer.append("\n  MaxBackupFiles: " + this.maxBackupFiles);
+        buffer.append("\n  RingSize: " + this.ringSize);
+        buffer.append("\n  FlushInterval: " + this.flushInterval);
+        buffer.append("\n  DropOnOverflow: " + this.dropOnOverflow);
+        buffer.append("\n  DroppedRecords: " + this.droppedRecords.get());
         buffer.append("\n  State: " + this.state);
         buffer.append("\n  Worker: " + this.myWorker);
         return buffer.toString();
     }
 
     /**
-     * Worker thread class that handles pulling data off of the outgoing queue
-     * and writing each buffer to the file. Each time this wakes up it will
-     * purge the entire queue to the file.
+     * One entry in the ring. A slot carries either a record to be formatted,
+     * an array of bytes, or a buffer, and is reused once the writer has
+     * consumed it.
+     */
+    protected static final class RingSlot {
+        /** Worker that owns this slot */
+        final WorkerThread owner;
+        /** Sequence number of the entry in this slot, plus 1 once it is published */
+        volatile long sequence = 0L;
+        /** Sequence number claimed for this slot */
+        long claimed = 0L;
+        /** Reusable record, formatted by the writer */
+        final Object record;
+        /** Bytes to write as they are */
+        byte[] bytes = null;
+        /** Buffer to write as it is */
+        WsByteBuffer buffer = null;
+
+        RingSlot(WorkerThread owner, Object record) {
+            this.owner = owner;
+            this.record = record;
+        }
+
+        /**
+         * Access the reusable record held by this slot.
+         * 
+         * @return Object
+         */
+        public Object getRecord() {
+            return this.record;
+        }
+    }
+
+    /**
+     * Worker thread class that drains the ring of published entries and
+     * writes them to the file. Output is gathered into a single batch buffer
+     * so that many entries go to the file with each write.
      * 
      */
     private class WorkerThread extends Thread {
 
         /** State of worker thread */
-        private WorkerState workerState = WorkerState.RUNNING;
+        private volatile WorkerState workerState = WorkerState.RUNNING;
         /** Lock object for the stop process */
         private final Object stopLock = new Object()
         {};
-        /** Lock object for interacting with the work queue */
-        private final Object lock = new Object()
-        {};
-        /** Work queue storing data */
-        private LinkedList<WsByteBuffer> queue = null;
+        /** Ring of slots */
+        private final RingSlot[] slots;
+        /** Mask to turn a sequence number into a slot index */
+        private final int mask;
+        /** Next sequence number to be claimed by a caller */
+        private final AtomicLong claimSequence = new AtomicLong(0L);
+        /** Every sequence number below this one has been consumed by the writer */
+        private volatile long consumedSequence = 0L;
+        /** Whether the writer is parked waiting for work */
+        private volatile boolean parked = false;
+        /** Flush interval in nanoseconds */
+        private final long flushNanos;
+        /** Whether to drop rather than wait when the ring is full */
+        private final boolean dropWhenFull;
         /** List of backup files stored */
         private LinkedList<File> backups = null;
         /** path+name information of log files */
@@ -380,12 +622,29 @@ public class LoggerOffThread implements LogFile {
 
         private long bytesWritten = 0;
 
+        /** Output gathered for the next write */
+        private ByteBuffer batch = null;
+        /** When the oldest data in the batch was added */
+        private long pendingSince = 0L;
+        /** Reusable line used to format records */
+        private final StringBuilder line = new StringBuilder(256);
+
         /**
          * Constructor to create this new worker thread.
+         * 
+         * @param size number of ring slots, a power of 2
+         * @param interval flush interval in milliseconds
+         * @param drop
          */
-        protected WorkerThread() {
+        protected WorkerThread(int size, long interval, boolean drop) {
             super();
-            this.queue = new LinkedList<WsByteBuffer>();
+            this.slots = new RingSlot[size];
+            for (int i = 0; i < size; i++) {
+                this.slots[i] = new RingSlot(this, createRecord());
+            }
+            this.mask = size - 1;
+            this.flushNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+            this.dropWhenFull = drop;
         }
 
         /**
@@ -426,21 +685,54 @@ public class LoggerOffThread implements LogFile {
         }
 
         /**
-         * Add a message to the outgoing queue.
+         * Claim the next free slot, waiting or dropping according to the
+         * overflow policy if the ring is full.
          * 
-         * @param buff
-         * @return boolean (true means success)
+         * @return RingSlot, null if the entry cannot be accepted
          */
-        protected boolean enqueue(WsByteBuffer buff) {
-            if (WorkerState.RUNNING != this.workerState) {
-                buff.release();
-                return false;
+        protected RingSlot claim() {
+            while (WorkerState.RUNNING == this.workerState) {
+                long seq = this.claimSequence.get();
+                if (seq - this.consumedSequence >= this.slots.length) {
+                    if (this.dropWhenFull) {
+                        droppedRecords.incrementAndGet();
+                        return null;
+                    }
+                    // wait for the writer to make room
+                    LockSupport.unpark(this);
+                    LockSupport.parkNanos(1000L);
+                    continue;
+                }
+                if (this.claimSequence.compareAndSet(seq, seq + 1)) {
+                    RingSlot slot = this.slots[(int) seq & this.mask];
+                    slot.claimed = seq;
+                    return slot;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Publish a filled in slot to the writer.
+         * 
+         * @param slot
+         */
+        protected void publish(RingSlot slot) {
+            long seq = slot.claimed;
+            slot.sequence = seq + 1;
+            if (WorkerState.STOPPED == this.workerState) {
+                // the writer exited before this slot was published, so nobody
+                // else will consume it
+                releaseSlot(slot);
+                return;
             }
-            synchronized (this.lock) {
-                this.queue.add(buff);
-                this.lock.notify();
+            if (this.parked) {
+                // with a flush interval the writer wakes up on its own, unless
+                // the ring is filling up
+                if (0L == this.flushNanos || (seq - this.consumedSequence) >= (this.slots.length >> 1)) {
+                    LockSupport.unpark(this);
+                }
             }
-            return true;
         }
 
         /**
@@ -454,10 +746,8 @@ public class LoggerOffThread implements LogFile {
                 return;
             }
             this.workerState = WorkerState.STOPPING;
-            // flush whatever might be on the queue
-            synchronized (this.lock) {
-                this.lock.notify();
-            }
+            // flush whatever might be in the ring
+            LockSupport.unpark(this);
             try {
                 // wait until that flush stops, verify we haven't already stopped
                 if (WorkerState.STOPPING == this.workerState) {
@@ -470,12 +760,6 @@ public class LoggerOffThread implements LogFile {
             } catch (InterruptedException ie) {
                 FFDCFilter.processException(ie, getClass().getName() + ".triggerStop", "201", this);
             }
-            synchronized (this.lock) {
-                // free all the buffers left on the queue
-                while (!this.queue.isEmpty()) {
-                    this.queue.removeFirst().release();
-                }
-            }
             // cleanup any backup related items
             if (null != this.backups) {
                 this.myFormat = null;
@@ -483,6 +767,23 @@ public class LoggerOffThread implements LogFile {
             }
         }
 
+        /**
+         * Free the contents of a slot that will not be written. This is called
+         * by both the writer as it exits and a caller that publishes after
+         * that, so the slot is locked to release its buffer only once.
+         * 
+         * @param slot
+         */
+        private void releaseSlot(RingSlot slot) {
+            synchronized (slot) {
+                if (null != slot.buffer) {
+                    slot.buffer.release();
+                    slot.buffer = null;
+                }
+                slot.bytes = null;
+            }
+        }
+
         /**
          * Rename the source file into the target file, deleting the target if
          * necessary.
@@ -596,24 +897,27 @@ public class LoggerOffThread implements LogFile {
         }
 
         /**
-         * Method that actually handles writing data to the file.
-         * 
-         * @param data
+         * Write whatever is in the batch buffer to the file.
          */
-        private void logData(WsByteBuffer data) {
-            int length = data.remaining();
-            if (isOverFileLimit(length)) {
-                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                    Tr.debug(tc, "logData, rotate");
-                }
-                rotate();
+        private void flushBatch() {
+            ByteBuffer buffer = this.batch;
+            if (0 == buffer.position()) {
+                return;
             }
+            buffer.flip();
+            writeBuffer(buffer);
+            buffer.clear();
+        }
 
+        /**
+         * Write the remaining contents of the buffer to the file.
+         * 
+         * @param buffer
+         */
+        private void writeBuffer(ByteBuffer buffer) {
             int written = 0;
             try {
-
-                ByteBuffer buffer = data.getWrappedByteBuffer();
-                while (written < length) {
+                while (buffer.hasRemaining()) {
                     written += getChannel().write(buffer);
                 }
             } catch (IOException ioe) {
@@ -623,67 +927,160 @@ public class LoggerOffThread implements LogFile {
                 }
             } finally {
                 this.bytesWritten += written;
-                data.release();
             }
         }
 
         /**
-         * Run method that will watch for data on the outgoing queue and pull
-         * that off to save to the file. This runs in the background so the
-         * main logger thread does no disk IO itself, but merely queues log
-         * items here and returns back as fast as possible.
+         * Make room for the input amount in the batch buffer, rotating the
+         * log file first if that amount would push it over the maximum size.
+         * 
+         * @param length
+         */
+        private void prepare(int length) {
+            if (isOverFileLimit(this.batch.position() + length)) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "logData, rotate");
+                }
+                flushBatch();
+                rotate();
+            }
+            if (this.batch.remaining() < length) {
+                flushBatch();
+            }
+            if (0 == this.batch.position()) {
+                this.pendingSince = System.nanoTime();
+            }
+        }
+
+        /**
+         * Add the contents of one slot to the batch buffer.
+         * 
+         * @param slot
+         */
+        private void logData(RingSlot slot) {
+            if (null != slot.buffer) {
+                WsByteBuffer data = slot.buffer;
+                slot.buffer = null;
+                try {
+                    ByteBuffer buffer = data.getWrappedByteBuffer();
+                    int length = buffer.remaining();
+                    prepare(length);
+                    if (length > this.batch.capacity()) {
+                        writeBuffer(buffer);
+                    } else {
+                        this.batch.put(buffer);
+                    }
+                } finally {
+                    data.release();
+                }
+                return;
+            }
+            if (null != slot.bytes) {
+                byte[] data = slot.bytes;
+                slot.bytes = null;
+                prepare(data.length);
+                if (data.length > this.batch.capacity()) {
+                    writeBuffer(ByteBuffer.wrap(data));
+                } else {
+                    this.batch.put(data);
+                }
+                return;
+            }
+            if (null == slot.record) {
+                return;
+            }
+            StringBuilder sb = this.line;
+            sb.setLength(0);
+            formatRecord(slot.record, sb);
+            int length = sb.length();
+            if (0 == length) {
+                return;
+            }
+            prepare(length);
+            if (length > this.batch.capacity()) {
+                writeBuffer(ByteBuffer.wrap(HttpChannelUtils.getBytes(sb)));
+            } else {
+                ByteBuffer buffer = this.batch;
+                for (int i = 0; i < length; i++) {
+                    buffer.put((byte) sb.charAt(i));
+                }
+            }
+        }
+
+        /**
+         * Run method that drains published entries from the ring and writes
+         * them to the file. This runs in the background so the main logger
+         * thread does no disk IO itself, but merely fills in a ring slot and
+         * returns back as fast as possible.
          */
         @Override
         public void run() {
-
-            LinkedList<WsByteBuffer> workList = new LinkedList<WsByteBuffer>();
-            LinkedList<WsByteBuffer> tmpList;
+            this.batch = ByteBuffer.allocateDirect(BATCH_SIZE);
+            long next = this.consumedSequence;
+            int stopSpins = 0;
             while (true) {
-
-                // pull all the data off of the parent queue and on to our local
-                // work list
-                if (!this.queue.isEmpty()) {
-                    synchronized (this.lock) {
-                        // swap the last work list that is now empty
-                        // and the newly filled queue list
-                        tmpList = workList;
-                        workList = this.queue;
-                        this.queue = tmpList;
-                    }
-                    // now work through each outgoing item on the list
-                    while (!workList.isEmpty()) {
-                        try {
-                            logData(workList.removeFirst());
-                        } catch (Throwable t) {
-                            FFDCFilter.processException(t, getClass().getName() + ".run", "588", this);
-                            if (tc.isDebugEnabled()) {
-                                Tr.debug(tc, getFileName() + ": Unexpected exception in logData; " + t);
-                            }
+                RingSlot slot = this.slots[(int) next & this.mask];
+                if (slot.sequence == next + 1) {
+                    try {
+                        logData(slot);
+                    } catch (Throwable t) {
+                        FFDCFilter.processException(t, getClass().getName() + ".run", "588", this);
+                        if (tc.isDebugEnabled()) {
+                            Tr.debug(tc, getFileName() + ": Unexpected exception in logData; " + t);
                         }
                     }
+                    next++;
+                    this.consumedSequence = next;
+                    if (0L != this.flushNanos && 0 != this.batch.position()
+                        && System.nanoTime() - this.pendingSince >= this.flushNanos) {
+                        flushBatch();
+                    }
+                    continue;
+                }
+                // nothing more has been published
+                long now = System.nanoTime();
+                if (0 != this.batch.position()
+                    && (0L == this.flushNanos || now - this.pendingSince >= this.flushNanos)) {
+                    flushBatch();
                 }
-                // if we're in the process of stopping then exit the while loop
+                // if we're in the process of stopping then exit the loop once
+                // the callers that already claimed a slot have published it
                 if (WorkerState.RUNNING != this.workerState) {
-                    break;
+                    if (next == this.claimSequence.get() || 1000 < ++stopSpins) {
+                        break;
+                    }
+                    Thread.yield();
+                    continue;
                 }
                 // wait until somebody tells us we have work to do
-                if (this.queue.isEmpty()) {
-                    try {
-                        synchronized (this.lock) {
-                            // if there's already work on the queue, loop back around
-                            if (!this.queue.isEmpty()) {
-                                continue;
-                            }
-                            this.lock.wait(TIMEOUT);
-                        }
-                    } catch (InterruptedException ie) {
-                        FFDCFilter.processException(ie, getClass().getName() + ".run", "278", this);
-                    }
+                long wait;
+                if (0L == this.flushNanos) {
+                    wait = TimeUnit.MILLISECONDS.toNanos(TIMEOUT);
+                } else if (0 != this.batch.position()) {
+                    wait = this.flushNanos - (now - this.pendingSince);
+                } else {
+                    wait = this.flushNanos;
+                }
+                this.parked = true;
+                if (slot.sequence != next + 1 && WorkerState.RUNNING == this.workerState) {
+                    LockSupport.parkNanos(this, wait);
                 }
+                this.parked = false;
             } // end of while
 
-            // tell the triggerStop method to exit now
+            flushBatch();
+            this.batch = null;
+
+            // stop the callers that publish from now on handing entries to us,
+            // then free the entries that were published but not consumed
             this.workerState = WorkerState.STOPPED;
+            for (RingSlot slot : this.slots) {
+                if (slot.sequence > next) {
+                    releaseSlot(slot);
+                }
+            }
+
+            // tell the triggerStop method to exit now
             synchronized (this.stopLock) {
                 this.stopLock.notify();
             }
@@ -702,6 +1099,8 @@ public class LoggerOffThread implements LogFile {
             sb.append(((null != this.backups) ? this.backups.size() : 0));
             sb.append("\n    State: ");
             sb.append(this.workerState);
+            sb.append("\n    Pending entries: ");
+            sb.append(this.claimSequence.get() - this.consumedSequence);
             return sb.toString();
         }
     }
@@ -217,6 +217,57 @@ public class HttpHeaderKeys extends HeaderKeys {
     /** De facto standard header for original protocol (similar to $WSIS) */
     public static final HttpHeaderKeys HDR_X_FORWARDED_PROTO = new HttpHeaderKeys("X-Forwarded-Proto");
 
+    /** Slots of the well known header table, indexed by the perfect hash of the name */
+    private static final HttpHeaderKeys[] wellKnownKeys;
+    /** Lowercase names of the keys in each wellKnownKeys slot */
+    private static final byte[][] wellKnownNames;
+    /** Multiplier that spreads the name hashes into distinct slots */
+    private static final int wellKnownMultiplier;
+    /** Shift taking a spread hash down to a slot index */
+    private static final int wellKnownShift;
+
+    // Build a collision free table over the names defined above, so that
+    // parsing can match the common headers straight from the bytes with one
+    // hash and one compare. This must stay after the last enumerated key.
+    static {
+        int count = allKeys.size();
+        byte[][] names = new byte[count][];
+        int[] hashes = new int[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = allKeys.get(i).getName().toLowerCase().getBytes();
+            hashes[i] = hashName(names[i], 0, names[i].length);
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(count) + 3;
+        int multiplier = 0x9E3779B1;
+        boolean[] used = null;
+        search: while (true) {
+            for (int attempt = 0; attempt < 1000; attempt++, multiplier += 2) {
+                used = new boolean[1 << bits];
+                int i = 0;
+                for (; i < count; i++) {
+                    int slot = (hashes[i] * multiplier) >>> (32 - bits);
+                    if (used[slot]) {
+                        break;
+                    }
+                    used[slot] = true;
+                }
+                if (i == count) {
+                    break search;
+                }
+            }
+            bits++;
+        }
+        wellKnownMultiplier = multiplier;
+        wellKnownShift = 32 - bits;
+        wellKnownKeys = new HttpHeaderKeys[1 << bits];
+        wellKnownNames = new byte[1 << bits][];
+        for (int i = 0; i < count; i++) {
+            int slot = (hashes[i] * multiplier) >>> wellKnownShift;
+            wellKnownKeys[slot] = allKeys.get(i);
+            wellKnownNames[slot] = names[i];
+        }
+    }
+
     /**
      * Constructor to create a new HttpHeaderKey and add it to the
      * enumerated list.
@@ -319,7 +370,11 @@ public class HttpHeaderKeys extends HeaderKeys {
      *             if the input name contains CR or LF chars
      */
     public static HttpHeaderKeys find(byte[] name, int offset, int length) {
-        HttpHeaderKeys key = (HttpHeaderKeys) myMatcher.match(name, offset, length);
+        HttpHeaderKeys key = matchWellKnown(name, offset, length);
+        if (null != key) {
+            return key;
+        }
+        key = (HttpHeaderKeys) myMatcher.match(name, offset, length);
         if (null == key) {
             synchronized (HttpHeaderKeys.class) {
                 // protect against 2 threads getting here on the new value by
@@ -388,4 +443,48 @@ public class HttpHeaderKeys extends HeaderKeys {
         return find(name, 0, name.length);
     }
 
+    /**
+     * Match the input name against the well known keys using the perfect
+     * hash table. This does not allocate and does not find keys that were
+     * created after this class was initialized.
+     *
+     * @param name
+     * @param offset
+     * @param length
+     * @return HttpHeaderKeys, null if not a well known header
+     */
+    private static HttpHeaderKeys matchWellKnown(byte[] name, int offset, int length) {
+        int slot = (hashName(name, offset, length) * wellKnownMultiplier) >>> wellKnownShift;
+        byte[] known = wellKnownNames[slot];
+        if (null == known || known.length != length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (known[i] != toLower(name[offset + i])) {
+                return null;
+            }
+        }
+        return wellKnownKeys[slot];
+    }
+
+    /**
+     * Case-insensitive hash of the name.
+     *
+     * @param name
+     * @param offset
+     * @param length
+     * @return int
+     */
+    private static int hashName(byte[] name, int offset, int length) {
+        int hash = length;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = 31 * hash + toLower(name[i]);
+        }
+        return hash;
+    }
+
+    private static byte toLower(byte b) {
+        return ('A' <= b && 'Z' >= b) ? (byte) (b + 32) : b;
+    }
+
 }
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.genericbnf.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ibm.ws.bytebuffer.internal.WsByteBufferImpl;
+import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.genericbnf.HeaderField;
+import com.ibm.wsspi.genericbnf.HeaderKeys;
+import com.ibm.wsspi.http.channel.values.HttpHeaderKeys;
+
+/**
+ * Unit tests for parsing headers, which compare the in place scan of complete
+ * header lines with the byte at a time state machine.
+ */
+public class BNFHeadersImplTest {
+
+    private static final String HEADERS = "Host: www.example.com\r\n"
+                                           + "Accept: text/html, */*\r\n"
+                                           + "Content-Length: 42\r\n"
+                                           + "X-Custom-Header: some value\r\n"
+                                           + "X-Empty:\r\n"
+                                           + "Accept: application/json\r\n"
+                                           + "\r\n";
+
+    /**
+     * Headers that look up keys the same way as the HTTP messages.
+     */
+    public static class TestHeaders extends BNFHeadersImpl {
+        @Override
+        protected HeaderKeys findKey(String name) {
+            return HttpHeaderKeys.find(name);
+        }
+
+        @Override
+        protected HeaderKeys findKey(byte[] name) {
+            return HttpHeaderKeys.find(name, 0, name.length);
+        }
+
+        @Override
+        protected HeaderKeys findKey(byte[] data, int offset, int length) {
+            return HttpHeaderKeys.find(data, offset, length);
+        }
+    }
+
+    /**
+     * Wrap the bytes in a buffer. A heap buffer starts part way into its
+     * backing array, so that the array offset is used.
+     */
+    private static WsByteBuffer wrap(byte[] data, boolean direct) {
+        ByteBuffer bb;
+        if (direct) {
+            bb = ByteBuffer.allocateDirect(data.length);
+            bb.put(data).flip();
+        } else {
+            byte[] array = new byte[data.length + 10];
+            System.arraycopy(data, 0, array, 5, data.length);
+            bb = ByteBuffer.wrap(array, 5, data.length).slice();
+        }
+        WsByteBufferImpl buffer = new WsByteBufferImpl();
+        buffer.setByteBuffer(bb);
+        return buffer;
+    }
+
+    /**
+     * Parse the headers, which are read in the given pieces.
+     */
+    private static TestHeaders parse(boolean inPlace, boolean direct, String... pieces) throws Exception {
+        TestHeaders headers = new TestHeaders();
+        headers.setInPlaceHeaderParsing(inPlace);
+        for (int i = 0; i < pieces.length; i++) {
+            WsByteBuffer buffer = wrap(pieces[i].getBytes("ISO-8859-1"), direct);
+            headers.addParseBuffer(buffer);
+            boolean complete = headers.parseHeaders(buffer, false);
+            assertEquals("piece " + i + " of " + pieces.length, i == pieces.length - 1, complete);
+            if (complete) {
+                assertFalse("data after the end of headers", buffer.hasRemaining());
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * @return name: value of each header in the order they were parsed.
+     */
+    private static List<String> toList(TestHeaders headers) {
+        List<String> list = new ArrayList<String>();
+        for (HeaderField field : headers.getAllHeaders()) {
+            list.add(field.getName() + ": " + field.asString());
+        }
+        return list;
+    }
+
+    /**
+     * Parse the headers with and without the in place scan, from heap and
+     * direct buffers, and check that all of them have the same result.
+     *
+     * @return the headers parsed in place from heap buffers.
+     */
+    private static TestHeaders parseAll(String... pieces) throws Exception {
+        List<String> expected = toList(parse(false, false, pieces));
+        assertEquals(expected, toList(parse(false, true, pieces)));
+        assertEquals(expected, toList(parse(true, true, pieces)));
+        TestHeaders headers = parse(true, false, pieces);
+        assertEquals(expected, toList(headers));
+        return headers;
+    }
+
+    @Test
+    public void testParseInPlace() throws Exception {
+        TestHeaders headers = parseAll(HEADERS);
+
+        assertEquals(6, headers.getNumberOfHeaders());
+        assertEquals("www.example.com", headers.getHeader(HttpHeaderKeys.HDR_HOST).asString());
+        assertEquals("42", headers.getHeader(HttpHeaderKeys.HDR_CONTENT_LENGTH).asString());
+        assertEquals("some value", headers.getHeader("x-custom-header").asString());
+        assertEquals("", headers.getHeader("X-Empty").asString());
+        List<HeaderField> accept = headers.getHeaders(HttpHeaderKeys.HDR_ACCEPT);
+        assertEquals(2, accept.size());
+        assertEquals("text/html, */*", accept.get(0).asString());
+        assertEquals("application/json", accept.get(1).asString());
+    }
+
+    @Test
+    public void testCaseInsensitiveNames() throws Exception {
+        TestHeaders headers = parseAll("HOST: a\r\ncontent-length: 1\r\ncOnNeCtIoN: close\r\nx-CUSTOM-header: b\r\n\r\n");
+
+        assertEquals("a", headers.getHeader(HttpHeaderKeys.HDR_HOST).asString());
+        assertEquals("1", headers.getHeader(HttpHeaderKeys.HDR_CONTENT_LENGTH).asString());
+        assertEquals("close", headers.getHeader(HttpHeaderKeys.HDR_CONNECTION).asString());
+        assertEquals("b", headers.getHeader("X-Custom-Header").asString());
+        for (HeaderField field : headers.getAllHeaders()) {
+            assertSame(HttpHeaderKeys.find(field.getName()), field.getKey());
+        }
+    }
+
+    @Test
+    public void testBareLineFeeds() throws Exception {
+        TestHeaders headers = parseAll("Host: a\nAccept: */*\n\n");
+
+        assertEquals(2, headers.getNumberOfHeaders());
+        assertEquals("*/*", headers.getHeader(HttpHeaderKeys.HDR_ACCEPT).asString());
+    }
+
+    @Test
+    public void testFoldedValue() throws Exception {
+        TestHeaders headers = parseAll("Host: a\r\nX-Folded: first\r\n second\r\n\tthird\r\nAccept: */*\r\n\r\n");
+
+        assertEquals(3, headers.getNumberOfHeaders());
+        String folded = headers.getHeader("X-Folded").asString();
+        assertTrue(folded, folded.startsWith("first") && folded.contains("second") && folded.endsWith("third"));
+        assertEquals("*/*", headers.getHeader(HttpHeaderKeys.HDR_ACCEPT).asString());
+    }
+
+    @Test
+    public void testWhitespaceBeforeColon() throws Exception {
+        TestHeaders headers = parseAll("Host: a\r\nAccept : */*\r\nConnection: close\r\n\r\n");
+
+        assertEquals(3, headers.getNumberOfHeaders());
+        assertEquals("close", headers.getHeader(HttpHeaderKeys.HDR_CONNECTION).asString());
+    }
+
+    /**
+     * The headers are read in two pieces, split at every position.
+     */
+    @Test
+    public void testTwoBuffers() throws Exception {
+        List<String> expected = toList(parse(false, false, HEADERS));
+        for (int i = 1; i < HEADERS.length(); i++) {
+            String first = HEADERS.substring(0, i);
+            String second = HEADERS.substring(i);
+            assertEquals("split at " + i, expected, toList(parseAll(first, second)));
+        }
+    }
+
+    /**
+     * The headers are read in three pieces, one of which holds a complete line.
+     */
+    @Test
+    public void testThreeBuffers() throws Exception {
+        List<String> expected = toList(parse(false, false, HEADERS));
+        int eol = HEADERS.indexOf('\n', 30);
+        for (int i = 1; i < 30; i++) {
+            String first = HEADERS.substring(0, i);
+            String second = HEADERS.substring(i, eol + 30);
+            String third = HEADERS.substring(eol + 30);
+            assertEquals("split at " + i, expected, toList(parseAll(first, second, third)));
+        }
+    }
+
+    @Test
+    public void testFoldedValueInTwoBuffers() throws Exception {
+        String folded = "Host: a\r\nX-Folded: first\r\n second\r\nAccept: */*\r\n\r\n";
+        List<String> expected = toList(parse(false, false, folded));
+        for (int i = 1; i < folded.length(); i++) {
+            assertEquals("split at " + i, expected, toList(parseAll(folded.substring(0, i), folded.substring(i))));
+        }
+    }
+}
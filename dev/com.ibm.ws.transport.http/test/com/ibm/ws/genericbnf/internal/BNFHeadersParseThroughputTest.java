@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.genericbnf.internal;
+
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Ignore;
+
+import com.ibm.ws.bytebuffer.internal.WsByteBufferImpl;
+import com.ibm.ws.genericbnf.internal.BNFHeadersImplTest.TestHeaders;
+import com.ibm.wsspi.http.channel.values.HttpHeaderKeys;
+
+/**
+ * Compares the time taken to parse a typical set of request headers with the in place
+ * scan of complete header lines with the time taken by the byte at a time state machine.
+ * Run the main method to produce the results.
+ */
+@Ignore
+public class BNFHeadersParseThroughputTest {
+
+    private static final String HEADERS = "Host: www.example.com\r\n"
+                                           + "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:56.0) Gecko/20100101 Firefox/56.0\r\n"
+                                           + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n"
+                                           + "Accept-Language: en-US,en;q=0.5\r\n"
+                                           + "Accept-Encoding: gzip, deflate\r\n"
+                                           + "Referer: http://www.example.com/index.html\r\n"
+                                           + "Cookie: JSESSIONID=0000abcdefghijklmnopqrstuvw:-1; LtpaToken2=abcdefghijklmnopqrstuvwxyz0123456789\r\n"
+                                           + "Connection: keep-alive\r\n"
+                                           + "Upgrade-Insecure-Requests: 1\r\n"
+                                           + "Cache-Control: max-age=0\r\n"
+                                           + "X-Forwarded-For: 192.168.0.1\r\n"
+                                           + "\r\n";
+
+    private final WsByteBufferImpl buffer = new WsByteBufferImpl();
+
+    BNFHeadersParseThroughputTest() throws Exception {
+        buffer.setByteBuffer(ByteBuffer.wrap(HEADERS.getBytes("ISO-8859-1")));
+    }
+
+    /**
+     * Parse the headers repeatedly and look up one of them each time.
+     *
+     * @param inPlace indicates whether to scan complete header lines in place.
+     * @param iterations number of times to parse the headers.
+     * @return elapsed time in nanoseconds.
+     */
+    public long throughput(boolean inPlace, long iterations) throws Exception {
+        long startTime = System.nanoTime();
+        for (long i = iterations; i > 0; i--) {
+            TestHeaders headers = new TestHeaders();
+            headers.setInPlaceHeaderParsing(inPlace);
+            buffer.position(0);
+            headers.addParseBuffer(buffer);
+            boolean complete = headers.parseHeaders(buffer, false);
+            assertTrue(complete);
+            assertTrue(headers.containsHeader(HttpHeaderKeys.HDR_HOST));
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    static void results(String testHeader, long[] times) {
+        long total = 0;
+        for (long time : times)
+            total += time;
+        System.out.println(testHeader);
+        System.out.println("   Times = " + Arrays.toString(times));
+        System.out.println(" average = " + total / times.length + " (" + total / times.length / 1000000 + " ms)");
+
+        Arrays.sort(times);
+        System.out.println("     min = " + times[0]);
+        System.out.println("     max = " + times[times.length - 1]);
+        System.out.println();
+    }
+
+    public static void main(String[] args) throws Exception {
+        final long iterations = 100000;
+        final int warmups = 5;
+        final int loopCount = 10;
+
+        BNFHeadersParseThroughputTest test = new BNFHeadersParseThroughputTest();
+        long[] times = new long[loopCount];
+
+        for (int w = 0; w < warmups + 1; w++)
+            for (int i = 0; i < loopCount; i++)
+                times[i] = test.throughput(false, iterations);
+        results("Headers parsed by the state machine", times);
+
+        for (int w = 0; w < warmups + 1; w++)
+            for (int i = 0; i < loopCount; i++)
+                times[i] = test.throughput(true, iterations);
+        results("Headers scanned in place", times);
+    }
+}
@@ -0,0 +1,408 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.channel.h2internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jmock.Mockery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.ws.bytebuffer.internal.WsByteBufferImpl;
+import com.ibm.ws.http.channel.h2internal.H2WorkQInterface.WRITE_ACTION;
+import com.ibm.ws.http.channel.h2internal.exceptions.FlowControlException;
+import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.channelfw.VirtualConnection;
+import com.ibm.wsspi.tcpchannel.TCPConnectionContext;
+import com.ibm.wsspi.tcpchannel.TCPRequestContext;
+import com.ibm.wsspi.tcpchannel.TCPWriteCompletedCallback;
+import com.ibm.wsspi.tcpchannel.TCPWriteRequestContext;
+
+/**
+ * Unit tests for H2WriteTree, which check the frames gathered into each write,
+ * the completion of writes that do not finish right away, and the accounting
+ * of the connection window.
+ */
+public class H2WriteTreeTest {
+
+    private static final int INITIAL_WINDOW = 65535;
+
+    private final Mockery mock = new Mockery();
+    private final VirtualConnection vc = mock.mock(VirtualConnection.class);
+
+    private ExecutorService executor;
+    private TestWriteContext writeContext;
+    private TestTree tree;
+    private final H2TCPConnectionContext connCtx = new H2TCPConnectionContext(1, null, null);
+
+    /**
+     * Write queue that runs its threads on the test's executor.
+     */
+    private class TestTree extends H2WriteTree {
+        @Override
+        protected ExecutorService getExecutorService() {
+            return executor;
+        }
+    }
+
+    /**
+     * TCP write context that records each write, and either completes it right
+     * away or keeps its callback until the test completes it.
+     */
+    private class TestWriteContext implements TCPWriteRequestContext {
+        volatile boolean completeRightAway = true;
+        final List<WsByteBuffer[]> writes = new CopyOnWriteArrayList<WsByteBuffer[]>();
+        final List<Boolean> forceQueued = new CopyOnWriteArrayList<Boolean>();
+        volatile TCPWriteCompletedCallback pending;
+        private WsByteBuffer[] buffers;
+
+        @Override
+        public VirtualConnection write(long numBytes, TCPWriteCompletedCallback callback, boolean forceQueue, int timeout) {
+            assertNull("a write is already outstanding", pending);
+            writes.add(buffers);
+            forceQueued.add(forceQueue);
+            if (completeRightAway && !forceQueue) {
+                return vc;
+            }
+            pending = callback;
+            return null;
+        }
+
+        void completePending(IOException ioe) {
+            TCPWriteCompletedCallback callback = pending;
+            pending = null;
+            if (ioe == null) {
+                callback.complete(vc, this);
+            } else {
+                callback.error(vc, this, ioe);
+            }
+        }
+
+        @Override
+        public long write(long numBytes, int timeout) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferFrom(FileChannel source, long position, long count, int timeout) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TCPConnectionContext getInterface() {
+            return null;
+        }
+
+        @Override
+        public void clearBuffers() {
+            buffers = null;
+        }
+
+        @Override
+        public WsByteBuffer[] getBuffers() {
+            return buffers;
+        }
+
+        @Override
+        public void setBuffers(WsByteBuffer[] bufs) {
+            buffers = bufs;
+        }
+
+        @Override
+        public WsByteBuffer getBuffer() {
+            return buffers == null ? null : buffers[0];
+        }
+
+        @Override
+        public void setBuffer(WsByteBuffer buf) {
+            buffers = new WsByteBuffer[] { buf };
+        }
+    }
+
+    /**
+     * Callback that counts completions and errors.
+     */
+    private static class TestCallback implements TCPWriteCompletedCallback {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger completes = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        volatile IOException error;
+
+        @Override
+        public void complete(VirtualConnection vc, TCPWriteRequestContext wsc) {
+            completes.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void error(VirtualConnection vc, TCPWriteRequestContext wsc, IOException ioe) {
+            error = ioe;
+            errors.incrementAndGet();
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("callback was not called", done.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        writeContext = new TestWriteContext();
+        tree = new TestTree();
+        tree.init(writeContext, new H2MuxTCPWriteCallback());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static WsByteBuffer buffer(int size) {
+        WsByteBufferImpl buffer = new WsByteBufferImpl();
+        buffer.setByteBuffer(ByteBuffer.allocate(size));
+        return buffer;
+    }
+
+    private H2WriteQEntry async(int streamID, FrameTypes type, int payloadLength, TestCallback callback, boolean forceQueue) {
+        return new H2WriteQEntry(buffer(payloadLength + 9), null, TCPWriteRequestContext.WRITE_ALL_DATA, callback, forceQueue,
+                        TCPRequestContext.NO_TIMEOUT, connCtx, H2WriteQEntry.WRITE_TYPE.ASYNC, type, payloadLength, streamID);
+    }
+
+    private H2WriteQEntry async(int streamID, TestCallback callback) {
+        return async(streamID, FrameTypes.HEADERS, 20, callback, false);
+    }
+
+    private static H2WriteQEntry sync(int streamID, FrameTypes type, int payloadLength) {
+        H2WriteQEntry e = new H2WriteQEntry(buffer(payloadLength + 9), null, TCPWriteRequestContext.WRITE_ALL_DATA, TCPRequestContext.NO_TIMEOUT,
+                        H2WriteQEntry.WRITE_TYPE.SYNC, type, payloadLength, streamID);
+        e.armWriteCompleteLatch();
+        return e;
+    }
+
+    @Test(timeout = 10000)
+    public void testWriteOnCallersThread() throws Exception {
+        H2WriteQEntry s = sync(3, FrameTypes.HEADERS, 20);
+        assertEquals(WRITE_ACTION.COMPLETED, tree.writeOrAddToQ(s));
+        assertTrue(s.isWriteDone());
+
+        TestCallback callback = new TestCallback();
+        assertEquals(WRITE_ACTION.COMPLETED, tree.writeOrAddToQ(async(5, callback)));
+
+        assertEquals(2, writeContext.writes.size());
+        assertSame(s.getBuffer(), writeContext.writes.get(0)[0]);
+        assertEquals(Boolean.FALSE, writeContext.forceQueued.get(1));
+        assertEquals(2, tree.getWritesIssued());
+        assertEquals(2, tree.getFramesWritten());
+        assertEquals(0, tree.getWritesPending());
+        // the caller reports the completion of its own write
+        assertEquals(0, callback.completes.get());
+    }
+
+    /**
+     * An async write that does not complete right away returns to its caller, and
+     * the frames queued meanwhile are written together once it completes.
+     */
+    @Test(timeout = 10000)
+    public void testPendingWriteAndBatch() throws Exception {
+        writeContext.completeRightAway = false;
+        TestCallback first = new TestCallback();
+        assertEquals(WRITE_ACTION.PENDING_CALLBACK, tree.writeOrAddToQ(async(1, first)));
+        assertEquals(1, writeContext.writes.size());
+
+        TestCallback[] callbacks = new TestCallback[5];
+        H2WriteQEntry[] entries = new H2WriteQEntry[5];
+        for (int i = 0; i < entries.length; i++) {
+            callbacks[i] = new TestCallback();
+            entries[i] = async(3 + 2 * i, callbacks[i]);
+            assertEquals(WRITE_ACTION.QUEUED, tree.writeOrAddToQ(entries[i]));
+        }
+        assertEquals(5, tree.getQueueDepth());
+        assertEquals(0, first.completes.get());
+
+        writeContext.completeRightAway = true;
+        writeContext.completePending(null);
+
+        first.await();
+        for (TestCallback callback : callbacks) {
+            callback.await();
+            assertEquals(1, callback.completes.get());
+        }
+        assertEquals(1, first.completes.get());
+
+        // the queued frames were gathered into one write
+        assertEquals(2, writeContext.writes.size());
+        WsByteBuffer[] gathered = writeContext.writes.get(1);
+        assertEquals(5, gathered.length);
+        for (H2WriteQEntry e : entries) {
+            assertTrue(e.isWriteDone());
+        }
+        assertEquals(2, tree.getWritesIssued());
+        assertEquals(6, tree.getFramesWritten());
+        assertEquals(1, tree.getWritesPending());
+        assertEquals(5, tree.getMaxQueueDepth());
+        String stats = tree.getStatistics();
+        assertTrue(stats, stats.contains("framesPerWrite=3.0"));
+        assertTrue(H2WriteTree.getTotalStatistics().startsWith("writes="));
+    }
+
+    @Test(timeout = 10000)
+    public void testPendingSyncWrite() throws Exception {
+        writeContext.completeRightAway = false;
+        H2WriteQEntry s = sync(3, FrameTypes.HEADERS, 20);
+        // the caller waits on the latch of its entry rather than in the write queue
+        assertEquals(WRITE_ACTION.QUEUED, tree.writeOrAddToQ(s));
+        assertFalse(s.isWriteDone());
+
+        writeContext.completePending(null);
+        s.waitWriteCompleteLatch();
+        assertTrue(s.isWriteDone());
+        assertNull(s.getWriteError());
+
+        // the queue was given up, so the next write is again made on the caller's thread
+        writeContext.completeRightAway = true;
+        assertEquals(WRITE_ACTION.COMPLETED, tree.writeOrAddToQ(sync(3, FrameTypes.HEADERS, 20)));
+    }
+
+    @Test(timeout = 10000)
+    public void testForceQueue() throws Exception {
+        TestCallback callback = new TestCallback();
+        assertEquals(WRITE_ACTION.PENDING_CALLBACK, tree.writeOrAddToQ(async(3, FrameTypes.HEADERS, 20, callback, true)));
+        assertEquals(Boolean.TRUE, writeContext.forceQueued.get(0));
+
+        writeContext.completePending(null);
+        callback.await();
+        assertEquals(1, callback.completes.get());
+        assertEquals(0, callback.errors.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testPendingWriteError() throws Exception {
+        writeContext.completeRightAway = false;
+        TestCallback callback = new TestCallback();
+        H2WriteQEntry e = async(3, callback);
+        assertEquals(WRITE_ACTION.PENDING_CALLBACK, tree.writeOrAddToQ(e));
+
+        IOException ioe = new IOException("test write error");
+        writeContext.completePending(ioe);
+        callback.await();
+        assertEquals(0, callback.completes.get());
+        assertSame(ioe, callback.error);
+        assertSame(ioe, e.getWriteError());
+    }
+
+    /**
+     * Entries for the same stream are written in the order they were queued.
+     */
+    @Test(timeout = 10000)
+    public void testStreamOrder() throws Exception {
+        writeContext.completeRightAway = false;
+        TestCallback first = new TestCallback();
+        tree.writeOrAddToQ(async(1, first));
+
+        TestCallback[] callbacks = new TestCallback[4];
+        H2WriteQEntry[] entries = new H2WriteQEntry[4];
+        for (int i = 0; i < entries.length; i++) {
+            callbacks[i] = new TestCallback();
+            entries[i] = async(3, callbacks[i]);
+            assertEquals(WRITE_ACTION.QUEUED, tree.writeOrAddToQ(entries[i]));
+        }
+
+        writeContext.completeRightAway = true;
+        writeContext.completePending(null);
+        for (TestCallback callback : callbacks) {
+            callback.await();
+        }
+
+        // one entry per stream in each write
+        assertEquals(5, writeContext.writes.size());
+        for (int i = 0; i < entries.length; i++) {
+            assertEquals(1, writeContext.writes.get(i + 1).length);
+            assertSame(entries[i].getBuffer(), writeContext.writes.get(i + 1)[0]);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testConnectionWindow() throws Exception {
+        assertEquals(INITIAL_WINDOW, tree.getConnectionWriteLimit());
+        tree.writeOrAddToQ(sync(3, FrameTypes.DATA, 1000));
+        assertEquals(INITIAL_WINDOW - 1000, tree.getConnectionWriteLimit());
+
+        // only DATA frames use the window
+        tree.writeOrAddToQ(sync(3, FrameTypes.HEADERS, 1000));
+        assertEquals(INITIAL_WINDOW - 1000, tree.getConnectionWriteLimit());
+
+        try {
+            tree.writeOrAddToQ(sync(5, FrameTypes.DATA, INITIAL_WINDOW));
+            fail("the frame does not fit in the connection window");
+        } catch (FlowControlException expected) {
+        }
+        assertEquals(INITIAL_WINDOW - 1000, tree.getConnectionWriteLimit());
+        assertEquals(2, writeContext.writes.size());
+
+        tree.incrementConnectionWindowUpdateLimit(1000);
+        assertEquals(INITIAL_WINDOW, tree.getConnectionWriteLimit());
+        tree.writeOrAddToQ(sync(5, FrameTypes.DATA, INITIAL_WINDOW));
+        assertEquals(0, tree.getConnectionWriteLimit());
+    }
+
+    /**
+     * Entries released without being written give back the connection window they reserved.
+     */
+    @Test(timeout = 10000)
+    public void testQuitReleasesConnectionWindow() throws Exception {
+        writeContext.completeRightAway = false;
+        TestCallback first = new TestCallback();
+        assertEquals(WRITE_ACTION.PENDING_CALLBACK, tree.writeOrAddToQ(async(1, FrameTypes.DATA, 500, first, false)));
+
+        TestCallback second = new TestCallback();
+        TestCallback third = new TestCallback();
+        tree.writeOrAddToQ(async(3, FrameTypes.DATA, 2000, second, false));
+        tree.writeOrAddToQ(async(3, FrameTypes.DATA, 3000, third, false));
+        H2WriteQEntry s = sync(5, FrameTypes.DATA, 4000);
+        assertEquals(WRITE_ACTION.QUEUED, tree.writeOrAddToQ(s));
+        assertEquals(INITIAL_WINDOW - 9500, tree.getConnectionWriteLimit());
+
+        tree.setToQuit(false);
+        assertEquals(WRITE_ACTION.CONNECTION_QUIT, tree.writeOrAddToQ(async(7, new TestCallback())));
+
+        writeContext.completePending(null);
+        first.await();
+        second.await();
+        third.await();
+        s.waitWriteCompleteLatch();
+
+        assertEquals(1, first.completes.get());
+        assertEquals(1, second.errors.get());
+        assertEquals(1, third.errors.get());
+        assertTrue(s.getWriteError() != null);
+        assertEquals(1, writeContext.writes.size());
+        assertEquals(INITIAL_WINDOW - 500, tree.getConnectionWriteLimit());
+    }
+}
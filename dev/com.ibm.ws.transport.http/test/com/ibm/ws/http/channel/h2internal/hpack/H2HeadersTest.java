@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.channel.h2internal.hpack;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.ibm.ws.bytebuffer.internal.WsByteBufferImpl;
+import com.ibm.ws.http.channel.h2internal.hpack.HpackConstants.LiteralIndexType;
+
+/**
+ * Unit tests for H2Headers, which encode headers with one table and decode
+ * them with another, as the two ends of a connection do, while the encoder
+ * caches its encodings and the tables change size.
+ */
+public class H2HeadersTest {
+
+    private final H2HeaderTable writeTable = new H2HeaderTable();
+    private final H2HeaderTable readTable = new H2HeaderTable();
+
+    /**
+     * Decode an encoded header with the read table and check that it is the
+     * header that was encoded.
+     */
+    private H2HeaderField roundTrip(byte[] encoded, String name, String value) throws Exception {
+        WsByteBufferImpl buffer = new WsByteBufferImpl();
+        buffer.setByteBuffer(ByteBuffer.wrap(encoded));
+        H2HeaderField header = H2Headers.decodeHeader(buffer, readTable);
+        assertEquals(name, header.getName());
+        assertEquals(value, header.getValue());
+        assertFalse(buffer.hasRemaining());
+        return header;
+    }
+
+    private byte[] encode(String name, String value, LiteralIndexType type) throws Exception {
+        byte[] encoded = H2Headers.encodeHeader(writeTable, name, value, type);
+        roundTrip(encoded, name, value);
+        return encoded;
+    }
+
+    @Test
+    public void testCachedWithoutIndexing() throws Exception {
+        byte[] first = encode("x-custom", "value", LiteralIndexType.NOINDEXING);
+        // the same encoding is handed back while the table is unchanged
+        assertSame(first, encode("x-custom", "value", LiteralIndexType.NOINDEXING));
+        assertNotNull(writeTable.getEncodedHeader("x-custom", "value"));
+        assertEquals(0, writeTable.getDynamicEntryCount());
+
+        // only huffman encodings are cached
+        byte[] huffman = H2Headers.encodeHeader(writeTable, "x-other", "value", LiteralIndexType.NOINDEXING, false);
+        roundTrip(huffman, "x-other", "value");
+        assertNull(writeTable.getEncodedHeader("x-other", "value"));
+    }
+
+    @Test
+    public void testCacheDroppedWhenTableChanges() throws Exception {
+        byte[] literal = encode("x-custom", "value", LiteralIndexType.NOINDEXING);
+
+        // adding the header to both tables turns the encoding into an index reference
+        encode("x-custom", "value", LiteralIndexType.INDEX);
+        assertEquals(1, writeTable.getDynamicEntryCount());
+        assertEquals(1, readTable.getDynamicEntryCount());
+        assertNull(writeTable.getEncodedHeader("x-custom", "value"));
+        byte[] indexed = encode("x-custom", "value", LiteralIndexType.NOINDEXING);
+        assertFalse(literal.length == indexed.length);
+        assertSame(indexed, encode("x-custom", "value", LiteralIndexType.NOINDEXING));
+
+        // shrinking the tables evicts the entry, so the literal encoding is back
+        writeTable.updateTableSize(0);
+        readTable.updateTableSize(0);
+        assertEquals(0, writeTable.getDynamicEntryCount());
+        assertNull(writeTable.getEncodedHeader("x-custom", "value"));
+        assertArrayEquals(literal, encode("x-custom", "value", LiteralIndexType.NOINDEXING));
+
+        // growing them again lets entries be indexed once more
+        writeTable.updateTableSize(4096);
+        readTable.updateTableSize(4096);
+        encode("x-custom", "value", LiteralIndexType.INDEX);
+        assertArrayEquals(indexed, encode("x-custom", "value", LiteralIndexType.NOINDEXING));
+    }
+
+    @Test
+    public void testStaleEncodingNotCached() throws Exception {
+        int version = writeTable.getTableVersion();
+        writeTable.addHeaderEntry(new H2HeaderField("x-custom", "value"));
+        // encoded from the old table, so it must not be used with the new one
+        writeTable.putEncodedHeader("x-custom", "value", new byte[] { 1 }, version);
+        assertNull(writeTable.getEncodedHeader("x-custom", "value"));
+
+        writeTable.putEncodedHeader("x-custom", "value", new byte[] { 2 }, writeTable.getTableVersion());
+        assertArrayEquals(new byte[] { 2 }, writeTable.getEncodedHeader("x-custom", "value"));
+    }
+
+    @Test
+    public void testOverwriteDoesNotFillCache() throws Exception {
+        int version = writeTable.getTableVersion();
+        for (int i = 0; i < 100; i++) {
+            writeTable.putEncodedHeader("x-custom", "value" + i, new byte[] { (byte) i }, version);
+        }
+        // caching the same header again does not count towards the limit
+        for (int i = 0; i < 1000; i++) {
+            writeTable.putEncodedHeader("x-custom", "value0", new byte[] { 0 }, version);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertNotNull("value" + i, writeTable.getEncodedHeader("x-custom", "value" + i));
+        }
+
+        // once full, the cache starts over
+        for (int i = 100; i < 129; i++) {
+            writeTable.putEncodedHeader("x-custom", "value" + i, new byte[] { (byte) i }, version);
+        }
+        assertNull(writeTable.getEncodedHeader("x-custom", "value0"));
+        assertNotNull(writeTable.getEncodedHeader("x-custom", "value128"));
+    }
+
+    @Test
+    public void testStaticNameDecoded() throws Exception {
+        byte[] encoded = H2Headers.encodeHeader(writeTable, "x-unknown", "value", LiteralIndexType.NOINDEXING);
+        assertEquals("x-unknown", roundTrip(encoded, "x-unknown", "value").getName());
+
+        // a static table name sent as a literal, rather than as an index,
+        // decodes to the static table's String
+        ByteArrayOutputStream literal = new ByteArrayOutputStream();
+        literal.write(0x00);
+        literal.write("content-type".length());
+        literal.write("content-type".getBytes("US-ASCII"));
+        literal.write("text/plain".length());
+        literal.write("text/plain".getBytes("US-ASCII"));
+        H2HeaderField header = roundTrip(literal.toByteArray(), "content-type", "text/plain");
+        for (H2HeaderField field : StaticTable.STATIC_TABLE) {
+            if (field.getName().equals("content-type")) {
+                assertSame(field.getName(), header.getName());
+            }
+        }
+    }
+}
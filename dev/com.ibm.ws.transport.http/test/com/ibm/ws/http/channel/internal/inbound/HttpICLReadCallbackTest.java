@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.channel.internal.inbound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.States;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.objenesis.ObjenesisStd;
+
+import com.ibm.websphere.channelfw.osgi.CHFWBundle;
+import com.ibm.ws.http.channel.internal.CallbackIDs;
+import com.ibm.ws.http.channel.internal.HttpChannelConfig;
+import com.ibm.ws.http.channel.internal.HttpServiceContextImpl;
+import com.ibm.ws.tcpchannel.internal.TCPBaseRequestContext;
+import com.ibm.ws.tcpchannel.internal.TCPChannelConfiguration;
+import com.ibm.ws.tcpchannel.internal.WorkQueueManager;
+import com.ibm.wsspi.channelfw.VirtualConnection;
+import com.ibm.wsspi.http.channel.values.StatusCodes;
+import com.ibm.wsspi.http.logging.DebugLog;
+import com.ibm.wsspi.tcpchannel.TCPInlineCompletion;
+import com.ibm.wsspi.tcpchannel.TCPReadRequestContext;
+
+/**
+ * Unit tests for HttpICLReadCallback when the TCP selector completes the read
+ * inline, which check that the error paths move to a worker thread.
+ */
+public class HttpICLReadCallbackTest {
+
+    private final Mockery mock = new JUnit4Mockery() {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+    private final VirtualConnection vc = mock.mock(VirtualConnection.class);
+    private final TCPReadRequestContext rsc = mock.mock(TCPReadRequestContext.class);
+    private final HttpInboundLink link = mock.mock(HttpInboundLink.class);
+    private final HttpInboundServiceContextImpl isc = mock.mock(HttpInboundServiceContextImpl.class);
+    private final HttpChannelConfig config = mock.mock(HttpChannelConfig.class);
+    private final DebugLog debugLog = mock.mock(DebugLog.class);
+    private TCPBaseRequestContext readRequest;
+    @SuppressWarnings("unchecked")
+    private final Map<Object, Object> stateMap = mock.mock(Map.class);
+
+    /** Work handed off by the callback, run when the test says so */
+    private final QueueingExecutor executor = new QueueingExecutor();
+
+    private final HttpICLReadCallback callback = HttpICLReadCallback.getRef();
+
+    @Before
+    public void setUp() throws Exception {
+        mock.checking(new Expectations() {
+            {
+                allowing(vc).getStateMap();
+                will(returnValue(stateMap));
+                allowing(stateMap).get(CallbackIDs.CALLBACK_HTTPICL);
+                will(returnValue(link));
+                allowing(link).getHTTPContext();
+                will(returnValue(isc));
+                allowing(config).getDebugLog();
+                will(returnValue(debugLog));
+                allowing(debugLog).isEnabled(with(any(DebugLog.Level.class)));
+                will(returnValue(false));
+            }
+        });
+
+        // getHttpConfig is final, so give the mock its config directly
+        Field channelConfig = HttpServiceContextImpl.class.getDeclaredField("myChannelConfig");
+        channelConfig.setAccessible(true);
+        channelConfig.set(isc, config);
+
+        // the read being completed inline, with statistics turned off
+        ObjenesisStd objenesis = new ObjenesisStd();
+        readRequest = (TCPBaseRequestContext) objenesis.newInstance(TCPBaseRequestContext.class);
+        Field config = TCPBaseRequestContext.class.getDeclaredField("config");
+        config.setAccessible(true);
+        config.set(readRequest, objenesis.newInstance(TCPChannelConfiguration.class));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mock.assertIsSatisfied();
+        setInline(null);
+        setExecutor(null);
+    }
+
+    /**
+     * Mark the current thread as a selector completing a read inline, or clear it.
+     */
+    private void setInline(TCPBaseRequestContext req) throws Exception {
+        Field f = WorkQueueManager.class.getDeclaredField("inlineRequest");
+        f.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        ThreadLocal<TCPBaseRequestContext> inline = (ThreadLocal<TCPBaseRequestContext>) f.get(null);
+        if (null == req) {
+            inline.remove();
+        } else {
+            inline.set(req);
+        }
+    }
+
+    /**
+     * Make the executor available to the channel framework, or remove it, as
+     * when the framework is stopping.
+     */
+    private void setExecutor(QueueingExecutor e) throws Exception {
+        Field f = CHFWBundle.class.getDeclaredField("instance");
+        f.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        AtomicReference<CHFWBundle> instance = (AtomicReference<CHFWBundle>) f.get(null);
+        if (null == e) {
+            instance.set(null);
+            return;
+        }
+        CHFWBundle bundle = (CHFWBundle) new ObjenesisStd().newInstance(CHFWBundle.class);
+        Field es = CHFWBundle.class.getDeclaredField("executorService");
+        es.setAccessible(true);
+        es.set(bundle, e);
+        instance.set(bundle);
+    }
+
+    private void expectTimeoutResponse(final States sent, final String state) throws Exception {
+        mock.checking(new Expectations() {
+            {
+                allowing(link).isFirstRequest();
+                will(returnValue(true));
+                allowing(link).isPartiallyParsed();
+                will(returnValue(false));
+                one(link).setFilterCloseExceptions(true);
+                one(isc).sendError(StatusCodes.REQ_TIMEOUT.getHttpError());
+                then(sent.is(state));
+            }
+        });
+    }
+
+    @Test
+    public void testCompleteParsesOnCallingThread() throws Exception {
+        setExecutor(executor);
+        setInline(readRequest);
+        mock.checking(new Expectations() {
+            {
+                one(link).processRequest();
+            }
+        });
+        callback.complete(vc, rsc);
+        // parsing does not block, so it is not handed off
+        assertEquals(0, executor.work.size());
+    }
+
+    @Test
+    public void testTimeoutNotInline() throws Exception {
+        setExecutor(executor);
+        States sent = mock.states("sent").startsAs("no");
+        expectTimeoutResponse(sent, "yes");
+        callback.error(vc, rsc, new SocketTimeoutException());
+        assertTrue(sent.is("yes").isActive());
+        assertEquals(0, executor.work.size());
+    }
+
+    @Test
+    public void testTimeoutInlineSentFromWorker() throws Exception {
+        setExecutor(executor);
+        setInline(readRequest);
+        States sent = mock.states("sent").startsAs("no");
+        callback.error(vc, rsc, new SocketTimeoutException());
+        // nothing is written on the selector thread
+        assertEquals(1, executor.work.size());
+        assertFalse(sent.is("yes").isActive());
+
+        setInline(null);
+        expectTimeoutResponse(sent, "yes");
+        executor.runAll();
+        assertTrue(sent.is("yes").isActive());
+    }
+
+    @Test
+    public void testPersistReadErrorInlineClosedFromWorker() throws Exception {
+        setExecutor(executor);
+        setInline(readRequest);
+        final IOException ioe = new IOException("connection reset");
+        callback.error(vc, rsc, ioe);
+        assertEquals(1, executor.work.size());
+
+        setInline(null);
+        mock.checking(new Expectations() {
+            {
+                allowing(link).isFirstRequest();
+                will(returnValue(false));
+                allowing(link).isPartiallyParsed();
+                will(returnValue(false));
+                one(link).setFilterCloseExceptions(true);
+                one(link).close(vc, ioe);
+            }
+        });
+        executor.runAll();
+    }
+
+    @Test
+    public void testTimeoutInlineWithoutExecutor() throws Exception {
+        // the framework is stopping, so the error is handled where it was found
+        setInline(readRequest);
+        States sent = mock.states("sent").startsAs("no");
+        expectTimeoutResponse(sent, "yes");
+        callback.error(vc, rsc, new SocketTimeoutException());
+        assertTrue(sent.is("yes").isActive());
+    }
+
+    @Test
+    public void testInlineState() throws Exception {
+        assertFalse(TCPInlineCompletion.isInline());
+        setInline(readRequest);
+        assertTrue(TCPInlineCompletion.isInline());
+        // without an executor the caller keeps the work
+        assertFalse(TCPInlineCompletion.offload(new Runnable() {
+            @Override
+            public void run() {}
+        }));
+    }
+
+    /**
+     * Executor that keeps the work it is given until it is run by the test.
+     */
+    private static class QueueingExecutor extends AbstractExecutorService {
+        final List<Runnable> work = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            work.add(command);
+        }
+
+        void runAll() {
+            for (Runnable r : new ArrayList<Runnable>(work)) {
+                work.remove(r);
+                r.run();
+            }
+        }
+
+        @Override
+        public void shutdown() {}
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return new ArrayList<Runnable>(work);
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
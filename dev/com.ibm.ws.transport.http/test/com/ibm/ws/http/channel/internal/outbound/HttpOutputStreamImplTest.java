@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.channel.internal.outbound;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.ws.http.channel.internal.inbound.HttpInboundServiceContextImpl;
+import com.ibm.wsspi.channelfw.VirtualConnection;
+import com.ibm.wsspi.http.channel.HttpResponseMessage;
+
+/**
+ * Unit tests for writing a file through HttpOutputStreamImpl with a zero-copy transfer.
+ */
+public class HttpOutputStreamImplTest {
+
+    private static final int FILE_SIZE = 100000;
+
+    private final Mockery mock = new JUnit4Mockery() {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+    private final HttpInboundServiceContextImpl isc = mock.mock(HttpInboundServiceContextImpl.class);
+    private final HttpResponseMessage response = mock.mock(HttpResponseMessage.class);
+    private final VirtualConnection vc = mock.mock(VirtualConnection.class);
+
+    private File file;
+    private RandomAccessFile raf;
+    private FileChannel fc;
+    private HttpOutputStreamImpl stream;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("HttpOutputStreamImplTest", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[FILE_SIZE]);
+        } finally {
+            out.close();
+        }
+        raf = new RandomAccessFile(file, "r");
+        fc = raf.getChannel();
+
+        stream = new HttpOutputStreamImpl(isc);
+        stream.setVirtualConnection(vc);
+        mock.checking(new Expectations() {
+            {
+                allowing(vc).isFileChannelCapable();
+                will(returnValue(true));
+                allowing(isc).getResponse();
+                will(returnValue(response));
+                // the headers have been sent already
+                allowing(response).isCommitted();
+                will(returnValue(true));
+                allowing(isc).isFileTransferAllowed();
+                will(returnValue(true));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fc.close();
+        raf.close();
+        file.delete();
+    }
+
+    /**
+     * The remainder of the file is transferred, and the position and the bytes
+     * written move past it.
+     */
+    @Test
+    public void testTransferFile() throws Exception {
+        fc.position(1000);
+        mock.checking(new Expectations() {
+            {
+                oneOf(isc).sendResponseBody(fc, 1000L, (long) FILE_SIZE - 1000);
+                will(returnValue((long) FILE_SIZE - 1000));
+            }
+        });
+        stream.writeFile(fc);
+
+        assertEquals(FILE_SIZE, fc.position());
+        assertEquals(FILE_SIZE - 1000, stream.getBytesWritten());
+    }
+
+    /**
+     * Nothing is sent for a response that does not allow a body, such as the response
+     * to a HEAD request, so the position and the bytes written do not change.
+     */
+    @Test
+    public void testTransferFileWithoutBody() throws Exception {
+        mock.checking(new Expectations() {
+            {
+                oneOf(isc).sendResponseBody(fc, 0L, (long) FILE_SIZE);
+                will(returnValue(0L));
+            }
+        });
+        stream.writeFile(fc);
+
+        assertEquals(0, fc.position());
+        assertEquals(0, stream.getBytesWritten());
+    }
+}
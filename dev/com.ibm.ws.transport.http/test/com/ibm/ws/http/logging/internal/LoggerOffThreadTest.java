@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.logging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.ws.bytebuffer.internal.WsByteBufferImpl;
+import com.ibm.ws.http.logging.internal.LoggerOffThread.RingSlot;
+
+/**
+ * Unit tests for handing buffers to LoggerOffThread, which must release each
+ * of them exactly once, whether or not it is written before the logger stops.
+ */
+public class LoggerOffThreadTest {
+
+    /**
+     * Logger that opens the file directly, as trace is not configured.
+     */
+    private static class TestLogger extends LoggerOffThread {
+        TestLogger(String name) throws FileNotFoundException {
+            super();
+            setFilename(name);
+        }
+
+        @Override
+        protected FileOutputStream createFileOutputStream() throws FileNotFoundException {
+            return new FileOutputStream(getFile(), true);
+        }
+    }
+
+    /**
+     * Buffer that counts how many times it is released.
+     */
+    private static class CountingBuffer extends WsByteBufferImpl {
+        private static final long serialVersionUID = 1L;
+        final AtomicInteger releases = new AtomicInteger();
+
+        CountingBuffer(String data) throws Exception {
+            setByteBuffer(ByteBuffer.wrap(data.getBytes("ISO-8859-1")));
+        }
+
+        @Override
+        public void release() {
+            releases.incrementAndGet();
+        }
+    }
+
+    private File file;
+    private TestLogger logger;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("LoggerOffThreadTest", ".log");
+        logger = new TestLogger(file.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        logger.disable();
+        file.delete();
+    }
+
+    private String readFile() throws Exception {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                read += in.read(data, read, data.length - read);
+            }
+            return new String(data, "ISO-8859-1");
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testBuffersWrittenAndReleased() throws Exception {
+        assertTrue(logger.start());
+        CountingBuffer[] buffers = new CountingBuffer[100];
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new CountingBuffer("line " + i + "\n");
+            expected.append("line ").append(i).append('\n');
+            assertTrue(logger.log(buffers[i]));
+        }
+        assertTrue(logger.stop());
+
+        assertEquals(expected.toString(), readFile());
+        for (int i = 0; i < buffers.length; i++) {
+            assertEquals("buffer " + i, 1, buffers[i].releases.get());
+        }
+    }
+
+    @Test
+    public void testBufferReleasedWhenNotRunning() throws Exception {
+        CountingBuffer buffer = new CountingBuffer("not running\n");
+        assertFalse(logger.log(buffer));
+        assertEquals(1, buffer.releases.get());
+    }
+
+    /**
+     * A caller that claimed a slot before the logger stopped publishes it after
+     * the writer has exited, so the buffer is released rather than left in the ring.
+     */
+    @Test
+    public void testBufferPublishedAfterStopReleased() throws Exception {
+        assertTrue(logger.start());
+        CountingBuffer written = new CountingBuffer("written\n");
+        assertTrue(logger.log(written));
+        RingSlot slot = logger.claimSlot();
+        assertNotNull(slot);
+        CountingBuffer late = new CountingBuffer("late\n");
+        slot.buffer = late;
+
+        // the writer gives up waiting for the claimed slot and exits
+        assertTrue(logger.stop());
+        assertEquals(1, written.releases.get());
+        assertEquals(0, late.releases.get());
+
+        logger.publishSlot(slot);
+        assertEquals(1, late.releases.get());
+        assertNull(slot.buffer);
+        assertEquals("written\n", readFile());
+
+        // the logger can be started again and writes new entries
+        assertTrue(logger.start());
+        CountingBuffer again = new CountingBuffer("again\n");
+        assertTrue(logger.log(again));
+        assertTrue(logger.stop());
+        assertEquals(1, again.releases.get());
+        assertEquals("written\nagain\n", readFile());
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wsspi.http.channel.values;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for looking up header keys by name, including the perfect hash
+ * table of the well known keys that find(byte[], int, int) checks first.
+ */
+public class HttpHeaderKeysTest {
+
+    /**
+     * @return the keys defined as constants of HttpHeaderKeys.
+     */
+    private static List<HttpHeaderKeys> wellKnownKeys() throws Exception {
+        List<HttpHeaderKeys> keys = new ArrayList<HttpHeaderKeys>();
+        for (Field field : HttpHeaderKeys.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && HttpHeaderKeys.class == field.getType()) {
+                keys.add((HttpHeaderKeys) field.get(null));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return the name in the middle of a larger array, so that the offset is used.
+     */
+    private static byte[] embed(String name) {
+        return ("x:" + name + ":y").getBytes();
+    }
+
+    private static HttpHeaderKeys find(String name) {
+        return HttpHeaderKeys.find(embed(name), 2, name.length());
+    }
+
+    @Test
+    public void testFindWellKnownKeys() throws Exception {
+        List<HttpHeaderKeys> keys = wellKnownKeys();
+        assertTrue(keys.size() > 50);
+        for (HttpHeaderKeys key : keys) {
+            String name = key.getName();
+            assertSame(name, key, find(name));
+            assertSame(name, key, HttpHeaderKeys.find(name.getBytes()));
+            // the same key as the matcher that is used for other names
+            assertSame(name, HttpHeaderKeys.match(name.getBytes(), 0, name.length()), find(name));
+        }
+    }
+
+    @Test
+    public void testFindIsCaseInsensitive() throws Exception {
+        for (HttpHeaderKeys key : wellKnownKeys()) {
+            String name = key.getName();
+            assertSame(name, key, find(name.toLowerCase()));
+            assertSame(name, key, find(name.toUpperCase()));
+        }
+        assertSame(HttpHeaderKeys.HDR_CONTENT_LENGTH, find("cOnTeNt-LeNgTh"));
+        assertSame(HttpHeaderKeys.HDR_ETAG, find("etag"));
+    }
+
+    @Test
+    public void testNearMissesAreNotWellKnown() {
+        // one character more, one less, or a different non-letter
+        String[] names = { "Hos", "Hostt", "Content-Lengt", "Content-Length2", "Content_Length", "Content Length", "-" };
+        for (String name : names) {
+            HttpHeaderKeys key = find(name);
+            assertNotNull(name, key);
+            assertFalse(name, key.getName().equalsIgnoreCase("Host"));
+            assertFalse(name, key.getName().equalsIgnoreCase("Content-Length"));
+        }
+    }
+
+    @Test
+    public void testFindNewKey() {
+        String name = "X-HttpHeaderKeysTest-New";
+        assertNull(HttpHeaderKeys.match(name.getBytes(), 0, name.length()));
+
+        HttpHeaderKeys key = find(name);
+        assertEquals(name, key.getName());
+        assertTrue(key.isUndefined());
+        // the new key is found through the matcher afterwards, in any case
+        assertSame(key, find(name));
+        assertSame(key, find(name.toLowerCase()));
+        assertSame(key, HttpHeaderKeys.find(name));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindNewKeyWithCRLF() {
+        HttpHeaderKeys.find("X-Bad\r\nName".getBytes());
+    }
+}
@@ -153,6 +153,7 @@ private ICollaboratorHelper collabHelper;
 	private IWebAppNameSpaceCollaborator webAppNameSpaceCollab;
 	private IWebAppSecurityCollaborator secCollab;
         private boolean exposeWebInfOnDispatch;  //PK36447
+	private StaticContentCache staticContentCache = null;
     
 	/**
 	 * 
@@ -253,6 +254,14 @@ private ICollaboratorHelper collabHelper;
 			redirectToWelcomeFile =  redirectToWelcomeFileStr.equalsIgnoreCase("true");	
 		}
 		optimizeFileServingSize=getFileServingIntegerAttribute("com.ibm.ws.webcontainer.optimizefileservingsize",optimizeFileServingSizeGlobal);
+		if (WCCustomProperties.STATIC_CONTENT_CACHE_SIZE > 0) {
+			staticContentCache = new StaticContentCache(WCCustomProperties.STATIC_CONTENT_CACHE_SIZE, WCCustomProperties.STATIC_CONTENT_CACHE_MAX_ENTRY_SIZE,
+			                                            WCCustomProperties.STATIC_CONTENT_CACHE_CHECK_INTERVAL, WCCustomProperties.STATIC_CONTENT_CACHE_COMPRESS);
+			staticContentCache.activate(_webapp.getApplicationName() + " " + _webapp.getContextPath());
+			if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled()&&logger.isLoggable (Level.FINE)){
+				logger.logp(Level.FINE, CLASS_NAME,"init", "static content cache size ->" + WCCustomProperties.STATIC_CONTENT_CACHE_SIZE);
+			}
+		}
 //		mappedByteBufferSize=getFileServingIntegerAttribute("mappedByteBufferSize",mappedByteBufferSizeGlobal);
 		// end pq70834
 	}
@@ -1571,10 +1580,18 @@ private ICollaboratorHelper collabHelper;
 		return optimizeFileServingSize;
 	}
 
+	/**
+	 * @return the cache of static resources, or null if caching is disabled
+	 */
+	public StaticContentCache getStaticContentCache() {
+		return staticContentCache;
+	}
+
 
 	public void destroy() {
-		// TODO Auto-generated method stub
-		
+		if (staticContentCache != null) {
+			staticContentCache.deactivate();
+		}
 	}
 
 
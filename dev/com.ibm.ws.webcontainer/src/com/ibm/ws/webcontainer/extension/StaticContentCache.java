@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.webcontainer.extension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import com.ibm.wsspi.webcontainer.logging.LoggerFactory;
+
+/**
+ * Bounded in memory cache of static resources served by the
+ * DefaultExtensionProcessor. Each entry holds the raw bytes of a resource, an
+ * optional gzip encoded copy, and a strong entity tag for each, keyed by the
+ * resource path and validated against its last modified time.
+ *
+ * Entries are trusted for the configured check interval, during which a
+ * request, including a conditional one that ends in a 304, is answered
+ * without touching the file system. After that the owning wrapper compares
+ * the resource's last modified time and size again before the entry is used.
+ */
+public class StaticContentCache {
+    protected static final Logger logger = LoggerFactory.getInstance().getLogger("com.ibm.ws.webcontainer.extension");
+    private static final String CLASS_NAME = "com.ibm.ws.webcontainer.extension.StaticContentCache";
+
+    /** Resources smaller than this are not worth compressing */
+    private static final int MIN_COMPRESS_SIZE = 256;
+
+    /** Caches of the running applications, with the name each is reported under */
+    private static final ConcurrentHashMap<StaticContentCache, String> activeCaches = new ConcurrentHashMap<StaticContentCache, String>();
+
+    /** Entries in access order, least recently used first; guarded by itself */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final long maxSize;
+    private final long maxEntrySize;
+    private final long checkInterval;
+    private final boolean compress;
+    private final AtomicLong currentSize = new AtomicLong(0L);
+
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong misses = new AtomicLong(0L);
+    private final AtomicLong notModified = new AtomicLong(0L);
+    private final AtomicLong bytesSaved = new AtomicLong(0L);
+
+    /**
+     * @param maxSize total bytes the cache may hold
+     * @param maxEntrySize largest resource that is cached
+     * @param checkInterval milliseconds an entry is trusted before it is revalidated
+     * @param compress whether to keep a gzip encoded copy of compressible resources
+     */
+    public StaticContentCache(long maxSize, long maxEntrySize, long checkInterval, boolean compress) {
+        this.maxSize = maxSize;
+        this.maxEntrySize = Math.min(maxEntrySize, maxSize);
+        this.checkInterval = checkInterval;
+        this.compress = compress;
+    }
+
+    /**
+     * Make the statistics of this cache available through {@link #getActiveCaches()}.
+     *
+     * @param name the name to report the statistics under
+     */
+    public void activate(String name) {
+        activeCaches.put(this, name);
+    }
+
+    /**
+     * Remove every entry and stop reporting the statistics of this cache.
+     */
+    public void deactivate() {
+        activeCaches.remove(this);
+        clear();
+    }
+
+    /**
+     * @return the caches that are in use, with the name of each
+     */
+    public static Map<StaticContentCache, String> getActiveCaches() {
+        return Collections.unmodifiableMap(activeCaches);
+    }
+
+    /**
+     * Query whether a resource of the given size may be cached.
+     *
+     * @param size
+     * @return boolean
+     */
+    public boolean isCacheable(long size) {
+        return 0 <= size && size <= maxEntrySize;
+    }
+
+    /**
+     * Look up the entry for a resource. The caller must revalidate the entry
+     * against the resource when {@link Entry#needsCheck(long)} is true.
+     *
+     * @param key
+     * @return Entry, or null if the resource is not cached
+     */
+    public Entry get(String key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Note that an entry was used to answer a request.
+     *
+     * @param entry
+     * @param gzip whether the gzip encoded copy was sent
+     * @param sentNotModified whether a 304 was sent instead of the content
+     */
+    public void recordHit(Entry entry, boolean gzip, boolean sentNotModified) {
+        hits.incrementAndGet();
+        if (sentNotModified) {
+            notModified.incrementAndGet();
+            bytesSaved.addAndGet(gzip ? entry.gzipContent.length : entry.content.length);
+        } else if (gzip) {
+            bytesSaved.addAndGet(entry.content.length - entry.gzipContent.length);
+        }
+    }
+
+    /**
+     * Read a resource into a new entry and add it to the cache, replacing any
+     * existing entry for the key.
+     *
+     * @param key
+     * @param lastModified
+     * @param in stream of the resource content, closed by this method
+     * @param precompressed stream of an existing gzip encoded copy, or null; closed by this method
+     * @param compressible whether the content type is worth compressing
+     * @return the new Entry
+     * @throws IOException
+     */
+    public Entry load(String key, long lastModified, InputStream in, InputStream precompressed, boolean compressible) throws IOException {
+        byte[] content;
+        byte[] gzipContent = null;
+        try {
+            content = readFully(in);
+        } finally {
+            in.close();
+        }
+        if (precompressed != null) {
+            try {
+                gzipContent = readFully(precompressed);
+            } finally {
+                precompressed.close();
+            }
+        } else if (compress && compressible && content.length >= MIN_COMPRESS_SIZE) {
+            gzipContent = gzip(content);
+        }
+        if (gzipContent != null && gzipContent.length >= content.length) {
+            // no point sending a copy that isn't smaller
+            gzipContent = null;
+        }
+
+        Entry entry = new Entry(lastModified, content, gzipContent);
+        entry.checkedAt = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry old = entries.put(key, entry);
+            if (old != null) {
+                currentSize.addAndGet(-old.size());
+            }
+            if (currentSize.addAndGet(entry.size()) > maxSize) {
+                evict(entry);
+            }
+        }
+        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+            logger.logp(Level.FINE, CLASS_NAME, "load", "cached " + key + ", size->" + content.length
+                                                       + ", gzip size->" + (gzipContent == null ? -1 : gzipContent.length) + ", total->" + currentSize.get());
+        }
+        return entry;
+    }
+
+    /**
+     * Remove the entry for a resource, if any.
+     *
+     * @param key
+     */
+    public void invalidate(String key) {
+        synchronized (entries) {
+            Entry old = entries.remove(key);
+            if (old != null) {
+                currentSize.addAndGet(-old.size());
+            }
+        }
+    }
+
+    /**
+     * Remove every entry.
+     */
+    public void clear() {
+        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+            logger.logp(Level.FINE, CLASS_NAME, "clear", toString());
+        }
+        synchronized (entries) {
+            entries.clear();
+            currentSize.set(0L);
+        }
+    }
+
+    /**
+     * Evict the least recently used entries, other than the one just added,
+     * until the cache is back within its size. The caller holds the lock on
+     * entries.
+     */
+    private void evict(Entry added) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (currentSize.get() > maxSize && it.hasNext()) {
+            Entry oldest = it.next();
+            if (oldest != added) {
+                it.remove();
+                currentSize.addAndGet(-oldest.size());
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int readSize = in.read(buf);
+        while (readSize != -1) {
+            out.write(buf, 0, readSize);
+            readSize = in.read(buf);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2);
+        GZIPOutputStream gz = new GZIPOutputStream(out);
+        gz.write(content);
+        gz.close();
+        return out.toByteArray();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    /**
+     * Bytes not sent to clients because of 304 responses and gzip encoding.
+     *
+     * @return long
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * @return the fraction of lookups that found an entry
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public long getSize() {
+        return currentSize.get();
+    }
+
+    public String toString() {
+        int count;
+        synchronized (entries) {
+            count = entries.size();
+        }
+        return "StaticContentCache[entries=" + count + ", size=" + currentSize.get() + ", hits=" + hits.get()
+               + ", misses=" + misses.get() + ", notModified=" + notModified.get() + ", bytesSaved=" + bytesSaved.get() + "]";
+    }
+
+    /**
+     * A cached static resource.
+     */
+    public final class Entry {
+        private final long lastModified;
+        private final byte[] content;
+        private final byte[] gzipContent;
+        private final String etag;
+        private final String gzipEtag;
+        volatile long checkedAt;
+
+        Entry(long lastModified, byte[] content, byte[] gzipContent) {
+            this.lastModified = lastModified;
+            this.content = content;
+            this.gzipContent = gzipContent;
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            String tag = Long.toHexString(content.length) + "-" + Long.toHexString(crc.getValue());
+            this.etag = "\"" + tag + "\"";
+            this.gzipEtag = gzipContent == null ? null : "\"" + tag + "-gzip\"";
+        }
+
+        /**
+         * Query whether this entry has been trusted for longer than the check
+         * interval and must be compared with the resource again.
+         *
+         * @param now
+         * @return boolean
+         */
+        public boolean needsCheck(long now) {
+            return now - checkedAt >= checkInterval;
+        }
+
+        /**
+         * Note that the resource was found unchanged.
+         *
+         * @param now
+         */
+        public void checked(long now) {
+            checkedAt = now;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        /**
+         * @return the gzip encoded content, or null if there is none
+         */
+        public byte[] getGzipContent() {
+            return gzipContent;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public String getGzipETag() {
+            return gzipEtag;
+        }
+
+        long size() {
+            return content.length + (gzipContent == null ? 0 : gzipContent.length);
+        }
+    }
+}
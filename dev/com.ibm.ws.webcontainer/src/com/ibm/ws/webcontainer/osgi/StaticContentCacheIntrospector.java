@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.webcontainer.osgi;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+import org.osgi.service.component.annotations.Component;
+
+import com.ibm.ws.webcontainer.extension.StaticContentCache;
+import com.ibm.wsspi.logging.Introspector;
+
+/**
+ * Writes the statistics of the static content cache of each application
+ * to the server dump.
+ */
+@Component(service = Introspector.class, property = { "service.vendor=IBM" })
+public class StaticContentCacheIntrospector implements Introspector {
+
+    @Override
+    public String getIntrospectorName() {
+        return "StaticContentCacheIntrospector";
+    }
+
+    @Override
+    public String getIntrospectorDescription() {
+        return "The hit rate and bytes saved of the static content cache of each application";
+    }
+
+    @Override
+    public void introspect(PrintWriter out) {
+        Map<StaticContentCache, String> caches = StaticContentCache.getActiveCaches();
+        if (caches.isEmpty()) {
+            out.println("No static content caches");
+            return;
+        }
+        for (Map.Entry<StaticContentCache, String> entry : caches.entrySet()) {
+            StaticContentCache cache = entry.getKey();
+            out.println(entry.getValue());
+            out.println("  " + cache);
+            out.println("  hitRate=" + cache.getHitRate());
+        }
+    }
+}
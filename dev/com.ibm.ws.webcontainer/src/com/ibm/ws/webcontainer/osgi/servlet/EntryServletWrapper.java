@@ -13,6 +13,7 @@ package com.ibm.ws.webcontainer.osgi.servlet;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.net.URL;
 
 import com.ibm.ws.webcontainer.extension.DefaultExtensionProcessor;
 import com.ibm.ws.webcontainer.servlet.FileServletWrapper;
@@ -59,6 +60,12 @@ public class EntryServletWrapper extends FileServletWrapper {
     protected long getLastModified() {
         return entry.getLastModified();
     }
+
+    // the resource URL tells apart entries with the same path in different containers
+    protected String getCacheKey() {
+        URL url = entry.getResource();
+        return url == null ? null : url.toString();
+    }
     
     // PM92967, added method
     protected long getFileSize(boolean update) {
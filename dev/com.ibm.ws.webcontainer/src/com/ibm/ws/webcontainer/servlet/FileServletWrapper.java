@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2008 IBM Corporation and others.
+ * Copyright (c) 1997, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -41,6 +41,7 @@ import com.ibm.websphere.servlet.event.ServletEvent;
 import com.ibm.websphere.servlet.filter.ChainedResponse;
 import com.ibm.ws.kernel.security.thread.ThreadIdentityManager;
 import com.ibm.ws.webcontainer.extension.DefaultExtensionProcessor;
+import com.ibm.ws.webcontainer.extension.StaticContentCache;
 import com.ibm.ws.webcontainer.srt.SRTOutputStream;
 import com.ibm.ws.webcontainer.srt.SRTServletRequest;
 import com.ibm.ws.webcontainer.srt.SRTServletResponse;
@@ -52,9 +53,7 @@ import com.ibm.ws.webcontainer.webapp.WebAppEventSource;
 import com.ibm.ws.webcontainer.webapp.WebAppRequestDispatcher;
 import com.ibm.ws.webcontainer.webapp.WebAppServletInvocationEvent;
 import com.ibm.ws.webcontainer.webapp.WebGroup; //PM79476
-import com.ibm.wsspi.webcontainer.IPlatformHelper;
 import com.ibm.wsspi.webcontainer.WCCustomProperties;
-import com.ibm.wsspi.webcontainer.WebContainer;
 import com.ibm.wsspi.webcontainer.WebContainerRequestState;
 import com.ibm.wsspi.webcontainer.collaborator.ICollaboratorHelper;
 import com.ibm.wsspi.webcontainer.collaborator.IWebAppNameSpaceCollaborator;
@@ -91,7 +90,6 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
   private ICollaboratorHelper collabHelper;
   private IWebAppNameSpaceCollaborator webAppNameSpaceCollab;
   private IWebAppSecurityCollaborator secCollab;
-  private IPlatformHelper platformHelper;
   // PK44379 - number of threads currently executing the service method
   // this is used for the check before the destroy() is called
   private int nServicing = 0;
@@ -139,7 +137,6 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
     secCollab = collabHelper.getSecurityCollaborator();
 
     sessionSecurityIntegrationEnabled = context.getSessionContext().getIntegrateWASSecurity();
-    platformHelper = WebContainer.getWebContainer().getPlatformHelper();
     this.optimizeFileServingSize = parentProcessor.getOptimizeFileServingSize();
     // *** Uncomment for doing Mapped Byte Buffers
     // this.mappedByteBufferSize =
@@ -169,26 +166,33 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
     listeners.add(wrapper);
   }
 
-    public void destroy() {
-        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+  public void destroy() {
+    if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
       logger.entering(CLASS_NAME, "destroy " + this.toString());
     }
     // PK44379 START
-        for (int i = 0; (nServicing > 0) && i < WCCustomProperties.SERVLET_DESTROY_WAIT_TIME; i++) {
-            try {
+    for (int i = 0; (nServicing > 0) && i < WCCustomProperties.SERVLET_DESTROY_WAIT_TIME; i++) {
+      try {
         Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                com.ibm.wsspi.webcontainer.util.FFDCWrapper.processException(e, "com.ibm.ws.webcontainer.servlet.FileServletWrapper.destroy", "377",
-                        this);
+      } catch (InterruptedException e) {
+        com.ibm.wsspi.webcontainer.util.FFDCWrapper.processException(e, "com.ibm.ws.webcontainer.servlet.FileServletWrapper.destroy", "377",
+            this);
       }
     }
 
     // PK55965 Start
-        if (notifyInvocationListeners) {
+    if (notifyInvocationListeners) {
       evtSource.onServletStartDestroy(getServletEvent());
     }
     // PK55965 End
 
+    // drop the cached content of this resource
+    StaticContentCache cache = parentProcessor.getStaticContentCache();
+    String cacheKey = getCacheKey();
+    if (cache != null && cacheKey != null) {
+      cache.invalidate(cacheKey);
+    }
+
     // PK44379
     // Destroy this wrapper
     // nullify all fields
@@ -196,11 +200,11 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
     // PK80333 add synchronization to prevent a listener being added by the
     // webcontainer
     // addTocache method during this invalidate process.
-        synchronized (this) {
-            if (listeners != null) {
+    synchronized (this) {
+      if (listeners != null) {
 
         // fire invalidate events
-                for (int i = 0; i < listeners.size(); i++) {
+        for (int i = 0; i < listeners.size(); i++) {
           ServletReferenceListener listener = (ServletReferenceListener) listeners.get(i);
           listener.invalidate();
         }
@@ -210,15 +214,15 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
     }
 
     // PK55965 Start
-        if (notifyInvocationListeners) {
+    if (notifyInvocationListeners) {
       evtSource.onServletFinishDestroy(getServletEvent());
       evtSource.onServletUnloaded(getServletEvent());
     }
     // PK55965 End
 
-        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+    if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
       logger.exiting(CLASS_NAME, "destroy");
-  }
+    }
   }
 
     public long getLastAccessTime() {
@@ -685,7 +689,8 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
             }
             boolean isInclude = dispatchContext.isInclude();
             if (!isInclude) {
-                writeResponseBody = setResponseHeaders(request, response);
+                // a cached copy of the resource answers the request completely
+                writeResponseBody = !serveFromCache(request, response) && setResponseHeaders(request, response);
             }
             if (writeResponseBody) {
 
@@ -762,10 +767,186 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
   
   protected abstract long getFileSize(boolean update); // PM92967
 
-    private boolean setResponseHeaders(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-    if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
-        logger.entering(CLASS_NAME, "setResponseHeaders");
+  /**
+   * Key of this resource in the static content cache, or null if the resource
+   * is not to be cached.
+   */
+  protected String getCacheKey() {
+    return null;
+  }
+
+  /**
+   * Stream of an existing gzip encoded copy of this resource, or null if there
+   * is none.
+   */
+  protected InputStream getPrecompressedInputStream() throws IOException {
+    return null;
+  }
+
+    /**
+     * Answer the request from the static content cache, loading the resource
+     * into the cache if needed. Returns false if the request has to go down
+     * the normal file serving path instead.
+     */
+    private boolean serveFromCache(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        StaticContentCache cache = parentProcessor.getStaticContentCache();
+        if (cache == null || context.isMimeFilteringEnabled()) {
+            return false;
+        }
+        String key = getCacheKey();
+        if (key == null) {
+            return false;
+        }
+        ServletResponse wasres = ServletUtil.unwrapResponse(resp);
+        if (wasres instanceof IExtendedResponse && ((IExtendedResponse) wasres).isOutputWritten()) {
+            return false;
+        }
+        ServletOutputStream os;
+        try {
+            os = resp.getOutputStream();
+        } catch (IllegalStateException ise) {
+            // somebody already has the writer
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        StaticContentCache.Entry entry = cache.get(key);
+        if (entry != null && entry.needsCheck(now)) {
+            if (getLastModified() == entry.getLastModified() && getFileSize(true) == entry.getContent().length) {
+                entry.checked(now);
+            } else {
+                cache.invalidate(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            long lastModified = getLastModified();
+            if ((lastModified == 0 && !isAvailable()) || !cache.isCacheable(getFileSize(true))) {
+                return false;
+            }
+            InputStream in = null;
+            try {
+                in = getInputStream();
+                InputStream gz = getPrecompressedInputStream();
+                String type = context.getMimeType(req.getRequestURI());
+                entry = cache.load(key, lastModified, in, gz, isCompressible(type));
+            } catch (IOException ioe) {
+                if (in != null) {
+                    in.close();
+                }
+                if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+                    logger.logp(Level.FINE, CLASS_NAME, "serveFromCache", "unable to cache " + key + "; " + ioe);
+                }
+                return false;
+            }
+        }
+
+        setContentHeaders(req, resp);
+        resp.setDateHeader("last-modified", entry.getLastModified());
+        boolean gzip = false;
+        if (entry.getGzipContent() != null) {
+            resp.addHeader("Vary", "Accept-Encoding");
+            gzip = acceptsGzip(req);
+        }
+        String etag = gzip ? entry.getGzipETag() : entry.getETag();
+        resp.setHeader("ETag", etag);
+
+        if (isNotModified(req, etag, entry.getLastModified(), now)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            cache.recordHit(entry, gzip, true);
+            if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+                logger.logp(Level.FINE, CLASS_NAME, "serveFromCache", "cached file not modified, " + cache);
+            }
+            return true;
+        }
+
+        byte[] content = gzip ? entry.getGzipContent() : entry.getContent();
+        if (gzip) {
+            resp.setHeader("Content-Encoding", "gzip");
+        }
+        resp.setContentLength(content.length);
+        os.write(content, 0, content.length);
+        cache.recordHit(entry, gzip, false);
+        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+            logger.logp(Level.FINE, CLASS_NAME, "serveFromCache", "served from cache, gzip->" + gzip + ", " + cache);
+        }
+        return true;
     }
+
+    /**
+     * Evaluate If-None-Match, or If-Modified-Since when there is no
+     * If-None-Match, against the cached validators.
+     */
+    private boolean isNotModified(HttpServletRequest req, String etag, long lastModified, long now) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            String[] tags = ifNoneMatch.split(",");
+            for (int i = 0; i < tags.length; i++) {
+                String tag = tags[i].trim();
+                if (tag.startsWith("W/")) {
+                    // If-None-Match uses the weak comparison
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long modifiedSince = -1;
+        try {
+            modifiedSince = req.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException iae) {
+            modifiedSince = -1;
+        }
+        if (modifiedSince == -1) {
+            return false;
+        }
+        if (modifiedSince / 1000 == lastModified / 1000) {
+            return true;
+        }
+        return WCCustomProperties.IFMODIFIEDSINCE_NEWER_THAN_FILEMODIFIED_TIMESTAMP
+               && now >= modifiedSince && modifiedSince > lastModified;
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest req) {
+        Enumeration values = req.getHeaders("Accept-Encoding");
+        while (values != null && values.hasMoreElements()) {
+            String[] codings = ((String) values.nextElement()).split(",");
+            for (int i = 0; i < codings.length; i++) {
+                String coding = codings[i];
+                int semi = coding.indexOf(';');
+                String name = (semi == -1 ? coding : coding.substring(0, semi)).trim();
+                if (name.equalsIgnoreCase("gzip")) {
+                    if (semi == -1) {
+                        return true;
+                    }
+                    // gzip;q=0 means not acceptable
+                    String q = coding.substring(semi + 1).trim();
+                    try {
+                        if (!q.startsWith("q=") || Float.parseFloat(q.substring(2)) > 0f) {
+                            return true;
+                        }
+                    } catch (NumberFormatException nfe) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCompressible(String type) {
+        if (type == null) {
+            return false;
+        }
+        type = type.toLowerCase();
+        return type.startsWith("text/") || type.indexOf("javascript") != -1 || type.indexOf("json") != -1
+               || type.indexOf("xml") != -1 || type.indexOf("svg") != -1;
+    }
+
+    // Date, content type and ESI control headers, common to all static responses
+    private void setContentHeaders(HttpServletRequest req, HttpServletResponse resp) {
     // Add date header as per RFC 2616 sec 14.18
     resp.setDateHeader("Date", System.currentTimeMillis());
 
@@ -790,6 +971,13 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
                 && (req.getAuthType() == null)) {
       resp.addHeader("Surrogate-Control", esiControl);
     }
+  }
+
+    private boolean setResponseHeaders(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+        logger.entering(CLASS_NAME, "setResponseHeaders");
+    }
+    setContentHeaders(req, resp);
 
     /*
          * A code change is being made for defect PQ42792. A 304 Response is
@@ -903,7 +1091,7 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
           // if (reqState==null||!reqState.isInvokedFilters()||){
                     if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
                         logger.logp(Level.FINE, CLASS_NAME, "writeResponseToClient", "totalWritten->" + totalWritten + " bufferSize->" + bufferSize
-                                + ", actual file size->" + fileSize + ", isTransferToOS->" + platformHelper.isTransferToOS());
+                                + ", actual file size->" + fileSize);
           }
                     if (totalWritten == 0 // don't write out if somebody (a
                             // filter?) has written stuff
@@ -917,8 +1105,11 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
                             && bufferSize == SRTServletResponse.DEFAULT_BUFFER_SIZE
                             && optimizeFileServingSize != -1
               && (fileSize >= optimizeFileServingSize)
-              && platformHelper.isTransferToOS()
-                            && request.getProtocol().equalsIgnoreCase("http")) {
+                            // no platform check, the channel falls back to
+                            // copying when it can not transfer from the file
+                            // getProtocol() is the version string (HTTP/1.1), so
+                            // check the scheme to keep https on the copying path
+                            && "http".equalsIgnoreCase(request.getScheme())) {
 
             WebAppDispatcherContext dispatchCtx = (WebAppDispatcherContext) wasreq.getWebAppDispatcherContext();
                         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
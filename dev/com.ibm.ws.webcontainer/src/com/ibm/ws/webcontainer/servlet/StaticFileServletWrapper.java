@@ -53,6 +53,19 @@ public class StaticFileServletWrapper extends FileServletWrapper {
     protected long getLastModified() {
         return file.lastModified();
     }
+
+    protected String getCacheKey() {
+        return file.getPath();
+    }
+
+    // use a gzip copy that sits next to the file, as long as it is no older
+    protected InputStream getPrecompressedInputStream() throws IOException {
+        File gz = new File(file.getPath() + ".gz");
+        if (gz.isFile() && gz.lastModified() >= file.lastModified()) {
+            return new FileInputStream(gz);
+        }
+        return null;
+    }
     
     // PM92967, added method
     protected long getFileSize(boolean update) {
@@ -300,6 +300,11 @@ public class WCCustomProperties {
     public static boolean USE_MAXREQUESTSIZE_FOR_MULTIPART; //PI75528
 
     public static boolean ENABLE_MULTI_READ_OF_POST_DATA; //MultiRead
+
+    public static long STATIC_CONTENT_CACHE_SIZE; // bytes of static content cached per application, 0 disables the cache
+    public static long STATIC_CONTENT_CACHE_MAX_ENTRY_SIZE;
+    public static long STATIC_CONTENT_CACHE_CHECK_INTERVAL; // milliseconds a cached resource is trusted before it is checked again
+    public static boolean STATIC_CONTENT_CACHE_COMPRESS;
     
     static {
         setCustomPropertyVariables(); //initilizes all the variables
@@ -389,6 +394,10 @@ public class WCCustomProperties {
         WCCustomProperties.FullyQualifiedPropertiesMap.put("encodedispatchedrequesturi", "com.ibm.ws.webcontainer.encodedispatchedrequesturi"); //PI67942
         WCCustomProperties.FullyQualifiedPropertiesMap.put("usemaxrequestsizeformultipart", "com.ibm.ws.webcontainer.usemaxrequestsizeformultipart"); //PI75528
         WCCustomProperties.FullyQualifiedPropertiesMap.put("enablemultireadofpostdata", "com.ibm.ws.webcontainer.enablemultireadofpostdata");
+        WCCustomProperties.FullyQualifiedPropertiesMap.put("staticcontentcachesize", "com.ibm.ws.webcontainer.staticcontentcachesize");
+        WCCustomProperties.FullyQualifiedPropertiesMap.put("staticcontentcachemaxentrysize", "com.ibm.ws.webcontainer.staticcontentcachemaxentrysize");
+        WCCustomProperties.FullyQualifiedPropertiesMap.put("staticcontentcachecheckinterval", "com.ibm.ws.webcontainer.staticcontentcachecheckinterval");
+        WCCustomProperties.FullyQualifiedPropertiesMap.put("staticcontentcachecompress", "com.ibm.ws.webcontainer.staticcontentcachecompress");
     }
 
     //some properties require "com.ibm.ws.webcontainer." on the front
@@ -763,6 +772,11 @@ public class WCCustomProperties {
         
         ENABLE_MULTI_READ_OF_POST_DATA = Boolean.valueOf(WebContainer.getWebContainerProperties().getProperty("com.ibm.ws.webcontainer.enablemultireadofpostdata")).booleanValue(); // MultiRead
 
+        STATIC_CONTENT_CACHE_SIZE = Long.valueOf(WebContainer.getWebContainerProperties().getProperty("com.ibm.ws.webcontainer.staticcontentcachesize", "0")).longValue();
+        STATIC_CONTENT_CACHE_MAX_ENTRY_SIZE = Long.valueOf(WebContainer.getWebContainerProperties().getProperty("com.ibm.ws.webcontainer.staticcontentcachemaxentrysize", "1048576")).longValue();
+        STATIC_CONTENT_CACHE_CHECK_INTERVAL = Long.valueOf(WebContainer.getWebContainerProperties().getProperty("com.ibm.ws.webcontainer.staticcontentcachecheckinterval", "5000")).longValue();
+        STATIC_CONTENT_CACHE_COMPRESS = Boolean.valueOf(WebContainer.getWebContainerProperties().getProperty("com.ibm.ws.webcontainer.staticcontentcachecompress", "true")).booleanValue();
+
   
     }
 
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.webcontainer.extension;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+public class StaticContentCacheTest {
+
+    private static byte[] text(int size) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) 'a');
+        return data;
+    }
+
+    private static byte[] gunzip(byte[] data) throws Exception {
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[512];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testLoadAndCompress() throws Exception {
+        StaticContentCache cache = new StaticContentCache(1 << 20, 1 << 16, 1000L, true);
+        byte[] content = text(4096);
+        assertNull(cache.get("/a.css"));
+
+        StaticContentCache.Entry entry = cache.load("/a.css", 1000L, new ByteArrayInputStream(content), null, true);
+        assertSame(entry, cache.get("/a.css"));
+        assertArrayEquals(content, entry.getContent());
+        assertNotNull(entry.getGzipContent());
+        assertArrayEquals(content, gunzip(entry.getGzipContent()));
+        assertTrue(entry.getETag().startsWith("\""));
+        assertFalse(entry.getETag().equals(entry.getGzipETag()));
+        assertEquals(1000L, entry.getLastModified());
+
+        // binary content is kept as is
+        StaticContentCache.Entry png = cache.load("/a.png", 1000L, new ByteArrayInputStream(content), null, false);
+        assertNull(png.getGzipContent());
+        assertNull(png.getGzipETag());
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        StaticContentCache cache = new StaticContentCache(1 << 20, 1 << 16, 1000L, true);
+        cache.get("/a.js");
+        StaticContentCache.Entry entry = cache.load("/a.js", 1L, new ByteArrayInputStream(text(2048)), null, true);
+        cache.recordHit(entry, true, false);
+        cache.recordHit(entry, false, true);
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getNotModified());
+        assertEquals((2048 - entry.getGzipContent().length) + 2048, cache.getBytesSaved());
+        assertEquals(2.0 / 3.0, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testActiveCaches() throws Exception {
+        StaticContentCache cache = new StaticContentCache(1 << 20, 1 << 16, 1000L, false);
+        assertFalse(StaticContentCache.getActiveCaches().containsKey(cache));
+
+        cache.activate("app /ctx");
+        assertEquals("app /ctx", StaticContentCache.getActiveCaches().get(cache));
+        cache.load("/a", 1L, new ByteArrayInputStream(text(10)), null, false);
+
+        cache.deactivate();
+        assertFalse(StaticContentCache.getActiveCaches().containsKey(cache));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testBounds() throws Exception {
+        StaticContentCache cache = new StaticContentCache(10000, 4000, 1000L, false);
+        assertTrue(cache.isCacheable(4000));
+        assertFalse(cache.isCacheable(4001));
+
+        cache.load("/1", 1L, new ByteArrayInputStream(text(4000)), null, false);
+        cache.load("/2", 1L, new ByteArrayInputStream(text(4000)), null, false);
+        cache.load("/3", 1L, new ByteArrayInputStream(text(4000)), null, false);
+        assertTrue(cache.getSize() <= 10000);
+        assertNotNull(cache.get("/3"));
+
+        cache.invalidate("/3");
+        assertNull(cache.get("/3"));
+        cache.clear();
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        StaticContentCache cache = new StaticContentCache(10000, 4000, 1000L, false);
+        cache.load("/1", 1L, new ByteArrayInputStream(text(3000)), null, false);
+        cache.load("/2", 1L, new ByteArrayInputStream(text(3000)), null, false);
+        cache.load("/3", 1L, new ByteArrayInputStream(text(3000)), null, false);
+
+        // a lookup makes /1 the most recently used, so /2 goes first
+        assertNotNull(cache.get("/1"));
+        cache.load("/4", 1L, new ByteArrayInputStream(text(3000)), null, false);
+        assertEquals(9000, cache.getSize());
+        assertNull(cache.get("/2"));
+        assertNotNull(cache.get("/3"));
+        assertNotNull(cache.get("/1"));
+        assertNotNull(cache.get("/4"));
+
+        // reloading an entry replaces it in place, and a larger entry evicts as many as needed
+        cache.load("/3", 2L, new ByteArrayInputStream(text(1000)), null, false);
+        assertEquals(7000, cache.getSize());
+        cache.load("/5", 1L, new ByteArrayInputStream(text(4000)), null, false);
+        assertEquals(8000, cache.getSize());
+        assertNull(cache.get("/1"));
+        assertNotNull(cache.get("/4"));
+        assertNotNull(cache.get("/3"));
+        assertNotNull(cache.get("/5"));
+    }
+
+    @Test
+    public void testCheckInterval() throws Exception {
+        StaticContentCache cache = new StaticContentCache(1 << 20, 1 << 16, 1000L, false);
+        StaticContentCache.Entry entry = cache.load("/a", 1L, new ByteArrayInputStream(text(10)), null, false);
+        long now = System.currentTimeMillis();
+        assertFalse(entry.needsCheck(now));
+        assertTrue(entry.needsCheck(now + 1000L));
+        entry.checked(now + 1000L);
+        assertFalse(entry.needsCheck(now + 1500L));
+    }
+}